@@ -0,0 +1,138 @@
+package uk.ac.starlink.feather;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Represents the data of an Arrow IPC RecordBatch,
+ * giving access to its field nodes and body buffers.
+ */
+class ArrowBatch {
+
+    private final FlatBuf rb_;
+    private final ByteBuffer body_;
+    private final int codec_;
+    private final long nrow_;
+
+    /** Codec value indicating no compression. */
+    public static final int CODEC_NONE = -1;
+
+    /** Codec value for LZ4 frame compression. */
+    public static final int CODEC_LZ4_FRAME = 0;
+
+    /** Codec value for Zstandard compression. */
+    public static final int CODEC_ZSTD = 1;
+
+    /**
+     * Constructor.
+     *
+     * @param  recordBatch  RecordBatch table
+     * @param  body   message body buffer
+     */
+    ArrowBatch( FlatBuf recordBatch, ByteBuffer body ) {
+        rb_ = recordBatch;
+        body_ = body;
+        FlatBuf compression = recordBatch.getTable( 3 );
+        codec_ = compression == null ? CODEC_NONE
+                                     : compression.getByte( 0, 0 );
+        nrow_ = recordBatch.getLong( 0, 0 );
+    }
+
+    /**
+     * Returns the number of rows in this batch.
+     *
+     * @return  row count
+     */
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    /**
+     * Indicates whether the buffers in this batch are compressed.
+     * If not, buffers are views of the underlying body buffer.
+     *
+     * @return  true iff compressed
+     */
+    public boolean isCompressed() {
+        return codec_ != CODEC_NONE;
+    }
+
+    /**
+     * Returns the length of a given field node.
+     *
+     * @param  inode  node index
+     * @return  number of elements in node
+     */
+    public int getNodeLength( int inode ) throws TableFormatException {
+        long leng = rb_.getStructLong( 1, inode, 16, 0 );
+        if ( leng < 0 || leng > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Unsupported Arrow array length "
+                                          + leng );
+        }
+        return (int) leng;
+    }
+
+    /**
+     * Returns the null count of a given field node.
+     *
+     * @param  inode  node index
+     * @return   number of null elements in node
+     */
+    public long getNodeNullCount( int inode ) {
+        return rb_.getStructLong( 1, inode, 16, 8 );
+    }
+
+    /**
+     * Returns the content of a given buffer, decompressing if required.
+     *
+     * @param  ibuf  buffer index
+     * @return  little-endian buffer
+     */
+    public ByteBuffer getBuffer( int ibuf ) throws TableFormatException {
+        long off = rb_.getStructLong( 2, ibuf, 16, 0 );
+        long leng = rb_.getStructLong( 2, ibuf, 16, 8 );
+        if ( off < 0 || leng < 0 || off + leng > body_.limit() ) {
+            throw new TableFormatException( "Arrow buffer overruns body" );
+        }
+        ByteBuffer buf = slice( body_, (int) off, (int) leng );
+        if ( codec_ == CODEC_NONE || leng == 0 ) {
+            return buf;
+        }
+        long usize = buf.getLong( 0 );
+        ByteBuffer cbuf = slice( buf, 8, (int) leng - 8 );
+        if ( usize == -1 ) {
+            return cbuf;
+        }
+        else if ( usize < 0 || usize > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Bad Arrow buffer size " + usize );
+        }
+        else if ( codec_ == CODEC_LZ4_FRAME ) {
+            return ByteBuffer.wrap( Lz4.decompressFrame( cbuf, (int) usize ) )
+                             .order( ByteOrder.LITTLE_ENDIAN );
+        }
+        else if ( codec_ == CODEC_ZSTD ) {
+            throw new TableFormatException( "ZSTD-compressed Arrow buffers "
+                                          + "not supported" );
+        }
+        else {
+            throw new TableFormatException( "Unknown Arrow compression codec "
+                                          + codec_ );
+        }
+    }
+
+    /**
+     * Returns a little-endian slice of a buffer.
+     *
+     * @param  buf  base buffer
+     * @param  off  offset of slice start
+     * @param  leng  slice length
+     * @return  slice
+     */
+    static ByteBuffer slice( ByteBuffer buf, int off, int leng ) {
+        ByteBuffer b = buf.duplicate();
+        b.limit( off + leng );
+        b.position( off );
+        return b.slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+}
@@ -0,0 +1,600 @@
+package uk.ac.starlink.feather;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.Tables;
+
+/**
+ * Accumulates the values of a table column and writes them as
+ * Arrow arrays within record batches.
+ *
+ * <p>All fields are written as nullable.  Validity bitmaps are only
+ * written for arrays that actually contain nulls.
+ */
+abstract class ArrowEncoder {
+
+    private final int typeId_;
+    private final ArrowEncoder[] children_;
+    private final LeBuffer validBuf_;
+    private int validByte_;
+    private int nel_;
+    private long nnull_;
+
+    /** Name of the child field of list fields. */
+    public static final String ITEM_NAME = "item";
+
+    /**
+     * Constructor.
+     *
+     * @param  typeId  Arrow type union tag
+     * @param  children  child encoders
+     */
+    protected ArrowEncoder( int typeId, ArrowEncoder[] children ) {
+        typeId_ = typeId;
+        children_ = children;
+        validBuf_ = new LeBuffer();
+    }
+
+    /**
+     * Writes a non-null value to the data buffers.
+     * If the value cannot be encoded, nothing is written.
+     *
+     * @param  value  non-null value
+     * @return  true if the value was written, false if it could not
+     *          be encoded and should be treated as null
+     */
+    abstract boolean encodeValue( Object value );
+
+    /**
+     * Writes a placeholder for a null value to the data buffers.
+     */
+    abstract void encodeNull();
+
+    /**
+     * Returns the data buffers following the validity buffer for this
+     * array in the current batch, and resets them.
+     *
+     * @return  buffer contents
+     */
+    abstract byte[][] flushDataBuffers();
+
+    /**
+     * Returns the number of bytes currently buffered in data buffers,
+     * excluding those of children.
+     *
+     * @return  byte count
+     */
+    abstract long getDataSize();
+
+    /**
+     * Returns the Type table describing this encoder's type.
+     *
+     * @return  type table
+     */
+    abstract FlatBufBuilder.Table createTypeTable();
+
+    /**
+     * Adds a value to this array.
+     *
+     * @param  value  value, may be null
+     */
+    public void addValue( Object value ) {
+        boolean isValid = value != null && encodeValue( value );
+        if ( isValid ) {
+            validByte_ |= 1 << ( nel_ & 0x7 );
+        }
+        else {
+            encodeNull();
+            nnull_++;
+        }
+        nel_++;
+        if ( ( nel_ & 0x7 ) == 0 ) {
+            validBuf_.write( validByte_ );
+            validByte_ = 0;
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes currently buffered
+     * by this encoder and its descendants.
+     *
+     * @return  byte count
+     */
+    public long getBufferedSize() {
+        long size = validBuf_.size() + getDataSize();
+        for ( ArrowEncoder child : children_ ) {
+            size += child.getBufferedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Appends the field nodes and buffers for the data accumulated
+     * by this encoder and its descendants to lists, and resets
+     * the accumulated data.
+     *
+     * @param  nodes  list of (length, null_count) pairs to append to
+     * @param  bufs   list of buffer contents to append to
+     */
+    public void flushBatch( List<long[]> nodes, List<byte[]> bufs ) {
+        nodes.add( new long[] { nel_, nnull_ } );
+        if ( nnull_ > 0 ) {
+            if ( ( nel_ & 0x7 ) != 0 ) {
+                validBuf_.write( validByte_ );
+            }
+            bufs.add( validBuf_.toByteArray() );
+        }
+        else {
+            bufs.add( new byte[ 0 ] );
+        }
+        bufs.addAll( Arrays.asList( flushDataBuffers() ) );
+        validBuf_.reset();
+        validByte_ = 0;
+        nel_ = 0;
+        nnull_ = 0;
+        for ( ArrowEncoder child : children_ ) {
+            child.flushBatch( nodes, bufs );
+        }
+    }
+
+    /**
+     * Returns a Field table describing this encoder's output.
+     *
+     * @param  name  field name
+     * @param  meta  custom metadata for field, may be empty
+     * @return  field table
+     */
+    public FlatBufBuilder.Table createField( String name,
+                                            Map<String,String> meta ) {
+        List<FlatBufBuilder.Table> childList =
+            new ArrayList<FlatBufBuilder.Table>();
+        for ( ArrowEncoder child : children_ ) {
+            childList.add( child.createField( ITEM_NAME, null ) );
+        }
+        FlatBufBuilder.Table field = new FlatBufBuilder.Table()
+           .addString( 0, name )
+           .addBoolean( 1, true )
+           .addByte( 2, typeId_ )
+           .addRef( 3, createTypeTable() )
+           .addRef( 5, new FlatBufBuilder.TableVector( childList ) );
+        if ( meta != null && meta.size() > 0 ) {
+            field.addRef( 6, createKeyValues( meta ) );
+        }
+        return field;
+    }
+
+    /**
+     * Returns a vector of KeyValue tables.
+     *
+     * @param  map  key-value map
+     * @return  table vector
+     */
+    static FlatBufBuilder.TableVector
+            createKeyValues( Map<String,String> map ) {
+        List<FlatBufBuilder.Table> kvList =
+            new ArrayList<FlatBufBuilder.Table>();
+        for ( Map.Entry<String,String> entry : map.entrySet() ) {
+            kvList.add( new FlatBufBuilder.Table()
+                       .addString( 0, entry.getKey() )
+                       .addString( 1, entry.getValue() ) );
+        }
+        return new FlatBufBuilder.TableVector( kvList );
+    }
+
+    /**
+     * Returns an encoder for a given column.
+     *
+     * @param  info  column metadata
+     * @return  encoder, or null if the column cannot be written
+     */
+    public static ArrowEncoder createEncoder( ColumnInfo info ) {
+        Class<?> clazz = info.getContentClass();
+        boolean isUbyte =
+            Boolean.TRUE
+           .equals( info.getAuxDatumValue( Tables.UBYTE_FLAG_INFO,
+                                           Boolean.class ) );
+        ArrowEncoder scalarEnc = createScalarEncoder( clazz, isUbyte );
+        if ( scalarEnc != null ) {
+            return scalarEnc;
+        }
+        Class<?> elClazz = clazz.getComponentType();
+        if ( elClazz == null ) {
+            return null;
+        }
+        ArrowEncoder elEnc = createScalarEncoder( getWrapperClass( elClazz ),
+                                                  isUbyte );
+        if ( elEnc == null ) {
+            return null;
+        }
+        int[] shape = info.getShape();
+        int nel = 1;
+        for ( int i = 0; shape != null && i < shape.length; i++ ) {
+            nel = shape[ i ] > 0 ? nel * shape[ i ] : -1;
+            if ( nel < 0 ) {
+                break;
+            }
+        }
+        return shape != null && nel > 0
+             ? new FixedListEncoder( elEnc, nel )
+             : new ListEncoder( elEnc );
+    }
+
+    /**
+     * Returns an encoder for a given scalar class.
+     *
+     * @param  clazz  class
+     * @param  isUbyte  true if Short values represent unsigned bytes
+     * @return  encoder, or null
+     */
+    private static ArrowEncoder createScalarEncoder( Class<?> clazz,
+                                                     boolean isUbyte ) {
+        if ( clazz.equals( Boolean.class ) ) {
+            return new BoolEncoder();
+        }
+        else if ( clazz.equals( Byte.class ) ) {
+            return new IntEncoder( 8, true );
+        }
+        else if ( clazz.equals( Short.class ) ) {
+            return isUbyte ? new IntEncoder( 8, false )
+                           : new IntEncoder( 16, true );
+        }
+        else if ( clazz.equals( Integer.class ) ) {
+            return new IntEncoder( 32, true );
+        }
+        else if ( clazz.equals( Long.class ) ) {
+            return new IntEncoder( 64, true );
+        }
+        else if ( clazz.equals( Float.class ) ) {
+            return new FloatEncoder( ArrowField.P_SINGLE );
+        }
+        else if ( clazz.equals( Double.class ) ) {
+            return new FloatEncoder( ArrowField.P_DOUBLE );
+        }
+        else if ( clazz.equals( String.class ) ) {
+            return new VarBinaryEncoder( true );
+        }
+        else if ( clazz.equals( byte[].class ) ) {
+            return new VarBinaryEncoder( false );
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the wrapper class for a primitive class.
+     *
+     * @param  clazz  class
+     * @return  wrapper class, or the input class if not primitive
+     */
+    private static Class<?> getWrapperClass( Class<?> clazz ) {
+        if ( clazz == boolean.class ) {
+            return Boolean.class;
+        }
+        else if ( clazz == byte.class ) {
+            return Byte.class;
+        }
+        else if ( clazz == short.class ) {
+            return Short.class;
+        }
+        else if ( clazz == int.class ) {
+            return Integer.class;
+        }
+        else if ( clazz == long.class ) {
+            return Long.class;
+        }
+        else if ( clazz == float.class ) {
+            return Float.class;
+        }
+        else if ( clazz == double.class ) {
+            return Double.class;
+        }
+        else {
+            return clazz;
+        }
+    }
+
+    /**
+     * Encoder for integer values.
+     */
+    private static class IntEncoder extends ArrowEncoder {
+        private final int bitWidth_;
+        private final boolean isSigned_;
+        private final LeBuffer data_;
+        IntEncoder( int bitWidth, boolean isSigned ) {
+            super( ArrowField.T_INT, new ArrowEncoder[ 0 ] );
+            bitWidth_ = bitWidth;
+            isSigned_ = isSigned;
+            data_ = new LeBuffer();
+        }
+        boolean encodeValue( Object value ) {
+            if ( value instanceof Number ) {
+                data_.writeN( ((Number) value).longValue(), bitWidth_ / 8 );
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        void encodeNull() {
+            data_.writeN( 0, bitWidth_ / 8 );
+        }
+        byte[][] flushDataBuffers() {
+            return new byte[][] { data_.take() };
+        }
+        long getDataSize() {
+            return data_.size();
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table()
+                  .addInt( 0, bitWidth_ )
+                  .addBoolean( 1, isSigned_ );
+        }
+    }
+
+    /**
+     * Encoder for floating point values.
+     */
+    private static class FloatEncoder extends ArrowEncoder {
+        private final int precision_;
+        private final LeBuffer data_;
+        FloatEncoder( int precision ) {
+            super( ArrowField.T_FLOAT, new ArrowEncoder[ 0 ] );
+            precision_ = precision;
+            data_ = new LeBuffer();
+        }
+        boolean encodeValue( Object value ) {
+            if ( value instanceof Number ) {
+                Number num = (Number) value;
+                if ( precision_ == ArrowField.P_SINGLE ) {
+                    data_.writeN( Float.floatToIntBits( num.floatValue() ),
+                                  4 );
+                }
+                else {
+                    data_.writeN( Double
+                                 .doubleToLongBits( num.doubleValue() ), 8 );
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        void encodeNull() {
+            if ( precision_ == ArrowField.P_SINGLE ) {
+                data_.writeN( Float.floatToIntBits( Float.NaN ), 4 );
+            }
+            else {
+                data_.writeN( Double.doubleToLongBits( Double.NaN ), 8 );
+            }
+        }
+        byte[][] flushDataBuffers() {
+            return new byte[][] { data_.take() };
+        }
+        long getDataSize() {
+            return data_.size();
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table()
+                  .addShort( 0, precision_ );
+        }
+    }
+
+    /**
+     * Encoder for boolean values.
+     */
+    private static class BoolEncoder extends ArrowEncoder {
+        private final LeBuffer data_;
+        private int byte_;
+        private int nbit_;
+        BoolEncoder() {
+            super( ArrowField.T_BOOL, new ArrowEncoder[ 0 ] );
+            data_ = new LeBuffer();
+        }
+        boolean encodeValue( Object value ) {
+            if ( value instanceof Boolean ) {
+                addBit( ((Boolean) value).booleanValue() );
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        void encodeNull() {
+            addBit( false );
+        }
+        private void addBit( boolean flag ) {
+            if ( flag ) {
+                byte_ |= 1 << nbit_;
+            }
+            if ( ++nbit_ == 8 ) {
+                data_.write( byte_ );
+                byte_ = 0;
+                nbit_ = 0;
+            }
+        }
+        byte[][] flushDataBuffers() {
+            if ( nbit_ > 0 ) {
+                data_.write( byte_ );
+            }
+            byte_ = 0;
+            nbit_ = 0;
+            return new byte[][] { data_.take() };
+        }
+        long getDataSize() {
+            return data_.size();
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table();
+        }
+    }
+
+    /**
+     * Encoder for variable-length String or byte array values.
+     */
+    private static class VarBinaryEncoder extends ArrowEncoder {
+        private final boolean isUtf8_;
+        private final LeBuffer offsets_;
+        private final LeBuffer data_;
+        VarBinaryEncoder( boolean isUtf8 ) {
+            super( isUtf8 ? ArrowField.T_UTF8 : ArrowField.T_BINARY,
+                   new ArrowEncoder[ 0 ] );
+            isUtf8_ = isUtf8;
+            offsets_ = new LeBuffer();
+            data_ = new LeBuffer();
+            offsets_.writeN( 0, 4 );
+        }
+        boolean encodeValue( Object value ) {
+            final byte[] bytes;
+            if ( isUtf8_ && value instanceof String ) {
+                bytes = ((String) value).getBytes( StandardCharsets.UTF_8 );
+            }
+            else if ( ! isUtf8_ && value instanceof byte[] ) {
+                bytes = (byte[]) value;
+            }
+            else {
+                return false;
+            }
+            data_.write( bytes, 0, bytes.length );
+            offsets_.writeN( data_.size(), 4 );
+            return true;
+        }
+        void encodeNull() {
+            offsets_.writeN( data_.size(), 4 );
+        }
+        byte[][] flushDataBuffers() {
+            byte[][] bufs = new byte[][] { offsets_.take(), data_.take() };
+            offsets_.writeN( 0, 4 );
+            return bufs;
+        }
+        long getDataSize() {
+            return offsets_.size() + data_.size();
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table();
+        }
+    }
+
+    /**
+     * Encoder for variable-length array values.
+     */
+    private static class ListEncoder extends ArrowEncoder {
+        private final ArrowEncoder child_;
+        private final LeBuffer offsets_;
+        private int nchild_;
+        ListEncoder( ArrowEncoder child ) {
+            super( ArrowField.T_LIST, new ArrowEncoder[] { child } );
+            child_ = child;
+            offsets_ = new LeBuffer();
+            offsets_.writeN( 0, 4 );
+        }
+        boolean encodeValue( Object value ) {
+            if ( value.getClass().isArray() ) {
+                int n = Array.getLength( value );
+                for ( int i = 0; i < n; i++ ) {
+                    child_.addValue( Array.get( value, i ) );
+                }
+                nchild_ += n;
+                offsets_.writeN( nchild_, 4 );
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        void encodeNull() {
+            offsets_.writeN( nchild_, 4 );
+        }
+        byte[][] flushDataBuffers() {
+            byte[][] bufs = new byte[][] { offsets_.take() };
+            offsets_.writeN( 0, 4 );
+            nchild_ = 0;
+            return bufs;
+        }
+        long getDataSize() {
+            return offsets_.size();
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table();
+        }
+    }
+
+    /**
+     * Encoder for fixed-length array values.
+     * Arrays of the wrong length are truncated or padded with nulls.
+     */
+    private static class FixedListEncoder extends ArrowEncoder {
+        private final ArrowEncoder child_;
+        private final int size_;
+        FixedListEncoder( ArrowEncoder child, int size ) {
+            super( ArrowField.T_FIXED_LIST, new ArrowEncoder[] { child } );
+            child_ = child;
+            size_ = size;
+        }
+        boolean encodeValue( Object value ) {
+            if ( value.getClass().isArray() ) {
+                int n = Math.min( Array.getLength( value ), size_ );
+                for ( int i = 0; i < n; i++ ) {
+                    child_.addValue( Array.get( value, i ) );
+                }
+                for ( int i = n; i < size_; i++ ) {
+                    child_.addValue( null );
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        void encodeNull() {
+            for ( int i = 0; i < size_; i++ ) {
+                child_.addValue( null );
+            }
+        }
+        byte[][] flushDataBuffers() {
+            return new byte[ 0 ][];
+        }
+        long getDataSize() {
+            return 0;
+        }
+        FlatBufBuilder.Table createTypeTable() {
+            return new FlatBufBuilder.Table()
+                  .addInt( 0, size_ );
+        }
+    }
+
+    /**
+     * Byte buffer with little-endian write methods.
+     */
+    static class LeBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Writes the low-order bytes of an integer in little-endian order.
+         *
+         * @param  value  value
+         * @param  nbyte  number of bytes to write
+         */
+        void writeN( long value, int nbyte ) {
+            for ( int i = 0; i < nbyte; i++ ) {
+                write( (int) ( value >>> ( 8 * i ) ) );
+            }
+        }
+
+        /**
+         * Returns the buffer contents and resets it.
+         *
+         * @return  buffer contents
+         */
+        byte[] take() {
+            byte[] bytes = toByteArray();
+            reset();
+            return bytes;
+        }
+    }
+}
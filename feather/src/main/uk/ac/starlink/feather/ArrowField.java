@@ -0,0 +1,620 @@
+package uk.ac.starlink.feather;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Represents a Field from an Arrow schema, and knows how to
+ * decode its data from record batches.
+ */
+class ArrowField {
+
+    private final String name_;
+    private final boolean isNullable_;
+    private final int typeId_;
+    private final FlatBuf type_;
+    private final long dictId_;
+    private final FlatBuf indexType_;
+    private final ArrowField[] children_;
+    private final Map<String,String> meta_;
+    private final int nnode_;
+    private final int nbuf_;
+    private final Class<?> clazz_;
+
+    /* Type union tag values from Schema.fbs. */
+    static final int T_NULL = 1;
+    static final int T_INT = 2;
+    static final int T_FLOAT = 3;
+    static final int T_BINARY = 4;
+    static final int T_UTF8 = 5;
+    static final int T_BOOL = 6;
+    static final int T_DECIMAL = 7;
+    static final int T_DATE = 8;
+    static final int T_TIME = 9;
+    static final int T_TIMESTAMP = 10;
+    static final int T_INTERVAL = 11;
+    static final int T_LIST = 12;
+    static final int T_STRUCT = 13;
+    static final int T_UNION = 14;
+    static final int T_FIXED_BINARY = 15;
+    static final int T_FIXED_LIST = 16;
+    static final int T_MAP = 17;
+    static final int T_DURATION = 18;
+    static final int T_LARGE_BINARY = 19;
+    static final int T_LARGE_UTF8 = 20;
+    static final int T_LARGE_LIST = 21;
+    static final int T_RUN_END = 22;
+
+    /* FloatingPoint precision values. */
+    static final int P_HALF = 0;
+    static final int P_SINGLE = 1;
+    static final int P_DOUBLE = 2;
+
+    private static final String[] TIME_UNITS = { "s", "ms", "us", "ns" };
+
+    /**
+     * Constructor.
+     *
+     * @param  field  Field table from schema
+     */
+    ArrowField( FlatBuf field ) throws TableFormatException {
+        name_ = field.getString( 0 );
+        isNullable_ = field.getBoolean( 1, false );
+        typeId_ = field.getByte( 2, 0 );
+        type_ = field.getTable( 3 );
+        FlatBuf dict = field.getTable( 4 );
+        dictId_ = dict == null ? -1 : dict.getLong( 0, 0 );
+        indexType_ = dict == null ? null : dict.getTable( 1 );
+        int nchild = field.getVectorLength( 5 );
+        children_ = new ArrowField[ nchild ];
+        int nnode = 1;
+        int nbuf = dict == null ? getOwnBufferCount( typeId_, type_ ) : 2;
+        for ( int ic = 0; ic < nchild; ic++ ) {
+            ArrowField child = new ArrowField( field.getTableElement( 5, ic ) );
+            children_[ ic ] = child;
+            if ( dict == null ) {
+                nnode += child.nnode_;
+                nbuf += child.nbuf_;
+            }
+        }
+        nnode_ = nnode;
+        nbuf_ = nbuf;
+        meta_ = readMetadata( field, 6 );
+        clazz_ = getValueClass();
+    }
+
+    /**
+     * Returns the field name.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Indicates whether this field may contain nulls.
+     *
+     * @return  nullable flag
+     */
+    public boolean isNullable() {
+        return isNullable_;
+    }
+
+    /**
+     * Returns the dictionary ID if this field is dictionary-encoded.
+     *
+     * @return  dictionary ID, or -1
+     */
+    public long getDictionaryId() {
+        return dictId_;
+    }
+
+    /**
+     * Returns the child fields of this field.
+     *
+     * @return  child list
+     */
+    public List<ArrowField> getChildren() {
+        return Arrays.asList( children_ );
+    }
+
+    /**
+     * Returns the custom metadata associated with this field.
+     *
+     * @return  key-value map
+     */
+    public Map<String,String> getMetadata() {
+        return meta_;
+    }
+
+    /**
+     * Returns the number of field nodes in a record batch used by
+     * this field and its descendants.
+     *
+     * @return  node count
+     */
+    public int getNodeCount() {
+        return nnode_;
+    }
+
+    /**
+     * Returns the number of buffers in a record batch used by
+     * this field and its descendants.
+     *
+     * @return  buffer count
+     */
+    public int getBufferCount() {
+        return nbuf_;
+    }
+
+    /**
+     * Returns the class of values that will be returned from vectors
+     * for this field.
+     *
+     * @return   content class, or null if this field is not supported
+     */
+    public Class<?> getContentClass() {
+        return clazz_;
+    }
+
+    /**
+     * Indicates whether this field contains unsigned byte values,
+     * or arrays of them, which are presented as shorts.
+     *
+     * @return  true for unsigned byte content
+     */
+    public boolean isUnsignedByte() {
+        ArrowField f = typeId_ == T_LIST || typeId_ == T_LARGE_LIST ||
+                       typeId_ == T_FIXED_LIST ? children_[ 0 ] : this;
+        return f.typeId_ == T_INT && f.type_.getInt( 0, 0 ) == 8
+            && ! f.type_.getBoolean( 1, false );
+    }
+
+    /**
+     * Returns the fixed length of list values, if applicable.
+     *
+     * @return  fixed list size, or -1 for variable or non-list types
+     */
+    public int getFixedListSize() {
+        return typeId_ == T_FIXED_LIST ? type_.getInt( 0, 0 ) : -1;
+    }
+
+    /**
+     * Returns the unit implied by this field's data type, if any.
+     *
+     * @return  unit string or null
+     */
+    public String getTypeUnit() {
+        switch ( typeId_ ) {
+            case T_DATE:
+                return type_.getShort( 0, 1 ) == 0 ? "d" : "ms";
+            case T_TIME:
+                return TIME_UNITS[ type_.getShort( 0, 1 ) & 0x3 ];
+            case T_TIMESTAMP:
+            case T_DURATION:
+                return TIME_UNITS[ type_.getShort( 0, 0 ) & 0x3 ];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a short human-readable description of this field's type.
+     *
+     * @return  type name
+     */
+    public String getTypeName() {
+        String tname = getValueTypeName();
+        return dictId_ >= 0 ? "dictionary<" + tname + ">" : tname;
+    }
+
+    /**
+     * Creates a vector giving the values of this field in a record batch.
+     *
+     * @param  batch  record batch
+     * @param  pos   2-element array giving (node, buffer) index of
+     *               this field's data, updated on exit to point after it
+     * @param  dicts  map of dictionary ID to dictionary values
+     * @return  vector
+     */
+    public ArrowVector createVector( ArrowBatch batch, int[] pos,
+                                     Map<Long,ArrowVector> dicts )
+            throws TableFormatException {
+        if ( dictId_ >= 0 ) {
+            long nnull = batch.getNodeNullCount( pos[ 0 ]++ );
+            ByteBuffer valid = batch.getBuffer( pos[ 1 ]++ );
+            ByteBuffer data = batch.getBuffer( pos[ 1 ]++ );
+            ArrowVector dict = dicts.get( Long.valueOf( dictId_ ) );
+            if ( dict == null ) {
+                throw new TableFormatException( "No Arrow dictionary "
+                                              + dictId_ );
+            }
+            int bitWidth = indexType_ == null ? 32
+                                              : indexType_.getInt( 0, 0 );
+            boolean signed = indexType_ == null
+                          || indexType_.getBoolean( 1, false );
+            ArrowVector indices = createIntVector( bitWidth, signed,
+                                                   null, data );
+            return new ArrowVector
+                      .DictionaryVector( nnull > 0 ? valid : null,
+                                         indices, dict );
+        }
+        else {
+            return createValueVector( batch, pos, dicts );
+        }
+    }
+
+    /**
+     * Creates a vector giving the values of this field's value type
+     * in a record batch, ignoring any dictionary encoding.
+     * This is used directly for reading dictionary batches.
+     *
+     * @param  batch  record batch
+     * @param  pos   2-element array giving (node, buffer) index of
+     *               this field's data, updated on exit to point after it
+     * @param  dicts  map of dictionary ID to dictionary values
+     * @return  vector
+     */
+    public ArrowVector createValueVector( ArrowBatch batch, int[] pos,
+                                          Map<Long,ArrowVector> dicts )
+            throws TableFormatException {
+        long nnull = batch.getNodeNullCount( pos[ 0 ]++ );
+        switch ( typeId_ ) {
+            case T_INT:
+            case T_FLOAT:
+            case T_BOOL:
+            case T_DATE:
+            case T_TIME:
+            case T_TIMESTAMP:
+            case T_DURATION:
+            case T_FIXED_BINARY: {
+                ByteBuffer valid = batch.getBuffer( pos[ 1 ]++ );
+                ByteBuffer data = batch.getBuffer( pos[ 1 ]++ );
+                return createFixedVector( nnull > 0 ? valid : null, data );
+            }
+            case T_UTF8:
+            case T_BINARY:
+            case T_LARGE_UTF8:
+            case T_LARGE_BINARY: {
+                ByteBuffer valid = batch.getBuffer( pos[ 1 ]++ );
+                ByteBuffer offsets = batch.getBuffer( pos[ 1 ]++ );
+                ByteBuffer data = batch.getBuffer( pos[ 1 ]++ );
+                boolean isLarge = typeId_ == T_LARGE_UTF8
+                               || typeId_ == T_LARGE_BINARY;
+                boolean isUtf8 = typeId_ == T_UTF8
+                              || typeId_ == T_LARGE_UTF8;
+                return new ArrowVector
+                          .VarBinaryVector( nnull > 0 ? valid : null,
+                                            offsets, data, isLarge, isUtf8 );
+            }
+            case T_LIST:
+            case T_LARGE_LIST: {
+                ByteBuffer valid = batch.getBuffer( pos[ 1 ]++ );
+                ByteBuffer offsets = batch.getBuffer( pos[ 1 ]++ );
+                ArrowVector child =
+                    children_[ 0 ].createVector( batch, pos, dicts );
+                return new ArrowVector
+                          .ListVector( nnull > 0 ? valid : null, offsets,
+                                       typeId_ == T_LARGE_LIST, -1, child );
+            }
+            case T_FIXED_LIST: {
+                ByteBuffer valid = batch.getBuffer( pos[ 1 ]++ );
+                ArrowVector child =
+                    children_[ 0 ].createVector( batch, pos, dicts );
+                return new ArrowVector
+                          .ListVector( nnull > 0 ? valid : null, null, false,
+                                       getFixedListSize(), child );
+            }
+            default:
+                throw new TableFormatException( "Unsupported Arrow type "
+                                              + getTypeName() );
+        }
+    }
+
+    /**
+     * Creates a vector for a fixed-width primitive type.
+     *
+     * @param  valid  validity buffer or null
+     * @param  data   value buffer
+     * @return  vector
+     */
+    private ArrowVector createFixedVector( ByteBuffer valid, ByteBuffer data )
+            throws TableFormatException {
+        switch ( typeId_ ) {
+            case T_INT:
+                return createIntVector( type_.getInt( 0, 0 ),
+                                        type_.getBoolean( 1, false ),
+                                        valid, data );
+            case T_FLOAT:
+                switch ( type_.getShort( 0, 0 ) ) {
+                    case P_HALF:
+                        return new ArrowVector.Float16Vector( valid, data );
+                    case P_SINGLE:
+                        return new ArrowVector.Float32Vector( valid, data );
+                    case P_DOUBLE:
+                        return new ArrowVector.Float64Vector( valid, data );
+                    default:
+                        throw new TableFormatException( "Bad precision" );
+                }
+            case T_BOOL:
+                return new ArrowVector.BoolVector( valid, data );
+            case T_DATE:
+                return type_.getShort( 0, 1 ) == 0
+                     ? new ArrowVector.Int32Vector( valid, data )
+                     : new ArrowVector.Int64Vector( valid, data );
+            case T_TIME:
+                return type_.getInt( 1, 32 ) == 32
+                     ? new ArrowVector.Int32Vector( valid, data )
+                     : new ArrowVector.Int64Vector( valid, data );
+            case T_TIMESTAMP:
+            case T_DURATION:
+                return new ArrowVector.Int64Vector( valid, data );
+            case T_FIXED_BINARY:
+                return new ArrowVector
+                      .FixedBinaryVector( valid, data, type_.getInt( 0, 0 ) );
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Creates a vector for an integer type.
+     *
+     * @param  bitWidth  bits per value
+     * @param  signed   true for signed, false for unsigned
+     * @param  valid  validity buffer or null
+     * @param  data   value buffer
+     * @return  vector
+     */
+    private static ArrowVector createIntVector( int bitWidth, boolean signed,
+                                                ByteBuffer valid,
+                                                ByteBuffer data )
+            throws TableFormatException {
+        switch ( bitWidth ) {
+            case 8:
+                return signed ? new ArrowVector.Int8Vector( valid, data )
+                              : new ArrowVector.UInt8Vector( valid, data );
+            case 16:
+                return signed ? new ArrowVector.Int16Vector( valid, data )
+                              : new ArrowVector.UInt16Vector( valid, data );
+            case 32:
+                return signed ? new ArrowVector.Int32Vector( valid, data )
+                              : new ArrowVector.UInt32Vector( valid, data );
+            case 64:
+                return new ArrowVector.Int64Vector( valid, data );
+            default:
+                throw new TableFormatException( "Unsupported integer width "
+                                              + bitWidth );
+        }
+    }
+
+    /**
+     * Determines the class of values presented for this field's
+     * value type.
+     *
+     * @return  value class, or null if not supported
+     */
+    private Class<?> getValueClass() {
+        Class<?> sclazz = getScalarClass();
+        if ( sclazz != null ) {
+            return sclazz;
+        }
+        else if ( ( typeId_ == T_LIST || typeId_ == T_LARGE_LIST ||
+                    typeId_ == T_FIXED_LIST ) &&
+                  children_.length == 1 &&
+                  children_[ 0 ].dictId_ < 0 ) {
+            Class<?> eclazz = children_[ 0 ].getScalarClass();
+            if ( eclazz == Boolean.class ) {
+                return boolean[].class;
+            }
+            else if ( eclazz == Byte.class ) {
+                return byte[].class;
+            }
+            else if ( eclazz == Short.class ) {
+                return short[].class;
+            }
+            else if ( eclazz == Integer.class ) {
+                return int[].class;
+            }
+            else if ( eclazz == Long.class ) {
+                return long[].class;
+            }
+            else if ( eclazz == Float.class ) {
+                return float[].class;
+            }
+            else if ( eclazz == Double.class ) {
+                return double[].class;
+            }
+            else if ( eclazz == String.class ) {
+                return String[].class;
+            }
+            else {
+                return null;
+            }
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Determines the class of values presented for this field's
+     * value type if it is a non-list type.
+     *
+     * @return  scalar value class, or null if not a supported scalar
+     */
+    private Class<?> getScalarClass() {
+        switch ( typeId_ ) {
+            case T_INT:
+                boolean signed = type_.getBoolean( 1, false );
+                switch ( type_.getInt( 0, 0 ) ) {
+                    case 8:
+                        return signed ? Byte.class : Short.class;
+                    case 16:
+                        return signed ? Short.class : Integer.class;
+                    case 32:
+                        return signed ? Integer.class : Long.class;
+                    case 64:
+                        return Long.class;
+                    default:
+                        return null;
+                }
+            case T_FLOAT:
+                return type_.getShort( 0, 0 ) == P_DOUBLE ? Double.class
+                                                          : Float.class;
+            case T_BOOL:
+                return Boolean.class;
+            case T_UTF8:
+            case T_LARGE_UTF8:
+                return String.class;
+            case T_BINARY:
+            case T_LARGE_BINARY:
+            case T_FIXED_BINARY:
+                return byte[].class;
+            case T_DATE:
+                return type_.getShort( 0, 1 ) == 0 ? Integer.class
+                                                   : Long.class;
+            case T_TIME:
+                return type_.getInt( 1, 32 ) == 32 ? Integer.class
+                                                   : Long.class;
+            case T_TIMESTAMP:
+            case T_DURATION:
+                return Long.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a type name for this field's value type.
+     *
+     * @return  type name
+     */
+    private String getValueTypeName() {
+        switch ( typeId_ ) {
+            case T_INT:
+                return ( type_.getBoolean( 1, false ) ? "int" : "uint" )
+                     + type_.getInt( 0, 0 );
+            case T_FLOAT:
+                return "float" + ( 16 << type_.getShort( 0, 0 ) );
+            case T_BOOL:
+                return "bool";
+            case T_UTF8:
+                return "utf8";
+            case T_LARGE_UTF8:
+                return "large_utf8";
+            case T_BINARY:
+                return "binary";
+            case T_LARGE_BINARY:
+                return "large_binary";
+            case T_FIXED_BINARY:
+                return "fixed_size_binary[" + type_.getInt( 0, 0 ) + "]";
+            case T_DATE:
+                return type_.getShort( 0, 1 ) == 0 ? "date32[day]"
+                                                   : "date64[ms]";
+            case T_TIME:
+                return "time" + type_.getInt( 1, 32 )
+                     + "[" + getTypeUnit() + "]";
+            case T_TIMESTAMP:
+                String tz = type_.getString( 1 );
+                return "timestamp[" + getTypeUnit()
+                     + ( tz == null ? "" : ", tz=" + tz ) + "]";
+            case T_DURATION:
+                return "duration[" + getTypeUnit() + "]";
+            case T_LIST:
+                return "list<" + children_[ 0 ].getTypeName() + ">";
+            case T_LARGE_LIST:
+                return "large_list<" + children_[ 0 ].getTypeName() + ">";
+            case T_FIXED_LIST:
+                return "fixed_size_list<" + children_[ 0 ].getTypeName()
+                     + ">[" + getFixedListSize() + "]";
+            case T_NULL:
+                return "null";
+            case T_DECIMAL:
+                return "decimal";
+            case T_INTERVAL:
+                return "interval";
+            case T_STRUCT:
+                return "struct";
+            case T_UNION:
+                return "union";
+            case T_MAP:
+                return "map";
+            case T_RUN_END:
+                return "run_end_encoded";
+            default:
+                return "type" + typeId_;
+        }
+    }
+
+    /**
+     * Returns the number of buffers used by a field of a given type,
+     * not including its children.
+     *
+     * @param  typeId  type union tag
+     * @param  type    type table
+     * @return  buffer count
+     */
+    private static int getOwnBufferCount( int typeId, FlatBuf type )
+            throws TableFormatException {
+        switch ( typeId ) {
+            case T_NULL:
+            case T_RUN_END:
+                return 0;
+            case T_STRUCT:
+            case T_FIXED_LIST:
+                return 1;
+            case T_UNION:
+                return type != null && type.getShort( 0, 0 ) == 1 ? 2 : 1;
+            case T_UTF8:
+            case T_BINARY:
+            case T_LARGE_UTF8:
+            case T_LARGE_BINARY:
+                return 3;
+            case T_INT:
+            case T_FLOAT:
+            case T_BOOL:
+            case T_DECIMAL:
+            case T_DATE:
+            case T_TIME:
+            case T_TIMESTAMP:
+            case T_INTERVAL:
+            case T_LIST:
+            case T_FIXED_BINARY:
+            case T_MAP:
+            case T_DURATION:
+            case T_LARGE_LIST:
+                return 2;
+            default:
+                throw new TableFormatException( "Unsupported Arrow type code "
+                                              + typeId
+                                              + " (view types not supported)");
+        }
+    }
+
+    /**
+     * Reads a custom_metadata KeyValue vector from a table.
+     *
+     * @param  table  table containing the vector
+     * @param  islot  slot index of the vector
+     * @return  key-value map
+     */
+    static Map<String,String> readMetadata( FlatBuf table, int islot ) {
+        Map<String,String> map = new LinkedHashMap<String,String>();
+        int nkv = table.getVectorLength( islot );
+        for ( int i = 0; i < nkv; i++ ) {
+            FlatBuf kv = table.getTableElement( islot, i );
+            String key = kv.getString( 0 );
+            String value = kv.getString( 1 );
+            if ( key != null && value != null ) {
+                map.put( key, value );
+            }
+        }
+        return map;
+    }
+}
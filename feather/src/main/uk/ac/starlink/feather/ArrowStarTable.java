@@ -0,0 +1,595 @@
+package uk.ac.starlink.feather;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.ValueInfo;
+
+/**
+ * StarTable implementation based on an Arrow IPC file,
+ * also known as Feather version 2.
+ *
+ * <p>Each record batch message is memory-mapped, and uncompressed
+ * column data is read directly from the mapped buffers, so that
+ * no decoding or copying is required beyond construction of
+ * the cell value objects themselves.
+ * Validity bitmaps, dictionary-encoded fields (including delta
+ * dictionaries) and LZ4-compressed buffers are supported;
+ * ZSTD-compressed buffers are not.
+ * The {@link #getRowSplittable} method splits the table between
+ * record batches, so that batches may be processed in parallel.
+ *
+ * <p>Top-level fields of numeric, boolean, string, binary and
+ * temporal types are supported, as are list and fixed-size list fields
+ * with numeric, boolean or string elements;
+ * other fields in the input file are ignored.
+ *
+ * @see  <a href="https://arrow.apache.org/docs/format/Columnar.html"
+ *          >Arrow Columnar Format</a>
+ */
+public class ArrowStarTable extends AbstractStarTable {
+
+    private final ArrowField[] fields_;
+    private final int[] nodeStarts_;
+    private final int[] bufStarts_;
+    private final ColumnInfo[] colInfos_;
+    private final int ncol_;
+    private final ArrowBatch[] batches_;
+    private final long[] batchRow0s_;
+    private final ArrowVector[][] sharedVecs_;
+    private final Map<Long,ArrowVector> dicts_;
+    private final BatchReader randomReader_;
+
+    /** Magic number at start and end of Arrow IPC files. */
+    public static final byte[] MAGIC =
+        new byte[] { 'A', 'R', 'R', 'O', 'W', '1' };
+
+    /** Schema metadata key for table name. */
+    public static final String NAME_KEY = "name";
+
+    /** Aux metadata key for column Arrow data type. */
+    public static final ValueInfo ATYPE_INFO =
+        new DefaultValueInfo( "arrow_type", String.class,
+                              "Data type from Arrow format input file" );
+
+    /* Message header union tag values from Message.fbs. */
+    private static final int H_DICTIONARY_BATCH = 2;
+    private static final int H_RECORD_BATCH = 3;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.feather" );
+
+    /**
+     * Constructs a table from an Arrow IPC file.
+     *
+     * @param  file  file
+     * @throws  TableFormatException  if the file is not in Arrow IPC format
+     */
+    public ArrowStarTable( File file ) throws IOException {
+        try ( FileChannel chan =
+                  FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+
+            /* Read the footer. */
+            FlatBuf footer = readFooter( chan );
+            FlatBuf schema = footer.getTable( 1 );
+            if ( schema == null ) {
+                throw new TableFormatException( "No Arrow schema" );
+            }
+            if ( schema.getShort( 0, 0 ) != 0 ) {
+                throw new TableFormatException( "Big-endian Arrow data "
+                                              + "not supported" );
+            }
+
+            /* Identify the supported fields and work out where their
+             * data is in each record batch. */
+            int nfield = schema.getVectorLength( 1 );
+            List<ArrowField> fieldList = new ArrayList<ArrowField>();
+            List<ArrowField> allFields = new ArrayList<ArrowField>();
+            int[] nodeStarts = new int[ nfield ];
+            int[] bufStarts = new int[ nfield ];
+            int inode = 0;
+            int ibuf = 0;
+            for ( int i = 0; i < nfield; i++ ) {
+                ArrowField field =
+                    new ArrowField( schema.getTableElement( 1, i ) );
+                allFields.add( field );
+                if ( field.getContentClass() != null ) {
+                    nodeStarts[ fieldList.size() ] = inode;
+                    bufStarts[ fieldList.size() ] = ibuf;
+                    fieldList.add( field );
+                }
+                else {
+                    logger_.warning( "Ignoring unsupported Arrow field "
+                                   + field.getName() + " ("
+                                   + field.getTypeName() + ")" );
+                }
+                inode += field.getNodeCount();
+                ibuf += field.getBufferCount();
+            }
+            fields_ = fieldList.toArray( new ArrowField[ 0 ] );
+            ncol_ = fields_.length;
+            nodeStarts_ = Arrays.copyOf( nodeStarts, ncol_ );
+            bufStarts_ = Arrays.copyOf( bufStarts, ncol_ );
+
+            /* Set up metadata. */
+            colInfos_ = new ColumnInfo[ ncol_ ];
+            for ( int ic = 0; ic < ncol_; ic++ ) {
+                colInfos_[ ic ] = createColumnInfo( fields_[ ic ] );
+            }
+            String name = ArrowField.readMetadata( schema, 2 ).get( NAME_KEY );
+            setName( name == null ? file.getName() : name );
+
+            /* Load dictionaries. */
+            dicts_ = new HashMap<Long,ArrowVector>();
+            Map<Long,Integer> dictLengths = new HashMap<Long,Integer>();
+            int ndict = footer.getVectorLength( 2 );
+            for ( int id = 0; id < ndict; id++ ) {
+                BlockMessage msg = readBlockMessage( chan, footer, 2, id );
+                FlatBuf db = msg.getHeader( H_DICTIONARY_BATCH );
+                Long dictId = Long.valueOf( db.getLong( 0, 0 ) );
+                ArrowField dfield = findDictionaryField( allFields, dictId );
+                if ( dfield != null ) {
+                    ArrowBatch batch =
+                        new ArrowBatch( db.getTable( 1 ), msg.body_ );
+                    ArrowVector vec =
+                        dfield.createValueVector( batch, new int[ 2 ],
+                                                  dicts_ );
+                    int leng = (int) batch.getRowCount();
+                    ArrowVector vec0 = dicts_.get( dictId );
+                    if ( db.getBoolean( 2, false ) && vec0 != null ) {
+                        int leng0 = dictLengths.get( dictId ).intValue();
+                        vec = new ArrowVector
+                                 .ConcatVector( vec0, leng0, vec );
+                        leng += leng0;
+                    }
+                    dicts_.put( dictId, vec );
+                    dictLengths.put( dictId, Integer.valueOf( leng ) );
+                }
+            }
+
+            /* Map record batches. */
+            int nbatch = footer.getVectorLength( 3 );
+            batches_ = new ArrowBatch[ nbatch ];
+            batchRow0s_ = new long[ nbatch + 1 ];
+            sharedVecs_ = new ArrowVector[ nbatch ][];
+            for ( int ib = 0; ib < nbatch; ib++ ) {
+                BlockMessage msg = readBlockMessage( chan, footer, 3, ib );
+                ArrowBatch batch =
+                    new ArrowBatch( msg.getHeader( H_RECORD_BATCH ),
+                                    msg.body_ );
+                batches_[ ib ] = batch;
+                batchRow0s_[ ib + 1 ] = batchRow0s_[ ib ]
+                                      + batch.getRowCount();
+                if ( ! batch.isCompressed() ) {
+                    sharedVecs_[ ib ] = new ArrowVector[ ncol_ ];
+                }
+            }
+        }
+        randomReader_ = new BatchReader();
+    }
+
+    public int getColumnCount() {
+        return ncol_;
+    }
+
+    public ColumnInfo getColumnInfo( int icol ) {
+        return colInfos_[ icol ];
+    }
+
+    public long getRowCount() {
+        return batchRow0s_[ batches_.length ];
+    }
+
+    /**
+     * Returns the number of Arrow record batches in this table.
+     *
+     * @return  record batch count
+     */
+    public int getBatchCount() {
+        return batches_.length;
+    }
+
+    @Override
+    public boolean isRandom() {
+        return true;
+    }
+
+    @Override
+    public Object getCell( long irow, int icol ) throws IOException {
+        int ib = getBatchIndex( irow );
+        int ir = (int) ( irow - batchRow0s_[ ib ] );
+        synchronized ( randomReader_ ) {
+            return randomReader_.getVector( ib, icol ).getValue( ir );
+        }
+    }
+
+    @Override
+    public Object[] getRow( long irow ) throws IOException {
+        int ib = getBatchIndex( irow );
+        int ir = (int) ( irow - batchRow0s_[ ib ] );
+        Object[] row = new Object[ ncol_ ];
+        synchronized ( randomReader_ ) {
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] = randomReader_.getVector( ib, icol )
+                                           .getValue( ir );
+            }
+        }
+        return row;
+    }
+
+    public RowSequence getRowSequence() {
+        return getRowSplittable();
+    }
+
+    @Override
+    public RowSplittable getRowSplittable() {
+        return new BatchRowSplittable( 0, batches_.length );
+    }
+
+    /**
+     * Returns the index of the record batch containing a given row.
+     *
+     * @param  irow  row index
+     * @return  batch index
+     */
+    private int getBatchIndex( long irow ) {
+        if ( irow < 0 || irow >= getRowCount() ) {
+            throw new IllegalArgumentException( "No such row " + irow );
+        }
+        int ib = Arrays.binarySearch( batchRow0s_, irow );
+        if ( ib < 0 ) {
+            return -ib - 2;
+        }
+
+        /* Skip any empty batches. */
+        while ( batchRow0s_[ ib + 1 ] == irow ) {
+            ib++;
+        }
+        return ib;
+    }
+
+    /**
+     * Reads the footer from an Arrow IPC file.
+     *
+     * @param  chan  file channel
+     * @return   Footer table
+     */
+    private static FlatBuf readFooter( FileChannel chan ) throws IOException {
+        long size = chan.size();
+        int ntail = 4 + MAGIC.length;
+        if ( size < MAGIC.length + 2 + ntail ) {
+            throw new TableFormatException( "File too short for Arrow" );
+        }
+        ByteBuffer tail = ByteBuffer.allocate( ntail )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+        readFully( chan, tail, size - ntail );
+        for ( int i = 0; i < MAGIC.length; i++ ) {
+            if ( tail.get( 4 + i ) != MAGIC[ i ] ) {
+                throw new TableFormatException( "No trailing Arrow magic" );
+            }
+        }
+        int footLeng = tail.getInt( 0 );
+        long footPos = size - ntail - footLeng;
+        if ( footLeng <= 0 || footPos < MAGIC.length ) {
+            throw new TableFormatException( "Bad Arrow footer length "
+                                          + footLeng );
+        }
+        ByteBuffer fbuf = ByteBuffer.allocate( footLeng );
+        readFully( chan, fbuf, footPos );
+        return FlatBuf.getRoot( fbuf );
+    }
+
+    /**
+     * Reads a Message from a block listed in the file footer.
+     * The whole block, including the message body, is memory-mapped.
+     *
+     * @param  chan  file channel
+     * @param  footer  footer table
+     * @param  islot  footer slot for block vector
+     * @param  iblock  index of block within vector
+     * @return  message
+     */
+    private static BlockMessage readBlockMessage( FileChannel chan, FlatBuf footer,
+                                             int islot, int iblock )
+            throws IOException {
+        long offset = footer.getStructLong( islot, iblock, 24, 0 );
+        int metaLeng = footer.getStructInt( islot, iblock, 24, 8 );
+        long bodyLeng = footer.getStructLong( islot, iblock, 24, 16 );
+        long leng = metaLeng + bodyLeng;
+        if ( offset < 0 || metaLeng < 8 || bodyLeng < 0 ||
+             offset + leng > chan.size() || leng > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Bad Arrow block " + offset
+                                          + "+" + metaLeng + "+" + bodyLeng );
+        }
+        MappedByteBuffer mbuf =
+            chan.map( FileChannel.MapMode.READ_ONLY, offset, leng );
+        mbuf.order( ByteOrder.LITTLE_ENDIAN );
+
+        /* Handle both the current encapsulated message format
+         * (continuation marker, length) and the pre-0.15 one (length). */
+        int fbStart = mbuf.getInt( 0 ) == -1 ? 8 : 4;
+        FlatBuf msg =
+            FlatBuf.getRoot( ArrowBatch.slice( mbuf, fbStart,
+                                               metaLeng - fbStart ) );
+        return new BlockMessage( msg, ArrowBatch.slice( mbuf, metaLeng,
+                                                        (int) bodyLeng ) );
+    }
+
+    /**
+     * Locates the field, at any depth, that uses a given dictionary.
+     *
+     * @param  fields  candidate fields
+     * @param  dictId  dictionary ID
+     * @return  field, or null if not found
+     */
+    private static ArrowField findDictionaryField( List<ArrowField> fields,
+                                                   Long dictId ) {
+        for ( ArrowField field : fields ) {
+            if ( field.getDictionaryId() == dictId.longValue() ) {
+                return field;
+            }
+            ArrowField f = findDictionaryField( field.getChildren(), dictId );
+            if ( f != null ) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates column metadata for a field.
+     *
+     * @param  field  field
+     * @return  column metadata
+     */
+    private static ColumnInfo createColumnInfo( ArrowField field ) {
+        ColumnInfo info =
+            new ColumnInfo( field.getName(), field.getContentClass(), null );
+        info.setNullable( field.isNullable() );
+        info.setUnitString( field.getTypeUnit() );
+        int fixedSize = field.getFixedListSize();
+        if ( fixedSize >= 0 ) {
+            info.setShape( new int[] { fixedSize } );
+        }
+        for ( Map.Entry<String,String> entry :
+              field.getMetadata().entrySet() ) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            if ( key.equals( FeatherStarTable.UCD_KEY ) ) {
+                info.setUCD( value );
+            }
+            else if ( key.equals( FeatherStarTable.UTYPE_KEY ) ) {
+                info.setUtype( value );
+            }
+            else if ( key.equals( FeatherStarTable.UNIT_KEY ) ) {
+                info.setUnitString( value );
+            }
+            else if ( key.equals( FeatherStarTable.DESCRIPTION_KEY ) ) {
+                info.setDescription( value );
+            }
+            else if ( key.equals( FeatherStarTable.SHAPE_KEY ) &&
+                      info.isArray() ) {
+                info.setShape( DefaultValueInfo.unformatShape( value ) );
+            }
+        }
+        info.setAuxDatum( new DescribedValue( ATYPE_INFO,
+                                              field.getTypeName() ) );
+        if ( field.isUnsignedByte() ) {
+            info.setAuxDatum( new DescribedValue( Tables.UBYTE_FLAG_INFO,
+                                                  Boolean.TRUE ) );
+        }
+        return info;
+    }
+
+    /**
+     * Reads bytes from a file channel until a buffer is full.
+     *
+     * @param  chan  channel
+     * @param  buf   destination buffer
+     * @param  pos   file offset
+     */
+    private static void readFully( FileChannel chan, ByteBuffer buf, long pos )
+            throws IOException {
+        while ( buf.hasRemaining() ) {
+            int n = chan.read( buf, pos );
+            if ( n < 0 ) {
+                throw new TableFormatException( "Unexpected end of file" );
+            }
+            pos += n;
+        }
+        buf.flip();
+    }
+
+    /**
+     * Aggregates a Message table and its associated body.
+     */
+    private static class BlockMessage {
+        final FlatBuf msg_;
+        final ByteBuffer body_;
+
+        /**
+         * Constructor.
+         *
+         * @param  msg  message table
+         * @param  body  message body
+         */
+        BlockMessage( FlatBuf msg, ByteBuffer body ) {
+            msg_ = msg;
+            body_ = body;
+        }
+
+        /**
+         * Returns the message header, checking that it has the
+         * expected type.
+         *
+         * @param  htype  required header type code
+         * @return  header table
+         */
+        FlatBuf getHeader( int htype ) throws TableFormatException {
+            int mtype = msg_.getByte( 1, 0 );
+            FlatBuf header = msg_.getTable( 2 );
+            if ( mtype != htype || header == null ) {
+                throw new TableFormatException( "Unexpected Arrow message "
+                                              + "type " + mtype );
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Provides column vectors for record batches, caching those
+     * for the most recently used batch.
+     * Vectors for uncompressed batches are just views of the mapped
+     * file and are shared between readers; vectors for compressed
+     * batches hold decompressed data and are private to each reader.
+     * Instances of this class are not thread-safe.
+     */
+    private class BatchReader {
+        private int ibatch_ = -1;
+        private ArrowVector[] vecs_;
+
+        /**
+         * Returns the vector for a given column in a given batch.
+         *
+         * @param  ib  batch index
+         * @param  icol  column index
+         * @return  vector
+         */
+        ArrowVector getVector( int ib, int icol ) throws IOException {
+            if ( ib != ibatch_ ) {
+                ibatch_ = ib;
+                vecs_ = sharedVecs_[ ib ] != null ? sharedVecs_[ ib ]
+                                                  : new ArrowVector[ ncol_ ];
+            }
+            ArrowVector vec = vecs_[ icol ];
+            if ( vec == null ) {
+
+                /* If two threads race to create the same shared vector
+                 * they will create equivalent immutable objects,
+                 * so no synchronization is required. */
+                int[] pos = new int[] { nodeStarts_[ icol ],
+                                        bufStarts_[ icol ] };
+                vec = fields_[ icol ].createVector( batches_[ ib ], pos,
+                                                    dicts_ );
+                vecs_[ icol ] = vec;
+            }
+            return vec;
+        }
+
+        /**
+         * Discards any cached data.
+         */
+        void clear() {
+            ibatch_ = -1;
+            vecs_ = null;
+        }
+    }
+
+    /**
+     * RowSplittable implementation that iterates over a range of
+     * record batches.
+     */
+    private class BatchRowSplittable implements RowSplittable {
+
+        private final BatchReader reader_;
+        private int ibatch_;
+        private int ihi_;
+        private int nInBatch_;
+        private int irInBatch_;
+        private long irow_;
+        private boolean hasRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ilo   index of first record batch (inclusive)
+         * @param  ihi   index of last record batch (exclusive)
+         */
+        BatchRowSplittable( int ilo, int ihi ) {
+            ibatch_ = ilo - 1;
+            ihi_ = ihi;
+            reader_ = new BatchReader();
+            irow_ = -1;
+        }
+
+        public RowSplittable split() {
+            int ilo = ibatch_ + 1;
+            if ( irow_ < 0 && ihi_ - ilo >= 2 ) {
+                int mid = ( ilo + ihi_ ) / 2;
+                RowSplittable other = new BatchRowSplittable( mid, ihi_ );
+                ihi_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return batchRow0s_[ ihi_ ] - batchRow0s_[ ibatch_ + 1 ];
+        }
+
+        public LongSupplier rowIndex() {
+            return () -> irow_;
+        }
+
+        public boolean next() {
+            while ( irInBatch_ + 1 >= nInBatch_ ) {
+                if ( ibatch_ + 1 < ihi_ ) {
+                    ibatch_++;
+                    nInBatch_ = (int) batches_[ ibatch_ ].getRowCount();
+                    irInBatch_ = -1;
+                    irow_ = batchRow0s_[ ibatch_ ] - 1;
+                }
+                else {
+                    hasRow_ = false;
+                    return false;
+                }
+            }
+            irInBatch_++;
+            irow_++;
+            hasRow_ = true;
+            return true;
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            if ( ! hasRow_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+            return reader_.getVector( ibatch_, icol ).getValue( irInBatch_ );
+        }
+
+        public Object[] getRow() throws IOException {
+            Object[] row = new Object[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] = getCell( icol );
+            }
+            return row;
+        }
+
+        public void close() {
+            reader_.clear();
+            ibatch_ = ihi_;
+            hasRow_ = false;
+        }
+    }
+}
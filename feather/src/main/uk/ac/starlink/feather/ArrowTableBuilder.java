@@ -0,0 +1,96 @@
+package uk.ac.starlink.feather;
+
+import java.awt.datatransfer.DataFlavor;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableBuilder;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
+import uk.ac.starlink.util.Compression;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.URLDataSource;
+import uk.ac.starlink.util.URLUtils;
+
+/**
+ * TableBuilder implementation for Apache Arrow IPC file format,
+ * also known as Feather version 2.
+ * Since record batches are memory-mapped, only uncompressed local files
+ * are supported.
+ */
+public class ArrowTableBuilder implements TableBuilder {
+
+    public ArrowTableBuilder() {
+    }
+
+    public String getFormatName() {
+        return "arrow";
+    }
+
+    public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
+                                    StoragePolicy storagePolicy )
+            throws IOException {
+        if ( ! isMagic( datsrc.getIntro() ) ) {
+            throw new TableFormatException( "No ARROW1 magic number" );
+        }
+        File afile = getFile( datsrc );
+        if ( afile != null && datsrc.getCompression() == Compression.NONE ) {
+            return new ArrowStarTable( afile );
+        }
+        else {
+            throw new TableFormatException( "Only uncompressed files supported"
+                                          + " for Arrow" );
+        }
+    }
+
+    public boolean canImport( DataFlavor flavor ) {
+        return false;
+    }
+
+    public void streamStarTable( InputStream in, TableSink sink, String pos )
+            throws IOException {
+        throw new TableFormatException( "Can't stream from Arrow file format" );
+    }
+
+    /**
+     * Indicates whether a buffer starts with the Arrow IPC file
+     * magic number.
+     *
+     * @param  intro  first few bytes of a file
+     * @return  true iff it looks like an Arrow IPC file
+     */
+    public static boolean isMagic( byte[] intro ) {
+        byte[] magic = ArrowStarTable.MAGIC;
+        if ( intro.length < magic.length ) {
+            return false;
+        }
+        for ( int i = 0; i < magic.length; i++ ) {
+            if ( intro[ i ] != magic[ i ] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a file corresponding to a DataSource, if possible.
+     *
+     * @param  datsrc  data source
+     * @return   corresponding file, or null if it's not a file
+     */
+    private static File getFile( DataSource datsrc ) {
+        if ( datsrc instanceof FileDataSource ) {
+            return ((FileDataSource) datsrc).getFile();
+        }
+        else if ( datsrc instanceof URLDataSource ) {
+            return URLUtils
+                  .urlToFile( ((URLDataSource) datsrc).getURL().toString() );
+        }
+        else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package uk.ac.starlink.feather;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StreamStarTableWriter;
+import uk.ac.starlink.util.IntList;
+
+/**
+ * StarTableWriter implementation for writing to Apache Arrow IPC file
+ * format, also known as Feather version 2.
+ *
+ * <p>Rows are accumulated in memory up to a configurable record batch
+ * size before being written out as uncompressed record batches,
+ * so that the output can be memory-mapped and read without copying
+ * by {@link ArrowStarTable} or by other Arrow implementations.
+ * Scalar columns and one-dimensional array columns are written;
+ * array columns with a fixed shape are written as fixed-size lists.
+ * Column metadata is stored as field custom metadata using the same
+ * keys as the {@link FeatherTableWriter}.
+ */
+public class ArrowTableWriter extends StreamStarTableWriter {
+
+    private final long batchSize_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.feather" );
+
+    /** Default approximate record batch size in bytes. */
+    public static final long DFLT_BATCH_SIZE = 64L * 1024 * 1024;
+
+    /* Message header union tag values and metadata version from
+     * Message.fbs and Schema.fbs. */
+    private static final int H_SCHEMA = 1;
+    private static final int H_RECORD_BATCH = 3;
+    private static final int VERSION_V5 = 4;
+
+    /**
+     * Default constructor.
+     */
+    public ArrowTableWriter() {
+        this( DFLT_BATCH_SIZE );
+    }
+
+    /**
+     * Constructs a writer with a custom record batch size.
+     *
+     * @param  batchSize  approximate number of bytes in each record batch
+     */
+    public ArrowTableWriter( long batchSize ) {
+        batchSize_ = batchSize;
+    }
+
+    public String getFormatName() {
+        return "arrow";
+    }
+
+    public String getMimeType() {
+        return "application/vnd.apache.arrow.file";
+    }
+
+    /**
+     * Returns true for files with extension ".arrow".
+     */
+    public boolean looksLikeFile( String loc ) {
+        return loc.toLowerCase().endsWith( ".arrow" );
+    }
+
+    public void writeStarTable( StarTable table, OutputStream out )
+            throws IOException {
+
+        /* Get encoders for those columns that can be output. */
+        int ncol = table.getColumnCount();
+        List<ArrowEncoder> encList = new ArrayList<ArrowEncoder>();
+        IntList icList = new IntList();
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            ColumnInfo info = table.getColumnInfo( ic );
+            ArrowEncoder enc = ArrowEncoder.createEncoder( info );
+            if ( enc != null ) {
+                icList.add( ic );
+                encList.add( enc );
+            }
+            else {
+                logger_.warning( "Can't encode column " + info + " to "
+                               + getFormatName() + " format" );
+            }
+        }
+        ArrowEncoder[] encoders = encList.toArray( new ArrowEncoder[ 0 ] );
+        int[] ics = icList.toIntArray();
+        int nenc = encoders.length;
+
+        /* Assemble the schema. */
+        List<FlatBufBuilder.Table> fieldList =
+            new ArrayList<FlatBufBuilder.Table>();
+        for ( int jc = 0; jc < nenc; jc++ ) {
+            ColumnInfo info = table.getColumnInfo( ics[ jc ] );
+            fieldList.add( encoders[ jc ]
+                          .createField( info.getName(),
+                                        getColumnMetadata( info ) ) );
+        }
+        FlatBufBuilder.Table schema = new FlatBufBuilder.Table()
+           .addShort( 0, 0 )
+           .addRef( 1, new FlatBufBuilder.TableVector( fieldList ) );
+        String name = table.getName();
+        if ( name != null && name.trim().length() > 0 ) {
+            Map<String,String> tmeta = new LinkedHashMap<String,String>();
+            tmeta.put( ArrowStarTable.NAME_KEY, name );
+            schema.addRef( 2, ArrowEncoder.createKeyValues( tmeta ) );
+        }
+
+        /* Write the header and schema message. */
+        CountOutputStream cout = new CountOutputStream( out );
+        cout.write( ArrowStarTable.MAGIC );
+        cout.write( new byte[ 2 ] );
+        writeMessage( cout, H_SCHEMA, schema, new ArrayList<byte[]>() );
+
+        /* Write the data, one record batch at a time. */
+        List<long[]> blockList = new ArrayList<long[]>();
+        long nbrow = 0;
+        RowSequence rseq = table.getRowSequence();
+        try {
+            while ( rseq.next() ) {
+                Object[] row = rseq.getRow();
+                for ( int jc = 0; jc < nenc; jc++ ) {
+                    encoders[ jc ].addValue( row[ ics[ jc ] ] );
+                }
+                nbrow++;
+                if ( getBufferedSize( encoders ) >= batchSize_ ) {
+                    blockList.add( writeBatch( encoders, nbrow, cout ) );
+                    nbrow = 0;
+                }
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        if ( nbrow > 0 ) {
+            blockList.add( writeBatch( encoders, nbrow, cout ) );
+        }
+
+        /* Write end-of-stream marker. */
+        cout.write( intBytes( -1 ) );
+        cout.write( intBytes( 0 ) );
+
+        /* Write the footer. */
+        long[] blocks = new long[ 3 * blockList.size() ];
+        for ( int ib = 0; ib < blockList.size(); ib++ ) {
+            System.arraycopy( blockList.get( ib ), 0, blocks, 3 * ib, 3 );
+        }
+        FlatBufBuilder.Table footer = new FlatBufBuilder.Table()
+           .addShort( 0, VERSION_V5 )
+           .addRef( 1, schema )
+           .addRef( 3, new FlatBufBuilder
+                          .StructVector( blocks, blockList.size() ) );
+        byte[] footBytes = FlatBufBuilder.toBytes( footer );
+        cout.write( footBytes );
+        cout.write( intBytes( footBytes.length ) );
+        cout.write( ArrowStarTable.MAGIC );
+        cout.flush();
+    }
+
+    /**
+     * Writes the data accumulated by a set of encoders as a
+     * RecordBatch message.
+     *
+     * @param  encoders  column encoders
+     * @param  nrow   number of rows in batch
+     * @param  out   destination stream
+     * @return  3-element array giving the (offset, metaDataLength,
+     *          bodyLength) members of a footer Block struct
+     */
+    private static long[] writeBatch( ArrowEncoder[] encoders, long nrow,
+                                      CountOutputStream out )
+            throws IOException {
+        List<long[]> nodes = new ArrayList<long[]>();
+        List<byte[]> bufs = new ArrayList<byte[]>();
+        for ( ArrowEncoder enc : encoders ) {
+            enc.flushBatch( nodes, bufs );
+        }
+        long[] nodeVals = new long[ 2 * nodes.size() ];
+        for ( int i = 0; i < nodes.size(); i++ ) {
+            nodeVals[ 2 * i + 0 ] = nodes.get( i )[ 0 ];
+            nodeVals[ 2 * i + 1 ] = nodes.get( i )[ 1 ];
+        }
+        long[] bufVals = new long[ 2 * bufs.size() ];
+        long off = 0;
+        for ( int i = 0; i < bufs.size(); i++ ) {
+            int leng = bufs.get( i ).length;
+            bufVals[ 2 * i + 0 ] = off;
+            bufVals[ 2 * i + 1 ] = leng;
+            off += pad8( leng );
+        }
+        FlatBufBuilder.Table batch = new FlatBufBuilder.Table()
+           .addLong( 0, nrow )
+           .addRef( 1, new FlatBufBuilder
+                          .StructVector( nodeVals, nodes.size() ) )
+           .addRef( 2, new FlatBufBuilder
+                          .StructVector( bufVals, bufs.size() ) );
+        long offset = out.count_;
+        long[] lengs = writeMessage( out, H_RECORD_BATCH, batch, bufs );
+        return new long[] { offset, lengs[ 0 ], lengs[ 1 ] };
+    }
+
+    /**
+     * Writes an encapsulated IPC message.
+     *
+     * @param  out  destination stream, positioned at an 8-byte boundary
+     * @param  htype  message header type code
+     * @param  header  message header table
+     * @param  bufs   contents of buffers making up the message body
+     * @return  2-element array giving (metadata length, body length)
+     */
+    private static long[] writeMessage( OutputStream out, int htype,
+                                        FlatBufBuilder.Table header,
+                                        List<byte[]> bufs )
+            throws IOException {
+        long bodyLeng = 0;
+        for ( byte[] buf : bufs ) {
+            bodyLeng += pad8( buf.length );
+        }
+        FlatBufBuilder.Table msg = new FlatBufBuilder.Table()
+           .addShort( 0, VERSION_V5 )
+           .addByte( 1, htype )
+           .addRef( 2, header )
+           .addLong( 3, bodyLeng );
+        byte[] msgBytes = FlatBufBuilder.toBytes( msg );
+        out.write( intBytes( -1 ) );
+        out.write( intBytes( msgBytes.length ) );
+        out.write( msgBytes );
+        for ( byte[] buf : bufs ) {
+            out.write( buf );
+            out.write( new byte[ (int) ( pad8( buf.length ) - buf.length ) ] );
+        }
+        return new long[] { 8 + msgBytes.length, bodyLeng };
+    }
+
+    /**
+     * Returns the field custom metadata recording column metadata
+     * that is not otherwise represented in Arrow.
+     *
+     * @param  info  column metadata
+     * @return  key-value map
+     */
+    private static Map<String,String> getColumnMetadata( ColumnInfo info ) {
+        Map<String,String> map = new LinkedHashMap<String,String>();
+        addMetadata( map, FeatherStarTable.UNIT_KEY, info.getUnitString() );
+        addMetadata( map, FeatherStarTable.UCD_KEY, info.getUCD() );
+        addMetadata( map, FeatherStarTable.UTYPE_KEY, info.getUtype() );
+        addMetadata( map, FeatherStarTable.DESCRIPTION_KEY,
+                     info.getDescription() );
+        int[] shape = info.getShape();
+        if ( info.isArray() && shape != null &&
+             ! ( shape.length == 1 && shape[ 0 ] < 0 ) ) {
+            addMetadata( map, FeatherStarTable.SHAPE_KEY,
+                         DefaultValueInfo.formatShape( shape ) );
+        }
+        return map;
+    }
+
+    /**
+     * Adds an entry to a map if the value is non-blank.
+     *
+     * @param  map  map
+     * @param  key   key
+     * @param  value  value, may be null
+     */
+    private static void addMetadata( Map<String,String> map,
+                                     String key, String value ) {
+        if ( value != null && value.trim().length() > 0 ) {
+            map.put( key, value );
+        }
+    }
+
+    /**
+     * Returns the total number of bytes buffered by a set of encoders.
+     *
+     * @param  encoders  column encoders
+     * @return  buffered byte count
+     */
+    private static long getBufferedSize( ArrowEncoder[] encoders ) {
+        long size = 0;
+        for ( ArrowEncoder enc : encoders ) {
+            size += enc.getBufferedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Rounds a length up to a multiple of 8.
+     *
+     * @param  leng  length
+     * @return  padded length
+     */
+    private static long pad8( long leng ) {
+        return ( leng + 7 ) & ~7L;
+    }
+
+    /**
+     * Returns the little-endian representation of an int.
+     *
+     * @param  value  value
+     * @return  4-byte array
+     */
+    private static byte[] intBytes( int value ) {
+        return new byte[] {
+            (byte) value, (byte) ( value >>> 8 ),
+            (byte) ( value >>> 16 ), (byte) ( value >>> 24 ),
+        };
+    }
+
+    /**
+     * OutputStream wrapper that counts the bytes written.
+     */
+    private static class CountOutputStream extends FilterOutputStream {
+        long count_;
+        CountOutputStream( OutputStream out ) {
+            super( out );
+        }
+        @Override
+        public void write( int b ) throws IOException {
+            out.write( b );
+            count_++;
+        }
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+            count_ += len;
+        }
+    }
+}
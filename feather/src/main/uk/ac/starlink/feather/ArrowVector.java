@@ -0,0 +1,575 @@
+package uk.ac.starlink.feather;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Provides typed access to the values of an Arrow array
+ * within a single record batch.
+ * Data is read directly from the supplied buffers,
+ * which will typically be slices of a memory-mapped file.
+ */
+abstract class ArrowVector {
+
+    private final ByteBuffer validity_;
+
+    /**
+     * Constructor.
+     *
+     * @param  validity  validity bitmap buffer, or null if all values
+     *                   are valid
+     */
+    protected ArrowVector( ByteBuffer validity ) {
+        validity_ = validity != null && validity.limit() > 0 ? validity
+                                                             : null;
+    }
+
+    /**
+     * Returns the value at a given index, assumed non-null.
+     *
+     * @param  i  element index
+     * @return  value
+     */
+    abstract Object getNonNull( int i );
+
+    /**
+     * Indicates whether the value at a given index is null.
+     *
+     * @param  i  element index
+     * @return  true iff value is null
+     */
+    public boolean isNull( int i ) {
+        return validity_ != null
+            && ( validity_.get( i >>> 3 ) & ( 1 << ( i & 0x7 ) ) ) == 0;
+    }
+
+    /**
+     * Returns the value at a given index.
+     *
+     * @param  i  element index
+     * @return  value, may be null
+     */
+    public Object getValue( int i ) {
+        return isNull( i ) ? null : getNonNull( i );
+    }
+
+    /**
+     * Returns a run of values as a java array.
+     * Only implemented for types that may be list elements.
+     *
+     * @param  start  index of first element
+     * @param  n     number of elements
+     * @return   array of primitives or Strings
+     */
+    public Object getArray( int start, int n ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the value at a given index as an integer.
+     * Only implemented for integer types.
+     *
+     * @param  i  element index
+     * @return  integer value
+     */
+    public long getLong( int i ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Vector of signed 8-bit integers.
+     */
+    static class Int8Vector extends ArrowVector {
+        private final ByteBuffer buf_;
+        Int8Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data;
+        }
+        Object getNonNull( int i ) {
+            return Byte.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            byte[] a = new byte[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = buf_.get( start + j );
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of unsigned 8-bit integers, presented as Shorts.
+     */
+    static class UInt8Vector extends ArrowVector {
+        private final ByteBuffer buf_;
+        UInt8Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data;
+        }
+        Object getNonNull( int i ) {
+            return Short.valueOf( (short) getLong( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i ) & 0xff;
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            short[] a = new short[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = (short) ( buf_.get( start + j ) & 0xff );
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of signed 16-bit integers.
+     */
+    static class Int16Vector extends ArrowVector {
+        private final ShortBuffer buf_;
+        Int16Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asShortBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Short.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            short[] a = new short[ n ];
+            ShortBuffer b = buf_.duplicate();
+            b.position( start );
+            b.get( a );
+            return a;
+        }
+    }
+
+    /**
+     * Vector of unsigned 16-bit integers, presented as Integers.
+     */
+    static class UInt16Vector extends ArrowVector {
+        private final ShortBuffer buf_;
+        UInt16Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asShortBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Integer.valueOf( (int) getLong( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i ) & 0xffff;
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            int[] a = new int[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = buf_.get( start + j ) & 0xffff;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of signed 32-bit integers.
+     */
+    static class Int32Vector extends ArrowVector {
+        private final IntBuffer buf_;
+        Int32Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asIntBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Integer.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            int[] a = new int[ n ];
+            IntBuffer b = buf_.duplicate();
+            b.position( start );
+            b.get( a );
+            return a;
+        }
+    }
+
+    /**
+     * Vector of unsigned 32-bit integers, presented as Longs.
+     */
+    static class UInt32Vector extends ArrowVector {
+        private final IntBuffer buf_;
+        UInt32Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asIntBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Long.valueOf( getLong( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i ) & 0xffffffffL;
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            long[] a = new long[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = buf_.get( start + j ) & 0xffffffffL;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of 64-bit integers.
+     */
+    static class Int64Vector extends ArrowVector {
+        private final LongBuffer buf_;
+        Int64Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asLongBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Long.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public long getLong( int i ) {
+            return buf_.get( i );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            long[] a = new long[ n ];
+            LongBuffer b = buf_.duplicate();
+            b.position( start );
+            b.get( a );
+            return a;
+        }
+    }
+
+    /**
+     * Vector of half-precision floating point values,
+     * presented as Floats.
+     */
+    static class Float16Vector extends ArrowVector {
+        private final ShortBuffer buf_;
+        Float16Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asShortBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Float.valueOf( halfToFloat( buf_.get( i ) ) );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            float[] a = new float[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = isNull( start + j )
+                       ? Float.NaN
+                       : halfToFloat( buf_.get( start + j ) );
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of single-precision floating point values.
+     */
+    static class Float32Vector extends ArrowVector {
+        private final FloatBuffer buf_;
+        Float32Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asFloatBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Float.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            float[] a = new float[ n ];
+            FloatBuffer b = buf_.duplicate();
+            b.position( start );
+            b.get( a );
+            for ( int j = 0; j < n; j++ ) {
+                if ( isNull( start + j ) ) {
+                    a[ j ] = Float.NaN;
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of double-precision floating point values.
+     */
+    static class Float64Vector extends ArrowVector {
+        private final DoubleBuffer buf_;
+        Float64Vector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data.asDoubleBuffer();
+        }
+        Object getNonNull( int i ) {
+            return Double.valueOf( buf_.get( i ) );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            double[] a = new double[ n ];
+            DoubleBuffer b = buf_.duplicate();
+            b.position( start );
+            b.get( a );
+            for ( int j = 0; j < n; j++ ) {
+                if ( isNull( start + j ) ) {
+                    a[ j ] = Double.NaN;
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Vector of bit-packed booleans.
+     */
+    static class BoolVector extends ArrowVector {
+        private final ByteBuffer buf_;
+        BoolVector( ByteBuffer validity, ByteBuffer data ) {
+            super( validity );
+            buf_ = data;
+        }
+        Object getNonNull( int i ) {
+            return Boolean.valueOf( getBit( i ) );
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            boolean[] a = new boolean[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                a[ j ] = getBit( start + j );
+            }
+            return a;
+        }
+        private boolean getBit( int i ) {
+            return ( buf_.get( i >>> 3 ) & ( 1 << ( i & 0x7 ) ) ) != 0;
+        }
+    }
+
+    /**
+     * Vector of variable-length byte arrays or UTF-8 strings.
+     */
+    static class VarBinaryVector extends ArrowVector {
+        private final IntBuffer offs32_;
+        private final LongBuffer offs64_;
+        private final ByteBuffer data_;
+        private final boolean isUtf8_;
+
+        /**
+         * Constructor.
+         *
+         * @param  validity  validity buffer
+         * @param  offsets   offsets buffer
+         * @param  data    value data buffer
+         * @param  isLarge  true for 64-bit offsets, false for 32-bit
+         * @param  isUtf8   true to present values as Strings,
+         *                  false for byte arrays
+         */
+        VarBinaryVector( ByteBuffer validity, ByteBuffer offsets,
+                         ByteBuffer data, boolean isLarge, boolean isUtf8 ) {
+            super( validity );
+            offs32_ = isLarge ? null : offsets.asIntBuffer();
+            offs64_ = isLarge ? offsets.asLongBuffer() : null;
+            data_ = data;
+            isUtf8_ = isUtf8;
+        }
+        Object getNonNull( int i ) {
+            final int off0;
+            final int off1;
+            if ( offs32_ != null ) {
+                off0 = offs32_.get( i );
+                off1 = offs32_.get( i + 1 );
+            }
+            else {
+                off0 = (int) offs64_.get( i );
+                off1 = (int) offs64_.get( i + 1 );
+            }
+            byte[] bytes = new byte[ off1 - off0 ];
+            ByteBuffer b = data_.duplicate();
+            b.position( off0 );
+            b.get( bytes );
+            return isUtf8_ ? new String( bytes, StandardCharsets.UTF_8 )
+                           : bytes;
+        }
+        @Override
+        public Object getArray( int start, int n ) {
+            if ( isUtf8_ ) {
+                String[] a = new String[ n ];
+                for ( int j = 0; j < n; j++ ) {
+                    a[ j ] = (String) getValue( start + j );
+                }
+                return a;
+            }
+            else {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /**
+     * Vector of fixed-length byte arrays.
+     */
+    static class FixedBinaryVector extends ArrowVector {
+        private final ByteBuffer data_;
+        private final int width_;
+        FixedBinaryVector( ByteBuffer validity, ByteBuffer data, int width ) {
+            super( validity );
+            data_ = data;
+            width_ = width;
+        }
+        Object getNonNull( int i ) {
+            byte[] bytes = new byte[ width_ ];
+            ByteBuffer b = data_.duplicate();
+            b.position( i * width_ );
+            b.get( bytes );
+            return bytes;
+        }
+    }
+
+    /**
+     * Vector of variable- or fixed-length lists,
+     * presented as arrays.
+     */
+    static class ListVector extends ArrowVector {
+        private final IntBuffer offs32_;
+        private final LongBuffer offs64_;
+        private final int fixedSize_;
+        private final ArrowVector child_;
+
+        /**
+         * Constructor.
+         *
+         * @param  validity  validity buffer
+         * @param  offsets   offsets buffer, or null for fixed size
+         * @param  isLarge  true for 64-bit offsets, false for 32-bit
+         * @param  fixedSize  list size for fixed size lists, ignored
+         *                    if offsets is non-null
+         * @param  child   element vector
+         */
+        ListVector( ByteBuffer validity, ByteBuffer offsets, boolean isLarge,
+                    int fixedSize, ArrowVector child ) {
+            super( validity );
+            offs32_ = offsets == null || isLarge ? null
+                                                 : offsets.asIntBuffer();
+            offs64_ = offsets != null && isLarge ? offsets.asLongBuffer()
+                                                 : null;
+            fixedSize_ = fixedSize;
+            child_ = child;
+        }
+        Object getNonNull( int i ) {
+            if ( offs32_ != null ) {
+                int off0 = offs32_.get( i );
+                return child_.getArray( off0, offs32_.get( i + 1 ) - off0 );
+            }
+            else if ( offs64_ != null ) {
+                int off0 = (int) offs64_.get( i );
+                int off1 = (int) offs64_.get( i + 1 );
+                return child_.getArray( off0, off1 - off0 );
+            }
+            else {
+                return child_.getArray( i * fixedSize_, fixedSize_ );
+            }
+        }
+    }
+
+    /**
+     * Vector of dictionary-encoded values.
+     */
+    static class DictionaryVector extends ArrowVector {
+        private final ArrowVector indices_;
+        private final ArrowVector dict_;
+
+        /**
+         * Constructor.
+         *
+         * @param  validity  validity buffer
+         * @param  indices   integer vector of dictionary indices
+         * @param  dict    dictionary values
+         */
+        DictionaryVector( ByteBuffer validity, ArrowVector indices,
+                          ArrowVector dict ) {
+            super( validity );
+            indices_ = indices;
+            dict_ = dict;
+        }
+        Object getNonNull( int i ) {
+            return dict_.getValue( (int) indices_.getLong( i ) );
+        }
+    }
+
+    /**
+     * Vector formed by concatenating two others,
+     * used for delta dictionary batches.
+     */
+    static class ConcatVector extends ArrowVector {
+        private final ArrowVector v1_;
+        private final int n1_;
+        private final ArrowVector v2_;
+
+        /**
+         * Constructor.
+         *
+         * @param  v1  first vector
+         * @param  n1  length of first vector
+         * @param  v2  second vector
+         */
+        ConcatVector( ArrowVector v1, int n1, ArrowVector v2 ) {
+            super( null );
+            v1_ = v1;
+            n1_ = n1;
+            v2_ = v2;
+        }
+        @Override
+        public Object getValue( int i ) {
+            return i < n1_ ? v1_.getValue( i ) : v2_.getValue( i - n1_ );
+        }
+        Object getNonNull( int i ) {
+            return getValue( i );
+        }
+    }
+
+    /**
+     * Converts an IEEE 754 half-precision value to single precision.
+     *
+     * @param  h  16-bit half-precision bit pattern
+     * @return  float value
+     */
+    static float halfToFloat( short h ) {
+        int bits = h & 0xffff;
+        int sign = ( bits >>> 15 ) << 31;
+        int exp = ( bits >>> 10 ) & 0x1f;
+        int mant = bits & 0x3ff;
+        if ( exp == 0x1f ) {
+            return Float.intBitsToFloat( sign | 0x7f800000 | ( mant << 13 ) );
+        }
+        else if ( exp == 0 ) {
+            float val = mant * 0x1p-24f;
+            return sign == 0 ? val : -val;
+        }
+        else {
+            return Float.intBitsToFloat( sign | ( ( exp + 112 ) << 23 )
+                                              | ( mant << 13 ) );
+        }
+    }
+}
@@ -18,6 +18,8 @@ import uk.ac.starlink.util.URLUtils;
 
 /**
  * TableBuilder implementation for Feather format.
+ * Feather version 2 files, which are Arrow IPC files,
+ * are handled by delegating to {@link ArrowTableBuilder}.
  *
  * @author   Mark Taylor
  * @since    26 Feb 2020
@@ -34,8 +36,14 @@ public class FeatherTableBuilder implements TableBuilder {
     public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
                                     StoragePolicy storagePolicy )
             throws IOException {
+
+        /* Feather version 2 is the Arrow IPC file format. */
+        if ( ArrowTableBuilder.isMagic( datsrc.getIntro() ) ) {
+            return new ArrowTableBuilder()
+                  .makeStarTable( datsrc, wantRandom, storagePolicy );
+        }
         if ( ! FeatherTable.isMagic( datsrc.getIntro() ) ) {
-            throw new TableFormatException( "No FEA1 magic number" );
+            throw new TableFormatException( "No FEA1 or ARROW1 magic number" );
         }
         File ffile = getFile( datsrc );
         if ( ffile != null && datsrc.getCompression() == Compression.NONE ) {
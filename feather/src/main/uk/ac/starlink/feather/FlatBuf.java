@@ -0,0 +1,245 @@
+package uk.ac.starlink.feather;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal read-only view of a table in a FlatBuffers-encoded buffer,
+ * as used for Arrow IPC metadata.
+ *
+ * <p>Fields are identified by their zero-based slot index in the
+ * table's vtable, which is the order of declaration in the
+ * FlatBuffers schema, counting two slots for each union field
+ * (type tag followed by value).
+ * Absent fields give the supplied default, or null for references.
+ * No verification is performed, so corrupt input may result in
+ * RuntimeExceptions such as IndexOutOfBoundsException.
+ */
+class FlatBuf {
+
+    private final ByteBuffer buf_;
+    private final int tpos_;
+    private final int vpos_;
+    private final int vsize_;
+
+    /**
+     * Constructor.
+     *
+     * @param  buf  little-endian buffer containing the whole FlatBuffer,
+     *              starting at index zero
+     * @param  tpos  offset in buffer of the table
+     */
+    FlatBuf( ByteBuffer buf, int tpos ) {
+        buf_ = buf;
+        tpos_ = tpos;
+        vpos_ = tpos - buf.getInt( tpos );
+        vsize_ = buf.getShort( vpos_ ) & 0xffff;
+    }
+
+    /**
+     * Returns the root table of a FlatBuffer.
+     *
+     * @param  buf  buffer containing the FlatBuffer from its current
+     *              position to its limit
+     * @return  root table
+     */
+    public static FlatBuf getRoot( ByteBuffer buf ) {
+        ByteBuffer fbuf = buf.slice().order( ByteOrder.LITTLE_ENDIAN );
+        return new FlatBuf( fbuf, fbuf.getInt( 0 ) );
+    }
+
+    /**
+     * Indicates whether a given field is present.
+     *
+     * @param  islot  field slot index
+     * @return  true iff field is present
+     */
+    public boolean has( int islot ) {
+        return fieldPos( islot ) > 0;
+    }
+
+    /**
+     * Returns the value of a byte-sized field.
+     *
+     * @param  islot  field slot index
+     * @param  dflt   default value
+     * @return  field value
+     */
+    public int getByte( int islot, int dflt ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.get( p ) : dflt;
+    }
+
+    /**
+     * Returns the value of a boolean field.
+     *
+     * @param  islot  field slot index
+     * @param  dflt   default value
+     * @return  field value
+     */
+    public boolean getBoolean( int islot, boolean dflt ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.get( p ) != 0 : dflt;
+    }
+
+    /**
+     * Returns the value of a short-sized field.
+     *
+     * @param  islot  field slot index
+     * @param  dflt   default value
+     * @return  field value
+     */
+    public int getShort( int islot, int dflt ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.getShort( p ) : dflt;
+    }
+
+    /**
+     * Returns the value of an int-sized field.
+     *
+     * @param  islot  field slot index
+     * @param  dflt   default value
+     * @return  field value
+     */
+    public int getInt( int islot, int dflt ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.getInt( p ) : dflt;
+    }
+
+    /**
+     * Returns the value of a long-sized field.
+     *
+     * @param  islot  field slot index
+     * @param  dflt   default value
+     * @return  field value
+     */
+    public long getLong( int islot, long dflt ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.getLong( p ) : dflt;
+    }
+
+    /**
+     * Returns the value of a sub-table field.
+     *
+     * @param  islot  field slot index
+     * @return  table, or null if absent
+     */
+    public FlatBuf getTable( int islot ) {
+        int p = fieldPos( islot );
+        return p > 0 ? new FlatBuf( buf_, deref( p ) ) : null;
+    }
+
+    /**
+     * Returns the value of a string field.
+     *
+     * @param  islot  field slot index
+     * @return  string, or null if absent
+     */
+    public String getString( int islot ) {
+        int p = fieldPos( islot );
+        if ( p > 0 ) {
+            int spos = deref( p );
+            byte[] bytes = new byte[ buf_.getInt( spos ) ];
+            for ( int i = 0; i < bytes.length; i++ ) {
+                bytes[ i ] = buf_.get( spos + 4 + i );
+            }
+            return new String( bytes, StandardCharsets.UTF_8 );
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of elements in a vector field.
+     *
+     * @param  islot  field slot index
+     * @return  element count, zero if absent
+     */
+    public int getVectorLength( int islot ) {
+        int p = fieldPos( islot );
+        return p > 0 ? buf_.getInt( deref( p ) ) : 0;
+    }
+
+    /**
+     * Returns an element of a vector-of-tables field.
+     *
+     * @param  islot  field slot index
+     * @param  ix   element index
+     * @return  table element
+     */
+    public FlatBuf getTableElement( int islot, int ix ) {
+        int epos = vectorStart( islot ) + 4 * ix;
+        return new FlatBuf( buf_, deref( epos ) );
+    }
+
+    /**
+     * Returns a long value from within an element of a vector of structs
+     * or a vector of longs.
+     *
+     * @param  islot  field slot index
+     * @param  ix   element index
+     * @param  elSize  size in bytes of each element
+     * @param  off   offset in bytes of the value within the element
+     * @return  value
+     */
+    public long getStructLong( int islot, int ix, int elSize, int off ) {
+        return buf_.getLong( vectorStart( islot ) + ix * elSize + off );
+    }
+
+    /**
+     * Returns an int value from within an element of a vector of structs.
+     *
+     * @param  islot  field slot index
+     * @param  ix   element index
+     * @param  elSize  size in bytes of each element
+     * @param  off   offset in bytes of the value within the element
+     * @return  value
+     */
+    public int getStructInt( int islot, int ix, int elSize, int off ) {
+        return buf_.getInt( vectorStart( islot ) + ix * elSize + off );
+    }
+
+    /**
+     * Returns the buffer position of the first element of a vector field.
+     *
+     * @param  islot  field slot index
+     * @return  position of element zero
+     */
+    private int vectorStart( int islot ) {
+        int p = fieldPos( islot );
+        if ( p > 0 ) {
+            return deref( p ) + 4;
+        }
+        else {
+            throw new IndexOutOfBoundsException( "No vector at slot "
+                                               + islot );
+        }
+    }
+
+    /**
+     * Follows a uoffset reference.
+     *
+     * @param  pos  position of reference
+     * @return  position of referenced object
+     */
+    private int deref( int pos ) {
+        return pos + buf_.getInt( pos );
+    }
+
+    /**
+     * Returns the buffer position of a field.
+     *
+     * @param  islot  field slot index
+     * @return  field position, or 0 if the field is absent
+     */
+    private int fieldPos( int islot ) {
+        int vo = 4 + 2 * islot;
+        if ( vo + 2 > vsize_ ) {
+            return 0;
+        }
+        int off = buf_.getShort( vpos_ + vo ) & 0xffff;
+        return off == 0 ? 0 : tpos_ + off;
+    }
+}
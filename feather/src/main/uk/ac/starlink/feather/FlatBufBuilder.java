@@ -0,0 +1,387 @@
+package uk.ac.starlink.feather;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal FlatBuffers serializer, sufficient for writing Arrow IPC
+ * metadata.
+ *
+ * <p>Objects are assembled as a tree of {@link Node}s and then
+ * serialized front to back, so that every reference points forwards.
+ * Scalars are aligned to their own size relative to the start of
+ * the output, which must itself be 8-byte aligned when embedded.
+ */
+class FlatBufBuilder {
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private FlatBufBuilder() {
+    }
+
+    /**
+     * Serializes a FlatBuffer with a given root table.
+     * The result is padded to a multiple of 8 bytes.
+     *
+     * @param  root  root table
+     * @return  serialized FlatBuffer
+     */
+    public static byte[] toBytes( Table root ) {
+        Out out = new Out();
+        out.putInt( 0 );
+        int rootPos = root.write( out );
+        out.setInt( 0, rootPos );
+        out.align( 8 );
+        return out.toByteArray();
+    }
+
+    /**
+     * Object that can be serialized into a FlatBuffer and referenced
+     * by offset.
+     */
+    static abstract class Node {
+
+        /**
+         * Writes this object to the end of the output.
+         *
+         * @param  out  output buffer
+         * @return  position of the object, as pointed to by references
+         */
+        abstract int write( Out out );
+    }
+
+    /**
+     * Table object.
+     */
+    static class Table extends Node {
+        private final List<Field> fields_ = new ArrayList<Field>();
+
+        /**
+         * Adds a byte-sized field.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addByte( int islot, int value ) {
+            return addField( new Field( islot, 1, value, null ) );
+        }
+
+        /**
+         * Adds a boolean field.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addBoolean( int islot, boolean value ) {
+            return addByte( islot, value ? 1 : 0 );
+        }
+
+        /**
+         * Adds a short-sized field.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addShort( int islot, int value ) {
+            return addField( new Field( islot, 2, value, null ) );
+        }
+
+        /**
+         * Adds an int-sized field.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addInt( int islot, int value ) {
+            return addField( new Field( islot, 4, value, null ) );
+        }
+
+        /**
+         * Adds a long-sized field.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addLong( int islot, long value ) {
+            return addField( new Field( islot, 8, value, null ) );
+        }
+
+        /**
+         * Adds a string field.  Null values are ignored.
+         *
+         * @param  islot  slot index
+         * @param  value  value
+         * @return  this table
+         */
+        public Table addString( int islot, String value ) {
+            return value == null ? this
+                                 : addRef( islot, new StringNode( value ) );
+        }
+
+        /**
+         * Adds a field referring to another object.
+         *
+         * @param  islot  slot index
+         * @param  node   referenced object
+         * @return  this table
+         */
+        public Table addRef( int islot, Node node ) {
+            return addField( new Field( islot, 4, 0, node ) );
+        }
+
+        private Table addField( Field field ) {
+            fields_.add( field );
+            return this;
+        }
+
+        int write( Out out ) {
+
+            /* Sort fields by decreasing size so that they can be packed
+             * with natural alignment. */
+            Field[] fields = fields_.toArray( new Field[ 0 ] );
+            Arrays.sort( fields, ( f1, f2 ) -> f2.size_ - f1.size_ );
+            int nslot = 0;
+            int tsize = 4;
+            boolean has8 = false;
+            for ( Field f : fields ) {
+                nslot = Math.max( nslot, f.islot_ + 1 );
+                tsize += f.size_;
+                has8 = has8 || f.size_ == 8;
+            }
+
+            /* Work out where the vtable and table will go.  The table
+             * start is 4-byte aligned, and if there are 8-byte fields
+             * it is offset so that they follow the soffset aligned. */
+            out.align( 2 );
+            int vpos = out.size();
+            int vsize = 4 + 2 * nslot;
+            int tpos = vpos + vsize;
+            while ( tpos % 4 != 0 || ( has8 && tpos % 8 != 4 ) ) {
+                tpos++;
+            }
+
+            /* Write vtable. */
+            short[] offsets = new short[ nslot ];
+            int off = 4;
+            for ( Field f : fields ) {
+                offsets[ f.islot_ ] = (short) off;
+                off += f.size_;
+            }
+            out.putShort( vsize );
+            out.putShort( tsize );
+            for ( short o : offsets ) {
+                out.putShort( o );
+            }
+            while ( out.size() < tpos ) {
+                out.putByte( 0 );
+            }
+
+            /* Write table inline data. */
+            out.putInt( tpos - vpos );
+            int[] refPos = new int[ fields.length ];
+            for ( int i = 0; i < fields.length; i++ ) {
+                Field f = fields[ i ];
+                refPos[ i ] = out.size();
+                switch ( f.size_ ) {
+                    case 1:
+                        out.putByte( (int) f.value_ );
+                        break;
+                    case 2:
+                        out.putShort( (int) f.value_ );
+                        break;
+                    case 4:
+                        out.putInt( (int) f.value_ );
+                        break;
+                    case 8:
+                        out.putLong( f.value_ );
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            }
+
+            /* Write referenced objects and fix up references. */
+            for ( int i = 0; i < fields.length; i++ ) {
+                Node node = fields[ i ].node_;
+                if ( node != null ) {
+                    int npos = node.write( out );
+                    out.setInt( refPos[ i ], npos - refPos[ i ] );
+                }
+            }
+            return tpos;
+        }
+    }
+
+    /**
+     * String object.
+     */
+    static class StringNode extends Node {
+        private final byte[] bytes_;
+
+        /**
+         * Constructor.
+         *
+         * @param  txt  string content
+         */
+        StringNode( String txt ) {
+            bytes_ = txt.getBytes( StandardCharsets.UTF_8 );
+        }
+
+        int write( Out out ) {
+            out.align( 4 );
+            int pos = out.size();
+            out.putInt( bytes_.length );
+            out.putBytes( bytes_ );
+            out.putByte( 0 );
+            return pos;
+        }
+    }
+
+    /**
+     * Vector of tables.
+     */
+    static class TableVector extends Node {
+        private final List<? extends Node> items_;
+
+        /**
+         * Constructor.
+         *
+         * @param  items  vector elements
+         */
+        TableVector( List<? extends Node> items ) {
+            items_ = items;
+        }
+
+        int write( Out out ) {
+            out.align( 4 );
+            int pos = out.size();
+            int n = items_.size();
+            out.putInt( n );
+            int pos0 = out.size();
+            for ( int i = 0; i < n; i++ ) {
+                out.putInt( 0 );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                int refPos = pos0 + 4 * i;
+                out.setInt( refPos, items_.get( i ).write( out ) - refPos );
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * Vector of 8-byte aligned structs, supplied as the values of
+     * their long-sized members.
+     * Each struct is represented as a fixed number of longs;
+     * smaller members must be packed into those by the caller.
+     */
+    static class StructVector extends Node {
+        private final long[] values_;
+        private final int nel_;
+
+        /**
+         * Constructor.
+         *
+         * @param  values  content of all structs laid end to end
+         * @param  nel   number of structs
+         */
+        StructVector( long[] values, int nel ) {
+            values_ = values;
+            nel_ = nel;
+        }
+
+        int write( Out out ) {
+            out.align( 4 );
+            while ( out.size() % 8 != 4 ) {
+                out.putByte( 0 );
+            }
+            int pos = out.size();
+            out.putInt( nel_ );
+            for ( long v : values_ ) {
+                out.putLong( v );
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * Describes a table field.
+     */
+    private static class Field {
+        final int islot_;
+        final int size_;
+        final long value_;
+        final Node node_;
+        Field( int islot, int size, long value, Node node ) {
+            islot_ = islot;
+            size_ = size;
+            value_ = value;
+            node_ = node;
+        }
+    }
+
+    /**
+     * Growable little-endian output buffer.
+     */
+    static class Out {
+        private byte[] buf_ = new byte[ 256 ];
+        private int size_;
+
+        int size() {
+            return size_;
+        }
+
+        void align( int n ) {
+            while ( size_ % n != 0 ) {
+                putByte( 0 );
+            }
+        }
+
+        void putByte( int b ) {
+            if ( size_ == buf_.length ) {
+                buf_ = Arrays.copyOf( buf_, buf_.length * 2 );
+            }
+            buf_[ size_++ ] = (byte) b;
+        }
+
+        void putShort( int v ) {
+            putByte( v );
+            putByte( v >> 8 );
+        }
+
+        void putInt( int v ) {
+            putShort( v );
+            putShort( v >> 16 );
+        }
+
+        void putLong( long v ) {
+            putInt( (int) v );
+            putInt( (int) ( v >> 32 ) );
+        }
+
+        void putBytes( byte[] bytes ) {
+            for ( byte b : bytes ) {
+                putByte( b );
+            }
+        }
+
+        void setInt( int pos, int v ) {
+            buf_[ pos + 0 ] = (byte) v;
+            buf_[ pos + 1 ] = (byte) ( v >> 8 );
+            buf_[ pos + 2 ] = (byte) ( v >> 16 );
+            buf_[ pos + 3 ] = (byte) ( v >> 24 );
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf( buf_, size_ );
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.starlink.feather;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Decompressor for the LZ4 frame format, as used for compressed
+ * Arrow IPC buffers.
+ *
+ * @see  <a href="https://github.com/lz4/lz4/blob/dev/doc/lz4_Frame_format.md"
+ *          >LZ4 Frame Format Description</a>
+ */
+class Lz4 {
+
+    private static final int FRAME_MAGIC = 0x184D2204;
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private Lz4() {
+    }
+
+    /**
+     * Decompresses an LZ4 frame of known uncompressed size.
+     *
+     * @param  in  buffer containing the compressed frame from its
+     *             current position to its limit
+     * @param  usize  uncompressed size
+     * @return   decompressed data
+     */
+    public static byte[] decompressFrame( ByteBuffer in, int usize )
+            throws TableFormatException {
+        ByteBuffer buf = in.slice().order( ByteOrder.LITTLE_ENDIAN );
+        byte[] out = new byte[ usize ];
+        try {
+            if ( buf.getInt() != FRAME_MAGIC ) {
+                throw new TableFormatException( "Not LZ4 frame format" );
+            }
+            int flg = buf.get() & 0xff;
+            buf.get();  // BD byte
+            if ( ( flg & 0x08 ) != 0 ) {
+                buf.getLong();  // content size
+            }
+            if ( ( flg & 0x01 ) != 0 ) {
+                throw new TableFormatException( "LZ4 dictionary IDs "
+                                              + "not supported" );
+            }
+            buf.get();  // header checksum
+            boolean hasBlockChecksum = ( flg & 0x10 ) != 0;
+            int opos = 0;
+            while ( true ) {
+                int bsize = buf.getInt();
+                if ( bsize == 0 ) {
+                    break;
+                }
+                boolean isRaw = ( bsize & 0x80000000 ) != 0;
+                bsize &= 0x7fffffff;
+                int bend = buf.position() + bsize;
+                if ( isRaw ) {
+                    buf.get( out, opos, bsize );
+                    opos += bsize;
+                }
+                else {
+                    opos = decompressBlock( buf, bend, out, opos );
+                }
+                buf.position( bend );
+                if ( hasBlockChecksum ) {
+                    buf.getInt();
+                }
+            }
+            if ( opos != usize ) {
+                throw new TableFormatException( "LZ4 size mismatch "
+                                              + opos + " != " + usize );
+            }
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new TableFormatException( "Truncated LZ4 data", e );
+        }
+        catch ( IndexOutOfBoundsException e ) {
+            throw new TableFormatException( "Corrupt LZ4 data", e );
+        }
+        return out;
+    }
+
+    /**
+     * Decompresses a single LZ4 block.
+     * Matches may refer back into the output of earlier blocks.
+     *
+     * @param  buf  input buffer positioned at block start
+     * @param  bend  position of block end in input buffer
+     * @param  out   output array
+     * @param  opos  position in output array at which to start writing
+     * @return   position in output array after writing
+     */
+    private static int decompressBlock( ByteBuffer buf, int bend,
+                                        byte[] out, int opos ) {
+        while ( buf.position() < bend ) {
+            int token = buf.get() & 0xff;
+            int nlit = readLength( buf, token >>> 4 );
+            buf.get( out, opos, nlit );
+            opos += nlit;
+            if ( buf.position() >= bend ) {
+                break;
+            }
+            int offset = buf.getShort() & 0xffff;
+            int nmatch = readLength( buf, token & 0x0f ) + 4;
+            int mpos = opos - offset;
+            if ( offset == 0 || mpos < 0 ) {
+                throw new IndexOutOfBoundsException( "Bad LZ4 offset" );
+            }
+            for ( int i = 0; i < nmatch; i++ ) {
+                out[ opos++ ] = out[ mpos++ ];
+            }
+        }
+        return opos;
+    }
+
+    /**
+     * Reads an LZ4 sequence length value.
+     *
+     * @param  buf  input buffer
+     * @param  len0  4-bit length from token
+     * @return  length
+     */
+    private static int readLength( ByteBuffer buf, int len0 ) {
+        int len = len0;
+        if ( len0 == 15 ) {
+            int b;
+            do {
+                b = buf.get() & 0xff;
+                len += b;
+            } while ( b == 255 );
+        }
+        return len;
+    }
+}
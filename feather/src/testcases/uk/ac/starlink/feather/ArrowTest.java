@@ -0,0 +1,271 @@
+package uk.ac.starlink.feather;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.TestCase;
+
+/**
+ * Small tests of Arrow IPC features that are not exercised by
+ * ArrowTableWriter.  Round-trip testing of the Arrow input and output
+ * handlers is done in uk.ac.starlink.table.FormatsTest.
+ */
+public class ArrowTest extends TestCase {
+
+    public ArrowTest( String name ) {
+        super( name );
+    }
+
+    public void testFlatBuf() {
+        FlatBufBuilder.Table inner = new FlatBufBuilder.Table()
+           .addInt( 0, -23 )
+           .addString( 1, "name" );
+        FlatBufBuilder.Table outer = new FlatBufBuilder.Table()
+           .addLong( 0, 1L << 40 )
+           .addByte( 1, 7 )
+           .addRef( 2, new FlatBufBuilder.TableVector(
+                           Arrays.asList( inner, new FlatBufBuilder.Table() )))
+           .addRef( 4, new FlatBufBuilder
+                          .StructVector( new long[] { 5, 6, 7, 8 }, 2 ) )
+           .addShort( 5, 99 );
+        byte[] bytes = FlatBufBuilder.toBytes( outer );
+        assertEquals( 0, bytes.length % 8 );
+        FlatBuf fb = FlatBuf.getRoot( ByteBuffer.wrap( bytes ) );
+        assertEquals( 1L << 40, fb.getLong( 0, 0 ) );
+        assertEquals( 7, fb.getByte( 1, 0 ) );
+        assertEquals( 2, fb.getVectorLength( 2 ) );
+        assertEquals( -23, fb.getTableElement( 2, 0 ).getInt( 0, 0 ) );
+        assertEquals( "name", fb.getTableElement( 2, 0 ).getString( 1 ) );
+        assertNull( fb.getTableElement( 2, 1 ).getString( 1 ) );
+        assertFalse( fb.has( 3 ) );
+        assertEquals( 3, fb.getInt( 3, 3 ) );
+        assertEquals( 7, fb.getStructLong( 4, 1, 16, 0 ) );
+        assertEquals( 8, fb.getStructInt( 4, 1, 16, 8 ) );
+        assertEquals( 99, fb.getShort( 5, 0 ) );
+    }
+
+    public void testLz4() throws IOException {
+        byte[] frame = new byte[] {
+            0x04, 0x22, 0x4d, 0x18,       // magic
+            0x60, 0x40, (byte) 0x82,      // FLG, BD, HC
+            0x07, 0x00, 0x00, 0x00,       // block size
+            0x35, 'a', 'b', 'c',          // 3 literals, match length 9 ...
+            0x03, 0x00,                   // ... from offset 3
+            0x00,                         // final empty sequence
+            0x03, 0x00, 0x00, (byte) 0x80, // uncompressed block size 3
+            'x', 'y', 'z',
+            0x00, 0x00, 0x00, 0x00,       // end mark
+        };
+        byte[] out = Lz4.decompressFrame( ByteBuffer.wrap( frame ), 15 );
+        assertEquals( "abcabcabcabcxyz", new String( out, "US-ASCII" ) );
+        try {
+            Lz4.decompressFrame( ByteBuffer.wrap( frame ), 14 );
+            fail();
+        }
+        catch ( TableFormatException e ) {
+        }
+    }
+
+    public void testHalf() {
+        assertEquals( 1.0f, ArrowVector.halfToFloat( (short) 0x3c00 ) );
+        assertEquals( -2.0f, ArrowVector.halfToFloat( (short) 0xc000 ) );
+        assertEquals( 65504f, ArrowVector.halfToFloat( (short) 0x7bff ) );
+        assertTrue( Float.isNaN( ArrowVector.halfToFloat( (short) 0x7e00 ) ));
+        assertEquals( 0x1p-24f, ArrowVector.halfToFloat( (short) 0x0001 ) );
+    }
+
+    public void testDictionary() throws IOException {
+        File file = File.createTempFile( "dict", ".arrow" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        writeDictionaryFile( out );
+        out.close();
+        StarTable table = new ArrowStarTable( file );
+        Tables.checkTable( table );
+        assertEquals( 2, table.getColumnCount() );
+        assertEquals( 4, table.getRowCount() );
+        assertEquals( "tab", table.getName() );
+        assertEquals( String.class,
+                      table.getColumnInfo( 0 ).getContentClass() );
+        assertEquals( Integer.class,
+                      table.getColumnInfo( 1 ).getContentClass() );
+        assertEquals( "ccc", table.getCell( 0, 0 ) );
+        assertEquals( "a", table.getCell( 1, 0 ) );
+        assertNull( table.getCell( 2, 0 ) );
+        assertEquals( "dd", table.getCell( 3, 0 ) );
+        assertEquals( Integer.valueOf( 40 ), table.getCell( 3, 1 ) );
+    }
+
+    /**
+     * Writes an Arrow IPC file containing a dictionary-encoded string
+     * column with a delta dictionary, and a record batch with
+     * (uncompressed) LZ4-codec buffers.
+     */
+    private static void writeDictionaryFile( OutputStream out )
+            throws IOException {
+        FlatBufBuilder.Table utf8 = new FlatBufBuilder.Table();
+        FlatBufBuilder.Table int8 = new FlatBufBuilder.Table()
+           .addInt( 0, 8 )
+           .addBoolean( 1, true );
+        FlatBufBuilder.Table int32 = new FlatBufBuilder.Table()
+           .addInt( 0, 32 )
+           .addBoolean( 1, true );
+        List<FlatBufBuilder.Table> fields = new ArrayList<>();
+        fields.add( new FlatBufBuilder.Table()
+                   .addString( 0, "cat" )
+                   .addBoolean( 1, true )
+                   .addByte( 2, ArrowField.T_UTF8 )
+                   .addRef( 3, utf8 )
+                   .addRef( 4, new FlatBufBuilder.Table()
+                                  .addLong( 0, 0 )
+                                  .addRef( 1, int8 ) ) );
+        fields.add( new FlatBufBuilder.Table()
+                   .addString( 0, "x" )
+                   .addByte( 2, ArrowField.T_INT )
+                   .addRef( 3, int32 ) );
+        FlatBufBuilder.Table kv = new FlatBufBuilder.Table()
+           .addString( 0, "name" )
+           .addString( 1, "tab" );
+        FlatBufBuilder.Table schema = new FlatBufBuilder.Table()
+           .addRef( 1, new FlatBufBuilder.TableVector( fields ) )
+           .addRef( 2, new FlatBufBuilder
+                          .TableVector( Arrays.asList( kv ) ) );
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write( ArrowStarTable.MAGIC );
+        bout.write( new byte[ 2 ] );
+        writeMessage( bout, 1, schema, null, new byte[ 0 ][] );
+
+        /* Dictionary values "a", "bb", "ccc", then delta "dd". */
+        List<long[]> dictBlocks = new ArrayList<>();
+        dictBlocks.add(
+            writeMessage( bout, 2, null, new long[] { 0, 0 },
+                          new byte[][] {
+                              new byte[ 0 ],
+                              ints( 0, 1, 3, 6 ),
+                              "abbccc".getBytes( "UTF-8" ),
+                          } ) );
+        dictBlocks.add(
+            writeMessage( bout, 2, null, new long[] { 0, 1 },
+                          new byte[][] {
+                              new byte[ 0 ],
+                              ints( 0, 2 ),
+                              "dd".getBytes( "UTF-8" ),
+                          } ) );
+
+        /* Record batch with LZ4 codec, but buffers stored raw. */
+        List<long[]> batchBlocks = new ArrayList<>();
+        batchBlocks.add(
+            writeMessage( bout, 3, null, null,
+                          new byte[][] {
+                              raw( new byte[] { 0x0b } ),
+                              raw( new byte[] { 2, 0, 0, 3 } ),
+                              new byte[ 0 ],
+                              raw( ints( 10, 20, 30, 40 ) ),
+                          } ) );
+        bout.write( new byte[] { -1, -1, -1, -1, 0, 0, 0, 0 } );
+
+        FlatBufBuilder.Table footer = new FlatBufBuilder.Table()
+           .addShort( 0, 4 )
+           .addRef( 1, schema )
+           .addRef( 2, blockVector( dictBlocks ) )
+           .addRef( 3, blockVector( batchBlocks ) );
+        byte[] footBytes = FlatBufBuilder.toBytes( footer );
+        bout.write( footBytes );
+        bout.write( ints( footBytes.length ) );
+        bout.write( ArrowStarTable.MAGIC );
+        out.write( bout.toByteArray() );
+    }
+
+    /**
+     * Writes an encapsulated message.  If the header is null,
+     * a RecordBatch is constructed from the buffers, with one node
+     * for a dictionary batch or two for a data batch.
+     *
+     * @param  dict  for dictionary batches (id, isDelta), otherwise null
+     * @return  footer block values
+     */
+    private static long[] writeMessage( ByteArrayOutputStream out, int htype,
+                                        FlatBufBuilder.Table header,
+                                        long[] dict, byte[][] bufs )
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long[] bufVals = new long[ 2 * bufs.length ];
+        for ( int i = 0; i < bufs.length; i++ ) {
+            bufVals[ 2 * i ] = body.size();
+            bufVals[ 2 * i + 1 ] = bufs[ i ].length;
+            body.write( bufs[ i ] );
+            while ( body.size() % 8 != 0 ) {
+                body.write( 0 );
+            }
+        }
+        if ( header == null ) {
+            long[] nodes = dict != null ? new long[] { 3 - 2 * dict[ 1 ], 0 }
+                                        : new long[] { 4, 1, 4, 0 };
+            FlatBufBuilder.Table rb = new FlatBufBuilder.Table()
+               .addLong( 0, nodes[ 0 ] )
+               .addRef( 1, new FlatBufBuilder
+                              .StructVector( nodes, nodes.length / 2 ) )
+               .addRef( 2, new FlatBufBuilder
+                              .StructVector( bufVals, bufs.length ) );
+            if ( dict != null ) {
+                header = new FlatBufBuilder.Table()
+                   .addLong( 0, dict[ 0 ] )
+                   .addRef( 1, rb )
+                   .addBoolean( 2, dict[ 1 ] != 0 );
+            }
+            else {
+                rb.addRef( 3, new FlatBufBuilder.Table()
+                                 .addByte( 0, ArrowBatch.CODEC_LZ4_FRAME ) );
+                header = rb;
+            }
+        }
+        FlatBufBuilder.Table msg = new FlatBufBuilder.Table()
+           .addShort( 0, 4 )
+           .addByte( 1, htype )
+           .addRef( 2, header )
+           .addLong( 3, body.size() );
+        byte[] msgBytes = FlatBufBuilder.toBytes( msg );
+        long offset = out.size();
+        out.write( ints( -1, msgBytes.length ) );
+        out.write( msgBytes );
+        out.write( body.toByteArray() );
+        return new long[] { offset, 8 + msgBytes.length, body.size() };
+    }
+
+    private static FlatBufBuilder.StructVector
+            blockVector( List<long[]> blocks ) {
+        long[] vals = new long[ 3 * blocks.size() ];
+        for ( int i = 0; i < blocks.size(); i++ ) {
+            System.arraycopy( blocks.get( i ), 0, vals, 3 * i, 3 );
+        }
+        return new FlatBufBuilder.StructVector( vals, blocks.size() );
+    }
+
+    private static byte[] ints( int... values ) {
+        ByteBuffer buf = ByteBuffer.allocate( 4 * values.length )
+                                   .order( ByteOrder.LITTLE_ENDIAN );
+        for ( int v : values ) {
+            buf.putInt( v );
+        }
+        return buf.array();
+    }
+
+    private static byte[] raw( byte[] data ) {
+        ByteBuffer buf = ByteBuffer.allocate( 8 + data.length )
+                                   .order( ByteOrder.LITTLE_ENDIAN );
+        buf.putLong( -1L );
+        buf.put( data );
+        return buf.array();
+    }
+}
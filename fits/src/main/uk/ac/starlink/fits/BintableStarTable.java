@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.fits.FitsException;
@@ -18,6 +19,7 @@ import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.HealpixTableInfo;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -472,6 +474,18 @@ public abstract class BintableStarTable extends AbstractStarTable
         return colOffsets_;
     }
 
+    /**
+     * Returns the factory which supplies access to the raw data part
+     * of this table's HDU, if available.
+     * Rows of <code>getRowLength</code> bytes each start at offset zero.
+     * The default implementation returns null.
+     *
+     * @return  input factory, or null
+     */
+    InputFactory getInputFactory() {
+        return null;
+    }
+
     /**
      * Returns an instance of this class given a data access instance.
      *
@@ -710,6 +724,10 @@ public abstract class BintableStarTable extends AbstractStarTable
             };
         }
 
+        InputFactory getInputFactory() {
+            return inputFact_;
+        }
+
         public void close() throws IOException {
             inputFact_.close();
         }
@@ -798,9 +816,107 @@ public abstract class BintableStarTable extends AbstractStarTable
             };
         }
 
+        InputFactory getInputFactory() {
+            return inputFact_;
+        }
+
+        public RowSplittable getRowSplittable() {
+            return new BintableRowSplittable( 0, getRowCount() );
+        }
+
         public void close() throws IOException {
             randomInputThreadLocal_.close();
             inputFact_.close();
         }
+
+        /**
+         * RowSplittable implementation for random-access BINTABLE data.
+         * Each part acquires its own input object lazily,
+         * and releases it when iteration is complete.
+         */
+        private class BintableRowSplittable implements RowSplittable {
+            private long irow_;
+            private long end_;
+            private BasicInput input_;
+
+            /**
+             * Constructor.
+             *
+             * @param  start  index of first row (inclusive)
+             * @param  end    index of last row (exclusive)
+             */
+            BintableRowSplittable( long start, long end ) {
+                irow_ = start - 1;
+                end_ = end;
+            }
+
+            public RowSplittable split() {
+                long nr = end_ - irow_ - 1;
+                if ( nr >= 2 && input_ == null ) {
+                    long mid = irow_ + 1 + nr / 2;
+                    RowSplittable other = new BintableRowSplittable( mid, end_ );
+                    end_ = mid;
+                    return other;
+                }
+                else {
+                    return null;
+                }
+            }
+
+            public long splittableSize() {
+                return end_ - irow_ - 1;
+            }
+
+            public LongSupplier rowIndex() {
+                return () -> irow_;
+            }
+
+            public boolean next() throws IOException {
+                if ( irow_ < end_ - 1 ) {
+                    irow_++;
+                    return true;
+                }
+                else {
+                    close();
+                    return false;
+                }
+            }
+
+            public Object getCell( int icol ) throws IOException {
+                BasicInput input = getInput();
+                input.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+                return readCell( input, icol );
+            }
+
+            public Object[] getRow() throws IOException {
+                BasicInput input = getInput();
+                input.seek( irow_ * rowLength_ );
+                return readRow( input );
+            }
+
+            public void close() throws IOException {
+                if ( input_ != null ) {
+                    input_.close();
+                    input_ = null;
+                }
+            }
+
+            /**
+             * Returns an input object positioned within the data part
+             * of this table, checking that the current row is legal.
+             *
+             * @return  random access input
+             */
+            private BasicInput getInput() throws IOException {
+                if ( irow_ < 0 || irow_ >= end_ ) {
+                    throw new IllegalStateException();
+                }
+                if ( input_ == null ) {
+                    input_ = inputFact_.createInput( true );
+                    assert input_.isRandom();
+                }
+                return input_;
+            }
+        }
     }
 }
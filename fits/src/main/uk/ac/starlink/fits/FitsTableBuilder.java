@@ -1,7 +1,10 @@
 package uk.ac.starlink.fits;
 
 import java.awt.datatransfer.DataFlavor;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -16,6 +19,7 @@ import nom.tam.fits.TableHDU;
 import nom.tam.util.ArrayDataInput;
 import nom.tam.util.BufferedDataInputStream;
 import nom.tam.util.RandomAccess;
+import uk.ac.starlink.table.FileInfoCache;
 import uk.ac.starlink.table.MultiTableBuilder;
 import uk.ac.starlink.table.QueueTableSequence;
 import uk.ac.starlink.table.StarTable;
@@ -27,7 +31,9 @@ import uk.ac.starlink.table.TableSequence;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.IndexedCompressedFile;
 
 /**
  * Implementation of the <tt>TableBuilder</tt> interface which 
@@ -49,10 +55,28 @@ import uk.ac.starlink.util.IOUtils;
  * and the 1024-element array-valued column variant of the format is not
  * understood.
  *
+ * <p>Binary tables stored using the FITS
+ * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompress.html"
+ *    >tiled table compression</a> convention (<code>ZTABLE=T</code>)
+ * are presented in their uncompressed form, with tiles decompressed
+ * on demand; see {@link TiledInputFactory}.
+ * Tile-compressed images (<code>ZIMAGE=T</code>) are treated like
+ * other image HDUs, that is they are not considered to be tables.
+ *
+ * <p>Gzip- or bzip2-compressed files on disk can also be read
+ * with random access.  If a random-access table is requested,
+ * the compressed file is indexed using
+ * {@link uk.ac.starlink.util.IndexedCompressedFile},
+ * after which only the parts of the file actually read need to be
+ * decompressed.
+ *
  * @author   Mark Taylor (Starlink)
  */
 public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
 
+    /** Key prefix for HDU positions in the {@link FileInfoCache}. */
+    private static final String HDU_CACHE_KEY_PREFIX = "fits.hdu.";
+
     private static final Logger logger =
         Logger.getLogger( "uk.ac.starlink.fits" );
 
@@ -102,6 +126,11 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
      * <p>If there is no position attribute, the first HDU which does hold
      * a table is used.
      *
+     * <p>If a default {@link uk.ac.starlink.table.FileInfoCache} is in use,
+     * the offset of the HDU found is recorded there, so that later reads
+     * of the same table from the same file can go straight to it
+     * without scanning the preceding headers.
+     *
      * @param  datsrc  the source of the FITS table data
      * @param  wantRandom  whether a random-access table is preferred
      * @param  policy   a StoragePolicy object which may be used to
@@ -118,6 +147,36 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
             throw new TableFormatException( "Doesn't look like a FITS file" );
         }
 
+        /* If random access is preferred for a compressed file,
+         * make sure it's indexed so that it can be provided. */
+        if ( wantRandom ) {
+            prepareIndex( datsrc );
+        }
+
+        /* If the offset of the requested HDU in this file has been
+         * cached, try to read the table directly from there. */
+        String spos = datsrc.getPosition();
+        FileInfoCache cache = FileInfoCache.getDefaultInstance();
+        File cacheFile = cache != null && datsrc instanceof FileDataSource
+                       ? ((FileDataSource) datsrc).getFile()
+                       : null;
+        String hduKey = HDU_CACHE_KEY_PREFIX
+                      + ( spos == null ? "" : spos.trim() );
+        if ( cacheFile != null ) {
+            String hduPos = cache.getValue( cacheFile, hduKey );
+            if ( hduPos != null ) {
+                StarTable table =
+                    readCachedTable( datsrc, hduPos, wantRandom, wide_ );
+                if ( table != null ) {
+                    if ( table.getName() == null ) {
+                        table.setName( datsrc.getName() );
+                    }
+                    table.setURL( datsrc.getURL() );
+                    return table;
+                }
+            }
+        }
+
         ArrayDataInput strm = null;
         StarTable table = null;
         try {
@@ -125,12 +184,13 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
             /* Get a FITS data stream. */
             strm = FitsConstants.getInputStreamStart( datsrc );
 
-            /* Keep track of the position in the stream. */
+            /* Keep track of the position in the stream, and of the
+             * start of the HDU containing the table. */
             long[] pos = new long[] { 0L };
+            long[] hduPos = new long[ 1 ];
 
             /* If an HDU was specified explicitly, try to pick up that one
              * as a table. */
-            String spos = datsrc.getPosition();
             if ( spos != null && spos.trim().length() > 0 ) {
 
                 /* If it looks like an integer, treat it as an HDU index. */
@@ -144,6 +204,7 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                 if ( ihdu >= 0 ) {
                     try {
                         pos[ 0 ] += FitsConstants.skipHDUs( strm, ihdu );
+                        hduPos[ 0 ] = pos[ 0 ];
                         table = attemptReadTable( strm, wantRandom, datsrc,
                                                   wide_, pos );
                     }
@@ -158,7 +219,7 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                 else {
                     try {
                         table = findNamedTable( strm, datsrc, spos, wide_,
-                                                pos );
+                                                pos, hduPos );
                     }
                     catch ( EOFException e ) {
                         throw new IOException( "No extension found with "
@@ -173,6 +234,10 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                         table.setName( datsrc.getName() );
                     }
                     table.setURL( datsrc.getURL() );
+                    if ( cacheFile != null ) {
+                        cache.putValue( cacheFile, hduKey,
+                                        Long.toString( hduPos[ 0 ] ) );
+                    }
                     return table;
                 }
                 else {
@@ -185,6 +250,7 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
             else {
                 try {
                     while ( true ) {
+                        hduPos[ 0 ] = pos[ 0 ];
                         table = attemptReadTable( strm, wantRandom,
                                                   datsrc, wide_, pos );
                         if ( table != null ) {
@@ -192,6 +258,10 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                                 table.setName( datsrc.getName() );
                             }
                             table.setURL( datsrc.getURL() );
+                            if ( cacheFile != null ) {
+                                cache.putValue( cacheFile, hduKey,
+                                                Long.toString( hduPos[ 0 ] ) );
+                            }
                             return table;
                         }
                     }
@@ -301,8 +371,35 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
             throw new TableFormatException( "Can't read FITS header", e );
         }
         String xtension = hdr.getStringValue( "XTENSION" );
-        if ( "BINTABLE".equals( xtension ) ) {
+        if ( "BINTABLE".equals( xtension ) && ! isCompressedImage( hdr ) ) {
             BasicInput input = InputFactory.createSequentialInput( in );
+
+            /* Tile-compressed tables have to be read into memory
+             * to get at the heap. */
+            if ( TiledInputFactory.isTiledTable( hdr ) ) {
+                long datasize = FitsConstants.getDataSize( hdr );
+                if ( datasize <= Integer.MAX_VALUE ) {
+                    byte[] data = new byte[ (int) datasize ];
+                    in.readFully( data );
+                    try {
+                        TiledInputFactory tfact =
+                            TiledInputFactory.createFactory( hdr, data );
+                        Tables.streamStarTable( BintableStarTable.createTable(
+                                                    tfact
+                                                   .getUncompressedHeader(),
+                                                    tfact, wide_ ),
+                                                sink );
+                        return true;
+                    }
+                    catch ( TableFormatException e ) {
+                        logger.warning( "Can't decompress tiled table ("
+                                      + e.getMessage() + ") - reading raw" );
+                    }
+                    input = InputFactory.createSequentialInput(
+                                new DataInputStream(
+                                    new ByteArrayInputStream( data ) ) );
+                }
+            }
             BintableStarTable.streamStarTable( hdr, input, wide_, sink );
             return true;
         }
@@ -346,7 +443,33 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                                             DataSource datsrc, String name,
                                             WideFits wide, long[] pos )
             throws FitsException, IOException {
+        return findNamedTable( strm, datsrc, name, wide, pos, new long[ 1 ] );
+    }
+
+    /**
+     * Reads forward through a stream to find the named table,
+     * also reporting where its HDU starts.
+     *
+     * @param  strm  stream to read from, positioned at the start of an HDU
+     * @param  datsrc  a DataSource which can supply the data
+     *         in <tt>strm</tt>
+     * @param  name  the name of the table to read
+     * @param   wide  convention for representing extended columns;
+     *                use null to avoid use of extended columns
+     * @param  pos  1-element array holding the position in <tt>datsrc</tt>
+     *         at which <tt>strm</tt> is positioned, updated on exit
+     * @param  hduPos  1-element array whose element is set on exit to
+     *         the position in <tt>datsrc</tt> of the start of the
+     *         table's HDU
+     * @return  a new table
+     */
+    private static StarTable findNamedTable( ArrayDataInput strm,
+                                             DataSource datsrc, String name,
+                                             WideFits wide, long[] pos,
+                                             long[] hduPos )
+            throws FitsException, IOException {
         while ( true ) {
+            hduPos[ 0 ] = pos[ 0 ];
             Header hdr = new Header();
             int headsize = FitsConstants.readHeader( hdr, strm );
             long datasize = FitsConstants.getDataSize( hdr );
@@ -455,12 +578,12 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         long afterpos = datpos + datasize;
         String xtension = hdr.getStringValue( "XTENSION" );
 
-        /* If it's a BINTABLE HDU, make a BintableStarTable out of it. */
-        if ( "BINTABLE".equals( xtension ) ) {
+        /* If it's a BINTABLE HDU, make a BintableStarTable out of it.
+         * Tile-compressed images are BINTABLEs too, but don't count. */
+        if ( "BINTABLE".equals( xtension ) && ! isCompressedImage( hdr ) ) {
             InputFactory inFact =
                 InputFactory.createFactory( datsrc, datpos, datasize );
-            StarTable table =
-                BintableStarTable.createTable( hdr, inFact, wide );
+            StarTable table = createBintable( hdr, inFact, wide );
             IOUtils.skipBytes( strm, datasize );
             return new TableResult( table, afterpos );
         }
@@ -481,6 +604,118 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         }
     }
 
+    /**
+     * Creates a table from a BINTABLE HDU.
+     * If the HDU uses the tiled table compression convention,
+     * the returned table presents the uncompressed data.
+     *
+     * @param  hdr  BINTABLE header
+     * @param  inFact  factory for the HDU data part
+     * @param  wide  convention for representing extended columns;
+     *               use null to avoid use of extended columns
+     * @return  table
+     */
+    private static StarTable createBintable( Header hdr, InputFactory inFact,
+                                             WideFits wide )
+            throws IOException, FitsException {
+        if ( TiledInputFactory.isTiledTable( hdr ) ) {
+            try {
+                TiledInputFactory tfact =
+                    TiledInputFactory.createFactory( hdr, inFact );
+                return BintableStarTable
+                      .createTable( tfact.getUncompressedHeader(), tfact,
+                                    wide );
+            }
+            catch ( TableFormatException e ) {
+                logger.warning( "Can't decompress tiled table ("
+                              + e.getMessage() + ") - reading raw" );
+            }
+        }
+        return BintableStarTable.createTable( hdr, inFact, wide );
+    }
+
+    /**
+     * Ensures that an index is available for a data source that
+     * represents a gzip- or bzip2-compressed file, so that its content
+     * can subsequently be read with random access.
+     * Does nothing for other data sources.
+     *
+     * @param  datsrc  data source
+     */
+    private static void prepareIndex( DataSource datsrc ) throws IOException {
+        Compression compress = datsrc.getCompression();
+        if ( datsrc instanceof FileDataSource &&
+             IndexedCompressedFile.isIndexable( compress ) ) {
+            File file = ((FileDataSource) datsrc).getFile();
+            try {
+                IndexedCompressedFile.getInstance( file, compress );
+            }
+            catch ( IOException e ) {
+                logger.warning( "Can't index compressed file " + file
+                              + ": " + e );
+            }
+        }
+    }
+
+    /**
+     * Attempts to read a table from the HDU at a previously cached
+     * position in a data source.  Any failure is logged and
+     * results in a null return, in which case the caller should
+     * locate the HDU in the usual way.
+     *
+     * @param  datsrc  data source
+     * @param  hduPos  cached byte offset of the HDU start, as a string
+     * @param  wantRandom  whether a random-access table is preferred
+     * @param   wide  convention for representing extended columns;
+     *                use null to avoid use of extended columns
+     * @return  table, or null
+     */
+    private static StarTable readCachedTable( DataSource datsrc,
+                                              String hduPos,
+                                              boolean wantRandom,
+                                              WideFits wide ) {
+        ArrayDataInput strm = null;
+        try {
+            long[] pos = new long[] { Long.parseLong( hduPos ) };
+            strm = FitsConstants.getInputStreamStart( datsrc );
+            IOUtils.skipBytes( strm, pos[ 0 ] );
+            StarTable table =
+                attemptReadTable( strm, wantRandom, datsrc, wide, pos );
+            if ( table == null ) {
+                logger.info( "Cached HDU position " + hduPos + " in "
+                           + datsrc + " is not a table" );
+            }
+            return table;
+        }
+        catch ( Exception e ) {
+            logger.info( "Cached HDU position " + hduPos + " in "
+                       + datsrc + " failed: " + e );
+            return null;
+        }
+        finally {
+            if ( strm != null ) {
+                try {
+                    strm.close();
+                }
+                catch ( IOException e ) {
+                    // never mind
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a header describes an image stored using the
+     * FITS tiled image compression convention (as written by fpack).
+     * Such HDUs are BINTABLEs, but represent images not tables.
+     *
+     * @param  hdr  header
+     * @return  true iff hdr has ZIMAGE=T
+     */
+    private static boolean isCompressedImage( Header hdr ) {
+        return hdr.getBooleanValue( "ZIMAGE", false );
+    }
+
     /**
      * Indicates whether the header has a given name.
      * EXTNAME or EXTNAME-VERSION, matched case-insensitively, count.
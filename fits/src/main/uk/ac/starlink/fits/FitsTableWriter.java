@@ -2,6 +2,7 @@ package uk.ac.starlink.fits;
 
 import java.io.IOException;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.SplitPolicy;
 
 /**
  * Handles writing of a StarTable in FITS binary format.
@@ -37,6 +38,14 @@ import uk.ac.starlink.table.StarTable;
  * table is set to the largest of these.  Excess space is padded
  * with some sort of blank value (NaN for floating point values,
  * spaces for strings, zero-like values otherwise).
+ * <p>
+ * If a write policy is set using {@link #setWritePolicy}
+ * (or {@link #setParallel}, which is available as the
+ * handler option <code>fits-basic(parallel=true)</code>),
+ * rows are encoded in blocks on multiple threads, and the first pass
+ * is avoided where the row count and column widths are known up front.
+ * In this mode, nullable integer columns are always given a
+ * <code>TNULLn</code> blank value, even if they contain no nulls.
  *
  * @author   Mark Taylor (Starlink)
  */
@@ -44,6 +53,7 @@ public class FitsTableWriter extends AbstractFitsTableWriter {
 
     private final boolean allowSignedByte_;
     private final WideFits wide_;
+    private SplitPolicy writePolicy_;
 
     /**
      * Default constructor.
@@ -88,9 +98,52 @@ public class FitsTableWriter extends AbstractFitsTableWriter {
         return false;
     }
 
+    /**
+     * Sets the policy for parallel writing of table data.
+     * If null, the default, data is written sequentially.
+     *
+     * @param  writePolicy  parallel write policy, or null
+     * @see  StandardFitsTableSerializer#StandardFitsTableSerializer(
+     *           uk.ac.starlink.table.StarTable,boolean,WideFits,
+     *           uk.ac.starlink.util.SplitPolicy)
+     */
+    public void setWritePolicy( SplitPolicy writePolicy ) {
+        writePolicy_ = writePolicy;
+    }
+
+    /**
+     * Returns the policy for parallel writing of table data.
+     *
+     * @return  parallel write policy, or null for sequential writing
+     */
+    public SplitPolicy getWritePolicy() {
+        return writePolicy_;
+    }
+
+    /**
+     * Determines whether table data is written in parallel
+     * using the default policy.
+     * In parallel mode, nullable integer columns always get a
+     * <code>TNULLn</code> header.
+     *
+     * @param  isParallel  true for parallel writing, false for sequential
+     */
+    public void setParallel( boolean isParallel ) {
+        setWritePolicy( isParallel ? SplitPolicy.DFLT_POLICY : null );
+    }
+
+    /**
+     * Indicates whether table data is written in parallel.
+     *
+     * @return  true iff a write policy is in effect
+     */
+    public boolean isParallel() {
+        return writePolicy_ != null;
+    }
+
     protected FitsTableSerializer createSerializer( StarTable table )
             throws IOException {
         return new StandardFitsTableSerializer( table, allowSignedByte_,
-                                                wide_ );
+                                                wide_, writePolicy_ );
     }
 }
@@ -0,0 +1,191 @@
+package uk.ac.starlink.fits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import uk.ac.starlink.util.IndexedCompressedFile;
+
+/**
+ * Random-access BasicInput implementation that reads a region of the
+ * uncompressed content of an indexed compressed file.
+ * Data is obtained chunk by chunk from the index, so only those parts
+ * of the file that are actually read need to be decompressed.
+ *
+ * <p>The index itself may be shared between threads,
+ * but instances of this class should not be.
+ */
+class IndexedCompressedInput implements BasicInput {
+
+    private final IndexedCompressedFile zfile_;
+    private final long pos_;
+    private final long size_;
+    private ByteBuffer buffer_;
+    private long bufStart_;
+
+    /**
+     * Constructor.
+     *
+     * @param  zfile  indexed compressed file
+     * @param  pos   offset into uncompressed content of stream start
+     * @param  size  number of bytes in stream
+     */
+    public IndexedCompressedInput( IndexedCompressedFile zfile, long pos,
+                                   long size ) {
+        zfile_ = zfile;
+        pos_ = pos;
+        size_ = size;
+        buffer_ = ByteBuffer.allocate( 0 );
+        bufStart_ = 0;
+    }
+
+    public byte readByte() throws IOException {
+        try {
+            return buffer_.get();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 1 ).get();
+        }
+    }
+
+    public short readShort() throws IOException {
+        try {
+            return buffer_.getShort();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 2 ).getShort();
+        }
+    }
+
+    public int readInt() throws IOException {
+        try {
+            return buffer_.getInt();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 4 ).getInt();
+        }
+    }
+
+    public long readLong() throws IOException {
+        try {
+            return buffer_.getLong();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 8 ).getLong();
+        }
+    }
+
+    public float readFloat() throws IOException {
+        try {
+            return buffer_.getFloat();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 4 ).getFloat();
+        }
+    }
+
+    public double readDouble() throws IOException {
+        try {
+            return buffer_.getDouble();
+        }
+        catch ( BufferUnderflowException e ) {
+            return getAssuredBuffer( 8 ).getDouble();
+        }
+    }
+
+    public void readBytes( byte[] bbuf ) throws IOException {
+        try {
+            buffer_.get( bbuf );
+        }
+        catch ( BufferUnderflowException e ) {
+            getAssuredBuffer( bbuf.length ).get( bbuf );
+        }
+    }
+
+    public boolean isRandom() {
+        return true;
+    }
+
+    public void seek( long offset ) throws IOException {
+        if ( offset < 0 || offset > size_ ) {
+            throw new EOFException( "Seek out of range" );
+        }
+        long boff = offset - bufStart_;
+        if ( boff >= 0 && boff <= buffer_.limit() ) {
+            buffer_.position( (int) boff );
+        }
+        else if ( offset == size_ ) {
+            buffer_ = ByteBuffer.allocate( 0 );
+            bufStart_ = size_;
+        }
+        else {
+            setCurrentChunk( offset );
+        }
+    }
+
+    public long getOffset() {
+        return bufStart_ + buffer_.position();
+    }
+
+    public void skip( long nbyte ) throws IOException {
+        seek( getOffset() + nbyte );
+    }
+
+    public void close() {
+        buffer_ = ByteBuffer.allocate( 0 );
+        bufStart_ = 0;
+    }
+
+    /**
+     * Returns a ByteBuffer with content equivalent to that at the
+     * current position, but which is guaranteed to contain at least
+     * a given number of bytes.
+     *
+     * @param  count   required number of bytes to read
+     * @return  buffer containing at least count bytes
+     */
+    private ByteBuffer getAssuredBuffer( int count ) throws IOException {
+        long offset = getOffset();
+        if ( offset + count > size_ ) {
+            throw new EOFException();
+        }
+        if ( ! buffer_.hasRemaining() ) {
+            setCurrentChunk( offset );
+            if ( buffer_.remaining() >= count ) {
+                return buffer_;
+            }
+        }
+        byte[] array = new byte[ count ];
+        for ( int i = 0; i < count; ) {
+            if ( ! buffer_.hasRemaining() ) {
+                setCurrentChunk( getOffset() );
+            }
+            int nr = Math.min( count - i, buffer_.remaining() );
+            buffer_.get( array, i, nr );
+            i += nr;
+        }
+        return ByteBuffer.wrap( array );
+    }
+
+    /**
+     * Sets the current buffer to the part of the chunk containing
+     * a given offset that falls within this stream,
+     * positioned at that offset.
+     *
+     * @param  offset  offset into this stream, less than its size
+     */
+    private void setCurrentChunk( long offset ) throws IOException {
+        long zoff = pos_ + offset;
+        int ichunk = zfile_.getChunkIndex( zoff );
+        byte[] chunk = zfile_.getChunk( ichunk );
+        long chunkStart = zfile_.getChunkStart( ichunk );
+
+        /* Trim the chunk to this stream's region. */
+        int lo = (int) Math.max( 0, pos_ - chunkStart );
+        int hi = (int) Math.min( chunk.length, pos_ + size_ - chunkStart );
+        ByteBuffer buf = ByteBuffer.wrap( chunk, lo, hi - lo ).slice();
+        bufStart_ = chunkStart + lo - pos_;
+        buf.position( (int) ( offset - bufStart_ ) );
+        buffer_ = buf;
+    }
+}
@@ -14,6 +14,7 @@ import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.IndexedCompressedFile;
 import uk.ac.starlink.util.Loader;
 
 /**
@@ -50,6 +51,9 @@ public abstract class InputFactory implements Closeable {
 
     /**
      * Constructs an instance of this class to read a given data source.
+     * If the data source is a compressed file for which an index is
+     * available (see {@link IndexedCompressedFile#getExistingInstance}),
+     * the result will be random-access.
      *
      * @param   datsrc  data source
      * @param   offset   offset into file of stream start
@@ -60,10 +64,20 @@ public abstract class InputFactory implements Closeable {
                                               long offset, long leng )
             throws IOException {
         boolean isFile = datsrc instanceof FileDataSource;
-        if ( isFile && datsrc.getCompression() == Compression.NONE ) {
+        Compression compress = datsrc.getCompression();
+        IndexedCompressedFile zfile =
+              isFile
+            ? IndexedCompressedFile
+             .getExistingInstance( ((FileDataSource) datsrc).getFile(),
+                                   compress )
+            : null;
+        if ( isFile && compress == Compression.NONE ) {
             File uncompressedFile = ((FileDataSource) datsrc).getFile();
             return createFileFactory( uncompressedFile, offset, leng );
         }
+        else if ( zfile != null ) {
+            return createIndexedFactory( zfile, offset, leng );
+        }
         else {
             if ( isFile ) {
                 logger_.warning( "Can't map compressed file " + datsrc.getName()
@@ -77,6 +91,29 @@ public abstract class InputFactory implements Closeable {
         }
     }
 
+    /**
+     * Constructs a random-access instance of this class to read part of
+     * the uncompressed content of an indexed compressed file.
+     *
+     * @param   zfile  indexed compressed file
+     * @param   offset   offset into uncompressed content of stream start
+     * @param   leng  number of bytes in stream
+     * @return  new instance
+     */
+    public static InputFactory
+            createIndexedFactory( final IndexedCompressedFile zfile,
+                                  final long offset, final long leng ) {
+        logger_.info( "Will read indexed " + zfile.getCompression()
+                    + " file: " + zfile.getFile().getName() );
+        return new AbstractInputFactory( true ) {
+            public BasicInput createInput( boolean isSeq ) {
+                return new IndexedCompressedInput( zfile, offset, leng );
+            }
+            public void close() {
+            }
+        };
+    }
+
     /**
      * Constructs an instance of this class to read a given data source
      * viewed as a stream, not a file.
@@ -0,0 +1,410 @@
+package uk.ac.starlink.fits;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.ConcatStarTable;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSubsetStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.WrapperStarTable;
+
+/**
+ * Copies BINTABLE row data from FITS input tables to a FITS output
+ * stream without decoding it.
+ *
+ * <p>An instance can be obtained for a table which is a view,
+ * possibly with columns subsetted or permuted and rows subsetted or
+ * concatenated, of one or more BINTABLE extensions read from FITS files.
+ * If every output column would be written with exactly the same
+ * format, scaling and blank value as the input column it comes from,
+ * the cell bytes can be moved straight from the input
+ * (which will typically be a mapped file) to the output.
+ *
+ * <p>The table wrappers recognised are {@link WrapperStarTable},
+ * {@link ColumnPermutedStarTable}, {@link RowSubsetStarTable} and
+ * {@link ConcatStarTable}.  Only instances of those exact classes
+ * are recognised, since subclasses may modify the data.
+ */
+class RawBintableCopier {
+
+    private final Segment[] segments_;
+
+    /** Size of buffer used for block reads of unsubsetted rows. */
+    private static final int BUFFER_BYTES = 1024 * 1024;
+
+    /** Regex matching TFORM values for fixed-length columns. */
+    private static final Pattern TFORM_REGEX =
+        Pattern.compile( " *([0-9]*)([LXBIJKAEDCM]) *" );
+
+    /**
+     * Private constructor.
+     *
+     * @param  segments  segments that together make up the output data
+     */
+    private RawBintableCopier( Segment[] segments ) {
+        segments_ = segments;
+    }
+
+    /**
+     * Writes the row data.  Exactly the same bytes are written
+     * as would be by encoding each cell using the column writers
+     * supplied at construction time.  No padding is written.
+     *
+     * @param  out  destination stream
+     * @return  number of bytes written
+     */
+    public long copyData( DataOutput out ) throws IOException {
+        long nWritten = 0;
+        for ( Segment seg : segments_ ) {
+            nWritten += seg.copyData( out );
+        }
+        return nWritten;
+    }
+
+    /**
+     * Returns a copier which can write the data for a given table,
+     * if possible.  If the table is not a recognised view of
+     * FITS binary table data, or if any of the column writers would
+     * serialize the data differently from the input, null is returned.
+     *
+     * @param  table  table to be written
+     * @param  writers  column writers that would be used to serialize
+     *                  each column of <code>table</code>; null elements
+     *                  indicate columns that are not written
+     * @return   copier, or null
+     */
+    public static RawBintableCopier createCopier( StarTable table,
+                                                  ColumnWriter[] writers ) {
+        int ncol = writers.length;
+        int[] colMap = new int[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            colMap[ icol ] = icol;
+        }
+        List<Segment> segs = getSegments( table, colMap );
+        if ( segs == null ) {
+            return null;
+        }
+        long nrow = 0;
+        for ( Segment seg : segs ) {
+            if ( ! seg.initRanges( writers ) ) {
+                return null;
+            }
+            nrow += seg.nrow_;
+        }
+        return nrow == table.getRowCount()
+             ? new RawBintableCopier( segs.toArray( new Segment[ 0 ] ) )
+             : null;
+    }
+
+    /**
+     * Resolves a table into a sequence of segments each based on
+     * a FITS binary table.
+     *
+     * @param  table  table to resolve
+     * @param  colMap  map from output column index to column index
+     *                 in <code>table</code>
+     * @return  list of segments whose rows concatenated give the rows
+     *          of <code>table</code>, or null if it can't be done
+     */
+    private static List<Segment> getSegments( StarTable table,
+                                              int[] colMap ) {
+        Class<?> clazz = table.getClass();
+        if ( table instanceof BintableStarTable ) {
+            BintableStarTable bt = (BintableStarTable) table;
+            int ncol = bt.getColumnCount();
+            for ( int jcol : colMap ) {
+                if ( jcol < 0 || jcol >= ncol ) {
+                    return null;
+                }
+            }
+            return bt.getInputFactory() == null
+                 ? null
+                 : Collections.singletonList(
+                       new Segment( bt, colMap, null, bt.getRowCount() ) );
+        }
+        else if ( clazz == WrapperStarTable.class ) {
+            return getSegments( ((WrapperStarTable) table).getBaseTable(),
+                                colMap );
+        }
+        else if ( clazz == ColumnPermutedStarTable.class ) {
+            ColumnPermutedStarTable ptable = (ColumnPermutedStarTable) table;
+            int[] pmap = ptable.getColumnMap();
+            int[] cmap = new int[ colMap.length ];
+            for ( int icol = 0; icol < colMap.length; icol++ ) {
+                cmap[ icol ] = pmap[ colMap[ icol ] ];
+            }
+            return getSegments( ptable.getBaseTable(), cmap );
+        }
+        else if ( clazz == RowSubsetStarTable.class ) {
+            RowSubsetStarTable stable = (RowSubsetStarTable) table;
+            BitSet mask = stable.getMask();
+            List<Segment> baseSegs =
+                getSegments( stable.getBaseTable(), colMap );
+            if ( baseSegs == null ) {
+                return null;
+            }
+            List<Segment> segs = new ArrayList<Segment>();
+            long irow0 = 0;
+            for ( Segment seg : baseSegs ) {
+                long irow1 = irow0 + seg.nrow_;
+                if ( seg.mask_ != null || irow1 > Integer.MAX_VALUE ) {
+                    return null;
+                }
+                BitSet segMask = mask.get( (int) irow0, (int) irow1 );
+                segs.add( new Segment( seg.table_, seg.colMap_, segMask,
+                                       segMask.cardinality() ) );
+                irow0 = irow1;
+            }
+            return segs;
+        }
+        else if ( clazz == ConcatStarTable.class ) {
+            List<StarTable> tables = ((ConcatStarTable) table).getTables();
+            if ( tables == null ) {
+                return null;
+            }
+            List<Segment> segs = new ArrayList<Segment>();
+            for ( StarTable t : tables ) {
+                if ( t.getRowCount() != 0 ) {
+                    List<Segment> tsegs = getSegments( t, colMap );
+                    if ( tsegs == null ) {
+                        return null;
+                    }
+                    segs.addAll( tsegs );
+                }
+            }
+            return segs;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the raw bytes of an input FITS column are
+     * exactly what a given column writer would write for the values
+     * decoded from it.
+     *
+     * @param  info  column metadata from a BintableStarTable
+     * @param  leng  number of bytes per cell in the input column
+     * @param  writer  output column writer
+     * @return  true iff raw bytes can be copied
+     */
+    private static boolean isRawCompatible( ColumnInfo info, int leng,
+                                            ColumnWriter writer ) {
+        if ( leng != writer.getLength() ) {
+            return false;
+        }
+
+        /* Format. */
+        Matcher inMatcher =
+            TFORM_REGEX.matcher( String.valueOf( info.getAuxDatumValue(
+                                     BintableStarTable.TFORM_INFO,
+                                     String.class ) ) );
+        Matcher outMatcher = TFORM_REGEX.matcher( writer.getFormat() );
+        if ( ! inMatcher.matches() || ! outMatcher.matches() ||
+             ! inMatcher.group( 2 ).equals( outMatcher.group( 2 ) ) ||
+             getRepeat( inMatcher ) != getRepeat( outMatcher ) ) {
+            return false;
+        }
+
+        /* Scaling. */
+        Number tscal = (Number)
+            info.getAuxDatumValue( BintableStarTable.TSCAL_INFO,
+                                   Number.class );
+        if ( ( tscal == null ? 1.0 : tscal.doubleValue() )
+             != writer.getScale() ) {
+            return false;
+        }
+        DescribedValue tzeroVal =
+            info.getAuxDatum( BintableStarTable.TZERO_INFO );
+        Object tzero = tzeroVal == null ? null : tzeroVal.getValue();
+        BigDecimal inZero = tzero == null ? BigDecimal.ZERO
+                                          : new BigDecimal( tzero.toString() );
+        BigDecimal outZero = writer.getZero() == null ? BigDecimal.ZERO
+                                                      : writer.getZero();
+        if ( inZero.compareTo( outZero ) != 0 ) {
+            return false;
+        }
+
+        /* Blank value. */
+        Number inBad = (Number)
+            info.getAuxDatumValue( BintableStarTable.TNULL_INFO,
+                                   Number.class );
+        Number outBad = writer.getBadNumber();
+        return inBad == null
+             ? outBad == null
+             : outBad != null && inBad.longValue() == outBad.longValue();
+    }
+
+    /**
+     * Returns the repeat count from a matched TFORM_REGEX.
+     *
+     * @param  matcher  matcher which has matched a TFORM value
+     * @return  repeat count
+     */
+    private static long getRepeat( Matcher matcher ) {
+        String count = matcher.group( 1 );
+        return count.length() == 0 ? 1L : Long.parseLong( count );
+    }
+
+    /**
+     * Represents a run of output rows all taken from the same
+     * FITS binary table.
+     */
+    private static class Segment {
+
+        final BintableStarTable table_;
+        final int[] colMap_;
+        final BitSet mask_;
+        final long nrow_;
+        private int[] offsets_;
+        private int[] lengths_;
+        private int outRowLength_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  FITS table supplying the data
+         * @param  colMap  map from output column index to column index
+         *                 in <code>table</code>
+         * @param  mask  flags for rows of <code>table</code> to be
+         *               included, or null for all rows
+         * @param  nrow  number of output rows
+         */
+        Segment( BintableStarTable table, int[] colMap, BitSet mask,
+                 long nrow ) {
+            table_ = table;
+            colMap_ = colMap;
+            mask_ = mask;
+            nrow_ = nrow;
+        }
+
+        /**
+         * Checks that the given column writers are compatible with
+         * the input data, and works out the byte ranges within each
+         * input row that need to be copied.  Adjacent ranges are merged.
+         *
+         * @param  writers  output column writers
+         * @return  true iff raw copying is possible
+         */
+        boolean initRanges( ColumnWriter[] writers ) {
+            int[] colOffsets = table_.getColumnOffsets();
+            int rowLength = table_.getRowLength();
+            int ncolIn = colOffsets.length;
+            List<int[]> ranges = new ArrayList<int[]>();
+            int outRowLength = 0;
+            for ( int icol = 0; icol < writers.length; icol++ ) {
+                ColumnWriter writer = writers[ icol ];
+                if ( writer != null ) {
+                    int jcol = colMap_[ icol ];
+                    int off = colOffsets[ jcol ];
+                    int leng = ( jcol + 1 < ncolIn ? colOffsets[ jcol + 1 ]
+                                                   : rowLength ) - off;
+                    if ( ! isRawCompatible( table_.getColumnInfo( jcol ),
+                                            leng, writer ) ) {
+                        return false;
+                    }
+                    int[] last = ranges.isEmpty()
+                               ? null
+                               : ranges.get( ranges.size() - 1 );
+                    if ( last != null && last[ 0 ] + last[ 1 ] == off ) {
+                        last[ 1 ] += leng;
+                    }
+                    else if ( leng > 0 ) {
+                        ranges.add( new int[] { off, leng } );
+                    }
+                    outRowLength += leng;
+                }
+            }
+            int nr = ranges.size();
+            offsets_ = new int[ nr ];
+            lengths_ = new int[ nr ];
+            for ( int ir = 0; ir < nr; ir++ ) {
+                offsets_[ ir ] = ranges.get( ir )[ 0 ];
+                lengths_[ ir ] = ranges.get( ir )[ 1 ];
+            }
+            outRowLength_ = outRowLength;
+            return true;
+        }
+
+        /**
+         * Writes the selected bytes of this segment's rows to a stream.
+         *
+         * @param  out  destination stream
+         * @return  number of bytes written
+         */
+        long copyData( DataOutput out ) throws IOException {
+            int rowLength = table_.getRowLength();
+            if ( nrow_ == 0 || outRowLength_ == 0 ) {
+                return 0;
+            }
+            BasicInput in = table_.getInputFactory().createInput( true );
+            try {
+                if ( mask_ == null ) {
+                    int bufRows = Math.max( 1, BUFFER_BYTES / rowLength );
+                    byte[] buf = new byte[ bufRows * rowLength ];
+                    for ( long nleft = nrow_; nleft > 0; ) {
+                        int nr = (int) Math.min( nleft, bufRows );
+                        if ( nr < bufRows ) {
+                            buf = new byte[ nr * rowLength ];
+                        }
+                        in.readBytes( buf );
+                        writeRows( out, buf, nr, rowLength );
+                        nleft -= nr;
+                    }
+                }
+                else {
+                    byte[] buf = new byte[ rowLength ];
+                    long nextRow = 0;
+                    for ( int irow = mask_.nextSetBit( 0 ); irow >= 0;
+                          irow = mask_.nextSetBit( irow + 1 ) ) {
+                        if ( irow > nextRow ) {
+                            in.skip( ( irow - nextRow ) * rowLength );
+                        }
+                        in.readBytes( buf );
+                        writeRows( out, buf, 1, rowLength );
+                        nextRow = irow + 1;
+                    }
+                }
+            }
+            finally {
+                in.close();
+            }
+            return nrow_ * outRowLength_;
+        }
+
+        /**
+         * Writes the selected bytes of a buffer of input rows to a stream.
+         *
+         * @param  out  destination stream
+         * @param  buf  buffer containing whole input rows
+         * @param  nrow  number of rows in buffer
+         * @param  rowLength  number of bytes per input row
+         */
+        private void writeRows( DataOutput out, byte[] buf, int nrow,
+                                int rowLength ) throws IOException {
+            int nr = offsets_.length;
+            if ( nr == 1 && lengths_[ 0 ] == rowLength ) {
+                out.write( buf, 0, nrow * rowLength );
+            }
+            else {
+                for ( int irow = 0; irow < nrow; irow++ ) {
+                    int off0 = irow * rowLength;
+                    for ( int ir = 0; ir < nr; ir++ ) {
+                        out.write( buf, off0 + offsets_[ ir ],
+                                   lengths_[ ir ] );
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package uk.ac.starlink.fits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Implements the Rice compression algorithm as used by the FITS
+ * tiled compression conventions (compression type RICE_1).
+ *
+ * <p>The encoded form is compatible with that produced and consumed by
+ * the <code>fits_rcomp</code>/<code>fits_rdecomp</code> family of
+ * functions in CFITSIO: the first value is written raw,
+ * and subsequent values are encoded as differences from their
+ * predecessor in blocks of 32, each block prefixed by a split-level code.
+ * Values are integers of 1, 2 or 4 bytes, supplied and returned as
+ * big-endian byte arrays as they appear in FITS data.
+ */
+class RiceCodec {
+
+    private final int bytepix_;
+    private final int fsbits_;
+    private final int fsmax_;
+    private final int bbits_;
+    private final long mask_;
+
+    /** Number of values in each coding block. */
+    public static final int NBLOCK = 32;
+
+    private static final RiceCodec BYTE = new RiceCodec( 1, 3, 6, 8 );
+    private static final RiceCodec SHORT = new RiceCodec( 2, 4, 14, 16 );
+    private static final RiceCodec INT = new RiceCodec( 4, 5, 25, 32 );
+
+    /**
+     * Constructor.
+     *
+     * @param  bytepix  number of bytes per value
+     * @param  fsbits   number of bits in block split-level code
+     * @param  fsmax    maximum split level
+     * @param  bbits    number of bits per value
+     */
+    private RiceCodec( int bytepix, int fsbits, int fsmax, int bbits ) {
+        bytepix_ = bytepix;
+        fsbits_ = fsbits;
+        fsmax_ = fsmax;
+        bbits_ = bbits;
+        mask_ = ( 1L << bbits ) - 1;
+    }
+
+    /**
+     * Returns the number of bytes per value for this codec.
+     *
+     * @return  1, 2 or 4
+     */
+    public int getBytePix() {
+        return bytepix_;
+    }
+
+    /**
+     * Returns an instance for a given value size.
+     *
+     * @param  bytepix  number of bytes per value
+     * @return  codec, or null if there is none for the given value size
+     */
+    public static RiceCodec getCodec( int bytepix ) {
+        switch ( bytepix ) {
+            case 1:
+                return BYTE;
+            case 2:
+                return SHORT;
+            case 4:
+                return INT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Compresses an array of big-endian integer values.
+     *
+     * @param  data  input data, containing a whole number of values
+     * @return   Rice-encoded byte array
+     */
+    public byte[] compress( byte[] data ) {
+        int nval = data.length / bytepix_;
+        BitWriter out = new BitWriter( data.length / 2 + 16 );
+        if ( nval == 0 ) {
+            return out.toByteArray();
+        }
+        long last = getValue( data, 0 );
+        out.writeBits( last & mask_, bbits_ );
+        long[] diffs = new long[ NBLOCK ];
+        for ( int i = 0; i < nval; i += NBLOCK ) {
+            int n = Math.min( NBLOCK, nval - i );
+
+            /* Map differences to non-negative values and find their sum. */
+            long sum = 0;
+            for ( int j = 0; j < n; j++ ) {
+                long next = getValue( data, i + j );
+                long d = signExtend( next - last );
+                diffs[ j ] = d < 0 ? ~( d << 1 ) : d << 1;
+                sum += diffs[ j ];
+                last = next;
+            }
+
+            /* Choose the split level from the mean difference. */
+            long dpsum = Math.max( 0, ( sum - n / 2 - 1 ) / n );
+            int fs = 0;
+            for ( long psum = dpsum >> 1; psum > 0; psum >>= 1 ) {
+                fs++;
+            }
+
+            /* High entropy: write the differences raw. */
+            if ( fs >= fsmax_ ) {
+                out.writeBits( fsmax_ + 1, fsbits_ );
+                for ( int j = 0; j < n; j++ ) {
+                    out.writeBits( diffs[ j ], bbits_ );
+                }
+            }
+
+            /* Zero entropy: all differences are zero. */
+            else if ( fs == 0 && sum == 0 ) {
+                out.writeBits( 0, fsbits_ );
+            }
+
+            /* Otherwise Rice-code each difference. */
+            else {
+                out.writeBits( fs + 1, fsbits_ );
+                long fsmask = ( 1L << fs ) - 1;
+                for ( int j = 0; j < n; j++ ) {
+                    long v = diffs[ j ];
+                    out.writeZeros( v >>> fs );
+                    out.writeBits( 1, 1 );
+                    if ( fs > 0 ) {
+                        out.writeBits( v & fsmask, fs );
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses a Rice-encoded byte array.
+     *
+     * @param  comp  compressed data
+     * @param  nval  number of values encoded
+     * @return   array of <code>nval</code> big-endian integer values
+     */
+    public byte[] decompress( byte[] comp, int nval ) throws IOException {
+        byte[] data = new byte[ nval * bytepix_ ];
+        if ( nval == 0 ) {
+            return data;
+        }
+        BitReader in = new BitReader( comp );
+        long last = signExtend( in.readBits( bbits_ ) );
+        for ( int i = 0; i < nval; i += NBLOCK ) {
+            int n = Math.min( NBLOCK, nval - i );
+            int fs = (int) in.readBits( fsbits_ ) - 1;
+            if ( fs > fsmax_ ) {
+                throw new IOException( "Bad Rice block code " + fs );
+            }
+            for ( int j = 0; j < n; j++ ) {
+                if ( fs >= 0 ) {
+                    long diff;
+                    if ( fs == fsmax_ ) {
+                        diff = in.readBits( bbits_ );
+                    }
+                    else {
+                        diff = ( in.readZeros() << fs )
+                             | ( fs > 0 ? in.readBits( fs ) : 0 );
+                    }
+                    long d = ( diff & 1 ) != 0 ? ~( diff >>> 1 )
+                                               : ( diff >>> 1 );
+                    last = signExtend( last + d );
+                }
+                putValue( data, i + j, last );
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Reads a big-endian integer value from a byte array.
+     *
+     * @param  data  data array
+     * @param  ival  value index
+     * @return  signed value
+     */
+    private long getValue( byte[] data, int ival ) {
+        int ib = ival * bytepix_;
+        long v = data[ ib ];
+        for ( int k = 1; k < bytepix_; k++ ) {
+            v = ( v << 8 ) | ( data[ ib + k ] & 0xff );
+        }
+        return v;
+    }
+
+    /**
+     * Writes a big-endian integer value into a byte array.
+     *
+     * @param  data  data array
+     * @param  ival  value index
+     * @param  v   value
+     */
+    private void putValue( byte[] data, int ival, long v ) {
+        int ib = ival * bytepix_;
+        for ( int k = bytepix_ - 1; k >= 0; k-- ) {
+            data[ ib + k ] = (byte) v;
+            v >>= 8;
+        }
+    }
+
+    /**
+     * Truncates a value to this codec's bit width and sign-extends it.
+     *
+     * @param  v  value
+     * @return   value modulo 2^bbits in signed form
+     */
+    private long signExtend( long v ) {
+        int shift = 64 - bbits_;
+        return ( v << shift ) >> shift;
+    }
+
+    /**
+     * Accumulates a most-significant-bit-first bit stream.
+     */
+    private static class BitWriter {
+        private byte[] buf_;
+        private int nbyte_;
+        private long acc_;
+        private int nbit_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  initial buffer size in bytes
+         */
+        BitWriter( int size ) {
+            buf_ = new byte[ Math.max( size, 16 ) ];
+        }
+
+        /**
+         * Writes the low-order bits of a value.
+         *
+         * @param  v  value
+         * @param  n  number of bits, no more than 32
+         */
+        void writeBits( long v, int n ) {
+            acc_ = ( acc_ << n ) | ( v & ( ( 1L << n ) - 1 ) );
+            nbit_ += n;
+            while ( nbit_ >= 8 ) {
+                nbit_ -= 8;
+                putByte( (int) ( acc_ >>> nbit_ ) );
+            }
+        }
+
+        /**
+         * Writes a run of zero bits.
+         *
+         * @param  n  number of zero bits
+         */
+        void writeZeros( long n ) {
+            while ( n > 32 ) {
+                writeBits( 0, 32 );
+                n -= 32;
+            }
+            writeBits( 0, (int) n );
+        }
+
+        /**
+         * Returns the bytes written so far, padding the final byte
+         * with zero bits.
+         *
+         * @return  byte array
+         */
+        byte[] toByteArray() {
+            if ( nbit_ > 0 ) {
+                writeBits( 0, 8 - nbit_ );
+            }
+            return Arrays.copyOf( buf_, nbyte_ );
+        }
+
+        private void putByte( int b ) {
+            if ( nbyte_ == buf_.length ) {
+                buf_ = Arrays.copyOf( buf_, buf_.length * 2 );
+            }
+            buf_[ nbyte_++ ] = (byte) b;
+        }
+    }
+
+    /**
+     * Reads a most-significant-bit-first bit stream.
+     */
+    private static class BitReader {
+        private final byte[] buf_;
+        private int ipos_;
+        private long acc_;
+        private int nbit_;
+
+        /**
+         * Constructor.
+         *
+         * @param  buf  input bytes
+         */
+        BitReader( byte[] buf ) {
+            buf_ = buf;
+        }
+
+        /**
+         * Reads an unsigned value.
+         *
+         * @param  n  number of bits, no more than 32
+         * @return   value
+         */
+        long readBits( int n ) throws EOFException {
+            while ( nbit_ < n ) {
+                fetchByte();
+            }
+            nbit_ -= n;
+            return ( acc_ >>> nbit_ ) & ( ( 1L << n ) - 1 );
+        }
+
+        /**
+         * Reads a run of zero bits and the one bit that terminates it.
+         *
+         * @return  number of zero bits read
+         */
+        long readZeros() throws EOFException {
+            long nz = 0;
+            while ( true ) {
+                long bits = acc_ & ( ( 1L << nbit_ ) - 1 );
+                if ( bits == 0 ) {
+                    nz += nbit_;
+                    nbit_ = 0;
+                    fetchByte();
+                }
+                else {
+                    int top = 63 - Long.numberOfLeadingZeros( bits );
+                    nz += nbit_ - 1 - top;
+                    nbit_ = top;
+                    return nz;
+                }
+            }
+        }
+
+        private void fetchByte() throws EOFException {
+            if ( ipos_ >= buf_.length ) {
+                throw new EOFException( "Rice decompression overran input" );
+            }
+            acc_ = ( acc_ << 8 ) | ( buf_[ ipos_++ ] & 0xff );
+            nbit_ += 8;
+        }
+    }
+}
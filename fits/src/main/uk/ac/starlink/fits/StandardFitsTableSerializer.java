@@ -1,13 +1,22 @@
 package uk.ac.starlink.fits;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.fits.FitsException;
@@ -21,6 +30,7 @@ import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.SplitPolicy;
 
 /**
  * Class which knows how to do the various bits of serializing a StarTable
@@ -43,12 +53,23 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
 
     private static Logger logger = Logger.getLogger( "uk.ac.starlink.fits" );
 
+    /** Approximate size in bytes of row blocks encoded in parallel. */
+    private static final int PARALLEL_BLOCK_BYTES = 4 * 1024 * 1024;
+
     private final boolean allowSignedByte;
     private final WideFits wide;
+    private final SplitPolicy writePolicy;
     private StarTable table;
     private ColumnWriter[] colWriters;
     private ColumnInfo[] colInfos;
     private long rowCount;
+    private boolean[] useCols;
+    private int[][] shapes;
+    private boolean[] varShapes;
+    private int[] maxChars;
+    private int[] maxElements;
+    private long[] totalElements;
+    private boolean[] nullableInts;
 
     /**
      * Package-private constructor intended for use by subclasses.
@@ -59,8 +80,25 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
      *                 null to avoid this convention
      */
     StandardFitsTableSerializer( boolean allowSignedByte, WideFits wide ) {
+        this( allowSignedByte, wide, null );
+    }
+
+    /**
+     * Private constructor which configures write mode.
+     *
+     * @param   allowSignedByte  if true, bytes written as FITS signed bytes
+     *          (TZERO=-128), if false bytes written as signed shorts
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     * @param   writePolicy  policy for parallel writing,
+     *                       or null for sequential
+     */
+    private StandardFitsTableSerializer( boolean allowSignedByte,
+                                         WideFits wide,
+                                         SplitPolicy writePolicy ) {
         this.allowSignedByte = allowSignedByte;
         this.wide = wide;
+        this.writePolicy = writePolicy;
     }
 
     /**
@@ -80,7 +118,36 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
     public StandardFitsTableSerializer( StarTable table,
                                         boolean allowSignedByte, WideFits wide )
             throws IOException {
-        this( allowSignedByte, wide );
+        this( table, allowSignedByte, wide, null );
+    }
+
+    /**
+     * Constructs a serializer to write a given StarTable,
+     * optionally in parallel.
+     *
+     * <p>If a write policy is supplied, the data is written by
+     * encoding blocks of rows into byte buffers on multiple threads
+     * and writing the buffers out in sequence.
+     * In this case a preliminary pass through the data is only made
+     * if the row count or some column widths are not known in advance;
+     * nullable integer columns are given a blank value whether or not
+     * any null values are actually present, rather than
+     * scanning the data to find out.
+     *
+     * @param  table  the table to be written
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     * @param   writePolicy  policy for parallel writing,
+     *                       or null for sequential
+     * @throws IOException if it won't be possible to write the given table
+     */
+    public StandardFitsTableSerializer( StarTable table,
+                                        boolean allowSignedByte, WideFits wide,
+                                        SplitPolicy writePolicy )
+            throws IOException {
+        this( allowSignedByte, wide, writePolicy );
         init( table );
     }
 
@@ -167,7 +234,8 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
                  * any case, so finding out whether there are in fact null
                  * values by scanning the data is not necessary. */
                 if ( colinfo.getAuxDatumValue( Tables.NULL_VALUE_INFO,
-                                               Number.class ) != null ) {
+                                               Number.class ) != null ||
+                     writePolicy != null ) {
                     hasNulls[ icol ] = true;
                 }
                 else {
@@ -281,27 +349,29 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
          * write values to the stream.  For columns which can't be 
          * written in FITS format store a null in the writers array
          * and log a message. */
-        colWriters = new ColumnWriter[ ncol ];
-        int rbytes = 0;
+        this.useCols = useCols;
+        this.shapes = shapes;
+        this.varShapes = varShapes;
+        this.maxChars = maxChars;
+        this.maxElements = maxElements;
+        this.totalElements = totalElements;
+        this.nullableInts = new boolean[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            nullableInts[ icol ] = mayHaveNullableInts[ icol ]
+                                 && hasNulls[ icol ];
+        }
+        colWriters = createColumnWriters();
         int nUseCol = 0;
         for ( int icol = 0; icol < ncol; icol++ ) {
             if ( useCols[ icol ] ) {
-                ColumnInfo cinfo = colInfos[ icol ];
-                ColumnWriter writer =
-                    createColumnWriter( cinfo, shapes[ icol ],
-                                        varShapes[ icol ], maxChars[ icol ],
-                                        maxElements[ icol ],
-                                        totalElements[ icol ],
-                                        mayHaveNullableInts[ icol ] 
-                                        && hasNulls[ icol ] );
-                if ( writer == null ) {
-                    logger.warning( "Ignoring column " + cinfo.getName() +
-                                    " - don't know how to write to FITS" );
+                if ( colWriters[ icol ] == null ) {
+                    logger.warning( "Ignoring column "
+                                  + colInfos[ icol ].getName()
+                                  + " - don't know how to write to FITS" );
                 }
                 else {
                     nUseCol++;
                 }
-                colWriters[ icol ] = writer;
             }
         }
 
@@ -309,6 +379,31 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         FitsConstants.checkColumnCount( wide, nUseCol );
     }
 
+    /**
+     * Constructs a new set of column writers for this serializer's table,
+     * based on the column characteristics established during
+     * initialisation.  Column writers may be stateful, so a separate
+     * set is required for each thread that writes data.
+     * Elements for columns that will not be written are null.
+     *
+     * @return  new column writer array
+     */
+    private ColumnWriter[] createColumnWriters() {
+        int ncol = colInfos.length;
+        ColumnWriter[] writers = new ColumnWriter[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( useCols[ icol ] ) {
+                writers[ icol ] =
+                    createColumnWriter( colInfos[ icol ], shapes[ icol ],
+                                        varShapes[ icol ], maxChars[ icol ],
+                                        maxElements[ icol ],
+                                        totalElements[ icol ],
+                                        nullableInts[ icol ] );
+            }
+        }
+        return writers;
+    }
+
     /**
      * Returns the array of column writers used by this serializer.
      * The list is generated once by the sole call of the 
@@ -516,8 +611,40 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             }
         }
 
-        /* Write the data cells, delegating the item in each column to
-         * the writer that knows how to handle it. */
+        /* If the table is a view of FITS binary table data with the
+         * same column layout as the output, copy the raw bytes.
+         * Otherwise, write the data cells, delegating the item in each
+         * column to the writer that knows how to handle it. */
+        RawBintableCopier copier =
+            RawBintableCopier.createCopier( table, colWriters );
+        final long nWritten;
+        if ( copier != null ) {
+            logger.config( "Copying raw FITS table data" );
+            nWritten = copier.copyData( strm );
+        }
+        else {
+            nWritten = writePolicy != null && rowBytes > 0
+                     ? writeDataParallel( strm, rowBytes )
+                     : writeDataSequential( strm, rowBytes );
+        }
+
+        /* Write padding. */
+        int extra = (int) ( nWritten % (long) 2880 );
+        if ( extra > 0 ) {
+            strm.write( new byte[ 2880 - extra ] );
+        }
+    }
+
+    /**
+     * Writes the data cells on the current thread.
+     *
+     * @param  strm  destination stream
+     * @param  rowBytes  number of bytes per row
+     * @return  number of bytes written
+     */
+    private long writeDataSequential( DataOutput strm, int rowBytes )
+            throws IOException {
+        int ncol = table.getColumnCount();
         long nWritten = 0L;
         RowSequence rseq = table.getRowSequence();
         try {
@@ -535,12 +662,167 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         finally {
             rseq.close();
         }
+        return nWritten;
+    }
 
-        /* Write padding. */
-        int extra = (int) ( nWritten % (long) 2880 );
-        if ( extra > 0 ) {
-            strm.write( new byte[ 2880 - extra ] );
+    /**
+     * Writes the data cells by encoding blocks of rows in parallel
+     * and writing the results in order.
+     * If the table has random access, rows are read by the worker
+     * threads, otherwise they are read sequentially on the current
+     * thread and handed to the workers for encoding.
+     * The number of blocks in progress at any one time is limited,
+     * so memory usage does not depend on the table size.
+     *
+     * @param  strm  destination stream
+     * @param  rowBytes  number of bytes per row
+     * @return  number of bytes written
+     */
+    private long writeDataParallel( DataOutput strm, final int rowBytes )
+            throws IOException {
+        ForkJoinPool pool = writePolicy.getForkJoinPool();
+        int maxPending = 2 * Math.max( 1, pool.getParallelism() );
+        final int blockRows =
+            Math.max( 1, PARALLEL_BLOCK_BYTES / rowBytes );
+        final ThreadLocal<ColumnWriter[]> writersLocal =
+                new ThreadLocal<ColumnWriter[]>() {
+            @Override
+            protected ColumnWriter[] initialValue() {
+                return createColumnWriters();
+            }
+        };
+        final boolean isRandom = table.isRandom();
+        RowSequence rseq = isRandom ? null : table.getRowSequence();
+        Deque<Future<BlockBuffer>> pending =
+            new ArrayDeque<Future<BlockBuffer>>();
+        long nWritten = 0L;
+        try {
+            long irow = 0;
+            while ( true ) {
+
+                /* Prepare a task to encode the next block. */
+                final Callable<BlockBuffer> task;
+                if ( isRandom ) {
+                    final long irow0 = irow;
+                    final int nr =
+                        (int) Math.min( blockRows, rowCount - irow );
+                    if ( nr <= 0 ) {
+                        break;
+                    }
+                    irow += nr;
+                    task = new Callable<BlockBuffer>() {
+                        public BlockBuffer call() throws IOException {
+                            BlockBuffer buf =
+                                new BlockBuffer( nr * rowBytes );
+                            ColumnWriter[] writers = writersLocal.get();
+                            for ( int ir = 0; ir < nr; ir++ ) {
+                                writeRow( buf.dataOut_, writers,
+                                          table.getRow( irow0 + ir ) );
+                            }
+                            return buf;
+                        }
+                    };
+                }
+                else {
+                    final List<Object[]> rows =
+                        new ArrayList<Object[]>( blockRows );
+                    while ( rows.size() < blockRows && rseq.next() ) {
+                        rows.add( rseq.getRow().clone() );
+                    }
+                    if ( rows.isEmpty() ) {
+                        break;
+                    }
+                    task = new Callable<BlockBuffer>() {
+                        public BlockBuffer call() throws IOException {
+                            BlockBuffer buf =
+                                new BlockBuffer( rows.size() * rowBytes );
+                            ColumnWriter[] writers = writersLocal.get();
+                            for ( Object[] row : rows ) {
+                                writeRow( buf.dataOut_, writers, row );
+                            }
+                            return buf;
+                        }
+                    };
+                }
+
+                /* Submit it, and write out the oldest block if enough
+                 * are already in progress. */
+                pending.add( pool.submit( task ) );
+                if ( pending.size() >= maxPending ) {
+                    nWritten += writeBlock( strm, pending.removeFirst() );
+                }
+            }
+            while ( ! pending.isEmpty() ) {
+                nWritten += writeBlock( strm, pending.removeFirst() );
+            }
+        }
+        finally {
+            for ( Future<BlockBuffer> future : pending ) {
+                future.cancel( true );
+            }
+            if ( rseq != null ) {
+                rseq.close();
+            }
+        }
+        return nWritten;
+    }
+
+    /**
+     * Writes a single row using a given set of column writers.
+     *
+     * @param  out  destination
+     * @param  writers  column writers, null for unused columns
+     * @param  row   row data
+     */
+    private static void writeRow( DataOutput out, ColumnWriter[] writers,
+                                  Object[] row )
+            throws IOException {
+        int ncol = writers.length;
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            ColumnWriter writer = writers[ icol ];
+            if ( writer != null ) {
+                writer.writeValue( out, row[ icol ] );
+            }
+        }
+    }
+
+    /**
+     * Waits for an encoded block and writes it to the output.
+     *
+     * @param  strm  destination stream
+     * @param  future  block encoding task
+     * @return  number of bytes written
+     */
+    private static int writeBlock( DataOutput strm,
+                                   Future<BlockBuffer> future )
+            throws IOException {
+        BlockBuffer buf;
+        try {
+            buf = future.get();
+        }
+        catch ( InterruptedException e ) {
+            throw (IOException)
+                  new InterruptedIOException( "Interrupted" ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( cause.getMessage() )
+                                   .initCause( cause );
+            }
         }
+        int n = buf.size();
+        strm.write( buf.getBuffer(), 0, n );
+        return n;
     }
 
     public char getFormatChar( int icol ) {
@@ -891,4 +1173,31 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             return null;
         }
     }
+
+    /**
+     * Byte array output stream with a DataOutput view,
+     * used to accumulate an encoded block of rows.
+     */
+    private static class BlockBuffer extends ByteArrayOutputStream {
+        final DataOutputStream dataOut_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  expected number of bytes
+         */
+        BlockBuffer( int size ) {
+            super( size );
+            dataOut_ = new DataOutputStream( this );
+        }
+
+        /**
+         * Returns the internal buffer, valid up to the current size.
+         *
+         * @return  buffer
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
 }
@@ -0,0 +1,256 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression algorithm for a single column of a tile in a FITS
+ * tile-compressed binary table.
+ * Instances correspond to the values of the <code>ZCTYPn</code> header
+ * of the tiled table compression convention.
+ *
+ * <p>Uncompressed data is in each case the big-endian byte sequence
+ * of a column's cells for all the rows in a tile, as it would appear
+ * in the uncompressed table, stored contiguously.
+ *
+ * @see  <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompress.html"
+ *          >Tiled Table Compression convention</a>
+ */
+abstract class TileCodec {
+
+    private final String name_;
+
+    /** No compression. */
+    public static final TileCodec NOCOMPRESS = new TileCodec( "NOCOMPRESS" ) {
+        public boolean canCompress( int elSize, boolean isInt ) {
+            return true;
+        }
+        public byte[] compress( byte[] data, int elSize ) {
+            return data;
+        }
+        public byte[] decompress( byte[] comp, int leng, int elSize )
+                throws IOException {
+            return checkLength( comp, leng );
+        }
+    };
+
+    /** Gzip compression of the raw bytes. */
+    public static final TileCodec GZIP_1 = new GzipCodec( "GZIP_1", false );
+
+    /** Gzip compression of the bytes shuffled into significance order. */
+    public static final TileCodec GZIP_2 = new GzipCodec( "GZIP_2", true );
+
+    /** Rice compression, only for integer elements of 1, 2 or 4 bytes. */
+    public static final TileCodec RICE_1 = new TileCodec( "RICE_1" ) {
+        public boolean canCompress( int elSize, boolean isInt ) {
+            return isInt && RiceCodec.getCodec( elSize ) != null;
+        }
+        public byte[] compress( byte[] data, int elSize ) {
+            return RiceCodec.getCodec( elSize ).compress( data );
+        }
+        public byte[] decompress( byte[] comp, int leng, int elSize )
+                throws IOException {
+            RiceCodec rice = RiceCodec.getCodec( elSize );
+            if ( rice == null ) {
+                throw new IOException( "RICE_1 not supported for "
+                                     + elSize + "-byte elements" );
+            }
+            return rice.decompress( comp, leng / elSize );
+        }
+    };
+
+    private static final TileCodec[] CODECS = {
+        NOCOMPRESS, GZIP_1, GZIP_2, RICE_1,
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param  name  ZCTYPn value
+     */
+    protected TileCodec( String name ) {
+        name_ = name;
+    }
+
+    /**
+     * Returns the name of this codec, as used in the ZCTYPn header.
+     *
+     * @return  compression type name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Indicates whether this codec can compress column data with
+     * a given element type.
+     *
+     * @param  elSize  number of bytes per primitive element
+     * @param  isInt   true for integer-typed elements
+     * @return   true iff compression is possible
+     */
+    public abstract boolean canCompress( int elSize, boolean isInt );
+
+    /**
+     * Compresses the data for one column of a tile.
+     *
+     * @param  data   uncompressed bytes
+     * @param  elSize  number of bytes per primitive element
+     * @return   compressed bytes
+     */
+    public abstract byte[] compress( byte[] data, int elSize )
+            throws IOException;
+
+    /**
+     * Decompresses the data for one column of a tile.
+     *
+     * @param  comp   compressed bytes
+     * @param  leng   number of bytes of uncompressed data
+     * @param  elSize  number of bytes per primitive element
+     * @return  <code>leng</code>-element array of uncompressed bytes
+     */
+    public abstract byte[] decompress( byte[] comp, int leng, int elSize )
+            throws IOException;
+
+    @Override
+    public String toString() {
+        return name_;
+    }
+
+    /**
+     * Returns the codec with a given name.
+     *
+     * @param  name  ZCTYPn value
+     * @return  codec, or null if not known
+     */
+    public static TileCodec getCodec( String name ) {
+        for ( TileCodec codec : CODECS ) {
+            if ( codec.name_.equalsIgnoreCase( name.trim() ) ) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that an uncompressed buffer has the expected length.
+     *
+     * @param  data  uncompressed data
+     * @param  leng  required length
+     * @return   <code>data</code>
+     */
+    private static byte[] checkLength( byte[] data, int leng )
+            throws IOException {
+        if ( data.length != leng ) {
+            throw new IOException( "Tile data length mismatch ("
+                                 + data.length + " != " + leng + ")" );
+        }
+        return data;
+    }
+
+    /**
+     * Codec implementation for GZIP_1 and GZIP_2.
+     */
+    private static class GzipCodec extends TileCodec {
+        private final boolean shuffle_;
+
+        /**
+         * Constructor.
+         *
+         * @param  name  codec name
+         * @param  shuffle  whether to shuffle bytes before compression
+         */
+        GzipCodec( String name, boolean shuffle ) {
+            super( name );
+            shuffle_ = shuffle;
+        }
+
+        public boolean canCompress( int elSize, boolean isInt ) {
+            return true;
+        }
+
+        public byte[] compress( byte[] data, int elSize ) throws IOException {
+            if ( shuffle_ ) {
+                data = shuffle( data, elSize );
+            }
+            ByteArrayOutputStream bout =
+                new ByteArrayOutputStream( data.length / 2 + 64 );
+            GZIPOutputStream zout = new GZIPOutputStream( bout );
+            zout.write( data );
+            zout.close();
+            return bout.toByteArray();
+        }
+
+        public byte[] decompress( byte[] comp, int leng, int elSize )
+                throws IOException {
+
+            /* The convention requires gzip format, but tolerate plain
+             * zlib streams as well. */
+            InputStream in = new ByteArrayInputStream( comp );
+            boolean isGzip = comp.length > 1
+                          && ( comp[ 0 ] & 0xff ) == 0x1f
+                          && ( comp[ 1 ] & 0xff ) == 0x8b;
+            in = isGzip ? new GZIPInputStream( in )
+                        : new InflaterInputStream( in );
+            byte[] data = new byte[ leng ];
+            try {
+                new DataInputStream( in ).readFully( data );
+            }
+            finally {
+                in.close();
+            }
+            return shuffle_ ? unshuffle( data, elSize ) : data;
+        }
+
+        /**
+         * Rearranges bytes so that the most significant byte of each
+         * element comes first, then the next most significant, etc.
+         *
+         * @param  data  input bytes
+         * @param  elSize  element size
+         * @return   shuffled bytes
+         */
+        private static byte[] shuffle( byte[] data, int elSize ) {
+            if ( elSize <= 1 ) {
+                return data;
+            }
+            int nel = data.length / elSize;
+            byte[] out = new byte[ data.length ];
+            for ( int k = 0; k < elSize; k++ ) {
+                int ko = k * nel;
+                for ( int i = 0; i < nel; i++ ) {
+                    out[ ko + i ] = data[ i * elSize + k ];
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Inverts the {@link #shuffle} operation.
+         *
+         * @param  data  shuffled bytes
+         * @param  elSize  element size
+         * @return   unshuffled bytes
+         */
+        private static byte[] unshuffle( byte[] data, int elSize ) {
+            if ( elSize <= 1 ) {
+                return data;
+            }
+            int nel = data.length / elSize;
+            byte[] out = new byte[ data.length ];
+            for ( int k = 0; k < elSize; k++ ) {
+                int ko = k * nel;
+                for ( int i = 0; i < nel; i++ ) {
+                    out[ i * elSize + k ] = data[ ko + i ];
+                }
+            }
+            return out;
+        }
+    }
+}
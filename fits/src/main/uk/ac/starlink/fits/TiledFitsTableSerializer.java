@@ -0,0 +1,323 @@
+package uk.ac.starlink.fits;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import nom.tam.fits.HeaderCardException;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * FitsTableSerializer which writes a binary table using the
+ * FITS tiled table compression convention.
+ *
+ * <p>The table is first serialized as a normal BINTABLE by a
+ * {@link StandardFitsTableSerializer}; the resulting rows are grouped
+ * into tiles, and each column of each tile is compressed separately
+ * and stored in the heap of a BINTABLE with one row per tile.
+ * Integer columns of 1, 2 or 4 bytes may be compressed using RICE_1,
+ * and all other columns are compressed using GZIP_2.
+ *
+ * <p>Since the header cannot be written until the size of the
+ * compressed data is known, the compressed data is accumulated
+ * in memory when the header is first requested.
+ *
+ * @see  <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompress.html"
+ *          >Tiled Table Compression convention</a>
+ */
+class TiledFitsTableSerializer implements FitsTableSerializer {
+
+    private final StandardFitsTableSerializer base_;
+    private final int tileRows_;
+    private final boolean useRice_;
+    private Header zhdr_;
+    private long[] descs_;
+    private List<byte[]> heap_;
+    private long heapSize_;
+    private boolean isLongDesc_;
+    private int ncol_;
+    private long ntile_;
+
+    /** Approximate uncompressed tile size used if none is specified. */
+    public static final int DFLT_TILE_BYTES = 4 * 1024 * 1024;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructor.
+     *
+     * @param  table  table to write
+     * @param  tileRows  number of rows per tile, or non-positive
+     *                   for an automatically chosen value
+     * @param  useRice  true to use RICE_1 compression for suitable
+     *                  integer columns, false to use GZIP_2 throughout
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     */
+    public TiledFitsTableSerializer( StarTable table, int tileRows,
+                                     boolean useRice, WideFits wide )
+            throws IOException {
+        base_ = new StandardFitsTableSerializer( table, true, wide );
+        tileRows_ = tileRows;
+        useRice_ = useRice;
+    }
+
+    public Header getHeader() throws HeaderCardException {
+        if ( zhdr_ == null ) {
+            try {
+                compress();
+            }
+            catch ( IOException e ) {
+                throw (HeaderCardException)
+                      new HeaderCardException( "Tile compression failed: "
+                                             + e.getMessage() )
+                     .initCause( e );
+            }
+        }
+        return zhdr_;
+    }
+
+    public void writeData( DataOutput out ) throws IOException {
+        getHeaderUnchecked();
+        int nd = descs_.length / 2;
+        for ( int id = 0; id < nd; id++ ) {
+            long leng = descs_[ 2 * id + 0 ];
+            long off = descs_[ 2 * id + 1 ];
+            if ( isLongDesc_ ) {
+                out.writeLong( leng );
+                out.writeLong( off );
+            }
+            else {
+                out.writeInt( (int) leng );
+                out.writeInt( (int) off );
+            }
+        }
+        for ( byte[] buf : heap_ ) {
+            out.write( buf );
+        }
+        long nWritten = nd * ( isLongDesc_ ? 16L : 8L ) + heapSize_;
+        int extra = (int) ( nWritten % (long) FitsConstants.FITS_BLOCK );
+        if ( extra > 0 ) {
+            out.write( new byte[ FitsConstants.FITS_BLOCK - extra ] );
+        }
+    }
+
+    public long getRowCount() {
+        return base_.getRowCount();
+    }
+
+    public int[] getDimensions( int icol ) {
+        return base_.getDimensions( icol );
+    }
+
+    public char getFormatChar( int icol ) {
+        return base_.getFormatChar( icol );
+    }
+
+    public String getBadValue( int icol ) {
+        return base_.getBadValue( icol );
+    }
+
+    /**
+     * Ensures that the compressed data has been prepared,
+     * rethrowing any header exception as an IOException.
+     */
+    private void getHeaderUnchecked() throws IOException {
+        try {
+            getHeader();
+        }
+        catch ( HeaderCardException e ) {
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+    }
+
+    /**
+     * Serializes and compresses the table data, and prepares the
+     * compressed table header.
+     */
+    private void compress() throws IOException, HeaderCardException {
+        Header bhdr = base_.getHeader();
+        ncol_ = bhdr.getIntValue( "TFIELDS" );
+        final long nrow = bhdr.getLongValue( "NAXIS2" );
+        final int rowLeng = bhdr.getIntValue( "NAXIS1" );
+
+        /* Work out the column layout and compression types. */
+        final int[] colOffs = new int[ ncol_ ];
+        final int[] colWidths = new int[ ncol_ ];
+        final int[] elSizes = new int[ ncol_ ];
+        final TileCodec[] codecs = new TileCodec[ ncol_ ];
+        int off = 0;
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            String tform = bhdr.getStringValue( "TFORM" + ( ic + 1 ) );
+            int[] fmt = TiledInputFactory.parseForm( tform );
+            char type = tform.trim().charAt( tform.trim().length() - 1 );
+            boolean isInt = "BIJK".indexOf( type ) >= 0;
+            colOffs[ ic ] = off;
+            colWidths[ ic ] = fmt[ 0 ];
+            elSizes[ ic ] = fmt[ 1 ];
+            codecs[ ic ] = useRice_ && TileCodec.RICE_1
+                                               .canCompress( fmt[ 1 ], isInt )
+                         ? TileCodec.RICE_1
+                         : TileCodec.GZIP_2;
+            off += fmt[ 0 ];
+        }
+
+        /* Determine tile size. */
+        final int tileRows;
+        if ( tileRows_ > 0 ) {
+            tileRows = (int) Math.min( tileRows_, Math.max( nrow, 1 ) );
+        }
+        else {
+            tileRows = (int) Math.max( 1, Math.min( Math.max( nrow, 1 ),
+                                                    DFLT_TILE_BYTES
+                                                  / Math.max( rowLeng, 1 ) ) );
+        }
+        if ( (long) tileRows * rowLeng > Integer.MAX_VALUE ) {
+            throw new IOException( "Tile too large" );
+        }
+        ntile_ = ( nrow + tileRows - 1 ) / tileRows;
+
+        /* Serialize the uncompressed rows, compressing each tile
+         * as it fills up. */
+        final long[] maxLengs = new long[ ncol_ ];
+        descs_ = new long[ (int) ( 2 * ntile_ * ncol_ ) ];
+        heap_ = new ArrayList<byte[]>();
+        heapSize_ = 0;
+        final byte[] tileBuf = new byte[ tileRows * rowLeng ];
+        OutputStream tileOut = new OutputStream() {
+            final long totBytes_ = nrow * rowLeng;
+            long nbyte_;
+            int ib_;
+            long itile_;
+            public void write( int b ) throws IOException {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+            public void write( byte[] b, int off, int len ) throws IOException {
+
+                /* Ignore padding. */
+                len = (int) Math.min( len, totBytes_ - nbyte_ );
+                while ( len > 0 ) {
+                    int n = Math.min( len, tileBuf.length - ib_ );
+                    System.arraycopy( b, off, tileBuf, ib_, n );
+                    ib_ += n;
+                    off += n;
+                    len -= n;
+                    nbyte_ += n;
+                    if ( ib_ == tileBuf.length || nbyte_ == totBytes_ ) {
+                        compressTile( itile_++, tileBuf, ib_ / rowLeng,
+                                      rowLeng, colOffs, colWidths, elSizes,
+                                      codecs, maxLengs );
+                        ib_ = 0;
+                    }
+                }
+            }
+        };
+        DataOutputStream dataOut = new DataOutputStream( tileOut );
+        base_.writeData( dataOut );
+        dataOut.flush();
+        isLongDesc_ = heapSize_ > Integer.MAX_VALUE;
+
+        /* Prepare the header. */
+        AddableHeader zhdr = new AddableHeader();
+        int descSize = isLongDesc_ ? 16 : 8;
+        for ( HeaderCard card : FitsConstants.headerIterable( bhdr ) ) {
+            String key = card.getKey();
+            String comment = card.getComment();
+            if ( key == null || ! card.isKeyValuePair() ) {
+                zhdr.addLine( card );
+            }
+            else if ( "NAXIS1".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, ncol_ * descSize,
+                                              comment ) );
+            }
+            else if ( "NAXIS2".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, ntile_,
+                                              "number of tiles in table" ) );
+            }
+            else if ( "PCOUNT".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, heapSize_, comment ) );
+            }
+            else if ( "TFIELDS".equals( key ) ) {
+                zhdr.addLine( card );
+                zhdr.addLine( new HeaderCard( "ZTABLE", true,
+                                              "extension contains compressed"
+                                            + " binary table" ) );
+                zhdr.addLine( new HeaderCard( "ZTILELEN", tileRows,
+                                              "number of rows in each tile" ) );
+                zhdr.addLine( new HeaderCard( "ZNAXIS1", (long) rowLeng,
+                                              "length of uncompressed row"
+                                            + " in bytes" ) );
+                zhdr.addLine( new HeaderCard( "ZNAXIS2", nrow,
+                                              "number of rows in uncompressed"
+                                            + " table" ) );
+                zhdr.addLine( new HeaderCard( "ZPCOUNT", 0,
+                                              "size of uncompressed heap" ) );
+            }
+            else if ( key.matches( "TFORM[0-9]+" ) ) {
+                String jc = key.substring( 5 );
+                int ic = Integer.parseInt( jc ) - 1;
+                zhdr.addLine( new HeaderCard( key,
+                                              "1" + ( isLongDesc_ ? 'Q' : 'P' )
+                                            + "B(" + maxLengs[ ic ] + ")",
+                                              "compressed data descriptor" ) );
+                zhdr.addLine( new HeaderCard( "ZFORM" + jc, card.getValue(),
+                                              comment ) );
+                zhdr.addLine( new HeaderCard( "ZCTYP" + jc,
+                                              codecs[ ic ].getName(),
+                                              "compression algorithm" ) );
+            }
+            else {
+                zhdr.addLine( card );
+            }
+        }
+        logger_.info( "Compressed " + nrow + " rows into " + ntile_
+                    + " tiles, " + heapSize_ + " bytes" );
+        zhdr_ = zhdr;
+    }
+
+    /**
+     * Compresses the data for each column of a tile,
+     * appending the results to the heap.
+     *
+     * @param  itile  tile index
+     * @param  tileBuf  buffer containing uncompressed row data for the tile
+     * @param  nrow   number of rows in tile
+     * @param  rowLeng  number of bytes per row
+     * @param  colOffs  byte offset of each column within a row
+     * @param  colWidths  byte width of each column
+     * @param  elSizes  primitive element size for each column
+     * @param  codecs  compression algorithm for each column
+     * @param  maxLengs  array of maximum compressed length per column,
+     *                   updated on exit
+     */
+    private void compressTile( long itile, byte[] tileBuf, int nrow,
+                               int rowLeng, int[] colOffs, int[] colWidths,
+                               int[] elSizes, TileCodec[] codecs,
+                               long[] maxLengs )
+            throws IOException {
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            int width = colWidths[ ic ];
+            byte[] colBuf = new byte[ nrow * width ];
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                System.arraycopy( tileBuf, ir * rowLeng + colOffs[ ic ],
+                                  colBuf, ir * width, width );
+            }
+            byte[] comp = colBuf.length == 0
+                        ? colBuf
+                        : codecs[ ic ].compress( colBuf, elSizes[ ic ] );
+            int id = (int) ( itile * ncol_ + ic );
+            descs_[ 2 * id + 0 ] = comp.length;
+            descs_[ 2 * id + 1 ] = heapSize_;
+            maxLengs[ ic ] = Math.max( maxLengs[ ic ], comp.length );
+            heap_.add( comp );
+            heapSize_ += comp.length;
+        }
+    }
+}
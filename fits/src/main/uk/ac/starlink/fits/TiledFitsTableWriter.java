@@ -0,0 +1,71 @@
+package uk.ac.starlink.fits;
+
+import java.io.IOException;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * Handles writing of a StarTable in FITS binary format using the
+ * tiled table compression convention.
+ * The output is a BINTABLE extension with <code>ZTABLE=T</code>
+ * as written by <code>fpack -table</code>; it can be read by
+ * {@link FitsTableBuilder} or by CFITSIO-based software,
+ * which present it as the equivalent uncompressed table.
+ *
+ * <p>Rows are grouped into tiles, and the data for each column of
+ * each tile is compressed separately, using RICE_1 for 1-, 2- and 4-byte
+ * integer columns and GZIP_2 for the others.
+ * The compressed output is assembled in memory before it is written.
+ * The same columns can be written as for {@link FitsTableWriter}.
+ *
+ * @see  <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompress.html"
+ *          >Tiled Table Compression convention</a>
+ */
+public class TiledFitsTableWriter extends AbstractFitsTableWriter {
+
+    private final int tileRows_;
+    private final boolean useRice_;
+    private final WideFits wide_;
+
+    /**
+     * Default constructor.
+     */
+    public TiledFitsTableWriter() {
+        this( "fits-tiled", -1, true, WideFits.DEFAULT );
+    }
+
+    /**
+     * Custom constructor.
+     *
+     * @param   name   writer name
+     * @param  tileRows  number of rows per tile, or non-positive
+     *                   for an automatically chosen value
+     * @param  useRice  true to use RICE_1 compression for suitable
+     *                  integer columns, false to use GZIP_2 throughout
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     */
+    public TiledFitsTableWriter( String name, int tileRows, boolean useRice,
+                                 WideFits wide ) {
+        super( name );
+        tileRows_ = tileRows;
+        useRice_ = useRice;
+        wide_ = wide;
+    }
+
+    /**
+     * Returns true if <code>location</code> ends with ".fz",
+     * the conventional extension for fpack output.
+     *
+     * @param  location  filename
+     * @return true if it sounds like a compressed fits file
+     */
+    public boolean looksLikeFile( String location ) {
+        return location.toLowerCase().endsWith( ".fz" );
+    }
+
+    protected FitsTableSerializer createSerializer( StarTable table )
+            throws IOException {
+        return new TiledFitsTableSerializer( table, tileRows_, useRice_,
+                                             wide_ );
+    }
+}
@@ -0,0 +1,669 @@
+package uk.ac.starlink.fits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import nom.tam.fits.HeaderCardException;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * InputFactory that presents the data of a tile-compressed FITS
+ * binary table as the byte stream of the equivalent uncompressed table.
+ *
+ * <p>This implements reading of the
+ * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompress.html"
+ *    >Tiled Table Compression</a> convention (<code>ZTABLE=T</code>),
+ * as written for instance by <code>fpack -table</code>.
+ * The compressed HDU is a BINTABLE with one row per tile,
+ * in which each cell is a heap descriptor pointing to the
+ * compressed bytes for one column of one tile.
+ * Input objects dispensed by this factory provide random access
+ * to the virtual uncompressed row data, so that the result can be
+ * read by a {@link BintableStarTable} using the header returned by
+ * {@link #getUncompressedHeader}.
+ *
+ * <p>Column data is decompressed on demand a tile at a time,
+ * and only for the columns that are actually read.
+ * Decompressed tile columns are kept in a cache of limited size
+ * shared between all the inputs created by this factory,
+ * so that multiple threads reading different parts of the table
+ * (for instance via a RowSplittable) decompress in parallel
+ * without duplicating work.
+ *
+ * <p>Variable-length array columns in the uncompressed table
+ * (<code>ZPCOUNT&gt;0</code>) are not supported.
+ */
+public class TiledInputFactory extends InputFactory {
+
+    private final Header uhdr_;
+    private final Storage storage_;
+    private final int ncol_;
+    private final long nrow_;
+    private final int rowLeng_;
+    private final int tileLen_;
+    private final long ntile_;
+    private final int[] colOffs_;
+    private final int[] colWidths_;
+    private final int[] elSizes_;
+    private final int[] byteCols_;
+    private final TileCodec[] codecs_;
+    private final long[] descLengs_;
+    private final long[] descOffs_;
+    private final long heapStart_;
+    private final TileCache cache_;
+
+    /** Default maximum size in bytes of the decompressed tile cache. */
+    public static final long DFLT_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private static final Pattern TFORM_REGEX =
+        Pattern.compile( "\\s*([0-9]*)([LXBIJKAEDCMPQ])(.*)" );
+    private static final Pattern ZKEY_REGEX =
+        Pattern.compile( "ZFORM[0-9]+|ZCTYP[0-9]+|ZTABLE|ZTILELEN"
+                       + "|ZNAXIS[12]|ZPCOUNT|ZTHEAP|ZHECKSUM|ZDATASUM"
+                       + "|THEAP" );
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructor.
+     *
+     * @param  zhdr   header of the compressed BINTABLE HDU
+     * @param  storage   access to the data part of the compressed HDU
+     * @param  cacheBytes   maximum size of decompressed tile cache
+     */
+    private TiledInputFactory( Header zhdr, Storage storage, long cacheBytes )
+            throws IOException {
+        storage_ = storage;
+        uhdr_ = createUncompressedHeader( zhdr );
+
+        /* Get the table layout. */
+        ncol_ = zhdr.getIntValue( "TFIELDS", 0 );
+        nrow_ = zhdr.getLongValue( "ZNAXIS2", -1 );
+        rowLeng_ = zhdr.getIntValue( "ZNAXIS1", -1 );
+        tileLen_ = zhdr.getIntValue( "ZTILELEN", -1 );
+        ntile_ = zhdr.getLongValue( "NAXIS2", -1 );
+        if ( nrow_ < 0 || rowLeng_ < 0 || tileLen_ <= 0 ) {
+            throw new TableFormatException( "Missing or bad ZNAXIS1/ZNAXIS2"
+                                          + "/ZTILELEN headers" );
+        }
+        if ( ntile_ != ( nrow_ + tileLen_ - 1 ) / tileLen_ ) {
+            throw new TableFormatException( "Tile count mismatch: NAXIS2="
+                                          + ntile_ + " for "
+                                          + nrow_ + " rows, ZTILELEN="
+                                          + tileLen_ );
+        }
+        if ( zhdr.getLongValue( "ZPCOUNT", 0 ) > 0 ) {
+            throw new TableFormatException( "Compressed variable-length "
+                                          + "array columns not supported" );
+        }
+
+        /* Get the uncompressed and compressed column characteristics. */
+        colOffs_ = new int[ ncol_ ];
+        colWidths_ = new int[ ncol_ ];
+        elSizes_ = new int[ ncol_ ];
+        codecs_ = new TileCodec[ ncol_ ];
+        int[] descSizes = new int[ ncol_ ];
+        int off = 0;
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            int jc = ic + 1;
+            String zform = zhdr.getStringValue( "ZFORM" + jc );
+            if ( zform == null ) {
+                throw new TableFormatException( "Missing ZFORM" + jc );
+            }
+            int[] fmt = parseForm( zform );
+            colOffs_[ ic ] = off;
+            colWidths_[ ic ] = fmt[ 0 ];
+            elSizes_[ ic ] = fmt[ 1 ];
+            off += fmt[ 0 ];
+            String zctyp = zhdr.getStringValue( "ZCTYP" + jc );
+            if ( zctyp == null ) {
+                throw new TableFormatException( "Missing ZCTYP" + jc );
+            }
+            codecs_[ ic ] = TileCodec.getCodec( zctyp );
+            if ( codecs_[ ic ] == null ) {
+                throw new TableFormatException( "Unsupported compression "
+                                              + "ZCTYP" + jc + " = "
+                                              + zctyp );
+            }
+            String tform = zhdr.getStringValue( "TFORM" + jc );
+            Matcher tmatcher = tform == null
+                             ? null
+                             : TFORM_REGEX.matcher( tform.toUpperCase() );
+            if ( tmatcher == null || ! tmatcher.matches() ||
+                 "PQ".indexOf( tmatcher.group( 2 ) ) < 0 ) {
+                throw new TableFormatException( "Compressed column TFORM" + jc
+                                              + " = " + tform
+                                              + " is not a descriptor" );
+            }
+            descSizes[ ic ] = "Q".equals( tmatcher.group( 2 ) ) ? 16 : 8;
+        }
+        if ( off != rowLeng_ ) {
+            throw new TableFormatException( "ZNAXIS1 mismatch: "
+                                          + rowLeng_ + " != " + off );
+        }
+        byteCols_ = new int[ rowLeng_ ];
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            for ( int ib = 0; ib < colWidths_[ ic ]; ib++ ) {
+                byteCols_[ colOffs_[ ic ] + ib ] = ic;
+            }
+        }
+
+        /* Read the heap descriptors from the compressed table. */
+        int zrowLeng = zhdr.getIntValue( "NAXIS1", 0 );
+        long ndesc = ntile_ * ncol_;
+        if ( (long) zrowLeng * ntile_ > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Too many tiles" );
+        }
+        byte[] descBuf = new byte[ (int) ( zrowLeng * ntile_ ) ];
+        storage_.read( 0, descBuf );
+        descLengs_ = new long[ (int) ndesc ];
+        descOffs_ = new long[ (int) ndesc ];
+        int ib = 0;
+        for ( long it = 0; it < ntile_; it++ ) {
+            int rowStart = ib;
+            for ( int ic = 0; ic < ncol_; ic++ ) {
+                int id = (int) ( it * ncol_ + ic );
+                if ( descSizes[ ic ] == 16 ) {
+                    descLengs_[ id ] = getLong( descBuf, ib );
+                    descOffs_[ id ] = getLong( descBuf, ib + 8 );
+                }
+                else {
+                    descLengs_[ id ] = getInt( descBuf, ib ) & 0xffffffffL;
+                    descOffs_[ id ] = getInt( descBuf, ib + 4 ) & 0xffffffffL;
+                }
+                ib += descSizes[ ic ];
+            }
+            ib = rowStart + zrowLeng;
+        }
+        heapStart_ = zhdr.containsKey( "THEAP" )
+                   ? zhdr.getLongValue( "THEAP" )
+                   : (long) zrowLeng * ntile_;
+        cache_ = new TileCache( cacheBytes );
+    }
+
+    /**
+     * Returns the header describing the uncompressed table whose data
+     * this factory supplies.
+     *
+     * @return  uncompressed BINTABLE header
+     */
+    public Header getUncompressedHeader() {
+        return uhdr_;
+    }
+
+    public boolean isRandom() {
+        return true;
+    }
+
+    public BasicInput createInput( boolean isSeq ) {
+        return new TiledInput();
+    }
+
+    public void close() throws IOException {
+        storage_.close();
+        cache_.clear();
+    }
+
+    /**
+     * Indicates whether a given header describes a tile-compressed
+     * binary table.
+     *
+     * @param  hdr  HDU header
+     * @return   true iff hdr is a BINTABLE header with ZTABLE=T
+     */
+    public static boolean isTiledTable( Header hdr ) {
+        return "BINTABLE".equals( hdr.getStringValue( "XTENSION" ) )
+            && hdr.getBooleanValue( "ZTABLE", false );
+    }
+
+    /**
+     * Constructs a factory for the data part of a tile-compressed
+     * binary table HDU.
+     * If the supplied factory is not random-access, the compressed data
+     * is read into memory.
+     * If this method fails with a TableFormatException,
+     * <code>rawFact</code> is left open.
+     *
+     * @param  zhdr   header of the compressed BINTABLE HDU
+     * @param  rawFact  factory for the compressed HDU data part
+     * @return  new factory supplying uncompressed table data
+     * @throws  TableFormatException  if the compressed table cannot be
+     *                                read by this class
+     */
+    public static TiledInputFactory createFactory( Header zhdr,
+                                                   InputFactory rawFact )
+            throws IOException {
+        final Storage storage;
+        if ( rawFact.isRandom() ) {
+            final BasicInputThreadLocal inputs =
+                new BasicInputThreadLocal( rawFact, false );
+            storage = new Storage() {
+                public void read( long offset, byte[] buf ) throws IOException {
+                    BasicInput in = inputs.get();
+                    in.seek( offset );
+                    in.readBytes( buf );
+                }
+                public void close() throws IOException {
+                    inputs.close();
+                    rawFact.close();
+                }
+            };
+        }
+        else {
+            long size = FitsConstants.getDataSize( zhdr );
+            if ( size > Integer.MAX_VALUE ) {
+                throw new TableFormatException( "Compressed table too large"
+                                              + " to read into memory" );
+            }
+            logger_.info( "Reading compressed table data into memory" );
+            byte[] data = new byte[ (int) size ];
+            BasicInput in = rawFact.createInput( true );
+            try {
+                in.readBytes( data );
+            }
+            finally {
+                in.close();
+            }
+            storage = createMemoryStorage( data );
+        }
+        TiledInputFactory tfact =
+            new TiledInputFactory( zhdr, storage, DFLT_CACHE_BYTES );
+        if ( ! rawFact.isRandom() ) {
+            rawFact.close();
+        }
+        return tfact;
+    }
+
+    /**
+     * Constructs a factory for the data part of a tile-compressed
+     * binary table HDU which is held in memory.
+     *
+     * @param  zhdr   header of the compressed BINTABLE HDU
+     * @param  data   bytes of the compressed HDU data part
+     * @return  new factory supplying uncompressed table data
+     * @throws  TableFormatException  if the compressed table cannot be
+     *                                read by this class
+     */
+    public static TiledInputFactory createFactory( Header zhdr, byte[] data )
+            throws IOException {
+        return new TiledInputFactory( zhdr, createMemoryStorage( data ),
+                                      DFLT_CACHE_BYTES );
+    }
+
+    /**
+     * Returns the header for the uncompressed table corresponding to
+     * a given compressed table header.
+     * Compression-specific headers are removed,
+     * and the TFORMn and layout headers are replaced by the values of
+     * their compressed counterparts.
+     *
+     * @param  zhdr  header of compressed BINTABLE HDU
+     * @return   header of equivalent uncompressed BINTABLE HDU
+     */
+    static Header createUncompressedHeader( Header zhdr )
+            throws TableFormatException {
+        AddableHeader uhdr = new AddableHeader();
+        try {
+            for ( HeaderCard card : FitsConstants.headerIterable( zhdr ) ) {
+                String key = card.getKey();
+                String comment = card.getComment();
+                if ( key == null || ! card.isKeyValuePair() ) {
+                    uhdr.addLine( card );
+                }
+                else if ( ZKEY_REGEX.matcher( key ).matches() ) {
+                    // omit
+                }
+                else if ( "NAXIS1".equals( key ) ) {
+                    uhdr.addLine( new HeaderCard( key,
+                                                  zhdr.getLongValue( "ZNAXIS1",
+                                                                     0 ),
+                                                  comment ) );
+                }
+                else if ( "NAXIS2".equals( key ) ) {
+                    uhdr.addLine( new HeaderCard( key,
+                                                  zhdr.getLongValue( "ZNAXIS2",
+                                                                     0 ),
+                                                  comment ) );
+                }
+                else if ( "PCOUNT".equals( key ) ) {
+                    uhdr.addLine( new HeaderCard( key,
+                                                  zhdr.getLongValue( "ZPCOUNT",
+                                                                     0 ),
+                                                  comment ) );
+                }
+                else if ( key.matches( "TFORM[0-9]+" ) ) {
+                    String zform = zhdr.getStringValue( "Z"
+                                                     + key.substring( 1 ) );
+                    String tform = zform == null ? card.getValue() : zform;
+                    uhdr.addLine( new HeaderCard( key, tform, comment ) );
+                }
+                else {
+                    uhdr.addLine( card );
+                }
+            }
+        }
+        catch ( HeaderCardException e ) {
+            throw new TableFormatException( "Bad compressed table header", e );
+        }
+        return uhdr;
+    }
+
+    /**
+     * Parses a TFORMn value to determine the storage requirements of
+     * a column.
+     *
+     * @param  tform  TFORMn or ZFORMn header value
+     * @return  2-element array giving (cell size in bytes,
+     *          primitive element size in bytes)
+     */
+    static int[] parseForm( String tform ) throws TableFormatException {
+        Matcher matcher = TFORM_REGEX.matcher( tform.toUpperCase() );
+        if ( ! matcher.matches() ) {
+            throw new TableFormatException( "Bad TFORM value " + tform );
+        }
+        String srpt = matcher.group( 1 );
+        int rpt = srpt.length() > 0 ? Integer.parseInt( srpt ) : 1;
+        char type = matcher.group( 2 ).charAt( 0 );
+        switch ( type ) {
+            case 'L':
+            case 'B':
+            case 'A':
+                return new int[] { rpt, 1 };
+            case 'X':
+                return new int[] { ( rpt + 7 ) / 8, 1 };
+            case 'I':
+                return new int[] { rpt * 2, 2 };
+            case 'J':
+            case 'E':
+                return new int[] { rpt * 4, 4 };
+            case 'K':
+            case 'D':
+                return new int[] { rpt * 8, 8 };
+            case 'C':
+                return new int[] { rpt * 8, 4 };
+            case 'M':
+                return new int[] { rpt * 16, 8 };
+            default:
+                throw new TableFormatException( "Variable-length array columns"
+                                              + " not supported in"
+                                              + " compressed tables" );
+        }
+    }
+
+    /**
+     * Returns the decompressed data for one column of one tile.
+     *
+     * @param  itile  tile index
+     * @param  icol   column index
+     * @return   bytes for the column cells of all rows in the tile
+     */
+    private byte[] getTileColumn( long itile, int icol ) throws IOException {
+        long key = itile * ncol_ + icol;
+        byte[] data = cache_.get( key );
+        if ( data == null ) {
+            int ntrow = (int) Math.min( tileLen_, nrow_ - itile * tileLen_ );
+            int leng = ntrow * colWidths_[ icol ];
+            int id = (int) key;
+            long nbyte = descLengs_[ id ];
+            if ( nbyte > Integer.MAX_VALUE ) {
+                throw new IOException( "Compressed tile too large" );
+            }
+            byte[] comp = new byte[ (int) nbyte ];
+            storage_.read( heapStart_ + descOffs_[ id ], comp );
+            data = leng == 0
+                 ? new byte[ 0 ]
+                 : codecs_[ icol ].decompress( comp, leng, elSizes_[ icol ] );
+            cache_.put( key, data );
+        }
+        return data;
+    }
+
+    /**
+     * Reads a big-endian int from a byte array.
+     *
+     * @param  buf  buffer
+     * @param  ib   offset
+     * @return  value
+     */
+    private static int getInt( byte[] buf, int ib ) {
+        return ( ( buf[ ib + 0 ] & 0xff ) << 24 )
+             | ( ( buf[ ib + 1 ] & 0xff ) << 16 )
+             | ( ( buf[ ib + 2 ] & 0xff ) <<  8 )
+             | ( ( buf[ ib + 3 ] & 0xff ) <<  0 );
+    }
+
+    /**
+     * Reads a big-endian long from a byte array.
+     *
+     * @param  buf  buffer
+     * @param  ib   offset
+     * @return  value
+     */
+    private static long getLong( byte[] buf, int ib ) {
+        return ( ( getInt( buf, ib ) & 0xffffffffL ) << 32 )
+             | ( getInt( buf, ib + 4 ) & 0xffffffffL );
+    }
+
+    /**
+     * Returns a storage implementation based on a byte array.
+     *
+     * @param  data  byte array
+     * @return   storage
+     */
+    private static Storage createMemoryStorage( final byte[] data ) {
+        return new Storage() {
+            public void read( long offset, byte[] buf ) throws IOException {
+                if ( offset < 0 || offset + buf.length > data.length ) {
+                    throw new EOFException( "Compressed data out of range" );
+                }
+                System.arraycopy( data, (int) offset, buf, 0, buf.length );
+            }
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Provides thread-safe access to the bytes of the compressed HDU
+     * data part.
+     */
+    private interface Storage {
+
+        /**
+         * Fills a buffer with bytes from a given offset.
+         *
+         * @param  offset  offset into data part
+         * @param  buf   buffer to fill
+         */
+        void read( long offset, byte[] buf ) throws IOException;
+
+        /**
+         * Releases resources.
+         */
+        void close() throws IOException;
+    }
+
+    /**
+     * Thread-safe least recently used cache of decompressed tile columns
+     * with a limit on the total size.
+     */
+    private static class TileCache {
+        private final long maxBytes_;
+        private final LinkedHashMap<Long,byte[]> map_;
+        private long nbyte_;
+
+        /**
+         * Constructor.
+         *
+         * @param  maxBytes  maximum number of bytes stored
+         */
+        TileCache( long maxBytes ) {
+            maxBytes_ = maxBytes;
+            map_ = new LinkedHashMap<Long,byte[]>( 16, 0.75f, true );
+        }
+
+        synchronized byte[] get( long key ) {
+            return map_.get( Long.valueOf( key ) );
+        }
+
+        synchronized void put( long key, byte[] data ) {
+            byte[] old = map_.put( Long.valueOf( key ), data );
+            nbyte_ += data.length - ( old == null ? 0 : old.length );
+            for ( Iterator<Map.Entry<Long,byte[]>> it =
+                      map_.entrySet().iterator();
+                  nbyte_ > maxBytes_ && map_.size() > 1 && it.hasNext(); ) {
+                nbyte_ -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+
+        synchronized void clear() {
+            map_.clear();
+            nbyte_ = 0;
+        }
+    }
+
+    /**
+     * BasicInput implementation that reads the virtual uncompressed
+     * table data.  Each instance keeps hold of the column data for
+     * the tile it is currently positioned in.
+     */
+    private class TiledInput implements BasicInput {
+        private final byte[][] tileCols_;
+        private long tile_;
+        private long pos_;
+        private int index_;
+
+        TiledInput() {
+            tileCols_ = new byte[ ncol_ ][];
+            tile_ = -1;
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public void seek( long offset ) throws EOFException {
+            if ( offset < 0 || offset > nrow_ * rowLeng_ ) {
+                throw new EOFException( "Seek out of range" );
+            }
+            pos_ = offset;
+        }
+
+        public long getOffset() {
+            return pos_;
+        }
+
+        public void skip( long nbyte ) throws IOException {
+            seek( pos_ + nbyte );
+        }
+
+        public byte readByte() throws IOException {
+            byte[] buf = access( 1 );
+            return buf[ index_ ];
+        }
+
+        public short readShort() throws IOException {
+            byte[] buf = access( 2 );
+            int i = index_;
+            return (short) ( ( ( buf[ i + 0 ] & 0xff ) << 8 )
+                           | ( ( buf[ i + 1 ] & 0xff ) << 0 ) );
+        }
+
+        public int readInt() throws IOException {
+            return getInt( access( 4 ), index_ );
+        }
+
+        public long readLong() throws IOException {
+            return getLong( access( 8 ), index_ );
+        }
+
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat( readInt() );
+        }
+
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble( readLong() );
+        }
+
+        public void readBytes( byte[] bbuf ) throws IOException {
+            int ib = 0;
+            while ( ib < bbuf.length ) {
+                int n = Math.min( bbuf.length - ib, runLength() );
+                byte[] buf = access( n );
+                System.arraycopy( buf, index_, bbuf, ib, n );
+                ib += n;
+            }
+        }
+
+        public void close() {
+            tile_ = -1;
+            Arrays.fill( tileCols_, null );
+        }
+
+        /**
+         * Returns the number of bytes from the current position to
+         * the end of the current column cell.
+         *
+         * @return  contiguous byte count
+         */
+        private int runLength() {
+            int ioff = (int) ( pos_ % rowLeng_ );
+            int ic = byteCols_[ ioff ];
+            return colOffs_[ ic ] + colWidths_[ ic ] - ioff;
+        }
+
+        /**
+         * Prepares to read a given number of bytes at the current position
+         * and advances the position.
+         * The returned buffer contains the bytes starting at the
+         * index given by the <code>index_</code> member.
+         *
+         * @param  n  number of bytes to read
+         * @return  buffer containing data
+         */
+        private byte[] access( int n ) throws IOException {
+            if ( pos_ + n > nrow_ * rowLeng_ ) {
+                throw new EOFException();
+            }
+            long irow = pos_ / rowLeng_;
+            int ioff = (int) ( pos_ - irow * rowLeng_ );
+            int ic = byteCols_[ ioff ];
+            int coff = ioff - colOffs_[ ic ];
+            int width = colWidths_[ ic ];
+
+            /* Usual case: the requested bytes are all in the same cell. */
+            if ( coff + n <= width ) {
+                long itile = irow / tileLen_;
+                if ( itile != tile_ ) {
+                    Arrays.fill( tileCols_, null );
+                    tile_ = itile;
+                }
+                byte[] data = tileCols_[ ic ];
+                if ( data == null ) {
+                    data = getTileColumn( itile, ic );
+                    tileCols_[ ic ] = data;
+                }
+                index_ = (int) ( irow - itile * tileLen_ ) * width + coff;
+                pos_ += n;
+                return data;
+            }
+
+            /* Otherwise assemble them from adjacent cells. */
+            else {
+                byte[] buf = new byte[ n ];
+                readBytes( buf );
+                index_ = 0;
+                return buf;
+            }
+        }
+    }
+}
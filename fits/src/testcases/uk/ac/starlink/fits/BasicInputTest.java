@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -18,8 +19,13 @@ import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import nom.tam.util.BufferedDataInputStream;
 import nom.tam.util.BufferedFile;
+import uk.ac.starlink.util.Compression;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.IndexedCompressedFile;
 import uk.ac.starlink.util.TestCase;
 
 public class BasicInputTest extends TestCase {
@@ -78,6 +84,21 @@ public class BasicInputTest extends TestCase {
         exerciseInput( BlockMappedInput
                       .createInput( chan, off1, leng1, "test", leng1*2, 0 ) );
 
+        /* Gzipped copy read via a compression index. */
+        File gzFile = File.createTempFile( "tmp", ".dat.gz" );
+        gzFile.deleteOnExit();
+        OutputStream gzOut =
+            new GZIPOutputStream( new FileOutputStream( gzFile ) );
+        IOUtils.copy( new FileInputStream( file ), gzOut );
+        gzOut.close();
+        IndexedCompressedFile zfile =
+            IndexedCompressedFile.getInstance( gzFile, Compression.GZIP );
+        exerciseInput( new IndexedCompressedInput( zfile, off1, leng1 ) );
+        exerciseInput( InputFactory
+                      .createFactory( new FileDataSource( gzFile ),
+                                      off1, leng1 )
+                      .createInput( false ) );
+
         // Note this one fails: the EOFException is not thrown at the
         // right place.  Hmm.
 //      exerciseInput( seqOffInput( off1,
@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 import junit.framework.TestCase;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.FileInfoCache;
 import uk.ac.starlink.table.RowListStarTable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableWriter;
@@ -65,6 +66,67 @@ public class MultiTest extends TestCase {
 
     }
 
+    public void testHduCache() throws IOException {
+        File file = File.createTempFile( "multi", ".fits" );
+        file.deleteOnExit();
+        File cacheDir = File.createTempFile( "cache", ".d" );
+        cacheDir.delete();
+        OutputStream out = new FileOutputStream( file );
+        FitsConstants.writeEmptyPrimary( new DataOutputStream( out ) );
+        StarTableWriter writer = new HduFitsTableWriter();
+        int nt = 6;
+        StarTable[] outTables = new StarTable[ nt ];
+        for ( int i = 0; i < nt; i++ ) {
+            outTables[ i ] = createTestTable( i * 5 + 1 );
+            outTables[ i ].setName( "t" + i );
+            writer.writeStarTable( outTables[ i ], out );
+        }
+        out.close();
+
+        FileInfoCache cache = new FileInfoCache( cacheDir );
+        FileInfoCache.setDefaultInstance( cache );
+        try {
+            FitsTableBuilder builder = new FitsTableBuilder();
+            String[] positions = new String[] { null, "4", "t2" };
+            int[] itabs = new int[] { 0, 3, 2 };
+            for ( int ip = 0; ip < positions.length; ip++ ) {
+                String pos = positions[ ip ];
+                String key = "fits.hdu." + ( pos == null ? "" : pos );
+                assertNull( cache.getValue( file, key ) );
+                for ( int i = 0; i < 2; i++ ) {
+                    StarTable t =
+                        builder.makeStarTable( new FileDataSource( file,
+                                                                   pos ),
+                                               true,
+                                               StoragePolicy.PREFER_MEMORY );
+                    assertTableEquals( outTables[ itabs[ ip ] ], t );
+                    assertNotNull( cache.getValue( file, key ) );
+                }
+            }
+
+            /* A wrong cached value is detected and corrected. */
+            String key4 = "fits.hdu.4";
+            String hdu4 = cache.getValue( file, key4 );
+            for ( String badPos : new String[] { "0", "99999999", "x" } ) {
+                cache.putValue( file, key4, badPos );
+                assertTableEquals(
+                    outTables[ 3 ],
+                    builder.makeStarTable( new FileDataSource( file, "4" ),
+                                           true,
+                                           StoragePolicy.PREFER_MEMORY ) );
+                assertEquals( hdu4, cache.getValue( file, key4 ) );
+            }
+        }
+        finally {
+            FileInfoCache.setDefaultInstance( null );
+            for ( File f : cacheDir.listFiles() ) {
+                f.delete();
+            }
+            cacheDir.delete();
+            file.delete();
+        }
+    }
+
     private void assertTableEquals( StarTable t1, StarTable t2 )
             throws IOException {
         t1 = Tables.randomTable( t1 );
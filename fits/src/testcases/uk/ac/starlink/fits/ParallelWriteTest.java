@@ -0,0 +1,83 @@
+package uk.ac.starlink.fits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnData;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.SplitPolicy;
+
+public class ParallelWriteTest extends TestCase {
+
+    public ParallelWriteTest() {
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testParallelWrite() throws IOException {
+        final int nrow = 150000;
+        Random rnd = new Random( 23L );
+        int[] ivals = new int[ nrow ];
+        double[] dvals = new double[ nrow ];
+        final String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = rnd.nextInt();
+            dvals[ i ] = rnd.nextGaussian();
+            svals[ i ] = i % 11 == 0 ? null : "row " + i;
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        t0.addColumn( new ColumnData( new ColumnInfo( "n", Long.class,
+                                                      null ) ) {
+            public Object readValue( long irow ) {
+                return irow % 7 == 0 ? null : Long.valueOf( irow * 3 );
+            }
+        } );
+        StarTable tseq = new WrapperStarTable( t0 ) {
+            @Override
+            public boolean isRandom() {
+                return false;
+            }
+        };
+        SplitPolicy policy =
+            new SplitPolicy( new ForkJoinPool( 3 ), 0, (short) -1 );
+        for ( StarTable tin : new StarTable[] { t0, tseq } ) {
+            for ( SplitPolicy pol : new SplitPolicy[] { null, policy } ) {
+                FitsTableWriter writer = new FitsTableWriter();
+                writer.setWritePolicy( pol );
+                assertEquals( pol, writer.getWritePolicy() );
+                File file = File.createTempFile( "par", ".fits" );
+                file.deleteOnExit();
+                writer.writeStarTable( tin, file.toString(),
+                                       new StarTableOutput() );
+                assertEquals( 0, file.length() % 2880 );
+                StarTable tout =
+                    new FitsTableBuilder()
+                   .makeStarTable( new FileDataSource( file ), true, null );
+                assertEquals( nrow, tout.getRowCount() );
+                RowSequence rseq = tout.getRowSequence();
+                for ( int i = 0; rseq.next(); i++ ) {
+                    Object[] row = rseq.getRow();
+                    assertEquals( Integer.valueOf( ivals[ i ] ), row[ 0 ] );
+                    assertEquals( Double.valueOf( dvals[ i ] ), row[ 1 ] );
+                    assertEquals( svals[ i ], row[ 2 ] );
+                    assertEquals( t0.getCell( i, 3 ), row[ 3 ] );
+                }
+                rseq.close();
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package uk.ac.starlink.fits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnData;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.ConcatStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSubsetStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.FileDataSource;
+
+public class RawCopyTest extends TestCase {
+
+    private static final int NROW = 2345;
+
+    public RawCopyTest() {
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testRawCopy() throws IOException {
+        File f1 = writeTable( createTable( 0 ) );
+        File f2 = writeTable( createTable( 1000 ) );
+        for ( boolean isRandom : new boolean[] { true, false } ) {
+            StarTable t1 = readTable( f1, isRandom );
+            StarTable t2 = readTable( f2, isRandom );
+            BitSet mask = new BitSet();
+            for ( int i = 0; i < NROW * 2; i += 3 ) {
+                mask.set( i );
+            }
+            StarTable cat = new ConcatStarTable( t1, new StarTable[] {
+                t1, t2,
+            } );
+            StarTable[] views = new StarTable[] {
+                t1,
+                new WrapperStarTable( t2 ),
+                new ColumnPermutedStarTable( t1, new int[] { 4, 0, 2 } ),
+                new ColumnPermutedStarTable( t2, new int[] { 2, 3, 3 } ),
+                new RowSubsetStarTable( t1, mask.get( 0, NROW ) ),
+                cat,
+                new RowSubsetStarTable( cat, mask ),
+                new ColumnPermutedStarTable( new RowSubsetStarTable( cat,
+                                                                     mask ),
+                                             new int[] { 1, 3 } ),
+            };
+            for ( StarTable view : views ) {
+                assertNotNull( createCopier( view, true ) );
+                checkCopy( view );
+            }
+
+            /* Signed byte column (TZERO=-128) written differently. */
+            StarTable bt = new ColumnPermutedStarTable( t1,
+                                                        new int[] { 0, 5 } );
+            assertNotNull( createCopier( bt, true ) );
+            assertNull( createCopier( bt, false ) );
+
+            /* Unrecognised wrapper. */
+            assertNull( createCopier( new WrapperStarTable( t1 ) {}, true ) );
+        }
+        f1.delete();
+        f2.delete();
+    }
+
+    private static RawBintableCopier createCopier( StarTable table,
+                                                   boolean allowSignedByte )
+            throws IOException {
+        StandardFitsTableSerializer ser =
+            new StandardFitsTableSerializer( table, allowSignedByte, null );
+        return RawBintableCopier
+              .createCopier( table, ser.getColumnWriters() );
+    }
+
+    private static void checkCopy( StarTable view ) throws IOException {
+        File file = writeTable( view );
+        StarTable copy = readTable( file, true );
+        assertEquals( view.getRowCount(), copy.getRowCount() );
+        assertEquals( view.getColumnCount(), copy.getColumnCount() );
+        RowSequence vseq = view.getRowSequence();
+        RowSequence cseq = copy.getRowSequence();
+        while ( vseq.next() ) {
+            assertTrue( cseq.next() );
+            assertTrue( Arrays.deepEquals( vseq.getRow(), cseq.getRow() ) );
+        }
+        assertFalse( cseq.next() );
+        vseq.close();
+        cseq.close();
+        file.delete();
+    }
+
+    private static StarTable createTable( final int ioff ) {
+        ColumnStarTable t = ColumnStarTable.makeTableWithRows( NROW );
+        short[] svals = new short[ NROW ];
+        double[] dvals = new double[ NROW ];
+        String[] txts = new String[ NROW ];
+        float[][] avals = new float[ NROW ][];
+        for ( int i = 0; i < NROW; i++ ) {
+            svals[ i ] = (short) ( i + ioff );
+            dvals[ i ] = Math.sqrt( i + ioff );
+            txts[ i ] = i % 9 == 0 ? null : "txt-" + ( i + ioff );
+            avals[ i ] = new float[] { i, ioff, -i };
+        }
+        t.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        t.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        ColumnInfo txtInfo = new ColumnInfo( "txt", String.class, null );
+        txtInfo.setElementSize( 12 );
+        t.addColumn( ArrayColumn.makeColumn( txtInfo, txts ) );
+        ColumnInfo aInfo = new ColumnInfo( "a", float[].class, null );
+        aInfo.setShape( new int[] { 3 } );
+        t.addColumn( ArrayColumn.makeColumn( aInfo, avals ) );
+        t.addColumn( new ColumnData( new ColumnInfo( "n", Integer.class,
+                                                     null ) ) {
+            public Object readValue( long irow ) {
+                return irow % 5 == 0 ? null
+                                     : Integer.valueOf( (int) irow + ioff );
+            }
+        } );
+        t.addColumn( new ColumnData( new ColumnInfo( "b", Byte.class,
+                                                     null ) ) {
+            public Object readValue( long irow ) {
+                return Byte.valueOf( (byte) ( irow - ioff ) );
+            }
+        } );
+        return t;
+    }
+
+    private static File writeTable( StarTable table ) throws IOException {
+        File file = File.createTempFile( "raw", ".fits" );
+        file.deleteOnExit();
+        new FitsTableWriter()
+           .writeStarTable( table, file.toString(), new StarTableOutput() );
+        return file;
+    }
+
+    private static StarTable readTable( File file, boolean isRandom )
+            throws IOException {
+        StarTable table =
+            new FitsTableBuilder()
+           .makeStarTable( new FileDataSource( file ), isRandom, null );
+        assertTrue( table instanceof BintableStarTable );
+        return table;
+    }
+}
@@ -0,0 +1,201 @@
+package uk.ac.starlink.fits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import nom.tam.fits.Header;
+import nom.tam.util.ArrayDataInput;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.URLDataSource;
+
+public class TiledTest extends TestCase {
+
+    public TiledTest() {
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testRiceVector() throws IOException {
+        RiceCodec rice = RiceCodec.getCodec( 2 );
+        byte[] data = shorts( 100, 101, 103, 103 );
+        byte[] comp = rice.compress( data );
+        assertArrayEquals( new byte[] { 0x00, 0x64, 0x19, 0x0c }, comp );
+        assertArrayEquals( data, rice.decompress( comp, 4 ) );
+    }
+
+    public void testRice() throws IOException {
+        Random rnd = new Random( 23L );
+        for ( int bytepix : new int[] { 1, 2, 4 } ) {
+            RiceCodec rice = RiceCodec.getCodec( bytepix );
+            for ( int nval : new int[] { 0, 1, 31, 32, 33, 1000 } ) {
+                for ( int spread : new int[] { 0, 3, 1000, -1 } ) {
+                    byte[] data = new byte[ nval * bytepix ];
+                    int v = 0;
+                    for ( int i = 0; i < nval; i++ ) {
+                        v = spread < 0 ? rnd.nextInt()
+                                       : v + rnd.nextInt( spread + 1 );
+                        for ( int k = 0; k < bytepix; k++ ) {
+                            data[ i * bytepix + k ] =
+                                (byte) ( v >> ( 8 * ( bytepix - 1 - k ) ) );
+                        }
+                    }
+                    byte[] comp = rice.compress( data );
+                    assertArrayEquals( data, rice.decompress( comp, nval ) );
+                    if ( spread == 0 && nval > 100 ) {
+                        assertTrue( comp.length < data.length / 10 );
+                    }
+                }
+            }
+        }
+        byte[] extremes = new byte[ 16 ];
+        extremes[ 0 ] = (byte) 0x7f;
+        extremes[ 4 ] = (byte) 0x80;
+        extremes[ 8 ] = (byte) 0x7f;
+        extremes[ 12 ] = (byte) 0xff;
+        RiceCodec rice4 = RiceCodec.getCodec( 4 );
+        assertArrayEquals( extremes,
+                           rice4.decompress( rice4.compress( extremes ), 4 ) );
+        try {
+            rice4.decompress( new byte[ 3 ], 4 );
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+    }
+
+    public void testCodecs() throws IOException {
+        byte[] data = new byte[ 8 * 100 ];
+        new Random( 99L ).nextBytes( data );
+        String[] names = { "NOCOMPRESS", "GZIP_1", "gzip_2" };
+        for ( String name : names ) {
+            TileCodec codec = TileCodec.getCodec( name );
+            byte[] comp = codec.compress( data, 8 );
+            assertArrayEquals( data,
+                               codec.decompress( comp, data.length, 8 ) );
+        }
+        assertNull( TileCodec.getCodec( "HCOMPRESS_1" ) );
+        assertFalse( TileCodec.RICE_1.canCompress( 8, true ) );
+        assertFalse( TileCodec.RICE_1.canCompress( 4, false ) );
+    }
+
+    public void testTable() throws Exception {
+        int nrow = 1000;
+        Random rnd = new Random( 5L );
+        short[] svals = new short[ nrow ];
+        int[] ivals = new int[ nrow ];
+        double[] dvals = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            svals[ i ] = (short) ( i % 40 );
+            ivals[ i ] = i * 1001;
+            dvals[ i ] = rnd.nextGaussian();
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        File file = File.createTempFile( "tiled", ".fits.fz" );
+        file.deleteOnExit();
+        new TiledFitsTableWriter( "fits-tiled", 64, true, WideFits.DEFAULT )
+           .writeStarTable( t0, file.toString(), new StarTableOutput() );
+
+        /* Check the HDU really is compressed. */
+        DataSource datsrc = new FileDataSource( file );
+        ArrayDataInput in = FitsConstants.getInputStreamStart( datsrc );
+        FitsConstants.skipHDUs( in, 1 );
+        Header hdr = new Header();
+        FitsConstants.readHeader( hdr, in );
+        in.close();
+        assertTrue( TiledInputFactory.isTiledTable( hdr ) );
+        assertEquals( 16, hdr.getLongValue( "NAXIS2" ) );
+        assertEquals( "RICE_1", hdr.getStringValue( "ZCTYP2" ) );
+        assertEquals( "GZIP_2", hdr.getStringValue( "ZCTYP3" ) );
+
+        /* Read it back with random access. */
+        StarTable t1 = new FitsTableBuilder()
+                      .makeStarTable( datsrc, true, null );
+        assertTrue( t1.isRandom() );
+        assertEquals( nrow, t1.getRowCount() );
+        Tables.checkTable( t1 );
+        for ( int i = nrow - 1; i >= 0; i -= 37 ) {
+            assertEquals( Short.valueOf( svals[ i ] ), t1.getCell( i, 0 ) );
+            assertEquals( Integer.valueOf( ivals[ i ] ), t1.getCell( i, 1 ) );
+            assertEquals( Double.valueOf( dvals[ i ] ), t1.getCell( i, 2 ) );
+        }
+        assertNull( t1.getParameterByName( "ZTABLE" ) );
+
+        /* Read it in parallel. */
+        final RowSplittable split = t1.getRowSplittable();
+        final long[] sums = new long[ 2 ];
+        Thread[] threads = new Thread[ 4 ];
+        for ( int it = 0; it < threads.length; it++ ) {
+            final RowSplittable part = split.split();
+            threads[ it ] = new Thread() {
+                public void run() {
+                    try {
+                        long sum = 0;
+                        if ( part != null ) {
+                            while ( part.next() ) {
+                                sum += ((Number) part.getCell( 1 )).longValue();
+                            }
+                            part.close();
+                        }
+                        synchronized ( sums ) {
+                            sums[ 0 ] += sum;
+                        }
+                    }
+                    catch ( IOException e ) {
+                        synchronized ( sums ) {
+                            sums[ 1 ]++;
+                        }
+                    }
+                }
+            };
+            threads[ it ].start();
+        }
+        long sum = 0;
+        while ( split.next() ) {
+            sum += ((Number) split.getCell( 1 )).longValue();
+        }
+        split.close();
+        for ( Thread th : threads ) {
+            th.join();
+        }
+        assertEquals( 0, sums[ 1 ] );
+        assertEquals( 1001L * nrow * ( nrow - 1 ) / 2, sum + sums[ 0 ] );
+
+        /* Read it from a stream. */
+        StarTable t2 = new FitsTableBuilder()
+                      .makeStarTable( new URLDataSource( file.toURI()
+                                                             .toURL() ),
+                                      false, null );
+        RowSequence rseq = t2.getRowSequence();
+        for ( int i = 0; rseq.next(); i++ ) {
+            assertEquals( Double.valueOf( dvals[ i ] ), rseq.getCell( 2 ) );
+        }
+        rseq.close();
+    }
+
+    private static byte[] shorts( int... values ) {
+        byte[] buf = new byte[ values.length * 2 ];
+        for ( int i = 0; i < values.length; i++ ) {
+            buf[ 2 * i + 0 ] = (byte) ( values[ i ] >> 8 );
+            buf[ 2 * i + 1 ] = (byte) values[ i ];
+        }
+        return buf;
+    }
+
+    private static void assertArrayEquals( byte[] expected, byte[] actual ) {
+        assertTrue( Arrays.equals( expected, actual ) );
+    }
+}
@@ -0,0 +1,412 @@
+package uk.ac.starlink.parquet;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.GZIPInputStream;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Decodes all the pages of a Parquet column chunk into memory.
+ *
+ * <p>Data pages of version 1 and 2 are understood, with values in
+ * PLAIN or dictionary (PLAIN_DICTIONARY/RLE_DICTIONARY) encoding,
+ * and RLE-encoded boolean values.
+ * Supported compression codecs are UNCOMPRESSED, SNAPPY and GZIP.
+ * Other encodings and codecs result in a TableFormatException.
+ *
+ * @since    18 Oct 2026
+ */
+class ChunkReader {
+
+    /* Compression codecs (Thrift enum CompressionCodec). */
+    static final int CODEC_UNCOMPRESSED = 0;
+    static final int CODEC_SNAPPY = 1;
+    static final int CODEC_GZIP = 2;
+    private static final String[] CODEC_NAMES = {
+        "UNCOMPRESSED", "SNAPPY", "GZIP", "LZO", "BROTLI", "LZ4", "ZSTD",
+        "LZ4_RAW",
+    };
+
+    /* Encodings (Thrift enum Encoding). */
+    static final int ENC_PLAIN = 0;
+    static final int ENC_PLAIN_DICTIONARY = 2;
+    static final int ENC_RLE = 3;
+    static final int ENC_RLE_DICTIONARY = 8;
+    private static final String[] ENCODING_NAMES = {
+        "PLAIN", "GROUP_VAR_INT", "PLAIN_DICTIONARY", "RLE", "BIT_PACKED",
+        "DELTA_BINARY_PACKED", "DELTA_LENGTH_BYTE_ARRAY", "DELTA_BYTE_ARRAY",
+        "RLE_DICTIONARY", "BYTE_STREAM_SPLIT",
+    };
+
+    /* Page types (Thrift enum PageType). */
+    static final int PAGE_DATA = 0;
+    static final int PAGE_INDEX = 1;
+    static final int PAGE_DICTIONARY = 2;
+    static final int PAGE_DATA_V2 = 3;
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private ChunkReader() {
+    }
+
+    /**
+     * Decodes a column chunk.
+     *
+     * @param  buf   buffer containing the whole column chunk
+     * @param  col   column description
+     * @param  codec  compression codec
+     * @param  nrow   number of rows in the row group
+     * @return  decoded chunk
+     */
+    public static DecodedChunk readChunk( ByteBuffer buf, ParquetColumn col,
+                                          int codec, int nrow )
+            throws IOException {
+        try {
+            return doReadChunk( buf, col, codec, nrow );
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new TableFormatException( "Truncated Parquet column chunk "
+                                          + col.getName(), e );
+        }
+        catch ( IndexOutOfBoundsException e ) {
+            throw new TableFormatException( "Corrupted Parquet column chunk "
+                                          + col.getName(), e );
+        }
+    }
+
+    /**
+     * Does the work for decoding a column chunk.
+     *
+     * @param  buf   buffer containing the whole column chunk
+     * @param  col   column description
+     * @param  codec  compression codec
+     * @param  nrow   number of rows in the row group
+     * @return  decoded chunk
+     */
+    private static DecodedChunk doReadChunk( ByteBuffer buf, ParquetColumn col,
+                                             int codec, int nrow )
+            throws IOException {
+        int physType = col.getPhysicalType();
+        int typeLength = col.getTypeLength();
+        int maxDef = col.getMaxDefinitionLevel();
+        ColumnStore store = ColumnStore.createStore( physType, typeLength,
+                                                     nrow );
+        boolean[] isNull = null;
+        ColumnStore dict = null;
+        int[] defs = new int[ 0 ];
+        int[] irows = new int[ 0 ];
+        int[] work = new int[ 0 ];
+        int irow = 0;
+        buf = buf.duplicate();
+        while ( irow < nrow ) {
+            ThriftStruct header = ThriftStruct.read( buf );
+            int pageType = header.getInt( 1, -1 );
+            int usize = header.getInt( 2, 0 );
+            int csize = header.getInt( 3, 0 );
+            if ( csize < 0 || csize > buf.remaining() ) {
+                throw new TableFormatException( "Bad Parquet page size "
+                                              + csize );
+            }
+            ByteBuffer page = buf.slice();
+            page.limit( csize );
+            buf.position( buf.position() + csize );
+
+            /* Dictionary page. */
+            if ( pageType == PAGE_DICTIONARY ) {
+                ThriftStruct dictHdr = header.getStruct( 7 );
+                int ndict = dictHdr.getInt( 1, 0 );
+                checkEncoding( dictHdr.getInt( 2, ENC_PLAIN ), col, true );
+                ByteBuffer data = decompress( codec, page, usize );
+                dict = ColumnStore.createStore( physType, typeLength, ndict );
+                dict.readPlain( data, sequence( ndict ), ndict );
+            }
+
+            /* Data page. */
+            else if ( pageType == PAGE_DATA || pageType == PAGE_DATA_V2 ) {
+                boolean isV2 = pageType == PAGE_DATA_V2;
+                ThriftStruct dataHdr = header.getStruct( isV2 ? 8 : 5 );
+                int nval = dataHdr.getInt( 1, 0 );
+                if ( nval < 0 || irow + nval > nrow ) {
+                    throw new TableFormatException( "Too many values in "
+                                                  + "Parquet column chunk" );
+                }
+                int encoding = dataHdr.getInt( isV2 ? 4 : 2, ENC_PLAIN );
+                if ( defs.length < nval ) {
+                    defs = new int[ nval ];
+                    irows = new int[ nval ];
+                    work = new int[ nval ];
+                }
+
+                /* Read definition levels and locate the values. */
+                final ByteBuffer data;
+                final ByteBuffer levels;
+                if ( isV2 ) {
+                    int dleng = dataHdr.getInt( 5, 0 );
+                    int rleng = dataHdr.getInt( 6, 0 );
+                    levels = page.slice();
+                    levels.position( rleng );
+                    levels.limit( rleng + dleng );
+                    page.position( rleng + dleng );
+                    ByteBuffer vbuf = page.slice();
+                    data = dataHdr.getBoolean( 7, true )
+                         ? decompress( codec, vbuf, usize - dleng - rleng )
+                         : vbuf;
+                }
+                else {
+                    data = decompress( codec, page, usize );
+                    if ( maxDef > 0 ) {
+                        int dencoding = dataHdr.getInt( 3, ENC_RLE );
+                        if ( dencoding != ENC_RLE ) {
+                            throw new TableFormatException(
+                                "Unsupported Parquet definition level "
+                              + "encoding " + encodingName( dencoding ) );
+                        }
+                        int dleng = data.order( ByteOrder.LITTLE_ENDIAN )
+                                        .getInt();
+                        levels = data.slice();
+                        levels.limit( dleng );
+                        data.position( data.position() + dleng );
+                    }
+                    else {
+                        levels = null;
+                    }
+                }
+                int nnn = 0;
+                if ( maxDef > 0 ) {
+                    readRleHybrid( levels, bitWidth( maxDef ), defs, nval );
+                    for ( int i = 0; i < nval; i++ ) {
+                        if ( defs[ i ] == maxDef ) {
+                            irows[ nnn++ ] = irow + i;
+                        }
+                        else {
+                            if ( isNull == null ) {
+                                isNull = new boolean[ nrow ];
+                            }
+                            isNull[ irow + i ] = true;
+                        }
+                    }
+                }
+                else {
+                    for ( int i = 0; i < nval; i++ ) {
+                        irows[ i ] = irow + i;
+                    }
+                    nnn = nval;
+                }
+
+                /* Read the values. */
+                checkEncoding( encoding, col, false );
+                if ( encoding == ENC_PLAIN ) {
+                    store.readPlain( data, irows, nnn );
+                }
+                else if ( encoding == ENC_RLE ) {
+                    data.order( ByteOrder.LITTLE_ENDIAN ).getInt();
+                    readRleHybrid( data.slice(), 1, work, nnn );
+                    ((ColumnStore.BooleanStore) store)
+                   .setValues( work, irows, nnn );
+                }
+                else {
+                    if ( dict == null ) {
+                        throw new TableFormatException( "No dictionary page "
+                                                      + "in Parquet chunk" );
+                    }
+                    int nbit = data.get() & 0xff;
+                    readRleHybrid( data.slice(), nbit, work, nnn );
+                    store.readDict( dict, work, irows, nnn );
+                }
+                irow += nval;
+            }
+
+            /* Ignore any other page types. */
+        }
+        return new DecodedChunk( col, store, isNull );
+    }
+
+    /**
+     * Checks that an encoding is supported by this reader.
+     *
+     * @param  encoding  encoding code
+     * @param  col   column
+     * @param  isDict  true for a dictionary page, false for a data page
+     * @throws  TableFormatException  if not supported
+     */
+    private static void checkEncoding( int encoding, ParquetColumn col,
+                                       boolean isDict )
+            throws TableFormatException {
+        boolean isOk = isDict
+            ? encoding == ENC_PLAIN || encoding == ENC_PLAIN_DICTIONARY
+            : encoding == ENC_PLAIN || encoding == ENC_PLAIN_DICTIONARY
+                                    || encoding == ENC_RLE_DICTIONARY
+                                    || ( encoding == ENC_RLE &&
+                                         col.getPhysicalType()
+                                         == ParquetColumn.T_BOOLEAN );
+        if ( ! isOk ) {
+            throw new TableFormatException( "Unsupported Parquet encoding "
+                                          + encodingName( encoding )
+                                          + " for column " + col.getName() );
+        }
+    }
+
+    /**
+     * Decompresses a page.
+     *
+     * @param  codec  compression codec
+     * @param  buf  buffer containing compressed bytes
+     * @param  usize  uncompressed size
+     * @return  buffer containing uncompressed bytes
+     */
+    static ByteBuffer decompress( int codec, ByteBuffer buf, int usize )
+            throws IOException {
+        switch ( codec ) {
+            case CODEC_UNCOMPRESSED:
+                return buf.slice();
+            case CODEC_SNAPPY:
+                return ByteBuffer.wrap( Snappy.decompress( buf.slice() ) );
+            case CODEC_GZIP:
+                byte[] cbytes = new byte[ buf.remaining() ];
+                buf.duplicate().get( cbytes );
+                byte[] ubytes = new byte[ usize ];
+                DataInputStream in =
+                    new DataInputStream(
+                        new GZIPInputStream(
+                            new ByteArrayInputStream( cbytes ) ) );
+                try {
+                    in.readFully( ubytes );
+                }
+                finally {
+                    in.close();
+                }
+                return ByteBuffer.wrap( ubytes );
+            default:
+                String cname = codec >= 0 && codec < CODEC_NAMES.length
+                             ? CODEC_NAMES[ codec ]
+                             : Integer.toString( codec );
+                throw new TableFormatException( "Unsupported Parquet "
+                                              + "compression codec " + cname );
+        }
+    }
+
+    /**
+     * Decodes values in the RLE/bit-packed hybrid encoding.
+     *
+     * @param  buf  buffer positioned at the start of the encoded data
+     * @param  bitWidth  number of bits per value
+     * @param  out  array into which values are written
+     * @param  n  number of values to read
+     */
+    static void readRleHybrid( ByteBuffer buf, int bitWidth, int[] out,
+                               int n )
+            throws TableFormatException {
+        int byteWidth = ( bitWidth + 7 ) / 8;
+        int mask = bitWidth >= 32 ? -1 : ( 1 << bitWidth ) - 1;
+        int i = 0;
+        while ( i < n ) {
+            long header = ThriftStruct.readVarint( buf );
+            if ( ( header & 1 ) == 0 ) {
+
+                /* RLE run. */
+                int count = (int) ( header >>> 1 );
+                int value = 0;
+                for ( int ib = 0; ib < byteWidth; ib++ ) {
+                    value |= ( buf.get() & 0xff ) << ( 8 * ib );
+                }
+                int end = Math.min( n, i + count );
+                while ( i < end ) {
+                    out[ i++ ] = value;
+                }
+            }
+            else {
+
+                /* Bit-packed run, values packed LSB first. */
+                int count = (int) ( header >>> 1 ) * 8;
+                long acc = 0;
+                int nacc = 0;
+                for ( int j = 0; j < count; j++ ) {
+                    while ( nacc < bitWidth ) {
+                        acc |= ( buf.get() & 0xffL ) << nacc;
+                        nacc += 8;
+                    }
+                    if ( i < n ) {
+                        out[ i++ ] = (int) ( acc & mask );
+                    }
+                    acc >>>= bitWidth;
+                    nacc -= bitWidth;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits required to represent values
+     * up to a given maximum.
+     *
+     * @param  maxValue  maximum value
+     * @return  bit width
+     */
+    static int bitWidth( int maxValue ) {
+        return 32 - Integer.numberOfLeadingZeros( maxValue );
+    }
+
+    /**
+     * Returns an array of the integers 0..n-1.
+     *
+     * @param  n  array length
+     * @return  sequence array
+     */
+    private static int[] sequence( int n ) {
+        int[] seq = new int[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            seq[ i ] = i;
+        }
+        return seq;
+    }
+
+    /**
+     * Returns the name of an encoding.
+     *
+     * @param  encoding  encoding code
+     * @return  name
+     */
+    private static String encodingName( int encoding ) {
+        return encoding >= 0 && encoding < ENCODING_NAMES.length
+             ? ENCODING_NAMES[ encoding ]
+             : Integer.toString( encoding );
+    }
+
+    /**
+     * Holds the decoded content of a column chunk.
+     */
+    static class DecodedChunk {
+        private final ParquetColumn col_;
+        private final ColumnStore store_;
+        private final boolean[] isNull_;
+
+        /**
+         * Constructor.
+         *
+         * @param  col  column
+         * @param  store  decoded values
+         * @param  isNull  null flags, or null if there are no nulls
+         */
+        DecodedChunk( ParquetColumn col, ColumnStore store,
+                      boolean[] isNull ) {
+            col_ = col;
+            store_ = store;
+            isNull_ = isNull;
+        }
+
+        /**
+         * Returns a cell value.
+         *
+         * @param  i  row index within the row group
+         * @return  cell value
+         */
+        public Object getCell( int i ) {
+            return col_.getCell( store_, isNull_, i );
+        }
+    }
+}
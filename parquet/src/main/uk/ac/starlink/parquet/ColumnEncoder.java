@@ -0,0 +1,563 @@
+package uk.ac.starlink.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.Tables;
+
+/**
+ * Accumulates the values of a table column and writes them as
+ * Parquet column chunks.
+ *
+ * <p>All columns are written as OPTIONAL, so that nulls can be represented,
+ * using uncompressed version 1 data pages with PLAIN encoding.
+ * Column chunk statistics are written for numeric columns.
+ *
+ * @since    18 Oct 2026
+ */
+abstract class ColumnEncoder {
+
+    private final String name_;
+    private final int physType_;
+    private final int convType_;
+    private final LeBuffer chunkBuf_;
+    private final LeBuffer valBuf_;
+    private final LeBuffer defBuf_;
+    private int defByte_;
+    private int nPage_;
+    private long nChunk_;
+    private long nNull_;
+
+    /** Approximate maximum size of a data page in bytes. */
+    public static final int PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param  name  column name
+     * @param  physType  Parquet physical type
+     * @param  convType  Parquet converted type, or C_NONE
+     */
+    protected ColumnEncoder( String name, int physType, int convType ) {
+        name_ = name;
+        physType_ = physType;
+        convType_ = convType;
+        chunkBuf_ = new LeBuffer();
+        valBuf_ = new LeBuffer();
+        defBuf_ = new LeBuffer();
+    }
+
+    /**
+     * Writes a non-null value to the page value buffer in PLAIN encoding,
+     * and updates statistics.
+     *
+     * @param  value  non-null cell value
+     * @param  buf   destination buffer
+     * @return  true if the value was written,
+     *          false if it could not be encoded and should be
+     *          treated as null
+     */
+    abstract boolean encodeValue( Object value, LeBuffer buf );
+
+    /**
+     * Returns the PLAIN-encoded minimum value for the current chunk.
+     *
+     * @return   minimum value bytes, or null if not known
+     */
+    abstract byte[] getMinStat();
+
+    /**
+     * Returns the PLAIN-encoded maximum value for the current chunk.
+     *
+     * @return   maximum value bytes, or null if not known
+     */
+    abstract byte[] getMaxStat();
+
+    /**
+     * Resets the statistics accumulated for the current chunk.
+     */
+    abstract void resetStats();
+
+    /**
+     * Called before the page value buffer is written out,
+     * to allow any partially accumulated values to be flushed to it.
+     * The default implementation does nothing.
+     *
+     * @param  buf  page value buffer
+     */
+    void finishPageValues( LeBuffer buf ) {
+    }
+
+    /**
+     * Adds a cell value to this column.
+     *
+     * @param  value  cell value, may be null
+     */
+    public void addValue( Object value ) throws IOException {
+        boolean hasValue = value != null && encodeValue( value, valBuf_ );
+        if ( hasValue ) {
+            defByte_ |= 1 << ( nPage_ & 0x7 );
+        }
+        else {
+            nNull_++;
+        }
+        nPage_++;
+        nChunk_++;
+        if ( ( nPage_ & 0x7 ) == 0 ) {
+            defBuf_.write( defByte_ );
+            defByte_ = 0;
+        }
+        if ( valBuf_.size() >= PAGE_SIZE ) {
+            endPage();
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes currently buffered
+     * by this encoder.
+     *
+     * @return  buffered byte count
+     */
+    public long getBufferedSize() {
+        return chunkBuf_.size() + valBuf_.size() + defBuf_.size();
+    }
+
+    /**
+     * Returns a SchemaElement structure describing this column.
+     *
+     * @return  Thrift SchemaElement
+     */
+    public ThriftStruct getSchemaElement() {
+        ThriftStruct el = new ThriftStruct()
+            .set( 1, Integer.valueOf( physType_ ) )
+            .set( 3, Integer.valueOf( ParquetColumn.R_OPTIONAL ) )
+            .set( 4, name_ );
+        if ( convType_ != ParquetColumn.C_NONE ) {
+            el.set( 6, Integer.valueOf( convType_ ) );
+        }
+        return el;
+    }
+
+    /**
+     * Writes the values accumulated since the last call as a column chunk,
+     * and resets this encoder ready for the next row group.
+     *
+     * @param  out  destination stream
+     * @param  offset  position in the output file at which the chunk
+     *                 will be written
+     * @return  ColumnChunk structure describing what was written
+     */
+    public ThriftStruct writeChunk( OutputStream out, long offset )
+            throws IOException {
+        if ( nPage_ > 0 ) {
+            endPage();
+        }
+        long size = chunkBuf_.size();
+        chunkBuf_.writeTo( out );
+        chunkBuf_.reset();
+        ThriftStruct stats = new ThriftStruct()
+            .set( 3, Long.valueOf( nNull_ ) )
+            .set( 5, getMaxStat() )
+            .set( 6, getMinStat() );
+        ThriftStruct meta = new ThriftStruct()
+            .set( 1, Integer.valueOf( physType_ ) )
+            .set( 2, Arrays.asList( Integer.valueOf( ChunkReader.ENC_PLAIN ),
+                                    Integer.valueOf( ChunkReader.ENC_RLE ) ) )
+            .set( 3, Collections.singletonList( name_ ) )
+            .set( 4, Integer.valueOf( ChunkReader.CODEC_UNCOMPRESSED ) )
+            .set( 5, Long.valueOf( nChunk_ ) )
+            .set( 6, Long.valueOf( size ) )
+            .set( 7, Long.valueOf( size ) )
+            .set( 9, Long.valueOf( offset ) )
+            .set( 12, stats );
+        nChunk_ = 0;
+        nNull_ = 0;
+        resetStats();
+        return new ThriftStruct()
+              .set( 2, Long.valueOf( offset ) )
+              .set( 3, meta );
+    }
+
+    /**
+     * Writes the current page to the chunk buffer.
+     */
+    private void endPage() throws IOException {
+        finishPageValues( valBuf_ );
+        if ( ( nPage_ & 0x7 ) != 0 ) {
+            defBuf_.write( defByte_ );
+            defByte_ = 0;
+        }
+
+        /* Definition levels are written as a single bit-packed run. */
+        LeBuffer levels = new LeBuffer();
+        ThriftStruct.writeVarint( levels, ( defBuf_.size() << 1 ) | 1 );
+        defBuf_.writeTo( levels );
+        int pageSize = 4 + levels.size() + valBuf_.size();
+        ThriftStruct dataHdr = new ThriftStruct()
+            .set( 1, Integer.valueOf( nPage_ ) )
+            .set( 2, Integer.valueOf( ChunkReader.ENC_PLAIN ) )
+            .set( 3, Integer.valueOf( ChunkReader.ENC_RLE ) )
+            .set( 4, Integer.valueOf( ChunkReader.ENC_RLE ) );
+        ThriftStruct pageHdr = new ThriftStruct()
+            .set( 1, Integer.valueOf( ChunkReader.PAGE_DATA ) )
+            .set( 2, Integer.valueOf( pageSize ) )
+            .set( 3, Integer.valueOf( pageSize ) )
+            .set( 5, dataHdr );
+        pageHdr.write( chunkBuf_ );
+        chunkBuf_.writeInt( levels.size() );
+        levels.writeTo( chunkBuf_ );
+        valBuf_.writeTo( chunkBuf_ );
+        valBuf_.reset();
+        defBuf_.reset();
+        nPage_ = 0;
+    }
+
+    /**
+     * Returns an encoder suitable for a given column, if possible.
+     *
+     * @param  info  column metadata
+     * @return  encoder, or null if the column type is not supported
+     */
+    public static ColumnEncoder createEncoder( ColumnInfo info ) {
+        Class<?> clazz = info.getContentClass();
+        String name = info.getName();
+        if ( clazz.equals( Boolean.class ) ) {
+            return new BooleanEncoder( name );
+        }
+        else if ( clazz.equals( Byte.class ) ) {
+            return new IntEncoder( name, ParquetColumn.C_INT_8 );
+        }
+        else if ( clazz.equals( Short.class ) ) {
+            boolean isUbyte =
+                Boolean.TRUE
+               .equals( info.getAuxDatumValue( Tables.UBYTE_FLAG_INFO,
+                                               Boolean.class ) );
+            return new IntEncoder( name, isUbyte ? ParquetColumn.C_UINT_8
+                                                 : ParquetColumn.C_INT_16 );
+        }
+        else if ( clazz.equals( Integer.class ) ) {
+            return new IntEncoder( name, ParquetColumn.C_NONE );
+        }
+        else if ( clazz.equals( Long.class ) ) {
+            return new LongEncoder( name );
+        }
+        else if ( clazz.equals( Float.class ) ) {
+            return new FloatEncoder( name );
+        }
+        else if ( clazz.equals( Double.class ) ) {
+            return new DoubleEncoder( name );
+        }
+        else if ( clazz.equals( String.class ) ) {
+            return new BinaryEncoder( name, ParquetColumn.C_UTF8 );
+        }
+        else if ( clazz.equals( byte[].class ) ) {
+            return new BinaryEncoder( name, ParquetColumn.C_NONE );
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Byte buffer with little-endian write methods.
+     */
+    static class LeBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Writes a 4-byte little-endian integer.
+         *
+         * @param  value  value
+         */
+        void writeInt( int value ) {
+            write( value );
+            write( value >>> 8 );
+            write( value >>> 16 );
+            write( value >>> 24 );
+        }
+
+        /**
+         * Writes an 8-byte little-endian integer.
+         *
+         * @param  value  value
+         */
+        void writeLong( long value ) {
+            writeInt( (int) value );
+            writeInt( (int) ( value >>> 32 ) );
+        }
+
+        /**
+         * Returns the 4-byte little-endian encoding of an integer.
+         *
+         * @param  value  value
+         * @return  4-byte array
+         */
+        static byte[] intBytes( int value ) {
+            LeBuffer buf = new LeBuffer();
+            buf.writeInt( value );
+            return buf.toByteArray();
+        }
+
+        /**
+         * Returns the 8-byte little-endian encoding of a long integer.
+         *
+         * @param  value  value
+         * @return  8-byte array
+         */
+        static byte[] longBytes( long value ) {
+            LeBuffer buf = new LeBuffer();
+            buf.writeLong( value );
+            return buf.toByteArray();
+        }
+    }
+
+    /**
+     * Encoder for BOOLEAN values.
+     */
+    private static class BooleanEncoder extends ColumnEncoder {
+        private int bits_;
+        private int nbit_;
+        BooleanEncoder( String name ) {
+            super( name, ParquetColumn.T_BOOLEAN, ParquetColumn.C_NONE );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            if ( value instanceof Boolean ) {
+                if ( ((Boolean) value).booleanValue() ) {
+                    bits_ |= 1 << nbit_;
+                }
+                if ( ++nbit_ == 8 ) {
+                    buf.write( bits_ );
+                    bits_ = 0;
+                    nbit_ = 0;
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        @Override
+        void finishPageValues( LeBuffer buf ) {
+            if ( nbit_ > 0 ) {
+                buf.write( bits_ );
+                bits_ = 0;
+                nbit_ = 0;
+            }
+        }
+        byte[] getMinStat() {
+            return null;
+        }
+        byte[] getMaxStat() {
+            return null;
+        }
+        void resetStats() {
+        }
+    }
+
+    /**
+     * Encoder for INT32 values.
+     */
+    private static class IntEncoder extends ColumnEncoder {
+        private int min_;
+        private int max_;
+        private boolean hasStats_;
+        IntEncoder( String name, int convType ) {
+            super( name, ParquetColumn.T_INT32, convType );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            if ( value instanceof Number ) {
+                int ival = ((Number) value).intValue();
+                buf.writeInt( ival );
+                if ( ! hasStats_ ) {
+                    min_ = ival;
+                    max_ = ival;
+                    hasStats_ = true;
+                }
+                else {
+                    min_ = Math.min( min_, ival );
+                    max_ = Math.max( max_, ival );
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        byte[] getMinStat() {
+            return hasStats_ ? LeBuffer.intBytes( min_ ) : null;
+        }
+        byte[] getMaxStat() {
+            return hasStats_ ? LeBuffer.intBytes( max_ ) : null;
+        }
+        void resetStats() {
+            hasStats_ = false;
+        }
+    }
+
+    /**
+     * Encoder for INT64 values.
+     */
+    private static class LongEncoder extends ColumnEncoder {
+        private long min_;
+        private long max_;
+        private boolean hasStats_;
+        LongEncoder( String name ) {
+            super( name, ParquetColumn.T_INT64, ParquetColumn.C_NONE );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            if ( value instanceof Number ) {
+                long lval = ((Number) value).longValue();
+                buf.writeLong( lval );
+                if ( ! hasStats_ ) {
+                    min_ = lval;
+                    max_ = lval;
+                    hasStats_ = true;
+                }
+                else {
+                    min_ = Math.min( min_, lval );
+                    max_ = Math.max( max_, lval );
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        byte[] getMinStat() {
+            return hasStats_ ? LeBuffer.longBytes( min_ ) : null;
+        }
+        byte[] getMaxStat() {
+            return hasStats_ ? LeBuffer.longBytes( max_ ) : null;
+        }
+        void resetStats() {
+            hasStats_ = false;
+        }
+    }
+
+    /**
+     * Encoder for FLOAT values.  NaNs are excluded from statistics.
+     */
+    private static class FloatEncoder extends ColumnEncoder {
+        private float min_;
+        private float max_;
+        private boolean hasStats_;
+        FloatEncoder( String name ) {
+            super( name, ParquetColumn.T_FLOAT, ParquetColumn.C_NONE );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            if ( value instanceof Number ) {
+                float fval = ((Number) value).floatValue();
+                buf.writeInt( Float.floatToRawIntBits( fval ) );
+                if ( ! Float.isNaN( fval ) ) {
+                    if ( ! hasStats_ ) {
+                        min_ = fval;
+                        max_ = fval;
+                        hasStats_ = true;
+                    }
+                    else {
+                        min_ = Math.min( min_, fval );
+                        max_ = Math.max( max_, fval );
+                    }
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        byte[] getMinStat() {
+            return hasStats_
+                 ? LeBuffer.intBytes( Float.floatToIntBits( min_ ) )
+                 : null;
+        }
+        byte[] getMaxStat() {
+            return hasStats_
+                 ? LeBuffer.intBytes( Float.floatToIntBits( max_ ) )
+                 : null;
+        }
+        void resetStats() {
+            hasStats_ = false;
+        }
+    }
+
+    /**
+     * Encoder for DOUBLE values.  NaNs are excluded from statistics.
+     */
+    private static class DoubleEncoder extends ColumnEncoder {
+        private double min_;
+        private double max_;
+        private boolean hasStats_;
+        DoubleEncoder( String name ) {
+            super( name, ParquetColumn.T_DOUBLE, ParquetColumn.C_NONE );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            if ( value instanceof Number ) {
+                double dval = ((Number) value).doubleValue();
+                buf.writeLong( Double.doubleToRawLongBits( dval ) );
+                if ( ! Double.isNaN( dval ) ) {
+                    if ( ! hasStats_ ) {
+                        min_ = dval;
+                        max_ = dval;
+                        hasStats_ = true;
+                    }
+                    else {
+                        min_ = Math.min( min_, dval );
+                        max_ = Math.max( max_, dval );
+                    }
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+        byte[] getMinStat() {
+            return hasStats_
+                 ? LeBuffer.longBytes( Double.doubleToLongBits( min_ ) )
+                 : null;
+        }
+        byte[] getMaxStat() {
+            return hasStats_
+                 ? LeBuffer.longBytes( Double.doubleToLongBits( max_ ) )
+                 : null;
+        }
+        void resetStats() {
+            hasStats_ = false;
+        }
+    }
+
+    /**
+     * Encoder for BYTE_ARRAY values, from Strings or byte arrays.
+     */
+    private static class BinaryEncoder extends ColumnEncoder {
+        BinaryEncoder( String name, int convType ) {
+            super( name, ParquetColumn.T_BYTE_ARRAY, convType );
+        }
+        boolean encodeValue( Object value, LeBuffer buf ) {
+            final byte[] bytes;
+            if ( value instanceof String ) {
+                bytes = ((String) value).getBytes( StandardCharsets.UTF_8 );
+            }
+            else if ( value instanceof byte[] ) {
+                bytes = (byte[]) value;
+            }
+            else {
+                return false;
+            }
+            buf.writeInt( bytes.length );
+            buf.write( bytes, 0, bytes.length );
+            return true;
+        }
+        byte[] getMinStat() {
+            return null;
+        }
+        byte[] getMaxStat() {
+            return null;
+        }
+        void resetStats() {
+        }
+    }
+}
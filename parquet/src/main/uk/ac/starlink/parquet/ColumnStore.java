@@ -0,0 +1,273 @@
+package uk.ac.starlink.parquet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Holds the decoded values of a column chunk, or of a dictionary page,
+ * in primitive arrays according to the Parquet physical type.
+ * Values are written into the store by decoding PLAIN-encoded pages,
+ * or by looking up entries in a dictionary store.
+ *
+ * @since    18 Oct 2026
+ */
+abstract class ColumnStore {
+
+    /**
+     * Reads PLAIN-encoded values from a buffer into given positions
+     * of this store.
+     *
+     * @param  buf  buffer positioned at the start of the encoded values
+     * @param  irows  array of target indices in this store
+     * @param  n   number of values to read
+     */
+    public void readPlain( ByteBuffer buf, int[] irows, int n )
+            throws TableFormatException {
+        ByteBuffer lbuf = buf.slice().order( ByteOrder.LITTLE_ENDIAN );
+        try {
+            doReadPlain( lbuf, irows, n );
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new TableFormatException( "Parquet page too short", e );
+        }
+        buf.position( buf.position() + lbuf.position() );
+    }
+
+    /**
+     * Copies values from a dictionary into given positions of this store.
+     *
+     * @param  dict  dictionary store, of the same type as this one
+     * @param  idicts  array of indices into the dictionary
+     * @param  irows   array of target indices in this store
+     * @param  n   number of values to copy
+     */
+    public void readDict( ColumnStore dict, int[] idicts, int[] irows, int n )
+            throws TableFormatException {
+        try {
+            doReadDict( dict, idicts, irows, n );
+        }
+        catch ( ArrayIndexOutOfBoundsException e ) {
+            throw new TableFormatException( "Bad Parquet dictionary index",
+                                            e );
+        }
+    }
+
+    /**
+     * Reads PLAIN-encoded values from a little-endian buffer.
+     *
+     * @param  buf  little-endian buffer positioned at the first value
+     * @param  irows  array of target indices in this store
+     * @param  n   number of values to read
+     */
+    abstract void doReadPlain( ByteBuffer buf, int[] irows, int n )
+            throws TableFormatException;
+
+    /**
+     * Copies values from a dictionary.
+     *
+     * @param  dict  dictionary store, of the same type as this one
+     * @param  idicts  array of indices into the dictionary
+     * @param  irows   array of target indices in this store
+     * @param  n   number of values to copy
+     */
+    abstract void doReadDict( ColumnStore dict, int[] idicts, int[] irows,
+                              int n );
+
+    /**
+     * Returns a store suitable for a given Parquet physical type.
+     *
+     * @param  physType  physical type code
+     * @param  typeLength  element length for FIXED_LEN_BYTE_ARRAY type
+     * @param  n   number of elements
+     * @return  new store
+     */
+    public static ColumnStore createStore( int physType, int typeLength,
+                                           int n ) {
+        switch ( physType ) {
+            case ParquetColumn.T_BOOLEAN:
+                return new BooleanStore( n );
+            case ParquetColumn.T_INT32:
+                return new IntStore( n );
+            case ParquetColumn.T_INT64:
+                return new LongStore( n );
+            case ParquetColumn.T_FLOAT:
+                return new FloatStore( n );
+            case ParquetColumn.T_DOUBLE:
+                return new DoubleStore( n );
+            case ParquetColumn.T_INT96:
+                return new BinaryStore( n, 12 );
+            case ParquetColumn.T_BYTE_ARRAY:
+                return new BinaryStore( n, -1 );
+            case ParquetColumn.T_FIXED_LEN_BYTE_ARRAY:
+                return new BinaryStore( n, typeLength );
+            default:
+                throw new IllegalArgumentException( "Unknown type "
+                                                  + physType );
+        }
+    }
+
+    /**
+     * Store for BOOLEAN values.
+     */
+    static class BooleanStore extends ColumnStore {
+        final boolean[] data_;
+        BooleanStore( int n ) {
+            data_ = new boolean[ n ];
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n ) {
+            int b = 0;
+            for ( int i = 0; i < n; i++ ) {
+                int ibit = i & 0x7;
+                if ( ibit == 0 ) {
+                    b = buf.get();
+                }
+                data_[ irows[ i ] ] = ( b & ( 1 << ibit ) ) != 0;
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            boolean[] ddata = ((BooleanStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+
+        /**
+         * Sets values explicitly.
+         *
+         * @param  values  values array
+         * @param  irows   array of target indices in this store
+         * @param  n   number of values to set
+         */
+        void setValues( int[] values, int[] irows, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = values[ i ] != 0;
+            }
+        }
+    }
+
+    /**
+     * Store for INT32 values.
+     */
+    static class IntStore extends ColumnStore {
+        final int[] data_;
+        IntStore( int n ) {
+            data_ = new int[ n ];
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = buf.getInt();
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            int[] ddata = ((IntStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+    }
+
+    /**
+     * Store for INT64 values.
+     */
+    static class LongStore extends ColumnStore {
+        final long[] data_;
+        LongStore( int n ) {
+            data_ = new long[ n ];
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = buf.getLong();
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            long[] ddata = ((LongStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+    }
+
+    /**
+     * Store for FLOAT values.
+     */
+    static class FloatStore extends ColumnStore {
+        final float[] data_;
+        FloatStore( int n ) {
+            data_ = new float[ n ];
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = buf.getFloat();
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            float[] ddata = ((FloatStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+    }
+
+    /**
+     * Store for DOUBLE values.
+     */
+    static class DoubleStore extends ColumnStore {
+        final double[] data_;
+        DoubleStore( int n ) {
+            data_ = new double[ n ];
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = buf.getDouble();
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            double[] ddata = ((DoubleStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+    }
+
+    /**
+     * Store for byte array values, of variable or fixed length.
+     * Dictionary entries are shared, not copied.
+     */
+    static class BinaryStore extends ColumnStore {
+        final byte[][] data_;
+        final int fixedLeng_;
+
+        /**
+         * Constructor.
+         *
+         * @param  n  number of elements
+         * @param  fixedLeng  fixed element length,
+         *                    or -1 for length-prefixed values
+         */
+        BinaryStore( int n, int fixedLeng ) {
+            data_ = new byte[ n ][];
+            fixedLeng_ = fixedLeng;
+        }
+        void doReadPlain( ByteBuffer buf, int[] irows, int n )
+                throws TableFormatException {
+            for ( int i = 0; i < n; i++ ) {
+                int leng = fixedLeng_ >= 0 ? fixedLeng_ : buf.getInt();
+                if ( leng < 0 || leng > buf.remaining() ) {
+                    throw new TableFormatException( "Bad Parquet BYTE_ARRAY "
+                                                  + "length " + leng );
+                }
+                byte[] bytes = new byte[ leng ];
+                buf.get( bytes );
+                data_[ irows[ i ] ] = bytes;
+            }
+        }
+        void doReadDict( ColumnStore dict, int[] idicts, int[] irows, int n ) {
+            byte[][] ddata = ((BinaryStore) dict).data_;
+            for ( int i = 0; i < n; i++ ) {
+                data_[ irows[ i ] ] = ddata[ idicts[ i ] ];
+            }
+        }
+    }
+}
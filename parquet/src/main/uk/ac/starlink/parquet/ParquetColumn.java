@@ -0,0 +1,552 @@
+package uk.ac.starlink.parquet;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.Tables;
+
+/**
+ * Describes a top-level primitive column in a Parquet file,
+ * and knows how to turn its decoded values into StarTable cell values.
+ *
+ * <p>The mapping from Parquet types to Java classes is as follows:
+ * <ul>
+ * <li>BOOLEAN: Boolean
+ * <li>INT32: Integer, or Byte/Short for INT_8/INT_16 annotations,
+ *            Short/Integer/Long for UINT_8/UINT_16/UINT_32 annotations
+ * <li>INT64: Long (UINT_64 values larger than Long.MAX_VALUE wrap)
+ * <li>INT96: ISO-8601 String (legacy nanosecond timestamp)
+ * <li>FLOAT: Float
+ * <li>DOUBLE: Double
+ * <li>BYTE_ARRAY: String for UTF8/ENUM/JSON annotations, otherwise byte[]
+ * <li>FIXED_LEN_BYTE_ARRAY: byte[]
+ * <li>any integer or byte array type with DECIMAL annotation: Double
+ * </ul>
+ *
+ * @since    18 Oct 2026
+ */
+class ParquetColumn {
+
+    private final String name_;
+    private final int leafIndex_;
+    private final int physType_;
+    private final int typeLength_;
+    private final boolean isOptional_;
+    private final int convType_;
+    private final int scale_;
+    private final int conv_;
+    private final ColumnInfo info_;
+
+    /* Physical types (Thrift enum Type). */
+    static final int T_BOOLEAN = 0;
+    static final int T_INT32 = 1;
+    static final int T_INT64 = 2;
+    static final int T_INT96 = 3;
+    static final int T_FLOAT = 4;
+    static final int T_DOUBLE = 5;
+    static final int T_BYTE_ARRAY = 6;
+    static final int T_FIXED_LEN_BYTE_ARRAY = 7;
+
+    /* Converted types (Thrift enum ConvertedType). */
+    static final int C_NONE = -1;
+    static final int C_UTF8 = 0;
+    static final int C_ENUM = 4;
+    static final int C_DECIMAL = 5;
+    static final int C_DATE = 6;
+    static final int C_TIME_MILLIS = 7;
+    static final int C_TIME_MICROS = 8;
+    static final int C_TIMESTAMP_MILLIS = 9;
+    static final int C_TIMESTAMP_MICROS = 10;
+    static final int C_UINT_8 = 11;
+    static final int C_UINT_16 = 12;
+    static final int C_UINT_32 = 13;
+    static final int C_UINT_64 = 14;
+    static final int C_INT_8 = 15;
+    static final int C_INT_16 = 16;
+    static final int C_JSON = 19;
+
+    /* Repetition types. */
+    static final int R_REQUIRED = 0;
+    static final int R_OPTIONAL = 1;
+    static final int R_REPEATED = 2;
+
+    /* Conversion codes from stored to cell values. */
+    private static final int V_BOOLEAN = 1;
+    private static final int V_INT = 2;
+    private static final int V_BYTE = 3;
+    private static final int V_SHORT = 4;
+    private static final int V_UINT32 = 5;
+    private static final int V_LONG = 6;
+    private static final int V_FLOAT = 7;
+    private static final int V_DOUBLE = 8;
+    private static final int V_STRING = 9;
+    private static final int V_BYTES = 10;
+    private static final int V_INT96 = 11;
+    private static final int V_DECIMAL = 12;
+
+    private static final int JULIAN_DAY_EPOCH = 2440588;
+
+    /**
+     * Constructor.
+     *
+     * @param  schemaEl  Thrift SchemaElement structure for the column
+     * @param  leafIndex  index of this column among all the leaf columns
+     *                    of the schema, which is the index of its
+     *                    column chunk within each row group
+     */
+    ParquetColumn( ThriftStruct schemaEl, int leafIndex ) {
+        name_ = schemaEl.getString( 4 );
+        leafIndex_ = leafIndex;
+        physType_ = schemaEl.getInt( 1, -1 );
+        typeLength_ = schemaEl.getInt( 2, 0 );
+        isOptional_ = schemaEl.getInt( 3, R_REQUIRED ) == R_OPTIONAL;
+        convType_ = getConvertedType( schemaEl );
+        scale_ = getScale( schemaEl );
+        conv_ = getConversion( physType_, convType_ );
+        info_ = createColumnInfo();
+    }
+
+    /**
+     * Returns the column name.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Returns the index of this column among the leaf columns of the schema.
+     *
+     * @return  column chunk index
+     */
+    public int getLeafIndex() {
+        return leafIndex_;
+    }
+
+    /**
+     * Returns the Parquet physical type code.
+     *
+     * @return  physical type
+     */
+    public int getPhysicalType() {
+        return physType_;
+    }
+
+    /**
+     * Returns the element length for fixed-length byte arrays.
+     *
+     * @return  type length
+     */
+    public int getTypeLength() {
+        return typeLength_;
+    }
+
+    /**
+     * Returns the maximum definition level for this column.
+     *
+     * @return  1 for optional, 0 for required
+     */
+    public int getMaxDefinitionLevel() {
+        return isOptional_ ? 1 : 0;
+    }
+
+    /**
+     * Returns the metadata for this column.
+     * The returned object may be modified by the caller.
+     *
+     * @return  column metadata
+     */
+    public ColumnInfo getColumnInfo() {
+        return info_;
+    }
+
+    /**
+     * Returns a cell value from a decoded column chunk.
+     *
+     * @param  store  decoded values
+     * @param  isNull  null flags, or null if no values are null
+     * @param  i   row index within chunk
+     * @return  cell value
+     */
+    public Object getCell( ColumnStore store, boolean[] isNull, int i ) {
+        if ( isNull != null && isNull[ i ] ) {
+            return null;
+        }
+        switch ( conv_ ) {
+            case V_BOOLEAN:
+                return Boolean
+                      .valueOf( ((ColumnStore.BooleanStore) store).data_[ i ] );
+            case V_INT:
+                return Integer
+                      .valueOf( ((ColumnStore.IntStore) store).data_[ i ] );
+            case V_BYTE:
+                return Byte
+                      .valueOf( (byte) ((ColumnStore.IntStore) store)
+                                      .data_[ i ] );
+            case V_SHORT:
+                return Short
+                      .valueOf( (short) ((ColumnStore.IntStore) store)
+                                       .data_[ i ] );
+            case V_UINT32:
+                return Long
+                      .valueOf( ((ColumnStore.IntStore) store).data_[ i ]
+                                & 0xffffffffL );
+            case V_LONG:
+                return Long
+                      .valueOf( ((ColumnStore.LongStore) store).data_[ i ] );
+            case V_FLOAT:
+                return Float
+                      .valueOf( ((ColumnStore.FloatStore) store).data_[ i ] );
+            case V_DOUBLE:
+                return Double
+                      .valueOf( ((ColumnStore.DoubleStore) store).data_[ i ] );
+            case V_STRING:
+                return new String( ((ColumnStore.BinaryStore) store).data_[ i ],
+                                   StandardCharsets.UTF_8 );
+            case V_BYTES:
+                return ((ColumnStore.BinaryStore) store).data_[ i ];
+            case V_INT96:
+                return int96ToIso( ((ColumnStore.BinaryStore) store)
+                                  .data_[ i ] );
+            case V_DECIMAL:
+                return Double.valueOf( getDecimal( store, i ) );
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Returns the numeric range of values in a column chunk
+     * as recorded by its statistics, if available.
+     * This is only available for numeric columns for which
+     * the statistics can be trusted for ordering purposes.
+     *
+     * @param  stats  Thrift Statistics structure, may be null
+     * @return  2-element (min,max) array, or null if not known
+     */
+    public double[] getRange( ThriftStruct stats ) {
+        if ( stats == null ) {
+            return null;
+        }
+        switch ( conv_ ) {
+            case V_INT:
+            case V_BYTE:
+            case V_SHORT:
+            case V_LONG:
+            case V_FLOAT:
+            case V_DOUBLE:
+                break;
+            default:
+                return null;
+        }
+        if ( convType_ == C_UINT_8 || convType_ == C_UINT_16 ||
+             convType_ == C_UINT_64 ) {
+            return null;
+        }
+        byte[] min = stats.getBinary( 6 );
+        byte[] max = stats.getBinary( 5 );
+        if ( min == null || max == null ) {
+            min = stats.getBinary( 2 );
+            max = stats.getBinary( 1 );
+        }
+        if ( min == null || max == null ) {
+            return null;
+        }
+        double dmin = decodeStat( min );
+        double dmax = decodeStat( max );
+        if ( Double.isNaN( dmin ) || Double.isNaN( dmax ) ) {
+            return null;
+        }
+        return new double[] { dmin, dmax };
+    }
+
+    /**
+     * Decodes a PLAIN-encoded statistics value as a double.
+     * Long values that cannot be represented exactly as doubles
+     * are reported as NaN, so that range comparisons remain conservative.
+     *
+     * @param  bytes  encoded value
+     * @return  numeric value, or NaN if it can't be decoded
+     */
+    private double decodeStat( byte[] bytes ) {
+        ByteBuffer buf = ByteBuffer.wrap( bytes )
+                                   .order( ByteOrder.LITTLE_ENDIAN );
+        switch ( physType_ ) {
+            case T_INT32:
+                return bytes.length == 4 ? buf.getInt() : Double.NaN;
+            case T_INT64:
+                if ( bytes.length != 8 ) {
+                    return Double.NaN;
+                }
+                long lval = buf.getLong();
+                double dval = lval;
+                return (long) dval == lval ? dval : Double.NaN;
+            case T_FLOAT:
+                return bytes.length == 4 ? buf.getFloat() : Double.NaN;
+            case T_DOUBLE:
+                return bytes.length == 8 ? buf.getDouble() : Double.NaN;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the value of a DECIMAL-annotated cell.
+     *
+     * @param  store  decoded values
+     * @param  i  index
+     * @return  numeric value
+     */
+    private double getDecimal( ColumnStore store, int i ) {
+        final BigInteger unscaled;
+        if ( store instanceof ColumnStore.IntStore ) {
+            unscaled = BigInteger
+                      .valueOf( ((ColumnStore.IntStore) store).data_[ i ] );
+        }
+        else if ( store instanceof ColumnStore.LongStore ) {
+            unscaled = BigInteger
+                      .valueOf( ((ColumnStore.LongStore) store).data_[ i ] );
+        }
+        else {
+            byte[] bytes = ((ColumnStore.BinaryStore) store).data_[ i ];
+            if ( bytes.length == 0 ) {
+                return Double.NaN;
+            }
+            unscaled = new BigInteger( bytes );
+        }
+        return new BigDecimal( unscaled, scale_ ).doubleValue();
+    }
+
+    /**
+     * Creates the metadata object for this column.
+     *
+     * @return  new column info
+     */
+    private ColumnInfo createColumnInfo() {
+        ColumnInfo info = new ColumnInfo( name_, getContentClass(), null );
+        info.setNullable( isOptional_ );
+        if ( convType_ == C_UINT_8 ) {
+            info.setAuxDatum( new DescribedValue( Tables.UBYTE_FLAG_INFO,
+                                                  Boolean.TRUE ) );
+        }
+        else if ( convType_ == C_DATE ) {
+            info.setUnitString( "d" );
+            info.setDescription( "Days since 1970-01-01" );
+        }
+        else if ( convType_ == C_TIMESTAMP_MILLIS ) {
+            info.setUnitString( "ms" );
+            info.setDescription( "Milliseconds since 1970-01-01T00:00:00" );
+        }
+        else if ( convType_ == C_TIMESTAMP_MICROS ) {
+            info.setUnitString( "us" );
+            info.setDescription( "Microseconds since 1970-01-01T00:00:00" );
+        }
+        else if ( convType_ == C_TIME_MILLIS ) {
+            info.setUnitString( "ms" );
+            info.setDescription( "Milliseconds since midnight" );
+        }
+        else if ( convType_ == C_TIME_MICROS ) {
+            info.setUnitString( "us" );
+            info.setDescription( "Microseconds since midnight" );
+        }
+        return info;
+    }
+
+    /**
+     * Returns the Java class of cell values.
+     *
+     * @return  content class
+     */
+    private Class<?> getContentClass() {
+        switch ( conv_ ) {
+            case V_BOOLEAN:
+                return Boolean.class;
+            case V_INT:
+                return Integer.class;
+            case V_BYTE:
+                return Byte.class;
+            case V_SHORT:
+                return Short.class;
+            case V_UINT32:
+            case V_LONG:
+                return Long.class;
+            case V_FLOAT:
+                return Float.class;
+            case V_DOUBLE:
+            case V_DECIMAL:
+                return Double.class;
+            case V_STRING:
+            case V_INT96:
+                return String.class;
+            case V_BYTES:
+                return byte[].class;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Indicates whether a schema element represents a column that
+     * can be represented by this class.
+     *
+     * @param  schemaEl  Thrift SchemaElement structure
+     * @return  true iff supported
+     */
+    public static boolean isSupported( ThriftStruct schemaEl ) {
+        if ( schemaEl.getInt( 3, R_REQUIRED ) == R_REPEATED ||
+             schemaEl.getInt( 5, 0 ) > 0 ) {
+            return false;
+        }
+        int physType = schemaEl.getInt( 1, -1 );
+        return physType >= T_BOOLEAN && physType <= T_FIXED_LEN_BYTE_ARRAY
+            && getConversion( physType, getConvertedType( schemaEl ) ) > 0;
+    }
+
+    /**
+     * Returns the converted type code for a schema element.
+     * The logicalType field is used where it provides information
+     * that the legacy converted_type field does not.
+     *
+     * @param  schemaEl  Thrift SchemaElement structure
+     * @return  converted type code, or C_NONE
+     */
+    private static int getConvertedType( ThriftStruct schemaEl ) {
+        int conv = schemaEl.getInt( 6, C_NONE );
+        ThriftStruct logical = schemaEl.getStruct( 10 );
+        if ( conv == C_NONE && logical != null ) {
+            if ( logical.has( 1 ) ) {
+                return C_UTF8;
+            }
+            else if ( logical.has( 4 ) ) {
+                return C_ENUM;
+            }
+            else if ( logical.has( 5 ) ) {
+                return C_DECIMAL;
+            }
+            else if ( logical.has( 6 ) ) {
+                return C_DATE;
+            }
+            else if ( logical.has( 12 ) ) {
+                return C_JSON;
+            }
+            else if ( logical.has( 10 ) ) {
+                ThriftStruct intType = logical.getStruct( 10 );
+                int nbit = intType.getInt( 1, 32 );
+                boolean signed = intType.getBoolean( 2, true );
+                switch ( nbit ) {
+                    case 8:
+                        return signed ? C_INT_8 : C_UINT_8;
+                    case 16:
+                        return signed ? C_INT_16 : C_UINT_16;
+                    case 32:
+                        return signed ? C_NONE : C_UINT_32;
+                    case 64:
+                        return signed ? C_NONE : C_UINT_64;
+                    default:
+                        return C_NONE;
+                }
+            }
+            else if ( logical.has( 8 ) ) {
+                ThriftStruct unit = logical.getStruct( 8 ).getStruct( 2 );
+                if ( unit != null && unit.has( 1 ) ) {
+                    return C_TIMESTAMP_MILLIS;
+                }
+                else if ( unit != null && unit.has( 2 ) ) {
+                    return C_TIMESTAMP_MICROS;
+                }
+            }
+        }
+        return conv;
+    }
+
+    /**
+     * Returns the decimal scale for a schema element.
+     *
+     * @param  schemaEl  Thrift SchemaElement structure
+     * @return  scale
+     */
+    private static int getScale( ThriftStruct schemaEl ) {
+        ThriftStruct logical = schemaEl.getStruct( 10 );
+        if ( logical != null && logical.has( 5 ) ) {
+            return logical.getStruct( 5 ).getInt( 1, 0 );
+        }
+        return schemaEl.getInt( 7, 0 );
+    }
+
+    /**
+     * Returns the conversion code for a given type combination.
+     *
+     * @param  physType  physical type
+     * @param  convType  converted type
+     * @return  conversion code, or 0 if unsupported
+     */
+    private static int getConversion( int physType, int convType ) {
+        switch ( physType ) {
+            case T_BOOLEAN:
+                return V_BOOLEAN;
+            case T_INT32:
+                switch ( convType ) {
+                    case C_INT_8:
+                        return V_BYTE;
+                    case C_INT_16:
+                    case C_UINT_8:
+                        return V_SHORT;
+                    case C_UINT_32:
+                        return V_UINT32;
+                    case C_DECIMAL:
+                        return V_DECIMAL;
+                    default:
+                        return V_INT;
+                }
+            case T_INT64:
+                return convType == C_DECIMAL ? V_DECIMAL : V_LONG;
+            case T_INT96:
+                return V_INT96;
+            case T_FLOAT:
+                return V_FLOAT;
+            case T_DOUBLE:
+                return V_DOUBLE;
+            case T_BYTE_ARRAY:
+                switch ( convType ) {
+                    case C_UTF8:
+                    case C_ENUM:
+                    case C_JSON:
+                        return V_STRING;
+                    case C_DECIMAL:
+                        return V_DECIMAL;
+                    default:
+                        return V_BYTES;
+                }
+            case T_FIXED_LEN_BYTE_ARRAY:
+                return convType == C_DECIMAL ? V_DECIMAL : V_BYTES;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Converts a legacy INT96 timestamp to an ISO-8601 string.
+     *
+     * @param  bytes  12-byte value: little-endian nanoseconds of day
+     *                followed by little-endian Julian day number
+     * @return  ISO-8601 representation
+     */
+    private static String int96ToIso( byte[] bytes ) {
+        ByteBuffer buf = ByteBuffer.wrap( bytes )
+                                   .order( ByteOrder.LITTLE_ENDIAN );
+        long nanos = buf.getLong();
+        int jday = buf.getInt();
+        LocalDateTime time = LocalDate.ofEpochDay( jday - JULIAN_DAY_EPOCH )
+                                      .atStartOfDay()
+                                      .plusNanos( nanos );
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format( time );
+    }
+}
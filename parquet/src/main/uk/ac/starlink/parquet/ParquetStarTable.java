@@ -0,0 +1,523 @@
+package uk.ac.starlink.parquet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * StarTable implementation based on a Parquet file.
+ *
+ * <p>Row groups are decoded one column chunk at a time,
+ * and a column chunk is only read from the file when one of its
+ * cells is first requested.  This means that processing which only
+ * accesses a few columns of a wide table only has to read and decode
+ * the corresponding column chunks.
+ * The {@link #getRowSplittable} method splits the table between
+ * row groups, so that row groups may be decoded in parallel.
+ * Row groups may also be excluded on the basis of their
+ * column statistics, see {@link #selectRowGroups}.
+ *
+ * <p>Only top-level non-repeated columns of primitive types are
+ * supported; other columns in the input file are ignored.
+ * Random access is not provided.
+ *
+ * @since    18 Oct 2026
+ */
+public class ParquetStarTable extends AbstractStarTable {
+
+    private final File file_;
+    private final ParquetColumn[] cols_;
+    private final ColumnInfo[] colInfos_;
+    private final RowGroup[] groups_;
+    private final long[] groupRow0s_;
+    private final int ncol_;
+
+    /** Magic number at start and end of Parquet files. */
+    public static final byte[] MAGIC = new byte[] { 'P', 'A', 'R', '1' };
+
+    /** Prefix for key-value metadata keys used to store STIL metadata. */
+    public static final String KEY_PREFIX = "stil.";
+
+    /** Key-value metadata key for table name. */
+    public static final String NAME_KEY = KEY_PREFIX + "name";
+
+    /** Key-value metadata key prefix for column units. */
+    public static final String UNIT_KEY = KEY_PREFIX + "unit.";
+
+    /** Key-value metadata key prefix for column UCDs. */
+    public static final String UCD_KEY = KEY_PREFIX + "ucd.";
+
+    /** Key-value metadata key prefix for column Utypes. */
+    public static final String UTYPE_KEY = KEY_PREFIX + "utype.";
+
+    /** Key-value metadata key prefix for column descriptions. */
+    public static final String DESCRIPTION_KEY = KEY_PREFIX + "description.";
+
+    /** Key-value metadata key prefix for column array shapes. */
+    public static final String SHAPE_KEY = KEY_PREFIX + "shape.";
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.parquet" );
+
+    /**
+     * Constructs a table from a Parquet file.
+     *
+     * @param  file  file
+     * @throws  TableFormatException  if the file is not in Parquet format
+     */
+    public ParquetStarTable( File file ) throws IOException {
+        file_ = file;
+        ThriftStruct fileMeta = readFileMetadata( file );
+
+        /* Identify the supported columns. */
+        List<?> schema = fileMeta.getList( 2 );
+        if ( schema.isEmpty() ) {
+            throw new TableFormatException( "No Parquet schema" );
+        }
+        int nchild = ((ThriftStruct) schema.get( 0 )).getInt( 5, 0 );
+        List<ParquetColumn> colList = new ArrayList<ParquetColumn>();
+        int[] pos = new int[] { 1 };
+        int[] ileaf = new int[] { 0 };
+        for ( int ic = 0; ic < nchild; ic++ ) {
+            ThriftStruct el = (ThriftStruct) schema.get( pos[ 0 ] );
+            int leaf0 = ileaf[ 0 ];
+            skipSchemaNode( schema, pos, ileaf );
+            if ( ParquetColumn.isSupported( el ) ) {
+                colList.add( new ParquetColumn( el, leaf0 ) );
+            }
+            else {
+                logger_.warning( "Ignoring unsupported Parquet column "
+                               + el.getString( 4 ) );
+            }
+        }
+        cols_ = colList.toArray( new ParquetColumn[ 0 ] );
+        ncol_ = cols_.length;
+        int nleaf = ileaf[ 0 ];
+
+        /* Apply STIL metadata stored in the key-value list if present. */
+        Map<String,String> kvMap = new LinkedHashMap<String,String>();
+        for ( Object kv : fileMeta.getList( 5 ) ) {
+            ThriftStruct kvs = (ThriftStruct) kv;
+            String key = kvs.getString( 1 );
+            String value = kvs.getString( 2 );
+            if ( key != null && value != null ) {
+                kvMap.put( key, value );
+            }
+        }
+        colInfos_ = new ColumnInfo[ ncol_ ];
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            ColumnInfo info = cols_[ ic ].getColumnInfo();
+            applyMetadata( info, kvMap );
+            colInfos_[ ic ] = info;
+        }
+        String name = kvMap.get( NAME_KEY );
+        setName( name == null ? file.getName() : name );
+        String createdBy = fileMeta.getString( 6 );
+        if ( createdBy != null ) {
+            setParameter( new DescribedValue(
+                new DefaultValueInfo( "created_by", String.class,
+                                      "Application that wrote the file" ),
+                createdBy ) );
+        }
+
+        /* Record row group information. */
+        List<?> rgList = fileMeta.getList( 4 );
+        groups_ = new RowGroup[ rgList.size() ];
+        for ( int ig = 0; ig < groups_.length; ig++ ) {
+            ThriftStruct rg = (ThriftStruct) rgList.get( ig );
+            List<?> chunks = rg.getList( 1 );
+            if ( chunks.size() != nleaf ) {
+                throw new TableFormatException( "Parquet row group column "
+                                              + "count mismatch" );
+            }
+            groups_[ ig ] =
+                new RowGroup( rg.getLong( 3, 0 ),
+                              chunks.toArray( new ThriftStruct[ 0 ] ) );
+        }
+        groupRow0s_ = getGroupStarts( groups_ );
+    }
+
+    /**
+     * Constructs a table containing a subset of the row groups
+     * of an existing one.
+     *
+     * @param  base  table with all row groups
+     * @param  groups  row groups to include
+     */
+    private ParquetStarTable( ParquetStarTable base, RowGroup[] groups ) {
+        file_ = base.file_;
+        cols_ = base.cols_;
+        colInfos_ = base.colInfos_;
+        ncol_ = base.ncol_;
+        groups_ = groups;
+        groupRow0s_ = getGroupStarts( groups );
+        setName( base.getName() );
+        setURL( base.getURL() );
+        setParameters( new ArrayList<DescribedValue>( base.getParameters() ) );
+    }
+
+    public int getColumnCount() {
+        return ncol_;
+    }
+
+    public ColumnInfo getColumnInfo( int icol ) {
+        return colInfos_[ icol ];
+    }
+
+    public long getRowCount() {
+        return groupRow0s_[ groups_.length ];
+    }
+
+    /**
+     * Returns the number of Parquet row groups in this table.
+     *
+     * @return  row group count
+     */
+    public int getRowGroupCount() {
+        return groups_.length;
+    }
+
+    /**
+     * Returns the numeric range of a given column within a given
+     * row group of this table, as recorded in the file's
+     * column chunk statistics.  Null values are not included in the range.
+     * If no trustworthy statistics are available, null is returned.
+     *
+     * @param  irg  row group index
+     * @param  icol  column index
+     * @return   2-element (min,max) array, or null
+     */
+    public double[] getRowGroupRange( int irg, int icol ) {
+        ParquetColumn col = cols_[ icol ];
+        ThriftStruct meta = groups_[ irg ].chunks_[ col.getLeafIndex() ]
+                                             .getStruct( 3 );
+        return meta == null ? null : col.getRange( meta.getStruct( 12 ) );
+    }
+
+    /**
+     * Returns a table which contains only some of the row groups
+     * of this one.  The table returned shares metadata with this one.
+     *
+     * @param  irgs  indices of row groups in this table
+     *               that are to be included, in the order required
+     * @return  new table
+     */
+    public ParquetStarTable selectRowGroups( int[] irgs ) {
+        RowGroup[] groups = new RowGroup[ irgs.length ];
+        for ( int i = 0; i < irgs.length; i++ ) {
+            groups[ i ] = groups_[ irgs[ i ] ];
+        }
+        return new ParquetStarTable( this, groups );
+    }
+
+    public RowSequence getRowSequence() {
+        return getRowSplittable();
+    }
+
+    @Override
+    public RowSplittable getRowSplittable() {
+        return new GroupRowSplittable( 0, groups_.length );
+    }
+
+    /**
+     * Reads and decodes a column chunk.
+     *
+     * @param  group  row group
+     * @param  icol   column index
+     * @return  decoded chunk
+     */
+    private ChunkReader.DecodedChunk readChunk( RowGroup group, int icol )
+            throws IOException {
+        ParquetColumn col = cols_[ icol ];
+        ThriftStruct chunk = group.chunks_[ col.getLeafIndex() ];
+        if ( chunk.getString( 1 ) != null ) {
+            throw new TableFormatException( "External Parquet column chunks "
+                                          + "not supported" );
+        }
+        ThriftStruct meta = chunk.getStruct( 3 );
+        long dataOff = meta.getLong( 9, -1 );
+        long dictOff = meta.getLong( 11, -1 );
+        long start = dictOff > 0 && dictOff < dataOff ? dictOff : dataOff;
+        long leng = meta.getLong( 7, -1 );
+        if ( start < 0 || leng < 0 || leng > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Bad Parquet column chunk "
+                                          + "location" );
+        }
+        if ( group.nrow_ > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Row group too large" );
+        }
+        ByteBuffer buf;
+        try ( FileChannel chan =
+                  FileChannel.open( file_.toPath(),
+                                    StandardOpenOption.READ ) ) {
+            if ( start + leng > chan.size() ) {
+                throw new TableFormatException( "Parquet column chunk "
+                                              + "overruns file" );
+            }
+            buf = chan.map( FileChannel.MapMode.READ_ONLY, start, leng );
+        }
+        return ChunkReader.readChunk( buf, col, meta.getInt( 4, 0 ),
+                                      (int) group.nrow_ );
+    }
+
+    /**
+     * Reads the FileMetaData structure from the footer of a Parquet file.
+     *
+     * @param  file  file
+     * @return  FileMetaData structure
+     * @throws  TableFormatException  if it's not a Parquet file
+     */
+    private static ThriftStruct readFileMetadata( File file )
+            throws IOException {
+        try ( FileChannel chan =
+                  FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long size = chan.size();
+            if ( size < 12 ) {
+                throw new TableFormatException( "Too short for Parquet" );
+            }
+            ByteBuffer tail = ByteBuffer.allocate( 8 )
+                                        .order( ByteOrder.LITTLE_ENDIAN );
+            readFully( chan, tail, size - 8 );
+            for ( int i = 0; i < 4; i++ ) {
+                if ( tail.get( 4 + i ) != MAGIC[ i ] ) {
+                    throw new TableFormatException( "No Parquet magic number "
+                                                  + "at end of file" );
+                }
+            }
+            int metaLeng = tail.getInt( 0 );
+            if ( metaLeng <= 0 || metaLeng > size - 12 ) {
+                throw new TableFormatException( "Bad Parquet footer length" );
+            }
+            ByteBuffer metaBuf = ByteBuffer.allocate( metaLeng );
+            readFully( chan, metaBuf, size - 8 - metaLeng );
+            return ThriftStruct.read( metaBuf );
+        }
+    }
+
+    /**
+     * Reads bytes from a channel to fill a buffer.
+     *
+     * @param  chan  channel
+     * @param  buf   buffer to fill; on exit it is positioned at zero
+     * @param  pos   file position to read from
+     */
+    private static void readFully( FileChannel chan, ByteBuffer buf,
+                                   long pos )
+            throws IOException {
+        while ( buf.hasRemaining() ) {
+            int n = chan.read( buf, pos );
+            if ( n < 0 ) {
+                throw new TableFormatException( "Unexpected end of file" );
+            }
+            pos += n;
+        }
+        buf.flip();
+    }
+
+    /**
+     * Steps over a node of the flattened schema tree, counting leaves.
+     *
+     * @param  schema  list of SchemaElement structures
+     * @param  pos  1-element array holding the index of the node to skip;
+     *              on exit it indexes the following sibling
+     * @param  ileaf  1-element array holding a leaf count,
+     *                incremented by the number of leaves in the node
+     */
+    private static void skipSchemaNode( List<?> schema, int[] pos,
+                                        int[] ileaf )
+            throws TableFormatException {
+        if ( pos[ 0 ] >= schema.size() ) {
+            throw new TableFormatException( "Bad Parquet schema" );
+        }
+        ThriftStruct el = (ThriftStruct) schema.get( pos[ 0 ]++ );
+        int nchild = el.getInt( 5, 0 );
+        if ( nchild == 0 ) {
+            ileaf[ 0 ]++;
+        }
+        for ( int i = 0; i < nchild; i++ ) {
+            skipSchemaNode( schema, pos, ileaf );
+        }
+    }
+
+    /**
+     * Applies metadata from a key-value map to a column.
+     *
+     * @param  info  column metadata to modify
+     * @param  kvMap  key-value map from the file
+     */
+    private static void applyMetadata( ColumnInfo info,
+                                       Map<String,String> kvMap ) {
+        String name = info.getName();
+        String unit = kvMap.get( UNIT_KEY + name );
+        String ucd = kvMap.get( UCD_KEY + name );
+        String utype = kvMap.get( UTYPE_KEY + name );
+        String descrip = kvMap.get( DESCRIPTION_KEY + name );
+        String shape = kvMap.get( SHAPE_KEY + name );
+        if ( unit != null ) {
+            info.setUnitString( unit );
+        }
+        if ( ucd != null ) {
+            info.setUCD( ucd );
+        }
+        if ( utype != null ) {
+            info.setUtype( utype );
+        }
+        if ( descrip != null ) {
+            info.setDescription( descrip );
+        }
+        if ( shape != null && info.isArray() ) {
+            try {
+                info.setShape( DefaultValueInfo.unformatShape( shape ) );
+            }
+            catch ( RuntimeException e ) {
+                logger_.info( "Bad shape \"" + shape + "\" for " + name );
+            }
+        }
+    }
+
+    /**
+     * Returns the cumulative row offsets of a sequence of row groups.
+     *
+     * @param  groups  row groups
+     * @return  array with one more element than groups,
+     *          starting at zero and ending with the total row count
+     */
+    private static long[] getGroupStarts( RowGroup[] groups ) {
+        long[] starts = new long[ groups.length + 1 ];
+        for ( int ig = 0; ig < groups.length; ig++ ) {
+            starts[ ig + 1 ] = starts[ ig ] + groups[ ig ].nrow_;
+        }
+        return starts;
+    }
+
+    /**
+     * Records information about a row group.
+     */
+    private static class RowGroup {
+        final long nrow_;
+        final ThriftStruct[] chunks_;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow   number of rows
+         * @param  chunks  ColumnChunk structures, one for each leaf column
+         */
+        RowGroup( long nrow, ThriftStruct[] chunks ) {
+            nrow_ = nrow;
+            chunks_ = chunks;
+        }
+    }
+
+    /**
+     * RowSplittable implementation that iterates over a range of
+     * row groups, decoding column chunks as required.
+     */
+    private class GroupRowSplittable implements RowSplittable {
+
+        private final ChunkReader.DecodedChunk[] chunks_;
+        private int igroup_;
+        private int ihi_;
+        private int nInGroup_;
+        private int irInGroup_;
+        private long irow_;
+        private boolean hasRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ilo   index of first row group (inclusive)
+         * @param  ihi   index of last row group (exclusive)
+         */
+        GroupRowSplittable( int ilo, int ihi ) {
+            igroup_ = ilo - 1;
+            ihi_ = ihi;
+            chunks_ = new ChunkReader.DecodedChunk[ ncol_ ];
+            irow_ = -1;
+        }
+
+        public RowSplittable split() {
+            int ilo = igroup_ + 1;
+            if ( irow_ < 0 && ihi_ - ilo >= 2 ) {
+                int mid = ( ilo + ihi_ ) / 2;
+                RowSplittable other = new GroupRowSplittable( mid, ihi_ );
+                ihi_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return groupRow0s_[ ihi_ ] - groupRow0s_[ igroup_ + 1 ];
+        }
+
+        public LongSupplier rowIndex() {
+            return () -> irow_;
+        }
+
+        public boolean next() {
+            while ( irInGroup_ + 1 >= nInGroup_ ) {
+                if ( igroup_ + 1 < ihi_ ) {
+                    igroup_++;
+                    nInGroup_ = (int) groups_[ igroup_ ].nrow_;
+                    irInGroup_ = -1;
+                    irow_ = groupRow0s_[ igroup_ ] - 1;
+                    Arrays.fill( chunks_, null );
+                }
+                else {
+                    hasRow_ = false;
+                    return false;
+                }
+            }
+            irInGroup_++;
+            irow_++;
+            hasRow_ = true;
+            return true;
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            if ( ! hasRow_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+            ChunkReader.DecodedChunk chunk = chunks_[ icol ];
+            if ( chunk == null ) {
+                chunk = readChunk( groups_[ igroup_ ], icol );
+                chunks_[ icol ] = chunk;
+            }
+            return chunk.getCell( irInGroup_ );
+        }
+
+        public Object[] getRow() throws IOException {
+            Object[] row = new Object[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] = getCell( icol );
+            }
+            return row;
+        }
+
+        public void close() {
+            Arrays.fill( chunks_, null );
+            igroup_ = ihi_;
+            hasRow_ = false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.starlink.parquet;
+
+import java.awt.datatransfer.DataFlavor;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableBuilder;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
+import uk.ac.starlink.util.Compression;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.URLDataSource;
+import uk.ac.starlink.util.URLUtils;
+
+/**
+ * TableBuilder implementation for Apache Parquet format.
+ * Since the Parquet metadata is at the end of the file,
+ * only uncompressed local files are supported.
+ *
+ * @since    18 Oct 2026
+ */
+public class ParquetTableBuilder implements TableBuilder {
+
+    public ParquetTableBuilder() {
+    }
+
+    public String getFormatName() {
+        return "parquet";
+    }
+
+    public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
+                                    StoragePolicy storagePolicy )
+            throws IOException {
+        if ( ! isMagic( datsrc.getIntro() ) ) {
+            throw new TableFormatException( "No PAR1 magic number" );
+        }
+        File pfile = getFile( datsrc );
+        if ( pfile != null && datsrc.getCompression() == Compression.NONE ) {
+            return new ParquetStarTable( pfile );
+        }
+        else {
+            throw new TableFormatException( "Only uncompressed files supported"
+                                          + " for Parquet" );
+        }
+    }
+
+    public boolean canImport( DataFlavor flavor ) {
+        return false;
+    }
+
+    public void streamStarTable( InputStream in, TableSink sink, String pos )
+            throws IOException {
+        throw new TableFormatException( "Can't stream from Parquet format" );
+    }
+
+    /**
+     * Indicates whether a buffer starts with the Parquet magic number.
+     *
+     * @param  intro  first few bytes of a file
+     * @return  true iff it looks like Parquet
+     */
+    public static boolean isMagic( byte[] intro ) {
+        byte[] magic = ParquetStarTable.MAGIC;
+        if ( intro.length < magic.length ) {
+            return false;
+        }
+        for ( int i = 0; i < magic.length; i++ ) {
+            if ( intro[ i ] != magic[ i ] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a file corresponding to a DataSource, if possible.
+     *
+     * @param  datsrc  data source
+     * @return   corresponding file, or null if it's not a file
+     */
+    private static File getFile( DataSource datsrc ) {
+        if ( datsrc instanceof FileDataSource ) {
+            return ((FileDataSource) datsrc).getFile();
+        }
+        else if ( datsrc instanceof URLDataSource ) {
+            return URLUtils
+                  .urlToFile( ((URLDataSource) datsrc).getURL().toString() );
+        }
+        else {
+            return null;
+        }
+    }
+}
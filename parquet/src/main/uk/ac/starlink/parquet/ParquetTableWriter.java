@@ -0,0 +1,254 @@
+package uk.ac.starlink.parquet;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StreamStarTableWriter;
+import uk.ac.starlink.util.IntList;
+
+/**
+ * StarTableWriter implementation for writing to Apache Parquet format files.
+ *
+ * <p>Rows are accumulated in memory up to a configurable row group size
+ * before being written out, so that readers can decode each row group
+ * independently, and each column chunk carries min/max statistics
+ * that readers can use to skip row groups.
+ * Scalar columns and byte array columns are written;
+ * other array-valued columns are skipped with a warning.
+ * Table and column metadata is stored as key-value entries
+ * in the file footer.
+ *
+ * @since    18 Oct 2026
+ */
+public class ParquetTableWriter extends StreamStarTableWriter {
+
+    private final long groupSize_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.parquet" );
+
+    /** Default approximate row group size in bytes. */
+    public static final long DFLT_GROUP_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Default constructor.
+     */
+    public ParquetTableWriter() {
+        this( DFLT_GROUP_SIZE );
+    }
+
+    /**
+     * Constructs a writer with a custom row group size.
+     *
+     * @param  groupSize  approximate number of bytes in each row group
+     */
+    public ParquetTableWriter( long groupSize ) {
+        groupSize_ = groupSize;
+    }
+
+    public String getFormatName() {
+        return "parquet";
+    }
+
+    public String getMimeType() {
+        return "application/octet-stream";
+    }
+
+    /**
+     * Returns true for files with extension ".parquet" or ".parq".
+     */
+    public boolean looksLikeFile( String loc ) {
+        int idot = loc.lastIndexOf( '.' );
+        String extension = idot >= 0 ? loc.substring( idot ) : "";
+        return extension.equalsIgnoreCase( ".parquet" )
+            || extension.equalsIgnoreCase( ".parq" );
+    }
+
+    public void writeStarTable( StarTable table, OutputStream out )
+            throws IOException {
+
+        /* Get encoders for those columns that can be output. */
+        int ncol = table.getColumnCount();
+        List<ColumnEncoder> encList = new ArrayList<ColumnEncoder>();
+        IntList icList = new IntList();
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            ColumnInfo info = table.getColumnInfo( ic );
+            ColumnEncoder enc = ColumnEncoder.createEncoder( info );
+            if ( enc != null ) {
+                icList.add( ic );
+                encList.add( enc );
+            }
+            else {
+                logger_.warning( "Can't encode column " + info + " to "
+                               + getFormatName() + " format" );
+            }
+        }
+        ColumnEncoder[] encoders = encList.toArray( new ColumnEncoder[ 0 ] );
+        int[] ics = icList.toIntArray();
+        int nenc = encoders.length;
+
+        /* Write the data, one row group at a time. */
+        CountOutputStream cout = new CountOutputStream( out );
+        cout.write( ParquetStarTable.MAGIC );
+        List<ThriftStruct> groupList = new ArrayList<ThriftStruct>();
+        long nrow = 0;
+        long ngrow = 0;
+        RowSequence rseq = table.getRowSequence();
+        try {
+            while ( rseq.next() ) {
+                Object[] row = rseq.getRow();
+                for ( int jc = 0; jc < nenc; jc++ ) {
+                    encoders[ jc ].addValue( row[ ics[ jc ] ] );
+                }
+                nrow++;
+                ngrow++;
+                if ( getBufferedSize( encoders ) >= groupSize_ ) {
+                    groupList.add( writeRowGroup( encoders, ngrow, cout ) );
+                    ngrow = 0;
+                }
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        if ( ngrow > 0 ) {
+            groupList.add( writeRowGroup( encoders, ngrow, cout ) );
+        }
+
+        /* Assemble the schema; a root element followed by one leaf
+         * per column. */
+        List<ThriftStruct> schema = new ArrayList<ThriftStruct>();
+        schema.add( new ThriftStruct()
+                   .set( 4, "schema" )
+                   .set( 5, Integer.valueOf( nenc ) ) );
+        for ( ColumnEncoder enc : encoders ) {
+            schema.add( enc.getSchemaElement() );
+        }
+
+        /* Write the footer. */
+        ThriftStruct fileMeta = new ThriftStruct()
+            .set( 1, Integer.valueOf( 1 ) )
+            .set( 2, schema )
+            .set( 3, Long.valueOf( nrow ) )
+            .set( 4, groupList )
+            .set( 5, getKeyValues( table, ics ) )
+            .set( 6, "STIL " + getClass().getName() );
+        byte[] footer = fileMeta.toByteArray();
+        cout.write( footer );
+        cout.write( ColumnEncoder.LeBuffer.intBytes( footer.length ) );
+        cout.write( ParquetStarTable.MAGIC );
+        cout.flush();
+    }
+
+    /**
+     * Writes the data accumulated by a set of column encoders
+     * as a row group.
+     *
+     * @param  encoders  column encoders
+     * @param  nrow   number of rows in group
+     * @param  out   destination stream
+     * @return  RowGroup structure describing what was written
+     */
+    private static ThriftStruct writeRowGroup( ColumnEncoder[] encoders,
+                                               long nrow, CountOutputStream out)
+            throws IOException {
+        List<ThriftStruct> chunks = new ArrayList<ThriftStruct>();
+        long offset0 = out.count_;
+        for ( ColumnEncoder enc : encoders ) {
+            chunks.add( enc.writeChunk( out, out.count_ ) );
+        }
+        return new ThriftStruct()
+              .set( 1, chunks )
+              .set( 2, Long.valueOf( out.count_ - offset0 ) )
+              .set( 3, Long.valueOf( nrow ) );
+    }
+
+    /**
+     * Returns the total number of bytes buffered by a set of encoders.
+     *
+     * @param  encoders  column encoders
+     * @return  buffered byte count
+     */
+    private static long getBufferedSize( ColumnEncoder[] encoders ) {
+        long size = 0;
+        for ( ColumnEncoder enc : encoders ) {
+            size += enc.getBufferedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the key-value metadata structures recording table and
+     * column metadata that is not otherwise represented in Parquet.
+     *
+     * @param  table  table
+     * @param  ics   indices of columns being written
+     * @return  list of KeyValue structures
+     */
+    private static List<ThriftStruct> getKeyValues( StarTable table,
+                                                    int[] ics ) {
+        List<ThriftStruct> kvList = new ArrayList<ThriftStruct>();
+        addKeyValue( kvList, ParquetStarTable.NAME_KEY, table.getName() );
+        for ( int ic : ics ) {
+            ColumnInfo info = table.getColumnInfo( ic );
+            String name = info.getName();
+            addKeyValue( kvList, ParquetStarTable.UNIT_KEY + name,
+                         info.getUnitString() );
+            addKeyValue( kvList, ParquetStarTable.UCD_KEY + name,
+                         info.getUCD() );
+            addKeyValue( kvList, ParquetStarTable.UTYPE_KEY + name,
+                         info.getUtype() );
+            addKeyValue( kvList, ParquetStarTable.DESCRIPTION_KEY + name,
+                         info.getDescription() );
+            int[] shape = info.getShape();
+            if ( info.isArray() && shape != null &&
+                 ! ( shape.length == 1 && shape[ 0 ] < 0 ) ) {
+                addKeyValue( kvList, ParquetStarTable.SHAPE_KEY + name,
+                             DefaultValueInfo.formatShape( shape ) );
+            }
+        }
+        return kvList;
+    }
+
+    /**
+     * Adds a KeyValue structure to a list if the value is non-blank.
+     *
+     * @param  kvList  list to append to
+     * @param  key   key
+     * @param  value  value, may be null
+     */
+    private static void addKeyValue( List<ThriftStruct> kvList,
+                                     String key, String value ) {
+        if ( value != null && value.trim().length() > 0 ) {
+            kvList.add( new ThriftStruct()
+                       .set( 1, key )
+                       .set( 2, value ) );
+        }
+    }
+
+    /**
+     * OutputStream wrapper that counts the bytes written.
+     */
+    private static class CountOutputStream extends FilterOutputStream {
+        long count_;
+        CountOutputStream( OutputStream out ) {
+            super( out );
+        }
+        @Override
+        public void write( int b ) throws IOException {
+            out.write( b );
+            count_++;
+        }
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+            count_ += len;
+        }
+    }
+}
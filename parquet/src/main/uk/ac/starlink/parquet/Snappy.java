@@ -0,0 +1,123 @@
+package uk.ac.starlink.parquet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Decompressor for the raw (unframed) Snappy compression format,
+ * as used for Parquet pages with the SNAPPY codec.
+ *
+ * @since    18 Oct 2026
+ * @see  <a href="https://github.com/google/snappy/blob/main/format_description.txt"
+ *          >Snappy format description</a>
+ */
+class Snappy {
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private Snappy() {
+    }
+
+    /**
+     * Decompresses a snappy-compressed block.
+     *
+     * @param  in  buffer containing exactly the compressed bytes
+     *             between its position and limit
+     * @return  byte array containing decompressed bytes
+     * @throws  TableFormatException  if the input is not valid snappy data
+     */
+    public static byte[] decompress( ByteBuffer in )
+            throws TableFormatException {
+        try {
+            return doDecompress( in );
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new TableFormatException( "Corrupted Snappy data", e );
+        }
+        catch ( IndexOutOfBoundsException e ) {
+            throw new TableFormatException( "Corrupted Snappy data", e );
+        }
+    }
+
+    /**
+     * Does the work for decompression.
+     *
+     * @param  in  input buffer
+     * @return  decompressed bytes
+     */
+    private static byte[] doDecompress( ByteBuffer in )
+            throws TableFormatException {
+        long uleng = ThriftStruct.readVarint( in );
+        if ( uleng < 0 || uleng > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Bad Snappy length " + uleng );
+        }
+        byte[] out = new byte[ (int) uleng ];
+        int op = 0;
+        while ( in.hasRemaining() ) {
+            int tag = in.get() & 0xff;
+            int leng;
+            int offset;
+            switch ( tag & 0x3 ) {
+
+                /* Literal. */
+                case 0:
+                    leng = tag >>> 2;
+                    if ( leng >= 60 ) {
+                        int nb = leng - 59;
+                        leng = 0;
+                        for ( int i = 0; i < nb; i++ ) {
+                            leng |= ( in.get() & 0xff ) << ( 8 * i );
+                        }
+                    }
+                    leng++;
+                    in.get( out, op, leng );
+                    op += leng;
+                    continue;
+
+                /* Copy with 1-byte offset. */
+                case 1:
+                    leng = ( ( tag >>> 2 ) & 0x7 ) + 4;
+                    offset = ( ( tag >>> 5 ) << 8 ) | ( in.get() & 0xff );
+                    break;
+
+                /* Copy with 2-byte offset. */
+                case 2:
+                    leng = ( tag >>> 2 ) + 1;
+                    offset = ( in.get() & 0xff )
+                           | ( ( in.get() & 0xff ) << 8 );
+                    break;
+
+                /* Copy with 4-byte offset. */
+                default:
+                    leng = ( tag >>> 2 ) + 1;
+                    offset = ( in.get() & 0xff )
+                           | ( ( in.get() & 0xff ) << 8 )
+                           | ( ( in.get() & 0xff ) << 16 )
+                           | ( ( in.get() & 0xff ) << 24 );
+            }
+            if ( offset <= 0 || offset > op ) {
+                throw new TableFormatException( "Bad Snappy copy offset" );
+            }
+
+            /* Copies may overlap their own output, so go byte by byte
+             * unless it's safe to use arraycopy. */
+            int ip = op - offset;
+            if ( offset >= leng ) {
+                System.arraycopy( out, ip, out, op, leng );
+                op += leng;
+            }
+            else {
+                for ( int i = 0; i < leng; i++ ) {
+                    out[ op++ ] = out[ ip++ ];
+                }
+            }
+        }
+        if ( op != out.length ) {
+            throw new TableFormatException( "Snappy length mismatch ("
+                                          + op + " != " + out.length + ")" );
+        }
+        return out;
+    }
+}
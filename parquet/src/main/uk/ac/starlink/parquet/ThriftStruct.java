@@ -0,0 +1,507 @@
+package uk.ac.starlink.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * Generic representation of a structure serialized using the
+ * Thrift Compact Protocol, as used for Parquet file metadata.
+ *
+ * <p>Rather than generating classes from the Parquet Thrift IDL,
+ * structures are read into a map from field ID to value,
+ * and values are extracted as required by the caller,
+ * who is assumed to know the field IDs and types.
+ * Values are stored as follows:
+ * <ul>
+ * <li>BOOL: Boolean
+ * <li>BYTE, I16, I32: Integer
+ * <li>I64: Long
+ * <li>DOUBLE: Double
+ * <li>BINARY: byte[]
+ * <li>LIST, SET: List
+ * <li>MAP: Map
+ * <li>STRUCT: ThriftStruct
+ * </ul>
+ * When writing, String values are also accepted and are serialized as
+ * UTF-8 BINARY values.  Since the writer has to infer Thrift types from
+ * Java types, it is not possible to write I16 or BYTE values,
+ * or empty lists; but none of those are required for writing Parquet.
+ *
+ * @since    18 Oct 2026
+ */
+class ThriftStruct {
+
+    private final Map<Integer,Object> fields_;
+
+    private static final int T_STOP = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_BYTE = 3;
+    private static final int T_I16 = 4;
+    private static final int T_I32 = 5;
+    private static final int T_I64 = 6;
+    private static final int T_DOUBLE = 7;
+    private static final int T_BINARY = 8;
+    private static final int T_LIST = 9;
+    private static final int T_SET = 10;
+    private static final int T_MAP = 11;
+    private static final int T_STRUCT = 12;
+
+    /**
+     * Constructs an empty struct.
+     */
+    public ThriftStruct() {
+        fields_ = new TreeMap<Integer,Object>();
+    }
+
+    /**
+     * Sets a field value.
+     *
+     * @param  id  field ID
+     * @param  value  field value, or null to unset
+     * @return  this object, for convenience
+     */
+    public ThriftStruct set( int id, Object value ) {
+        if ( value == null ) {
+            fields_.remove( id );
+        }
+        else {
+            fields_.put( id, value );
+        }
+        return this;
+    }
+
+    /**
+     * Indicates whether a given field is present.
+     *
+     * @param  id  field ID
+     * @return  true iff field is present
+     */
+    public boolean has( int id ) {
+        return fields_.containsKey( id );
+    }
+
+    /**
+     * Returns an integer-typed field value.
+     *
+     * @param  id  field ID
+     * @param  dflt  value returned if the field is absent
+     * @return  field value
+     */
+    public int getInt( int id, int dflt ) {
+        Object value = fields_.get( id );
+        return value instanceof Number ? ((Number) value).intValue() : dflt;
+    }
+
+    /**
+     * Returns a long-typed field value.
+     *
+     * @param  id  field ID
+     * @param  dflt  value returned if the field is absent
+     * @return  field value
+     */
+    public long getLong( int id, long dflt ) {
+        Object value = fields_.get( id );
+        return value instanceof Number ? ((Number) value).longValue() : dflt;
+    }
+
+    /**
+     * Returns a boolean-typed field value.
+     *
+     * @param  id  field ID
+     * @param  dflt  value returned if the field is absent
+     * @return  field value
+     */
+    public boolean getBoolean( int id, boolean dflt ) {
+        Object value = fields_.get( id );
+        return value instanceof Boolean ? ((Boolean) value).booleanValue()
+                                        : dflt;
+    }
+
+    /**
+     * Returns a binary-typed field value.
+     *
+     * @param  id  field ID
+     * @return  field value, or null if absent
+     */
+    public byte[] getBinary( int id ) {
+        Object value = fields_.get( id );
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    /**
+     * Returns a binary-typed field value interpreted as a UTF-8 string.
+     *
+     * @param  id  field ID
+     * @return  field value, or null if absent
+     */
+    public String getString( int id ) {
+        Object value = fields_.get( id );
+        if ( value instanceof byte[] ) {
+            return new String( (byte[]) value, StandardCharsets.UTF_8 );
+        }
+        else if ( value instanceof String ) {
+            return (String) value;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a struct-typed field value.
+     *
+     * @param  id  field ID
+     * @return  field value, or null if absent
+     */
+    public ThriftStruct getStruct( int id ) {
+        Object value = fields_.get( id );
+        return value instanceof ThriftStruct ? (ThriftStruct) value : null;
+    }
+
+    /**
+     * Returns a list-typed field value.
+     *
+     * @param  id  field ID
+     * @return  field value, or an empty list if absent
+     */
+    public List<?> getList( int id ) {
+        Object value = fields_.get( id );
+        return value instanceof List ? (List<?>) value
+                                     : Collections.emptyList();
+    }
+
+    /**
+     * Reads a struct from the current position of a buffer.
+     * On exit the buffer is positioned after the end of the struct.
+     *
+     * @param  buf  buffer
+     * @return  struct
+     * @throws  TableFormatException  if the bytes are not a valid struct
+     */
+    public static ThriftStruct read( ByteBuffer buf )
+            throws TableFormatException {
+        try {
+            return readStruct( buf );
+        }
+        catch ( BufferUnderflowException e ) {
+            throw new TableFormatException( "Truncated Thrift structure", e );
+        }
+    }
+
+    /**
+     * Serializes this struct to an output stream.
+     *
+     * @param  out  destination stream
+     */
+    public void write( OutputStream out ) throws IOException {
+        int lastId = 0;
+        for ( Map.Entry<Integer,Object> entry : fields_.entrySet() ) {
+            int id = entry.getKey().intValue();
+            Object value = entry.getValue();
+            int type = getType( value );
+            if ( type == T_BINARY + 100 ) {
+                type = T_BINARY;
+            }
+            if ( type == T_TRUE ) {
+                type = ((Boolean) value).booleanValue() ? T_TRUE : T_FALSE;
+            }
+            int delta = id - lastId;
+            if ( delta > 0 && delta <= 15 ) {
+                out.write( ( delta << 4 ) | type );
+            }
+            else {
+                out.write( type );
+                writeVarint( out, zigzag( id ) );
+            }
+            lastId = id;
+            if ( type != T_TRUE && type != T_FALSE ) {
+                writeValue( out, value );
+            }
+        }
+        out.write( T_STOP );
+    }
+
+    /**
+     * Returns the serialized form of this struct.
+     *
+     * @return  byte array
+     */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        write( bout );
+        return bout.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return fields_.toString();
+    }
+
+    /**
+     * Reads a struct from a buffer.
+     *
+     * @param  buf  buffer
+     * @return  struct
+     */
+    private static ThriftStruct readStruct( ByteBuffer buf )
+            throws TableFormatException {
+        ThriftStruct struct = new ThriftStruct();
+        int lastId = 0;
+        while ( true ) {
+            int head = buf.get() & 0xff;
+            int type = head & 0x0f;
+            if ( type == T_STOP ) {
+                return struct;
+            }
+            int delta = head >>> 4;
+            int id = delta == 0 ? (int) unzigzag( readVarint( buf ) )
+                                : lastId + delta;
+            lastId = id;
+            final Object value;
+            if ( type == T_TRUE ) {
+                value = Boolean.TRUE;
+            }
+            else if ( type == T_FALSE ) {
+                value = Boolean.FALSE;
+            }
+            else {
+                value = readValue( buf, type );
+            }
+            struct.fields_.put( id, value );
+        }
+    }
+
+    /**
+     * Reads a value of a given type from a buffer.
+     *
+     * @param  buf  buffer
+     * @param  type  compact protocol type code
+     * @return  value
+     */
+    private static Object readValue( ByteBuffer buf, int type )
+            throws TableFormatException {
+        switch ( type ) {
+            case T_TRUE:
+            case T_FALSE:
+
+                /* Only occurs as a collection element type. */
+                return Boolean.valueOf( buf.get() == T_TRUE );
+            case T_BYTE:
+                return Integer.valueOf( buf.get() );
+            case T_I16:
+            case T_I32:
+                return Integer.valueOf( (int) unzigzag( readVarint( buf ) ) );
+            case T_I64:
+                return Long.valueOf( unzigzag( readVarint( buf ) ) );
+            case T_DOUBLE:
+                long bits = 0;
+                for ( int i = 0; i < 8; i++ ) {
+                    bits |= ( buf.get() & 0xffL ) << ( 8 * i );
+                }
+                return Double.valueOf( Double.longBitsToDouble( bits ) );
+            case T_BINARY:
+                int leng = (int) readVarint( buf );
+                if ( leng < 0 || leng > buf.remaining() ) {
+                    throw new TableFormatException( "Bad Thrift binary length "
+                                                  + leng );
+                }
+                byte[] bytes = new byte[ leng ];
+                buf.get( bytes );
+                return bytes;
+            case T_LIST:
+            case T_SET:
+                int lhead = buf.get() & 0xff;
+                int etype = lhead & 0x0f;
+                int nel = lhead >>> 4;
+                if ( nel == 15 ) {
+                    nel = (int) readVarint( buf );
+                }
+                List<Object> list = new ArrayList<Object>( nel );
+                for ( int i = 0; i < nel; i++ ) {
+                    list.add( readValue( buf, etype ) );
+                }
+                return list;
+            case T_MAP:
+                int nent = (int) readVarint( buf );
+                Map<Object,Object> map = new LinkedHashMap<Object,Object>();
+                if ( nent > 0 ) {
+                    int kv = buf.get() & 0xff;
+                    for ( int i = 0; i < nent; i++ ) {
+                        Object key = readValue( buf, kv >>> 4 );
+                        Object val = readValue( buf, kv & 0x0f );
+                        map.put( key, val );
+                    }
+                }
+                return map;
+            case T_STRUCT:
+                return readStruct( buf );
+            default:
+                throw new TableFormatException( "Unknown Thrift type code "
+                                              + type );
+        }
+    }
+
+    /**
+     * Writes a non-boolean value to an output stream.
+     *
+     * @param  out  destination stream
+     * @param  value  value
+     */
+    private static void writeValue( OutputStream out, Object value )
+            throws IOException {
+        if ( value instanceof Boolean ) {
+
+            /* Only occurs as a collection element. */
+            out.write( ((Boolean) value).booleanValue() ? T_TRUE : T_FALSE );
+        }
+        else if ( value instanceof Integer ) {
+            writeVarint( out, zigzag( ((Integer) value).intValue() ) );
+        }
+        else if ( value instanceof Long ) {
+            writeVarint( out, zigzag( ((Long) value).longValue() ) );
+        }
+        else if ( value instanceof Double ) {
+            long bits = Double.doubleToLongBits( ((Double) value)
+                                                .doubleValue() );
+            for ( int i = 0; i < 8; i++ ) {
+                out.write( (int) ( bits >>> ( 8 * i ) ) );
+            }
+        }
+        else if ( value instanceof byte[] || value instanceof String ) {
+            byte[] bytes = value instanceof String
+                         ? ((String) value).getBytes( StandardCharsets.UTF_8 )
+                         : (byte[]) value;
+            writeVarint( out, bytes.length );
+            out.write( bytes );
+        }
+        else if ( value instanceof List ) {
+            List<?> list = (List<?>) value;
+            int nel = list.size();
+            int etype = nel > 0 ? getType( list.get( 0 ) ) : T_STRUCT;
+            if ( etype == T_BINARY + 100 ) {
+                etype = T_BINARY;
+            }
+            if ( nel < 15 ) {
+                out.write( ( nel << 4 ) | etype );
+            }
+            else {
+                out.write( 0xf0 | etype );
+                writeVarint( out, nel );
+            }
+            for ( Object el : list ) {
+                writeValue( out, el );
+            }
+        }
+        else if ( value instanceof ThriftStruct ) {
+            ((ThriftStruct) value).write( out );
+        }
+        else {
+            throw new IllegalArgumentException( "Can't serialize "
+                                              + value.getClass() );
+        }
+    }
+
+    /**
+     * Returns the compact protocol type code to use for serializing
+     * a given value.  Boolean values return T_TRUE,
+     * and String values return T_BINARY+100.
+     *
+     * @param  value  value
+     * @return  type code
+     */
+    private static int getType( Object value ) {
+        if ( value instanceof Boolean ) {
+            return T_TRUE;
+        }
+        else if ( value instanceof Integer ) {
+            return T_I32;
+        }
+        else if ( value instanceof Long ) {
+            return T_I64;
+        }
+        else if ( value instanceof Double ) {
+            return T_DOUBLE;
+        }
+        else if ( value instanceof byte[] ) {
+            return T_BINARY;
+        }
+        else if ( value instanceof String ) {
+            return T_BINARY + 100;
+        }
+        else if ( value instanceof List ) {
+            return T_LIST;
+        }
+        else if ( value instanceof ThriftStruct ) {
+            return T_STRUCT;
+        }
+        else {
+            throw new IllegalArgumentException( "Can't serialize "
+                                              + value.getClass() );
+        }
+    }
+
+    /**
+     * Reads an unsigned LEB128 variable-length integer from a buffer.
+     *
+     * @param  buf  buffer
+     * @return  value
+     */
+    static long readVarint( ByteBuffer buf ) {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 ) {
+            int b = buf.get() & 0xff;
+            value |= ( (long) ( b & 0x7f ) ) << shift;
+            if ( ( b & 0x80 ) == 0 ) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Writes an unsigned LEB128 variable-length integer to a stream.
+     *
+     * @param  out  destination stream
+     * @param  value  value
+     */
+    static void writeVarint( OutputStream out, long value )
+            throws IOException {
+        while ( ( value & ~0x7fL ) != 0 ) {
+            out.write( (int) ( ( value & 0x7f ) | 0x80 ) );
+            value >>>= 7;
+        }
+        out.write( (int) value );
+    }
+
+    /**
+     * Decodes a zigzag-encoded integer.
+     *
+     * @param  z  encoded value
+     * @return  decoded value
+     */
+    private static long unzigzag( long z ) {
+        return ( z >>> 1 ) ^ -( z & 1 );
+    }
+
+    /**
+     * Zigzag-encodes an integer.
+     *
+     * @param  value  value
+     * @return  encoded value
+     */
+    private static long zigzag( long value ) {
+        return ( value << 1 ) ^ ( value >> 63 );
+    }
+}
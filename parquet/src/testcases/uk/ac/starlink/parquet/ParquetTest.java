@@ -0,0 +1,186 @@
+package uk.ac.starlink.parquet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.TestCase;
+
+/**
+ * Small tests.  Round-trip testing of the input and output handlers
+ * is done more comprehensively in uk.ac.starlink.table.FormatsTest.
+ */
+public class ParquetTest extends TestCase {
+
+    private static final int NROW = 2000;
+
+    public ParquetTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.parquet" ).setLevel( Level.WARNING );
+    }
+
+    public void testThrift() throws IOException {
+        ThriftStruct inner = new ThriftStruct()
+            .set( 1, Integer.valueOf( -23 ) )
+            .set( 4, "name" );
+        ThriftStruct outer = new ThriftStruct()
+            .set( 1, Long.valueOf( 1L << 40 ) )
+            .set( 2, Arrays.asList( inner, new ThriftStruct() ) )
+            .set( 3, Boolean.TRUE )
+            .set( 20, inner )
+            .set( 21, new byte[] { 9, 8, 7 } );
+        ThriftStruct s2 =
+            ThriftStruct.read( ByteBuffer.wrap( outer.toByteArray() ) );
+        assertEquals( 1L << 40, s2.getLong( 1, 0 ) );
+        List<?> list = s2.getList( 2 );
+        assertEquals( 2, list.size() );
+        assertEquals( -23, ((ThriftStruct) list.get( 0 )).getInt( 1, 0 ) );
+        assertEquals( "name", ((ThriftStruct) list.get( 0 )).getString( 4 ) );
+        assertTrue( s2.getBoolean( 3, false ) );
+        assertEquals( "name", s2.getStruct( 20 ).getString( 4 ) );
+        assertArrayEquals( new byte[] { 9, 8, 7 }, s2.getBinary( 21 ) );
+        assertFalse( s2.has( 5 ) );
+    }
+
+    public void testSnappy() throws IOException {
+
+        /* Length 12, 3-byte literal, then a 9-byte copy from offset 3. */
+        byte[] comp = new byte[] { 0x0c, 0x08, 'a', 'b', 'c', 0x15, 0x03 };
+        byte[] out = Snappy.decompress( ByteBuffer.wrap( comp ) );
+        assertEquals( "abcabcabcabc", new String( out, "US-ASCII" ) );
+    }
+
+    public void testRowGroups() throws IOException {
+        StarTable t0 = createTable();
+        File file = File.createTempFile( "tst", ".parquet" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        new ParquetTableWriter( 4000 ).writeStarTable( t0, out );
+        out.close();
+
+        ParquetStarTable t1 = new ParquetStarTable( file );
+        Tables.checkTable( t1 );
+        assertEquals( "groups", t1.getName() );
+        assertEquals( NROW, t1.getRowCount() );
+        assertEquals( 3, t1.getColumnCount() );
+        assertEquals( "m", t1.getColumnInfo( 1 ).getUnitString() );
+        assertSameRows( t0, t1, 0 );
+
+        int nrg = t1.getRowGroupCount();
+        assertTrue( nrg > 2 );
+        double[] r0 = t1.getRowGroupRange( 0, 0 );
+        assertEquals( 0.0, r0[ 0 ] );
+        assertTrue( r0[ 1 ] > 0 );
+        assertNull( t1.getRowGroupRange( 0, 2 ) );
+        double[] rlast = t1.getRowGroupRange( nrg - 1, 0 );
+        assertEquals( NROW - 1.0, rlast[ 1 ] );
+
+        ParquetStarTable t2 = t1.selectRowGroups( new int[] { 1, 2 } );
+        assertEquals( 2, t2.getRowGroupCount() );
+        long irow0 = (long) t1.getRowGroupRange( 1, 0 )[ 0 ];
+        long irow1 = (long) t1.getRowGroupRange( 2, 0 )[ 1 ];
+        assertEquals( irow1 - irow0 + 1, t2.getRowCount() );
+        assertSameRows( t0, t2, irow0 );
+        ParquetStarTable t3 = t2.selectRowGroups( new int[] { 1 } );
+        assertEquals( (long) t1.getRowGroupRange( 2, 0 )[ 0 ],
+                      (long) t3.getRowGroupRange( 0, 0 )[ 0 ] );
+
+        assertTrue( ParquetTableBuilder.isMagic( ParquetStarTable.MAGIC ) );
+        assertFalse( ParquetTableBuilder.isMagic( new byte[] { 'P', 'A' } ) );
+        assertTrue( new ParquetTableWriter().looksLikeFile( "x.parquet" ) );
+    }
+
+    /**
+     * Reads files written by data.py in this directory.
+     * They use encodings, page types and compression codecs
+     * that ParquetTableWriter does not.
+     */
+    public void testFixtures() throws IOException, URISyntaxException {
+        String[] names = {
+            "dict-snappy.parquet", "v2-gzip.parquet", "v2-plain.parquet",
+        };
+        String[] colors = { "red", "green", "blue", "puce" };
+        for ( String name : names ) {
+            URL url = getClass().getResource( name );
+            ParquetStarTable table =
+                new ParquetStarTable( new File( url.toURI() ) );
+            Tables.checkTable( table );
+            assertEquals( 300, table.getRowCount() );
+            assertEquals( 2, table.getRowGroupCount() );
+            assertEquals( 9, table.getColumnCount() );
+            Class<?>[] clazzes = {
+                Integer.class, Long.class, Float.class, Double.class,
+                Boolean.class, Boolean.class, String.class, Short.class,
+                Byte.class,
+            };
+            for ( int ic = 0; ic < clazzes.length; ic++ ) {
+                assertEquals( clazzes[ ic ],
+                              table.getColumnInfo( ic ).getContentClass() );
+            }
+            assertEquals( "i64", table.getColumnInfo( 1 ).getName() );
+            assertEquals( 181 * 1000000007.,
+                          table.getRowGroupRange( 1, 1 )[ 0 ] );
+            RowSequence rseq = table.getRowSequence();
+            for ( int i = 0; i < 300; i++ ) {
+                assertTrue( rseq.next() );
+                Object[] expected = new Object[] {
+                    Integer.valueOf( ( i * 7 ) % 23 - 11 ),
+                    i % 5 == 0 ? null : Long.valueOf( i * 1000000007L ),
+                    i % 11 == 0 ? null : Float.valueOf( i * 0.25f ),
+                    Double.valueOf( ( i % 17 ) * 0.5 ),
+                    i % 13 == 0 ? null : Boolean.valueOf( i % 3 == 0 ),
+                    Boolean.valueOf( ( i / 10 ) % 2 == 1 ),
+                    i % 7 == 0 ? null : colors[ i % 4 ],
+                    Short.valueOf( (short) ( i - 150 ) ),
+                    i % 4 == 1 ? null
+                               : Byte.valueOf( (byte) ( ( i % 200 ) - 100 ) ),
+                };
+                assertArrayEquals( name + " row " + i,
+                                   expected, rseq.getRow() );
+            }
+            assertFalse( rseq.next() );
+            rseq.close();
+        }
+    }
+
+    private static StarTable createTable() {
+        ColumnInfo xInfo = new ColumnInfo( "x", Integer.class, null );
+        ColumnInfo yInfo = new ColumnInfo( "y", Double.class, "Y value" );
+        yInfo.setUnitString( "m" );
+        ColumnInfo sInfo = new ColumnInfo( "s", String.class, null );
+        RowListStarTable table =
+            new RowListStarTable( new ColumnInfo[] { xInfo, yInfo, sInfo } );
+        table.setName( "groups" );
+        for ( int i = 0; i < NROW; i++ ) {
+            table.addRow( new Object[] {
+                Integer.valueOf( i ),
+                i % 7 == 0 ? null : Double.valueOf( 0.5 * i ),
+                i % 3 == 0 ? null : "r" + i,
+            } );
+        }
+        return table;
+    }
+
+    private void assertSameRows( StarTable t0, StarTable t1, long irow0 )
+            throws IOException {
+        RowSequence rseq = t1.getRowSequence();
+        long irow = irow0;
+        while ( rseq.next() ) {
+            assertArrayEquals( t0.getRow( irow++ ), rseq.getRow() );
+        }
+        rseq.close();
+        assertEquals( irow0 + t1.getRowCount(), irow );
+    }
+}
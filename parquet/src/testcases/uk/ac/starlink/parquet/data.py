@@ -0,0 +1,422 @@
+# Writes the Parquet test files used by ParquetTest.
+#
+# The files are encoded here directly from the Parquet format
+# specification, independently of the Java reader and writer,
+# so that features the STIL writer never emits get exercised:
+# dictionary pages with RLE_DICTIONARY indices, RLE-encoded booleans,
+# DATA_PAGE_V2 pages, SNAPPY and GZIP compression, REQUIRED columns,
+# INT(8)/INT(16) logical types, several pages per column chunk
+# and several row groups.  Only the python standard library is needed.
+#
+# The cell values are given by the functions in COLUMNS below;
+# ParquetTest computes the same values to check what it reads.
+
+import gzip
+import struct
+
+NROW = 300
+GROUP_ROWS = 180
+PAGE_VALUES = 64
+
+COLORS = ["red", "green", "blue", "puce"]
+
+# Physical types, repetition types and other enum values.
+BOOLEAN, INT32, INT64, FLOAT, DOUBLE, BYTE_ARRAY = 0, 1, 2, 4, 5, 6
+REQUIRED, OPTIONAL = 0, 1
+UTF8 = 0
+PLAIN, PLAIN_DICTIONARY, RLE, RLE_DICTIONARY = 0, 2, 3, 8
+UNCOMPRESSED, SNAPPY, GZIP = 0, 1, 2
+DATA_PAGE, DICTIONARY_PAGE, DATA_PAGE_V2 = 0, 2, 3
+
+# Columns: (name, physical type, repetition, logical type, value function).
+# Logical types are None, "string" or the bit width of a signed integer.
+COLUMNS = [
+    ("i32", INT32, REQUIRED, None, lambda i: (i * 7) % 23 - 11),
+    ("i64", INT64, OPTIONAL, None,
+     lambda i: None if i % 5 == 0 else i * 1000000007),
+    ("f32", FLOAT, OPTIONAL, None,
+     lambda i: None if i % 11 == 0 else i * 0.25),
+    ("f64", DOUBLE, REQUIRED, None, lambda i: (i % 17) * 0.5),
+    ("flag", BOOLEAN, OPTIONAL, None,
+     lambda i: None if i % 13 == 0 else i % 3 == 0),
+    ("bits", BOOLEAN, REQUIRED, None, lambda i: (i // 10) % 2 == 1),
+    ("s", BYTE_ARRAY, OPTIONAL, "string",
+     lambda i: None if i % 7 == 0 else COLORS[i % 4]),
+    ("sh", INT32, REQUIRED, 16, lambda i: i - 150),
+    ("by", INT32, OPTIONAL, 8,
+     lambda i: None if i % 4 == 1 else (i % 200) - 100),
+]
+
+# Files: (name, codec, data page version, use dictionaries).
+FILES = [
+    ("dict-snappy.parquet", SNAPPY, 1, True),
+    ("v2-gzip.parquet", GZIP, 2, True),
+    ("v2-plain.parquet", UNCOMPRESSED, 2, False),
+]
+
+
+# Thrift compact protocol.
+
+T_TRUE, T_FALSE, T_BYTE, T_I16, T_I32, T_I64 = 1, 2, 3, 4, 5, 6
+T_BINARY, T_LIST, T_STRUCT = 8, 9, 12
+
+
+def varint(n):
+    out = bytearray()
+    while True:
+        b = n & 0x7f
+        n >>= 7
+        if n:
+            out.append(b | 0x80)
+        else:
+            out.append(b)
+            return bytes(out)
+
+
+def zigzag(n):
+    return (n << 1) ^ (n >> 63)
+
+
+class Struct:
+    """Thrift struct; fields are (id, type, value) in ascending id order."""
+    def __init__(self, *fields):
+        self.fields = [f for f in fields if f[2] is not None]
+
+
+def thrift_value(typ, value):
+    if typ in (T_BYTE,):
+        return struct.pack("<b", value)
+    if typ in (T_I16, T_I32, T_I64):
+        return varint(zigzag(value))
+    if typ == T_BINARY:
+        if isinstance(value, str):
+            value = value.encode("utf-8")
+        return varint(len(value)) + value
+    if typ == T_STRUCT:
+        return thrift_struct(value)
+    if typ == T_LIST:
+        etype, items = value
+        n = len(items)
+        head = bytes([(n << 4) | etype]) if n < 15 \
+            else bytes([0xf0 | etype]) + varint(n)
+        return head + b"".join(thrift_value(etype, v) for v in items)
+    raise ValueError(typ)
+
+
+def thrift_struct(s):
+    out = bytearray()
+    last = 0
+    for fid, typ, value in s.fields:
+        if typ in (T_TRUE, T_FALSE):
+            typ = T_TRUE if value else T_FALSE
+            body = b""
+        else:
+            body = thrift_value(typ, value)
+        delta = fid - last
+        if 0 < delta <= 15:
+            out.append((delta << 4) | typ)
+        else:
+            out.append(typ)
+            out += varint(zigzag(fid))
+        out += body
+        last = fid
+    out.append(0)
+    return bytes(out)
+
+
+# Value encodings.
+
+def bit_width(max_value):
+    return max_value.bit_length()
+
+
+def rle_hybrid(values, width):
+    """RLE/bit-packed hybrid encoding.  Values are taken in groups of 8;
+    runs of identical groups become RLE runs, others are bit-packed."""
+    nbyte = (width + 7) // 8
+    out = bytearray()
+    packed = []
+
+    def flush_packed():
+        if packed:
+            ngroup = (len(packed) + 7) // 8
+            vals = packed + [0] * (ngroup * 8 - len(packed))
+            out.extend(varint((ngroup << 1) | 1))
+            acc = 0
+            nacc = 0
+            for v in vals:
+                acc |= v << nacc
+                nacc += width
+                while nacc >= 8:
+                    out.append(acc & 0xff)
+                    acc >>= 8
+                    nacc -= 8
+            if nacc > 0:
+                out.append(acc & 0xff)
+            del packed[:]
+
+    i = 0
+    n = len(values)
+    while i < n:
+        group = values[i:i + 8]
+        if len(set(group)) == 1:
+            j = i + len(group)
+            while j < n and values[j] == group[0]:
+                j += 1
+            if j - i >= 8 or j == n:
+                flush_packed()
+                out += varint((j - i) << 1)
+                out += group[0].to_bytes(nbyte, "little") if nbyte else b""
+                i = j
+                continue
+        packed.extend(group)
+        i += len(group)
+        if len(group) < 8:
+            break
+    flush_packed()
+    return bytes(out)
+
+
+def plain(ptype, values):
+    if ptype == BOOLEAN:
+        out = bytearray((len(values) + 7) // 8)
+        for i, v in enumerate(values):
+            if v:
+                out[i // 8] |= 1 << (i % 8)
+        return bytes(out)
+    if ptype == INT32:
+        return b"".join(struct.pack("<i", v) for v in values)
+    if ptype == INT64:
+        return b"".join(struct.pack("<q", v) for v in values)
+    if ptype == FLOAT:
+        return b"".join(struct.pack("<f", v) for v in values)
+    if ptype == DOUBLE:
+        return b"".join(struct.pack("<d", v) for v in values)
+    if ptype == BYTE_ARRAY:
+        out = bytearray()
+        for v in values:
+            b = v.encode("utf-8")
+            out += struct.pack("<i", len(b)) + b
+        return bytes(out)
+    raise ValueError(ptype)
+
+
+def stat_bytes(ptype, value):
+    return plain(ptype, [value]) if ptype != BYTE_ARRAY \
+        else value.encode("utf-8")
+
+
+# Compression.
+
+def snappy_compress(data):
+    """Raw Snappy block using literals and 1- and 2-byte offset copies."""
+    out = bytearray(varint(len(data)))
+    table = {}
+    lit0 = 0
+    i = 0
+    n = len(data)
+
+    def literal(start, end):
+        while start < end:
+            leng = min(end - start, 1 << 16)
+            if leng <= 60:
+                out.append((leng - 1) << 2)
+            elif leng <= 256:
+                out.append(60 << 2)
+                out.append(leng - 1)
+            else:
+                out.append(61 << 2)
+                out.extend((leng - 1).to_bytes(2, "little"))
+            out.extend(data[start:start + leng])
+            start += leng
+
+    while i + 4 <= n:
+        key = data[i:i + 4]
+        cand = table.get(key)
+        table[key] = i
+        if cand is not None and i - cand < 65536:
+            leng = 4
+            while i + leng < n and data[cand + leng] == data[i + leng] \
+                    and leng < 64:
+                leng += 1
+            literal(lit0, i)
+            off = i - cand
+            if leng <= 11 and off < 2048:
+                out.append(1 | ((leng - 4) << 2) | ((off >> 8) << 5))
+                out.append(off & 0xff)
+            else:
+                out.append(2 | ((leng - 1) << 2))
+                out.extend(off.to_bytes(2, "little"))
+            i += leng
+            lit0 = i
+        else:
+            i += 1
+    literal(lit0, n)
+    return bytes(out)
+
+
+def compress(codec, data):
+    if codec == UNCOMPRESSED:
+        return data
+    if codec == SNAPPY:
+        return snappy_compress(data)
+    if codec == GZIP:
+        return gzip.compress(data, mtime=0)
+    raise ValueError(codec)
+
+
+# File structure.
+
+def page_header(ptype, usize, csize, sub_id, sub):
+    return thrift_struct(Struct((1, T_I32, ptype), (2, T_I32, usize),
+                                (3, T_I32, csize), (sub_id, T_STRUCT, sub)))
+
+
+def write_chunk(out, col, rows, codec, version, use_dict):
+    """Writes a column chunk; returns its ColumnMetaData struct."""
+    name, ptype, rep, logical, func = col
+    values = [func(i) for i in rows]
+    start = len(out)
+    usize_total = 0
+    dict_off = None
+    encodings = {RLE}
+    dict_index = None
+
+    # Booleans are never dictionary encoded, but in v2 pages use RLE.
+    if use_dict and ptype != BOOLEAN:
+        distinct = []
+        for v in values:
+            if v is not None and v not in distinct:
+                distinct.append(v)
+        dict_index = {v: k for k, v in enumerate(distinct)}
+        ubody = plain(ptype, distinct)
+        cbody = compress(codec, ubody)
+        dict_off = len(out)
+        hdr = page_header(DICTIONARY_PAGE, len(ubody), len(cbody), 7,
+                          Struct((1, T_I32, len(distinct)),
+                                 (2, T_I32, PLAIN_DICTIONARY)))
+        out += hdr + cbody
+        usize_total += len(hdr) + len(ubody)
+        encodings.add(PLAIN_DICTIONARY)
+        encodings.add(RLE_DICTIONARY)
+
+    data_off = len(out)
+    for p0 in range(0, len(values), PAGE_VALUES):
+        pvals = values[p0:p0 + PAGE_VALUES]
+        present = [v for v in pvals if v is not None]
+        if rep == OPTIONAL:
+            levels = rle_hybrid([0 if v is None else 1 for v in pvals], 1)
+        else:
+            levels = b""
+        if dict_index is not None:
+            width = bit_width(len(dict_index) - 1)
+            vbody = bytes([width]) + \
+                rle_hybrid([dict_index[v] for v in present], width)
+            encoding = RLE_DICTIONARY
+        elif ptype == BOOLEAN and version == 2:
+            rle = rle_hybrid([1 if v else 0 for v in present], 1)
+            vbody = struct.pack("<i", len(rle)) + rle
+            encoding = RLE
+        else:
+            vbody = plain(ptype, present)
+            encoding = PLAIN
+        encodings.add(encoding)
+        nnull = len(pvals) - len(present)
+        if version == 1:
+            ubody = (struct.pack("<i", len(levels)) + levels
+                     if rep == OPTIONAL else b"") + vbody
+            cbody = compress(codec, ubody)
+            usize = len(ubody)
+            hdr = page_header(DATA_PAGE, usize, len(cbody), 5,
+                              Struct((1, T_I32, len(pvals)),
+                                     (2, T_I32, encoding),
+                                     (3, T_I32, RLE), (4, T_I32, RLE)))
+        else:
+            cvals = compress(codec, vbody)
+            cbody = levels + cvals
+            usize = len(levels) + len(vbody)
+            hdr = page_header(DATA_PAGE_V2, usize, len(cbody), 8,
+                              Struct((1, T_I32, len(pvals)),
+                                     (2, T_I32, nnull),
+                                     (3, T_I32, len(pvals)),
+                                     (4, T_I32, encoding),
+                                     (5, T_I32, len(levels)),
+                                     (6, T_I32, 0),
+                                     (7, T_TRUE, codec != UNCOMPRESSED)))
+        out += hdr + cbody
+        usize_total += len(hdr) + usize
+
+    present = [v for v in values if v is not None]
+    stats = None
+    if ptype != BOOLEAN:
+        stats = Struct((3, T_I64, len(values) - len(present)),
+                       (5, T_BINARY, stat_bytes(ptype, max(present))),
+                       (6, T_BINARY, stat_bytes(ptype, min(present))))
+    return Struct((1, T_I32, ptype),
+                  (2, T_LIST, (T_I32, sorted(encodings))),
+                  (3, T_LIST, (T_BINARY, [name])),
+                  (4, T_I32, codec),
+                  (5, T_I64, len(values)),
+                  (6, T_I64, usize_total),
+                  (7, T_I64, len(out) - start),
+                  (9, T_I64, data_off),
+                  (11, T_I64, dict_off),
+                  (12, T_STRUCT, stats))
+
+
+def schema_element(col):
+    name, ptype, rep, logical, func = col
+    conv = None
+    logtype = None
+    if logical == "string":
+        conv = UTF8
+        logtype = Struct((1, T_STRUCT, Struct()))
+    elif logical is not None:
+        conv = 15 if logical == 8 else 16
+        logtype = Struct((10, T_STRUCT,
+                          Struct((1, T_BYTE, logical), (2, T_TRUE, True))))
+    return Struct((1, T_I32, ptype), (3, T_I32, rep), (4, T_BINARY, name),
+                  (6, T_I32, conv), (10, T_STRUCT, logtype))
+
+
+def write_file(fname, codec, version, use_dict):
+    out = bytearray(b"PAR1")
+    groups = []
+    for g0 in range(0, NROW, GROUP_ROWS):
+        rows = range(g0, min(g0 + GROUP_ROWS, NROW))
+        g_start = len(out)
+        chunks = []
+        usize = 0
+        for col in COLUMNS:
+            c_start = len(out)
+            meta = write_chunk(out, col, rows, codec, version, use_dict)
+            usize += dict(((f[0], f[2]) for f in meta.fields))[6]
+            chunks.append(Struct((2, T_I64, c_start),
+                                 (3, T_STRUCT, meta)))
+        groups.append(Struct((1, T_LIST, (T_STRUCT, chunks)),
+                             (2, T_I64, usize),
+                             (3, T_I64, len(rows)),
+                             (5, T_I64, g_start),
+                             (6, T_I64, len(out) - g_start),
+                             (7, T_I16, len(groups))))
+    root = Struct((4, T_BINARY, "schema"), (5, T_I32, len(COLUMNS)))
+    type_order = Struct((1, T_STRUCT, Struct()))
+    meta = Struct((1, T_I32, 2 if version == 2 else 1),
+                  (2, T_LIST, (T_STRUCT, [root] +
+                                         [schema_element(c)
+                                          for c in COLUMNS])),
+                  (3, T_I64, NROW),
+                  (4, T_LIST, (T_STRUCT, groups)),
+                  (5, T_LIST, (T_STRUCT,
+                               [Struct((1, T_BINARY, "fixture"),
+                                       (2, T_BINARY, fname))])),
+                  (6, T_BINARY, "starjava parquet test data.py"),
+                  (7, T_LIST, (T_STRUCT, [type_order] * len(COLUMNS))))
+    footer = thrift_struct(meta)
+    out += footer + struct.pack("<i", len(footer)) + b"PAR1"
+    with open(fname, "wb") as f:
+        f.write(out)
+
+
+for fname, codec, version, use_dict in FILES:
+    write_file(fname, codec, version, use_dict)
@@ -3,6 +3,7 @@ package uk.ac.starlink.table;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
@@ -118,6 +119,18 @@ public class ConcatStarTable extends WrapperStarTable {
         return new ConcatRowSequence( getTableIterator() );
     }
 
+    /**
+     * Returns the constituent data-bearing tables of this concatenation,
+     * if they are all known.  If this table was constructed from an
+     * iterator which has not yet been exhausted, null is returned.
+     *
+     * @return  unmodifiable list of constituent tables, or null
+     */
+    public synchronized List<StarTable> getTables() {
+        return tableIt_ == null ? Collections.unmodifiableList( tableList_ )
+                                : null;
+    }
+
     /**
      * Checks whether a given table is compatible with the metadata of
      * this one.  The main thing to check is that the columns have 
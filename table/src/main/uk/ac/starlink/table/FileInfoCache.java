@@ -0,0 +1,324 @@
+package uk.ac.starlink.table;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of information about table files, so that work
+ * done recognising and indexing a file does not have to be repeated
+ * by later invocations.
+ *
+ * <p>Each cached file has a set of string key-value pairs associated
+ * with it.  Entries are keyed on the canonical path, size and
+ * modification time of the file, so information about a file is
+ * forgotten as soon as it changes.  The information is stored as
+ * one small properties file per table file in a cache directory.
+ * Clients must be prepared for cached values to be absent or,
+ * if the file has been modified without changing its size or
+ * modification time, wrong.
+ *
+ * <p>By default no cache is used.  A default instance can be
+ * activated by setting the system property
+ * {@value #CACHEDIR_PROPERTY} to the name of a writable directory,
+ * or by calling {@link #setDefaultInstance}.
+ */
+public class FileInfoCache {
+
+    private final File dir_;
+    private final Map<File,Entry> entryMap_;
+
+    /**
+     * Name of system property giving the directory for the default cache.
+     * If not set, the default cache is not used.
+     */
+    public static final String CACHEDIR_PROPERTY = "startable.cachedir";
+
+    private static FileInfoCache dfltInstance_;
+    private static boolean dfltInit_;
+    private static final String PATH_KEY = "file.path";
+    private static final String SIZE_KEY = "file.size";
+    private static final String MTIME_KEY = "file.mtime";
+    private static final String VALUE_PREFIX = "info.";
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table" );
+
+    /**
+     * Constructor.
+     *
+     * @param  dir  directory in which cache files are stored;
+     *              it is created if it does not exist
+     */
+    public FileInfoCache( File dir ) {
+        dir_ = dir;
+        entryMap_ = new HashMap<File,Entry>();
+    }
+
+    /**
+     * Returns the directory in which cache files are stored.
+     *
+     * @return  cache directory
+     */
+    public File getDirectory() {
+        return dir_;
+    }
+
+    /**
+     * Returns a cached value for a given file.
+     *
+     * @param  file  table file
+     * @param  key   name of item
+     * @return  value last stored for <code>key</code> and the current
+     *          version of <code>file</code>, or null if none is known
+     */
+    public synchronized String getValue( File file, String key ) {
+        Entry entry = getEntry( file );
+        return entry == null
+             ? null
+             : entry.props_.getProperty( VALUE_PREFIX + key );
+    }
+
+    /**
+     * Stores a value for a given file.
+     * If the value differs from the one currently stored,
+     * the cache file is rewritten.  Failure to write is logged
+     * but otherwise ignored.
+     *
+     * @param  file  table file
+     * @param  key   name of item
+     * @param  value  value of item, or null to remove it
+     */
+    public synchronized void putValue( File file, String key, String value ) {
+        Entry entry = getEntry( file );
+        if ( entry == null ) {
+            return;
+        }
+        String pkey = VALUE_PREFIX + key;
+        String oldValue = entry.props_.getProperty( pkey );
+        if ( value == null ? oldValue == null : value.equals( oldValue ) ) {
+            return;
+        }
+        if ( value == null ) {
+            entry.props_.remove( pkey );
+        }
+        else {
+            entry.props_.setProperty( pkey, value );
+        }
+        try {
+            writeEntry( entry );
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.WARNING,
+                         "Failed to write cache entry for " + file, e );
+        }
+    }
+
+    /**
+     * Returns the entry for the current version of a given file.
+     *
+     * @param  file  table file
+     * @return   entry, or null if the file cannot be characterised
+     */
+    private Entry getEntry( File file ) {
+        File cfile;
+        long size;
+        long mtime;
+        try {
+            cfile = file.getCanonicalFile();
+            if ( ! cfile.isFile() ) {
+                return null;
+            }
+            size = cfile.length();
+            mtime = cfile.lastModified();
+        }
+        catch ( IOException e ) {
+            return null;
+        }
+        catch ( SecurityException e ) {
+            return null;
+        }
+        Entry entry = entryMap_.get( cfile );
+        if ( entry == null || ! entry.matches( cfile, size, mtime ) ) {
+            entry = readEntry( cfile, size, mtime );
+            entryMap_.put( cfile, entry );
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the stored entry for a given version of a file.
+     * If there is no stored entry for that version, an empty one
+     * is returned.
+     *
+     * @param  cfile  canonical table file
+     * @param  size   file size
+     * @param  mtime  file modification time
+     * @return  entry, not null
+     */
+    private Entry readEntry( File cfile, long size, long mtime ) {
+        File pfile = getCacheFile( cfile );
+        Properties props = new Properties();
+        if ( pfile.exists() ) {
+            try {
+                InputStream in = new FileInputStream( pfile );
+                try {
+                    props.load( in );
+                }
+                finally {
+                    in.close();
+                }
+            }
+            catch ( IOException e ) {
+                logger_.info( "Failed to read cache file " + pfile );
+                props = new Properties();
+            }
+        }
+        Entry entry = new Entry( props );
+        if ( ! entry.matches( cfile, size, mtime ) ) {
+            props.clear();
+            props.setProperty( PATH_KEY, cfile.getPath() );
+            props.setProperty( SIZE_KEY, Long.toString( size ) );
+            props.setProperty( MTIME_KEY, Long.toString( mtime ) );
+        }
+        return entry;
+    }
+
+    /**
+     * Writes an entry to its cache file.
+     * A temporary file is written and then renamed, so that concurrent
+     * readers do not see partial entries.
+     *
+     * @param  entry  entry to write
+     */
+    private void writeEntry( Entry entry ) throws IOException {
+        File cfile = new File( entry.props_.getProperty( PATH_KEY ) );
+        File pfile = getCacheFile( cfile );
+        if ( ! dir_.isDirectory() && ! dir_.mkdirs() ) {
+            throw new IOException( "Can't create cache directory " + dir_ );
+        }
+        File tmpFile = File.createTempFile( "info", ".tmp", dir_ );
+        try {
+            OutputStream out = new FileOutputStream( tmpFile );
+            try {
+                entry.props_.store( out, "Table file information cache" );
+            }
+            finally {
+                out.close();
+            }
+            if ( ! tmpFile.renameTo( pfile ) ) {
+                pfile.delete();
+                if ( ! tmpFile.renameTo( pfile ) ) {
+                    throw new IOException( "Failed to rename " + tmpFile
+                                         + " to " + pfile );
+                }
+            }
+        }
+        finally {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Returns the file in which information for a given table file
+     * is stored.
+     *
+     * @param  cfile  canonical table file
+     * @return   cache file
+     */
+    private File getCacheFile( File cfile ) {
+        byte[] path;
+        byte[] digest;
+        try {
+            path = cfile.getPath().getBytes( "UTF-8" );
+            digest = MessageDigest.getInstance( "SHA-1" ).digest( path );
+        }
+        catch ( IOException e ) {
+            throw new AssertionError( e );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new AssertionError( e );
+        }
+        StringBuffer sbuf = new StringBuffer();
+        for ( byte b : digest ) {
+            sbuf.append( Integer.toHexString( ( b & 0xff ) | 0x100 )
+                                .substring( 1 ) );
+        }
+        sbuf.append( ".props" );
+        return new File( dir_, sbuf.toString() );
+    }
+
+    /**
+     * Returns the default cache instance.
+     * This is determined by the {@value #CACHEDIR_PROPERTY}
+     * system property unless it has been set explicitly.
+     *
+     * @return  default cache, or null if none is in use
+     */
+    public static synchronized FileInfoCache getDefaultInstance() {
+        if ( ! dfltInit_ ) {
+            dfltInit_ = true;
+            try {
+                String dir = System.getProperty( CACHEDIR_PROPERTY );
+                if ( dir != null && dir.trim().length() > 0 ) {
+                    dfltInstance_ = new FileInfoCache( new File( dir ) );
+                }
+            }
+            catch ( SecurityException e ) {
+                // no cache
+            }
+        }
+        return dfltInstance_;
+    }
+
+    /**
+     * Sets the default cache instance.
+     *
+     * @param  cache  default cache, or null for none
+     */
+    public static synchronized void setDefaultInstance( FileInfoCache cache ) {
+        dfltInit_ = true;
+        dfltInstance_ = cache;
+    }
+
+    /**
+     * Holds the stored information for one version of a table file.
+     */
+    private static class Entry {
+        final Properties props_;
+
+        /**
+         * Constructor.
+         *
+         * @param  props  stored properties
+         */
+        Entry( Properties props ) {
+            props_ = props;
+        }
+
+        /**
+         * Indicates whether this entry describes a given file version.
+         *
+         * @param  cfile  canonical table file
+         * @param  size   file size
+         * @param  mtime  file modification time
+         * @return  true iff this entry applies
+         */
+        boolean matches( File cfile, long size, long mtime ) {
+            return cfile.getPath().equals( props_.getProperty( PATH_KEY ) )
+                && Long.toString( size )
+                  .equals( props_.getProperty( SIZE_KEY ) )
+                && Long.toString( mtime )
+                  .equals( props_.getProperty( MTIME_KEY ) );
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wrapper table whose row sequences read ahead from the base table
+ * on a separate thread.
+ * Each RowSequence acquired from this table starts a background thread
+ * which reads rows from the corresponding base table sequence into
+ * a bounded queue of row batches, so that reading and decoding the input
+ * can proceed while the consumer is doing other work.
+ * Random access, if available, is passed directly to the base table.
+ *
+ * <p>Since rows are read ahead, rows from the base sequence are copied
+ * before being queued, and an error reading the base table
+ * is reported only after all the rows preceding it have been consumed.
+ */
+public class PrefetchStarTable extends WrapperStarTable {
+
+    private final int batchSize_;
+    private final int queueBatches_;
+
+    private static final Object[][] END_BATCH = new Object[ 0 ][];
+
+    /**
+     * Constructs a prefetching table with default buffer sizes.
+     *
+     * @param  baseTable  base table
+     */
+    public PrefetchStarTable( StarTable baseTable ) {
+        this( baseTable, 1024, 4 );
+    }
+
+    /**
+     * Constructs a prefetching table with given buffer sizes.
+     *
+     * @param  baseTable  base table
+     * @param  batchSize  number of rows passed between threads at once
+     * @param  queueBatches  maximum number of batches read ahead
+     *                       before the reading thread waits
+     */
+    public PrefetchStarTable( StarTable baseTable, int batchSize,
+                              int queueBatches ) {
+        super( baseTable );
+        batchSize_ = Math.max( 1, batchSize );
+        queueBatches_ = Math.max( 1, queueBatches );
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        return new PrefetchRowSequence( baseTable.getRowSequence() );
+    }
+
+    /**
+     * RowSequence implementation which consumes rows read by a
+     * background thread from a base sequence.
+     */
+    private class PrefetchRowSequence implements RowSequence {
+
+        private final BlockingQueue<Object[][]> queue_;
+        private final Thread reader_;
+        private volatile boolean closed_;
+        private volatile Throwable error_;
+        private Object[][] batch_;
+        private int irow_;
+        private Object[] row_;
+        private boolean ended_;
+
+        /**
+         * Constructor.  The reading thread is started.
+         *
+         * @param  baseSeq  base row sequence
+         */
+        PrefetchRowSequence( final RowSequence baseSeq ) {
+            queue_ = new ArrayBlockingQueue<Object[][]>( queueBatches_ );
+            reader_ = new Thread( "Table Prefetch" ) {
+                public void run() {
+                    readRows( baseSeq );
+                }
+            };
+            reader_.setDaemon( true );
+            reader_.start();
+        }
+
+        public boolean next() throws IOException {
+            if ( ended_ ) {
+                return false;
+            }
+            if ( batch_ == null || ++irow_ >= batch_.length ||
+                 batch_[ irow_ ] == null ) {
+                try {
+                    batch_ = queue_.take();
+                }
+                catch ( InterruptedException e ) {
+                    throw (IOException)
+                          new IOException( "Thread interrupted" )
+                         .initCause( e );
+                }
+                irow_ = 0;
+                if ( batch_ == END_BATCH ) {
+                    ended_ = true;
+                    row_ = null;
+                    Throwable error = error_;
+                    if ( error instanceof IOException ) {
+                        throw (IOException) error;
+                    }
+                    else if ( error instanceof RuntimeException ) {
+                        throw (RuntimeException) error;
+                    }
+                    else if ( error instanceof Error ) {
+                        throw (Error) error;
+                    }
+                    else if ( error != null ) {
+                        throw (IOException)
+                              new IOException( error.toString() )
+                             .initCause( error );
+                    }
+                    return false;
+                }
+            }
+            row_ = batch_[ irow_ ];
+            return true;
+        }
+
+        public Object[] getRow() {
+            if ( row_ != null ) {
+                return row_;
+            }
+            else {
+                throw new IllegalStateException( "No current row" );
+            }
+        }
+
+        public Object getCell( int icol ) {
+            return getRow()[ icol ];
+        }
+
+        public void close() throws IOException {
+            closed_ = true;
+            queue_.clear();
+            try {
+                reader_.join();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Reads all the rows from the base sequence into the queue.
+         * Called from the reading thread.
+         * Any throwable, including an Error, is recorded for the consumer
+         * rather than being taken as the end of the table.
+         * A final partial batch is queued without copying,
+         * padded with nulls, so that no allocation is required after
+         * a failure such as an OutOfMemoryError.
+         *
+         * @param  baseSeq  base row sequence
+         */
+        private void readRows( RowSequence baseSeq ) {
+            Object[][] batch = new Object[ batchSize_ ][];
+            int nrow = 0;
+            try {
+                while ( ! closed_ && baseSeq.next() ) {
+                    Object[] row = baseSeq.getRow().clone();
+                    batch[ nrow++ ] = row;
+                    if ( nrow == batchSize_ ) {
+                        enqueue( batch );
+                        batch = new Object[ batchSize_ ][];
+                        nrow = 0;
+                    }
+                }
+            }
+            catch ( Throwable e ) {
+                error_ = e;
+            }
+            finally {
+                if ( nrow > 0 ) {
+                    enqueue( batch );
+                }
+                try {
+                    baseSeq.close();
+                }
+                catch ( Throwable e ) {
+                    if ( error_ == null ) {
+                        error_ = e;
+                    }
+                }
+                enqueue( END_BATCH );
+            }
+        }
+
+        /**
+         * Adds a batch to the queue, waiting if necessary until there
+         * is space or the sequence is closed.
+         *
+         * @param  batch  row batch
+         */
+        private void enqueue( Object[][] batch ) {
+            try {
+                while ( ! closed_ ) {
+                    if ( queue_.offer( batch, 100, TimeUnit.MILLISECONDS ) ) {
+                        return;
+                    }
+                }
+            }
+            catch ( InterruptedException e ) {
+                closed_ = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * RowSplittable based on the random access methods of a StarTable.
+ * The table's random access methods {@link StarTable#getCell} and
+ * {@link StarTable#getRow} must be thread-safe, as required by
+ * the StarTable contract.
+ *
+ * @since    18 Oct 2026
+ */
+public class RandomRowSplittable implements RowSplittable {
+
+    private final StarTable table_;
+    private long irow_;
+    private long end_;
+
+    /**
+     * Constructs an instance covering all the rows of a given table.
+     *
+     * @param  table  random access table with known row count
+     */
+    public RandomRowSplittable( StarTable table ) {
+        this( table, 0, table.getRowCount() );
+        if ( ! table.isRandom() ) {
+            throw new IllegalArgumentException( "Table " + table
+                                              + " is not random access" );
+        }
+        if ( end_ < 0 ) {
+            throw new IllegalArgumentException( "Table " + table
+                                              + " row count unknown" );
+        }
+    }
+
+    /**
+     * Constructs an instance covering a given range of rows of a table.
+     *
+     * @param  table  random access table
+     * @param  start  index of first row (inclusive)
+     * @param  end    index of last row (exclusive)
+     */
+    protected RandomRowSplittable( StarTable table, long start, long end ) {
+        table_ = table;
+        irow_ = start - 1;
+        end_ = end;
+    }
+
+    public RowSplittable split() {
+        long nrow = end_ - irow_ - 1;
+        if ( nrow >= 2 ) {
+            long mid = irow_ + 1 + nrow / 2;
+            RowSplittable other = new RandomRowSplittable( table_, mid, end_ );
+            end_ = mid;
+            return other;
+        }
+        else {
+            return null;
+        }
+    }
+
+    public long splittableSize() {
+        return end_ - irow_ - 1;
+    }
+
+    public LongSupplier rowIndex() {
+        return () -> irow_;
+    }
+
+    public boolean next() {
+        if ( irow_ < end_ - 1 ) {
+            irow_++;
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    public Object getCell( int icol ) throws IOException {
+        checkRow();
+        return table_.getCell( irow_, icol );
+    }
+
+    public Object[] getRow() throws IOException {
+        checkRow();
+        return table_.getRow( irow_ );
+    }
+
+    public void close() {
+    }
+
+    /**
+     * Checks that this sequence is currently positioned at a valid row.
+     *
+     * @throws  IllegalStateException  if not
+     */
+    private void checkRow() {
+        if ( irow_ < 0 || irow_ >= end_ ) {
+            throw new IllegalStateException( "No current row" );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import uk.ac.starlink.util.SplitCollector;
+
+/**
+ * SplitCollector implementation for accumulating data from table rows.
+ * Concrete subclasses implement {@link #accumulateRows} to do the work,
+ * and may throw IOExceptions, which are tunnelled through the
+ * split processing machinery and rethrown by
+ * {@link RowRunner#collect RowRunner.collect}.
+ *
+ * <p>The {@link #accumulate accumulate} method closes each
+ * RowSplittable it is given once its rows have been consumed.
+ *
+ * @param  <A>  accumulator type
+ * @since    18 Oct 2026
+ */
+public abstract class RowCollector<A>
+        implements SplitCollector<RowSplittable,A> {
+
+    /**
+     * Consumes the rows of a RowSplittable, accumulating the results
+     * into the supplied accumulator.
+     * This method should iterate over the supplied row sequence
+     * using its <code>next</code> method.
+     * The sequence does not need to be closed by this method.
+     *
+     * @param  rseq  row sequence
+     * @param  acc   accumulator
+     */
+    public abstract void accumulateRows( RowSplittable rseq, A acc )
+            throws IOException;
+
+    /**
+     * Invokes {@link #accumulateRows} and closes the sequence.
+     * Any IOException is rethrown wrapped in an unchecked exception.
+     */
+    public void accumulate( RowSplittable rseq, A acc ) {
+        try {
+            try {
+                accumulateRows( rseq, acc );
+            }
+            finally {
+                rseq.close();
+            }
+        }
+        catch ( IOException e ) {
+            throw new CollectionIOException( e );
+        }
+    }
+
+    /**
+     * Unchecked exception used to carry an IOException through
+     * split processing.
+     */
+    static class CollectionIOException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         *
+         * @param  cause  IOException to be tunnelled
+         */
+        CollectionIOException( IOException cause ) {
+            super( cause );
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+
+/**
+ * Manages the potentially parallel processing of the rows of a table.
+ * This is a thin wrapper around a {@link SplitProcessor} which
+ * takes care of acquiring a {@link RowSplittable} from a table and
+ * of handling IOExceptions thrown by {@link RowCollector}s.
+ *
+ * @since    18 Oct 2026
+ */
+public class RowRunner {
+
+    private final SplitProcessor<RowSplittable> processor_;
+
+    /** Instance for sequential execution. */
+    public static final RowRunner SEQUENTIAL =
+        new RowRunner( SplitProcessor.<RowSplittable>
+                                      createSequentialProcessor() );
+
+    /** Default instance for parallel execution. */
+    public static final RowRunner DEFAULT =
+        new RowRunner( SplitProcessor.<RowSplittable>
+                       createBasicParallelProcessor( SplitPolicy
+                                                    .DFLT_POLICY ) );
+
+    /**
+     * Constructor.
+     *
+     * @param  processor  split processor
+     */
+    public RowRunner( SplitProcessor<RowSplittable> processor ) {
+        processor_ = processor;
+    }
+
+    /**
+     * Returns the split processor used by this runner.
+     *
+     * @return  split processor
+     */
+    public SplitProcessor<RowSplittable> getSplitProcessor() {
+        return processor_;
+    }
+
+    /**
+     * Indicates whether this runner will attempt to process rows
+     * in parallel for a given table.
+     *
+     * @param  table  table
+     * @return  true iff splitting will be attempted
+     */
+    public boolean isParallel( StarTable table ) throws IOException {
+        RowSplittable rseq = table.getRowSplittable();
+        try {
+            return processor_.willAttemptSplit( rseq );
+        }
+        finally {
+            rseq.close();
+        }
+    }
+
+    /**
+     * Collects the rows of a table into an accumulator,
+     * as defined by a supplied collector.
+     *
+     * @param  collector  collector
+     * @param  table   table whose rows are to be collected
+     * @return  accumulator containing the result of collecting
+     *          all the table's rows
+     */
+    public <A> A collect( RowCollector<A> collector, StarTable table )
+            throws IOException {
+        return collect( collector, table.getRowSplittable() );
+    }
+
+    /**
+     * Collects the rows of a RowSplittable into an accumulator,
+     * as defined by a supplied collector.
+     * The supplied sequence will be closed by this method.
+     *
+     * @param  collector  collector
+     * @param  rseq   row sequence positioned before the first row
+     * @return  accumulator containing the result of collecting
+     *          all the sequence's rows
+     */
+    public <A> A collect( RowCollector<A> collector, RowSplittable rseq )
+            throws IOException {
+        try {
+            return processor_.collect( collector, rseq );
+        }
+        catch ( RowCollector.CollectionIOException e ) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return processor_.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package uk.ac.starlink.table;
+
+import java.util.function.LongSupplier;
+import uk.ac.starlink.util.Splittable;
+
+/**
+ * RowSequence subinterface that is also suitable for parallel processing.
+ * Instances of this class may be split into two parts using the
+ * {@link #split} method, and the resulting parts iterated over
+ * in different threads.  Each individual part is subject to the
+ * usual RowSequence restriction that it cannot in general be used
+ * safely from multiple threads.
+ *
+ * <p>Instances are normally obtained from the
+ * {@link StarTable#getRowSplittable} method, and processed using
+ * a {@link RowRunner}.
+ * When processing is complete, each part should be closed.
+ *
+ * @since    18 Oct 2026
+ */
+public interface RowSplittable extends Splittable<RowSplittable>, RowSequence {
+
+    /**
+     * Returns an object that can report the index of the row
+     * currently being iterated over by this sequence, if known.
+     * The value returned by the supplier is the row index in the
+     * underlying table, so it may be used with the table's random
+     * access methods if it has them.
+     * The supplier's return value is only defined while this
+     * sequence is positioned at a row, that is after a call to
+     * {@link #next} has returned true.
+     *
+     * <p>If no row index information is available, null is returned.
+     *
+     * @return   row index supplier, or null
+     */
+    LongSupplier rowIndex();
+}
@@ -2,6 +2,7 @@ package uk.ac.starlink.table;
 
 import java.io.IOException;
 import java.util.BitSet;
+import java.util.function.LongSupplier;
 
 /**
  * Wraps a StarTable to present only a subset of its rows.
@@ -91,4 +92,89 @@ public class RowSubsetStarTable extends WrapperStarTable {
             }
         };
     }
+
+    /**
+     * If the base table's RowSplittable can report row indices,
+     * this implementation splits according to the base table's
+     * policy, and filters the rows using the mask.
+     */
+    public RowSplittable getRowSplittable() throws IOException {
+        RowSplittable baseSplit = baseTable.getRowSplittable();
+        if ( baseSplit.rowIndex() != null ) {
+            return new SubsetRowSplittable( baseSplit, mask );
+        }
+        else {
+            baseSplit.close();
+            return Tables.getDefaultRowSplittable( this );
+        }
+    }
+
+    /**
+     * RowSplittable implementation that filters a base splittable
+     * according to a row mask.
+     */
+    private static class SubsetRowSplittable implements RowSplittable {
+
+        private final RowSplittable baseSplit_;
+        private final LongSupplier baseIndex_;
+        private final BitSet mask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  baseSplit  base row splittable, which must supply
+         *                    row indices
+         * @param  mask   mask of base rows to include
+         */
+        SubsetRowSplittable( RowSplittable baseSplit, BitSet mask ) {
+            baseSplit_ = baseSplit;
+            baseIndex_ = baseSplit.rowIndex();
+            mask_ = mask;
+        }
+
+        public RowSplittable split() {
+            RowSplittable baseSplit1 = baseSplit_.split();
+            return baseSplit1 == null
+                 ? null
+                 : new SubsetRowSplittable( baseSplit1, mask_ );
+        }
+
+        public long splittableSize() {
+            return baseSplit_.splittableSize();
+        }
+
+        /**
+         * Returns null, since the index of the row within the subset
+         * is not known.
+         */
+        public LongSupplier rowIndex() {
+            return null;
+        }
+
+        public boolean next() throws IOException {
+            long leng = mask_.length();
+            while ( baseSplit_.next() ) {
+                long ix = baseIndex_.getAsLong();
+                if ( ix >= leng ) {
+                    return false;
+                }
+                else if ( mask_.get( (int) ix ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            return baseSplit_.getCell( icol );
+        }
+
+        public Object[] getRow() throws IOException {
+            return baseSplit_.getRow();
+        }
+
+        public void close() throws IOException {
+            baseSplit_.close();
+        }
+    }
 }
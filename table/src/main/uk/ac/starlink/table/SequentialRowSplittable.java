@@ -0,0 +1,84 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * RowSplittable implementation based on a RowSequence.
+ * No splitting is performed, so processing of instances of this class
+ * will be sequential.
+ * This can be used for tables which have no better option.
+ *
+ * <p>The {@link #close} method of this class may safely be called
+ * more than once.
+ *
+ * @since    18 Oct 2026
+ */
+public class SequentialRowSplittable implements RowSplittable {
+
+    private final RowSequence rseq_;
+    private final long nrow_;
+    private long irow_;
+    private boolean closed_;
+
+    /**
+     * Constructs an instance from a table.
+     *
+     * @param  table  table
+     */
+    public SequentialRowSplittable( StarTable table ) throws IOException {
+        this( table.getRowSequence(), table.getRowCount() );
+    }
+
+    /**
+     * Constructs an instance from a row sequence.
+     *
+     * @param  rseq  row sequence positioned before the first row
+     * @param  nrow  number of rows in the sequence, or -1 if not known
+     */
+    public SequentialRowSplittable( RowSequence rseq, long nrow ) {
+        rseq_ = rseq;
+        nrow_ = nrow;
+        irow_ = -1;
+    }
+
+    /**
+     * Returns null.
+     */
+    public RowSplittable split() {
+        return null;
+    }
+
+    public long splittableSize() {
+        return nrow_;
+    }
+
+    public LongSupplier rowIndex() {
+        return () -> irow_;
+    }
+
+    public boolean next() throws IOException {
+        if ( rseq_.next() ) {
+            irow_++;
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    public Object getCell( int icol ) throws IOException {
+        return rseq_.getCell( icol );
+    }
+
+    public Object[] getRow() throws IOException {
+        return rseq_.getRow();
+    }
+
+    public void close() throws IOException {
+        if ( ! closed_ ) {
+            closed_ = true;
+            rseq_.close();
+        }
+    }
+}
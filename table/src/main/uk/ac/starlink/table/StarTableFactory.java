@@ -4,6 +4,7 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
 import java.lang.reflect.Method;
@@ -21,6 +22,7 @@ import uk.ac.starlink.table.formats.WDCTableBuilder;
 import uk.ac.starlink.table.jdbc.JDBCHandler;
 import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.Loader;
 import uk.ac.starlink.util.URLDataSource;
 
@@ -77,6 +79,10 @@ import uk.ac.starlink.util.URLDataSource;
  *      (format name="cdf")
  * <li> {@link uk.ac.starlink.feather.FeatherTableBuilder}
  *      (format name="feather")
+ * <li> {@link uk.ac.starlink.feather.ArrowTableBuilder}
+ *      (format name="arrow")
+ * <li> {@link uk.ac.starlink.parquet.ParquetTableBuilder}
+ *      (format name="parquet")
  * </ul>
  *
  * <p>The following additional handlers are installed in the
@@ -132,6 +138,9 @@ public class StarTableFactory {
      */
     public static final String AUTO_HANDLER = "(auto)";
 
+    /** Key for detected format name in the {@link FileInfoCache}. */
+    private static final String FORMAT_CACHE_KEY = "format";
+
     private static Logger logger = Logger.getLogger( "uk.ac.starlink.table" );
     private static String[] defaultBuilderClasses = { 
         "uk.ac.starlink.votable.FitsPlusTableBuilder",
@@ -141,6 +150,8 @@ public class StarTableFactory {
         "uk.ac.starlink.votable.VOTableBuilder",
         "uk.ac.starlink.cdf.CdfTableBuilder",
         "uk.ac.starlink.feather.FeatherTableBuilder",
+        "uk.ac.starlink.feather.ArrowTableBuilder",
+        "uk.ac.starlink.parquet.ParquetTableBuilder",
         "uk.ac.starlink.gbin.GbinTableBuilder",
     };
     private static String[] knownBuilderClasses = {
@@ -392,6 +403,8 @@ public class StarTableFactory {
     /**
      * Constructs a readable <tt>StarTable</tt> from a <tt>DataSource</tt> 
      * object using automatic format detection.
+     * If a default {@link FileInfoCache} is in use, the handler
+     * which last recognised a file is tried first.
      *
      * @param  datsrc  the data source containing the table data
      * @return a new StarTable view of the resource <tt>datsrc</tt>
@@ -401,7 +414,28 @@ public class StarTableFactory {
      */
     public StarTable makeStarTable( DataSource datsrc )
             throws TableFormatException, IOException {
-        for ( TableBuilder builder : defaultBuilders_ ) {
+
+        /* If the format of this file has been detected before,
+         * try that handler first. */
+        FileInfoCache cache = FileInfoCache.getDefaultInstance();
+        File file = cache != null && datsrc instanceof FileDataSource
+                  ? ((FileDataSource) datsrc).getFile()
+                  : null;
+        List<TableBuilder> builders = defaultBuilders_;
+        if ( file != null ) {
+            String fmt = cache.getValue( file, FORMAT_CACHE_KEY );
+            if ( fmt != null ) {
+                builders = new ArrayList<TableBuilder>( defaultBuilders_ );
+                for ( TableBuilder builder : defaultBuilders_ ) {
+                    if ( builder.getFormatName().equals( fmt ) ) {
+                        builders.remove( builder );
+                        builders.add( 0, builder );
+                        break;
+                    }
+                }
+            }
+        }
+        for ( TableBuilder builder : builders ) {
             try {
                 StarTable startab = 
                     builder.makeStarTable( datsrc, requireRandom(),
@@ -411,6 +445,10 @@ public class StarTableFactory {
                 if ( startab.getName() == null ) {
                     startab.setName( datsrc.getName() );
                 }
+                if ( file != null ) {
+                    cache.putValue( file, FORMAT_CACHE_KEY,
+                                    builder.getFormatName() );
+                }
                 return startab;
             }
             catch ( TableFormatException e ) {
@@ -43,8 +43,11 @@ import uk.ac.starlink.util.Loader;
  * <li> {@link uk.ac.starlink.fits.FitsTableWriter}
  * <li> {@link uk.ac.starlink.fits.VariableFitsTableWriter}
  * <li> {@link uk.ac.starlink.fits.HealpixFitsTableWriter}
+ * <li> {@link uk.ac.starlink.fits.TiledFitsTableWriter}
  * <li> {@link uk.ac.starlink.votable.VOTableWriter}
  * <li> {@link uk.ac.starlink.feather.FeatherTableWriter}
+ * <li> {@link uk.ac.starlink.feather.ArrowTableWriter}
+ * <li> {@link uk.ac.starlink.parquet.ParquetTableWriter}
  * <li> {@link uk.ac.starlink.table.formats.TextTableWriter}
  * <li> {@link uk.ac.starlink.table.formats.AsciiTableWriter}
  * <li> {@link uk.ac.starlink.table.formats.CsvTableWriter}
@@ -73,10 +76,13 @@ public class StarTableOutput {
         "uk.ac.starlink.fits.FitsTableWriter",
         "uk.ac.starlink.fits.VariableFitsTableWriter",
         "uk.ac.starlink.fits.HealpixFitsTableWriter",
+        "uk.ac.starlink.fits.TiledFitsTableWriter",
         "uk.ac.starlink.votable.ColFitsPlusTableWriter",
         "uk.ac.starlink.fits.ColFitsTableWriter",
         "uk.ac.starlink.votable.VOTableWriter",
         "uk.ac.starlink.feather.FeatherTableWriter",
+        "uk.ac.starlink.feather.ArrowTableWriter",
+        "uk.ac.starlink.parquet.ParquetTableWriter",
         TextTableWriter.class.getName(),
         AsciiTableWriter.class.getName(),
         CsvTableWriter.class.getName(),
@@ -456,6 +462,14 @@ public class StarTableOutput {
     /**
      * Returns a StarTableWriter object given an output format name.
      *
+     * <p>The format may be followed by the option
+     * <code>(parallel=true)</code> or <code>(parallel=false)</code>,
+     * for instance <code>fits(parallel=true)</code>.
+     * This is only accepted by handlers with a public
+     * <code>setParallel(boolean)</code> method, such as the FITS writers.
+     * In that case a new handler is created for the named format,
+     * and its parallel mode is set accordingly.
+     *
      * @param  format  a string which indicates in some way what format
      *         should be used for output.  This may be the class name of
      *         a <tt>StarTableWriter</tt> object (which may or may not be
@@ -463,6 +477,7 @@ public class StarTableOutput {
      *         a string which matches the format name of one of the registered
      *         <tt>StarTableWriter</tt>s (first match is used,
      *         case-insensitive, starting substrings OK).
+     *         Either may be followed by the parallel option.
      * @throws TableFormatException  if no handler suitable for the arguments
      *         can be found
      * @return a suitable output handler
@@ -470,6 +485,26 @@ public class StarTableOutput {
     public StarTableWriter getHandler( String format )
             throws TableFormatException {
 
+        /* See if the parallel option is given. */
+        int iopen = format.indexOf( '(' );
+        if ( iopen > 0 && format.endsWith( ")" ) ) {
+            String opt = format.substring( iopen + 1, format.length() - 1 );
+            int ieq = opt.indexOf( '=' );
+            String value = ieq < 0 ? null : opt.substring( ieq + 1 ).trim();
+            if ( ieq < 0 ||
+                 ! "parallel".equalsIgnoreCase( opt.substring( 0, ieq )
+                                                   .trim() ) ||
+                 ! ( "true".equalsIgnoreCase( value ) ||
+                     "false".equalsIgnoreCase( value ) ) ) {
+                throw new TableFormatException(
+                    "Bad handler option \"" + opt.trim() + "\""
+                  + " - only parallel=true|false is supported" );
+            }
+            return createParallelHandler(
+                       getHandler( format.substring( 0, iopen ) ),
+                       "true".equalsIgnoreCase( value ) );
+        }
+
         /* See if it's the special value. */
         if ( format.equals( AUTO_HANDLER ) ) {
             throw new TableFormatException( format + " does not name a " +
@@ -518,6 +553,68 @@ public class StarTableOutput {
                                         format + "\"" );
     }
 
+    /**
+     * Returns a new handler for the same format as a given one,
+     * with its parallel mode set as requested.
+     * The given handler, which may be registered, is not changed.
+     * If the handler class has a <code>getStarTableWriters</code> method,
+     * the handler it provides with the same format name is used as
+     * the new instance, otherwise the class's no-arg constructor is used.
+     *
+     * @param  handler  template handler
+     * @param  isParallel  parallel mode for the new handler
+     * @return  new handler instance
+     * @throws  TableFormatException  if the handler has no
+     *          <code>setParallel(boolean)</code> method
+     */
+    private static StarTableWriter
+            createParallelHandler( StarTableWriter handler,
+                                   boolean isParallel )
+            throws TableFormatException {
+        Class<?> clazz = handler.getClass();
+        String fmt = handler.getFormatName();
+        final Method setParallel;
+        try {
+            setParallel = clazz.getMethod( "setParallel", boolean.class );
+        }
+        catch ( NoSuchMethodException e ) {
+            throw new TableFormatException( "Output format " + fmt
+                                          + " has no parallel option" );
+        }
+        try {
+            StarTableWriter handler1 = null;
+            try {
+                Method getList = clazz.getMethod( "getStarTableWriters",
+                                                  new Class<?>[ 0 ] );
+                if ( Modifier.isStatic( getList.getModifiers() ) ) {
+                    Object list = getList.invoke( null, new Object[ 0 ] );
+                    if ( list instanceof StarTableWriter[] ) {
+                        for ( StarTableWriter w : (StarTableWriter[]) list ) {
+                            if ( handler1 == null &&
+                                 w.getClass().equals( clazz ) &&
+                                 w.getFormatName().equals( fmt ) ) {
+                                handler1 = w;
+                            }
+                        }
+                    }
+                }
+            }
+            catch ( NoSuchMethodException e ) {
+                // no problem
+            }
+            if ( handler1 == null ) {
+                handler1 = (StarTableWriter)
+                           clazz.getDeclaredConstructor().newInstance();
+            }
+            setParallel.invoke( handler1, Boolean.valueOf( isParallel ) );
+            return handler1;
+        }
+        catch ( ReflectiveOperationException e ) {
+            throw new TableFormatException( "Can't configure parallel "
+                                          + "option for " + fmt, e );
+        }
+    }
+
     /**
      * Returns a StarTableWriter object given an output format name
      * and/or a location to write to.  If the format name is blank,
@@ -1,167 +1,855 @@
 package uk.ac.starlink.table;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
 
 /**
  * Provides table sorting functionality.
  *
+ * <p>Sorting is done in two stages.  First the values of the key columns
+ * are read once from the table into arrays; numeric keys are held as
+ * primitive <code>long</code> values encoded so that their natural order
+ * matches the collation order, and other keys as arrays of
+ * Comparable objects.  If the numeric keys are too large to sit
+ * comfortably on the heap, they are written instead to scratch
+ * {@link ByteStore}s obtained from a supplied {@link StoragePolicy},
+ * which will normally be memory-mapped files.
+ * Then an <code>int</code> array of row indices is sorted with reference
+ * to those keys using a merge sort that may be split for parallel execution
+ * according to a supplied {@link RowRunner}.  Key reading is also done
+ * in parallel where the table supports it.
+ *
+ * <p>The sort is stable: rows with equal keys retain their
+ * original relative order.
+ *
  * @author   Mark Taylor (Starlink)
  * @since    8 Mar 2005
  * @see      Tables#sortTable
  */
-class TableSorter {
+public class TableSorter {
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table" );
+
+    /** Run length below which insertion sort is used. */
+    private static final int INSERTION_LIMIT = 32;
+
+    /** Sortable code used for floating point blank (NaN) values. */
+    private static final long NAN_CODE =
+        Double.doubleToLongBits( Double.NaN );
+
+    /** Code used for blank integer values of up to 32 bits. */
+    private static final long INT_NULL_CODE = Long.MIN_VALUE;
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private TableSorter() {
+    }
 
     /**
-     * Returns an array representing the sorted row sequence for a table.
+     * Returns an array representing the sorted row sequence for a table,
+     * using default parallelisation and storage policies.
      *
      * @param   table  table to sort
      * @param   colIndices  indices of the columns which are to act as sort
      *          keys; first element is primary key etc
-     * @param   up  true for sorting into ascending order, false for 
+     * @param   up  true for sorting into ascending order, false for
      *          descending order
-     * @param   nullsLast  true if blank values should be considered 
+     * @param   nullsLast  true if blank values should be considered
      *          last in the collation order, false if they should
      *          be considered first
      * @return  an array mapping the rows in a table to their sorted order
-     * @throws  IOException  if <tt>table.isRandom()</tt> returns false
-     */ 
+     * @throws  IOException  if the table's row count is not known
+     *                       or there is an error reading the data
+     */
     public static long[] getSortedOrder( StarTable table, int[] colIndices,
                                          boolean up, boolean nullsLast )
             throws IOException {
-        if ( ! table.isRandom() ) {
-            throw new IOException( "Table does not have random access" );
-        }
-        int nrow = Tables.checkedLongToInt( table.getRowCount() );
-        Number[] rowMap = new Number[ nrow ];
+        return getSortedOrder( table, colIndices, up, nullsLast,
+                               RowRunner.DEFAULT,
+                               StoragePolicy.getDefaultPolicy() );
+    }
+
+    /**
+     * Returns an array representing the sorted row sequence for a table,
+     * with configurable parallelisation and storage.
+     *
+     * @param   table  table to sort
+     * @param   colIndices  indices of the columns which are to act as sort
+     *          keys; first element is primary key etc
+     * @param   up  true for sorting into ascending order, false for
+     *          descending order
+     * @param   nullsLast  true if blank values should be considered
+     *          last in the collation order, false if they should
+     *          be considered first
+     * @param   runner  controls parallel execution
+     * @param   policy  storage policy for scratch storage of large keys,
+     *                  or null to use the heap in any case
+     * @return  an array mapping the rows in a table to their sorted order
+     * @throws  IOException  if the table's row count is not known
+     *                       or there is an error reading the data
+     */
+    public static long[] getSortedOrder( StarTable table, int[] colIndices,
+                                         boolean up, boolean nullsLast,
+                                         RowRunner runner,
+                                         StoragePolicy policy )
+            throws IOException {
+        int[] iorder = getSortedIndices( table, colIndices, up, nullsLast,
+                                         runner, policy );
+        int nrow = iorder.length;
+        long[] order = new long[ nrow ];
         for ( int i = 0; i < nrow; i++ ) {
-            rowMap[ i ] = new Integer( i );
+            order[ i ] = iorder[ i ];
+        }
+        return order;
+    }
+
+    /**
+     * Returns an <code>int</code> array representing the sorted row
+     * sequence for a table.  This does the same as
+     * {@link #getSortedOrder(StarTable,int[],boolean,boolean,RowRunner,
+     *                        StoragePolicy) getSortedOrder},
+     * but avoids allocating a <code>long[]</code> array for the result.
+     *
+     * @param   table  table to sort
+     * @param   colIndices  indices of the columns which are to act as sort
+     *          keys; first element is primary key etc
+     * @param   up  true for sorting into ascending order, false for
+     *          descending order
+     * @param   nullsLast  true if blank values should be considered
+     *          last in the collation order, false if they should
+     *          be considered first
+     * @param   runner  controls parallel execution
+     * @param   policy  storage policy for scratch storage of large keys,
+     *                  or null to use the heap in any case
+     * @return  an array mapping the rows in a table to their sorted order
+     * @throws  IOException  if the table's row count is not known
+     *                       or there is an error reading the data
+     */
+    public static int[] getSortedIndices( StarTable table, int[] colIndices,
+                                          boolean up, boolean nullsLast,
+                                          RowRunner runner,
+                                          StoragePolicy policy )
+            throws IOException {
+        long lnrow = table.getRowCount();
+        if ( lnrow < 0 ) {
+            throw new IOException( "Table row count not known" );
+        }
+        int nrow = Tables.checkedLongToInt( lnrow );
+
+        /* Use scratch storage for numeric keys if they would take up
+         * a significant fraction of the heap. */
+        int nLongKey = 0;
+        for ( int icol : colIndices ) {
+            if ( isLongKeyClass( table.getColumnInfo( icol )
+                                      .getContentClass() ) ) {
+                nLongKey++;
+            }
+        }
+        boolean useStore = policy != null
+                        && 8L * nrow * nLongKey
+                           > Runtime.getRuntime().maxMemory() / 4;
+        return sortIndices( table, nrow, colIndices, up, nullsLast, runner,
+                            useStore ? policy : null );
+    }
+
+    /**
+     * Does the work for sorting row indices.
+     *
+     * @param   table  table to sort
+     * @param   nrow   row count
+     * @param   colIndices  indices of key columns
+     * @param   up  true for ascending order
+     * @param   nullsLast  true for blanks last in collation order
+     * @param   runner  controls parallel execution
+     * @param   storePolicy  if non-null, numeric keys are written to
+     *                       scratch storage from this policy;
+     *                       if null, they are held on the heap
+     * @return  sorted row indices
+     */
+    static int[] sortIndices( StarTable table, int nrow, int[] colIndices,
+                              boolean up, boolean nullsLast, RowRunner runner,
+                              StoragePolicy storePolicy )
+            throws IOException {
+        int nkey = colIndices.length;
+        SortKey[] keys = new SortKey[ nkey ];
+        try {
+            for ( int ik = 0; ik < nkey; ik++ ) {
+                ColumnInfo info = table.getColumnInfo( colIndices[ ik ] );
+                keys[ ik ] = createKey( info, nrow, up, nullsLast,
+                                        storePolicy );
+            }
+
+            /* Read key values from the table.  Keys held in scratch
+             * storage must be written sequentially. */
+            readKeys( table, colIndices, keys,
+                      storePolicy == null ? runner : null );
+
+            /* Sort row indices using the key values. */
+            RowSplittable indexRange =
+                new RandomRowSplittable( ColumnStarTable
+                                        .makeTableWithRows( nrow ) );
+            try {
+                return runner.collect( new SortCollector( keys ), indexRange )
+                      .indices_;
+            }
+            catch ( RuntimeException e ) {
+                throw toIOException( e );
+            }
+        }
+        finally {
+            for ( SortKey key : keys ) {
+                if ( key != null ) {
+                    key.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads values from a table into sort keys.
+     *
+     * @param  table  table
+     * @param  colIndices  key column indices
+     * @param  keys   sort keys to populate
+     * @param  runner  row runner for parallel reads,
+     *                 or null if values must be supplied in sequence
+     */
+    private static void readKeys( StarTable table, final int[] colIndices,
+                                  final SortKey[] keys, RowRunner runner )
+            throws IOException {
+        final int nkey = keys.length;
+        if ( runner != null ) {
+            RowSplittable rsplit = table.getRowSplittable();
+            if ( rsplit.rowIndex() != null ) {
+                RowCollector<Object> collector = new RowCollector<Object>() {
+                    public Object createAccumulator() {
+                        return null;
+                    }
+                    public Object combine( Object acc1, Object acc2 ) {
+                        return null;
+                    }
+                    public void accumulateRows( RowSplittable rseq,
+                                                Object acc )
+                            throws IOException {
+                        LongSupplier rowIndex = rseq.rowIndex();
+                        while ( rseq.next() ) {
+                            int irow = (int) rowIndex.getAsLong();
+                            for ( int ik = 0; ik < nkey; ik++ ) {
+                                keys[ ik ].setValue( irow, rseq.getCell(
+                                                     colIndices[ ik ] ) );
+                            }
+                        }
+                    }
+                };
+                try {
+                    runner.collect( collector, rsplit );
+                }
+                catch ( RuntimeException e ) {
+                    throw toIOException( e );
+                }
+                return;
+            }
+            else {
+                rsplit.close();
+            }
         }
-        Comparator<Number> comp =
-            new RowComparator( table, colIndices, up, nullsLast );
+        RowSequence rseq = table.getRowSequence();
         try {
-            Arrays.sort( rowMap, comp );
+            for ( int irow = 0; rseq.next(); irow++ ) {
+                for ( int ik = 0; ik < nkey; ik++ ) {
+                    keys[ ik ].setValue( irow,
+                                         rseq.getCell( colIndices[ ik ] ) );
+                }
+            }
         }
         catch ( SortException e ) {
             throw e.asIOException();
         }
-        long[] order = new long[ nrow ];
-        for ( int i = 0; i < nrow; i++ ) {
-            order[ i ] = rowMap[ i ].longValue();
+        finally {
+            rseq.close();
+        }
+        for ( SortKey key : keys ) {
+            key.endValues();
+        }
+    }
+
+    /**
+     * Indicates whether values of a given class can be represented
+     * as sortable primitive long values.
+     *
+     * @param  clazz  value class
+     * @return  true iff a primitive key is suitable
+     */
+    private static boolean isLongKeyClass( Class<?> clazz ) {
+        return clazz == Double.class || clazz == Float.class
+            || clazz == Long.class || clazz == Integer.class
+            || clazz == Short.class || clazz == Byte.class;
+    }
+
+    /**
+     * Returns a sort key suitable for a given column.
+     *
+     * @param  info  column metadata
+     * @param  nrow  row count
+     * @param   up  true for ascending order
+     * @param   nullsLast  true for blanks last in collation order
+     * @param   policy   storage policy for scratch storage,
+     *                   or null to use the heap
+     * @return  new key
+     * @throws  IOException  if the column cannot be sorted
+     */
+    private static SortKey createKey( ColumnInfo info, int nrow, boolean up,
+                                      boolean nullsLast, StoragePolicy policy )
+            throws IOException {
+        Class<?> clazz = info.getContentClass();
+        if ( isLongKeyClass( clazz ) ) {
+            boolean isFloating = clazz == Double.class || clazz == Float.class;
+            boolean isLong = clazz == Long.class;
+            return policy == null
+                 ? new ArrayLongKey( up, nullsLast, isFloating, isLong, nrow )
+                 : new StoreLongKey( up, nullsLast, isFloating, isLong, nrow,
+                                     policy.makeByteStore() );
+        }
+        else if ( Comparable.class.isAssignableFrom( clazz ) ) {
+            return new ObjectKey( up, nullsLast, nrow );
+        }
+        else {
+            throw new IOException( "Column " + info
+                                 + " has no defined sort order" );
+        }
+    }
+
+    /**
+     * Converts an unchecked exception from the sort machinery into
+     * an IOException if it represents a data error.
+     *
+     * @param  e  exception
+     * @return  IOException, if applicable
+     * @throws  RuntimeException  the input exception if not applicable
+     */
+    private static IOException toIOException( RuntimeException e ) {
+        for ( Throwable t = e; t != null; t = t.getCause() ) {
+            if ( t instanceof SortException ) {
+                return ((SortException) t).asIOException();
+            }
+        }
+        throw e;
+    }
+
+    /**
+     * Sorts an array of row indices in place.
+     *
+     * @param  indices  array of row indices
+     * @param  order    defines row ordering
+     */
+    private static void sortRun( int[] indices, RowOrder order ) {
+        int n = indices.length;
+        if ( n > INSERTION_LIMIT ) {
+            mergeSort( indices.clone(), indices, 0, n, order );
+        }
+        else {
+            insertionSort( indices, 0, n, order );
+        }
+    }
+
+    /**
+     * Recursive merge sort.  On entry, the range of interest in
+     * <code>src</code> and <code>dst</code> have the same content.
+     * On exit, the range in <code>dst</code> is sorted.
+     *
+     * @param  src  scratch array
+     * @param  dst  destination array
+     * @param  lo   lower bound of range (inclusive)
+     * @param  hi   upper bound of range (exclusive)
+     * @param  order  row ordering
+     */
+    private static void mergeSort( int[] src, int[] dst, int lo, int hi,
+                                   RowOrder order ) {
+        int n = hi - lo;
+        if ( n <= INSERTION_LIMIT ) {
+            insertionSort( dst, lo, hi, order );
+            return;
+        }
+        int mid = ( lo + hi ) >>> 1;
+        mergeSort( dst, src, lo, mid, order );
+        mergeSort( dst, src, mid, hi, order );
+        if ( order.compare( src[ mid - 1 ], src[ mid ] ) <= 0 ) {
+            System.arraycopy( src, lo, dst, lo, n );
+            return;
+        }
+        for ( int i = lo, p = lo, q = mid; i < hi; i++ ) {
+            dst[ i ] = q >= hi || p < mid && order.compare( src[ p ],
+                                                            src[ q ] ) <= 0
+                     ? src[ p++ ]
+                     : src[ q++ ];
+        }
+    }
+
+    /**
+     * Insertion sort for small ranges.
+     *
+     * @param  a  array
+     * @param  lo   lower bound of range (inclusive)
+     * @param  hi   upper bound of range (exclusive)
+     * @param  order  row ordering
+     */
+    private static void insertionSort( int[] a, int lo, int hi,
+                                       RowOrder order ) {
+        for ( int i = lo + 1; i < hi; i++ ) {
+            int v = a[ i ];
+            int j = i - 1;
+            while ( j >= lo && order.compare( a[ j ], v ) > 0 ) {
+                a[ j + 1 ] = a[ j ];
+                j--;
+            }
+            a[ j + 1 ] = v;
+        }
+    }
+
+    /**
+     * Merges two sorted arrays of row indices.
+     *
+     * @param  a1  first sorted array
+     * @param  a2  second sorted array
+     * @param  order  row ordering
+     * @return   sorted array containing the elements of both inputs
+     */
+    private static int[] merge( int[] a1, int[] a2, RowOrder order ) {
+        int n1 = a1.length;
+        int n2 = a2.length;
+        if ( n1 == 0 ) {
+            return a2;
+        }
+        if ( n2 == 0 ) {
+            return a1;
+        }
+        int[] out = new int[ n1 + n2 ];
+        int i1 = 0;
+        int i2 = 0;
+        int io = 0;
+        while ( i1 < n1 && i2 < n2 ) {
+            out[ io++ ] = order.compare( a1[ i1 ], a2[ i2 ] ) <= 0
+                        ? a1[ i1++ ]
+                        : a2[ i2++ ];
+        }
+        System.arraycopy( a1, i1, out, io, n1 - i1 );
+        io += n1 - i1;
+        System.arraycopy( a2, i2, out, io, n2 - i2 );
+        return out;
+    }
+
+    /**
+     * Defines a total ordering of rows based on a sequence of keys.
+     * Rows with equal keys are ordered by row index, which makes
+     * the sort stable, and also means that the result does not depend
+     * on the order in which partial results are merged.
+     */
+    private static class RowOrder {
+        private final SortKey[] keys_;
+
+        /**
+         * Constructor.
+         *
+         * @param  keys  sort keys, most significant first
+         */
+        RowOrder( SortKey[] keys ) {
+            keys_ = keys;
+        }
+
+        /**
+         * Compares two rows.
+         *
+         * @param  irow1  first row index
+         * @param  irow2  second row index
+         * @return  negative, zero or positive according to whether
+         *          the first row sorts before, at the same place as,
+         *          or after the second one
+         */
+        int compare( int irow1, int irow2 ) {
+            for ( SortKey key : keys_ ) {
+                int c = key.compare( irow1, irow2 );
+                if ( c != 0 ) {
+                    return c;
+                }
+            }
+            return Integer.compare( irow1, irow2 );
         }
-        return order;
     }
 
     /**
-     * Helper class which can compare objects representing the rows of
-     * a table.  The objects compared using this comparator must be
-     * <tt>Number</tt>s containing the row index of a table.
+     * Accumulator for sorted row indices.
      */
-    private static class RowComparator implements Comparator<Number> {
+    private static class SortedRun {
+        int[] indices_ = new int[ 0 ];
+    }
 
-        final StarTable table_;
-        final int[] colIndices_;
-        final boolean up_;
-        final boolean nullsLast_;
-        final int ncol_;
+    /**
+     * Collector that sorts ranges of row indices and merges the results.
+     * The rows collected are those of a column-less table with the
+     * same row count as the table being sorted, so only the row indices
+     * are of interest.
+     */
+    private static class SortCollector extends RowCollector<SortedRun> {
+        private final RowOrder order_;
 
         /**
          * Constructor.
          *
-         * @param   table  table whose rows will be compared
-         * @param   colIndices  indices of the columns which are to act as sort
-         *          keys; first element is primary key etc
-         * @param   up  true for sorting into ascending order, false for
-         *          descending order
-         * @param   nullsLast  true if blank values should be considered
-         *          last in the collation order, false if they should
-         *          be considered first
-         */
-        RowComparator( StarTable table, int[] colIndices, boolean up,
-                       boolean nullsLast ) throws IOException {
-            table_ = table;
-            colIndices_ = colIndices;
-            up_ = up;
-            nullsLast_ = nullsLast;
-            ncol_ = colIndices_.length;
-
-            for ( int icol = 0; icol < ncol_; icol++ ) {
-                ColumnInfo info = table.getColumnInfo( icol );
-                if ( ! Comparable.class
-                      .isAssignableFrom( info.getContentClass() ) ) {
-                    throw new IOException( "Column " + info + 
-                                           " has no defined sort order" );
+         * @param  keys  sort keys, most significant first
+         */
+        SortCollector( SortKey[] keys ) {
+            order_ = new RowOrder( keys );
+        }
+
+        public SortedRun createAccumulator() {
+            return new SortedRun();
+        }
+
+        public void accumulateRows( RowSplittable rseq, SortedRun run )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            int[] indices = new int[ (int) rseq.splittableSize() ];
+            int n = 0;
+            while ( rseq.next() ) {
+                if ( n == indices.length ) {
+                    indices = Arrays.copyOf( indices, 2 * n + 16 );
                 }
+                indices[ n++ ] = (int) rowIndex.getAsLong();
+            }
+            if ( n < indices.length ) {
+                indices = Arrays.copyOf( indices, n );
             }
+            sortRun( indices, order_ );
+            run.indices_ = merge( run.indices_, indices, order_ );
         }
 
+        public SortedRun combine( SortedRun run1, SortedRun run2 ) {
+            run1.indices_ = merge( run1.indices_, run2.indices_, order_ );
+            return run1;
+        }
+    }
+
+    /**
+     * Holds the values of one sort key for all the rows of a table.
+     */
+    private static abstract class SortKey {
+        final int sense_;
+        final int nullCmp_;
+
         /**
-         * Compares two Numbers.
+         * Constructor.
+         *
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
          */
-        public int compare( Number num1, Number num2 ) {
-            long irow1 = num1.longValue();
-            long irow2 = num2.longValue();
-            int c = 0;
-            for ( int i = 0; i < ncol_ && c == 0; i++ ) {
-                int icol = colIndices_[ i ];
-                Object val1;
-                Object val2;
-                try {
-                    val1 = table_.getCell( irow1, icol );
-                    val2 = table_.getCell( irow2, icol );
+        SortKey( boolean up, boolean nullsLast ) {
+            sense_ = up ? +1 : -1;
+            nullCmp_ = ( up ^ nullsLast ) ? -1 : +1;
+        }
+
+        /**
+         * Sets the key value for a given row.
+         * Depending on the implementation, this may be called
+         * concurrently for different rows, or it may be required to
+         * be called for each row in sequence.
+         *
+         * @param  irow  row index
+         * @param  value  cell value
+         */
+        abstract void setValue( int irow, Object value ) throws IOException;
+
+        /**
+         * Called after all values have been supplied sequentially.
+         * The default implementation does nothing.
+         */
+        void endValues() throws IOException {
+        }
+
+        /**
+         * Compares the key values for two rows.
+         *
+         * @param  irow1  first row index
+         * @param  irow2  second row index
+         * @return  comparison result taking account of sense and blanks
+         */
+        abstract int compare( int irow1, int irow2 );
+
+        /**
+         * Releases resources.  The default implementation does nothing.
+         */
+        void close() {
+        }
+
+        /**
+         * Comparison result for two values given their blankness.
+         * Only valid if at least one is blank.
+         *
+         * @param  null1  whether first value is blank
+         * @param  null2  whether second value is blank
+         * @return  comparison result
+         */
+        int compareNulls( boolean null1, boolean null2 ) {
+            if ( null1 && null2 ) {
+                return 0;
+            }
+            else {
+                return null1 ? nullCmp_ : -nullCmp_;
+            }
+        }
+    }
+
+    /**
+     * Sort key which stores Comparable objects.
+     */
+    private static class ObjectKey extends SortKey {
+        private final Comparable<?>[] values_;
+
+        /**
+         * Constructor.
+         *
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
+         * @param   nrow  row count
+         */
+        ObjectKey( boolean up, boolean nullsLast, int nrow ) {
+            super( up, nullsLast );
+            values_ = new Comparable<?>[ nrow ];
+        }
+
+        void setValue( int irow, Object value ) {
+            if ( ! Tables.isBlank( value ) ) {
+                if ( value instanceof Comparable ) {
+                    values_[ irow ] = (Comparable<?>) value;
                 }
-                catch ( IOException e ) {
-                    throw new SortException( "Sort Error", e );
+                else {
+                    throw new SortException( "Uncomparable value "
+                                           + value.getClass().getName(),
+                                             null );
                 }
-                try {
-                    c = compareValues( (Comparable<?>) val1,
-                                       (Comparable<?>) val2 );
+            }
+        }
+
+        @SuppressWarnings({"rawtypes","unchecked"})
+        int compare( int irow1, int irow2 ) {
+            Comparable v1 = values_[ irow1 ];
+            Comparable v2 = values_[ irow2 ];
+            if ( v1 == null || v2 == null ) {
+                return compareNulls( v1 == null, v2 == null );
+            }
+            try {
+                return sense_ * v1.compareTo( v2 );
+            }
+            catch ( ClassCastException e ) {
+                throw new SortException(
+                    "Expression comparison error during sorting", e );
+            }
+        }
+    }
+
+    /**
+     * Sort key which stores values as long integers whose natural
+     * ordering matches that of the values they represent.
+     */
+    private static abstract class LongKey extends SortKey {
+        private final boolean isFloating_;
+        final boolean[] nulls_;
+
+        /**
+         * Constructor.
+         *
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
+         * @param   isFloating  true for floating point values
+         * @param   isLong   true for 64-bit integer values
+         * @param   nrow  row count
+         */
+        LongKey( boolean up, boolean nullsLast, boolean isFloating,
+                 boolean isLong, int nrow ) {
+            super( up, nullsLast );
+            isFloating_ = isFloating;
+            nulls_ = isLong ? new boolean[ nrow ] : null;
+        }
+
+        /**
+         * Returns the sortable code for a given row.
+         *
+         * @param  irow  row index
+         * @return  code
+         */
+        abstract long getCode( int irow );
+
+        /**
+         * Converts a cell value to a sortable code.
+         * If this key uses a separate null flag array, it is updated.
+         *
+         * @param  irow  row index
+         * @param  value  cell value
+         * @return   sortable code
+         */
+        long toCode( int irow, Object value ) {
+            if ( isFloating_ ) {
+                double dval = value instanceof Number
+                            ? ((Number) value).doubleValue()
+                            : Double.NaN;
+                if ( Double.isNaN( dval ) ) {
+                    return NAN_CODE;
                 }
-                catch ( ClassCastException e ) {
-                    throw new SortException(
-                        "Expression comparison error during sorting", e );
+                long bits = Double.doubleToLongBits( dval );
+                return bits ^ ( ( bits >> 63 ) & Long.MAX_VALUE );
+            }
+            else if ( value instanceof Number ) {
+                return ((Number) value).longValue();
+            }
+            else {
+                if ( nulls_ != null ) {
+                    nulls_[ irow ] = true;
                 }
+                return INT_NULL_CODE;
+            }
+        }
+
+        int compare( int irow1, int irow2 ) {
+            long c1 = getCode( irow1 );
+            long c2 = getCode( irow2 );
+            boolean null1 = isNull( irow1, c1 );
+            boolean null2 = isNull( irow2, c2 );
+            if ( null1 || null2 ) {
+                return compareNulls( null1, null2 );
+            }
+            else {
+                return sense_ * Long.compare( c1, c2 );
             }
-            return c;
         }
 
         /**
-         * Compares two values.  Each value is the content of a cell in 
-         * a table - <tt>o1</tt> and <tt>o2</tt> should be from the same
-         * column.  Either or both may be null.
+         * Indicates whether the value for a given row is blank.
          *
-         * @param  o1  first value
-         * @param  o2  second value
-         * @return  +1, 0, or -1 according to o1 greater than, equal to, or
-         *          less than o2
+         * @param  irow  row index
+         * @param  code  sortable code for row
+         * @return  true iff blank
          */
-        @SuppressWarnings({"rawtypes","unchecked"})
-        private int compareValues( Comparable o1, Comparable o2 ) {
-            boolean null1 = Tables.isBlank( o1 );
-            boolean null2 = Tables.isBlank( o2 );
-            if ( null1 && null2 ) {
-                return 0;
+        private boolean isNull( int irow, long code ) {
+            if ( isFloating_ ) {
+                return code == NAN_CODE;
             }
-            else if ( null1 ) {
-                return ( up_ ^ nullsLast_ ) ? -1 : +1;
-            }
-            else if ( null2 ) {
-                return ( up_ ^ nullsLast_ ) ? +1 : -1;
+            else if ( nulls_ != null ) {
+                return nulls_[ irow ];
             }
             else {
-                return up_ ? o1.compareTo( o2 )
-                           : o2.compareTo( o1 );
+                return code == INT_NULL_CODE;
+            }
+        }
+    }
+
+    /**
+     * LongKey implementation that stores codes in a heap array.
+     * Values may be set concurrently for different rows.
+     */
+    private static class ArrayLongKey extends LongKey {
+        private final long[] codes_;
+
+        /**
+         * Constructor.
+         *
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
+         * @param   isFloating  true for floating point values
+         * @param   isLong   true for 64-bit integer values
+         * @param   nrow  row count
+         */
+        ArrayLongKey( boolean up, boolean nullsLast, boolean isFloating,
+                      boolean isLong, int nrow ) {
+            super( up, nullsLast, isFloating, isLong, nrow );
+            codes_ = new long[ nrow ];
+        }
+
+        void setValue( int irow, Object value ) {
+            codes_[ irow ] = toCode( irow, value );
+        }
+
+        long getCode( int irow ) {
+            return codes_[ irow ];
+        }
+    }
+
+    /**
+     * LongKey implementation that stores codes in a ByteStore.
+     * Values must be set sequentially.
+     */
+    private static class StoreLongKey extends LongKey {
+        private final ByteStore store_;
+        private final DataOutputStream out_;
+        private final int nrow_;
+        private LongBuffer[] bufs_;
+        private int bufLeng_;
+
+        /**
+         * Constructor.
+         *
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
+         * @param   isFloating  true for floating point values
+         * @param   isLong   true for 64-bit integer values
+         * @param   nrow  row count
+         * @param   store  scratch storage
+         */
+        StoreLongKey( boolean up, boolean nullsLast, boolean isFloating,
+                      boolean isLong, int nrow, ByteStore store ) {
+            super( up, nullsLast, isFloating, isLong, nrow );
+            nrow_ = nrow;
+            store_ = store;
+            out_ = new DataOutputStream(
+                       new BufferedOutputStream( store.getOutputStream() ) );
+        }
+
+        void setValue( int irow, Object value ) throws IOException {
+            out_.writeLong( toCode( irow, value ) );
+        }
+
+        void endValues() throws IOException {
+            out_.close();
+            ByteBuffer[] bbufs = store_.toByteBuffers();
+            int nbuf = bbufs.length;
+            bufs_ = new LongBuffer[ nbuf ];
+            for ( int ib = 0; ib < nbuf; ib++ ) {
+                ByteBuffer bbuf = bbufs[ ib ];
+                if ( ib < nbuf - 1 && bbuf.limit() % 8 != 0 ) {
+                    throw new IOException( "Misaligned scratch buffers" );
+                }
+                bufs_[ ib ] = bbuf.asLongBuffer();
             }
+            bufLeng_ = nbuf > 0 ? bufs_[ 0 ].limit() : 0;
+            logger_.config( "Sort key for " + nrow_ + " rows in "
+                        + nbuf + " scratch buffer(s)" );
+        }
+
+        long getCode( int irow ) {
+            return nrow_ <= bufLeng_
+                 ? bufs_[ 0 ].get( irow )
+                 : bufs_[ irow / bufLeng_ ].get( irow % bufLeng_ );
+        }
+
+        void close() {
+            store_.close();
         }
     }
 
     /**
-     * Runtime exception which can be thrown from methods invoked by 
-     * Arrays.sort.
+     * Runtime exception which can be thrown from methods invoked
+     * during sorting.
      */
     private static class SortException extends RuntimeException {
 
+        private static final long serialVersionUID = 1L;
+
         /**
          * Constructor.
          *
@@ -185,5 +873,4 @@ class TableSorter {
                                 .initCause( error );
         }
     }
-
 }
@@ -101,6 +101,25 @@ public class Tables {
         return StoragePolicy.getDefaultPolicy().randomTable( startab );
     }
 
+    /**
+     * Returns a RowSplittable object with generic characteristics
+     * for a given table.
+     * For a random-access table with a known row count, the result
+     * will split into contiguous row ranges read using the table's
+     * random access methods.  Otherwise, it will be based on the
+     * table's RowSequence and will not be splittable.
+     *
+     * @param  table  table
+     * @return  new RowSplittable
+     * @see   StarTable#getRowSplittable
+     */
+    public static RowSplittable getDefaultRowSplittable( StarTable table )
+            throws IOException {
+        return table.isRandom() && table.getRowCount() >= 0
+             ? new RandomRowSplittable( table )
+             : new SequentialRowSplittable( table );
+    }
+
     /**
      * Convenience method to return an array of all the column headers
      * in a given table.  Modifying this array will not affect the table.
@@ -385,6 +404,9 @@ public class Tables {
     public static StarTable sortTable( StarTable table, int[] colIndices,
                                        boolean up, boolean nullsLast )
             throws IOException {
+        if ( ! table.isRandom() ) {
+            throw new IOException( "Table does not have random access" );
+        }
         long[] rowMap =
             TableSorter.getSortedOrder( table, colIndices, up, nullsLast );
         return new RowPermutedStarTable( table, rowMap );
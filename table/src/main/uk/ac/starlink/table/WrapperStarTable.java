@@ -103,6 +103,20 @@ public class WrapperStarTable implements StarTable {
         return baseTable.getRowSequence();
     }
 
+    /**
+     * The <tt>WrapperStarTable</tt> implementation of this method
+     * returns the result of
+     * {@link Tables#getDefaultRowSplittable
+     *         Tables.getDefaultRowSplittable}<tt>(this)</tt>.
+     * This is safe for subclasses which override the data access
+     * methods, but subclasses which leave the row data unchanged
+     * may do better to delegate to the base table's
+     * <tt>getRowSplittable</tt> method.
+     */
+    public RowSplittable getRowSplittable() throws IOException {
+        return Tables.getDefaultRowSplittable( this );
+    }
+
     public boolean isRandom() {
         return baseTable.isRandom();
     }
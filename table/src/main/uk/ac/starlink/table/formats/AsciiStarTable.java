@@ -129,7 +129,7 @@ public class AsciiStarTable extends StreamStarTable {
         }
 
         /* Try to make use of any comment lines we read. */
-        interpretComments( meta.colInfos_ );
+        interpretComments( comments_, meta.colInfos_, getParameters() );
         comments_ = null;
 
         return meta;
@@ -140,16 +140,23 @@ public class AsciiStarTable extends StreamStarTable {
      * It may make changes to the initial <tt>colInfos</tt> set with
      * which it is provided.
      *
+     * @param  comments  comment lines preceding the first data row;
+     *                   this list may be modified
      * @param  colInfos  column infos already worked out for this table
+     * @param  params   table parameter list, to which a description
+     *                  parameter may be added
      */
-    private void interpretComments( ColumnInfo[] colInfos ) throws IOException {
-        trimLines( comments_ );
+    static void interpretComments( List<String> comments,
+                                   ColumnInfo[] colInfos,
+                                   List<DescribedValue> params )
+            throws IOException {
+        trimLines( comments );
         int ncol = colInfos.length;
 
         /* Try to interpret the last remaining comment line as a set of
          * column headings. */
-        if ( comments_.size() > 0 ) {
-            String hline = comments_.get( comments_.size() - 1 );
+        if ( comments.size() > 0 ) {
+            String hline = comments.get( comments.size() - 1 );
             List<String> headings =
                 readHeadings( new PushbackInputStream(
                               new ByteArrayInputStream( hline.getBytes() ) ) );
@@ -158,19 +165,19 @@ public class AsciiStarTable extends StreamStarTable {
              * right number of fields) modify the colinfos accordingly and
              * remove it from the set of comments. */
             if ( headings.size() == ncol ) {
-                comments_.remove( comments_.size() - 1 );
+                comments.remove( comments.size() - 1 );
                 for ( int i = 0; i < ncol; i++ ) {
                     colInfos[ i ].setName( headings.get( i ) );
                 }
-                trimLines( comments_ );
+                trimLines( comments );
             }
         }
 
         /* If there are any other comment lines, concatenate them and bung
          * them into a description parameter. */
-        if ( comments_.size() > 0 ) {
+        if ( comments.size() > 0 ) {
             StringBuffer dbuf = new StringBuffer();
-            for ( Iterator<String> it = comments_.iterator(); it.hasNext(); ) {
+            for ( Iterator<String> it = comments.iterator(); it.hasNext(); ) {
                 dbuf.append( it.next() );
                 if ( it.hasNext() ) {
                     dbuf.append( '\n' );
@@ -179,8 +186,8 @@ public class AsciiStarTable extends StreamStarTable {
             ValueInfo descriptionInfo =
                 new DefaultValueInfo( "Description", String.class,
                                       "Comments included in text file" );
-            getParameters().add( new DescribedValue( descriptionInfo,
-                                                     dbuf.toString() ) );
+            params.add( new DescribedValue( descriptionInfo,
+                                            dbuf.toString() ) );
         }
     }
 
@@ -288,7 +295,8 @@ public class AsciiStarTable extends StreamStarTable {
      *          inside the string
      * @throws  IOException  if some I/O error occurs
      */
-    private String readString( InputStream stream ) throws IOException {
+    private static String readString( InputStream stream )
+            throws IOException {
         char delimiter = (char) stream.read();
         StringBuffer buffer = new StringBuffer();
         while ( true ) {
@@ -325,7 +333,8 @@ public class AsciiStarTable extends StreamStarTable {
      * @return  the token that was read
      * @throws  IOException  if an I/O error occurs
      */
-    private String readToken( PushbackInputStream stream ) throws IOException {
+    private static String readToken( PushbackInputStream stream )
+            throws IOException {
         StringBuffer buffer = new StringBuffer();
         for ( boolean done = false; ! done; ) {
             int c = stream.read();
@@ -357,7 +366,7 @@ public class AsciiStarTable extends StreamStarTable {
      *
      * @param  stream  the input stream
      */
-    private List<String> readHeadings( PushbackInputStream stream )
+    private static List<String> readHeadings( PushbackInputStream stream )
             throws IOException {
         List<String> headings = new ArrayList<String>();
         for ( boolean done = false; ! done; ) {
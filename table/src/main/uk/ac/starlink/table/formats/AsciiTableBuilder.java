@@ -3,6 +3,7 @@ package uk.ac.starlink.table.formats;
 import java.awt.datatransfer.DataFlavor;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.logging.Logger;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableBuilder;
@@ -14,11 +15,16 @@ import uk.ac.starlink.util.DataSource;
  * A table builder which reads tables in simple ASCII format.
  * The detailed format of input file which is understood is documented
  * fully in the {@link AsciiStarTable} class.
+ * Uncompressed files are read using a {@link MappedAsciiStarTable},
+ * which can process the data in parallel.
  *
  * @author   Mark Taylor (Starlink)
  */
 public class AsciiTableBuilder implements TableBuilder {
 
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.formats" );
+
     public String getFormatName() {
         return "ASCII";
     }
@@ -30,6 +36,16 @@ public class AsciiTableBuilder implements TableBuilder {
     public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
                                     StoragePolicy policy )
             throws TableFormatException, IOException {
+        if ( MappedTextStarTable.isMappable( datsrc ) ) {
+            try {
+                return new MappedAsciiStarTable( datsrc );
+            }
+            catch ( MappedTextStarTable.ChunkBoundaryException e ) {
+                logger_.info( "Can't read " + datsrc.getName()
+                            + " in parallel chunks (" + e.getMessage()
+                            + "); falling back to sequential read" );
+            }
+        }
         return new AsciiStarTable( datsrc );
     }
 
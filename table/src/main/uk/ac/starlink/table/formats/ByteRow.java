@@ -0,0 +1,400 @@
+package uk.ac.starlink.table.formats;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the cells of a single text table row that has been tokenised
+ * from a byte buffer.
+ * Most cells are represented as a range of bytes in the buffer,
+ * interpreted as ISO-8859-1 characters, so that no String objects
+ * need be created for them.  Cells that require unescaping or
+ * other transformation are stored as Strings instead.
+ *
+ * <p>Methods are also provided to parse numeric cell values
+ * directly from the bytes.
+ *
+ * <p>Instances are mutable and are intended for reuse from row to row;
+ * they are not thread-safe.
+ *
+ * @since    18 Oct 2026
+ */
+class ByteRow {
+
+    private ByteBuffer buf_;
+    private int ncell_;
+    private int[] offs_;
+    private int[] lengs_;
+    private String[] strs_;
+    private long longValue_;
+    private double doubleValue_;
+    private int sigFig_;
+    private boolean isNegative_;
+
+    /** Return value of parseNumber for cells that are not simple numbers. */
+    public static final int NOT_NUMBER = 0;
+
+    /** Return value of parseNumber for integer cells. */
+    public static final int INTEGER = 1;
+
+    /** Return value of parseNumber for decimal or exponential cells. */
+    public static final int DECIMAL = 2;
+
+    /** Powers of ten exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = new double[] {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22,
+    };
+
+    /**
+     * Constructor.
+     */
+    public ByteRow() {
+        offs_ = new int[ 16 ];
+        lengs_ = new int[ 16 ];
+        strs_ = new String[ 16 ];
+    }
+
+    /**
+     * Resets this row to contain no cells, and sets the buffer
+     * to which subsequently added byte ranges refer.
+     *
+     * @param  buf  byte buffer
+     */
+    public void clear( ByteBuffer buf ) {
+        buf_ = buf;
+        ncell_ = 0;
+    }
+
+    /**
+     * Returns the number of cells currently in this row.
+     *
+     * @return  cell count
+     */
+    public int getCellCount() {
+        return ncell_;
+    }
+
+    /**
+     * Adds a cell represented by a range of bytes in this row's buffer.
+     * Leading and trailing whitespace is trimmed,
+     * as for {@link java.lang.String#trim}.
+     *
+     * @param  off  offset into buffer of first byte
+     * @param  end  offset into buffer after last byte
+     */
+    public void addRange( int off, int end ) {
+        while ( off < end && ( buf_.get( off ) & 0xff ) <= ' ' ) {
+            off++;
+        }
+        while ( end > off && ( buf_.get( end - 1 ) & 0xff ) <= ' ' ) {
+            end--;
+        }
+        int ic = nextCell();
+        offs_[ ic ] = off;
+        lengs_[ ic ] = end - off;
+        strs_[ ic ] = null;
+    }
+
+    /**
+     * Adds a cell represented by a range of bytes in this row's buffer,
+     * without trimming.
+     *
+     * @param  off  offset into buffer of first byte
+     * @param  end  offset into buffer after last byte
+     */
+    public void addRawRange( int off, int end ) {
+        int ic = nextCell();
+        offs_[ ic ] = off;
+        lengs_[ ic ] = end - off;
+        strs_[ ic ] = null;
+    }
+
+    /**
+     * Adds a cell represented by a string.
+     *
+     * @param  txt  cell content, not null
+     */
+    public void addString( String txt ) {
+        int ic = nextCell();
+        strs_[ ic ] = txt;
+        lengs_[ ic ] = txt.length();
+    }
+
+    /**
+     * Indicates whether a given cell is represented by a byte range
+     * rather than a string.
+     *
+     * @param  icell  cell index
+     * @return  true for a byte range
+     */
+    public boolean isRange( int icell ) {
+        return strs_[ icell ] == null;
+    }
+
+    /**
+     * Returns the untrimmed length in characters of a given cell.
+     *
+     * @param  icell  cell index
+     * @return  cell length
+     */
+    public int getLength( int icell ) {
+        return lengs_[ icell ];
+    }
+
+    /**
+     * Indicates whether a given cell is empty or contains only whitespace.
+     *
+     * @param  icell  cell index
+     * @return  true iff blank
+     */
+    public boolean isBlank( int icell ) {
+        String str = strs_[ icell ];
+        if ( str != null ) {
+            return str.trim().length() == 0;
+        }
+        else {
+            int off = offs_[ icell ];
+            int end = off + lengs_[ icell ];
+            for ( int i = off; i < end; i++ ) {
+                if ( ( buf_.get( i ) & 0xff ) > ' ' ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the content of a given cell as a string.
+     *
+     * @param  icell  cell index
+     * @return  cell content
+     */
+    public String getString( int icell ) {
+        String str = strs_[ icell ];
+        if ( str != null ) {
+            return str;
+        }
+        else {
+            int off = offs_[ icell ];
+            int leng = lengs_[ icell ];
+            char[] chrs = new char[ leng ];
+            for ( int i = 0; i < leng; i++ ) {
+                chrs[ i ] = (char) ( buf_.get( off + i ) & 0xff );
+            }
+            return new String( chrs );
+        }
+    }
+
+    /**
+     * Returns the content of this row as a list of strings.
+     *
+     * @return  ncell-element list
+     */
+    public List<String> toList() {
+        List<String> list = new ArrayList<String>( ncell_ );
+        for ( int ic = 0; ic < ncell_; ic++ ) {
+            list.add( getString( ic ) );
+        }
+        return list;
+    }
+
+    /**
+     * Attempts to parse the content of a byte range cell as a number.
+     * Integers matching <code>[+-]?[0-9]{1,18}</code> and
+     * decimal or exponential numbers in which the exponent
+     * may be introduced by one of the characters "<code>eEdD</code>"
+     * are understood.  If the return value is not {@link #NOT_NUMBER},
+     * the parsed values may be retrieved using the
+     * {@link #getLongValue}, {@link #getDoubleValue} and {@link #getSigFig}
+     * methods.  Other numeric representations, including special values
+     * like NaN, are not recognised by this method;
+     * the string representation must be used for those.
+     *
+     * @param  icell  cell index
+     * @return  one of {@link #NOT_NUMBER}, {@link #INTEGER}
+     *          or {@link #DECIMAL}
+     */
+    public int parseNumber( int icell ) {
+        if ( strs_[ icell ] != null ) {
+            return NOT_NUMBER;
+        }
+        int off = offs_[ icell ];
+        int end = off + lengs_[ icell ];
+        int ip = off;
+        if ( ip >= end ) {
+            return NOT_NUMBER;
+        }
+        byte b0 = buf_.get( ip );
+        boolean isNeg = b0 == '-';
+        if ( isNeg || b0 == '+' ) {
+            ip++;
+        }
+
+        /* Read mantissa digits, accumulating up to 18 significant ones. */
+        long mantissa = 0;
+        int nDigit = 0;
+        int nSig = 0;
+        int nDropped = 0;
+        int nFrac = 0;
+        boolean hasPoint = false;
+        for ( ; ip < end; ip++ ) {
+            byte b = buf_.get( ip );
+            if ( b >= '0' && b <= '9' ) {
+                nDigit++;
+                if ( hasPoint ) {
+                    nFrac++;
+                }
+                if ( nSig > 0 || b != '0' ) {
+                    if ( nSig < 18 ) {
+                        mantissa = mantissa * 10 + ( b - '0' );
+                        nSig++;
+                    }
+                    else {
+                        nDropped++;
+                    }
+                }
+            }
+            else if ( b == '.' && ! hasPoint ) {
+                hasPoint = true;
+            }
+            else {
+                break;
+            }
+        }
+        if ( nDigit == 0 ) {
+            return NOT_NUMBER;
+        }
+
+        /* Read exponent if present. */
+        boolean hasExp = false;
+        int exp = 0;
+        if ( ip < end ) {
+            byte b = buf_.get( ip++ );
+            if ( b != 'e' && b != 'E' && b != 'd' && b != 'D' ) {
+                return NOT_NUMBER;
+            }
+            hasExp = true;
+            boolean expNeg = false;
+            if ( ip < end ) {
+                byte bs = buf_.get( ip );
+                if ( bs == '-' || bs == '+' ) {
+                    expNeg = bs == '-';
+                    ip++;
+                }
+            }
+            if ( ip >= end ) {
+                return NOT_NUMBER;
+            }
+            for ( ; ip < end; ip++ ) {
+                byte bx = buf_.get( ip );
+                if ( bx >= '0' && bx <= '9' ) {
+                    if ( exp < 100000 ) {
+                        exp = exp * 10 + ( bx - '0' );
+                    }
+                }
+                else {
+                    return NOT_NUMBER;
+                }
+            }
+            if ( expNeg ) {
+                exp = -exp;
+            }
+        }
+        sigFig_ = nDigit;
+        isNegative_ = isNeg;
+
+        /* Integer case. */
+        if ( ! hasPoint && ! hasExp ) {
+            if ( nDropped > 0 ) {
+                return NOT_NUMBER;
+            }
+            longValue_ = isNeg ? -mantissa : mantissa;
+            doubleValue_ = isNeg ? -(double) mantissa : (double) mantissa;
+            return INTEGER;
+        }
+
+        /* Floating point case.  Where the mantissa and power of ten
+         * are both exactly representable, a single multiplication or
+         * division gives the correctly rounded result;
+         * otherwise defer to the JDK parser. */
+        int exp10 = exp + nDropped - nFrac;
+        double dval;
+        if ( mantissa == 0 ) {
+            dval = 0.0;
+        }
+        else if ( nSig <= 15 && exp10 >= -22 && exp10 <= 22 ) {
+            dval = exp10 >= 0 ? mantissa * POWERS_OF_TEN[ exp10 ]
+                              : mantissa / POWERS_OF_TEN[ -exp10 ];
+        }
+        else {
+            char[] chrs = new char[ end - off ];
+            for ( int i = 0; i < chrs.length; i++ ) {
+                char c = (char) ( buf_.get( off + i ) & 0xff );
+                chrs[ i ] = c == 'd' || c == 'D' ? 'e' : c;
+            }
+            dval = Math.abs( Double.parseDouble( new String( chrs ) ) );
+        }
+        doubleValue_ = isNeg ? -dval : dval;
+        return DECIMAL;
+    }
+
+    /**
+     * Returns the integer value from the most recent successful call
+     * of {@link #parseNumber} that returned {@link #INTEGER}.
+     *
+     * @return  integer value
+     */
+    public long getLongValue() {
+        return longValue_;
+    }
+
+    /**
+     * Returns the floating point value from the most recent successful call
+     * of {@link #parseNumber}.
+     *
+     * @return  floating point value
+     */
+    public double getDoubleValue() {
+        return doubleValue_;
+    }
+
+    /**
+     * Returns the number of mantissa digits from the most recent
+     * successful call of {@link #parseNumber}.
+     *
+     * @return  number of digits before any exponent
+     */
+    public int getSigFig() {
+        return sigFig_;
+    }
+
+    /**
+     * Indicates whether the most recent successful call of
+     * {@link #parseNumber} found a leading minus sign.
+     *
+     * @return  true iff the number was written with a minus sign
+     */
+    public boolean isNegative() {
+        return isNegative_;
+    }
+
+    /**
+     * Returns the index of the next cell, enlarging storage if required.
+     *
+     * @return  index of new cell
+     */
+    private int nextCell() {
+        if ( ncell_ == offs_.length ) {
+            int leng = ncell_ * 2;
+            offs_ = Arrays.copyOf( offs_, leng );
+            lengs_ = Arrays.copyOf( lengs_, leng );
+            strs_ = Arrays.copyOf( strs_, leng );
+        }
+        return ncell_++;
+    }
+}
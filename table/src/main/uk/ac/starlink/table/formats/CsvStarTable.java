@@ -93,48 +93,73 @@ public class CsvStarTable extends StreamStarTable {
         if ( meta.nrow_ == 0 ) {
             throw new TableFormatException( "No rows" );
         }
-        RowEvaluator.Decoder[] decoders = meta.decoders_;
-        int ncol = meta.ncol_;
 
-        /* Now return to the first row.  See if it's a data row. */
-        if ( row0.length == ncol ) {
-            boolean isDataRow = true;
-            for ( int icol = 0; icol < ncol; icol++ ) {
-                String cell = row0[ icol ];
-                if ( cell != null && cell.length() > 0 ) {
-                    isDataRow = isDataRow
-                             && decoders[ icol ].isValid( cell );
-                }
-            }
+        /* Now return to the first row.  If it's a data row, present it
+         * to the row evaluator like the other rows, and return the
+         * metadata thus constructed. */
+        if ( isDataRow( row0, meta ) ) {
+            evaluator.submitRow( Arrays.asList( row0 ) );
+            return evaluator.getMetadata();
+        }
 
-            /* If it is a data row, present it to the row evaluator like
-             * the other rows, and return the metadata thus constructed. */
-            if ( isDataRow ) {
-                evaluator.submitRow( Arrays.asList( row0 ) );
-                return evaluator.getMetadata();
+        /* Otherwise, it's a headings row or some sort of comment;
+         * get column names from it if possible. */
+        else {
+            hasHeading_ = true;
+            return applyHeadings( row0, meta );
+        }
+    }
+
+    /**
+     * Determines whether the first row of a CSV table looks like
+     * a data row, given metadata obtained from the other rows.
+     *
+     * @param  row0  cells of first row
+     * @param  meta  metadata for subsequent rows
+     * @return  true if <code>row0</code> is a data row,
+     *          false if it is a headings row or should otherwise be ignored
+     */
+    static boolean isDataRow( String[] row0, RowEvaluator.Metadata meta ) {
+        int ncol = meta.ncol_;
+        if ( row0.length != ncol ) {
+            return false;
+        }
+        RowEvaluator.Decoder[] decoders = meta.decoders_;
+        boolean isDataRow = true;
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            String cell = row0[ icol ];
+            if ( cell != null && cell.length() > 0 ) {
+                isDataRow = isDataRow
+                         && decoders[ icol ].isValid( cell );
             }
+        }
+        return isDataRow;
+    }
 
-            /* If it's a headings row, get column names from it, and
-             * construct and return a suitable metadata item. */
-            else {
-                assert ! isDataRow;
-                hasHeading_ = true;
-                ColumnInfo[] colinfos = meta.colInfos_;
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    String h = row0[ icol ];
-                    if ( h != null && h.trim().length() > 0 ) {
-                        colinfos[ icol ].setName( h );
-                    }
+    /**
+     * Returns metadata for a CSV table whose first row is not a data row.
+     * If the first row has the right number of elements, they are used
+     * as column names.  If not, it is ignored (some sort of comment?).
+     *
+     * @param  row0  cells of first row
+     * @param  meta  metadata for subsequent rows
+     * @return   metadata for table
+     */
+    static RowEvaluator.Metadata applyHeadings( String[] row0,
+                                                RowEvaluator.Metadata meta ) {
+        int ncol = meta.ncol_;
+        if ( row0.length == ncol ) {
+            ColumnInfo[] colinfos = meta.colInfos_;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                String h = row0[ icol ];
+                if ( h != null && h.trim().length() > 0 ) {
+                    colinfos[ icol ].setName( h );
                 }
-                return new RowEvaluator.Metadata( colinfos, decoders,
-                                                  meta.nrow_ );
             }
+            return new RowEvaluator.Metadata( colinfos, meta.decoders_,
+                                              meta.nrow_ );
         }
-
-        /* If the first row has the wrong number of elements just ignore it 
-         * (some sort of comment?) and use the metadata we've got. */
         else {
-            hasHeading_ = true;
             return meta;
         }
     }
@@ -3,6 +3,7 @@ package uk.ac.starlink.table.formats;
 import java.awt.datatransfer.DataFlavor;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.logging.Logger;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableBuilder;
@@ -14,12 +15,17 @@ import uk.ac.starlink.util.DataSource;
  * A table builder which reads tables in Comma-Separated Values format.
  * The detailed format of input file which is understood is documented
  * fully in the {@link CsvStarTable} class.
+ * Uncompressed files are read using a {@link MappedCsvStarTable},
+ * which can process the data in parallel.
  *
  * @author   Mark Taylor (Starlink)
  * @since    21 Sep 2004
  */
 public class CsvTableBuilder implements TableBuilder {
 
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.formats" );
+
     public String getFormatName() {
         return "CSV";
     }
@@ -31,6 +37,16 @@ public class CsvTableBuilder implements TableBuilder {
     public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
                                     StoragePolicy policy )
             throws TableFormatException, IOException {
+        if ( MappedTextStarTable.isMappable( datsrc ) ) {
+            try {
+                return new MappedCsvStarTable( datsrc );
+            }
+            catch ( MappedTextStarTable.ChunkBoundaryException e ) {
+                logger_.info( "Can't read " + datsrc.getName()
+                            + " in parallel chunks (" + e.getMessage()
+                            + "); falling back to sequential read" );
+            }
+        }
         return new CsvStarTable( datsrc );
     }
 
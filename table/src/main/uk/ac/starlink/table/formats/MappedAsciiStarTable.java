@@ -0,0 +1,205 @@
+package uk.ac.starlink.table.formats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.util.DataSource;
+
+/**
+ * Simple ASCII-format table read from a memory-mapped file.
+ * The format understood is as documented for {@link AsciiStarTable},
+ * but the data is read using the chunked, parallelisable strategy
+ * of {@link MappedTextStarTable}.
+ *
+ * <p>Since quoted strings may contain a backslash-escaped line break,
+ * it is possible that a chunk boundary falls within a quoted string.
+ * In that case construction fails with a
+ * {@link MappedTextStarTable.ChunkBoundaryException},
+ * and the table should be read using an {@link AsciiStarTable} instead.
+ *
+ * @since    18 Oct 2026
+ */
+public class MappedAsciiStarTable extends MappedTextStarTable {
+
+    /**
+     * Constructs a table with the default chunk size.
+     *
+     * @param  datsrc  data source, which must be
+     *                 {@link MappedTextStarTable#isMappable mappable}
+     */
+    public MappedAsciiStarTable( DataSource datsrc )
+            throws TableFormatException, IOException {
+        this( datsrc, DFLT_CHUNK_SIZE );
+    }
+
+    /**
+     * Constructs a table with a given chunk size.
+     *
+     * @param  datsrc  data source, which must be
+     *                 {@link MappedTextStarTable#isMappable mappable}
+     * @param  chunkSize  nominal size in bytes of the chunks into which
+     *                    the file is divided for processing
+     */
+    public MappedAsciiStarTable( DataSource datsrc, int chunkSize )
+            throws TableFormatException, IOException {
+        super();
+        init( datsrc, chunkSize );
+    }
+
+    RowEvaluator.Metadata createMetadata( List<String> row0,
+                                          RowEvaluator evaluator,
+                                          List<String> comments )
+            throws TableFormatException, IOException {
+        evaluator.submitRow( row0 );
+        RowEvaluator.Metadata meta = evaluator.getMetadata();
+        AsciiStarTable.interpretComments( comments, meta.colInfos_,
+                                          getParameters() );
+        return meta;
+    }
+
+    @SuppressWarnings("fallthrough")
+    int readRow( ByteBuffer buf, int pos, int end, ByteRow row,
+                 List<String> comments )
+            throws TableFormatException {
+        row.clear( buf );
+        boolean startLine = true;
+        while ( pos < end ) {
+            byte b = buf.get( pos );
+            switch ( b ) {
+                case '\r':
+                case '\n':
+                    pos++;
+                    if ( row.getCellCount() > 0 ) {
+                        return pos;
+                    }
+                    startLine = true;
+                    break;
+                case ' ':
+                case '\t':
+                    pos++;
+                    startLine = false;
+                    break;
+                case '"':
+                case '\'':
+                    pos = readQuoted( buf, pos, end, row );
+                    startLine = false;
+                    break;
+                case '!':
+                    if ( ! startLine ) {
+                        pos = readToken( buf, pos, end, row );
+                        break;
+                    }
+                    // if at start of line fall through to...
+                case '#':
+                    int eol = pos + 1;
+                    while ( eol < end &&
+                            ! MappedCsvStarTable
+                             .isTerminator( buf.get( eol ) ) ) {
+                        eol++;
+                    }
+                    if ( comments != null ) {
+                        comments.add( MappedCsvStarTable
+                                     .bufferString( buf, pos + 1, eol ) );
+                    }
+                    pos = eol;
+                    break;
+                default:
+                    pos = readToken( buf, pos, end, row );
+                    startLine = false;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Reads an unquoted token from a buffer and adds it to a row.
+     * All consecutive non-whitespace characters from the given point
+     * are read.  The token "<code>null</code>" is added as a blank cell.
+     *
+     * @param  buf  buffer
+     * @param  pos  position of token start
+     * @param  end  end of readable region
+     * @param  row  row to which the cell will be added
+     * @return  position following the token
+     */
+    private static int readToken( ByteBuffer buf, int pos, int end,
+                                  ByteRow row ) {
+        int start = pos;
+        while ( pos < end ) {
+            byte b = buf.get( pos );
+            if ( b == ' ' || b == '\t' || b == '\r' || b == '\n' ) {
+                break;
+            }
+            pos++;
+        }
+        if ( pos - start == 4 &&
+             buf.get( start ) == 'n' && buf.get( start + 1 ) == 'u' &&
+             buf.get( start + 2 ) == 'l' && buf.get( start + 3 ) == 'l' ) {
+            row.addRawRange( start, start );
+        }
+        else {
+            row.addRawRange( start, pos );
+        }
+        return pos;
+    }
+
+    /**
+     * Reads a quoted string from a buffer and adds it to a row.
+     * The string may be delimited by single or double quotes.
+     * Any character following a backslash is included literally.
+     * It is an error for the line to end inside the string.
+     *
+     * @param  buf  buffer
+     * @param  pos  position of opening quote
+     * @param  end  end of readable region
+     * @param  row  row to which the cell will be added
+     * @return  position following the closing quote
+     * @throws  TableFormatException  if the line ends inside the string
+     * @throws  ChunkBoundaryException  if the region ends inside the string
+     */
+    private static int readQuoted( ByteBuffer buf, int pos, int end,
+                                   ByteRow row )
+            throws TableFormatException {
+        byte delimiter = buf.get( pos++ );
+        int start = pos;
+        StringBuffer sbuf = null;
+        while ( pos < end ) {
+            byte b = buf.get( pos );
+            if ( b == delimiter ) {
+                if ( sbuf == null ) {
+                    row.addRawRange( start, pos );
+                }
+                else {
+                    sbuf.append( MappedCsvStarTable
+                                .bufferString( buf, start, pos ) );
+                    row.addString( sbuf.toString() );
+                }
+                return pos + 1;
+            }
+            switch ( b ) {
+                case '\r':
+                case '\n':
+                    throw new TableFormatException(
+                        "End of line within a string literal" );
+                case '\\':
+                    if ( pos + 1 >= end ) {
+                        break;
+                    }
+                    if ( sbuf == null ) {
+                        sbuf = new StringBuffer();
+                    }
+                    sbuf.append( MappedCsvStarTable
+                                .bufferString( buf, start, pos ) )
+                        .append( (char) ( buf.get( pos + 1 ) & 0xff ) );
+                    pos += 2;
+                    start = pos;
+                    continue;
+                default:
+            }
+            pos++;
+        }
+        throw new ChunkBoundaryException(
+            "End of file within a string literal" );
+    }
+}
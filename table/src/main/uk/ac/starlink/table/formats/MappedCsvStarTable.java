@@ -0,0 +1,225 @@
+package uk.ac.starlink.table.formats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.util.DataSource;
+
+/**
+ * Comma-Separated Value table read from a memory-mapped file.
+ * The format understood is exactly as documented for {@link CsvStarTable},
+ * but the data is read using the chunked, parallelisable strategy
+ * of {@link MappedTextStarTable}.
+ *
+ * <p>Since quoted CSV cells may contain line breaks, it is possible
+ * that a chunk boundary falls within a quoted cell.  In that case
+ * construction fails with a
+ * {@link MappedTextStarTable.ChunkBoundaryException},
+ * and the table should be read using a {@link CsvStarTable} instead.
+ *
+ * @since    18 Oct 2026
+ */
+public class MappedCsvStarTable extends MappedTextStarTable {
+
+    /**
+     * Constructs a table with the default chunk size.
+     *
+     * @param  datsrc  data source, which must be
+     *                 {@link MappedTextStarTable#isMappable mappable}
+     */
+    public MappedCsvStarTable( DataSource datsrc )
+            throws TableFormatException, IOException {
+        this( datsrc, DFLT_CHUNK_SIZE );
+    }
+
+    /**
+     * Constructs a table with a given chunk size.
+     *
+     * @param  datsrc  data source, which must be
+     *                 {@link MappedTextStarTable#isMappable mappable}
+     * @param  chunkSize  nominal size in bytes of the chunks into which
+     *                    the file is divided for processing
+     */
+    public MappedCsvStarTable( DataSource datsrc, int chunkSize )
+            throws TableFormatException, IOException {
+        super();
+        init( datsrc, chunkSize );
+    }
+
+    RowEvaluator.Metadata createMetadata( List<String> row0,
+                                          RowEvaluator evaluator,
+                                          List<String> comments )
+            throws TableFormatException {
+        RowEvaluator.Metadata meta = evaluator.getMetadata();
+        if ( meta.nrow_ == 0 ) {
+            throw new TableFormatException( "No rows" );
+        }
+        String[] row0s = row0.toArray( new String[ 0 ] );
+        if ( CsvStarTable.isDataRow( row0s, meta ) ) {
+            evaluator.submitRow( row0 );
+            return evaluator.getMetadata();
+        }
+        else {
+            return CsvStarTable.applyHeadings( row0s, meta );
+        }
+    }
+
+    int readRow( ByteBuffer buf, int pos, int end, ByteRow row,
+                 List<String> comments )
+            throws TableFormatException {
+        row.clear( buf );
+
+        /* Skip any line terminators; blank lines are ignored. */
+        while ( pos < end && isTerminator( buf.get( pos ) ) ) {
+            pos++;
+        }
+        if ( pos >= end ) {
+            return end;
+        }
+        int start = pos;
+        boolean discard = false;
+        while ( true ) {
+            if ( pos >= end ) {
+                if ( ! discard &&
+                     ( row.getCellCount() > 0 || pos > start ) ) {
+                    row.addRange( start, pos );
+                    if ( row.getCellCount() == 1 && row.isBlank( 0 ) ) {
+                        row.clear( buf );
+                    }
+                }
+                return end;
+            }
+            byte b = buf.get( pos );
+            switch ( b ) {
+                case '\r':
+                case '\n':
+                    if ( ! discard ) {
+                        row.addRange( start, pos );
+                    }
+                    while ( pos < end && isTerminator( buf.get( pos ) ) ) {
+                        pos++;
+                    }
+                    return pos;
+                case ',':
+                    if ( ! discard ) {
+                        row.addRange( start, pos );
+                    }
+                    discard = false;
+                    start = ++pos;
+                    break;
+                case '"':
+                    if ( ! discard && ! isBlank( buf, start, pos ) ) {
+                        throw new TableFormatException(
+                            "Mixed quoted/unquoted cell '"
+                          + bufferString( buf, start, pos ) + "'" );
+                    }
+                    pos = readQuoted( buf, pos + 1, end, row );
+                    discard = true;
+                    break;
+                case ' ':
+                case '\t':
+                    pos++;
+                    break;
+                default:
+                    if ( discard ) {
+                        throw new TableFormatException(
+                            "Mixed quoted/unquoted cell '"
+                          + (char) ( b & 0xff ) + "'" );
+                    }
+                    pos++;
+            }
+        }
+    }
+
+    /**
+     * Reads a double-quoted string from a buffer and adds it to a row.
+     * The string may contain line breaks (or any other character).
+     * A double quote may be represented by an adjacent pair of
+     * double quotes.
+     *
+     * @param  buf  buffer
+     * @param  pos  position following the opening quote
+     * @param  end  end of readable region
+     * @param  row  row to which the cell will be added
+     * @return  position following the closing quote
+     * @throws  ChunkBoundaryException  if the region ends inside the string
+     */
+    private static int readQuoted( ByteBuffer buf, int pos, int end,
+                                   ByteRow row )
+            throws ChunkBoundaryException {
+        int start = pos;
+        StringBuffer sbuf = null;
+        while ( pos < end ) {
+            byte b = buf.get( pos );
+            if ( b == '"' ) {
+                if ( pos + 1 < end && buf.get( pos + 1 ) == '"' ) {
+                    if ( sbuf == null ) {
+                        sbuf = new StringBuffer();
+                    }
+                    sbuf.append( bufferString( buf, start, pos + 1 ) );
+                    pos += 2;
+                    start = pos;
+                }
+                else {
+                    if ( sbuf == null ) {
+                        row.addRawRange( start, pos );
+                    }
+                    else {
+                        sbuf.append( bufferString( buf, start, pos ) );
+                        row.addString( sbuf.toString() );
+                    }
+                    return pos + 1;
+                }
+            }
+            else {
+                pos++;
+            }
+        }
+        throw new ChunkBoundaryException(
+            "End of file within a string literal" );
+    }
+
+    /**
+     * Indicates whether a byte is a line terminator.
+     *
+     * @param  b  byte
+     * @return  true for carriage return or newline
+     */
+    static boolean isTerminator( byte b ) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Indicates whether a region of a buffer contains only whitespace.
+     *
+     * @param  buf  buffer
+     * @param  start  start position
+     * @param  end   end position
+     * @return  true iff blank
+     */
+    private static boolean isBlank( ByteBuffer buf, int start, int end ) {
+        for ( int i = start; i < end; i++ ) {
+            if ( ( buf.get( i ) & 0xff ) > ' ' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a region of a buffer as a string.
+     *
+     * @param  buf  buffer
+     * @param  start  start position
+     * @param  end   end position
+     * @return  ISO-8859-1 string
+     */
+    static String bufferString( ByteBuffer buf, int start, int end ) {
+        char[] chrs = new char[ end - start ];
+        for ( int i = 0; i < chrs.length; i++ ) {
+            chrs[ i ] = (char) ( buf.get( start + i ) & 0xff );
+        }
+        return new String( chrs );
+    }
+}
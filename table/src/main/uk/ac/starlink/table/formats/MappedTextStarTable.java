@@ -0,0 +1,610 @@
+package uk.ac.starlink.table.formats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.util.Compression;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.SplitCollector;
+import uk.ac.starlink.util.SplitProcessor;
+import uk.ac.starlink.util.Splittable;
+
+/**
+ * Abstract superclass for text tables read from uncompressed files
+ * using memory mapping.
+ *
+ * <p>Like {@link StreamStarTable}, one pass through the data is made
+ * at initialisation time to work out column types, and a further pass
+ * for each row iteration.  However, the file is divided at line
+ * boundaries into chunks, which are mapped and tokenised independently.
+ * This allows the initial pass to be done in parallel,
+ * and allows the table to supply a {@link RowSplittable}
+ * for parallel processing of the data.
+ * Tokenisation works directly on the mapped bytes, and numeric
+ * values are decoded without creating intermediate String objects
+ * where possible.  Bytes are interpreted as ISO-8859-1 characters.
+ *
+ * <p>This strategy relies on rows never spanning the line boundaries
+ * at which the file is divided.  If the concrete implementation
+ * finds that a row is not terminated within its chunk, it throws a
+ * {@link ChunkBoundaryException}, and the caller should fall back
+ * to sequential reading of the data stream.
+ *
+ * @since    18 Oct 2026
+ */
+public abstract class MappedTextStarTable extends AbstractStarTable {
+
+    private File file_;
+    private int ncol_;
+    private long nrow_;
+    private RowEvaluator.Decoder[] decoders_;
+    private ColumnInfo[] colInfos_;
+    private long[] chunkStarts_;
+    private long[] chunkRow0s_;
+    private int[] chunkSkips_;
+
+    /** Default size in bytes of the chunks into which files are divided. */
+    public static final int DFLT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final SplitProcessor<ChunkRange> CHUNK_PROCESSOR =
+        SplitProcessor.createBasicParallelProcessor( null );
+
+    /**
+     * Constructor.  This doesn't perform any processing; you must call
+     * {@link #init} before doing anything with the constructed table.
+     * Concrete subclasses are provided in this package.
+     */
+    MappedTextStarTable() {
+    }
+
+    /**
+     * Initialises the table from a file.
+     * This reads through the whole file, calling
+     * {@link #readRow readRow} and {@link #createMetadata createMetadata}
+     * to work out the table characteristics.
+     *
+     * @param  datsrc  data source, which must be mappable
+     * @param  chunkSize  nominal size in bytes of the chunks into which
+     *                    the file is divided for processing
+     * @throws  ChunkBoundaryException  if a row was found to span
+     *          a chunk boundary
+     * @throws  TableFormatException  if the file does not contain
+     *          a table of this kind
+     * @see  #isMappable
+     */
+    void init( DataSource datsrc, int chunkSize )
+            throws TableFormatException, IOException {
+        if ( file_ != null ) {
+            throw new IllegalStateException( "Already initialised" );
+        }
+        if ( ! isMappable( datsrc ) ) {
+            throw new IllegalArgumentException( "Not a mappable file: "
+                                              + datsrc );
+        }
+        file_ = ((FileDataSource) datsrc).getFile();
+        setName( datsrc.getName() );
+        setURL( datsrc.getURL() );
+
+        /* Divide the file into chunks and scan each one, in parallel. */
+        chunkStarts_ = calculateChunkStarts( file_, chunkSize );
+        int nchunk = chunkStarts_.length - 1;
+        ChunkScan[] scans = new ChunkScan[ nchunk ];
+        CHUNK_PROCESSOR.collect( new ScanCollector( scans ),
+                                 new ChunkRange( chunkStarts_, 0, nchunk ) );
+
+        /* Combine the results in sequence. */
+        RowEvaluator evaluator = new RowEvaluator();
+        List<String> row0 = null;
+        List<String> comments = new ArrayList<String>();
+        long nread = 0;
+        int ichunk0 = -1;
+        for ( int ic = 0; ic < nchunk; ic++ ) {
+            ChunkScan scan = scans[ ic ];
+            if ( scan.error_ != null ) {
+                throw scan.error_;
+            }
+            nread += scan.nrow_;
+            if ( row0 == null ) {
+                comments.addAll( scan.comments_ );
+                if ( scan.nrow_ > 0 ) {
+                    row0 = scan.row0_;
+                    ichunk0 = ic;
+                }
+            }
+            try {
+                if ( row0 != scan.row0_ && scan.nrow_ > 0 ) {
+                    evaluator.submitRow( scan.row0_ );
+                }
+                evaluator.add( scan.evaluator_ );
+            }
+            catch ( TableFormatException e ) {
+                throw new TableFormatException( e.getMessage() + " in text "
+                                              + "following file offset "
+                                              + chunkStarts_[ ic ], e );
+            }
+        }
+        if ( row0 == null ) {
+            throw new TableFormatException( "No rows" );
+        }
+
+        /* Get the metadata. */
+        RowEvaluator.Metadata meta =
+            createMetadata( row0, evaluator, comments );
+        decoders_ = meta.decoders_;
+        colInfos_ = meta.colInfos_;
+        ncol_ = meta.ncol_;
+        nrow_ = meta.nrow_;
+        int nskip = (int) ( nread - nrow_ );
+        if ( nskip < 0 || nskip > 1 ) {
+            throw new TableFormatException( "Row count mismatch" );
+        }
+
+        /* Record the table row index at which each chunk starts. */
+        chunkSkips_ = new int[ nchunk ];
+        chunkSkips_[ ichunk0 ] = nskip;
+        chunkRow0s_ = new long[ nchunk + 1 ];
+        for ( int ic = 0; ic < nchunk; ic++ ) {
+            chunkRow0s_[ ic + 1 ] =
+                chunkRow0s_[ ic ] + scans[ ic ].nrow_ - chunkSkips_[ ic ];
+        }
+        assert chunkRow0s_[ nchunk ] == nrow_;
+    }
+
+    public int getColumnCount() {
+        return ncol_;
+    }
+
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    public ColumnInfo getColumnInfo( int icol ) {
+        return colInfos_[ icol ];
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        return getRowSplittable();
+    }
+
+    @Override
+    public RowSplittable getRowSplittable() throws IOException {
+        return new ChunkRowSplittable( 0, chunkStarts_.length - 1 );
+    }
+
+    /**
+     * Reads the next row of data from a buffer.
+     * Ignorable rows are skipped; comments may be stashed away.
+     * The row is written into the supplied <code>row</code> object,
+     * which should first be cleared.  If there are no more rows
+     * in the given region, the row will have no cells on exit.
+     *
+     * <p>Implementations may assume that <code>pos</code> is at the
+     * start of a line.  If the end of the region is reached within
+     * a construct that may legally span lines,
+     * a {@link ChunkBoundaryException} should be thrown.
+     *
+     * @param  buf  buffer
+     * @param  pos  index in buffer at which to start reading
+     * @param  end  index in buffer of end of readable region
+     * @param  row  row object to populate
+     * @param  comments  if non-null, any comment lines encountered
+     *                   should be appended to this list
+     * @return  index in buffer following the row that was read
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table
+     */
+    abstract int readRow( ByteBuffer buf, int pos, int end,
+                                    ByteRow row, List<String> comments )
+            throws TableFormatException;
+
+    /**
+     * Returns the table metadata given the results of reading all the rows.
+     * The supplied evaluator has seen all the rows except the first one;
+     * implementations should submit the first row to it if it turns out
+     * to be a data row.
+     * If the returned metadata reports one row fewer than the
+     * total number of rows read, the first row is taken to be
+     * a non-data row which will be skipped when reading the data.
+     *
+     * @param  row0  cells of the first row in the table
+     * @param  evaluator  evaluator which has seen all subsequent rows
+     * @param  comments  comment lines encountered before the end of
+     *                   the first row
+     * @return  table metadata
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table
+     */
+    abstract RowEvaluator.Metadata
+            createMetadata( List<String> row0, RowEvaluator evaluator,
+                            List<String> comments )
+            throws TableFormatException, IOException;
+
+    /**
+     * Indicates whether a given data source can be read by instances
+     * of this class.  That is true if it represents an uncompressed
+     * file.
+     *
+     * @param  datsrc  data source
+     * @return  true iff a mapped table can be constructed from datsrc
+     */
+    public static boolean isMappable( DataSource datsrc ) throws IOException {
+        return datsrc instanceof FileDataSource
+            && datsrc.getCompression() == Compression.NONE;
+    }
+
+    /**
+     * Maps a region of a file.
+     *
+     * @param  file  file
+     * @param  start  offset of region start
+     * @param  end    offset of region end
+     * @return   read-only mapped buffer
+     */
+    private static MappedByteBuffer mapRegion( File file, long start,
+                                               long end )
+            throws IOException {
+        try ( FileChannel chan =
+                  FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            return chan.map( FileChannel.MapMode.READ_ONLY,
+                             start, end - start );
+        }
+    }
+
+    /**
+     * Divides a file into chunks which start at line boundaries.
+     * The returned array has one more element than the number of chunks;
+     * the first element is zero and the last is the file length.
+     *
+     * @param  file  file
+     * @param  chunkSize  nominal chunk size in bytes
+     * @return   array of chunk start offsets
+     */
+    private static long[] calculateChunkStarts( File file, int chunkSize )
+            throws IOException {
+        List<Long> starts = new ArrayList<Long>();
+        starts.add( Long.valueOf( 0 ) );
+        try ( FileChannel chan =
+                  FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long leng = chan.size();
+            ByteBuffer bbuf = ByteBuffer.allocate( 64 * 1024 );
+            long pos = chunkSize;
+            while ( pos < leng ) {
+
+                /* Find the first line terminator at or after the nominal
+                 * boundary, then the first byte that is not a terminator. */
+                boolean inTerm = false;
+                long boundary = leng;
+                for ( long p = pos; p < leng && boundary == leng; ) {
+                    bbuf.clear();
+                    int nr = chan.read( bbuf, p );
+                    if ( nr <= 0 ) {
+                        break;
+                    }
+                    for ( int i = 0; i < nr; i++ ) {
+                        byte b = bbuf.get( i );
+                        boolean isTerm = b == '\n' || b == '\r';
+                        if ( isTerm ) {
+                            inTerm = true;
+                        }
+                        else if ( inTerm ) {
+                            boundary = p + i;
+                            break;
+                        }
+                    }
+                    p += nr;
+                }
+                if ( boundary >= leng ) {
+                    break;
+                }
+                long last = starts.get( starts.size() - 1 ).longValue();
+                if ( boundary - last > Integer.MAX_VALUE ) {
+                    throw new TableFormatException( "Line too long" );
+                }
+                starts.add( Long.valueOf( boundary ) );
+                pos = boundary + chunkSize;
+            }
+            long last = starts.get( starts.size() - 1 ).longValue();
+            if ( leng - last > Integer.MAX_VALUE ) {
+                throw new TableFormatException( "Line too long" );
+            }
+            starts.add( Long.valueOf( leng ) );
+        }
+        long[] array = new long[ starts.size() ];
+        for ( int i = 0; i < array.length; i++ ) {
+            array[ i ] = starts.get( i ).longValue();
+        }
+        return array;
+    }
+
+    /**
+     * Exception thrown when a row is found not to be terminated within
+     * the region of the file in which it starts.
+     * Since the file is divided into chunks at line boundaries, this may
+     * mean that a construct permitted to span lines, such as a quoted
+     * string containing a newline, straddles a chunk boundary.
+     * It may alternatively indicate a genuine format error at the end
+     * of the file.  Either way, the data can be read sequentially
+     * by other means to resolve the situation.
+     */
+    public static class ChunkBoundaryException extends TableFormatException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         *
+         * @param  msg  message
+         */
+        public ChunkBoundaryException( String msg ) {
+            super( msg );
+        }
+    }
+
+    /**
+     * Contains the results of scanning a single chunk.
+     */
+    private static class ChunkScan {
+        long nrow_;
+        List<String> row0_;
+        List<String> comments_;
+        RowEvaluator evaluator_;
+        TableFormatException error_;
+    }
+
+    /**
+     * Splittable representing a range of chunks.
+     * The size is in bytes.
+     */
+    private static class ChunkRange implements Splittable<ChunkRange> {
+        private final long[] starts_;
+        private final int ilo_;
+        private int ihi_;
+
+        /**
+         * Constructor.
+         *
+         * @param  starts  chunk start offsets
+         * @param  ilo   index of first chunk (inclusive)
+         * @param  ihi   index of last chunk (exclusive)
+         */
+        ChunkRange( long[] starts, int ilo, int ihi ) {
+            starts_ = starts;
+            ilo_ = ilo;
+            ihi_ = ihi;
+        }
+
+        public ChunkRange split() {
+            if ( ihi_ - ilo_ >= 2 ) {
+                int mid = ( ilo_ + ihi_ ) / 2;
+                ChunkRange other = new ChunkRange( starts_, mid, ihi_ );
+                ihi_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return starts_[ ihi_ ] - starts_[ ilo_ ];
+        }
+    }
+
+    /**
+     * Collector that scans the rows in each chunk and stores the results
+     * in an array.  The accumulator is not used.
+     */
+    private class ScanCollector implements SplitCollector<ChunkRange,Object> {
+        private final ChunkScan[] scans_;
+
+        /**
+         * Constructor.
+         *
+         * @param  scans  array to be filled with per-chunk results
+         */
+        ScanCollector( ChunkScan[] scans ) {
+            scans_ = scans;
+        }
+
+        public Object createAccumulator() {
+            return null;
+        }
+
+        public void accumulate( ChunkRange range, Object acc ) {
+            for ( int ic = range.ilo_; ic < range.ihi_; ic++ ) {
+                scans_[ ic ] = scanChunk( ic );
+            }
+        }
+
+        public Object combine( Object acc1, Object acc2 ) {
+            return null;
+        }
+
+        /**
+         * Scans the rows of a chunk.
+         *
+         * @param  ichunk  chunk index
+         * @return  scan result
+         */
+        private ChunkScan scanChunk( int ichunk ) {
+            ChunkScan scan = new ChunkScan();
+            scan.comments_ = new ArrayList<String>();
+            scan.evaluator_ = new RowEvaluator();
+            long start = chunkStarts_[ ichunk ];
+            int pos = 0;
+            try {
+                ByteBuffer buf =
+                    mapRegion( file_, start, chunkStarts_[ ichunk + 1 ] );
+                int end = buf.limit();
+                ByteRow row = new ByteRow();
+                pos = readRow( buf, pos, end, row, scan.comments_ );
+                if ( row.getCellCount() > 0 ) {
+                    scan.row0_ = row.toList();
+                    scan.nrow_ = 1;
+                    int ncol = -1;
+                    while ( true ) {
+                        int pos0 = pos;
+                        pos = readRow( buf, pos, end, row, null );
+                        int ncell = row.getCellCount();
+                        if ( ncell == 0 ) {
+                            break;
+                        }
+                        if ( ncol < 0 ) {
+                            ncol = ncell;
+                        }
+                        else if ( ncell != ncol ) {
+                            throw new TableFormatException(
+                                "Wrong number of columns at file offset "
+                              + ( start + pos0 ) + " (expecting " + ncol
+                              + ", found " + ncell + ")" );
+                        }
+                        scan.evaluator_.submitRow( row );
+                        scan.nrow_++;
+                    }
+                }
+            }
+            catch ( ChunkBoundaryException e ) {
+                scan.error_ = e;
+            }
+            catch ( TableFormatException e ) {
+                scan.error_ =
+                    new TableFormatException( e.getMessage() + " near file "
+                                            + "offset " + ( start + pos ), e );
+            }
+            catch ( IOException e ) {
+                scan.error_ = new TableFormatException( e.getMessage(), e );
+            }
+            return scan;
+        }
+    }
+
+    /**
+     * RowSplittable implementation that iterates over a range of chunks.
+     */
+    private class ChunkRowSplittable implements RowSplittable {
+
+        private final ByteRow row_;
+        private final Object[] cells_;
+        private final boolean[] decoded_;
+        private int ichunk_;
+        private int ihi_;
+        private ByteBuffer buf_;
+        private int pos_;
+        private int skip_;
+        private long irow_;
+        private boolean hasRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ilo   index of first chunk (inclusive)
+         * @param  ihi   index of last chunk (exclusive)
+         */
+        ChunkRowSplittable( int ilo, int ihi ) {
+            ichunk_ = ilo - 1;
+            ihi_ = ihi;
+            row_ = new ByteRow();
+            cells_ = new Object[ ncol_ ];
+            decoded_ = new boolean[ ncol_ ];
+            irow_ = -1;
+        }
+
+        public RowSplittable split() {
+            int ilo = ichunk_ + 1;
+            if ( buf_ == null && ihi_ - ilo >= 2 ) {
+                int mid = ( ilo + ihi_ ) / 2;
+                RowSplittable other = new ChunkRowSplittable( mid, ihi_ );
+                ihi_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return chunkRow0s_[ ihi_ ] - chunkRow0s_[ ichunk_ + 1 ];
+        }
+
+        public LongSupplier rowIndex() {
+            return () -> irow_;
+        }
+
+        public boolean next() throws IOException {
+            hasRow_ = false;
+            while ( true ) {
+                if ( buf_ != null ) {
+                    pos_ = readRow( buf_, pos_, buf_.limit(), row_, null );
+                    if ( row_.getCellCount() > 0 ) {
+                        if ( skip_ > 0 ) {
+                            skip_--;
+                        }
+                        else {
+                            if ( row_.getCellCount() != ncol_ ) {
+                                throw new TableFormatException(
+                                    "Wrong number of columns" );
+                            }
+                            Arrays.fill( decoded_, false );
+                            irow_++;
+                            hasRow_ = true;
+                            return true;
+                        }
+                    }
+                    else {
+                        buf_ = null;
+                    }
+                }
+                else if ( ichunk_ + 1 < ihi_ ) {
+                    ichunk_++;
+                    buf_ = mapRegion( file_, chunkStarts_[ ichunk_ ],
+                                      chunkStarts_[ ichunk_ + 1 ] );
+                    pos_ = 0;
+                    skip_ = chunkSkips_[ ichunk_ ];
+                    irow_ = chunkRow0s_[ ichunk_ ] - 1;
+                }
+                else {
+                    return false;
+                }
+            }
+        }
+
+        public Object getCell( int icol ) {
+            if ( ! hasRow_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+            if ( ! decoded_[ icol ] ) {
+                cells_[ icol ] = row_.isBlank( icol )
+                               ? null
+                               : decoders_[ icol ].decode( row_, icol );
+                decoded_[ icol ] = true;
+            }
+            return cells_[ icol ];
+        }
+
+        public Object[] getRow() {
+            Object[] row = new Object[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] = getCell( icol );
+            }
+            return row;
+        }
+
+        public void close() {
+            buf_ = null;
+            ichunk_ = ihi_;
+        }
+    }
+}
@@ -82,6 +82,11 @@ public class RowEvaluator {
         public Object decode( String value ) {
             return new Short( Short.parseShort( value.trim() ) );
         }
+        Object decode( ByteRow row, int icell ) {
+            return row.parseNumber( icell ) == ByteRow.INTEGER
+                 ? new Short( (short) row.getLongValue() )
+                 : decode( row.getString( icell ) );
+        }
         public boolean isValid( String value ) {
             try {
                 return Short.parseShort( value ) != 0
@@ -98,6 +103,11 @@ public class RowEvaluator {
         public Object decode( String value ) {
             return new Integer( Integer.parseInt( value.trim() ) );
         }
+        Object decode( ByteRow row, int icell ) {
+            return row.parseNumber( icell ) == ByteRow.INTEGER
+                 ? new Integer( (int) row.getLongValue() )
+                 : decode( row.getString( icell ) );
+        }
         public boolean isValid( String value ) {
             try {
                 return Integer.parseInt( value ) != 0
@@ -114,6 +124,11 @@ public class RowEvaluator {
         public Object decode( String value ) {
             return new Long( Long.parseLong( value.trim() ) );
         }
+        Object decode( ByteRow row, int icell ) {
+            return row.parseNumber( icell ) == ByteRow.INTEGER
+                 ? new Long( row.getLongValue() )
+                 : decode( row.getString( icell ) );
+        }
         public boolean isValid( String value ) {
             try {
                 return Long.parseLong( value ) != 0L
@@ -143,9 +158,10 @@ public class RowEvaluator {
                 return false;
             }
         }
-        private boolean isSinglePrecision( double dval ) {
-            double absVal = Math.abs( dval );
-            return absVal > Float.MIN_NORMAL && absVal < Float.MAX_VALUE;
+        Object decode( ByteRow row, int icell ) {
+            return row.parseNumber( icell ) == ByteRow.NOT_NUMBER
+                 ? decode( row.getString( icell ) )
+                 : new Float( (float) row.getDoubleValue() );
         }
     };
 
@@ -154,6 +170,11 @@ public class RowEvaluator {
         public Object decode( String value ) {
             return new Double( parseFloating( value.trim() ).dValue );
         }
+        Object decode( ByteRow row, int icell ) {
+            return row.parseNumber( icell ) == ByteRow.NOT_NUMBER
+                 ? decode( row.getString( icell ) )
+                 : new Double( row.getDoubleValue() );
+        }
         public boolean isValid( String value ) {
             try {
                 parseFloating( value );
@@ -266,92 +287,233 @@ public class RowEvaluator {
                 " (expecting " + ncol_ + ", found " + row.size() +  ")" );
         }
         for ( int icol = 0; icol < ncol_; icol++ ) {
-            boolean done = false;
-            String cell0 = row.get( icol );
-            int leng0 = cell0 == null ? 0 : cell0.length();
-            String cell = cell0 == null ? "" : cell0.trim();
-            int leng = cell.length();
-            if ( leng == 0 ) {
+            submitCell( icol, row.get( icol ) );
+        }
+    }
+
+    /**
+     * Looks at a tokenised row and records information about what
+     * sort of things it looks like it contains.
+     * This has the same effect as {@link #submitRow(java.util.List)},
+     * but avoids creating String objects for cells which are
+     * simple numbers.
+     *
+     * @param   row  row with <tt>ncol</tt> cells
+     * @throws  TableFormatException  if the number of cells in
+     *          <tt>row</tt> is not the same as on the first call
+     */
+    void submitRow( ByteRow row ) throws TableFormatException {
+        nrow_++;
+        int ncell = row.getCellCount();
+        if ( ncol_ < 0 ) {
+            init( ncell );
+        }
+        if ( ncell != ncol_ ) {
+            throw new TableFormatException(
+                "Wrong number of columns at row " + nrow_ +
+                " (expecting " + ncol_ + ", found " + ncell +  ")" );
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            int ntype = row.parseNumber( icol );
+            if ( ntype == ByteRow.NOT_NUMBER ) {
+                submitCell( icol, row.getString( icol ) );
+            }
+            else {
+                int leng = row.getLength( icol );
+                if ( leng > stringLength_[ icol ] ) {
+                    stringLength_[ icol ] = leng;
+                }
+                submitNumber( icol, ntype == ByteRow.INTEGER, row );
+            }
+        }
+    }
+
+    /**
+     * Merges the information gathered by another evaluator into this one.
+     * Following this call, this evaluator's state is as if all the rows
+     * submitted to <code>other</code> had been submitted to it as well.
+     *
+     * @param  other  other evaluator
+     * @throws  TableFormatException  if the two evaluators have seen rows
+     *          with different numbers of columns
+     */
+    public void add( RowEvaluator other ) throws TableFormatException {
+        if ( other.ncol_ < 0 ) {
+            nrow_ += other.nrow_;
+            return;
+        }
+        if ( ncol_ < 0 ) {
+            init( other.ncol_ );
+        }
+        if ( other.ncol_ != ncol_ ) {
+            throw new TableFormatException(
+                "Wrong number of columns"
+              + " (expecting " + ncol_ + ", found " + other.ncol_ + ")" );
+        }
+        nrow_ += other.nrow_;
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            maybeBoolean_[ icol ] &= other.maybeBoolean_[ icol ];
+            maybeShort_[ icol ] &= other.maybeShort_[ icol ];
+            maybeInteger_[ icol ] &= other.maybeInteger_[ icol ];
+            maybeLong_[ icol ] &= other.maybeLong_[ icol ];
+            maybeFloat_[ icol ] &= other.maybeFloat_[ icol ];
+            maybeDouble_[ icol ] &= other.maybeDouble_[ icol ];
+            maybeDate_[ icol ] &= other.maybeDate_[ icol ];
+            maybeHms_[ icol ] &= other.maybeHms_[ icol ];
+            maybeDms_[ icol ] &= other.maybeDms_[ icol ];
+            stringLength_[ icol ] = Math.max( stringLength_[ icol ],
+                                              other.stringLength_[ icol ] );
+        }
+    }
+
+    /**
+     * Records information about a single string cell.
+     *
+     * @param  icol  column index
+     * @param  cell0  cell content, may be null
+     */
+    private void submitCell( int icol, String cell0 ) {
+        boolean done = false;
+        int leng0 = cell0 == null ? 0 : cell0.length();
+        String cell = cell0 == null ? "" : cell0.trim();
+        int leng = cell.length();
+        if ( leng == 0 ) {
+            done = true;
+        }
+        if ( leng0 > stringLength_[ icol ] ) {
+            stringLength_[ icol ] = leng0;
+        }
+        if ( ! done && maybeBoolean_[ icol ] ) {
+            if ( BOOLEAN_DECODER.isValid( cell ) ) {
                 done = true;
             }
-            if ( leng0 > stringLength_[ icol ] ) {
-                stringLength_[ icol ] = leng0;
+            else {
+                maybeBoolean_[ icol ] = false;
             }
-            if ( ! done && maybeBoolean_[ icol ] ) {
-                if ( BOOLEAN_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeBoolean_[ icol ] = false;
-                }
+        }
+        if ( ! done && maybeShort_[ icol ] ) {
+            if ( SHORT_DECODER.isValid( cell ) ) {
+                done = true;
             }
-            if ( ! done && maybeShort_[ icol ] ) {
-                if ( SHORT_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeShort_[ icol ] = false;
-                }
+            else {
+                maybeShort_[ icol ] = false;
             }
-            if ( ! done && maybeInteger_[ icol ] ) {
-                if ( INTEGER_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeInteger_[ icol ] = false;
-                }
+        }
+        if ( ! done && maybeInteger_[ icol ] ) {
+            if ( INTEGER_DECODER.isValid( cell ) ) {
+                done = true;
             }
-            if ( ! done && maybeLong_[ icol ] ) {
-                if ( LONG_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeLong_[ icol ] = false;
-                }
+            else {
+                maybeInteger_[ icol ] = false;
             }
-            if ( ! done && maybeFloat_[ icol ] ) {
-                if ( FLOAT_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeFloat_[ icol ] = false;
-                }
+        }
+        if ( ! done && maybeLong_[ icol ] ) {
+            if ( LONG_DECODER.isValid( cell ) ) {
+                done = true;
             }
-            if ( ! done && maybeDouble_[ icol ] ) {
-                if ( DOUBLE_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeDouble_[ icol ] = false;
-                }
+            else {
+                maybeLong_[ icol ] = false;
             }
-            if ( ! done && maybeDate_[ icol ] ) {
-                if ( DATE_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeDate_[ icol ] = false;
-                }
+        }
+        if ( ! done && maybeFloat_[ icol ] ) {
+            if ( FLOAT_DECODER.isValid( cell ) ) {
+                done = true;
             }
-            if ( ! done && maybeHms_[ icol ] ) {
-                if ( HMS_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeHms_[ icol ] = false;
-                }
+            else {
+                maybeFloat_[ icol ] = false;
             }
-            if ( ! done && maybeDms_[ icol ] ) {
-                if ( DMS_DECODER.isValid( cell ) ) {
-                    done = true;
-                }
-                else {
-                    maybeDms_[ icol ] = false;
-                }
+        }
+        if ( ! done && maybeDouble_[ icol ] ) {
+            if ( DOUBLE_DECODER.isValid( cell ) ) {
+                done = true;
+            }
+            else {
+                maybeDouble_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeDate_[ icol ] ) {
+            if ( DATE_DECODER.isValid( cell ) ) {
+                done = true;
+            }
+            else {
+                maybeDate_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeHms_[ icol ] ) {
+            if ( HMS_DECODER.isValid( cell ) ) {
+                done = true;
+            }
+            else {
+                maybeHms_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeDms_[ icol ] ) {
+            if ( DMS_DECODER.isValid( cell ) ) {
+                done = true;
+            }
+            else {
+                maybeDms_[ icol ] = false;
             }
         }
     }
 
+    /**
+     * Records information about a single cell which has been parsed
+     * as a number.  The effect is the same as calling
+     * {@link #submitCell} with the string form of the cell.
+     *
+     * @param  icol  column index
+     * @param  isInteger  true if the cell is an integer,
+     *                    false if it is a decimal or exponential number
+     * @param  row   row on which {@link ByteRow#parseNumber} has
+     *               just been called for the cell
+     */
+    private void submitNumber( int icol, boolean isInteger, ByteRow row ) {
+        boolean done = false;
+        maybeBoolean_[ icol ] = false;
+        long lval = row.getLongValue();
+        boolean isNegZero = isInteger && lval == 0 && row.isNegative();
+        if ( maybeShort_[ icol ] ) {
+            if ( isInteger && ! isNegZero &&
+                 lval >= Short.MIN_VALUE && lval <= Short.MAX_VALUE ) {
+                done = true;
+            }
+            else {
+                maybeShort_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeInteger_[ icol ] ) {
+            if ( isInteger && ! isNegZero &&
+                 lval >= Integer.MIN_VALUE && lval <= Integer.MAX_VALUE ) {
+                done = true;
+            }
+            else {
+                maybeInteger_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeLong_[ icol ] ) {
+            if ( isInteger && ! isNegZero ) {
+                done = true;
+            }
+            else {
+                maybeLong_[ icol ] = false;
+            }
+        }
+        if ( ! done && maybeFloat_[ icol ] ) {
+            double dval = row.getDoubleValue();
+            if ( dval == 0 ||
+                 Double.isInfinite( dval ) ||
+                 ( row.getSigFig() <= 6 && isSinglePrecision( dval ) ) ) {
+                done = true;
+            }
+            else {
+                maybeFloat_[ icol ] = false;
+            }
+        }
+
+        /* Any number is a valid double, so no further tests are needed. */
+    }
+
     /**
      * Returns information gleaned from previous <tt>submitRow</tt>
      * calls about the kind of data that appears to be in the columns.
@@ -416,6 +578,19 @@ public class RowEvaluator {
         return flags;
     }
 
+    /**
+     * Indicates whether a value is within the normal range of
+     * single precision floating point values.
+     *
+     * @param  dval  value
+     * @return   true iff absolute value is between the smallest normal
+     *           and the largest finite float
+     */
+    private static boolean isSinglePrecision( double dval ) {
+        double absVal = Math.abs( dval );
+        return absVal > Float.MIN_NORMAL && absVal < Float.MAX_VALUE;
+    }
+
     /**
      * Parses a floating point value.  This does a couple of extra things
      * than Double.parseDouble - it understands 'd' or 'D' as the exponent
@@ -551,6 +726,20 @@ public class RowEvaluator {
          */
         public abstract Object decode( String value );
 
+        /**
+         * Decodes the value of a non-blank cell in a tokenised row.
+         * The default implementation calls {@link #decode(java.lang.String)}
+         * on the cell's string value, but subclasses may override it
+         * to decode directly from the bytes.
+         *
+         * @param  row  row
+         * @param  icell  cell index
+         * @return   typed object corresponding to the cell value
+         */
+        Object decode( ByteRow row, int icell ) {
+            return decode( row.getString( icell ) );
+        }
+
         /**
          * Indicates whether this decoder is capable of decoding a 
          * given string.
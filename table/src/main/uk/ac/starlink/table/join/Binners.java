@@ -47,10 +47,32 @@ class Binners {
 
     /**
      * Returns a new binner for storing long integer values.
+     * Bins with keys of type {@link java.lang.Long}, as produced by
+     * the sky pixellators, are stored in primitive arrays without
+     * per-key or per-item object allocation; other keys are stored
+     * in a hash map.
      *
+     * @param   nrow  maximum value that will be stored plus one,
+     *                or -1 if not known
      * @return   new LongBinner
      */
     public static LongBinner createLongBinner( long nrow ) {
+        boolean isInt = nrow >= 0 && nrow < Integer.MAX_VALUE;
+        LongBinner objBinner = isInt
+                             ? (LongBinner) new CombinationIntLongBinner()
+                             : (LongBinner) new LongListLongBinner();
+        return new LongKeyLongBinner( objBinner, isInt );
+    }
+
+    /**
+     * Returns a new binner for storing long integer values
+     * that stores all keys in a hash map.
+     *
+     * @param   nrow  maximum value that will be stored plus one,
+     *                or -1 if not known
+     * @return   new LongBinner
+     */
+    static LongBinner createMapLongBinner( long nrow ) {
         return nrow >= 0 && nrow < Integer.MAX_VALUE
              ? (LongBinner) new CombinationIntLongBinner()
              : (LongBinner) new LongListLongBinner();
@@ -355,6 +377,298 @@ class Binners {
         }
     }
 
+    /**
+     * LongBinner implementation that stores bins with Long keys
+     * in an open-addressing hash table made of primitive arrays.
+     * The first item of each bin is stored in a primitive array
+     * indexed by hash slot, and any further items in a per-bin
+     * primitive array.  Bins with keys of other types are delegated
+     * to a supplied binner, as are Long-keyed bins which would not fit
+     * in the largest table size.
+     * The key iterator supports <code>remove</code>.
+     */
+    private static class LongKeyLongBinner implements LongBinner {
+
+        private final LongBinner objBinner_;
+        private final boolean isInt_;
+        private long[] keys_;
+        private int[] counts_;   // 0 for empty, -1 for removed
+        private int[] ifirsts_;
+        private long[] lfirsts_;
+        private Object[] mores_; // int[] or long[], items after the first
+        private int mask_;
+        private int nUsed_;
+        private int nBin_;
+        private boolean isOverflow_;
+
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int MAX_CAPACITY = 1 << 30;
+        private static final double MAX_LOAD = 0.6;
+        private static final double FULL_LOAD = 0.9;
+
+        /**
+         * Constructor.
+         *
+         * @param  objBinner  binner used for keys which are not Longs
+         * @param  isInt   if true, items must be in the range of int
+         */
+        LongKeyLongBinner( LongBinner objBinner, boolean isInt ) {
+            objBinner_ = objBinner;
+            isInt_ = isInt;
+            allocate( INITIAL_CAPACITY );
+        }
+
+        public void addItem( Object key, long item ) {
+            if ( key instanceof Long ) {
+                addLongKeyItem( ((Long) key).longValue(), item );
+            }
+            else {
+                objBinner_.addItem( key, item );
+            }
+        }
+
+        public long[] getLongs( Object key ) {
+            if ( key instanceof Long ) {
+                int is = findSlot( ((Long) key).longValue() );
+                int count = counts_[ is ];
+                if ( count > 0 ) {
+                    return getSlotItems( is );
+                }
+                else if ( count == 0 && isOverflow_ ) {
+                    return objBinner_.getLongs( key );
+                }
+                else {
+                    return null;
+                }
+            }
+            else {
+                return objBinner_.getLongs( key );
+            }
+        }
+
+        public Iterator<?> getKeyIterator() {
+            final Iterator<?> objIt = objBinner_.getKeyIterator();
+            return new Iterator<Object>() {
+                int iNext_ = nextSlot( 0 );
+                int iCurrent_ = -1;
+                boolean inObj_;
+                public boolean hasNext() {
+                    return iNext_ < counts_.length || objIt.hasNext();
+                }
+                public Object next() {
+                    if ( iNext_ < counts_.length ) {
+                        iCurrent_ = iNext_;
+                        iNext_ = nextSlot( iNext_ + 1 );
+                        return Long.valueOf( keys_[ iCurrent_ ] );
+                    }
+                    else {
+                        inObj_ = true;
+                        return objIt.next();
+                    }
+                }
+                public void remove() {
+                    if ( inObj_ ) {
+                        objIt.remove();
+                    }
+                    else if ( iCurrent_ >= 0 &&
+                              counts_[ iCurrent_ ] > 0 ) {
+                        counts_[ iCurrent_ ] = -1;
+                        mores_[ iCurrent_ ] = null;
+                        nBin_--;
+                    }
+                    else {
+                        throw new IllegalStateException();
+                    }
+                }
+            };
+        }
+
+        public long getBinCount() {
+            return nBin_ + objBinner_.getBinCount();
+        }
+
+        /**
+         * Adds an item to a bin with a primitive key.
+         *
+         * @param  key  bin key
+         * @param  item  item to add
+         */
+        private void addLongKeyItem( long key, long item ) {
+            if ( isInt_ ) {
+                Tables.checkedLongToInt( item );
+            }
+            int is = findSlot( key );
+            int count = counts_[ is ];
+            if ( count == 0 && nUsed_ + 1 > MAX_LOAD * counts_.length ) {
+                if ( counts_.length < MAX_CAPACITY ) {
+                    rehash();
+                    is = findSlot( key );
+                }
+                else if ( nUsed_ + 1 > FULL_LOAD * counts_.length ) {
+                    objBinner_.addItem( Long.valueOf( key ), item );
+                    isOverflow_ = true;
+                    return;
+                }
+            }
+            if ( count <= 0 ) {
+                if ( count == 0 ) {
+                    keys_[ is ] = key;
+                    nUsed_++;
+                }
+                counts_[ is ] = 1;
+                if ( isInt_ ) {
+                    ifirsts_[ is ] = (int) item;
+                }
+                else {
+                    lfirsts_[ is ] = item;
+                }
+                nBin_++;
+            }
+            else {
+                int im = count - 1;
+                if ( isInt_ ) {
+                    int[] more = (int[]) mores_[ is ];
+                    if ( more == null || im == more.length ) {
+                        more = Arrays.copyOf( more == null ? new int[ 0 ]
+                                                           : more,
+                                              im * 3 / 2 + 1 );
+                        mores_[ is ] = more;
+                    }
+                    more[ im ] = (int) item;
+                }
+                else {
+                    long[] more = (long[]) mores_[ is ];
+                    if ( more == null || im == more.length ) {
+                        more = Arrays.copyOf( more == null ? new long[ 0 ]
+                                                           : more,
+                                              im * 3 / 2 + 1 );
+                        mores_[ is ] = more;
+                    }
+                    more[ im ] = item;
+                }
+                counts_[ is ] = count + 1;
+            }
+        }
+
+        /**
+         * Returns the items stored in a given occupied slot.
+         *
+         * @param  is  slot index
+         * @return   items in insertion order
+         */
+        private long[] getSlotItems( int is ) {
+            int count = counts_[ is ];
+            long[] items = new long[ count ];
+            if ( isInt_ ) {
+                items[ 0 ] = ifirsts_[ is ];
+                int[] more = (int[]) mores_[ is ];
+                for ( int i = 1; i < count; i++ ) {
+                    items[ i ] = more[ i - 1 ];
+                }
+            }
+            else {
+                items[ 0 ] = lfirsts_[ is ];
+                if ( count > 1 ) {
+                    System.arraycopy( (long[]) mores_[ is ], 0,
+                                      items, 1, count - 1 );
+                }
+            }
+            return items;
+        }
+
+        /**
+         * Returns the slot for a given key.  This is either the slot
+         * in which the key is stored, which may have been removed,
+         * or the empty slot at which it should be inserted.
+         *
+         * @param  key  key
+         * @return  slot index
+         */
+        private int findSlot( long key ) {
+            int is = hash( key ) & mask_;
+            while ( counts_[ is ] != 0 && keys_[ is ] != key ) {
+                is = ( is + 1 ) & mask_;
+            }
+            return is;
+        }
+
+        /**
+         * Returns the index of the first slot containing a live bin
+         * at or after a given index.
+         *
+         * @param  is  starting slot index
+         * @return  next occupied slot index, or the capacity if none
+         */
+        private int nextSlot( int is ) {
+            int n = counts_.length;
+            while ( is < n && counts_[ is ] <= 0 ) {
+                is++;
+            }
+            return is;
+        }
+
+        /**
+         * Allocates empty storage arrays.
+         *
+         * @param  capacity  number of slots, a power of two
+         */
+        private void allocate( int capacity ) {
+            keys_ = new long[ capacity ];
+            counts_ = new int[ capacity ];
+            ifirsts_ = isInt_ ? new int[ capacity ] : null;
+            lfirsts_ = isInt_ ? null : new long[ capacity ];
+            mores_ = new Object[ capacity ];
+            mask_ = capacity - 1;
+            nUsed_ = 0;
+        }
+
+        /**
+         * Reallocates storage with enough space for the current bins,
+         * discarding removed ones.
+         */
+        private void rehash() {
+            long[] keys = keys_;
+            int[] counts = counts_;
+            int[] ifirsts = ifirsts_;
+            long[] lfirsts = lfirsts_;
+            Object[] mores = mores_;
+            int capacity = counts.length;
+            while ( nBin_ > MAX_LOAD * capacity / 2 &&
+                    capacity < MAX_CAPACITY ) {
+                capacity *= 2;
+            }
+            allocate( capacity );
+            for ( int is0 = 0; is0 < counts.length; is0++ ) {
+                if ( counts[ is0 ] > 0 ) {
+                    int is = findSlot( keys[ is0 ] );
+                    keys_[ is ] = keys[ is0 ];
+                    counts_[ is ] = counts[ is0 ];
+                    if ( isInt_ ) {
+                        ifirsts_[ is ] = ifirsts[ is0 ];
+                    }
+                    else {
+                        lfirsts_[ is ] = lfirsts[ is0 ];
+                    }
+                    mores_[ is ] = mores[ is0 ];
+                    nUsed_++;
+                }
+            }
+        }
+
+        /**
+         * Hash function for long keys.
+         * Pixel indices are often sequential, so the bits are mixed
+         * to avoid clustering in the table.
+         *
+         * @param  key  key
+         * @return  hash code
+         */
+        private static int hash( long key ) {
+            long h = key * 0x9e3779b97f4a7c15L;
+            return (int) ( h ^ ( h >>> 32 ) );
+        }
+    }
+
     /**
      * Utility class used for the list storage implementation.
      * It has to be private for use here, so that we can distinguish
@@ -362,5 +676,6 @@ class Binners {
      * and those added as items.
      */
     private static class StorageList extends LinkedList<Object> {
+        private static final long serialVersionUID = 1L;
     }
 }
@@ -70,7 +70,8 @@ public class HtmSkyPixellator implements SkyPixellator {
         return levelParam_;
     }
 
-    public Object[] getPixels( double alpha, double delta, double radius ) {
+    public synchronized Object[] getPixels( double alpha, double delta,
+                                            double radius ) {
         double arcminRadius = Math.toDegrees( radius ) * 60.0;
         Circle zone = new Circle( alpha, delta, arcminRadius );
 
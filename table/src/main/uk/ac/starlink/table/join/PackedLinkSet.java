@@ -0,0 +1,709 @@
+package uk.ac.starlink.table.join;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * LinkSet implementation which stores pair links compactly.
+ *
+ * <p>Links containing exactly two plain {@link RowRef}s, which are
+ * either plain {@link RowLink}s or {@link RowLink2}s, are not stored
+ * as objects but as entries in chunked primitive arrays
+ * holding table indices, row indices and score.
+ * This requires around 40 bytes per link, rather than the several
+ * hundred bytes taken by the equivalent objects in a
+ * {@link HashSetLinkSet}, which makes a big difference for
+ * matches with very many pairs.
+ * Links of any other kind are held in a HashSetLinkSet.
+ *
+ * <p>RowLink objects are created on demand by the iterator,
+ * so that modifications to links returned from the iterator
+ * are not reflected in the content of this set.
+ */
+class PackedLinkSet implements LinkSet {
+
+    private final LinkSet otherLinks_;
+    private int[][] tables_;
+    private long[][] rows1_;
+    private long[][] rows2_;
+    private double[][] scores_;
+    private byte[][] flags_;
+    private int nEntry_;
+    private int nLive_;
+    private int[] hash_;
+    private int hashMask_;
+    private boolean isSorted_;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_TABLE = 0x7fff;
+    private static final int MAX_HASH = 1 << 30;
+    private static final double MAX_LOAD = 0.6;
+    private static final byte FLAG_LINK2 = 1;
+    private static final byte FLAG_DELETED = 2;
+
+    /**
+     * Constructor.
+     */
+    public PackedLinkSet() {
+        otherLinks_ = new HashSetLinkSet();
+        tables_ = new int[ 0 ][];
+        rows1_ = new long[ 0 ][];
+        rows2_ = new long[ 0 ][];
+        scores_ = new double[ 0 ][];
+        flags_ = new byte[ 0 ][];
+    }
+
+    public void addLink( RowLink link ) {
+        isSorted_ = false;
+        if ( isPackable( link ) ) {
+            if ( otherLinks_.size() > 0 ) {
+                otherLinks_.removeLink( link );
+            }
+            RowRef ref1 = link.getRef( 0 );
+            RowRef ref2 = link.getRef( 1 );
+            int tables = packTables( ref1.getTableIndex(),
+                                     ref2.getTableIndex() );
+            long row1 = ref1.getRowIndex();
+            long row2 = ref2.getRowIndex();
+            boolean isLink2 = link instanceof RowLink2;
+            double score = isLink2 ? ((RowLink2) link).getScore()
+                                   : Double.NaN;
+            byte flag = isLink2 ? FLAG_LINK2 : 0;
+            int ient = findEntry( tables, row1, row2 );
+            if ( ient >= 0 ) {
+                scores_[ ient >>> CHUNK_SHIFT ][ ient & CHUNK_MASK ] = score;
+                flags_[ ient >>> CHUNK_SHIFT ][ ient & CHUNK_MASK ] = flag;
+            }
+            else {
+                ient = appendEntry( tables, row1, row2, score, flag );
+                insertHash( ient );
+            }
+        }
+        else {
+            if ( link.size() == 2 ) {
+                removePacked( link );
+            }
+            otherLinks_.addLink( link );
+        }
+    }
+
+    public boolean containsLink( RowLink link ) {
+        if ( link.size() == 2 && isPackableRefs( link ) &&
+             findEntry( packTables( link.getRef( 0 ).getTableIndex(),
+                                    link.getRef( 1 ).getTableIndex() ),
+                        link.getRef( 0 ).getRowIndex(),
+                        link.getRef( 1 ).getRowIndex() ) >= 0 ) {
+            return true;
+        }
+        return otherLinks_.size() > 0 && otherLinks_.containsLink( link );
+    }
+
+    public boolean removeLink( RowLink link ) {
+        boolean removed = link.size() == 2 && removePacked( link );
+        if ( otherLinks_.size() > 0 ) {
+            removed = otherLinks_.removeLink( link ) || removed;
+        }
+        return removed;
+    }
+
+    public int size() {
+        return nLive_ + otherLinks_.size();
+    }
+
+    public Iterator<RowLink> iterator() {
+        final Iterator<RowLink> packedIt = new PackedIterator();
+        final Iterator<RowLink> otherIt = otherLinks_.iterator();
+        if ( ! isSorted_ || otherLinks_.size() == 0 ) {
+            return new Iterator<RowLink>() {
+                Iterator<RowLink> lastIt_;
+                public boolean hasNext() {
+                    return packedIt.hasNext() || otherIt.hasNext();
+                }
+                public RowLink next() {
+                    lastIt_ = packedIt.hasNext() ? packedIt : otherIt;
+                    return lastIt_.next();
+                }
+                public void remove() {
+                    if ( lastIt_ == null ) {
+                        throw new IllegalStateException();
+                    }
+                    lastIt_.remove();
+                }
+            };
+        }
+
+        /* If sorted, merge the two sorted sequences.  Each underlying
+         * iterator is only advanced when its next element is required,
+         * so that remove() immediately following next() can be passed
+         * to the iterator that supplied the last element. */
+        else {
+            return new Iterator<RowLink>() {
+                RowLink packedNext_;
+                RowLink otherNext_;
+                boolean packedPending_ = true;
+                boolean otherPending_ = true;
+                Iterator<RowLink> lastIt_;
+                public boolean hasNext() {
+                    fill();
+                    return packedNext_ != null || otherNext_ != null;
+                }
+                public RowLink next() {
+                    fill();
+                    final RowLink link;
+                    if ( packedNext_ == null && otherNext_ == null ) {
+                        throw new NoSuchElementException();
+                    }
+                    else if ( otherNext_ == null ||
+                              ( packedNext_ != null &&
+                                packedNext_.compareTo( otherNext_ ) <= 0 ) ) {
+                        link = packedNext_;
+                        lastIt_ = packedIt;
+                        packedPending_ = true;
+                    }
+                    else {
+                        link = otherNext_;
+                        lastIt_ = otherIt;
+                        otherPending_ = true;
+                    }
+                    return link;
+                }
+                public void remove() {
+                    if ( lastIt_ == null ||
+                         ! ( lastIt_ == packedIt ? packedPending_
+                                                 : otherPending_ ) ) {
+                        throw new IllegalStateException();
+                    }
+                    lastIt_.remove();
+                    lastIt_ = null;
+                }
+                private void fill() {
+                    if ( packedPending_ ) {
+                        packedNext_ = advance( packedIt );
+                        packedPending_ = false;
+                    }
+                    if ( otherPending_ ) {
+                        otherNext_ = advance( otherIt );
+                        otherPending_ = false;
+                    }
+                }
+            };
+        }
+    }
+
+    public boolean sort() {
+        if ( ! otherLinks_.sort() ) {
+            return false;
+        }
+        int[] order;
+        try {
+            order = new int[ nLive_ ];
+        }
+        catch ( OutOfMemoryError e ) {
+            return false;
+        }
+        int ilive = 0;
+        for ( int ient = 0; ient < nEntry_; ient++ ) {
+            if ( ! isDeleted( ient ) ) {
+                order[ ilive++ ] = ient;
+            }
+        }
+        assert ilive == nLive_;
+        mergeSort( order, new int[ nLive_ ], 0, nLive_ );
+
+        /* Rewrite the entry arrays in sorted order.  The hash index
+         * is discarded, and will be rebuilt if required. */
+        int nchunk = ( nLive_ + CHUNK_MASK ) >>> CHUNK_SHIFT;
+        int[][] tables = new int[ nchunk ][];
+        long[][] rows1 = new long[ nchunk ][];
+        long[][] rows2 = new long[ nchunk ][];
+        double[][] scores = new double[ nchunk ][];
+        byte[][] flags = new byte[ nchunk ][];
+        for ( int ic = 0; ic < nchunk; ic++ ) {
+            int n = Math.min( CHUNK_SIZE, nLive_ - ( ic << CHUNK_SHIFT ) );
+            tables[ ic ] = new int[ n ];
+            rows1[ ic ] = new long[ n ];
+            rows2[ ic ] = new long[ n ];
+            scores[ ic ] = new double[ n ];
+            flags[ ic ] = new byte[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                int ient = order[ ( ic << CHUNK_SHIFT ) + j ];
+                int ic0 = ient >>> CHUNK_SHIFT;
+                int j0 = ient & CHUNK_MASK;
+                tables[ ic ][ j ] = tables_[ ic0 ][ j0 ];
+                rows1[ ic ][ j ] = rows1_[ ic0 ][ j0 ];
+                rows2[ ic ][ j ] = rows2_[ ic0 ][ j0 ];
+                scores[ ic ][ j ] = scores_[ ic0 ][ j0 ];
+                flags[ ic ][ j ] = flags_[ ic0 ][ j0 ];
+            }
+        }
+        tables_ = tables;
+        rows1_ = rows1;
+        rows2_ = rows2;
+        scores_ = scores;
+        flags_ = flags;
+        nEntry_ = nLive_;
+        hash_ = null;
+        isSorted_ = true;
+        return true;
+    }
+
+    /**
+     * Indicates whether a given link can be stored in packed form.
+     *
+     * @param  link  link
+     * @return   true iff link can be packed
+     */
+    private static boolean isPackable( RowLink link ) {
+        Class<?> clazz = link.getClass();
+        return ( clazz == RowLink2.class ||
+                 ( clazz == RowLink.class && link.size() == 2 ) )
+            && link.getRef( 0 ).getClass() == RowRef.class
+            && link.getRef( 1 ).getClass() == RowRef.class
+            && isPackableRefs( link );
+    }
+
+    /**
+     * Indicates whether the refs in a 2-element link have values
+     * that can be represented in packed form.
+     * Since RowRef equality depends only on these values,
+     * this determines whether an equivalent link may be present
+     * in the packed entries.
+     *
+     * @param  link  link with size 2
+     * @return   true iff link ref values can be packed
+     */
+    private static boolean isPackableRefs( RowLink link ) {
+        RowRef ref1 = link.getRef( 0 );
+        RowRef ref2 = link.getRef( 1 );
+        return ref1.getTableIndex() <= MAX_TABLE
+            && ref2.getTableIndex() <= MAX_TABLE
+            && ref1.getTableIndex() >= 0
+            && ref2.getTableIndex() >= 0;
+    }
+
+    /**
+     * Removes any packed entry equivalent to a given 2-element link.
+     *
+     * @param  link  link with size 2
+     * @return  true iff an entry was removed
+     */
+    private boolean removePacked( RowLink link ) {
+        if ( isPackableRefs( link ) ) {
+            int ient = findEntry( packTables( link.getRef( 0 ).getTableIndex(),
+                                              link.getRef( 1 )
+                                                  .getTableIndex() ),
+                                  link.getRef( 0 ).getRowIndex(),
+                                  link.getRef( 1 ).getRowIndex() );
+            if ( ient >= 0 ) {
+                deleteEntry( ient );
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a new entry to the packed arrays.
+     *
+     * @param  tables  packed table indices
+     * @param  row1   row index of first ref
+     * @param  row2   row index of second ref
+     * @param  score  score
+     * @param  flag   flags
+     * @return  index of new entry
+     */
+    private int appendEntry( int tables, long row1, long row2, double score,
+                             byte flag ) {
+        if ( nEntry_ == Integer.MAX_VALUE ) {
+            throw new IllegalStateException( "Too many links" );
+        }
+        int ient = nEntry_++;
+        int ic = ient >>> CHUNK_SHIFT;
+        if ( ic == tables_.length ) {
+            tables_ = extend( tables_, new int[ CHUNK_SIZE ] );
+            rows1_ = extend( rows1_, new long[ CHUNK_SIZE ] );
+            rows2_ = extend( rows2_, new long[ CHUNK_SIZE ] );
+            scores_ = extend( scores_, new double[ CHUNK_SIZE ] );
+            flags_ = extend( flags_, new byte[ CHUNK_SIZE ] );
+        }
+        int j = ient & CHUNK_MASK;
+        if ( j == tables_[ ic ].length ) {
+            int n = Math.min( CHUNK_SIZE, j * 2 );
+            tables_[ ic ] = Arrays.copyOf( tables_[ ic ], n );
+            rows1_[ ic ] = Arrays.copyOf( rows1_[ ic ], n );
+            rows2_[ ic ] = Arrays.copyOf( rows2_[ ic ], n );
+            scores_[ ic ] = Arrays.copyOf( scores_[ ic ], n );
+            flags_[ ic ] = Arrays.copyOf( flags_[ ic ], n );
+        }
+        tables_[ ic ][ j ] = tables;
+        rows1_[ ic ][ j ] = row1;
+        rows2_[ ic ][ j ] = row2;
+        scores_[ ic ][ j ] = score;
+        flags_[ ic ][ j ] = flag;
+        nLive_++;
+        return ient;
+    }
+
+    /**
+     * Marks an entry as deleted and removes it from the hash index.
+     *
+     * @param  ient  entry index
+     */
+    private void deleteEntry( int ient ) {
+        removeHash( ient );
+        flags_[ ient >>> CHUNK_SHIFT ][ ient & CHUNK_MASK ] |= FLAG_DELETED;
+        nLive_--;
+    }
+
+    /**
+     * Indicates whether a given entry has been deleted.
+     *
+     * @param  ient  entry index
+     * @return  true iff deleted
+     */
+    private boolean isDeleted( int ient ) {
+        return ( flags_[ ient >>> CHUNK_SHIFT ][ ient & CHUNK_MASK ]
+                 & FLAG_DELETED ) != 0;
+    }
+
+    /**
+     * Returns a RowLink object corresponding to a given entry.
+     *
+     * @param  ient  entry index
+     * @return  new link
+     */
+    private RowLink createLink( int ient ) {
+        int ic = ient >>> CHUNK_SHIFT;
+        int j = ient & CHUNK_MASK;
+        int tables = tables_[ ic ][ j ];
+        RowRef ref1 = new RowRef( tables >>> 16, rows1_[ ic ][ j ] );
+        RowRef ref2 = new RowRef( tables & 0xffff, rows2_[ ic ][ j ] );
+        if ( ( flags_[ ic ][ j ] & FLAG_LINK2 ) != 0 ) {
+            RowLink2 link = new RowLink2( ref1, ref2 );
+            link.setScore( scores_[ ic ][ j ] );
+            return link;
+        }
+        else {
+            return new RowLink( new RowRef[] { ref1, ref2 } );
+        }
+    }
+
+    /**
+     * Returns the index of the live entry with given content.
+     *
+     * @param  tables  packed table indices
+     * @param  row1   row index of first ref
+     * @param  row2   row index of second ref
+     * @return  entry index, or -1 if not present
+     */
+    private int findEntry( int tables, long row1, long row2 ) {
+        int[] hash = getHash();
+        for ( int is = hashCode( tables, row1, row2 ) & hashMask_;
+              hash[ is ] != 0; is = ( is + 1 ) & hashMask_ ) {
+            int ient = hash[ is ] - 1;
+            int ic = ient >>> CHUNK_SHIFT;
+            int j = ient & CHUNK_MASK;
+            if ( tables_[ ic ][ j ] == tables &&
+                 rows1_[ ic ][ j ] == row1 &&
+                 rows2_[ ic ][ j ] == row2 ) {
+                return ient;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the hash index, building it if necessary.
+     * The hash index is an open-addressing table with linear probing
+     * whose slots contain entry index + 1, or zero for empty.
+     *
+     * @return  hash index array
+     */
+    private int[] getHash() {
+        if ( hash_ == null ) {
+            int size = 1024;
+            while ( size < MAX_HASH && nLive_ >= size * MAX_LOAD ) {
+                size <<= 1;
+            }
+            int[] hash = new int[ size ];
+            int mask = size - 1;
+            for ( int ient = 0; ient < nEntry_; ient++ ) {
+                if ( ! isDeleted( ient ) ) {
+                    int is = entryHashCode( ient ) & mask;
+                    while ( hash[ is ] != 0 ) {
+                        is = ( is + 1 ) & mask;
+                    }
+                    hash[ is ] = ient + 1;
+                }
+            }
+            hash_ = hash;
+            hashMask_ = mask;
+        }
+        return hash_;
+    }
+
+    /**
+     * Adds an entry to the hash index.
+     *
+     * @param  ient  entry index
+     */
+    private void insertHash( int ient ) {
+
+        /* If there is no index, or it is too full, arrange for it to be
+         * rebuilt (including this entry) next time it is required. */
+        if ( hash_ == null ) {
+            return;
+        }
+        if ( nLive_ >= hash_.length * MAX_LOAD && hash_.length < MAX_HASH ) {
+            hash_ = null;
+            return;
+        }
+        if ( nLive_ >= hash_.length - 1 ) {
+            throw new IllegalStateException( "Too many links" );
+        }
+        int is = entryHashCode( ient ) & hashMask_;
+        while ( hash_[ is ] != 0 ) {
+            is = ( is + 1 ) & hashMask_;
+        }
+        hash_[ is ] = ient + 1;
+    }
+
+    /**
+     * Removes an entry from the hash index.
+     * Following entries in the same probe run are shifted back
+     * so that no tombstones are required.
+     *
+     * @param  ient  entry index
+     */
+    private void removeHash( int ient ) {
+        int[] hash = getHash();
+        int is = entryHashCode( ient ) & hashMask_;
+        while ( hash[ is ] != ient + 1 ) {
+            is = ( is + 1 ) & hashMask_;
+        }
+        int gap = is;
+        for ( int js = ( gap + 1 ) & hashMask_; hash[ js ] != 0;
+              js = ( js + 1 ) & hashMask_ ) {
+            int home = entryHashCode( hash[ js ] - 1 ) & hashMask_;
+
+            /* Move the entry into the gap if its home slot is not
+             * cyclically within (gap, js]. */
+            if ( ( ( js - home ) & hashMask_ ) >=
+                 ( ( js - gap ) & hashMask_ ) ) {
+                hash[ gap ] = hash[ js ];
+                gap = js;
+            }
+        }
+        hash[ gap ] = 0;
+    }
+
+    /**
+     * Returns the hash code for a given entry.
+     *
+     * @param  ient  entry index
+     * @return  hash code
+     */
+    private int entryHashCode( int ient ) {
+        int ic = ient >>> CHUNK_SHIFT;
+        int j = ient & CHUNK_MASK;
+        return hashCode( tables_[ ic ][ j ], rows1_[ ic ][ j ],
+                         rows2_[ ic ][ j ] );
+    }
+
+    /**
+     * Sorts a range of an array of entry indices into RowLink natural
+     * order.  Merge sort is used, though it does not need to be stable.
+     *
+     * @param  order  array to sort
+     * @param  work   workspace array, same length as order
+     * @param  lo   start of range (inclusive)
+     * @param  hi   end of range (exclusive)
+     */
+    private void mergeSort( int[] order, int[] work, int lo, int hi ) {
+        int n = hi - lo;
+        if ( n <= 32 ) {
+            for ( int i = lo + 1; i < hi; i++ ) {
+                int v = order[ i ];
+                int k = i - 1;
+                while ( k >= lo && compareEntries( order[ k ], v ) > 0 ) {
+                    order[ k + 1 ] = order[ k ];
+                    k--;
+                }
+                order[ k + 1 ] = v;
+            }
+            return;
+        }
+        int mid = lo + n / 2;
+        mergeSort( order, work, lo, mid );
+        mergeSort( order, work, mid, hi );
+        if ( compareEntries( order[ mid - 1 ], order[ mid ] ) <= 0 ) {
+            return;
+        }
+        System.arraycopy( order, lo, work, lo, n );
+        int i1 = lo;
+        int i2 = mid;
+        for ( int k = lo; k < hi; k++ ) {
+            if ( i2 >= hi ||
+                 ( i1 < mid &&
+                   compareEntries( work[ i1 ], work[ i2 ] ) <= 0 ) ) {
+                order[ k ] = work[ i1++ ];
+            }
+            else {
+                order[ k ] = work[ i2++ ];
+            }
+        }
+    }
+
+    /**
+     * Compares two entries in a way consistent with
+     * {@link RowLink#compareTo}.
+     *
+     * @param  ient1  first entry index
+     * @param  ient2  second entry index
+     * @return  comparison result
+     */
+    private int compareEntries( int ient1, int ient2 ) {
+        int ic1 = ient1 >>> CHUNK_SHIFT;
+        int j1 = ient1 & CHUNK_MASK;
+        int ic2 = ient2 >>> CHUNK_SHIFT;
+        int j2 = ient2 & CHUNK_MASK;
+        int tables1 = tables_[ ic1 ][ j1 ];
+        int tables2 = tables_[ ic2 ][ j2 ];
+        int ta1 = tables1 >>> 16;
+        int tb1 = tables1 & 0xffff;
+        int ta2 = tables2 >>> 16;
+        int tb2 = tables2 & 0xffff;
+        long ra1 = rows1_[ ic1 ][ j1 ];
+        long rb1 = rows2_[ ic1 ][ j1 ];
+        long ra2 = rows1_[ ic2 ][ j2 ];
+        long rb2 = rows2_[ ic2 ][ j2 ];
+
+        /* Refs are sorted within each link, so the row index for the
+         * first table of each pair is the lowest one for that table. */
+        int nTable = Math.max( tb1, tb2 ) + 1;
+        for ( int it = 0; it < nTable; it++ ) {
+            long r1 = ta1 == it ? ra1 : ( tb1 == it ? rb1 : Long.MAX_VALUE );
+            long r2 = ta2 == it ? ra2 : ( tb2 == it ? rb2 : Long.MAX_VALUE );
+            if ( r1 != r2 ) {
+                return r1 < r2 ? -1 : +1;
+            }
+        }
+        return Integer.compare( linkHashCode( ta1, ra1, tb1, rb1 ),
+                                linkHashCode( ta2, ra2, tb2, rb2 ) );
+    }
+
+    /**
+     * Returns the value of {@link RowLink#hashCode} for a pair link.
+     *
+     * @param  t1  table index of first ref
+     * @param  r1  row index of first ref
+     * @param  t2  table index of second ref
+     * @param  r2  row index of second ref
+     * @return  link hash code
+     */
+    private static int linkHashCode( int t1, long r1, int t2, long r2 ) {
+        int result = 37;
+        result = 23 * result + new RowRef( t1, r1 ).hashCode();
+        result = 23 * result + new RowRef( t2, r2 ).hashCode();
+        return result;
+    }
+
+    /**
+     * Packs two table indices into an int.
+     *
+     * @param  t1  first table index
+     * @param  t2  second table index
+     * @return  packed value
+     */
+    private static int packTables( int t1, int t2 ) {
+        return ( t1 << 16 ) | t2;
+    }
+
+    /**
+     * Hash function for the hash index.
+     *
+     * @param  tables  packed table indices
+     * @param  row1   row index of first ref
+     * @param  row2   row index of second ref
+     * @return  well-mixed hash code
+     */
+    private static int hashCode( int tables, long row1, long row2 ) {
+        long h = row1 * 0x9e3779b97f4a7c15L;
+        h = ( h ^ ( h >>> 29 ) ^ row2 ) * 0xbf58476d1ce4e5b9L;
+        h = ( h ^ ( h >>> 32 ) ^ tables ) * 0x94d049bb133111ebL;
+        return (int) ( h ^ ( h >>> 31 ) );
+    }
+
+    /**
+     * Returns a copy of an array of chunks with an extra chunk appended.
+     *
+     * @param  chunks  existing chunks
+     * @param  chunk   new chunk
+     * @return  extended array
+     */
+    private static <T> T[] extend( T[] chunks, T chunk ) {
+        T[] out = Arrays.copyOf( chunks, chunks.length + 1 );
+        out[ chunks.length ] = chunk;
+        return out;
+    }
+
+    /**
+     * Returns the next element of an iterator, or null if there are
+     * no more.
+     *
+     * @param  it  iterator
+     * @return  next link or null
+     */
+    private static RowLink advance( Iterator<RowLink> it ) {
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Iterator over the packed entries.
+     */
+    private class PackedIterator implements Iterator<RowLink> {
+        private int next_;
+        private int last_ = -1;
+
+        PackedIterator() {
+            next_ = nextLive( 0 );
+        }
+
+        public boolean hasNext() {
+            return next_ < nEntry_;
+        }
+
+        public RowLink next() {
+            if ( next_ >= nEntry_ ) {
+                throw new NoSuchElementException();
+            }
+            last_ = next_;
+            next_ = nextLive( next_ + 1 );
+            return createLink( last_ );
+        }
+
+        public void remove() {
+            if ( last_ < 0 || isDeleted( last_ ) ) {
+                throw new IllegalStateException();
+            }
+            deleteEntry( last_ );
+        }
+
+        /**
+         * Returns the index of the first live entry at or after
+         * a given index.
+         *
+         * @param  ient  start index
+         * @return  next live entry index, or nEntry_ if none
+         */
+        private int nextLive( int ient ) {
+            while ( ient < nEntry_ && isDeleted( ient ) ) {
+                ient++;
+            }
+            return ient;
+        }
+    }
+}
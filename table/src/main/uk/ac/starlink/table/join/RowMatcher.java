@@ -13,8 +13,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -41,8 +46,15 @@ public class RowMatcher {
     private final StarTable[] tables;
     private final int nTable;
     private ProgressIndicator indicator = new NullProgressIndicator();
+    private RowRunner runner;
     private long startTime;
 
+    /** Number of rows processed by a thread between progress updates. */
+    private static final int PROGRESS_BLOCK = 4096;
+
+    /** Total input row count above which packed link sets are used. */
+    private static final long PACKED_LINKS_NROW = 200000;
+
     /**
      * Constructs a new matcher with match characteristics defined by
      * a given matching engine.
@@ -74,16 +86,45 @@ public class RowMatcher {
         return indicator;
     }
 
+    /**
+     * Sets the row runner used to control parallel processing.
+     * If null, which is the default, all processing is sequential.
+     * Currently, only the scanning stage of pair matches
+     * is done in parallel.
+     * The match engine must be safe for concurrent use
+     * if a parallel runner is set.
+     *
+     * @param  runner  row runner, or null
+     */
+    public void setRowRunner( RowRunner runner ) {
+        this.runner = runner;
+    }
+
+    /**
+     * Returns the row runner used to control parallel processing.
+     *
+     * @return  row runner, or null for sequential processing
+     */
+    public RowRunner getRowRunner() {
+        return runner;
+    }
+
     /**
      * Constructs a new empty LinkSet for use by this matcher.
-     * The current implementation returns one based on a SortedSet,
-     * but future implementations may provide the option of LinkSet
-     * implementations backed by disk.
+     * If the input tables are large, so that the result may contain
+     * very many links, the returned set stores pair links in a packed
+     * form with a much smaller memory footprint.
+     * Otherwise, a set based on a HashSet is used.
      *
      * @return  new LinkSet
      */
     public LinkSet createLinkSet() {
-        return new HashSetLinkSet();
+        long nrow = 0;
+        for ( StarTable table : tables ) {
+            nrow += Math.max( 0, table.getRowCount() );
+        }
+        return nrow >= PACKED_LINKS_NROW ? new PackedLinkSet()
+                                         : new HashSetLinkSet();
     }
 
     /**
@@ -242,6 +283,15 @@ public class RowMatcher {
 
         /* Scan the rows for the sequential table. */
         LinkSet linkSet = createLinkSet();
+        List<RowLink2> parallelLinks =
+            scanParallel( indexR, indexS, range, bestOnly, binner );
+        if ( parallelLinks != null ) {
+            for ( RowLink2 pairLink : parallelLinks ) {
+                assert ! linkSet.containsLink( pairLink );
+                linkSet.addLink( pairLink );
+            }
+            return linkSet;
+        }
         ProgressRowSequence sseq =
             new ProgressRowSequence( tables[ indexS ], indicator,
                                      "Scanning rows for table "
@@ -250,50 +300,9 @@ public class RowMatcher {
             for ( long isrow = 0; sseq.nextProgress(); isrow++ ) {
                 Object[] srowData = sseq.getRow();
                 if ( range.isInside( srowData ) ) {
-
-                    /* Identify rows from table R which may match table S. */
-                    Object[] keys = engine.getBins( srowData );
-                    int nkey = keys.length;
-                    Set<Long> rrowSet = new HashSet<Long>();
-                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                        long[] rrows = binner.getLongs( keys[ ikey ] );
-                        if ( rrows != null ) {
-                            for ( int ir = 0; ir < rrows.length; ir++ ) {
-                                rrowSet.add( new Long( rrows[ ir ] ) );
-                            }
-                        }
-                    }
-                    long[] rrows = new long[ rrowSet.size() ];
-                    int ir = 0;
-                    for ( Long rr : rrowSet ) {
-                        rrows[ ir++ ] = rr.longValue();
-                    }
-                    Arrays.sort( rrows );
-
-                    /* Score and accumulate matched links. */
-                    List<RowLink2> linkList = new ArrayList<RowLink2>( 1 );
-                    double bestScore = Double.MAX_VALUE;
-                    for ( ir = 0; ir < rrows.length; ir++ ) {
-                        long irrow = rrows[ ir ];
-                        Object[] rrowData = tables[ indexR ].getRow( irrow );
-                        double score = engine.matchScore( srowData, rrowData );
-                        if ( score >= 0 &&
-                             ( ! bestOnly || score < bestScore ) ) {
-                            RowRef rref = new RowRef( indexR, irrow );
-                            RowRef sref = new RowRef( indexS, isrow );
-                            RowLink2 pairLink = new RowLink2( rref, sref );
-                            pairLink.setScore( score );
-                            if ( bestOnly ) {
-                                bestScore = score;
-                                linkList.clear();
-                            }
-                            linkList.add( pairLink );
-                            assert ( ! bestOnly ) || ( linkList.size() == 1 );
-                        }
-                    }
-
-                    /* Add matched links to output set. */
-                    for ( RowLink2 pairLink : linkList ) {
+                    for ( RowLink2 pairLink :
+                          scanRow( indexR, indexS, isrow, srowData, binner,
+                                   bestOnly ) ) {
                         assert ! linkSet.containsLink( pairLink );
                         linkSet.addLink( pairLink );
                     }
@@ -306,6 +315,170 @@ public class RowMatcher {
         return linkSet;
     }
 
+    /**
+     * Attempts to scan the rows of the sequential table for matches
+     * using multiple threads, according to this matcher's row runner.
+     * If parallel execution is not appropriate, null is returned,
+     * and the caller should do the scan sequentially.
+     *
+     * @param  indexR  index of table which will be accessed randomly
+     * @param  indexS  index of table which will be scanned
+     * @param  range   range outside which pairs can be ignored
+     * @param  bestOnly  whether only the best match for each row
+     *                   of the sequential table is required
+     * @param  binner   binner populated with the row indices of table R
+     * @return  list of pair links, or null if no parallel scan was done
+     */
+    private List<RowLink2> scanParallel( final int indexR, final int indexS,
+                                         final NdRange range,
+                                         final boolean bestOnly,
+                                         final LongBinner binner )
+            throws IOException, InterruptedException {
+        StarTable tableS = tables[ indexS ];
+        if ( runner == null || ! runner.isParallel( tableS ) ) {
+            return null;
+        }
+        RowSplittable rsplit = tableS.getRowSplittable();
+        if ( rsplit.rowIndex() == null ) {
+            rsplit.close();
+            return null;
+        }
+        final double nrow = tableS.getRowCount();
+        final AtomicLong nDone = new AtomicLong();
+        RowCollector<List<RowLink2>> collector =
+                new RowCollector<List<RowLink2>>() {
+            public List<RowLink2> createAccumulator() {
+                return new ArrayList<RowLink2>();
+            }
+            public List<RowLink2> combine( List<RowLink2> links1,
+                                           List<RowLink2> links2 ) {
+                links1.addAll( links2 );
+                return links1;
+            }
+            public void accumulateRows( RowSplittable rseq,
+                                        List<RowLink2> links )
+                    throws IOException {
+                LongSupplier rowIndex = rseq.rowIndex();
+                int nr = 0;
+                while ( rseq.next() ) {
+                    Object[] srowData = rseq.getRow();
+                    if ( range.isInside( srowData ) ) {
+                        links.addAll( scanRow( indexR, indexS,
+                                               rowIndex.getAsLong(),
+                                               srowData, binner,
+                                               bestOnly ) );
+                    }
+                    if ( ++nr == PROGRESS_BLOCK ) {
+                        setParallelLevel( nDone.addAndGet( nr ) / nrow );
+                        nr = 0;
+                    }
+                }
+                nDone.addAndGet( nr );
+            }
+        };
+        indicator.startStage( "Scanning rows for table " + ( indexS + 1 )
+                            + " (" + runner + ")" );
+        try {
+            return runner.collect( collector, rsplit );
+        }
+        catch ( RuntimeException e ) {
+            for ( Throwable t = e; t != null; t = t.getCause() ) {
+                if ( t instanceof InterruptedException ) {
+                    throw (InterruptedException) t;
+                }
+            }
+            throw e;
+        }
+        finally {
+            indicator.endStage();
+        }
+    }
+
+    /**
+     * Updates the progress indicator from one of several concurrent
+     * threads.
+     *
+     * @param  level  progress level
+     * @throws  RuntimeException  with an InterruptedException as its cause
+     *                            if the indicator requests interruption
+     */
+    private void setParallelLevel( double level ) {
+        synchronized ( indicator ) {
+            try {
+                indicator.setLevel( level );
+            }
+            catch ( InterruptedException e ) {
+                throw new RuntimeException( "Match interrupted", e );
+            }
+        }
+    }
+
+    /**
+     * Identifies the rows of the random table that match a given row
+     * of the sequential table.  This method is thread-safe.
+     *
+     * @param  indexR  index of table which will be accessed randomly
+     * @param  indexS  index of table which is being scanned
+     * @param  isrow   row index in table S
+     * @param  srowData  row data for row <code>isrow</code> of table S
+     * @param  binner   binner populated with the row indices of table R
+     * @param  bestOnly  true to retain only the best match
+     * @return   list of pair links for the given row
+     */
+    private List<RowLink2> scanRow( int indexR, int indexS, long isrow,
+                                    Object[] srowData, LongBinner binner,
+                                    boolean bestOnly )
+            throws IOException {
+
+        /* Identify rows from table R which may match table S.
+         * Accumulate the candidate row indices, then sort them and
+         * remove duplicates. */
+        Object[] keys = engine.getBins( srowData );
+        int nkey = keys.length;
+        long[] rrows = new long[ 0 ];
+        int nr = 0;
+        for ( int ikey = 0; ikey < nkey; ikey++ ) {
+            long[] binRows = binner.getLongs( keys[ ikey ] );
+            if ( binRows != null ) {
+                if ( nr + binRows.length > rrows.length ) {
+                    rrows = Arrays.copyOf( rrows, nr + binRows.length );
+                }
+                System.arraycopy( binRows, 0, rrows, nr, binRows.length );
+                nr += binRows.length;
+            }
+        }
+        Arrays.sort( rrows, 0, nr );
+        int nu = 0;
+        for ( int ir = 0; ir < nr; ir++ ) {
+            if ( nu == 0 || rrows[ ir ] != rrows[ nu - 1 ] ) {
+                rrows[ nu++ ] = rrows[ ir ];
+            }
+        }
+
+        /* Score and accumulate matched links. */
+        List<RowLink2> linkList = new ArrayList<RowLink2>( 1 );
+        double bestScore = Double.MAX_VALUE;
+        for ( int ir = 0; ir < nu; ir++ ) {
+            long irrow = rrows[ ir ];
+            Object[] rrowData = tables[ indexR ].getRow( irrow );
+            double score = engine.matchScore( srowData, rrowData );
+            if ( score >= 0 &&
+                 ( ! bestOnly || score < bestScore ) ) {
+                RowRef rref = new RowRef( indexR, irrow );
+                RowRef sref = new RowRef( indexS, isrow );
+                RowLink2 pairLink = new RowLink2( rref, sref );
+                pairLink.setScore( score );
+                if ( bestOnly ) {
+                    bestScore = score;
+                    linkList.clear();
+                }
+                linkList.add( pairLink );
+                assert ( ! bestOnly ) || ( linkList.size() == 1 );
+            }
+        }
+        return linkList;
+    }
+
     /**
      * Returns a set of RowLink objects each of which represents matches
      * between one of the rows of a reference table and any of the other tables
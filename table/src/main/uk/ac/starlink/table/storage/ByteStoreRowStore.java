@@ -4,10 +4,12 @@ import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ByteStore;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.TableFormatException;
@@ -260,6 +262,10 @@ public class ByteStoreRowStore implements RowStore {
             };
         }
 
+        public RowSplittable getRowSplittable() {
+            return new ByteStoreRowSplittable( 0, nrow_ );
+        }
+
         /**
          * Creates a ByteStoreAccess that can access the data
          * for this row store.
@@ -270,5 +276,94 @@ public class ByteStoreRowStore implements RowStore {
             return NioByteStoreAccess
                   .createAccess( NioByteStoreAccess.copyBuffers( bbufs_ ) );
         }
+
+        /**
+         * RowSplittable implementation for a ByteStoreStarTable.
+         * Each part uses its own ByteStoreAccess, which is created lazily.
+         */
+        private class ByteStoreRowSplittable implements RowSplittable {
+            private long irow_;
+            private long end_;
+            private ByteStoreAccess access_;
+
+            /**
+             * Constructor.
+             *
+             * @param  start  index of first row (inclusive)
+             * @param  end    index of last row (exclusive)
+             */
+            ByteStoreRowSplittable( long start, long end ) {
+                irow_ = start - 1;
+                end_ = end;
+            }
+
+            public RowSplittable split() {
+                long nr = end_ - irow_ - 1;
+                if ( nr >= 2 ) {
+                    long mid = irow_ + 1 + nr / 2;
+                    RowSplittable other =
+                        new ByteStoreRowSplittable( mid, end_ );
+                    end_ = mid;
+                    return other;
+                }
+                else {
+                    return null;
+                }
+            }
+
+            public long splittableSize() {
+                return end_ - irow_ - 1;
+            }
+
+            public LongSupplier rowIndex() {
+                return () -> irow_;
+            }
+
+            public boolean next() {
+                if ( irow_ < end_ - 1 ) {
+                    irow_++;
+                    return true;
+                }
+                else {
+                    return false;
+                }
+            }
+
+            public Object getCell( int icol ) throws IOException {
+                ByteStoreAccess access = getAccess();
+                access.seek( offsets_.getCellOffset( irow_, icol ) );
+                return codecs_[ icol ].decodeObject( access );
+            }
+
+            public Object[] getRow() throws IOException {
+                ByteStoreAccess access = getAccess();
+                access.seek( offsets_.getRowOffset( irow_ ) );
+                Object[] row = new Object[ ncol_ ];
+                for ( int icol = 0; icol < ncol_; icol++ ) {
+                    row[ icol ] = codecs_[ icol ].decodeObject( access );
+                }
+                return row;
+            }
+
+            public void close() {
+                access_ = null;
+            }
+
+            /**
+             * Returns a data access object for use with this splittable,
+             * checking that the current row is legal.
+             *
+             * @return  access object
+             */
+            private ByteStoreAccess getAccess() {
+                if ( irow_ < 0 || irow_ >= end_ ) {
+                    throw new IllegalStateException();
+                }
+                if ( access_ == null ) {
+                    access_ = createAccess();
+                }
+                return access_;
+            }
+        }
     }
 }
@@ -0,0 +1,97 @@
+package uk.ac.starlink.table;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class FileInfoCacheTest extends TestCase {
+
+    private File cacheDir_;
+
+    public FileInfoCacheTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.table" ).setLevel( Level.WARNING );
+    }
+
+    public void setUp() throws IOException {
+        cacheDir_ = File.createTempFile( "cache", ".d" );
+        cacheDir_.delete();
+    }
+
+    public void tearDown() {
+        FileInfoCache.setDefaultInstance( null );
+        File[] files = cacheDir_.listFiles();
+        if ( files != null ) {
+            for ( File f : files ) {
+                f.delete();
+            }
+        }
+        cacheDir_.delete();
+    }
+
+    public void testCache() throws IOException {
+        File file = writeFile( "a,b\n1,2\n3,4\n" );
+        FileInfoCache cache = new FileInfoCache( cacheDir_ );
+        assertNull( cache.getValue( file, "x" ) );
+        cache.putValue( file, "x", "23" );
+        cache.putValue( file, "y", "abc" );
+        assertEquals( "23", cache.getValue( file, "x" ) );
+        assertEquals( 1, cacheDir_.listFiles().length );
+
+        /* Values persist across instances. */
+        FileInfoCache cache2 = new FileInfoCache( cacheDir_ );
+        assertEquals( "23", cache2.getValue( file, "x" ) );
+        assertEquals( "abc", cache2.getValue( file, "y" ) );
+        cache2.putValue( file, "y", null );
+        assertNull( new FileInfoCache( cacheDir_ ).getValue( file, "y" ) );
+
+        /* Values are forgotten when the file changes. */
+        OutputStream out = new FileOutputStream( file, true );
+        out.write( "5,6\n".getBytes( "UTF-8" ) );
+        out.close();
+        assertNull( cache.getValue( file, "x" ) );
+        assertNull( new FileInfoCache( cacheDir_ ).getValue( file, "x" ) );
+
+        /* Missing files have no values. */
+        File missing = new File( cacheDir_, "no-such-file" );
+        assertNull( cache.getValue( missing, "x" ) );
+        cache.putValue( missing, "x", "1" );
+        assertNull( cache.getValue( missing, "x" ) );
+        file.delete();
+    }
+
+    public void testFactory() throws IOException {
+        int nrow = 100;
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "x", new int[ nrow ] ) );
+        File file = File.createTempFile( "tbl", ".vot" );
+        file.deleteOnExit();
+        new StarTableOutput().writeStarTable( t0, file.toString(),
+                                              "votable" );
+        FileInfoCache cache = new FileInfoCache( cacheDir_ );
+        FileInfoCache.setDefaultInstance( cache );
+        assertSame( cache, FileInfoCache.getDefaultInstance() );
+        StarTableFactory factory = new StarTableFactory();
+        for ( int i = 0; i < 2; i++ ) {
+            StarTable table =
+                factory.makeStarTable( new FileDataSource( file ) );
+            assertEquals( nrow, Tables.randomTable( table ).getRowCount() );
+            assertEquals( "VOTable", cache.getValue( file, "format" ) );
+        }
+        file.delete();
+    }
+
+    private static File writeFile( String content ) throws IOException {
+        File file = File.createTempFile( "tbl", ".csv" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        out.write( content.getBytes( "UTF-8" ) );
+        out.close();
+        return file;
+    }
+}
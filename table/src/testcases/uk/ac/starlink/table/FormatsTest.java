@@ -17,8 +17,12 @@ import java.util.logging.Logger;
 import junit.framework.AssertionFailedError;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import uk.ac.starlink.feather.ArrowTableBuilder;
+import uk.ac.starlink.feather.ArrowTableWriter;
 import uk.ac.starlink.feather.FeatherTableBuilder;
 import uk.ac.starlink.feather.FeatherTableWriter;
+import uk.ac.starlink.parquet.ParquetTableBuilder;
+import uk.ac.starlink.parquet.ParquetTableWriter;
 import uk.ac.starlink.fits.AbstractWideFits;
 import uk.ac.starlink.fits.BintableStarTable;
 import uk.ac.starlink.fits.ColFitsTableWriter;
@@ -27,6 +31,7 @@ import uk.ac.starlink.fits.FitsConstants;
 import uk.ac.starlink.fits.FitsTableBuilder;
 import uk.ac.starlink.fits.FitsTableWriter;
 import uk.ac.starlink.fits.HealpixFitsTableWriter;
+import uk.ac.starlink.fits.TiledFitsTableWriter;
 import uk.ac.starlink.fits.VariableFitsTableWriter;
 import uk.ac.starlink.fits.WideFits;
 import uk.ac.starlink.table.storage.AdaptiveByteStore;
@@ -47,6 +52,7 @@ import uk.ac.starlink.table.formats.TstTableWriter;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.IntList;
+import uk.ac.starlink.util.SplitPolicy;
 import uk.ac.starlink.util.TestCase;
 import uk.ac.starlink.util.URLDataSource;
 import uk.ac.starlink.votable.DataFormat;
@@ -91,6 +97,7 @@ public class FormatsTest extends TableCase {
         Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.SEVERE );
         Logger.getLogger( "uk.ac.starlink.votable" ).setLevel( Level.WARNING );
         Logger.getLogger( "uk.ac.starlink.feather" ).setLevel( Level.SEVERE );
+        Logger.getLogger( "uk.ac.starlink.parquet" ).setLevel( Level.SEVERE );
 
         FitsConstants.configureHierarch();
     }
@@ -223,6 +230,8 @@ public class FormatsTest extends TableCase {
             "VOTable",
             "CDF",
             "feather",
+            "arrow",
+            "parquet",
             "GBIN",
         };
         String[] knownFormats = new String[] {
@@ -233,6 +242,8 @@ public class FormatsTest extends TableCase {
             "VOTable",
             "CDF",
             "feather",
+            "arrow",
+            "parquet",
             "GBIN",
             "ASCII",
             "CSV",
@@ -281,6 +292,7 @@ public class FormatsTest extends TableCase {
             "fits-basic",
             "fits-var",
             "fits-healpix",
+            "fits-tiled",
             "colfits-plus",
             "colfits-basic",
             "votable-tabledata",
@@ -291,6 +303,8 @@ public class FormatsTest extends TableCase {
             "votable-binary2-href",
             "votable-fits-inline",
             "feather",
+            "arrow",
+            "parquet",
             "text",
             "ascii",
             "csv",
@@ -466,8 +480,24 @@ public class FormatsTest extends TableCase {
                                new FitsTableBuilder( wide ), "fits" );
             exerciseReadWrite( new FitsTableWriter( "fits", false, wide ),
                                new FitsTableBuilder( wide ), "fits" );
+            FitsTableWriter parWriter = new FitsTableWriter( "fits", true,
+                                                             wide );
+            parWriter.setWritePolicy( new SplitPolicy() );
+            exerciseReadWrite( parWriter, new FitsTableBuilder( wide ),
+                               "fits" );
             exerciseReadWrite( new FitsPlusTableWriter( "fits-plus", wide ),
                                new FitsPlusTableBuilder( wide ), "fits" );
+            FitsPlusTableWriter parPlusWriter =
+                new FitsPlusTableWriter( "fits-plus", wide );
+            parPlusWriter.setParallel( true );
+            exerciseReadWrite( parPlusWriter,
+                               new FitsPlusTableBuilder( wide ), "fits" );
+            exerciseReadWrite( new TiledFitsTableWriter( "fits-tiled", -1,
+                                                         true, wide ),
+                               new FitsTableBuilder( wide ), "fits" );
+            exerciseReadWrite( new TiledFitsTableWriter( "fits-tiled", 3,
+                                                         false, wide ),
+                               new FitsTableBuilder( wide ), "fits" );
             exerciseReadWrite( new ColFitsTableWriter( "colfits", wide ),
                                new ColFitsTableBuilder( wide ), "fits" );
             exerciseReadWrite(
@@ -496,6 +526,16 @@ public class FormatsTest extends TableCase {
         exerciseReadWrite(
             new FeatherTableWriter( true, StoragePolicy.PREFER_MEMORY ),
             new FeatherTableBuilder(), "feather" );
+        exerciseReadWrite( new ArrowTableWriter(),
+                           new ArrowTableBuilder(), "arrow" );
+        exerciseReadWrite( new ArrowTableWriter( 1024 ),
+                           new ArrowTableBuilder(), "arrow" );
+        exerciseReadWrite( new ArrowTableWriter(),
+                           new FeatherTableBuilder(), "arrow" );
+        exerciseReadWrite( new ParquetTableWriter(),
+                           new ParquetTableBuilder(), "parquet" );
+        exerciseReadWrite( new ParquetTableWriter( 1024 ),
+                           new ParquetTableBuilder(), "parquet" );
         exerciseReadWrite( new AsciiTableWriter(),
                            new AsciiTableBuilder(), "text" );
         exerciseReadWrite( new CsvTableWriter( true ),
@@ -556,6 +596,12 @@ public class FormatsTest extends TableCase {
         else if ( "feather".equals( equalMethod ) ) {
             assertFeatherTableEquals( t1, t2 );
         }
+        else if ( "arrow".equals( equalMethod ) ) {
+            assertArrowTableEquals( t1, t2 );
+        }
+        else if ( "parquet".equals( equalMethod ) ) {
+            assertParquetTableEquals( t1, t2 );
+        }
         else if ( "exact".equals( equalMethod ) ) {
             assertTableEquals( t1, t2 );
         }
@@ -566,6 +612,35 @@ public class FormatsTest extends TableCase {
         }
     }
 
+    public void testHandlerOptions() throws IOException {
+        StarTableWriter fits = sto.getHandler( "fits" );
+        StarTableWriter parFits = sto.getHandler( "fits(parallel=true)" );
+        assertTrue( parFits instanceof FitsPlusTableWriter );
+        assertNotSame( fits, parFits );
+        assertEquals( "fits", parFits.getFormatName() );
+        assertTrue( ((FitsPlusTableWriter) parFits).isParallel() );
+        assertFalse( ((FitsPlusTableWriter) fits).isParallel() );
+        assertTrue( ((FitsTableWriter)
+                     sto.getHandler( "fits-basic( parallel = TRUE )" ))
+                   .isParallel() );
+        assertFalse( ((FitsTableWriter)
+                      sto.getHandler( "fits-basic(parallel=false)" ))
+                    .isParallel() );
+        String[] badFormats = {
+            "fits(parallel=maybe)", "fits(nosuchoption=1)", "fits(parallel)",
+            "nosuchformat(parallel=true)", "csv(parallel=true)",
+            "fits(parallel=true,parallel=false)",
+        };
+        for ( String fmt : badFormats ) {
+            try {
+                sto.getHandler( fmt );
+                fail( fmt );
+            }
+            catch ( TableFormatException e ) {
+            }
+        }
+    }
+
     public void testMultiReadWrite() throws IOException {
         exerciseMultiReadWrite( new FitsTableWriter(),
                                 new FitsTableBuilder(), "fits" );
@@ -828,6 +903,45 @@ public class FormatsTest extends TableCase {
         assertRowSequenceEquals( t1a, t2 );
     }
 
+    private void assertParquetTableEquals( StarTable t1, StarTable t2 )
+            throws IOException {
+        List<Class<?>> clazzes = Arrays.asList( new Class<?>[] {
+            Boolean.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, String.class,
+            byte[].class,
+        } );
+        IntList icols = new IntList();
+        int nc = t1.getColumnCount();
+        for ( int ic = 0; ic < nc; ic++ ) {
+            if ( clazzes.contains( t1.getColumnInfo( ic )
+                                     .getContentClass() ) ) {
+                icols.add( ic );
+            }
+        }
+        StarTable t1a = new ColumnPermutedStarTable( t1, icols.toIntArray() );
+        int ncol = t1a.getColumnCount();
+        assertEquals( ncol, t2.getColumnCount() );
+        assertEquals( t1a.getName(), t2.getName() );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            assertValueInfoEquals( t1a.getColumnInfo( ic ),
+                                   t2.getColumnInfo( ic ) );
+        }
+        assertRowSequenceEquals( t1a, t2 );
+    }
+
+    private void assertArrowTableEquals( StarTable t1, StarTable t2 )
+            throws IOException {
+        int ncol = t1.getColumnCount();
+        assertEquals( ncol, t2.getColumnCount() );
+        assertEquals( t1.getName(), t2.getName() );
+        assertEquals( t1.getURL() + "", t2.getURL() + "" );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            assertValueInfoEquals( t1.getColumnInfo( ic ),
+                                   t2.getColumnInfo( ic ) );
+        }
+        assertRowSequenceEquals( t1, t2 );
+    }
+
     /**
      * Checks table invariants.  Any StarTable should be able to run
      * through these tests without errors.
@@ -0,0 +1,89 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import uk.ac.starlink.util.TestCase;
+
+public class PrefetchTest extends TestCase {
+
+    public PrefetchTest( String name ) {
+        super( name );
+    }
+
+    public void testPrefetch() throws IOException {
+        int nrow = 10007;
+        ColumnStarTable base = ColumnStarTable.makeTableWithRows( nrow );
+        int[] data = new int[ nrow ];
+        fillCycle( data, 0, 1000 );
+        base.addColumn( ArrayColumn.makeColumn( "data", data ) );
+        int[] sizes = new int[] { 1, 10, 1024 };
+        for ( int bs : sizes ) {
+            StarTable pt = new PrefetchStarTable( base, bs, 2 );
+            assertTrue( pt.isRandom() );
+            RowSequence rseq = pt.getRowSequence();
+            for ( int i = 0; i < nrow; i++ ) {
+                assertTrue( rseq.next() );
+                assertEquals( new Integer( data[ i ] ), rseq.getCell( 0 ) );
+            }
+            assertFalse( rseq.next() );
+            assertFalse( rseq.next() );
+            rseq.close();
+
+            /* Close before the end. */
+            rseq = pt.getRowSequence();
+            assertTrue( rseq.next() );
+            rseq.close();
+        }
+    }
+
+    public void testError() throws IOException {
+        checkError( new IOException( "bad row" ) );
+        checkError( new TableFormatException( "bad format" ) );
+        checkError( new IllegalStateException( "bad state" ) );
+        checkError( new OutOfMemoryError( "no memory" ) );
+    }
+
+    /**
+     * Reads a prefetched table whose base table throws a given
+     * throwable part way through, and checks that the preceding rows
+     * are delivered and the throwable itself is then rethrown.
+     *
+     * @param  err  throwable to throw from the base table
+     */
+    private void checkError( final Throwable err ) throws IOException {
+        final int nrow = 500;
+        final int nbad = 345;
+        ColumnStarTable base = ColumnStarTable.makeTableWithRows( nrow );
+        base.addColumn( new ColumnData( new ColumnInfo( "x", Integer.class,
+                                                        null ) ) {
+            public Object readValue( long irow ) throws IOException {
+                if ( irow == nbad ) {
+                    if ( err instanceof IOException ) {
+                        throw (IOException) err;
+                    }
+                    else if ( err instanceof RuntimeException ) {
+                        throw (RuntimeException) err;
+                    }
+                    else {
+                        throw (Error) err;
+                    }
+                }
+                return new Integer( (int) irow );
+            }
+        } );
+        RowSequence rseq =
+            new PrefetchStarTable( base, 100, 1 ).getRowSequence();
+        for ( int i = 0; i < nbad; i++ ) {
+            assertTrue( rseq.next() );
+            assertEquals( new Integer( i ), rseq.getCell( 0 ) );
+        }
+        Throwable thrown = null;
+        try {
+            rseq.next();
+        }
+        catch ( Throwable e ) {
+            thrown = e;
+        }
+        assertSame( err, thrown );
+        rseq.close();
+    }
+}
@@ -0,0 +1,128 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.function.LongSupplier;
+import uk.ac.starlink.table.storage.ByteStoreRowStore;
+import uk.ac.starlink.table.storage.MemoryByteStore;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+import uk.ac.starlink.util.TestCase;
+
+public class RowSplittableTest extends TestCase {
+
+    private static final int NROW = 10007;
+    private final RowRunner[] runners_;
+
+    public RowSplittableTest( String name ) {
+        super( name );
+        SplitPolicy policy = new SplitPolicy( null, 10, (short) 0 );
+        runners_ = new RowRunner[] {
+            RowRunner.SEQUENTIAL,
+            RowRunner.DEFAULT,
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createBasicParallelProcessor( policy ) ),
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createPoolParallelProcessor( policy ) ),
+        };
+    }
+
+    public void testSplittables() throws IOException {
+        ColumnStarTable base = ColumnStarTable.makeTableWithRows( NROW );
+        int[] data = new int[ NROW ];
+        long total = 0;
+        for ( int i = 0; i < NROW; i++ ) {
+            data[ i ] = i * 3 + 1;
+            total += data[ i ];
+        }
+        base.addColumn( ArrayColumn.makeColumn( "data", data ) );
+        assertTrue( base.getRowSplittable() instanceof RandomRowSplittable );
+        checkSums( base, NROW, total, true );
+
+        ByteStoreRowStore rowStore =
+            new ByteStoreRowStore( new MemoryByteStore() );
+        Tables.streamStarTable( base, rowStore );
+        StarTable bsTable = rowStore.getStarTable();
+        checkSums( bsTable, NROW, total, true );
+
+        long[] rowMap = new long[ NROW ];
+        for ( int i = 0; i < NROW; i++ ) {
+            rowMap[ i ] = NROW - 1 - i;
+        }
+        checkSums( new RowPermutedStarTable( base, rowMap ),
+                   NROW, total, true );
+
+        BitSet mask = new BitSet();
+        long subTotal = 0;
+        int nsub = 0;
+        for ( int i = 0; i < NROW; i += 7 ) {
+            mask.set( i );
+            subTotal += data[ i ];
+            nsub++;
+        }
+        checkSums( new RowSubsetStarTable( base, mask ), nsub, subTotal,
+                   false );
+        checkSums( new RowSubsetStarTable( bsTable, mask ), nsub, subTotal,
+                   false );
+
+        StarTable seqTable = new WrapperStarTable( base ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public RowSequence getRowSequence() throws IOException {
+                return new RandomRowSequence( baseTable );
+            }
+        };
+        assertTrue( seqTable.getRowSplittable()
+                    instanceof SequentialRowSplittable );
+        checkSums( seqTable, NROW, total, true );
+        checkSums( new RowSubsetStarTable( seqTable, mask ), nsub, subTotal,
+                   false );
+    }
+
+    public void testRandomSplit() throws IOException {
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( 11 );
+        RowSplittable s0 = new RandomRowSplittable( table );
+        assertEquals( 11, s0.splittableSize() );
+        RowSplittable s1 = s0.split();
+        assertEquals( 5, s0.splittableSize() );
+        assertEquals( 6, s1.splittableSize() );
+        LongSupplier ix1 = s1.rowIndex();
+        assertTrue( s1.next() );
+        assertEquals( 5L, ix1.getAsLong() );
+        RowSplittable s2 = s1.split();
+        assertEquals( 2, s1.splittableSize() );
+        assertEquals( 3, s2.splittableSize() );
+    }
+
+    private void checkSums( StarTable table, long nrow, long total,
+                            boolean hasIndex )
+            throws IOException {
+        for ( RowRunner runner : runners_ ) {
+            long[] acc = runner.collect( new SumCollector(), table );
+            assertEquals( nrow, acc[ 0 ] );
+            assertEquals( total, acc[ 1 ] );
+        }
+        RowSplittable rseq = table.getRowSplittable();
+        assertEquals( hasIndex, rseq.rowIndex() != null );
+        rseq.close();
+    }
+
+    private static class SumCollector extends RowCollector<long[]> {
+        public long[] createAccumulator() {
+            return new long[ 2 ];
+        }
+        public long[] combine( long[] acc1, long[] acc2 ) {
+            acc1[ 0 ] += acc2[ 0 ];
+            acc1[ 1 ] += acc2[ 1 ];
+            return acc1;
+        }
+        public void accumulateRows( RowSplittable rseq, long[] acc )
+                throws IOException {
+            while ( rseq.next() ) {
+                acc[ 0 ]++;
+                acc[ 1 ] += ((Number) rseq.getCell( 0 )).longValue();
+            }
+        }
+    }
+}
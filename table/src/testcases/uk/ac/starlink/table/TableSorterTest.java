@@ -0,0 +1,180 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+import uk.ac.starlink.util.TestCase;
+
+public class TableSorterTest extends TestCase {
+
+    private static final int NROW = 5003;
+    private final RowRunner[] runners_;
+
+    public TableSorterTest( String name ) {
+        super( name );
+        SplitPolicy policy = new SplitPolicy( null, 10, (short) 0 );
+        runners_ = new RowRunner[] {
+            RowRunner.SEQUENTIAL,
+            RowRunner.DEFAULT,
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createBasicParallelProcessor( policy ) ),
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createPoolParallelProcessor( policy ) ),
+        };
+    }
+
+    public void testSort() throws IOException {
+        Random rnd = new Random( 230101L );
+        double[] dvals = new double[ NROW ];
+        float[] fvals = new float[ NROW ];
+        Integer[] ivals = new Integer[ NROW ];
+        Long[] lvals = new Long[ NROW ];
+        short[] svals = new short[ NROW ];
+        String[] strs = new String[ NROW ];
+        for ( int i = 0; i < NROW; i++ ) {
+            dvals[ i ] = rnd.nextInt( 10 ) == 0
+                       ? Double.NaN
+                       : rnd.nextInt( 50 ) - 25.5;
+            fvals[ i ] = rnd.nextInt( 7 ) == 0
+                       ? ( rnd.nextBoolean() ? -0f : 0f )
+                       : (float) rnd.nextGaussian();
+            ivals[ i ] = rnd.nextInt( 9 ) == 0
+                       ? null
+                       : Integer.valueOf( rnd.nextInt( 5 ) - 2 );
+            lvals[ i ] = rnd.nextInt( 8 ) == 0
+                       ? null
+                       : Long.valueOf( rnd.nextInt( 4 ) == 0
+                                     ? Long.MIN_VALUE
+                                     : rnd.nextLong() % 4 );
+            svals[ i ] = (short) rnd.nextInt( 3 );
+            strs[ i ] = rnd.nextInt( 6 ) == 0
+                      ? null
+                      : Character.toString( (char) ( 'a' + rnd.nextInt( 5 ) ) );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( NROW );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "f", fvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", lvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        table.addColumn( ArrayColumn.makeColumn( "str", strs ) );
+
+        int[][] keySets = new int[][] {
+            { 0 }, { 1 }, { 2 }, { 3 }, { 5 },
+            { 4, 0 }, { 2, 5, 1 }, { 5, 3 }, { 4 },
+        };
+        StoragePolicy[] storePolicies = new StoragePolicy[] {
+            null, StoragePolicy.PREFER_MEMORY, StoragePolicy.PREFER_DISK,
+        };
+        for ( int[] keys : keySets ) {
+            for ( boolean up : new boolean[] { true, false } ) {
+                for ( boolean nullsLast : new boolean[] { true, false } ) {
+                    long[] expected =
+                        referenceOrder( table, keys, up, nullsLast );
+                    assertArrayEquals( expected,
+                                       TableSorter.getSortedOrder(
+                                           table, keys, up, nullsLast ) );
+                    for ( RowRunner runner : runners_ ) {
+                        for ( StoragePolicy policy : storePolicies ) {
+                            int[] iorder =
+                                TableSorter
+                               .sortIndices( table, NROW, keys, up,
+                                             nullsLast, runner, policy );
+                            assertArrayEquals( expected, toLongs( iorder ) );
+                        }
+                    }
+                }
+            }
+        }
+
+        StarTable sorted =
+            Tables.sortTable( table, new int[] { 0 }, true, true );
+        double last = Double.NEGATIVE_INFINITY;
+        for ( int i = 0; i < NROW; i++ ) {
+            double d = ((Number) sorted.getCell( i, 0 )).doubleValue();
+            if ( ! Double.isNaN( d ) ) {
+                assertTrue( d >= last );
+                last = d;
+            }
+            else {
+                last = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    public void testUnsortable() {
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( 10 );
+        table.addColumn( ArrayColumn.makeColumn( "a", new int[ 10 ][] ) );
+        try {
+            TableSorter.getSortedOrder( table, new int[] { 0 }, true, true );
+            fail();
+        }
+        catch ( IOException e ) {
+            // ok
+        }
+    }
+
+    private static long[] toLongs( int[] ivals ) {
+        long[] lvals = new long[ ivals.length ];
+        for ( int i = 0; i < ivals.length; i++ ) {
+            lvals[ i ] = ivals[ i ];
+        }
+        return lvals;
+    }
+
+    /**
+     * Sorts using the straightforward per-cell comparison semantics.
+     */
+    private static long[] referenceOrder( final StarTable table,
+                                          final int[] keys, final boolean up,
+                                          final boolean nullsLast ) {
+        int nrow = (int) table.getRowCount();
+        Long[] rows = new Long[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            rows[ i ] = Long.valueOf( i );
+        }
+        Arrays.sort( rows, new Comparator<Long>() {
+            @SuppressWarnings({"rawtypes","unchecked"})
+            public int compare( Long r1, Long r2 ) {
+                for ( int icol : keys ) {
+                    Comparable v1;
+                    Comparable v2;
+                    try {
+                        v1 = (Comparable) table.getCell( r1, icol );
+                        v2 = (Comparable) table.getCell( r2, icol );
+                    }
+                    catch ( IOException e ) {
+                        throw new RuntimeException( e );
+                    }
+                    boolean null1 = Tables.isBlank( v1 );
+                    boolean null2 = Tables.isBlank( v2 );
+                    int c;
+                    if ( null1 && null2 ) {
+                        c = 0;
+                    }
+                    else if ( null1 ) {
+                        c = ( up ^ nullsLast ) ? -1 : +1;
+                    }
+                    else if ( null2 ) {
+                        c = ( up ^ nullsLast ) ? +1 : -1;
+                    }
+                    else {
+                        c = up ? v1.compareTo( v2 ) : v2.compareTo( v1 );
+                    }
+                    if ( c != 0 ) {
+                        return c;
+                    }
+                }
+                return 0;
+            }
+        } );
+        long[] order = new long[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            order[ i ] = rows[ i ].longValue();
+        }
+        return order;
+    }
+}
@@ -0,0 +1,328 @@
+package uk.ac.starlink.table.formats;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+
+public class MappedTextTest extends TestCase {
+
+    private static final int[] CHUNK_SIZES = new int[] { 1, 23, 500, 100000 };
+
+    static {
+        Logger.getLogger( "uk.ac.starlink.table.formats" )
+              .setLevel( Level.WARNING );
+    }
+
+    public MappedTextTest( String name ) {
+        super( name );
+    }
+
+    public void testParseNumber() {
+        checkNumber( "0", ByteRow.INTEGER, 0.0 );
+        checkNumber( "-0", ByteRow.INTEGER, -0.0 );
+        checkNumber( "+23", ByteRow.INTEGER, 23 );
+        checkNumber( "-9007199254740993", ByteRow.INTEGER,
+                     -9007199254740993.0 );
+        checkNumber( "1.5", ByteRow.DECIMAL, 1.5 );
+        checkNumber( "-.5e-3", ByteRow.DECIMAL, -.5e-3 );
+        checkNumber( "3.", ByteRow.DECIMAL, 3. );
+        checkNumber( "2.5d3", ByteRow.DECIMAL, 2.5e3 );
+        checkNumber( "1e400", ByteRow.DECIMAL, Double.POSITIVE_INFINITY );
+        checkNumber( "4.9e-324", ByteRow.DECIMAL, 4.9e-324 );
+        checkNumber( "0.1234567890123456789", ByteRow.DECIMAL,
+                     0.1234567890123456789 );
+        checkNumber( "123456789012345678901234", ByteRow.NOT_NUMBER, 0 );
+        checkNumber( "NaN", ByteRow.NOT_NUMBER, 0 );
+        checkNumber( "1e", ByteRow.NOT_NUMBER, 0 );
+        checkNumber( "1.2.3", ByteRow.NOT_NUMBER, 0 );
+        checkNumber( ".", ByteRow.NOT_NUMBER, 0 );
+        checkNumber( "1f", ByteRow.NOT_NUMBER, 0 );
+        Random rnd = new Random( 110051L );
+        for ( int i = 0; i < 10000; i++ ) {
+            double d = Double.longBitsToDouble( rnd.nextLong() );
+            if ( ! Double.isNaN( d ) && ! Double.isInfinite( d ) ) {
+                checkNumber( Double.toString( d ), ByteRow.DECIMAL, d );
+            }
+            double d2 = rnd.nextInt( 2000000 ) / 1000.;
+            checkNumber( Double.toString( d2 ), ByteRow.DECIMAL, d2 );
+        }
+    }
+
+    public void testCsv() throws IOException {
+        Random rnd = new Random( 2301L );
+        for ( int itest = 0; itest < 4; itest++ ) {
+            boolean hasHeader = itest % 2 == 0;
+            String text = createText( rnd, 400, ",", hasHeader, true, false );
+            File file = writeFile( text );
+            try {
+                DataSource datsrc = new FileDataSource( file );
+                StarTable t0 = new CsvStarTable( datsrc );
+                for ( int chunkSize : CHUNK_SIZES ) {
+                    StarTable t1;
+                    try {
+                        t1 = new MappedCsvStarTable( datsrc, chunkSize );
+                    }
+                    catch ( MappedTextStarTable.ChunkBoundaryException e ) {
+
+                        /* Quoted newlines may straddle chunk boundaries,
+                         * but not if there is only one chunk. */
+                        assertTrue( chunkSize < text.length() );
+                        continue;
+                    }
+                    assertSameTable( t0, t1 );
+                }
+                StarTable t2 = new CsvTableBuilder()
+                              .makeStarTable( datsrc, false,
+                                              StoragePolicy.PREFER_MEMORY );
+                assertTrue( t2 instanceof MappedCsvStarTable );
+                assertSameTable( t0, t2 );
+            }
+            finally {
+                file.delete();
+            }
+        }
+    }
+
+    public void testCsvFallback() throws IOException {
+        StringBuffer sbuf = new StringBuffer( "a,b\n" );
+        for ( int i = 0; i < 20; i++ ) {
+            sbuf.append( i )
+                .append( ",\"line1\nline2\"\n" );
+        }
+        File file = writeFile( sbuf.toString() );
+        try {
+            DataSource datsrc = new FileDataSource( file );
+            try {
+                new MappedCsvStarTable( datsrc, 16 );
+                fail();
+            }
+            catch ( MappedTextStarTable.ChunkBoundaryException e ) {
+            }
+            StarTable t0 = new CsvStarTable( datsrc );
+            assertEquals( 20, t0.getRowCount() );
+            StarTable t1 = new CsvTableBuilder()
+                          .makeStarTable( datsrc, false,
+                                          StoragePolicy.PREFER_MEMORY );
+            assertSameTable( t0, t1 );
+            StarTable t2 = new MappedCsvStarTable( datsrc, 1000 );
+            assertEquals( "line1\nline2", Tables.randomTable( t2 )
+                                                 .getCell( 19, 1 ) );
+            assertSameTable( t0, t2 );
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testAscii() throws IOException {
+        Random rnd = new Random( 2302L );
+        for ( int itest = 0; itest < 4; itest++ ) {
+            boolean hasHeader = itest % 2 == 0;
+            String text = createText( rnd, 400, " ", hasHeader, false,
+                                      itest > 1 );
+            File file = writeFile( text );
+            try {
+                DataSource datsrc = new FileDataSource( file );
+                StarTable t0 = new AsciiStarTable( datsrc );
+                for ( int chunkSize : CHUNK_SIZES ) {
+                    StarTable t1 = new MappedAsciiStarTable( datsrc,
+                                                             chunkSize );
+                    assertSameTable( t0, t1 );
+                    assertEquals( t0.getParameters().size(),
+                                  t1.getParameters().size() );
+                    if ( t0.getParameters().size() > 0 ) {
+                        assertEquals( t0.getParameterByName( "Description" )
+                                        .getValue(),
+                                      t1.getParameterByName( "Description" )
+                                        .getValue() );
+                    }
+                }
+                StarTable t2 = new AsciiTableBuilder()
+                              .makeStarTable( datsrc, false,
+                                              StoragePolicy.PREFER_MEMORY );
+                assertTrue( t2 instanceof MappedAsciiStarTable );
+                assertSameTable( t0, t2 );
+            }
+            finally {
+                file.delete();
+            }
+        }
+    }
+
+    private void checkNumber( String txt, int type, double value ) {
+        java.nio.ByteBuffer buf =
+            java.nio.ByteBuffer.wrap( ( " " + txt + " " ).getBytes() );
+        ByteRow row = new ByteRow();
+        row.clear( buf );
+        row.addRange( 0, buf.limit() );
+        assertEquals( txt, row.getString( 0 ) );
+        assertEquals( txt, type, row.parseNumber( 0 ) );
+        if ( type != ByteRow.NOT_NUMBER ) {
+            assertEquals( txt, Double.valueOf( value ),
+                          Double.valueOf( row.getDoubleValue() ) );
+            assertEquals( txt.startsWith( "-" ), row.isNegative() );
+        }
+        if ( type == ByteRow.INTEGER ) {
+            assertEquals( Long.parseLong( txt ), row.getLongValue() );
+        }
+    }
+
+    private void assertSameTable( StarTable t0, StarTable t1 )
+            throws IOException {
+        Tables.checkTable( t1 );
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        assertEquals( t0.getRowCount(), t1.getRowCount() );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            ColumnInfo info0 = t0.getColumnInfo( ic );
+            ColumnInfo info1 = t1.getColumnInfo( ic );
+            assertEquals( info0.getName(), info1.getName() );
+            assertEquals( info0.getContentClass(), info1.getContentClass() );
+            assertEquals( info0.getElementSize(), info1.getElementSize() );
+            assertEquals( info0.getUnitString(), info1.getUnitString() );
+        }
+        List<Object[]> rows0 = new ArrayList<Object[]>();
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            Object[] row0 = rseq0.getRow();
+            rows0.add( row0 );
+            for ( int ic = ncol - 1; ic >= 0; ic-- ) {
+                assertEquals( row0[ ic ], rseq1.getCell( ic ) );
+            }
+            assertArrayEquals( row0, rseq1.getRow() );
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+
+        /* Check parallel access gives the right rows at the right
+         * row indices. */
+        final Object[][] rows1 = new Object[ rows0.size() ][];
+        RowRunner.DEFAULT.collect( new RowCollector<Object>() {
+            public Object createAccumulator() {
+                return null;
+            }
+            public Object combine( Object acc1, Object acc2 ) {
+                return null;
+            }
+            public void accumulateRows( RowSplittable rseq, Object acc )
+                    throws IOException {
+                LongSupplier irowSupplier = rseq.rowIndex();
+                while ( rseq.next() ) {
+                    rows1[ (int) irowSupplier.getAsLong() ] = rseq.getRow();
+                }
+            }
+        }, t1 );
+        for ( int ir = 0; ir < rows1.length; ir++ ) {
+            assertArrayEquals( rows0.get( ir ), rows1[ ir ] );
+        }
+    }
+
+    private static void assertArrayEquals( Object[] a0, Object[] a1 ) {
+        assertEquals( a0.length, a1.length );
+        for ( int i = 0; i < a0.length; i++ ) {
+            assertEquals( a0[ i ], a1[ i ] );
+        }
+    }
+
+    private static File writeFile( String text ) throws IOException {
+        File file = File.createTempFile( "mapped", ".txt" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        out.write( text.getBytes( "ISO-8859-1" ) );
+        out.close();
+        return file;
+    }
+
+    /**
+     * Writes random table text with a variety of column types.
+     */
+    private static String createText( Random rnd, int nrow, String sep,
+                                      boolean hasHeader, boolean isCsv,
+                                      boolean crlf ) {
+        String[] names = { "s", "i", "l", "f", "d", "e", "b", "t", "x", "z" };
+        String eol = crlf ? "\r\n" : "\n";
+        StringBuffer sbuf = new StringBuffer();
+        if ( ! isCsv ) {
+            sbuf.append( "! comment" + eol )
+                .append( "# Test table" + eol )
+                .append( "#" + eol );
+        }
+        if ( hasHeader ) {
+            if ( ! isCsv ) {
+                sbuf.append( "#" );
+            }
+            for ( int ic = 0; ic < names.length; ic++ ) {
+                sbuf.append( ic > 0 ? sep : "" )
+                    .append( names[ ic ] );
+            }
+            sbuf.append( eol );
+        }
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            String[] cells = new String[] {
+                Integer.toString( rnd.nextInt( 2000 ) - 1000 ),
+                Integer.toString( rnd.nextInt() ),
+                rnd.nextInt( 50 ) == 0 ? "-0"
+                                       : Long.toString( rnd.nextLong() ),
+                Float.toString( (float) rnd.nextInt( 1000 ) / 8 ),
+                Double.toString( rnd.nextGaussian() ),
+                pick( rnd, new String[] { "1e300", "-2.5D-3", "NaN", "nan",
+                                          "-Infinity", "0.000125",
+                                          "123456789.123456789",
+                                          "17" } ),
+                pick( rnd, new String[] { "true", "F", "t", "false" } ),
+                pick( rnd, new String[] { "2001-02-03", "2020-12-31T23:59:59",
+                                          "1999-01-01" } ),
+                pick( rnd, new String[] { "abc", "42", "1.5",
+                                          isCsv ? "x y" : "'x y'",
+                                          isCsv ? "\"q,\"\"u\"\"\""
+                                                : "'q\\'u'",
+                                          isCsv ? "\"multi\nline\""
+                                                : "\"dq\"" } ),
+                Integer.toString( rnd.nextInt( 10 ) ),
+            };
+            if ( isCsv && cells[ 8 ].startsWith( "\"" ) ) {
+                cells[ 8 ] = " " + cells[ 8 ];
+            }
+            for ( int ic = 0; ic < cells.length; ic++ ) {
+                String cell = rnd.nextInt( 30 ) == 0
+                            ? ( isCsv ? "" : "null" )
+                            : cells[ ic ];
+                sbuf.append( ic > 0 ? sep : "" )
+                    .append( cell );
+            }
+            if ( ! isCsv && rnd.nextInt( 20 ) == 0 ) {
+                sbuf.append( "  # trailing comment" );
+            }
+            sbuf.append( eol );
+            if ( rnd.nextInt( 40 ) == 0 ) {
+                sbuf.append( eol );
+            }
+        }
+        return sbuf.toString();
+    }
+
+    private static String pick( Random rnd, String[] opts ) {
+        return opts[ rnd.nextInt( opts.length ) ];
+    }
+}
@@ -20,6 +20,47 @@ public class BinnerTest extends TestCase {
         for ( int i = 1; i < 100; i++ ) {
             exerciseLongBinner( Binners.createLongBinner( i ), i );
             exerciseLongBinner( Binners.createLongBinner( -1 ), i );
+            exerciseLongBinner( Binners.createMapLongBinner( i ), i );
+        }
+    }
+
+    public void testLongKeys() {
+        for ( long nrow : new long[] { 100000, -1 } ) {
+            LongBinner binner = Binners.createLongBinner( nrow );
+            LongBinner mapBinner = Binners.createMapLongBinner( nrow );
+            for ( int i = 0; i < 20000; i++ ) {
+                Object key = i % 10 == 0
+                           ? (Object) ( "S" + rnd_.nextInt( 50 ) )
+                           : (Object) Long.valueOf( rnd_.nextInt( 5000 )
+                                                    - 2500L );
+                long item = rnd_.nextInt( 100000 );
+                binner.addItem( key, item );
+                mapBinner.addItem( key, item );
+            }
+            assertEquals( mapBinner.getBinCount(), binner.getBinCount() );
+            assertNull( binner.getLongs( Long.valueOf( 99999L ) ) );
+            Set<Object> keys = new HashSet<Object>();
+            for ( Iterator<?> it = mapBinner.getKeyIterator();
+                  it.hasNext(); ) {
+                Object key = it.next();
+                keys.add( key );
+                assertArrayEquals( mapBinner.getLongs( key ),
+                                   binner.getLongs( key ) );
+            }
+            long nbin = binner.getBinCount();
+            int nseen = 0;
+            for ( Iterator<?> it = binner.getKeyIterator(); it.hasNext(); ) {
+                Object key = it.next();
+                assertTrue( keys.remove( key ) );
+                it.remove();
+                assertEquals( nbin - ++nseen, binner.getBinCount() );
+            }
+            assertTrue( keys.isEmpty() );
+            assertEquals( 0, binner.getBinCount() );
+            binner.addItem( Long.valueOf( 23 ), 5 );
+            assertArrayEquals( new long[] { 5 },
+                               binner.getLongs( Long.valueOf( 23 ) ) );
+            assertEquals( 1, binner.getBinCount() );
         }
     }
 
@@ -0,0 +1,170 @@
+package uk.ac.starlink.table.join;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import uk.ac.starlink.util.TestCase;
+
+public class LinkSetTest extends TestCase {
+
+    private final Random rnd_;
+
+    public LinkSetTest( String name ) {
+        super( name );
+        rnd_ = new Random( 9988776655L );
+    }
+
+    public void testLinkSets() {
+        exerciseLinkSet( new HashSetLinkSet() );
+        exerciseLinkSet( new TreeSetLinkSet() );
+        exerciseLinkSet( new PackedLinkSet() );
+    }
+
+    public void testPacked() {
+        for ( int ntry = 0; ntry < 4; ntry++ ) {
+            LinkSet refSet = new HashSetLinkSet();
+            LinkSet packSet = new PackedLinkSet();
+            for ( int i = 0; i < 20000; i++ ) {
+                RowLink link = createLink();
+                switch ( rnd_.nextInt( 8 ) ) {
+                    case 0:
+                        assertEquals( refSet.removeLink( link ),
+                                      packSet.removeLink( link ) );
+                        break;
+                    case 1:
+                        assertEquals( refSet.containsLink( link ),
+                                      packSet.containsLink( link ) );
+                        break;
+                    default:
+                        refSet.removeLink( link );
+                        refSet.addLink( link );
+                        packSet.addLink( link );
+                }
+            }
+            assertEquals( refSet.size(), packSet.size() );
+            assertEquals( toMap( refSet ), toMap( packSet ) );
+
+            /* Remove some items using the iterator. */
+            for ( Iterator<RowLink> it = packSet.iterator(); it.hasNext(); ) {
+                RowLink link = it.next();
+                if ( rnd_.nextInt( 3 ) == 0 ) {
+                    it.remove();
+                    assertTrue( refSet.removeLink( link ) );
+                }
+            }
+            assertEquals( toMap( refSet ), toMap( packSet ) );
+
+            /* Check sorting. */
+            List<RowLink> sortList = new ArrayList<RowLink>();
+            for ( RowLink link : refSet ) {
+                sortList.add( link );
+            }
+            Collections.sort( sortList );
+            assertTrue( packSet.sort() );
+            List<RowLink> packList = new ArrayList<RowLink>();
+            for ( RowLink link : packSet ) {
+                packList.add( link );
+            }
+            assertEquals( sortList, packList );
+
+            /* Iterator removal from sorted set. */
+            int nr = 0;
+            for ( Iterator<RowLink> it = packSet.iterator(); it.hasNext(); ) {
+                RowLink link = it.next();
+                if ( nr++ % 2 == 0 ) {
+                    it.remove();
+                    assertTrue( refSet.removeLink( link ) );
+                }
+            }
+            assertEquals( toMap( refSet ), toMap( packSet ) );
+            for ( RowLink link : refSet ) {
+                assertTrue( packSet.containsLink( link ) );
+            }
+        }
+    }
+
+    private void exerciseLinkSet( LinkSet linkSet ) {
+        RowLink2 link = new RowLink2( new RowRef( 1, 99 ), new RowRef( 0, 3 ) );
+        link.setScore( 2.5 );
+        RowLink single = new RowLink( new RowRef( 1, 4 ) );
+        assertEquals( 0, linkSet.size() );
+        linkSet.addLink( link );
+        linkSet.addLink( single );
+        assertEquals( 2, linkSet.size() );
+        assertTrue( linkSet.containsLink(
+                        new RowLink( new RowRef[] { new RowRef( 0, 3 ),
+                                                    new RowRef( 1, 99 ) } ) ) );
+        assertFalse( linkSet.containsLink(
+                        new RowLink2( new RowRef( 0, 3 ),
+                                      new RowRef( 1, 98 ) ) ) );
+        assertTrue( linkSet.sort() );
+        Iterator<RowLink> it = linkSet.iterator();
+        RowLink l1 = it.next();
+        assertEquals( link, l1 );
+        assertEquals( 2.5, ((RowLink2) l1).getScore() );
+        assertEquals( single, it.next() );
+        assertFalse( it.hasNext() );
+        assertTrue( linkSet.removeLink( link ) );
+        assertFalse( linkSet.removeLink( link ) );
+        assertEquals( 1, linkSet.size() );
+    }
+
+    private RowLink createLink() {
+        int nt = 3;
+        int nr = 300;
+        switch ( rnd_.nextInt( 10 ) ) {
+            case 0:
+                return new RowLink( new RowRef( rnd_.nextInt( nt ),
+                                                rnd_.nextInt( nr ) ) );
+            case 1:
+                return new RowLink( new RowRef[] {
+                    new RowRef( 0, rnd_.nextInt( nr ) ),
+                    new RowRef( 1, rnd_.nextInt( nr ) ),
+                    new RowRef( 2, rnd_.nextInt( nr ) ),
+                } );
+            case 2:
+                return new RowLink( new RowRef[] {
+                    new RowRef( rnd_.nextInt( nt ), rnd_.nextInt( nr ) ),
+                    new RowRef( rnd_.nextInt( nt ), rnd_.nextInt( nr ) ),
+                } );
+            case 3:
+                return new PairsRowLink( new RowRef( 0, rnd_.nextInt( nr ) ),
+                                         new RowRef[] {
+                                             new RowRef( 1,
+                                                         rnd_.nextInt( nr ) ),
+                                         },
+                                         new double[] { rnd_.nextDouble() },
+                                         false );
+            default:
+                RowLink2 link =
+                    new RowLink2( new RowRef( rnd_.nextInt( nt ),
+                                              rnd_.nextInt( nr ) ),
+                                  new RowRef( rnd_.nextInt( nt ),
+                                              rnd_.nextInt( nr ) ) );
+                if ( rnd_.nextBoolean() ) {
+                    link.setScore( rnd_.nextDouble() );
+                }
+                return link;
+        }
+    }
+
+    /**
+     * Returns a map from link to a string giving its class and score.
+     */
+    private static Map<RowLink,String> toMap( LinkSet linkSet ) {
+        Map<RowLink,String> map = new HashMap<RowLink,String>();
+        for ( RowLink link : linkSet ) {
+            String value = link.getClass().getName();
+            if ( link instanceof RowLink2 ) {
+                value += ":" + ((RowLink2) link).getScore();
+            }
+            assertNull( map.put( link, value ) );
+        }
+        assertEquals( linkSet.size(), map.size() );
+        return map;
+    }
+}
@@ -0,0 +1,122 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+import uk.ac.starlink.util.TestCase;
+
+public class RowMatcherTest extends TestCase {
+
+    private final Random rnd_;
+    private final RowRunner[] runners_;
+
+    public RowMatcherTest( String name ) {
+        super( name );
+        rnd_ = new Random( 5544332211L );
+        SplitPolicy policy = new SplitPolicy( null, 50, (short) 0 );
+        runners_ = new RowRunner[] {
+            RowRunner.DEFAULT,
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createBasicParallelProcessor( policy ) ),
+            new RowRunner( SplitProcessor.<RowSplittable>
+                           createPoolParallelProcessor( policy ) ),
+        };
+    }
+
+    public void testCartesian() throws IOException, InterruptedException {
+        MatchEngine engine = new IsotropicCartesianMatchEngine( 2, 0.01, true );
+        StarTable[] tables = new StarTable[] {
+            createXyTable( 3000 ),
+            createXyTable( 2000 ),
+        };
+        exerciseParallel( engine, tables );
+    }
+
+    public void testCombined() throws IOException, InterruptedException {
+        MatchEngine engine = new CombinedMatchEngine( new MatchEngine[] {
+            new FixedSkyMatchEngine( new HtmSkyPixellator(), 0.01 ),
+            new IsotropicCartesianMatchEngine( 1, 0.2, false ),
+        } );
+        StarTable[] tables = new StarTable[] {
+            createSkyTable( 300 ),
+            createSkyTable( 400 ),
+        };
+        exerciseParallel( engine, tables );
+    }
+
+    private void exerciseParallel( MatchEngine engine, StarTable[] tables )
+            throws IOException, InterruptedException {
+        for ( PairMode mode : PairMode.values() ) {
+            RowMatcher seqMatcher = new RowMatcher( engine, tables );
+            Map<RowLink,Double> seqLinks =
+                toMap( seqMatcher.findPairMatches( mode ) );
+            if ( mode == PairMode.ALL ) {
+                assertTrue( seqLinks.size() > 100 );
+            }
+            for ( RowRunner runner : runners_ ) {
+                RowMatcher parMatcher = new RowMatcher( engine, tables );
+                parMatcher.setRowRunner( runner );
+                assertEquals( seqLinks,
+                              toMap( parMatcher.findPairMatches( mode ) ) );
+            }
+        }
+        MultiJoinType[] joinTypes = new MultiJoinType[] {
+            MultiJoinType.DEFAULT, MultiJoinType.DEFAULT,
+        };
+        RowMatcher seqMatcher = new RowMatcher( engine, tables );
+        Map<RowLink,Double> seqGroups =
+            toMap( seqMatcher.findGroupMatches( joinTypes ) );
+        RowMatcher parMatcher = new RowMatcher( engine, tables );
+        parMatcher.setRowRunner( runners_[ 2 ] );
+        assertEquals( seqGroups,
+                      toMap( parMatcher.findGroupMatches( joinTypes ) ) );
+    }
+
+    private StarTable createXyTable( int nrow ) {
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd_.nextDouble();
+            ys[ i ] = rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "y", ys ) );
+        return table;
+    }
+
+    private StarTable createSkyTable( int nrow ) {
+        double[] ras = new double[ nrow ];
+        double[] decs = new double[ nrow ];
+        double[] zs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ras[ i ] = rnd_.nextDouble() * 0.2;
+            decs[ i ] = rnd_.nextDouble() * 0.2;
+            zs[ i ] = rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "ra", ras ) );
+        table.addColumn( ArrayColumn.makeColumn( "dec", decs ) );
+        table.addColumn( ArrayColumn.makeColumn( "z", zs ) );
+        return table;
+    }
+
+    private static Map<RowLink,Double> toMap( LinkSet linkSet ) {
+        Map<RowLink,Double> map = new HashMap<RowLink,Double>();
+        for ( RowLink link : linkSet ) {
+            map.put( link, link instanceof RowLink2
+                           ? Double.valueOf( ((RowLink2) link).getScore() )
+                           : null );
+        }
+        assertEquals( linkSet.size(), map.size() );
+        return map;
+    }
+}
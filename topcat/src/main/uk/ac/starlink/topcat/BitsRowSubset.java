@@ -63,4 +63,15 @@ public class BitsRowSubset extends RowSubset {
      public boolean isIncluded( long lrow ) {
          return bits.get( (int) lrow ) ^ invert;
      }
+
+     public BitSet getMask( int nrow ) {
+         if ( invert ) {
+             BitSet mask = bits.get( 0, nrow );
+             mask.flip( 0, nrow );
+             return mask;
+         }
+         else {
+             return bits.get( 0, nrow );
+         }
+     }
 }
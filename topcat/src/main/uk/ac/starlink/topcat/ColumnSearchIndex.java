@@ -0,0 +1,250 @@
+package uk.ac.starlink.topcat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RandomRowSplittable;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.TableSorter;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.IntList;
+
+/**
+ * In-memory index of the values in a table column,
+ * used to speed up repeated text searches of its contents.
+ *
+ * <p>The rows of the column are sorted by value and grouped into
+ * runs of equal values, so that a search only has to match each
+ * distinct value once rather than every cell.
+ * For string columns the distinct values are held in lexical order,
+ * so that searches requiring a given literal prefix
+ * (including exact matches) only need to examine the range of
+ * values located by binary search.
+ *
+ * @since    18 Oct 2026
+ */
+class ColumnSearchIndex {
+
+    private final Object[] values_;
+    private final int[] starts_;
+    private final int[] rows_;
+    private final int nLexical_;
+
+    /** Minimum number of distinct values worth matching in parallel. */
+    private static final int MIN_PARALLEL_VALUES = 10000;
+
+    /**
+     * Constructor.
+     *
+     * @param  values  distinct column values in sort order
+     * @param  starts  array with one more element than <code>values</code>
+     *                 giving the offset into <code>rows</code> of the
+     *                 first row with each value
+     * @param  rows    row indices grouped by value
+     * @param  nLexical  number of initial entries in <code>values</code>
+     *                   which are strings in lexical order;
+     *                   zero if the column is not a string column
+     */
+    private ColumnSearchIndex( Object[] values, int[] starts, int[] rows,
+                               int nLexical ) {
+        values_ = values;
+        starts_ = starts;
+        rows_ = rows;
+        nLexical_ = nLexical;
+    }
+
+    /**
+     * Returns the number of distinct non-null values in the indexed column.
+     *
+     * @return  distinct value count
+     */
+    public int getValueCount() {
+        return values_.length;
+    }
+
+    /**
+     * Returns the rows whose cell values, when stringified,
+     * match a given pattern.  Null cells never match.
+     *
+     * <p>If a literal prefix is supplied, it must be a string with which
+     * all matching values are known to start.
+     * For string columns it is used to restrict the values tested;
+     * otherwise it is ignored.
+     *
+     * @param  pattern  pattern to match
+     * @param  isFull   true to require a match of the whole value,
+     *                  false to look for a match anywhere within it
+     * @param  prefix   literal prefix of all matching values, or null
+     * @param  runner   controls parallel execution
+     * @return   new bit set flagging the matching row indices
+     */
+    public BitSet findRows( final Pattern pattern, final boolean isFull,
+                            String prefix, RowRunner runner )
+            throws IOException {
+        final int ilo;
+        final int ihi;
+        if ( prefix != null && prefix.length() > 0 && nLexical_ > 0 ) {
+            ilo = lowerBound( prefix );
+            ihi = prefixEnd( prefix, ilo );
+        }
+        else {
+            ilo = 0;
+            ihi = values_.length;
+        }
+        int nv = ihi - ilo;
+        if ( nv < MIN_PARALLEL_VALUES ) {
+            BitSet bits = new BitSet();
+            for ( int iv = ilo; iv < ihi; iv++ ) {
+                matchValue( iv, pattern, isFull, bits );
+            }
+            return bits;
+        }
+        RowCollector<BitSet> collector = new RowCollector<BitSet>() {
+            public BitSet createAccumulator() {
+                return new BitSet();
+            }
+            public BitSet combine( BitSet bits1, BitSet bits2 ) {
+                bits1.or( bits2 );
+                return bits1;
+            }
+            public void accumulateRows( RowSplittable rseq, BitSet bits )
+                    throws IOException {
+                LongSupplier rowIndex = rseq.rowIndex();
+                while ( rseq.next() ) {
+                    int iv = ilo + (int) rowIndex.getAsLong();
+                    matchValue( iv, pattern, isFull, bits );
+                }
+            }
+        };
+        return runner.collect( collector,
+                               new RandomRowSplittable( ColumnStarTable
+                                                       .makeTableWithRows( nv )
+                                                      ) );
+    }
+
+    /**
+     * Tests one of the distinct values against a pattern,
+     * and if it matches records all the rows that have it.
+     *
+     * @param  iv  index into distinct value array
+     * @param  pattern  pattern to match
+     * @param  isFull   true for whole-value match, false for find
+     * @param  bits   bit set to which matching rows are added
+     */
+    private void matchValue( int iv, Pattern pattern, boolean isFull,
+                             BitSet bits ) {
+        String txt = values_[ iv ].toString();
+        boolean isMatch = isFull ? pattern.matcher( txt ).matches()
+                                 : pattern.matcher( txt ).find();
+        if ( isMatch ) {
+            for ( int i = starts_[ iv ]; i < starts_[ iv + 1 ]; i++ ) {
+                bits.set( rows_[ i ] );
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first lexically ordered value not less
+     * than a given string.
+     *
+     * @param  txt  string to locate
+     * @return  insertion point in the range 0..nLexical
+     */
+    private int lowerBound( String txt ) {
+        int lo = 0;
+        int hi = nLexical_;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( ((String) values_[ mid ]).compareTo( txt ) < 0 ) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index following the last lexically ordered value
+     * that starts with a given prefix.
+     *
+     * @param  prefix  prefix string
+     * @param  ilo   index of the first value not less than the prefix
+     * @return  end of the range of values starting with the prefix
+     */
+    private int prefixEnd( String prefix, int ilo ) {
+        int lo = ilo;
+        int hi = nLexical_;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( ((String) values_[ mid ]).startsWith( prefix ) ) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Builds an index for a column of a table.
+     * The table must have random access.
+     *
+     * @param  table  table
+     * @param  jcol   index of column to index
+     * @param  runner  controls parallel execution
+     * @return  new index
+     */
+    public static ColumnSearchIndex createIndex( StarTable table, int jcol,
+                                                 RowRunner runner )
+            throws IOException {
+
+        /* Sort the rows by column value; blank values come last. */
+        int[] rows = TableSorter.getSortedIndices( table, new int[] { jcol },
+                                                   true, true, runner, null );
+        boolean isString = String.class
+                          .isAssignableFrom( table.getColumnInfo( jcol )
+                                                  .getContentClass() );
+
+        /* Identify the runs of equal values.  Rows with blank values may
+         * be interleaved in the sort order, but a new run is simply
+         * started at each change of value, so that does no harm. */
+        List<Object> values = new ArrayList<Object>();
+        IntList starts = new IntList();
+        int nLexical = -1;
+        Object last = null;
+        int nrow = rows.length;
+        int nr = 0;
+        for ( int i = 0; i < nrow; i++ ) {
+            int irow = rows[ i ];
+            Object value = table.getCell( irow, jcol );
+            if ( value != null ) {
+                if ( ! value.equals( last ) ) {
+                    if ( isString && nLexical < 0 &&
+                         Tables.isBlank( value ) ) {
+                        nLexical = values.size();
+                    }
+                    values.add( value );
+                    starts.add( nr );
+                    last = value;
+                }
+                rows[ nr++ ] = irow;
+            }
+        }
+        starts.add( nr );
+        if ( nLexical < 0 ) {
+            nLexical = isString ? values.size() : 0;
+        }
+        return new ColumnSearchIndex( values.toArray(), starts.toIntArray(),
+                                      rows, nLexical );
+    }
+}
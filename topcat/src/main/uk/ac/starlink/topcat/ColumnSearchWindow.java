@@ -3,13 +3,19 @@ package uk.ac.starlink.topcat;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
 import java.io.IOException;
 import java.util.BitSet;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -28,8 +34,15 @@ import javax.swing.JProgressBar;
 import javax.swing.JRadioButton;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumn;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RandomRowSplittable;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.gui.LabelledComponentStack;
@@ -42,6 +55,11 @@ import uk.ac.starlink.util.gui.ValueButtonGroup;
  * cells of a column and highlight the corresponding rows.
  * This dialog is associated with the TableViewerWindow.
  *
+ * <p>Searches divide the rows between threads.
+ * Optionally, an in-memory index of each searched column is built
+ * on first use and retained until the table data is edited,
+ * which makes repeated searches of the same column much faster.
+ *
  * @author   Mark Taylor
  * @since    28 Jun 2018
  */
@@ -53,14 +71,26 @@ public class ColumnSearchWindow extends AuxDialog {
     private final ValueButtonGroup<SearchSyntax> syntaxGroup_;
     private final ValueButtonGroup<SearchScope> scopeGroup_;
     private final JCheckBox caseToggle_;
+    private final JCheckBox indexToggle_;
     private final JTextField txtField_;
     private final ToggleButtonModel tackModel_;
     private final JProgressBar progBar_;
     private final Action searchAct_;
     private final Action cancelAct_;
+    private final Map<Integer,ColumnSearchIndex> indexMap_;
+    private int indexGeneration_;
     private ExecutorService executor_;
     private Future<?> searchJob_;
 
+    /** Number of blocks into which a scan is divided for progress. */
+    private static final int NBLOCK = 50;
+
+    /** Minimum number of rows in a scan block. */
+    private static final int MIN_BLOCK_ROWS = 100000;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.topcat" );
+
     /**
      * Constructor.
      *
@@ -114,7 +144,32 @@ public class ColumnSearchWindow extends AuxDialog {
 
         /* Other input components. */
         caseToggle_ = new JCheckBox();
+        indexToggle_ = new JCheckBox();
+        indexToggle_.setToolTipText( "Build an in-memory index of searched "
+                                   + "columns to speed up later searches" );
         txtField_ = new JTextField();
+
+        /* Indexes are discarded if the user stops using them,
+         * or if the table data changes.  Changes of view subset, order
+         * or page do not affect them; other whole-table updates,
+         * such as those following synthetic column edits, may do. */
+        indexMap_ = new HashMap<Integer,ColumnSearchIndex>();
+        indexToggle_.addItemListener( new ItemListener() {
+            public void itemStateChanged( ItemEvent evt ) {
+                if ( ! indexToggle_.isSelected() ) {
+                    clearIndexes();
+                }
+            }
+        } );
+        final ViewerTableModel viewModel = tcModel.getViewModel();
+        viewModel.addTableModelListener( new TableModelListener() {
+            public void tableChanged( TableModelEvent evt ) {
+                if ( evt.getType() == TableModelEvent.UPDATE &&
+                     ! viewModel.isViewChanging() ) {
+                    clearIndexes();
+                }
+            }
+        } );
         txtField_.getCaret().addChangeListener( forwarder );
 
         /* Action to perform search. */
@@ -161,6 +216,7 @@ public class ColumnSearchWindow extends AuxDialog {
         stack.addLine( "Syntax", syntaxBox );
         stack.addLine( "Scope", scopeBox );
         stack.addLine( "Case Sensitive", caseToggle_ );
+        stack.addLine( "Use Index", indexToggle_ );
         stack.addLine( "Search Text", txtField_ );
         stack.setBorder( BorderFactory.createEmptyBorder( 5, 5, 5, 5 ) );
         JComponent controlLine = Box.createHorizontalBox();
@@ -272,7 +328,11 @@ public class ColumnSearchWindow extends AuxDialog {
             catch ( PatternSyntaxException e ) {
                 return null;
             }
-            return new Search( jcol, pattern, scope );
+            String prefix = isCaseSensitive
+                          ? syntax.getLiteralPrefix( txt, scope )
+                          : null;
+            return new Search( jcol, pattern, scope, prefix,
+                               indexToggle_.isSelected() );
         }
         else {
             return null;
@@ -297,6 +357,59 @@ public class ColumnSearchWindow extends AuxDialog {
         return executor_;
     }
 
+    /**
+     * Discards any column indexes built by this window.
+     */
+    private void clearIndexes() {
+        synchronized ( indexMap_ ) {
+            indexMap_.clear();
+            indexGeneration_++;
+        }
+    }
+
+    /**
+     * Returns an index for a given column, building it if necessary.
+     *
+     * @param  jcol  column index in data table
+     * @return  column index
+     */
+    private ColumnSearchIndex getIndex( int jcol ) throws IOException {
+        int generation;
+        synchronized ( indexMap_ ) {
+            ColumnSearchIndex index = indexMap_.get( jcol );
+            if ( index != null ) {
+                return index;
+            }
+            generation = indexGeneration_;
+        }
+        SwingUtilities.invokeLater( new Runnable() {
+            public void run() {
+                progBar_.setIndeterminate( true );
+            }
+        } );
+        try {
+            ColumnSearchIndex index =
+                ColumnSearchIndex.createIndex( tcModel_.getDataModel(), jcol,
+                                               RowRunner.DEFAULT );
+
+            /* Don't cache the index if the data changed while it was
+             * being built. */
+            synchronized ( indexMap_ ) {
+                if ( generation == indexGeneration_ ) {
+                    indexMap_.put( jcol, index );
+                }
+            }
+            return index;
+        }
+        finally {
+            SwingUtilities.invokeLater( new Runnable() {
+                public void run() {
+                    progBar_.setIndeterminate( false );
+                }
+            } );
+        }
+    }
+
     /**
      * Does the work of searching according to a given specification,
      * updating the GUI asynchronously as it goes.
@@ -307,13 +420,9 @@ public class ColumnSearchWindow extends AuxDialog {
      * @param  search  search specification
      */
     private void performSearch( Search search ) {
-        int jcol = search.jcol_;
-        Pattern pattern = search.pattern_;
-        SearchScope scope = search.scope_;
         StarTable dataModel = tcModel_.getDataModel();
         final ViewerTableModel viewModel = tcModel_.getViewModel();
-        long nfind = 0;
-        long irow0 = -1;
+        Thread thread = Thread.currentThread();
 
         /* Clear selection. */
         SwingUtilities.invokeLater( new Runnable() {
@@ -325,81 +434,172 @@ public class ColumnSearchWindow extends AuxDialog {
         /* Set up a progress bar.  Since we install a new model, this
          * will have the effect of throwing out any model that is still
          * being updated by previous invocations of this method. */
-        int nrow = viewModel.getRowCount();
+        int nrow = Tables.checkedLongToInt( dataModel.getRowCount() );
         final BoundedRangeModel progModel =
-            new DefaultBoundedRangeModel(0, 0, 0, nrow );
+            new DefaultBoundedRangeModel( 0, 0, 0, nrow );
         SwingUtilities.invokeLater( new Runnable() {
             public void run() {
                 progBar_.setModel( progModel );
             }
         } );
 
-        /* Iterate over rows in the view model (not the whole table). */
-        long nextUpdate = System.currentTimeMillis();
-        int krow = 0;
-        final IndexSet foundSet = new IndexSet( dataModel.getRowCount() );
-        for ( Iterator<Long> irowIt = viewModel.getRowIndexIterator();
-              irowIt.hasNext() && ! Thread.currentThread().isInterrupted(); ) {
-
-            /* Look for and record matching rows. */
-            long irow = irowIt.next().longValue();
-            Object cell;
-            try {
-                cell = dataModel.getCell( irow, jcol );
-            }
-            catch ( IOException e ) {
-                cell = null;
-            }
-            if ( cell != null ) {
-                String txt = cellToString( cell );
-                if ( scope.matches( pattern.matcher( txt ) ) ) {
-                    foundSet.addIndex( irow );
-                    final boolean isFirst = nfind++ == 0;
-                    if ( isFirst ) {
-                        irow0 = irow;
+        /* Search only rows in the view model (not the whole table).
+         * Use the index if requested, falling back to a scan of the
+         * column data if it can't be built. */
+        RowSubset rset = viewModel.getSubset();
+        BitSet mask = rset == RowSubset.ALL ? null : rset.getMask( nrow );
+        BitSet found = null;
+        try {
+            if ( search.useIndex_ ) {
+                try {
+                    found = getIndex( search.jcol_ )
+                           .findRows( search.pattern_,
+                                      search.scope_ == SearchScope.FULL,
+                                      search.prefix_, RowRunner.DEFAULT );
+                    if ( mask != null ) {
+                        found.and( mask );
                     }
                 }
+                catch ( IOException e ) {
+                    if ( thread.isInterrupted() ) {
+                        return;
+                    }
+                    logger_.log( Level.WARNING,
+                                 "Failed to index column - scanning", e );
+                }
+            }
+            if ( found == null ) {
+                found = scanRows( search, nrow, mask, progModel );
+            }
+        }
+        catch ( IOException e ) {
+            if ( ! thread.isInterrupted() ) {
+                logger_.log( Level.WARNING, "Column search failed", e );
             }
+            return;
+        }
+        if ( thread.isInterrupted() ) {
+            return;
+        }
 
-            /* Update the progress bar if we haven't done it recently. */
-            long time = System.currentTimeMillis();
-            if ( time >= nextUpdate || krow == nrow - 1 ) {
-                nextUpdate = time + 100;
-                final int krow0 = krow;
-                SwingUtilities.invokeLater( new Runnable() {
-                    public void run() {
-                        progModel.setValue( krow0 );
-                    }
-                } );
+        /* Locate the match that comes first in the view order. */
+        final long nfind = found.cardinality();
+        long irow0 = found.nextSetBit( 0 );
+        if ( nfind > 1 ) {
+            long iview0 = Long.MAX_VALUE;
+            for ( int irow = found.nextSetBit( 0 ); irow >= 0;
+                  irow = found.nextSetBit( irow + 1 ) ) {
+                long iview = viewModel.getViewIndex( irow );
+                if ( iview >= 0 && iview < iview0 ) {
+                    iview0 = iview;
+                    irow0 = irow;
+                }
             }
-            krow++;
         }
 
-        /* If we complete successfully, update the selection. */
-        if ( !Thread.currentThread().isInterrupted() ) {
-            final long nfind0 = nfind;
-            final long irow00 = irow0;
-            SwingUtilities.invokeLater( new Runnable() {
-                public void run() {
-                    updateActions();
-                    progModel.setValue( 0 );
-                    if ( nfind0 == 1 ) {
-                        tcModel_.highlightRow( irow00 );
-                    }
-                    else if ( nfind0 > 0 ) {
-                        viewWindow_.setSelection( foundSet.createRowSubset() );
-                        viewWindow_.scrollToRow( viewModel
-                                                .getViewRow( irow00 ) );
-                    }
+        /* Update the selection. */
+        final long irow00 = irow0;
+        final RowSubset foundSet = new BitsRowSubset( "Found", found );
+        SwingUtilities.invokeLater( new Runnable() {
+            public void run() {
+                updateActions();
+                progModel.setValue( 0 );
+                if ( nfind == 1 ) {
+                    tcModel_.highlightRow( irow00 );
+                }
+                else if ( nfind > 0 ) {
+                    viewWindow_.scrollToRow( viewModel
+                                            .getViewIndex( irow00 ) );
+                    viewWindow_.setSelection( foundSet );
+                }
 
-                    /* If at least one row was found, and the window is not
-                     * tacked, close the dialog. */
-                    if ( nfind0 > 0 && ! tackModel_.isSelected() ) {
-                        ColumnSearchWindow.this.dispose();
+                /* If at least one row was found, and the window is not
+                 * tacked, close the dialog. */
+                if ( nfind > 0 && ! tackModel_.isSelected() ) {
+                    ColumnSearchWindow.this.dispose();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Searches a column by reading its cells.
+     * The rows are processed a block at a time, with the rows in each
+     * block divided between threads, and progress is reported
+     * after each block.
+     *
+     * <p>This method must be invoked from a non-EDT thread;
+     * if that thread is interrupted, it returns early
+     * with incomplete results.
+     *
+     * @param  search  search specification
+     * @param  nrow   number of rows in the data table
+     * @param  mask   flags for rows to be searched, or null for all rows
+     * @param  progModel  progress bar model
+     * @return   bit set flagging matching row indices
+     */
+    private BitSet scanRows( Search search, int nrow, final BitSet mask,
+                             final BoundedRangeModel progModel )
+            throws IOException {
+        final StarTable dataModel = tcModel_.getDataModel();
+        final int jcol = search.jcol_;
+        final Pattern pattern = search.pattern_;
+        final SearchScope scope = search.scope_;
+        final Thread thread = Thread.currentThread();
+        BitSet found = new BitSet( nrow );
+        int blockRows = Math.max( MIN_BLOCK_ROWS, nrow / NBLOCK );
+        for ( int start = 0; start < nrow && ! thread.isInterrupted();
+              start += blockRows ) {
+            final int start0 = start;
+            int nr = Math.min( blockRows, nrow - start );
+            RowCollector<BitSet> collector = new RowCollector<BitSet>() {
+                public BitSet createAccumulator() {
+                    return new BitSet();
+                }
+                public BitSet combine( BitSet bits1, BitSet bits2 ) {
+                    bits1.or( bits2 );
+                    return bits1;
+                }
+                public void accumulateRows( RowSplittable rseq, BitSet bits )
+                        throws IOException {
+                    LongSupplier rowIndex = rseq.rowIndex();
+                    int count = 0;
+                    while ( rseq.next() ) {
+                        if ( ++count % 1024 == 0 && thread.isInterrupted() ) {
+                            return;
+                        }
+                        int irow = start0 + (int) rowIndex.getAsLong();
+                        if ( mask == null || mask.get( irow ) ) {
+                            Object cell;
+                            try {
+                                cell = dataModel.getCell( irow, jcol );
+                            }
+                            catch ( IOException e ) {
+                                cell = null;
+                            }
+                            if ( cell != null &&
+                                 scope.matches( pattern
+                                               .matcher( cellToString( cell ) )
+                                              ) ) {
+                                bits.set( irow );
+                            }
+                        }
                     }
                 }
+            };
+            found.or( RowRunner.DEFAULT
+                     .collect( collector,
+                               new RandomRowSplittable( ColumnStarTable
+                                                       .makeTableWithRows( nr )
+                                                      ) ) );
+            final int progress = start + nr;
+            SwingUtilities.invokeLater( new Runnable() {
+                public void run() {
+                    progModel.setValue( progress );
+                }
             } );
         }
+        return found;
     }
 
     /**
@@ -409,6 +609,8 @@ public class ColumnSearchWindow extends AuxDialog {
         final int jcol_;
         final Pattern pattern_;
         final SearchScope scope_;
+        final String prefix_;
+        final boolean useIndex_;
 
         /**
          * Constructor.
@@ -416,11 +618,17 @@ public class ColumnSearchWindow extends AuxDialog {
          * @param  jcol  column index in data table of column to search
          * @param  pattern   regular expression to match
          * @param  scope   search target scope
+         * @param  prefix  literal prefix with which all matching values
+         *                 must start, or null if not known
+         * @param  useIndex  true to search using a column index
          */
-        Search( int jcol, Pattern pattern, SearchScope scope ) {
+        Search( int jcol, Pattern pattern, SearchScope scope, String prefix,
+                boolean useIndex ) {
             jcol_ = jcol;
             pattern_ = pattern;
             scope_ = scope;
+            prefix_ = prefix;
+            useIndex_ = useIndex;
         }
     }
 
@@ -438,6 +646,19 @@ public class ColumnSearchWindow extends AuxDialog {
                        + "\\E" )
                       .replaceAll( "\\\\Q\\\\E", "" );
             }
+            public String getLiteralPrefix( String txt, SearchScope scope ) {
+                if ( scope == SearchScope.FULL ) {
+                    int i = 0;
+                    while ( i < txt.length() &&
+                            "*?".indexOf( txt.charAt( i ) ) < 0 ) {
+                        i++;
+                    }
+                    return txt.substring( 0, i );
+                }
+                else {
+                    return null;
+                }
+            }
         },
 
         /** Literal matching. */
@@ -445,6 +666,9 @@ public class ColumnSearchWindow extends AuxDialog {
             public String getRegex( String txt ) {
                 return "\\Q" + txt + "\\E";
             }
+            public String getLiteralPrefix( String txt, SearchScope scope ) {
+                return scope == SearchScope.FULL ? txt : null;
+            }
         },
 
         /** Regular expressions. */
@@ -452,6 +676,36 @@ public class ColumnSearchWindow extends AuxDialog {
             public String getRegex( String txt ) {
                 return txt;
             }
+            public String getLiteralPrefix( String txt, SearchScope scope ) {
+
+                /* Only simple cases are recognised: the expression must
+                 * be anchored at the start of the value, must have
+                 * no alternation, and must start with plain characters. */
+                if ( scope == SearchScope.CONTAINS ) {
+                    if ( txt.startsWith( "^" ) ) {
+                        txt = txt.substring( 1 );
+                    }
+                    else {
+                        return null;
+                    }
+                }
+                if ( txt.indexOf( '|' ) >= 0 ) {
+                    return null;
+                }
+                int i = 0;
+                while ( i < txt.length() &&
+                        ( Character.isLetterOrDigit( txt.charAt( i ) ) ||
+                          " _-:,/".indexOf( txt.charAt( i ) ) >= 0 ) ) {
+                    i++;
+                }
+
+                /* A following quantifier applies to the last character. */
+                if ( i < txt.length() &&
+                     "*?+{".indexOf( txt.charAt( i ) ) >= 0 ) {
+                    i--;
+                }
+                return i > 0 ? txt.substring( 0, i ) : null;
+            }
         };
 
         final String name_;
@@ -474,6 +728,18 @@ public class ColumnSearchWindow extends AuxDialog {
          */
         public abstract String getRegex( String txt );
 
+        /**
+         * Returns a literal string with which any value matched by
+         * given match text in this syntax must start.
+         *
+         * @param   txt   submitted match text in this syntax
+         * @param   scope  search target scope
+         * @return   literal prefix of all matched values, or null if none
+         *           can be determined
+         */
+        public abstract String getLiteralPrefix( String txt,
+                                                 SearchScope scope );
+
         @Override
         public String toString() {
             return name_;
@@ -523,42 +789,4 @@ public class ColumnSearchWindow extends AuxDialog {
             return name_;
         }
     }
-
-    /**
-     * Utility class to keep a set of row index values (long integers).
-     * The implementation could get cleverer, more efficient, more robust,
-     * (may be wasteful for finding few rows in large tables)
-     * but it's probably OK up to 2^31 rows.  Avoid premature optimisation
-     * for now.
-     */
-    private static class IndexSet {
-        final BitSet bitset_;
-
-        /**
-         * Constructor.
-         *
-         * @param   maximum index value that might be stored
-         */
-        IndexSet( long nrow ) {
-            bitset_ = new BitSet( (int) nrow );
-        }
-
-        /**
-         * Add an entry.
-         *
-         * @param  ix  row index
-         */
-        void addIndex( long ix ) {
-            bitset_.set( Tables.checkedLongToInt( ix ) );
-        }
-
-        /**
-         * Return a RowSubset corresponding to the values added so far.
-         *
-         * @return  row subset
-         */
-        RowSubset createRowSubset() {
-            return new BitsRowSubset( "Found", bitset_ );
-        }
-    }
 }
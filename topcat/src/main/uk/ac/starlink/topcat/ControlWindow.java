@@ -1261,7 +1261,7 @@ public class ControlWindow extends AuxWindow
             long totCols = dataModel.getColumnCount();
             long totRows = dataModel.getRowCount();
             int visCols = columnModel.getColumnCount();
-            int visRows = viewModel.getRowCount();
+            long visRows = viewModel.getViewRowCount();
             String loc = tcModel.getLocation();
             String name = dataModel.getName();
 
@@ -216,7 +216,7 @@ public class CurrentSavePanel extends SavePanel {
             text = null;
         }
         else {
-            long nvis = tcModel.getViewModel().getRowCount();
+            long nvis = tcModel.getViewModel().getViewRowCount();
             long ntot = tcModel.getDataModel().getRowCount();
             text = nvis == ntot
                  ? TopcatUtils.formatLong( nvis )
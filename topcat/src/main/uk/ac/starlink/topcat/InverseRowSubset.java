@@ -1,5 +1,7 @@
 package uk.ac.starlink.topcat;
 
+import java.util.BitSet;
+
 /**
  * RowSubset implementation which provides the complement of a base set.
  *
@@ -24,6 +26,12 @@ public class InverseRowSubset extends RowSubset {
         return ! base_.isIncluded( lrow );
     }
 
+    public BitSet getMask( int nrow ) {
+        BitSet mask = base_.getMask( nrow ).get( 0, nrow );
+        mask.flip( 0, nrow );
+        return mask;
+    }
+
     /**
      * Returns the subset on which this one is based.
      *
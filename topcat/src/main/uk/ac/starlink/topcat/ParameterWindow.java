@@ -24,7 +24,6 @@ import javax.swing.event.TableColumnModelEvent;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableModel;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.StarTable;
@@ -42,7 +41,7 @@ public class ParameterWindow extends AuxWindow
 
     private TopcatModel tcModel;
     private PlasticStarTable dataModel;
-    private TableModel viewModel;
+    private ViewerTableModel viewModel;
     private TableColumnModel columnModel;
     private ParamList params;
     private Collection<DescribedValue> uneditableParams;
@@ -496,7 +495,7 @@ public class ParameterWindow extends AuxWindow
     }
 
     private void configureRowCount() {
-        nrowParam.setValue( new Long( (long) viewModel.getRowCount() ) );
+        nrowParam.setValue( new Long( viewModel.getViewRowCount() ) );
         int ixRow = getJTableRowIndex( nrowParam );
         metaTableModel.fireTableRowsUpdated( ixRow, ixRow );
     }
@@ -1,5 +1,7 @@
 package uk.ac.starlink.topcat;
 
+import java.util.BitSet;
+
 /**
  * Defines a selection of rows in a table model.
  * 
@@ -16,6 +18,11 @@ public abstract class RowSubset {
         public boolean isIncluded( long lrow ) {
             return true;
         }
+        public BitSet getMask( int nrow ) {
+            BitSet mask = new BitSet( nrow );
+            mask.set( 0, nrow );
+            return mask;
+        }
     };
 
     /**
@@ -25,6 +32,9 @@ public abstract class RowSubset {
         public boolean isIncluded( long lrow ) {
             return false;
         }
+        public BitSet getMask( int nrow ) {
+            return new BitSet();
+        }
     };
 
     /**
@@ -62,6 +72,29 @@ public abstract class RowSubset {
      */
     public abstract boolean isIncluded( long lrow );
 
+    /**
+     * Returns a bit mask indicating which of the first <code>nrow</code>
+     * rows are included in this subset.
+     * Bits at or beyond <code>nrow</code> may have any value.
+     * The returned object may be shared or cached by this subset,
+     * so it must not be modified by the caller.
+     *
+     * <p>The default implementation calls {@link #isIncluded} for each row,
+     * but subclasses may override it to do something more efficient.
+     *
+     * @param  nrow  number of rows in the table
+     * @return   inclusion mask; not to be modified
+     */
+    public BitSet getMask( int nrow ) {
+        BitSet mask = new BitSet( nrow );
+        for ( int i = 0; i < nrow; i++ ) {
+            if ( isIncluded( i ) ) {
+                mask.set( i );
+            }
+        }
+        return mask;
+    }
+
     /**
      * Returns this subset's name.
      */
@@ -2,6 +2,7 @@ package uk.ac.starlink.topcat;
 
 import java.awt.Component;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
@@ -16,6 +17,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongSupplier;
 import javax.swing.Action;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -31,17 +33,21 @@ import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RandomRowSplittable;
+import uk.ac.starlink.table.RowCollector;
 import uk.ac.starlink.table.RowListStarTable;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable; 
 import uk.ac.starlink.table.StarTableOutput;
 import uk.ac.starlink.table.TableSource;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.formats.AsciiTableWriter;
 import uk.ac.starlink.table.gui.NumericCellRenderer;
-import uk.ac.starlink.table.gui.ProgressBarStarTable;
 import uk.ac.starlink.table.gui.StarJTable;
 import uk.ac.starlink.table.gui.StarTableColumn;
 import uk.ac.starlink.ttools.filter.QuantCalc;
@@ -58,15 +64,16 @@ public class StatsWindow extends AuxWindow {
     private final StarTable dataModel_;
     private final TableColumnModel columnModel_;
     private final OptionsListModel<RowSubset> subsets_;
-    private final Map<RowSubset,StatsCalculator> calcMap_;
+    private final Map<RowSubset,SubsetStats> calcMap_;
     private final JTable jtab_;
     private final JProgressBar progBar_;
     private final JComboBox<RowSubset> subSelector_;
     private final MetaColumnTableModel statsTableModel_;
     private final BitSet hideColumns_ = new BitSet();
     private final Action recalcAct_;
+    private final ToggleButtonModel approxQuantModel_;
     private StatsCalculator activeCalculator_;
-    private StatsCalculator lastCalc_;
+    private SubsetStats lastStats_;
     private SaveTableQueryWindow saveWindow_;
 
     private static final ValueInfo NROW_INFO =
@@ -83,6 +90,15 @@ public class StatsWindow extends AuxWindow {
     private static final Map<Double,String> NAMED_QUANTILES =
         createNamedQuantiles();
 
+    /** Rank error used for approximate quantile calculation. */
+    private static final double APPROX_QUANT_ERROR = 0.001;
+
+    /** Number of blocks in which rows are processed, for progress updates. */
+    private static final int NBLOCK = 50;
+
+    /** Minimum number of rows in a processing block. */
+    private static final int MIN_BLOCK_ROWS = 100000;
+
     /**
      * Constructs a StatsWindow to report on the statistics of data in a
      * given TableViewer.  Initially, no results are displayed; call
@@ -98,8 +114,11 @@ public class StatsWindow extends AuxWindow {
         columnModel_ = tcModel.getColumnModel();
         subsets_ = tcModel.getSubsets();
 
-        /* Set up a map to contain statistic sets that have been calculated. */
-        calcMap_ = new HashMap<RowSubset,StatsCalculator>();
+        /* Set up a map to contain statistic sets that have been calculated.
+         * Results are held per column within each subset, so that
+         * only columns which have not been seen before need calculating
+         * when the subset or the set of columns changes. */
+        calcMap_ = new HashMap<RowSubset,SubsetStats>();
 
         /* Construct a table model which contains the results of the
          * current calculation. */
@@ -126,7 +145,7 @@ public class StatsWindow extends AuxWindow {
         }
 
         /* Watch the column model to see whether any quantile columns are
-         * introduced.  If they are, a recalculation may be required,
+         * introduced.  If they are, further calculation may be required,
          * since (because of the expense) quantiles are not calculated
          * unless explicitly asked for. */
         statsColumnModel.addColumnModelListener( new TableColumnModelAdapter() {
@@ -136,12 +155,10 @@ public class StatsWindow extends AuxWindow {
                 boolean isMad = col instanceof MadColumn;
                 if ( isQuant || isMad ) {
                     StatsCalculator calc = activeCalculator_;
-                    if ( calc == null ) {
-                        calc = lastCalc_;
-                    }
-                    if ( calc != null && ( ( isQuant && ! calc.hasQuant ) ||
-                                           ( isMad && ! calc.hasMad ) ) ) {
-                        recalcAct_.actionPerformed( null );
+                    if ( calc == null || ( isQuant && ! calc.hasQuant ) ||
+                                         ( isMad && ! calc.hasMad ) ) {
+                        setSubset( (RowSubset) subSelector_
+                                              .getSelectedItem() );
                     }
                 }
             }
@@ -189,6 +206,20 @@ public class StatsWindow extends AuxWindow {
             }
         };
 
+        /* Provide a toggle for calculating quantiles approximately,
+         * which uses a fixed small amount of memory per column. */
+        approxQuantModel_ =
+            new ToggleButtonModel( "Approximate Quantiles", null,
+                                   "Estimate quantiles with rank error " +
+                                   APPROX_QUANT_ERROR + " using " +
+                                   "fixed memory, rather than exactly" );
+        approxQuantModel_.addActionListener( new ActionListener() {
+            public void actionPerformed( ActionEvent evt ) {
+                calcMap_.clear();
+                setSubset( (RowSubset) subSelector_.getSelectedItem() );
+            }
+        } );
+
         /* Add actions to toolbar. */
         getToolBar().add( saveAct );
         getToolBar().add( importAct );
@@ -205,6 +236,7 @@ public class StatsWindow extends AuxWindow {
         JMenu statsMenu = new JMenu( "Statistics" );
         statsMenu.setMnemonic( KeyEvent.VK_S );
         statsMenu.add( new JMenuItem( recalcAct_ ) );
+        statsMenu.add( approxQuantModel_.createMenuItem() );
         getJMenuBar().add( statsMenu );
 
         /* Add a menu for controlling column display. */
@@ -250,6 +282,9 @@ public class StatsWindow extends AuxWindow {
      * @param   rset  the RowSubset for which results are to be displayed
      */
     public void setSubset( RowSubset rset ) {
+        if ( rset == null ) {
+            return;
+        }
 
         /* In the below, note that this window's calculator object keeps
          * a record of the active calculator.  Any StatsCalculator which
@@ -281,32 +316,50 @@ public class StatsWindow extends AuxWindow {
             hasMad = hasMad || metacol instanceof MadColumn;
         }
 
-        /* If we have already done this calculation, display the results
-         * directly. */
-        if ( calcMap_.containsKey( rset ) ) {
-            displayCalculations( calcMap_.get( rset ) );
+        /* Display any results we have already calculated for this subset,
+         * and work out which columns still need calculating. */
+        SubsetStats stats = calcMap_.get( rset );
+        if ( stats != null ) {
+            displayStats( stats );
+        }
+        int ncol = dataModel_.getColumnCount();
+        int[] icols = new int[ ncol ];
+        int nc = 0;
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            ColStats cs = stats == null ? null : stats.getColStats( icol );
+            if ( cs == null ||
+                 ( ( hasQuant || hasMad ) && ! cs.hasQuant ) ||
+                 ( hasMad && ! cs.hasMad ) ) {
+                icols[ nc++ ] = icol;
+            }
         }
 
-        /* Otherwise, kick off a new thread which will perform the
-         * calculations and display the results in due course. */
-        else {
-            activeCalculator_ = new StatsCalculator( rset, hasQuant, hasMad );
+        /* If anything is missing, kick off a new thread which will perform
+         * the calculations and display the results in due course. */
+        activeCalculator_ = null;
+        if ( nc > 0 ) {
+            activeCalculator_ =
+                new StatsCalculator( rset, Arrays.copyOf( icols, nc ), stats,
+                                     hasQuant, hasMad,
+                                     approxQuantModel_.isSelected() );
             activeCalculator_.start();
         }
+        else {
+            setBusy( false );
+        }
     }
 
     /**
      * Writes the results into the display portion of this StatsWindow.
      *
-     * @param   stats  a StatsCalculator object which has completed
-     *          its calculations
+     * @param   stats  statistics, possibly partial, to display
      */
-    private void displayCalculations( StatsCalculator stats ) {
+    private void displayStats( SubsetStats stats ) {
 
         /* Make the new results available to the table model and notify
          * it to update its data. */
-        boolean firstTime = lastCalc_ == null;
-        lastCalc_ = stats;
+        boolean firstTime = lastStats_ == null;
+        lastStats_ = stats;
         statsTableModel_.fireTableDataChanged();
 
         /* First time only, configure the column widths according to 
@@ -374,6 +427,20 @@ public class StatsWindow extends AuxWindow {
         return columnModel_.getColumn( irow ).getModelIndex();
     }
 
+    /**
+     * Returns the currently displayed statistics for the table column
+     * corresponding to a given row in the naturally ordered
+     * MetaColumnTableModel displayed in this window.
+     *
+     * @param  irow   row index in unsorted table model
+     * @return  column statistics, or null if not available
+     */
+    private ColStats getColStats( int irow ) {
+        return lastStats_ == null
+             ? null
+             : lastStats_.getColStats( getModelIndexFromRow( irow ) );
+    }
+
     /**
      * Provides the largest cardinality which is counted as valid for
      * a given number of rows.  Any cardinality higher than this value
@@ -446,13 +513,13 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "Sum", Double.class,
                                    "Sum of all values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                if ( lastCalc_.isNumber[ jcol ] ) {
-                    return new Double( lastCalc_.sums[ jcol ] );
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                if ( cs.isNumber ) {
+                    return new Double( cs.sum );
                 }
-                else if ( lastCalc_.isBoolean[ jcol ] ) {
-                    return new Double( lastCalc_.ntrues[ jcol ] );
+                else if ( cs.isBoolean ) {
+                    return new Double( cs.ntrue );
                 }
                 else {
                     return null;
@@ -464,10 +531,10 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "Mean", Float.class,
                                    "Mean of values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ] || lastCalc_.isBoolean[ jcol ]
-                     ? new Float( lastCalc_.means[ jcol ] )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber || cs.isBoolean
+                     ? new Float( cs.mean )
                      : null;
             }
         } );
@@ -477,10 +544,10 @@ public class StatsWindow extends AuxWindow {
                                    "Population standard deviation " +
                                    "of values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.popsdevs[ jcol ] ) 
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.popsdev ) 
                      : null;
             }
         } );
@@ -490,10 +557,10 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "Variance", Float.class,
                                    "Population variance of values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.popvars[ jcol ] )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.popvar )
                      : null;
             }
         } );
@@ -504,10 +571,10 @@ public class StatsWindow extends AuxWindow {
                                    "Sample standard deviation of " +
                                    "values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.sampsdevs[ jcol ] ) 
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.sampsdev ) 
                      : null;
             }
         } );
@@ -517,10 +584,10 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "Sample_Variance", Float.class,
                                    "Sample variance of values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.sampvars[ jcol ] )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.sampvar )
                      : null;
             }
         } );
@@ -547,10 +614,10 @@ public class StatsWindow extends AuxWindow {
                                    "Gamma 1 measure of skewness " +
                                    "of column value distribution" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.skews[ jcol ] )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.skew )
                      : null;
             }
         } );
@@ -561,10 +628,10 @@ public class StatsWindow extends AuxWindow {
                                    "Gamma 2 measure of peakedness of " +
                                    "column value distribution" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.isNumber[ jcol ]
-                     ? new Float( lastCalc_.kurts[ jcol ] )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.isNumber
+                     ? new Float( cs.kurt )
                      : null;
             }
         } );
@@ -574,9 +641,9 @@ public class StatsWindow extends AuxWindow {
                                    "Numerically or other (e.g. alphabetically) "
                                  + "smallest value in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.mins[ jcol ];
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.min;
             }
         } );
 
@@ -586,10 +653,10 @@ public class StatsWindow extends AuxWindow {
                                    "Row index of the minimum value " +
                                    "from column"  ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if  ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.mins[ jcol ] != null
-                     ? new Long( lastCalc_.imins[ jcol ] + 1 )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.min != null
+                     ? new Long( cs.imin + 1 )
                      : null;
             }
         } );
@@ -599,9 +666,9 @@ public class StatsWindow extends AuxWindow {
                                    "Numerically or other (e.g. alphabetically) "
                                  + "largest value in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.maxs[ jcol ];
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.max;
             }
         } );
 
@@ -611,10 +678,10 @@ public class StatsWindow extends AuxWindow {
                                    "Row index of the maximum value " +
                                    "from column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return lastCalc_.maxs[ jcol ] != null
-                     ? new Long( lastCalc_.imaxs[ jcol ] + 1 )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return cs.max != null
+                     ? new Long( cs.imax + 1 )
                      : null;
             }
         } );
@@ -623,9 +690,9 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "nGood", Long.class,
                                    "Number of non-blank values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return new Long( lastCalc_.ngoods[ jcol ] );
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return new Long( cs.ngood );
             }
         } );
 
@@ -634,9 +701,9 @@ public class StatsWindow extends AuxWindow {
         metas.add( new MetaColumn( "nBad", Long.class,
                                    "Number of blank values in column" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                return new Long( lastCalc_.nbads[ jcol ] );
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                return new Long( cs.nbad );
             }
         } );
 
@@ -646,10 +713,10 @@ public class StatsWindow extends AuxWindow {
                                    "Number of distinct non-blank values " +
                                    "in column (blank if too large)" ) {
             public Object getValue( int irow ) {
-                int jcol = getModelIndexFromRow( irow );
-                if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-                int card = lastCalc_.cards[ jcol ];
-                return ( lastCalc_.isCardinal[ jcol ] && card > 0 )
+                ColStats cs = getColStats( irow );
+                if ( cs == null ) return null;
+                int card = cs.card;
+                return ( cs.isCardinal && card > 0 )
                      ? new Integer( card )
                      : null;
             }
@@ -672,6 +739,11 @@ public class StatsWindow extends AuxWindow {
         columnModel_.addColumnModelListener( new TableColumnModelAdapter() {
             public void columnAdded( TableColumnModelEvent evt ) {
                 tmodel.fireTableDataChanged();
+
+                /* Calculate statistics for any new columns. */
+                if ( isVisible() ) {
+                    setSubset( (RowSubset) subSelector_.getSelectedItem() );
+                }
             }
             public void columnRemoved( TableColumnModelEvent evt ) {
                 tmodel.fireTableDataChanged();
@@ -734,7 +806,7 @@ public class StatsWindow extends AuxWindow {
             table.setParameter( new DescribedValue( LOC_INFO, loc ) );
         }
         table.setParameter( new DescribedValue( NROW_INFO,
-                                                new Long( lastCalc_
+                                                new Long( lastStats_
                                                          .ngoodrow ) ) );
         if ( rset != null && rset != RowSubset.ALL ) {
             table.setParameter( new DescribedValue( RSET_INFO,
@@ -800,10 +872,10 @@ public class StatsWindow extends AuxWindow {
         }
 
         public Object getValue( int irow ) {
-            int jcol = getModelIndexFromRow( irow );
-            if ( lastCalc_ == null || jcol >= lastCalc_.ncol ) return null;
-            return lastCalc_.hasMad && lastCalc_.isNumber[ jcol ]
-                 ? new Float( (float) ( lastCalc_.mads[ jcol ] * scale_ ) )
+            ColStats cs = getColStats( irow );
+            if ( cs == null ) return null;
+            return cs.hasMad && cs.isNumber
+                 ? new Float( (float) ( cs.mad * scale_ ) )
                  : null;
         }
     }
@@ -829,9 +901,9 @@ public class StatsWindow extends AuxWindow {
         }
 
         public Object getValue( int irow ) {
-            int jcol = getModelIndexFromRow( irow );
-            if ( lastCalc_.hasQuant ) {
-                Map<Double,Number> quantiles = lastCalc_.quantiles.get( jcol );
+            ColStats cs = getColStats( irow );
+            if ( cs != null && cs.hasQuant ) {
+                Map<Double,Number> quantiles = cs.quantiles;
                 if ( quantiles == null || ! quantiles.containsKey( key_ ) ) {
                     return null;
                 }
@@ -845,61 +917,489 @@ public class StatsWindow extends AuxWindow {
         }
     }
 
+
+    /**
+     * Statistics calculated for a single table column over a row subset.
+     */
+    private static class ColStats {
+        boolean isNumber;
+        boolean isBoolean;
+        boolean isCardinal;
+        boolean hasQuant;
+        boolean hasMad;
+        Object min;
+        Object max;
+        long imin;
+        long imax;
+        long ngood;
+        long nbad;
+        long ntrue;
+        double sum;
+        double mean;
+        double popsdev;
+        double popvar;
+        double sampsdev;
+        double sampvar;
+        double mad;
+        double skew;
+        double kurt;
+        int card;
+        Map<Double,Number> quantiles;
+    }
+
+    /**
+     * Statistics calculated for the columns of the table over a row subset.
+     * Statistics for some columns may be absent.
+     */
+    private static class SubsetStats {
+        final ColStats[] colStats;
+        final long ngoodrow;
+
+        /**
+         * Constructor.
+         *
+         * @param  colStats  per-column statistics indexed by
+         *                   data model column index; elements may be null
+         * @param  ngoodrow  number of rows in the subset
+         */
+        SubsetStats( ColStats[] colStats, long ngoodrow ) {
+            this.colStats = colStats;
+            this.ngoodrow = ngoodrow;
+        }
+
+        /**
+         * Returns the statistics for a given column.
+         *
+         * @param  jcol  data model column index
+         * @return  column statistics, or null if not calculated
+         */
+        ColStats getColStats( int jcol ) {
+            return jcol >= 0 && jcol < colStats.length ? colStats[ jcol ]
+                                                       : null;
+        }
+    }
+
+    /**
+     * Accumulates statistics for a single column.
+     * Instances for the same column can be merged, so that rows
+     * may be processed in parallel.
+     */
+    private class ColAccumulator {
+
+        final int icol;
+        final boolean isNumber;
+        final boolean isComparable;
+        final boolean isBoolean;
+        final int cardlimit;
+        boolean isCardinal;
+        boolean badcompar;
+        Object min;
+        Object max;
+        long imin;
+        long imax;
+        double dmin;
+        double dmax;
+        long ngood;
+        long ntrue;
+        double sum1;
+        double sum2;
+        double sum3;
+        double sum4;
+        Set<Object> valueset;
+        QuantCalc quantCalc;
+
+        /**
+         * Constructor.
+         *
+         * @param  icol   data model column index
+         * @param  cardlimit  maximum cardinality to count
+         * @param  quantCalc  quantile calculator, or null if quantiles
+         *                    are not required
+         */
+        ColAccumulator( int icol, int cardlimit, QuantCalc quantCalc ) {
+            this.icol = icol;
+            this.cardlimit = cardlimit;
+            this.quantCalc = quantCalc;
+            Class<?> clazz = dataModel_.getColumnInfo( icol )
+                                       .getContentClass();
+            isNumber = Number.class.isAssignableFrom( clazz );
+            isComparable = Comparable.class.isAssignableFrom( clazz );
+            isBoolean = clazz.equals( Boolean.class );
+            isCardinal = ! clazz.equals( Boolean.class );
+            if ( isCardinal ) {
+                valueset = new HashSet<Object>();
+            }
+            imin = -1L;
+            imax = -1L;
+            dmin = Double.MAX_VALUE;
+            dmax = -Double.MAX_VALUE;
+        }
+
+        /**
+         * Accumulates a value.
+         *
+         * @param  val  cell value
+         * @param  lrow  row index
+         */
+        void accept( Object val, long lrow ) {
+            boolean good;
+            if ( val == null ) {
+                good = false;
+            }
+            else if ( isNumber ) {
+                double dval = Double.NaN;
+                if ( ! ( val instanceof Number ) ) {
+                    System.err.println( "Error in table data: not numeric at "
+                                      + lrow + "," + icol + "(" + val + ")" );
+                }
+                else {
+                    dval = ((Number) val).doubleValue();
+                }
+                good = ! Double.isNaN( dval );
+                if ( good ) {
+                    if ( dval < dmin ) {
+                        dmin = dval;
+                        min = val;
+                        imin = lrow;
+                    }
+                    if ( dval > dmax ) {
+                        dmax = dval;
+                        max = val;
+                        imax = lrow;
+                    }
+                    double s1 = dval;
+                    double s2 = dval * s1;
+                    double s3 = dval * s2;
+                    double s4 = dval * s3;
+                    sum1 += s1;
+                    sum2 += s2;
+                    sum3 += s3;
+                    sum4 += s4;
+                    if ( quantCalc != null ) {
+                        quantCalc.acceptDatum( val );
+                    }
+                }
+            }
+            else if ( isBoolean ) {
+                if ( ! ( val instanceof Boolean ) ) {
+                    System.err.println( "Error in table data: not boolean at "
+                                      + lrow + "," + icol + "(" + val + ")" );
+                    good = false;
+                }
+                else {
+                    good = true;
+                    if ( ((Boolean) val).booleanValue() ) {
+                        ntrue++;
+                    }
+                }
+            }
+            else if ( isComparable ) {
+                if ( ! ( val instanceof Comparable ) ) {
+                    System.err.println( "Error in table data: not Comparable "
+                                      + " at " + lrow + "," + icol
+                                      + "(" + val + ")" );
+                    good = false;
+                }
+                else {
+                    good = true;
+                    acceptComparable( val, lrow, val, lrow );
+                }
+            }
+            else {
+                good = true;
+            }
+            if ( good ) {
+                ngood++;
+
+                /* Maybe calculate the cardinalities. */
+                if ( isCardinal ) {
+                    valueset.add( val );
+                    if ( valueset.size() > cardlimit ) {
+                        isCardinal = false;
+                        valueset = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Updates the extrema of a Comparable column.
+         *
+         * @param  vmin  candidate minimum
+         * @param  lmin  row index of vmin
+         * @param  vmax  candidate maximum
+         * @param  lmax  row index of vmax
+         */
+        private void acceptComparable( Object vmin, long lmin,
+                                       Object vmax, long lmax ) {
+            if ( min == null ) {
+                min = vmin;
+                imin = lmin;
+                max = vmax;
+                imax = lmax;
+            }
+            else {
+                try {
+                    int cmin = compare( vmin, min );
+                    if ( cmin < 0 || ( cmin == 0 && lmin < imin ) ) {
+                        min = vmin;
+                        imin = lmin;
+                    }
+                    int cmax = compare( vmax, max );
+                    if ( cmax > 0 || ( cmax == 0 && lmax < imax ) ) {
+                        max = vmax;
+                        imax = lmax;
+                    }
+                }
+
+                /* It is possible for two objects in the same column
+                 * both to be Comparable, but not to each other.
+                 * In this case, there does not exist a well-defined
+                 * min/max for that column. */
+                catch ( ClassCastException e ) {
+                    badcompar = true;
+                }
+            }
+        }
+
+        /**
+         * Merges the contents of another accumulator for the same column
+         * into this one.
+         *
+         * @param  other  other accumulator
+         */
+        void add( ColAccumulator other ) {
+            if ( isNumber ) {
+                if ( other.dmin < dmin ||
+                     ( other.dmin == dmin && other.min != null &&
+                       other.imin < imin ) ) {
+                    dmin = other.dmin;
+                    min = other.min;
+                    imin = other.imin;
+                }
+                if ( other.dmax > dmax ||
+                     ( other.dmax == dmax && other.max != null &&
+                       other.imax < imax ) ) {
+                    dmax = other.dmax;
+                    max = other.max;
+                    imax = other.imax;
+                }
+                sum1 += other.sum1;
+                sum2 += other.sum2;
+                sum3 += other.sum3;
+                sum4 += other.sum4;
+                if ( quantCalc != null ) {
+                    quantCalc.add( other.quantCalc );
+                }
+            }
+            else if ( isComparable && ! isBoolean ) {
+                badcompar = badcompar || other.badcompar;
+                if ( other.min != null ) {
+                    acceptComparable( other.min, other.imin,
+                                      other.max, other.imax );
+                }
+            }
+            ngood += other.ngood;
+            ntrue += other.ntrue;
+            if ( isCardinal ) {
+                if ( other.isCardinal ) {
+                    valueset.addAll( other.valueset );
+                }
+                if ( ! other.isCardinal || valueset.size() > cardlimit ) {
+                    isCardinal = false;
+                    valueset = null;
+                }
+            }
+        }
+
+        /**
+         * Calculates the statistics based on the values accumulated
+         * so far.  Quantiles are only calculated if requested;
+         * this must be the last call made on this accumulator if so.
+         *
+         * @param  ngoodrow  number of rows accumulated
+         * @param  hasQuant  whether quantiles are to be calculated
+         * @param  hasMad  whether median absolute deviation is to be
+         *                 calculated
+         * @return  column statistics
+         */
+        ColStats createStats( long ngoodrow, boolean hasQuant,
+                              boolean hasMad )
+                throws IOException {
+            ColStats cs = new ColStats();
+            cs.isNumber = isNumber;
+            cs.isBoolean = isBoolean;
+            cs.isCardinal = isCardinal;
+            cs.hasQuant = hasQuant;
+            cs.hasMad = hasMad;
+            cs.min = min;
+            cs.max = max;
+            cs.imin = imin;
+            cs.imax = imax;
+            cs.ngood = ngood;
+            cs.nbad = ngoodrow - ngood;
+            cs.ntrue = ntrue;
+            cs.sum = sum1;
+            cs.mad = Double.NaN;
+            if ( ngood > 0 ) {
+                if ( isNumber ) {
+                    double dcount = (double) ngood;
+                    double sum0 = dcount;
+                    double mean = sum1 / dcount;
+                    double nvar = ( sum2 - sum1 * sum1 / dcount );
+                    cs.mean = mean;
+                    cs.popvar = nvar / dcount;
+                    cs.popsdev = Math.sqrt( cs.popvar );
+                    if ( ngood > 1 ) {
+                        cs.sampvar = nvar / ( dcount - 1 );
+                        cs.sampsdev = Math.sqrt( cs.sampvar );
+                    }
+                    else {
+                        cs.sampvar = Double.NaN;
+                        cs.sampsdev = Double.NaN;
+                    }
+                    cs.skew =
+                        Math.sqrt( dcount ) / Math.pow( nvar, 1.5 ) *
+                        ( + 1 * sum3
+                          - 3 * mean * sum2
+                          + 3 * mean * mean * sum1
+                          - 1 * mean * mean * mean * sum0 );
+                    cs.kurt =
+                        dcount / ( nvar * nvar ) *
+                        ( + 1 * sum4
+                          - 4 * mean * sum3
+                          + 6 * mean * mean * sum2
+                          - 4 * mean * mean * mean * sum1
+                          + 1 * mean * mean * mean * mean * sum0 ) - 3.0;
+                }
+                else if ( isBoolean ) {
+                    cs.mean = (double) ntrue / ngood;
+                }
+                if ( isCardinal ) {
+                    int card = valueset.size();
+                    if ( card <= getCardinalityLimit( ngood ) ) {
+                        cs.card = card;
+                    }
+                    else {
+                        cs.isCardinal = false;
+                    }
+                }
+                if ( hasQuant && quantCalc != null ) {
+                    quantCalc.ready();
+                    cs.quantiles = new HashMap<Double,Number>();
+                    for ( Double qval : NAMED_QUANTILES.keySet() ) {
+                        cs.quantiles.put( qval,
+                                          quantCalc.getQuantile( qval ) );
+                    }
+                    if ( hasMad ) {
+                        cs.mad = QuantCalc
+                                .calculateMedianAbsoluteDeviation( quantCalc );
+                    }
+                    quantCalc = null;
+                }
+            }
+            else {
+                cs.mean = Double.NaN;
+                cs.popsdev = Double.NaN;
+                cs.popvar = Double.NaN;
+                cs.sampvar = Double.NaN;
+                cs.sampsdev = Double.NaN;
+                cs.skew = Double.NaN;
+                cs.kurt = Double.NaN;
+            }
+            if ( badcompar ) {
+                cs.min = null;
+                cs.max = null;
+                cs.imin = -1L;
+                cs.imax = -1L;
+            }
+            return cs;
+        }
+    }
+
+    /**
+     * Accumulates statistics for a number of columns over some rows.
+     */
+    private static class StatsAccumulator {
+        final ColAccumulator[] colAccs;
+        long ngoodrow;
+
+        /**
+         * Constructor.
+         *
+         * @param  colAccs  per-column accumulators
+         */
+        StatsAccumulator( ColAccumulator[] colAccs ) {
+            this.colAccs = colAccs;
+        }
+
+        /**
+         * Merges the contents of another compatible accumulator
+         * into this one.
+         *
+         * @param  other  other accumulator
+         */
+        void add( StatsAccumulator other ) {
+            ngoodrow += other.ngoodrow;
+            for ( int ic = 0; ic < colAccs.length; ic++ ) {
+                colAccs[ ic ].add( other.colAccs[ ic ] );
+            }
+        }
+    }
+
+    /**
+     * Compares two objects in a column of Comparables.
+     *
+     * @param  o1  first object
+     * @param  o2  second object
+     * @return  comparison result
+     * @throws  ClassCastException  if the objects are not mutually comparable
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare( Object o1, Object o2 ) {
+        return ((Comparable<Object>) o1).compareTo( o2 );
+    }
+
     /**
      * Helper class which performs the calculations in its own thread,
      * and displays the results in the StatsWindow when it's done.
+     * Rows are processed a block at a time, with the rows of each block
+     * divided between threads, and the results so far are displayed
+     * after each block.
      * A maximum of one active instance of this is maintained by each 
      * StatsWindow, its <tt>run</tt> method running in a separate thread.
      */
     private class StatsCalculator extends Thread {
 
         private final RowSubset rset;
+        private final int[] icols;
+        private final SubsetStats baseStats;
         private final boolean hasQuant;
         private final boolean hasMad;
-
-        int ncol;
-        long ngoodrow;
-        boolean[] isNumber;
-        boolean[] isComparable;
-        boolean[] isBoolean;
-        boolean[] isCardinal;
-        Object[] mins;
-        Object[] maxs;
-        long[] imins;
-        long[] imaxs;
-        long[] ngoods;
-        long[] nbads;
-        long[] ntrues;
-        double[] means;
-        double[] popsdevs;
-        double[] popvars;
-        double[] sampsdevs;
-        double[] sampvars;
-        double[] mads;
-        double[] skews;
-        double[] kurts;
-        double[] sums;
-        double[] sum2s;
-        double[] sum3s;
-        double[] sum4s;
-        int[] cards;
-        List<Map<Double,Number>> quantiles;
-        QuantCalc[] quantCalcs;
+        private final boolean isApprox;
 
         /**
          * Constructs a calculator object which can calculate the statistics
          * of the table owned by this StatsWindow over a given RowSubset.
          *
          * @param  rset the RowSubset to do calculations for
+         * @param  icols  data model indices of columns to calculate
+         * @param  baseStats  previously calculated statistics for other
+         *                    columns of the same subset, or null
          * @param  hasQuant  true if quantiles need calculating
          * @param  hasMad  true if median absolute deviations need calculating
+         * @param  isApprox  true if quantiles may be calculated approximately
          */
-        public StatsCalculator( RowSubset rset, boolean hasQuant,
-                                boolean hasMad ) {
+        public StatsCalculator( RowSubset rset, int[] icols,
+                                SubsetStats baseStats, boolean hasQuant,
+                                boolean hasMad, boolean isApprox ) {
             super( "StatsCalculator" );
             this.rset = rset;
+            this.icols = icols;
+            this.baseStats = baseStats;
             this.hasQuant = hasQuant || hasMad; 
             this.hasMad = hasMad;
+            this.isApprox = isApprox;
         }
 
         /**
@@ -919,17 +1419,18 @@ public class StatsWindow extends AuxWindow {
                 }
             } );
             try {
-                calculate();
-                calcMap_.put( rset, StatsCalculator.this );
+                final SubsetStats stats = calculate();
                 SwingUtilities.invokeLater( new Runnable() {
                     public void run() {
-                        displayCalculations( StatsCalculator.this );
+                        calcMap_.put( rset, stats );
+                        if ( StatsCalculator.this == activeCalculator_ ) {
+                            displayStats( stats );
+                        }
                     }
                 } );
             }
             catch ( OutOfMemoryError e ) {
                 if ( hasQuant ) {
-                    quantCalcs = null;
                     final Object msg = new String[] {
                         "Out of memory while calculating quantiles.",
                         "",
@@ -937,8 +1438,9 @@ public class StatsWindow extends AuxWindow {
                         "are much more expensive to calculate than other",
                         "statistical quantities.",
                         "To calculate statistics for this table you will",
-                        "need to undisplay these columns, or start again",
-                        "with more memory.",
+                        "need to undisplay these columns, select",
+                        "Statistics|Approximate Quantiles,",
+                        "or start again with more memory.",
                     };
                     SwingUtilities.invokeLater( new Runnable() {
                         public void run() {
@@ -957,6 +1459,7 @@ public class StatsWindow extends AuxWindow {
                     public void run() {
                         if ( StatsCalculator.this == activeCalculator_ ) {
                             activeCalculator_ = null;
+                            progBar_.setValue( 0 );
                             StatsWindow.this.setBusy( false );
                         }
                     }
@@ -965,348 +1468,204 @@ public class StatsWindow extends AuxWindow {
         }
 
         /**
-         * Performs the calculations, storing the results in the member
-         * variables of this StatsCalculator object.
+         * Performs the calculations.
+         * Partial results are displayed as the calculation progresses.
          * An IOException may indicate that the thread was interrupted
-         * deliberately, or that some other error occurred.  Either way,
-         * some sensible results should be returned based on the number of
-         * rows which have been got through so far.
+         * deliberately, or that some other error occurred.
          *
+         * @return  statistics for this calculator's columns merged with
+         *          the base statistics
          * @throws  IOException if calculation is not complete
          */
-        private void calculate() throws IOException {
-            ncol = dataModel_.getColumnCount();
-
-            /* Allocate result objects. */
-            isNumber = new boolean[ ncol ];
-            isComparable = new boolean[ ncol ];
-            isBoolean = new boolean[ ncol ];
-            isCardinal = new boolean[ ncol ];
-            mins = new Object[ ncol ];
-            maxs = new Object[ ncol ];
-            imins = new long[ ncol ];
-            imaxs = new long[ ncol ];
-            ngoods = new long[ ncol ];
-            nbads = new long[ ncol ];
-            ntrues = new long[ ncol ];
-            means = new double[ ncol ];
-            popsdevs = new double[ ncol ];
-            popvars = new double[ ncol ];
-            sampsdevs = new double[ ncol ];
-            sampvars = new double[ ncol ];
-            mads = new double[ ncol ];
-            skews = new double[ ncol ];
-            kurts = new double[ ncol ];
-            sums = new double[ ncol ];
-            sum2s = new double[ ncol ];
-            sum3s = new double[ ncol ];
-            sum4s = new double[ ncol ];
-            cards = new int[ ncol ];
-            quantiles = new ArrayList<Map<Double,Number>>( ncol );
-            quantCalcs = new QuantCalc[ ncol ];
-
-            boolean[] badcompars = new boolean[ ncol ];
-            double[] dmins = new double[ ncol ];
-            double[] dmaxs = new double[ ncol ];
-            List<Set<Object>> valuesets = new ArrayList<Set<Object>>( ncol );
-            for ( int i = 0; i < ncol; i++ ) {
-                quantiles.add( null );
-                valuesets.add( null );
-            }
-            Arrays.fill( dmins, Double.MAX_VALUE );
-            Arrays.fill( dmaxs, -Double.MAX_VALUE );
-
-            /* If we are going to calculate quantiles it's useful to work out
-             * how many rows there are in the subset up front.  This is a
-             * bit risky - the count may be incorrect if subset definition
-             * has changed.  Hmm.  It's not essential to use this value,
-             * but doing it will make it easier to catch, e.g.,
-             * OutOfMemoryErrors. */
-            long nr = -1;
-            if ( hasQuant ) {
-                Object num = tcModel_.getSubsetCounts().get( rset );
-                if ( num instanceof Number ) {
-                    nr = ((Number) num).longValue();
-                }
-            }
-
-            /* See which columns we can sensibly gather statistics on. */
-            for ( int icol = 0; icol < ncol; icol++ ) {
-                Class<?> clazz = dataModel_.getColumnInfo( icol )
-                                           .getContentClass();
-                isNumber[ icol ] = Number.class.isAssignableFrom( clazz );
-                isComparable[ icol ] = Comparable.class
-                                                 .isAssignableFrom( clazz );
-                isBoolean[ icol ] = clazz.equals( Boolean.class );
-                isCardinal[ icol ] = ! clazz.equals( Boolean.class );
-                if ( isCardinal[ icol ] ) {
-                    valuesets.set( icol, new HashSet<Object>() );
-                }
-                if ( hasQuant && isNumber[ icol ] ) {
-                    @SuppressWarnings("unchecked")
-                    Class<? extends Number> nclazz =
-                        (Class<? extends Number>) clazz;
-                    quantCalcs[ icol ] = QuantCalc.createInstance( nclazz, nr );
-                }
-            }
-
-            /* Iterate over the selected rows in the table. */
-            RowSequence rseq = new ProgressBarStarTable( dataModel_, progBar_ )
-                              .getRowSequence();
-            int cardlimit = getCardinalityLimit( dataModel_.getRowCount() );
-            IOException interruption = null;
-            long lrow = 0L;
-            ngoodrow = 0L;
-            for ( ; true; lrow++ ) {
-                long lrow1 = lrow;
-
-                /* A thread interruption may manifest itself here as an
-                 * exception (see ProgressBarStarTable).  If so, save the
-                 * exception and break out. */
-                try {
-                    if ( ! rseq.next() ) {
-                        break;
+        private SubsetStats calculate() throws IOException {
+
+            /* Find out which rows to use.  Evaluating the subset once up
+             * front means that only included rows need to be read. */
+            final long nrow = dataModel_.getRowCount();
+            final BitSet mask =
+                rset == RowSubset.ALL
+                    ? null
+                    : rset.getMask( Tables.checkedLongToInt( nrow ) );
+            long nsel = mask == null ? nrow : mask.cardinality();
+            final int cardlimit = getCardinalityLimit( nrow );
+            final boolean allCols =
+                icols.length == dataModel_.getColumnCount();
+
+            /* Process the rows a block at a time.  Within each block,
+             * rows are divided between threads. */
+            StatsAccumulator total = createAccumulator( cardlimit, nsel );
+            long blockRows = Math.max( MIN_BLOCK_ROWS, nrow / NBLOCK );
+            for ( long start = 0; start < nrow; start += blockRows ) {
+                final long start0 = start;
+                final long nr = Math.min( blockRows, nrow - start );
+                final long nsel0 = nsel;
+                RowCollector<StatsAccumulator> collector =
+                        new RowCollector<StatsAccumulator>() {
+                    public StatsAccumulator createAccumulator() {
+
+                        /* Any IOException would already have been thrown
+                         * when creating the total accumulator. */
+                        try {
+                            return StatsCalculator.this
+                                  .createAccumulator( cardlimit, nsel0 );
+                        }
+                        catch ( IOException e ) {
+                            throw new IllegalStateException( e );
+                        }
+                    }
+                    public StatsAccumulator combine( StatsAccumulator acc1,
+                                                     StatsAccumulator acc2 ) {
+                        acc1.add( acc2 );
+                        return acc1;
+                    }
+                    public void accumulateRows( RowSplittable rseq,
+                                                StatsAccumulator acc )
+                            throws IOException {
+                        accumulateBlock( rseq, start0, mask, allCols, acc );
                     }
+                };
+                RowSplittable rowRange =
+                    new RandomRowSplittable( ColumnStarTable
+                                            .makeTableWithRows( nr ) );
+                StatsAccumulator blockAcc;
+                try {
+                    blockAcc = RowRunner.DEFAULT
+                              .collect( collector, rowRange );
                 }
-                catch ( IOException e ) {
-                    interruption = e;
-                    break;
+                catch ( RuntimeException e ) {
+                    if ( e.getCause() instanceof OutOfMemoryError ) {
+                        throw (OutOfMemoryError) e.getCause();
+                    }
+                    throw (IOException) new IOException( e.toString() )
+                                       .initCause( e );
                 }
+                total.add( blockAcc );
 
-                if ( rset.isIncluded( lrow ) ) {
-                    ngoodrow++;
-                    Object[] row = rseq.getRow();
-
-                    /* Accumulate statistics as appropriate. */
-                    for ( int icol = 0; icol < ncol; icol++ ) {
-                        Object val = row[ icol ];
-                        boolean good;
-                        if ( val == null ) {
-                            good = false;
-                        }
-                        else {
-                            if ( isNumber[ icol ] ) {
-                                double dval = Double.NaN;
-                                if ( ! ( val instanceof Number ) ) {
-                                    System.err.println(
-                                        "Error in table data: not numeric at " +
-                                        lrow1 + "," + icol + "(" + val + ")" );
-                                    good = false;
-                                }
-                                else {
-                                    dval = ((Number) val).doubleValue();
-                                }
-                                if ( Double.isNaN( dval ) ) {
-                                    good = false;
-                                }
-                                else {
-                                    good = true;
-                                }
-                                if ( good ) {
-                                    if ( dval < dmins[ icol ] ) {
-                                        dmins[ icol ] = dval;
-                                        mins[ icol ] = val;
-                                        imins[ icol ] = lrow1;
-                                    }
-                                    if ( dval > dmaxs[ icol ] ) {
-                                        dmaxs[ icol ] = dval;
-                                        maxs[ icol ] = val;
-                                        imaxs[ icol ] = lrow1;
-                                    }
-                                    double s1 = dval;
-                                    double s2 = dval * s1;
-                                    double s3 = dval * s2;
-                                    double s4 = dval * s3;
-                                    sums[ icol ] += s1;
-                                    sum2s[ icol ] += s2;
-                                    sum3s[ icol ] += s3;
-                                    sum4s[ icol ] += s4;
-                                    if ( hasQuant ) {
-                                        quantCalcs[ icol ].acceptDatum( val );
-                                    }
-                                }
-                            }
-                            else if ( isBoolean[ icol ] ) {
-                                if ( ! ( val instanceof Boolean ) ) {
-                                    System.err.println(
-                                        "Error in table data: not boolean at " +
-                                        lrow1 + "," + icol + "(" + val + ")" );
-                                    good = false;
-                                }
-                                else {
-                                    good = true;
-                                }
-                                if ( good ) {
-                                    boolean bval =
-                                        ((Boolean) val).booleanValue();
-                                    if ( bval ) {
-                                        ntrues[ icol ]++;
-                                    }
-                                }
-                            }
-                            else if ( isComparable[ icol ] ) {
-                                if ( ! ( val instanceof Comparable ) ) {
-                                    System.err.println(
-                                        "Error in table data: not Comparable " +
-                                        " at " + lrow1 + "," + icol + "(" +
-                                        val + ")" );
-                                    good = false;
-                                }
-                                else {
-                                    good = true;
-                                }
-                                if ( good ) {
-                                    @SuppressWarnings("unchecked")
-                                    Comparable<Object> cval =
-                                        (Comparable<Object>) val;
-                                    if ( mins[ icol ] == null ) {
-                                        assert maxs[ icol ] == null;
-                                        mins[ icol ] = val;
-                                        maxs[ icol ] = val;
-                                        imins[ icol ] = lrow1;
-                                        imaxs[ icol ] = lrow1;
-                                    }
-                                    else {
-                                        try {
-                                            if ( cval.compareTo( mins[ icol ] )
-                                                 < 0 ) {
-                                                mins[ icol ] = val;
-                                                imins[ icol ] = lrow1;
-                                            }
-                                            else if ( cval
-                                                     .compareTo( maxs[ icol ] )
-                                                      > 0 ) {
-                                                maxs[ icol ] = val;
-                                                imaxs[ icol ] = lrow1;
-                                            }
-                                        }
-
-                                        /* It is possible for two objects in the
-                                         * same column both to be Comparable,
-                                         * but not to each other.  In this case,
-                                         * there does not exist a well-defined
-                                         * min/max for that column. */
-                                        catch ( ClassCastException e ) {
-                                            badcompars[ icol ] = true;
-                                        }
-                                    }
-                                }
-                            }
-                            else {
-                                good = true;
-                            }
-                            if ( good ) {
-                                ngoods[ icol ]++;
-                            }
-                        }
-
-                        /* Maybe calculate the cardinalities. */
-                        if ( good && isCardinal[ icol ] ) {
-                            valuesets.get( icol ).add( val );
-                            if ( valuesets.get( icol ).size() > cardlimit ) {
-                                isCardinal[ icol ] = false;
-                                valuesets.set( icol, null );
+                /* Report progress, and the results so far. */
+                if ( isInterrupted() ) {
+                    throw new IOException( "Interrupted" );
+                }
+                final int progress =
+                    (int) ( progBar_.getMaximum() * ( start + nr ) / nrow );
+                final SubsetStats partial =
+                    start + nr < nrow ? createStats( total, false ) : null;
+                SwingUtilities.invokeLater( new Runnable() {
+                    public void run() {
+                        if ( StatsCalculator.this == activeCalculator_ ) {
+                            progBar_.setValue( progress );
+                            if ( partial != null ) {
+                                displayStats( partial );
                             }
                         }
                     }
-                }
+                } );
             }
-            rseq.close();
-            long nrow = lrow;
+            return createStats( total, true );
+        }
 
-            /* Calculate the actual statistics based on the accumulated
-             * values.  We do this even if the summation was interrupted,
-             * since the partially-accumulated values may be of interest. */
-            for ( int icol = 0; icol < ncol; icol++ ) {
-                long ngood = ngoods[ icol ];
-                nbads[ icol ] = ngoodrow - ngood;
-                if ( ngood > 0 ) {
-                    if ( isNumber[ icol ] ) {
-                        double dcount = (double) ngood;
-                        double sum0 = dcount;
-                        double sum1 = sums[ icol ];
-                        double sum2 = sum2s[ icol ];
-                        double sum3 = sum3s[ icol ];
-                        double sum4 = sum4s[ icol ];
-                        double mean = sum1 / dcount;
-                        double nvar = ( sum2 - sum1 * sum1 / dcount );
-                        means[ icol ] = mean;
-                        popvars[ icol ] = nvar / dcount;
-                        popsdevs[ icol ] = Math.sqrt( popvars[ icol ] );
-                        if ( ngood > 1 ) {
-                            sampvars[ icol ] = nvar / ( dcount - 1 );
-                            sampsdevs[ icol ] = Math.sqrt( sampvars[ icol ] );
-                        }
-                        else {
-                            sampvars[ icol ] = Double.NaN;
-                            sampsdevs[ icol ] = Double.NaN;
-                        }
-                        skews[ icol ] =
-                            Math.sqrt( dcount ) / Math.pow( nvar, 1.5 ) *
-                            ( + 1 * sum3 
-                              - 3 * mean * sum2 
-                              + 3 * mean * mean * sum1
-                              - 1 * mean * mean * mean * sum0 );
-                        kurts[ icol ] =
-                            dcount / ( nvar * nvar ) *
-                            ( + 1 * sum4
-                              - 4 * mean * sum3
-                              + 6 * mean * mean * sum2
-                              - 4 * mean * mean * mean * sum1
-                              + 1 * mean * mean * mean * mean * sum0 ) - 3.0;
-                    }
-                    else if ( isBoolean[ icol ] ) {
-                        means[ icol ] = (double) ntrues[ icol ] / ngood;
-                    }
-                    if ( isCardinal[ icol ] ) {
-                        int card = valuesets.get( icol ).size();
-                        if ( card <= getCardinalityLimit( ngood ) ) {
-                            cards[ icol ] = card;
-                        }
-                        else {
-                            cards[ icol ] = 0;
-                            isCardinal[ icol ] = false;
-                            valuesets.set( icol, null );
+        /**
+         * Accumulates statistics from the rows of one block.
+         *
+         * @param  rseq  sequence over row offsets within the block
+         * @param  start  index of the first row in the block
+         * @param  mask   row inclusion mask, or null for all rows
+         * @param  allCols  true iff all columns are being calculated
+         * @param  acc   accumulator
+         */
+        private void accumulateBlock( RowSplittable rseq, long start,
+                                      BitSet mask, boolean allCols,
+                                      StatsAccumulator acc )
+                throws IOException {
+            ColAccumulator[] colAccs = acc.colAccs;
+            int nc = colAccs.length;
+            LongSupplier rowIndex = rseq.rowIndex();
+            int count = 0;
+            while ( rseq.next() ) {
+                if ( ++count % 1024 == 0 && isInterrupted() ) {
+                    throw new IOException( "Interrupted" );
+                }
+                long lrow = start + rowIndex.getAsLong();
+                if ( mask == null || mask.get( (int) lrow ) ) {
+                    acc.ngoodrow++;
+                    if ( allCols ) {
+                        Object[] row = dataModel_.getRow( lrow );
+                        for ( int ic = 0; ic < nc; ic++ ) {
+                            colAccs[ ic ].accept( row[ icols[ ic ] ], lrow );
                         }
                     }
-                    QuantCalc quantCalc = quantCalcs[ icol ];
-                    if ( quantCalc != null ) {
-                        quantCalc.ready();
-                        quantiles.set( icol, new HashMap<Double,Number>() );
-                        for ( Double qval : NAMED_QUANTILES.keySet() ) {
-                            quantiles.get( icol )
-                           .put( qval, quantCalc.getQuantile( qval ) );
+                    else {
+                        for ( int ic = 0; ic < nc; ic++ ) {
+                            colAccs[ ic ]
+                           .accept( dataModel_.getCell( lrow, icols[ ic ] ),
+                                    lrow );
                         }
-                        mads[ icol ] =
-                            hasMad
-                                ? QuantCalc
-                                 .calculateMedianAbsoluteDeviation( quantCalc )
-                                : Double.NaN;
-                        quantCalcs[ icol ] = null;
                     }
                 }
-                else {
-                    means[ icol ] = Double.NaN;
-                    popsdevs[ icol ] = Double.NaN;
-                    popvars[ icol ] = Double.NaN;
-                    sampvars[ icol ] = Double.NaN;
-                    sampsdevs[ icol ] = Double.NaN;
-                    mads[ icol ] = Double.NaN;
-                    skews[ icol ] = Double.NaN;
-                    kurts[ icol ] = Double.NaN;
-                }
-                if ( badcompars[ icol ] ) {
-                    mins[ icol ] = null;
-                    maxs[ icol ] = null;
-                    imins[ icol ] = -1L;
-                    imaxs[ icol ] = -1L;
+            }
+        }
+
+        /**
+         * Returns a new empty accumulator for this calculator's columns.
+         *
+         * @param  cardlimit  maximum cardinality to count
+         * @param  nsel   number of rows in the subset
+         * @return  new accumulator
+         */
+        private StatsAccumulator createAccumulator( int cardlimit,
+                                                    long nsel )
+                throws IOException {
+            int nc = icols.length;
+            ColAccumulator[] colAccs = new ColAccumulator[ nc ];
+            for ( int ic = 0; ic < nc; ic++ ) {
+                int icol = icols[ ic ];
+                Class<?> clazz = dataModel_.getColumnInfo( icol )
+                                           .getContentClass();
+                QuantCalc quantCalc = null;
+                if ( hasQuant && Number.class.isAssignableFrom( clazz ) ) {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Number> nclazz =
+                        (Class<? extends Number>) clazz;
+                    quantCalc =
+                        isApprox
+                            ? QuantCalc.createSketchInstance( nclazz,
+                                                          APPROX_QUANT_ERROR )
+                            : QuantCalc.createInstance( nclazz, nsel );
                 }
+                colAccs[ ic ] = new ColAccumulator( icol, cardlimit,
+                                                    quantCalc );
             }
+            return new StatsAccumulator( colAccs );
+        }
 
-            /* Re-throw any interruption-type exception we picked up. */
-            if ( interruption != null ) {
-                throw interruption;
+        /**
+         * Turns the contents of an accumulator into displayable statistics.
+         * Statistics for columns not calculated by this object are
+         * taken from the base statistics.
+         *
+         * @param  acc  accumulator
+         * @param  isFinal  true if all rows have been accumulated;
+         *                  quantiles are only calculated in this case
+         * @return  statistics
+         */
+        private SubsetStats createStats( StatsAccumulator acc,
+                                         boolean isFinal )
+                throws IOException {
+            int ncol = dataModel_.getColumnCount();
+            ColStats[] colStats = new ColStats[ ncol ];
+            if ( baseStats != null ) {
+                int nb = Math.min( ncol, baseStats.colStats.length );
+                System.arraycopy( baseStats.colStats, 0, colStats, 0, nb );
+            }
+            for ( int ic = 0; ic < icols.length; ic++ ) {
+                int icol = icols[ ic ];
+                if ( icol < ncol ) {
+                    colStats[ icol ] =
+                        acc.colAccs[ ic ]
+                       .createStats( acc.ngoodrow, isFinal && hasQuant,
+                                     isFinal && hasMad );
+                }
             }
+            return new SubsetStats( colStats, acc.ngoodrow );
         }
     }
 }
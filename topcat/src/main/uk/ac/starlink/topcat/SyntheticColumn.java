@@ -105,6 +105,18 @@ public class SyntheticColumn extends ColumnData {
               .getValue().toString();
     }
 
+    /**
+     * Indicates whether this column's values may depend on the current
+     * view of the table, such as its sort order or current subset.
+     *
+     * @return  true if values may change when the view changes
+     * @see  TopcatJELRowReader#isViewDependent
+     */
+    public boolean isViewDependent() {
+        return rowReader_ instanceof TopcatJELRowReader
+            && ((TopcatJELRowReader) rowReader_).isViewDependent();
+    }
+
     public Object readValue( long lrow ) throws IOException {
         try {
             return rowReader_.evaluateAtRow( compEx_, lrow );
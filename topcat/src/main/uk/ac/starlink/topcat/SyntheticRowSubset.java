@@ -4,8 +4,16 @@ import gnu.jel.CompilationException;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Evaluator;
 import gnu.jel.Library;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RandomRowSplittable;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.ttools.jel.RandomJELRowReader;
 
 /**
@@ -15,6 +23,16 @@ import uk.ac.starlink.ttools.jel.RandomJELRowReader;
  * <p>
  * The engine used for expression evaluation is the GNU 
  * Java Expressions Library (JEL).
+ * <p>
+ * Since evaluating the expression may be expensive, the result for
+ * the whole table can be calculated once, in parallel where possible,
+ * by calling {@link #getMask}.  The resulting mask is retained and
+ * used by {@link #isIncluded} until the expression is reset or
+ * {@link #clearMask} is called to indicate that the data on which
+ * it depends may have changed.
+ * Masks are not retained for expressions that depend on the current
+ * view of the table (see {@link #isViewDependent}),
+ * since those change with the sort order and current subset.
  *
  * @author   Mark Taylor (Starlink)
  * @see      <a href="http://galaxy.fzu.cz/JEL/">JEL</a>
@@ -24,6 +42,9 @@ public class SyntheticRowSubset extends RowSubset {
     private String expression_;
     private RandomJELRowReader rowReader_;
     private CompiledExpression compEx_;
+    private volatile Mask mask_;
+    private int maskGeneration_;
+    private final Object maskLock_ = new Object();
 
     private static Logger logger = Logger.getLogger( "uk.ac.starlink.topcat" );
 
@@ -51,9 +72,14 @@ public class SyntheticRowSubset extends RowSubset {
     public void setExpression( String expression, RandomJELRowReader rowReader )
             throws CompilationException {
         Library lib = TopcatJELUtils.getLibrary( rowReader, false );
-        compEx_ = Evaluator.compile( expression, lib, boolean.class );
-        expression_ = expression;
-        rowReader_ = rowReader;
+        CompiledExpression compEx =
+            Evaluator.compile( expression, lib, boolean.class );
+        synchronized ( this ) {
+            compEx_ = compEx;
+            expression_ = expression;
+            rowReader_ = rowReader;
+            clearMask();
+        }
     }
 
     /**
@@ -65,10 +91,159 @@ public class SyntheticRowSubset extends RowSubset {
         return expression_;
     }
 
+    /**
+     * Indicates whether this subset's expression may depend on the
+     * current view of the table, such as its sort order or current subset.
+     * Masks for such subsets are not cached.
+     *
+     * @return  true if inclusion may change when the view changes
+     * @see  TopcatJELRowReader#isViewDependent
+     */
+    public boolean isViewDependent() {
+        RandomJELRowReader rowReader = rowReader_;
+        return rowReader instanceof TopcatJELRowReader
+            && ((TopcatJELRowReader) rowReader).isViewDependent();
+    }
+
     public boolean isIncluded( long lrow ) {
+        Mask mask = mask_;
+        return mask != null && lrow < mask.nrow_
+             ? mask.bits_.get( (int) lrow )
+             : evaluate( rowReader_, compEx_, lrow );
+    }
+
+    /**
+     * Returns the inclusion mask for this subset.
+     * The first call evaluates the expression for every row,
+     * in parallel if the row reader permits it;
+     * the result is cached until the next call of {@link #clearMask},
+     * unless the expression depends on the view of the table.
+     * Concurrent callers wait for a single calculation.
+     *
+     * @param  nrow  number of rows in the table
+     * @return  inclusion mask; not to be modified
+     */
+    public BitSet getMask( int nrow ) {
+        synchronized ( maskLock_ ) {
+            final RandomJELRowReader rowReader;
+            final CompiledExpression compEx;
+            final String expression;
+            final int generation;
+            synchronized ( this ) {
+                Mask mask0 = mask_;
+                if ( mask0 != null && mask0.nrow_ >= nrow ) {
+                    return mask0.bits_;
+                }
+                rowReader = rowReader_;
+                compEx = compEx_;
+                expression = expression_;
+                generation = maskGeneration_;
+            }
+            BitSet mask = rowReader instanceof TopcatJELRowReader
+                 ? calculateParallelMask( ((TopcatJELRowReader) rowReader)
+                                         .getTopcatModel(), expression, nrow )
+                 : null;
+            if ( mask == null ) {
+                mask = new BitSet( nrow );
+                for ( int i = 0; i < nrow; i++ ) {
+                    if ( evaluate( rowReader, compEx, i ) ) {
+                        mask.set( i );
+                    }
+                }
+            }
+            if ( ! isViewDependent() ) {
+                synchronized ( this ) {
+                    if ( maskGeneration_ == generation ) {
+                        mask_ = new Mask( mask, nrow );
+                    }
+                }
+            }
+            return mask;
+        }
+    }
+
+    /**
+     * Discards any cached inclusion mask.
+     * This should be called if the data on which the expression
+     * depends may have changed.
+     */
+    public synchronized void clearMask() {
+        mask_ = null;
+        maskGeneration_++;
+    }
+
+    /**
+     * Evaluates this subset's expression for every row using a
+     * separate row reader for each thread.
+     *
+     * @param  tcModel  topcat model
+     * @param  expression  expression text
+     * @param  nrow  number of rows
+     * @return  inclusion mask, or null if it could not be calculated
+     */
+    private static BitSet calculateParallelMask( final TopcatModel tcModel,
+                                                 final String expression,
+                                                 int nrow ) {
+        RowCollector<MaskAccumulator> collector =
+                new RowCollector<MaskAccumulator>() {
+            public MaskAccumulator createAccumulator() {
+                RandomJELRowReader rdr = tcModel.createJELRowReader();
+                Library lib = TopcatJELUtils.getLibrary( rdr, false );
+                try {
+                    return new MaskAccumulator( rdr,
+                        Evaluator.compile( expression, lib, boolean.class ) );
+                }
+                catch ( CompilationException e ) {
+                    throw new IllegalStateException( e.getMessage(), e );
+                }
+            }
+            public MaskAccumulator combine( MaskAccumulator acc1,
+                                            MaskAccumulator acc2 ) {
+                acc1.mask_.or( acc2.mask_ );
+                return acc1;
+            }
+            public void accumulateRows( RowSplittable rseq,
+                                        MaskAccumulator acc )
+                    throws IOException {
+                LongSupplier rowIndex = rseq.rowIndex();
+                while ( rseq.next() ) {
+                    long lrow = rowIndex.getAsLong();
+                    if ( evaluate( acc.rowReader_, acc.compEx_, lrow ) ) {
+                        acc.mask_.set( (int) lrow );
+                    }
+                }
+            }
+        };
+        RowSplittable rowRange =
+            new RandomRowSplittable( ColumnStarTable
+                                    .makeTableWithRows( nrow ) );
+        try {
+            return RowRunner.DEFAULT.collect( collector, rowRange ).mask_;
+        }
+        catch ( IOException e ) {
+            logger.info( "Parallel subset evaluation failed: " + e );
+            return null;
+        }
+        catch ( RuntimeException e ) {
+            logger.info( "Parallel subset evaluation failed: " + e );
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates a compiled boolean expression at a given row.
+     * Evaluation errors count as false.
+     *
+     * @param  rowReader  row reader
+     * @param  compEx   compiled expression
+     * @param  lrow   row index
+     * @return  true iff the expression evaluates to true
+     */
+    private static boolean evaluate( RandomJELRowReader rowReader,
+                                     CompiledExpression compEx, long lrow ) {
         try {
             Boolean result =
-                (Boolean) rowReader_.evaluateAtRow( compEx_, lrow );
+                (Boolean) rowReader.evaluateAtRow( compEx, lrow );
             return result == null ? false : result.booleanValue();
         }
         catch ( RuntimeException e ) {
@@ -80,4 +255,46 @@ public class SyntheticRowSubset extends RowSubset {
             return false;
         }
     }
+
+    /**
+     * Immutable holder for a cached mask and the number of rows it covers,
+     * so that both can be read together.
+     */
+    private static class Mask {
+        final BitSet bits_;
+        final int nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  bits  inclusion flags
+         * @param  nrow  number of rows covered by <code>bits</code>
+         */
+        Mask( BitSet bits, int nrow ) {
+            bits_ = bits;
+            nrow_ = nrow;
+        }
+    }
+
+    /**
+     * Accumulator for parallel mask calculation.
+     */
+    private static class MaskAccumulator {
+        final RandomJELRowReader rowReader_;
+        final CompiledExpression compEx_;
+        final BitSet mask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rowReader  row reader private to this accumulator
+         * @param  compEx   expression compiled against rowReader
+         */
+        MaskAccumulator( RandomJELRowReader rowReader,
+                         CompiledExpression compEx ) {
+            rowReader_ = rowReader;
+            compEx_ = compEx;
+            mask_ = new BitSet();
+        }
+    }
 }
@@ -69,8 +69,12 @@ public class TableViewerWindow extends AuxWindow {
     private final ColumnSearchWindow searchWindow_;
     private final JLabel nvisLabel_;
     private final JLabel nselLabel_;
+    private final JLabel pageLabel_;
+    private final Action prevPageAct_;
+    private final Action nextPageAct_;
     private RowManager rowManager_;
     private int lastViewRowCount_;
+    private long lastPageStart_;
     private boolean selfHighlighting_;
 
     private static int MAX_COLUMN_WIDTH = 300;
@@ -142,6 +146,7 @@ public class TableViewerWindow extends AuxWindow {
         JComponent statusLine = Box.createHorizontalBox();
         nvisLabel_ = new JLabel();
         nselLabel_ = new JLabel();
+        pageLabel_ = new JLabel();
         statusLine.add( new JLabel( "Total: " ) );
         statusLine.add( new JLabel( TopcatUtils
                                    .formatLong( dataModel_.getRowCount() ) ) );
@@ -152,19 +157,45 @@ public class TableViewerWindow extends AuxWindow {
         statusLine.add( new JLabel( "Selected: " ) );
         statusLine.add( nselLabel_ );
         nselLabel_.setText( "0" );
+        statusLine.add( Box.createHorizontalStrut( 20 ) );
+        statusLine.add( pageLabel_ );
         statusLine.add( Box.createHorizontalGlue() );
         getMainArea().add( statusLine, BorderLayout.SOUTH );
 
+        /* Actions for moving between pages of a view too large to
+         * display in one JTable. */
+        prevPageAct_ = new BasicAction( "Previous Page", ResourceIcon.UP,
+                                        "Display the previous page of rows" ) {
+            public void actionPerformed( ActionEvent evt ) {
+                viewModel_.setPageStart( viewModel_.getPageStart()
+                                       - viewModel_.getPageSize() );
+            }
+        };
+        nextPageAct_ = new BasicAction( "Next Page", ResourceIcon.DOWN,
+                                        "Display the next page of rows" ) {
+            public void actionPerformed( ActionEvent evt ) {
+                viewModel_.setPageStart( viewModel_.getPageStart()
+                                       + viewModel_.getPageSize() );
+            }
+        };
+
         /* Configure for the current state of the apparent table and arrange
-         * for reconfiguration if the row count changes. */
+         * for reconfiguration if the row count or page changes. */
         lastViewRowCount_ = viewModel_.getRowCount();
+        lastPageStart_ = viewModel_.getPageStart();
         viewModel_.addTableModelListener( new TableModelListener() {
             public void tableChanged( TableModelEvent evt ) {
                 int nrow = viewModel_.getRowCount();
-                if ( nrow != lastViewRowCount_ ) {
+                long pageStart = viewModel_.getPageStart();
+                if ( nrow != lastViewRowCount_ ||
+                     pageStart != lastPageStart_ ) {
                     lastViewRowCount_ = nrow;
+                    lastPageStart_ = pageStart;
                     configureTable();
                 }
+                else {
+                    updatePageStatus();
+                }
             }
         } );
         configureTable();
@@ -295,6 +326,8 @@ public class TableViewerWindow extends AuxWindow {
         getToolBar().add( includeAct );
         getToolBar().add( excludeAct );
         getToolBar().add( searchAct );
+        getToolBar().add( prevPageAct_ );
+        getToolBar().add( nextPageAct_ );
         getToolBar().addSeparator();
 
         /* Add print action to the File menu. */
@@ -307,6 +340,8 @@ public class TableViewerWindow extends AuxWindow {
         rowMenu.add( includeAct );
         rowMenu.add( excludeAct );
         rowMenu.add( searchAct );
+        rowMenu.add( prevPageAct_ );
+        rowMenu.add( nextPageAct_ );
         final OptionsListModel<RowSubset> subsets = tcModel.getSubsets();
         Action applysubsetAct = new AbstractAction() {
             public void actionPerformed( ActionEvent evt ) {
@@ -392,13 +427,29 @@ public class TableViewerWindow extends AuxWindow {
         }
 
         /* Update row count. */
-        nvisLabel_.setText( TopcatUtils
-                           .formatLong( viewModel_.getRowCount() ) );
+        updatePageStatus();
 
         /* Sensible default position. */
         scroller_.getViewport().setViewPosition( new Point( 0, 0 ) );
     }
 
+    /**
+     * Updates the status line and page actions for the current state
+     * of the view model.
+     */
+    private void updatePageStatus() {
+        nvisLabel_.setText( TopcatUtils
+                           .formatLong( viewModel_.getViewRowCount() ) );
+        long npage = viewModel_.getPageCount();
+        long ipage = viewModel_.getPageStart() / viewModel_.getPageSize();
+        pageLabel_.setText( npage > 1
+                          ? "Page: " + TopcatUtils.formatLong( ipage + 1 )
+                            + " / " + TopcatUtils.formatLong( npage )
+                          : null );
+        prevPageAct_.setEnabled( ipage > 0 );
+        nextPageAct_.setEnabled( ipage + 1 < npage );
+    }
+
     /**
      * Displays a given row in a highlighted fashion.
      * 
@@ -426,18 +477,20 @@ public class TableViewerWindow extends AuxWindow {
         if ( viewModel_.getSubset().isIncluded( lrow ) ) {
         
             /* Get the view row corresponding to the requested table row. */
-            int viewRow = viewModel_.getViewRow( lrow );
+            long viewRow = viewModel_.getViewIndex( lrow );
             
             /* It can't be -1 since we've just checked it's in the current
              * subset. */
             assert viewRow >= 0;
-                
-            /* Set the JTable's selection to contain just this row. */
-            rowSelectionModel_.addSelectionInterval( viewRow, viewRow );
-        
+
             /* Arrange for the row to be visible in the middle of the
-             * scrollpane's viewport. */
+             * scrollpane's viewport.  This may change the current page,
+             * so do it before selecting. */
             scrollToRow( viewRow );
+
+            /* Set the JTable's selection to contain just this row. */
+            int pageRow = viewModel_.getViewRow( lrow );
+            rowSelectionModel_.addSelectionInterval( pageRow, pageRow );
         }   
         selfHighlighting_ = false;
     }
@@ -566,24 +619,20 @@ public class TableViewerWindow extends AuxWindow {
      * @return  new bit vector
      */
     private BitSet getSelectionMask( boolean isInclude ) {
-        int nrow = (int) dataModel_.getRowCount();
+        int nrow = Tables.checkedLongToInt( dataModel_.getRowCount() );
         int imin = rowSelectionModel_.getMinSelectionIndex();
         int imax = rowSelectionModel_.getMaxSelectionIndex();
-        int[] rowMap = viewModel_.getRowMap();
         BitSet selectMask = new BitSet( nrow );
         for ( int i = imin; i <= imax; i++ ) {
-            if ( rowSelectionModel_.isSelectedIndex( i ) ) {
-                selectMask.set( rowMap == null ? i : rowMap[ i ] );
+            if ( i >= 0 && rowSelectionModel_.isSelectedIndex( i ) ) {
+                selectMask.set( (int) viewModel_.getBaseRow( i ) );
             }
         }
         if ( ! isInclude ) {
             selectMask.flip( 0, nrow );
-            if ( rowMap != null && rowMap.length != nrow ) {
-                BitSet visibleMask = new BitSet( nrow );
-                for ( int i = 0; i < rowMap.length; i++ ) {
-                    visibleMask.set( rowMap[ i ] );
-                }
-                selectMask.and( visibleMask );
+            RowSubset rset = viewModel_.getSubset();
+            if ( rset != RowSubset.ALL ) {
+                selectMask.and( rset.getMask( nrow ) );
             }
         }
         return selectMask;
@@ -591,12 +640,16 @@ public class TableViewerWindow extends AuxWindow {
 
     /**
      * Scrolls the JTable so that the given row is visible in the centre
-     * of the window.
+     * of the window, changing the displayed page if necessary.
      *
-     * @param   viewRow  row index in the view model
+     * @param   viewRow  row index in the whole of the view model
      */
-    public void scrollToRow( int viewRow ) {
-        rowManager_.scrollToRow( viewRow );
+    public void scrollToRow( long viewRow ) {
+        if ( viewRow >= 0 ) {
+            viewModel_.setPageStart( viewRow );
+            rowManager_.scrollToRow( (int) ( viewRow
+                                           - viewModel_.getPageStart() ) );
+        }
     }
 
     /**
@@ -649,7 +702,7 @@ public class TableViewerWindow extends AuxWindow {
 
     /**
      * Sets the row selection for this window's JTable to correspond to a
-     * given row subset.
+     * given row subset.  Only rows on the current page are affected.
      *
      * @param   rset  row subset
      */
@@ -657,10 +710,8 @@ public class TableViewerWindow extends AuxWindow {
         rowSelectionModel_.setValueIsAdjusting( true );
         rowSelectionModel_.clearSelection();
         int nrow = viewModel_.getRowCount();
-        int[] rowMap = viewModel_.getRowMap();
         for ( int irow = 0; irow < nrow; irow++ ) {
-            long jrow = rowMap == null ? (long) irow
-                                       : (long) rowMap[ irow ];
+            long jrow = viewModel_.getBaseRow( irow );
             if ( rset.isIncluded( jrow ) ) {
                 rowSelectionModel_.addSelectionInterval( irow, irow );
             }
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 import javax.swing.table.TableColumnModel;
+import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.ttools.jel.Constant;
@@ -52,6 +53,7 @@ public class TopcatJELRowReader extends RandomJELRowReader {
     private final TopcatModel tcModel_;
     private final List<RowSubset> rdrSubsets_;
     private final Set<Integer> translatedSubsetIds_;
+    private boolean isViewDependent_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.topcat" );
 
@@ -163,6 +165,40 @@ public class TopcatJELRowReader extends RandomJELRowReader {
         return ids;
     }
 
+    /**
+     * Indicates whether any JEL expression which this RowReader has been
+     * used to compile may depend on the current view of the table,
+     * that is its sort order, current subset or column visibility.
+     * That is the case if it references one of the apparent table
+     * tokens (<code>$index0</code>, <code>$nrow0</code>,
+     * <code>$ncol0</code>), or a row subset or synthetic column
+     * that itself depends on the view.
+     *
+     * @return  true if compiled expressions may depend on the view
+     */
+    public boolean isViewDependent() {
+        if ( isViewDependent_ ) {
+            return true;
+        }
+        for ( RowSubset rset : rdrSubsets_ ) {
+            if ( rset instanceof SyntheticRowSubset &&
+                 ((SyntheticRowSubset) rset).isViewDependent() ) {
+                return true;
+            }
+        }
+        PlasticStarTable dataModel = tcModel_.getDataModel();
+        for ( int icol : getTranslatedColumns() ) {
+            if ( icol < dataModel.getColumnCount() ) {
+                ColumnData cdata = dataModel.getColumnData( icol );
+                if ( cdata instanceof SyntheticColumn &&
+                     ((SyntheticColumn) cdata).isViewDependent() ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns the actual subset value for the current row and a given
      * column.
@@ -296,29 +332,32 @@ public class TopcatJELRowReader extends RandomJELRowReader {
         /* Add some specials based on the apparent table. */
         if ( name.equalsIgnoreCase( "$index0" ) ||
              name.equals( "$00" ) ) {
+            isViewDependent_ = true;
             final ViewerTableModel viewModel = tcModel_.getViewModel();
             return new Constant() {
                 public Class<?> getContentClass() {
-                    return Integer.class;
+                    return Long.class;
                 }
                 public Object getValue() {
-                    int jrow = viewModel.getViewRow( getCurrentRow() );
-                    return jrow >= 0 ? new Integer( 1 + jrow ) : null;
+                    long jrow = viewModel.getViewIndex( getCurrentRow() );
+                    return jrow >= 0 ? new Long( 1 + jrow ) : null;
                 }
             };
         }
         else if ( name.equalsIgnoreCase( "$nrow0" ) ) {
+            isViewDependent_ = true;
             final ViewerTableModel viewModel = tcModel_.getViewModel();
             return new Constant() {
                 public Class<?> getContentClass() {
-                    return Integer.class;
+                    return Long.class;
                 }
                 public Object getValue() {
-                    return new Integer( viewModel.getRowCount() );
+                    return new Long( viewModel.getViewRowCount() );
                 }
             };
         }
         else if ( name.equalsIgnoreCase( "$ncol0" ) ) {
+            isViewDependent_ = true;
             final TableColumnModel colModel = tcModel_.getColumnModel();
             return new Constant() {
                 public Class<?> getContentClass() {
@@ -8,9 +8,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,19 +31,23 @@ import javax.swing.JTextField;
 import javax.swing.JToggleButton;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableColumnModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.ShapeIterator;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableBuilder;
+import uk.ac.starlink.table.TableSorter;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.gui.StarTableColumn;
 import uk.ac.starlink.topcat.activate.ActivationMeta;
@@ -219,6 +223,14 @@ public class TopcatModel {
 
         /* Set up the listeners. */
         listeners_ = new ArrayList<TopcatListener>();
+
+        /* Arrange for cached subset masks to be discarded when the data
+         * on which they may depend changes. */
+        MaskInvalidator maskInvalidator = new MaskInvalidator();
+        maskInvalidator.recordExpressions();
+        listeners_.add( maskInvalidator );
+        viewModel_.addTableModelListener( maskInvalidator );
+        subsets_.addListDataListener( maskInvalidator );
     }
 
     /**
@@ -820,14 +832,17 @@ public class TopcatModel {
      * Where this can't be done, a warning is issued.
      */
     public void recompileSubsets() {
-        RandomJELRowReader jeller = createJELRowReader();
         int nset = subsets_.size();
         for ( int is = 0; is < nset; is++ ) {
             RowSubset rs = subsets_.get( is );
             if ( rs instanceof SyntheticRowSubset ) {
                 SyntheticRowSubset ss = (SyntheticRowSubset) rs;
                 try {
-                    ss.setExpression( ss.getExpression(), jeller );
+
+                    /* Use a separate reader for each subset, so that
+                     * view dependence is tracked per subset. */
+                    ss.setExpression( ss.getExpression(),
+                                      createJELRowReader() );
                 }
                 catch ( CompilationException e ) {
                     logger_.warning( "Can't recompile expression "
@@ -838,6 +853,19 @@ public class TopcatModel {
         }
     }
 
+    /**
+     * Discards the cached inclusion masks of synthetic subsets.
+     *
+     * @param  except  subset whose mask is retained, or null
+     */
+    private void clearSubsetMasks( RowSubset except ) {
+        for ( RowSubset rset : subsets_ ) {
+            if ( rset instanceof SyntheticRowSubset && rset != except ) {
+                ((SyntheticRowSubset) rset).clearMask();
+            }
+        }
+    }
+
     /**
      * Adds a new table parameter to the table.
      *
@@ -911,52 +939,13 @@ public class TopcatModel {
      *               this viewer's model  
      * @param  ascending  true for ascending sort, false for descending
      */
-    private int[] getSortOrder( int icol, final boolean ascending )
+    private int[] getSortOrder( int icol, boolean ascending )
             throws IOException { 
-        final int sense = ascending ? 1 : -1;
-         
-        /* Define a little class for objects being sorted. */
-        class Item implements Comparable<Item> { 
-            int rank;
-            Comparable<?> value;
-            public int compareTo( Item other ) {
-                Comparable<?> oval = other.value;
-                if ( value != null && oval != null ) {
-                    @SuppressWarnings("unchecked")
-                    int cmp = ((Comparable<Object>) value).compareTo( oval ); 
-                    return sense * cmp;
-                } 
-                else if ( value == null && oval == null ) {
-                    return 0;
-                }
-                else {
-                    return sense * ( ( value == null ) ? 1 : -1 );
-                }
-            }
-        }
-
-        /* Construct a list of all the elements in the given column. */
-        int nrow = AbstractStarTable
-                  .checkedLongToInt( dataModel_.getRowCount() );
-        ColumnData coldata = dataModel_.getColumnData( icol );
-        Item[] items = new Item[ nrow ];
-        for ( int i = 0; i < nrow; i++ ) {
-            Item item = new Item();
-            item.rank = i;
-            item.value = (Comparable<?>) coldata.readValue( (long) i );
-            items[ i ] = item;
-        }
-
-        /* Sort the list on the ordering of the items. */
-        Arrays.sort( items );
-
-        /* Construct and return a list of reordered ranks from the
-         * sorted array. */
-        int[] rowMap = new int[ nrow ];
-        for ( int i = 0; i < nrow; i++ ) {
-            rowMap[ i ] = items[ i ].rank;
-        }
-        return rowMap;
+        return TableSorter.getSortedIndices( dataModel_, new int[] { icol },
+                                             ascending, true,
+                                             RowRunner.DEFAULT,
+                                             StoragePolicy
+                                            .getDefaultPolicy() );
     }
 
     /**
@@ -1093,8 +1082,11 @@ public class TopcatModel {
             if ( ascending != lastAscending_ ) {
 
                 /* If the table view has a current (non-null) sort order, 
-                 * reverse it in place. */
-                int[] rowMap = viewModel_.getRowMap();
+                 * reverse it in place.  Sort orders are not available
+                 * for tables too large to be indexed by an int. */
+                int[] rowMap = dataModel_.getRowCount() <= Integer.MAX_VALUE
+                             ? viewModel_.getRowMap()
+                             : null;
                 if ( rowMap != null ) {
                     for ( int i = 0, j = rowMap.length - 1; i < j; i++, j-- ) {
                         int c = rowMap[ i ];
@@ -1254,7 +1246,8 @@ public class TopcatModel {
 
             /* As a side-effect we have calculated the number of rows in 
              * the subset, so update the count model. */
-            subsetCounts_.put( rset, new Long( viewModel_.getRowCount() ) );
+            subsetCounts_.put( rset,
+                              new Long( viewModel_.getViewRowCount() ) );
             int irset = subsets_.indexOf( rset );
             if ( irset >= 0 ) {
                 subsets_.fireContentsChanged( irset, irset );
@@ -1294,4 +1287,105 @@ public class TopcatModel {
             }
         }
     }
+
+    /**
+     * Listens for changes which may affect the content of synthetic subsets,
+     * and discards their cached masks accordingly.
+     * These are changes to cell values, table parameters, or the list
+     * or definitions of subsets to which subset expressions may refer.
+     */
+    private class MaskInvalidator
+            implements TopcatListener, TableModelListener, ListDataListener {
+
+        /** Expressions of known subsets, keyed by subset object. */
+        private final Map<RowSubset,String> exprs_ =
+            new IdentityHashMap<RowSubset,String>();
+
+        public void modelChanged( TopcatEvent evt ) {
+            switch ( evt.getCode() ) {
+                case TopcatEvent.PARAMETERS:
+                case TopcatEvent.PARAMETER_VALUE:
+                    clearSubsetMasks( null );
+                    break;
+                case TopcatEvent.SHOW_SUBSET:
+                    clearSubsetMasks( (RowSubset) evt.getDatum() );
+                    break;
+            }
+        }
+        public void tableChanged( TableModelEvent evt ) {
+
+            /* Changes of view subset, order or page are signalled as
+             * whole-table updates, but do not affect the data.
+             * Any other update, including whole-table ones fired
+             * when synthetic columns are edited, may do. */
+            if ( evt.getType() == TableModelEvent.UPDATE &&
+                 ! viewModel_.isViewChanging() ) {
+                clearSubsetMasks( null );
+            }
+        }
+        public void intervalRemoved( ListDataEvent evt ) {
+            clearSubsetMasks( null );
+            recordExpressions();
+        }
+        public void intervalAdded( ListDataEvent evt ) {
+            recordExpressions();
+        }
+        public void contentsChanged( ListDataEvent evt ) {
+
+            /* A subset may have been redefined in place, which can
+             * affect any other subset that refers to it.
+             * Contents change events are also fired just to update
+             * subset counts, so only clear the masks if some subset
+             * in the changed range is new or has a new expression. */
+            int n = subsets_.size();
+            int i0 = Math.max( 0, Math.min( evt.getIndex0(),
+                                            evt.getIndex1() ) );
+            int i1 = Math.max( evt.getIndex0(), evt.getIndex1() );
+            if ( i1 < 0 || i1 >= n ) {
+                i1 = n - 1;
+            }
+            boolean changed = false;
+            for ( int i = i0; i <= i1; i++ ) {
+                RowSubset rset = subsets_.get( i );
+                if ( ! exprs_.containsKey( rset ) ||
+                     ! equals( exprs_.get( rset ), getExpression( rset ) ) ) {
+                    changed = true;
+                }
+            }
+            if ( changed ) {
+                clearSubsetMasks( null );
+                recordExpressions();
+            }
+        }
+
+        /**
+         * Records the current definitions of all the subsets,
+         * for later comparison.
+         */
+        void recordExpressions() {
+            exprs_.clear();
+            for ( RowSubset rset : subsets_ ) {
+                exprs_.put( rset, getExpression( rset ) );
+            }
+        }
+
+        /**
+         * Returns the expression defining a subset, if it has one.
+         *
+         * @param  rset  subset
+         * @return  expression, or null
+         */
+        private String getExpression( RowSubset rset ) {
+            return rset instanceof SyntheticRowSubset
+                 ? ((SyntheticRowSubset) rset).getExpression()
+                 : null;
+        }
+
+        /**
+         * Null-safe equality test.
+         */
+        private boolean equals( String s1, String s2 ) {
+            return s1 == null ? s2 == null : s1.equals( s2 );
+        }
+    }
 }
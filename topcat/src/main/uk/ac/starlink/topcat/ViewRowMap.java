@@ -0,0 +1,327 @@
+package uk.ac.starlink.topcat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Maps between row indices in a table view and row indices in its
+ * base table.
+ * Implementations are compact: a subset in natural order is
+ * represented by a bitmap with a rank index rather than by an
+ * explicit array of row indices, and reverse lookups are supported
+ * without scanning.
+ * Row indices are longs throughout, so that views of tables with
+ * more than 2^31 rows can be represented; explicit int arrays are
+ * only assembled on request.
+ *
+ * @since    18 Oct 2026
+ */
+abstract class ViewRowMap {
+
+    /**
+     * Returns the number of rows in the view.
+     *
+     * @return  view row count
+     */
+    public abstract long getRowCount();
+
+    /**
+     * Returns the base table row corresponding to a view row.
+     *
+     * @param  irow  view row index
+     * @return  base table row index
+     */
+    public abstract long getBaseRow( long irow );
+
+    /**
+     * Returns the view row corresponding to a base table row.
+     *
+     * @param  lrow  base table row index
+     * @return  view row index, or -1 if the base row is not in the view
+     */
+    public abstract long getViewRow( long lrow );
+
+    /**
+     * Returns the mapping from view rows to base table rows as an
+     * explicit array.
+     *
+     * @return  new or cached array; callers must not modify it
+     * @throws  IllegalStateException  if the view or base table is too
+     *          large to be represented by an int array
+     */
+    public abstract int[] toIntArray();
+
+    /**
+     * Returns a row map formed by combining an ordering map and a subset.
+     *
+     * <p>Sort orders are supplied as int arrays, since that is what
+     * the table sorting code produces, so a non-null order implies
+     * that the base table has no more than 2^31 rows.
+     * Natural-order views have no such restriction.
+     *
+     * @param   order  ordering map (may be null to indicate natural order)
+     * @param   rset   row subset
+     * @param   nrow   the number of rows in the base table
+     * @return  row map, or null to indicate a unit mapping
+     */
+    public static ViewRowMap createRowMap( int[] order, RowSubset rset,
+                                           long nrow ) {
+
+        /* In the case of a trivial subset (all rows included) the row map
+         * is just the same as the sort order (possibly null). */
+        if ( rset == RowSubset.ALL ) {
+            return order == null ? null : new ArrayRowMap( order, nrow );
+        }
+
+        /* Otherwise find out which rows are included. */
+        long[] words = getMaskWords( rset, nrow );
+
+        /* In natural order, a bitmap is all that is required. */
+        if ( order == null ) {
+            return new BitsRowMap( words, nrow );
+        }
+
+        /* Otherwise assemble the list of row indices in sort order. */
+        else {
+            int n = 0;
+            for ( int iw = 0; iw < words.length; iw++ ) {
+                n += Long.bitCount( words[ iw ] );
+            }
+            int[] rmap = new int[ n ];
+            int j = 0;
+            for ( int i = 0; i < order.length; i++ ) {
+                int k = order[ i ];
+                int iw = k >>> 6;
+                if ( iw < words.length &&
+                     ( words[ iw ] & ( 1L << k ) ) != 0 ) {
+                    rmap[ j++ ] = k;
+                }
+            }
+            assert j == rmap.length;
+            return new ArrayRowMap( rmap, nrow );
+        }
+    }
+
+    /**
+     * Returns a bitmap of the rows included in a subset,
+     * packed 64 rows to a word in the same way as
+     * {@link BitSet#toLongArray}.
+     * Up to 2^31 rows the subset's (possibly cached) mask is used;
+     * beyond that the subset is interrogated row by row.
+     *
+     * @param  rset  row subset
+     * @param  nrow  number of rows in the base table
+     * @return  bitmap words, with no bits set at or beyond nrow
+     */
+    private static long[] getMaskWords( RowSubset rset, long nrow ) {
+        if ( nrow <= Integer.MAX_VALUE ) {
+            int nr = (int) nrow;
+            BitSet mask = rset.getMask( nr );
+            if ( mask.length() > nr ) {
+                mask = mask.get( 0, nr );
+            }
+            return mask.toLongArray();
+        }
+        else {
+            long[] words = new long[ (int) ( ( nrow + 63 ) >>> 6 ) ];
+            for ( long lrow = 0; lrow < nrow; lrow++ ) {
+                if ( rset.isIncluded( lrow ) ) {
+                    words[ (int) ( lrow >>> 6 ) ] |= 1L << lrow;
+                }
+            }
+            return words;
+        }
+    }
+
+    /**
+     * Returns a row map based on an explicit array.
+     *
+     * @param  rowMap  mapping from view rows to base table rows
+     * @param  nrow  number of rows in the base table
+     * @return  row map
+     */
+    public static ViewRowMap createRowMap( int[] rowMap, long nrow ) {
+        return new ArrayRowMap( rowMap, nrow );
+    }
+
+    /**
+     * Row map based on an explicit array of base row indices.
+     * The reverse map is only constructed if it is required.
+     */
+    private static class ArrayRowMap extends ViewRowMap {
+        private final int[] rowMap_;
+        private final long nrow_;
+        private int[] inverse_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rowMap  mapping from view rows to base table rows
+         * @param  nrow  number of rows in the base table
+         */
+        ArrayRowMap( int[] rowMap, long nrow ) {
+            rowMap_ = rowMap;
+            nrow_ = nrow;
+        }
+
+        public long getRowCount() {
+            return rowMap_.length;
+        }
+
+        public long getBaseRow( long irow ) {
+            return rowMap_[ (int) irow ];
+        }
+
+        public long getViewRow( long lrow ) {
+            if ( lrow < 0 || lrow >= nrow_ || lrow >= Integer.MAX_VALUE ) {
+                return -1;
+            }
+            return getInverse()[ (int) lrow ];
+        }
+
+        public int[] toIntArray() {
+            return rowMap_;
+        }
+
+        /**
+         * Returns the lazily constructed reverse map.
+         *
+         * @return  map from base rows to view rows, -1 for absent rows
+         */
+        private synchronized int[] getInverse() {
+            if ( inverse_ == null ) {
+                int[] inverse =
+                    new int[ (int) Math.min( nrow_, Integer.MAX_VALUE ) ];
+                Arrays.fill( inverse, -1 );
+                for ( int i = rowMap_.length - 1; i >= 0; i-- ) {
+                    int k = rowMap_[ i ];
+                    if ( k >= 0 && k < inverse.length ) {
+                        inverse[ k ] = i;
+                    }
+                }
+                inverse_ = inverse;
+            }
+            return inverse_;
+        }
+    }
+
+    /**
+     * Row map representing a subset of rows in natural order.
+     * It stores a bitmap of included rows, along with the cumulative
+     * count of included rows at the start of each block of the bitmap,
+     * so that rank and select operations take time independent of
+     * the table size.
+     */
+    private static class BitsRowMap extends ViewRowMap {
+        private final long[] words_;
+        private final long nrow_;
+        private final long[] blockCounts_;
+        private final long count_;
+        private int[] array_;
+
+        /** Number of bitmap words in each indexed block. */
+        private static final int BLOCK_WORDS = 64;
+
+        /**
+         * Constructor.
+         *
+         * @param  words  bitmap words flagging included rows
+         * @param  nrow  number of rows in the base table
+         */
+        BitsRowMap( long[] words, long nrow ) {
+            nrow_ = nrow;
+            words_ = words;
+            int nblock = ( words_.length + BLOCK_WORDS - 1 ) / BLOCK_WORDS;
+            blockCounts_ = new long[ nblock + 1 ];
+            long count = 0;
+            for ( int ib = 0; ib < nblock; ib++ ) {
+                blockCounts_[ ib ] = count;
+                int iw1 =
+                    Math.min( words_.length, ( ib + 1 ) * BLOCK_WORDS );
+                for ( int iw = ib * BLOCK_WORDS; iw < iw1; iw++ ) {
+                    count += Long.bitCount( words_[ iw ] );
+                }
+            }
+            blockCounts_[ nblock ] = count;
+            count_ = count;
+        }
+
+        public long getRowCount() {
+            return count_;
+        }
+
+        public long getBaseRow( long irow ) {
+            if ( irow < 0 || irow >= count_ ) {
+                throw new IndexOutOfBoundsException( "Row " + irow
+                                                   + " not in view" );
+            }
+
+            /* Find the block containing the irow'th set bit. */
+            int lo = 0;
+            int hi = blockCounts_.length - 1;
+            while ( hi - lo > 1 ) {
+                int mid = ( lo + hi ) >>> 1;
+                if ( blockCounts_[ mid ] <= irow ) {
+                    lo = mid;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+
+            /* Find the word, then the bit, within the block. */
+            long remain = irow - blockCounts_[ lo ];
+            int iw = lo * BLOCK_WORDS;
+            while ( true ) {
+                long word = words_[ iw ];
+                int nw = Long.bitCount( word );
+                if ( remain < nw ) {
+                    for ( int i = 0; i < remain; i++ ) {
+                        word &= word - 1;
+                    }
+                    return iw * 64L + Long.numberOfTrailingZeros( word );
+                }
+                remain -= nw;
+                iw++;
+            }
+        }
+
+        public long getViewRow( long lrow ) {
+            if ( lrow < 0 || lrow >= nrow_ ) {
+                return -1;
+            }
+            int iw = (int) ( lrow >>> 6 );
+            if ( iw >= words_.length ||
+                 ( words_[ iw ] & ( 1L << lrow ) ) == 0 ) {
+                return -1;
+            }
+            int ib = iw / BLOCK_WORDS;
+            long rank = blockCounts_[ ib ];
+            for ( int jw = ib * BLOCK_WORDS; jw < iw; jw++ ) {
+                rank += Long.bitCount( words_[ jw ] );
+            }
+            rank += Long.bitCount( words_[ iw ] & ( ( 1L << lrow ) - 1 ) );
+            return rank;
+        }
+
+        public synchronized int[] toIntArray() {
+            if ( array_ == null ) {
+                if ( nrow_ > Integer.MAX_VALUE ) {
+                    throw new IllegalStateException( "Too many rows ("
+                                                   + nrow_ + ")" );
+                }
+                int[] array = new int[ (int) count_ ];
+                int j = 0;
+                for ( int iw = 0; iw < words_.length; iw++ ) {
+                    for ( long word = words_[ iw ]; word != 0;
+                          word &= word - 1 ) {
+                        array[ j++ ] =
+                            iw * 64 + Long.numberOfTrailingZeros( word );
+                    }
+                }
+                array_ = array;
+            }
+            return array_;
+        }
+    }
+}
@@ -4,12 +4,12 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.logging.Logger;
 import javax.swing.table.AbstractTableModel;
-import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.EditableColumn;
 import uk.ac.starlink.table.RowPermutedStarTable;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 
 /**
  * A <tt>TableModel</tt> which is based on a <tt>StarTable</tt> but 
@@ -17,6 +17,14 @@ import uk.ac.starlink.table.StarTable;
  * be visible.  This class is used as the <tt>TableModel</tt> for the
  * <tt>TableViewer</tt> widget.
  *
+ * <p>Since the <tt>TableModel</tt> interface can only address 2^31 rows,
+ * the view is divided into pages of at most {@link #PAGE_SIZE} rows,
+ * and the <tt>TableModel</tt> methods present only the rows of the
+ * current page.  Tables smaller than that have a single page,
+ * so the paging is invisible.
+ * Methods with <tt>long</tt> view indices refer to the whole view,
+ * not just the current page.
+ *
  * @author   Mark Taylor (Starlink)
  */
 public class ViewerTableModel extends AbstractTableModel {
@@ -24,7 +32,13 @@ public class ViewerTableModel extends AbstractTableModel {
     private PlasticStarTable startable_;
     private RowSubset rset_ = RowSubset.ALL;
     private int[] order_;
-    private int[] rowMap_;
+    private ViewRowMap rowMap_;
+    private final int pageSize_;
+    private long pageStart_;
+    private boolean isViewChanging_;
+
+    /** Maximum number of rows on a page of the view. */
+    public static final int PAGE_SIZE = 1 << 30;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.topcat" );
@@ -39,19 +53,24 @@ public class ViewerTableModel extends AbstractTableModel {
      *          returns <tt>false</tt>
      */
     public ViewerTableModel( PlasticStarTable startable ) {
+        this( startable, PAGE_SIZE );
+    }
+
+    /**
+     * Constructs a <tt>ViewerTableModel</tt> with a given page size.
+     *
+     * @param   startable  the <tt>StarTable</tt> object
+     * @param   pageSize   maximum number of rows on a page
+     */
+    ViewerTableModel( PlasticStarTable startable, int pageSize ) {
         startable_ = startable;
+        pageSize_ = pageSize;
 
-        /* Ensure that we have a random access table to use, and that it
-         * is not unfeasibly large. */
+        /* Ensure that we have a random access table to use. */
         if ( ! startable.isRandom() ) {
             throw new IllegalArgumentException(
                 "Table " + startable + " does not have random access" );
         }
-        if ( startable.getRowCount() > Integer.MAX_VALUE ) {
-            throw new IllegalArgumentException(
-                "Table has too many rows (" + startable.getRowCount() +
-                " > Integer.MAX_VALUE)" );
-        }
     }
 
     /**
@@ -69,8 +88,9 @@ public class ViewerTableModel extends AbstractTableModel {
                 + " (" + order.length + " != " + startable_.getRowCount() );
         }
         order_ = order;
-        setRowMap( getRowMap( order, rset_, getTableRowCount() ) );
-        fireTableDataChanged();
+        rowMap_ = ViewRowMap.createRowMap( order, rset_, getTableRowCount() );
+        clampPageStart();
+        fireViewChanged();
     }
 
     /**
@@ -82,9 +102,10 @@ public class ViewerTableModel extends AbstractTableModel {
      *          rows to be viewed
      */
     public void setSubset( RowSubset rset ) {
-        rowMap_ = getRowMap( order_, rset, getTableRowCount() );
+        rowMap_ = ViewRowMap.createRowMap( order_, rset, getTableRowCount() );
         rset_ = rset;
-        fireTableDataChanged();
+        clampPageStart();
+        fireViewChanged();
     }
 
     /**
@@ -100,10 +121,19 @@ public class ViewerTableModel extends AbstractTableModel {
      * Returns the mapping from row index visible in this model to 
      * row index in the base table.
      *
+     * <p>The view does not necessarily store its mapping in this form,
+     * so this method may be expensive the first time it is called
+     * following a change to the view.
+     * Callers wanting only to translate individual row indices
+     * should use {@link #getBaseRow} and {@link #getViewIndex} instead.
+     * The whole view is covered, not just the current page.
+     *
      * @return  row mapping; may be <tt>null</tt> to indicate a unit map
+     * @throws  IllegalStateException  if the view is too large to be
+     *          represented as an int array
      */
     public int[] getRowMap() {
-        return rowMap_;
+        return rowMap_ == null ? null : rowMap_.toIntArray();
     }
 
     /**
@@ -112,12 +142,12 @@ public class ViewerTableModel extends AbstractTableModel {
      * {@link #getRowMap rowMap} if it is non-null, or an iterator
      * over all the rows if it is null.
      * The number of elements iterated over is given by
-     * {@link #getRowCount}.
+     * {@link #getViewRowCount}.
      *
      * @return  row index iterator
      */
     public Iterator<Long> getRowIndexIterator() {
-        final int[] rowMap = rowMap_;
+        final ViewRowMap rowMap = rowMap_;
         if ( rowMap == null ) {
             final long n = startable_.getRowCount();
             return new Iterator<Long>() {
@@ -134,14 +164,14 @@ public class ViewerTableModel extends AbstractTableModel {
             };
         }
         else {
-            final long n = rowMap.length;
+            final long n = rowMap.getRowCount();
             return new Iterator<Long>() {
-                private int kx_ = -1;
+                private long kx_ = -1;
                 public boolean hasNext() {
                     return kx_ < n - 1;
                 }
                 public Long next() {
-                    return new Long( rowMap[ ++kx_ ] );
+                    return new Long( rowMap.getBaseRow( ++kx_ ) );
                 }
                 public void remove() {
                     throw new UnsupportedOperationException();
@@ -158,97 +188,138 @@ public class ViewerTableModel extends AbstractTableModel {
      *                 may be <tt>null</tt> to indicate a unit map
      */
     public void setRowMap( int[] rowMap ) {
-        rowMap_ = rowMap;
-        fireTableDataChanged();
+        rowMap_ = rowMap == null
+                ? null
+                : ViewRowMap.createRowMap( rowMap, getTableRowCount() );
+        clampPageStart();
+        fireViewChanged();
+    }
+
+    public int getColumnCount() {
+        return startable_.getColumnCount();
     }
 
     /**
-     * Returns the row map formed by combining an ordering map and 
-     * a subset.
+     * Returns the number of rows on the current page of this view.
+     * Use {@link #getViewRowCount} for the number of rows in the
+     * whole view.
      *
-     * @param   order  ordering map (may be null to indicate natural order)
-     * @param   rset   row subset
-     * @param   nrow   the number of rows in the base table
-     * @return  map from rows in this model to rows int the base table
-     *          (may be null to indicate a unit mapping)
+     * @return  page row count
      */
-    private static int[] getRowMap( int[] order, RowSubset rset, int nrow ) {
+    public int getRowCount() {
+        return (int) Math.min( pageSize_,
+                               getViewRowCount() - pageStart_ );
+    }
 
-        /* In the case of a trivial subset (all rows included) the row map
-         * is just the same as the sort order (possibly null). */
-        if ( rset == RowSubset.ALL ) {
-            return order;
-        }
+    /**
+     * Returns the number of rows in the whole of this view.
+     *
+     * @return  view row count
+     */
+    public long getViewRowCount() {
+        return rowMap_ == null ? getTableRowCount()
+                               : rowMap_.getRowCount();
+    }
 
-        /* In the case of a non-trivial subset we need to assemble a list
-         * of all the row indices which are actually used, possibly modulated
-         * by a sort order. */
-        else {
-            int[] rmap = new int[ nrow ];
-            int j = 0;
-            if ( order != null ) {
-                for ( int i = 0; i < nrow; i++ ) {
-                    int k = order[ i ];
-                    if ( rset.isIncluded( k ) ) {
-                        rmap[ j++ ] = k;
-                    }
-                }
-            }
-            else {
-                for ( int i = 0; i < nrow; i++ ) {
-                    if ( rset.isIncluded( i ) ) {
-                        rmap[ j++ ] = i;
-                    }
-                }
-            }
-            int[] rmap2 = new int[ j ];
-            System.arraycopy( rmap, 0, rmap2, 0, j );
-            return rmap2;
-        }
+    /**
+     * Returns the maximum number of rows on a page of this view.
+     *
+     * @return  page size
+     */
+    public int getPageSize() {
+        return pageSize_;
     }
 
-    public int getColumnCount() {
-        return startable_.getColumnCount();
+    /**
+     * Returns the view index of the first row on the current page.
+     *
+     * @return  page start index; a multiple of the page size
+     */
+    public long getPageStart() {
+        return pageStart_;
     }
 
-    public int getRowCount() {
-        return rowMap_ == null ? getTableRowCount()
-                              : rowMap_.length;
+    /**
+     * Sets the current page to the one containing a given row of the view.
+     * If the page changes,
+     * this method triggers a suitable <tt>TableModelEvent</tt> to listeners.
+     *
+     * @param  iview  index of a row in the whole view
+     */
+    public void setPageStart( long iview ) {
+        long start = Math.max( 0, Math.min( iview, getViewRowCount() - 1 ) );
+        start -= start % pageSize_;
+        if ( start != pageStart_ ) {
+            pageStart_ = start;
+            fireViewChanged();
+        }
+    }
+
+    /**
+     * Returns the number of pages in this view.
+     *
+     * @return  page count, at least 1
+     */
+    public long getPageCount() {
+        return Math.max( 1, ( getViewRowCount() + pageSize_ - 1 )
+                            / pageSize_ );
     }
 
     /**
      * Returns the index of the data model row corresponding 
-     * to a given row in this view model.
+     * to a given row on the current page of this view model.
      *
-     * @param   irow  index of the row in this view model
+     * @param   irow  index of the row on the current page
      * @return  index of the row in the base table
      */
     public long getBaseRow( int irow ) {
-        return ( rowMap_ == null ) ? (long) irow
-                                   : (long) rowMap_[ irow ];
+        return getBaseIndex( pageStart_ + irow );
+    }
+
+    /**
+     * Returns the index of the data model row corresponding
+     * to a given row in the whole of this view model.
+     *
+     * @param   iview  index of the row in the view
+     * @return  index of the row in the base table
+     */
+    public long getBaseIndex( long iview ) {
+        return ( rowMap_ == null ) ? iview
+                                   : rowMap_.getBaseRow( iview );
     }
 
     /**
-     * Returns the index at which a given table row appears in this view model.
+     * Returns the index at which a given table row appears on the
+     * current page of this view model.
      * If the given table row doesn't appear in the view model 
-     * (it's not included in the current subset) then -1 is returned.
+     * (it's not included in the current subset),
+     * or is not on the current page, then -1 is returned.
      *
      * @param  lrow  index of the row in the base table
-     * @return  index of the row in this view model, or -1
+     * @return  index of the row on the current page, or -1
      */
     public int getViewRow( long lrow ) {
+        long iview = getViewIndex( lrow );
+        return iview >= pageStart_ && iview - pageStart_ < pageSize_
+             ? (int) ( iview - pageStart_ )
+             : -1;
+    }
+
+    /**
+     * Returns the index at which a given table row appears in the
+     * whole of this view model.
+     * If the given table row doesn't appear in the view model
+     * (it's not included in the current subset) then -1 is returned.
+     *
+     * @param  lrow  index of the row in the base table
+     * @return  index of the row in the view, or -1
+     */
+    public long getViewIndex( long lrow ) {
         if ( rowMap_ == null ) {
-            return (int) lrow;
+            return lrow >= 0 && lrow < getTableRowCount() ? lrow : -1;
         }
         else {
-            int nr = rowMap_.length;
-            int irow = AbstractStarTable.checkedLongToInt( lrow );
-            for ( int i = 0; i < nr; i++ ) {
-                if ( rowMap_[ i ] == irow ) {
-                    return i;
-                }
-            }
-            return -1;
+            return rowMap_.getViewRow( lrow );
         }
     }
 
@@ -316,10 +387,49 @@ public class ViewerTableModel extends AbstractTableModel {
     }
 
     /**
-     * Returns the number of rows in the underlying table as an <tt>int</tt>.
+     * Indicates whether the <tt>TableModelEvent</tt> currently being
+     * dispatched by this model reports a change in the configuration
+     * of the view (subset, order or page) rather than a change in
+     * the table data.
+     * Both are signalled as whole-table updates, so listeners that
+     * only care about the data can use this method to tell them apart.
+     *
+     * @return  true iff a view configuration change is being dispatched
+     */
+    public boolean isViewChanging() {
+        return isViewChanging_;
+    }
+
+    /**
+     * Notifies listeners that the view configuration has changed.
+     */
+    private void fireViewChanged() {
+        isViewChanging_ = true;
+        try {
+            fireTableDataChanged();
+        }
+        finally {
+            isViewChanging_ = false;
+        }
+    }
+
+    /**
+     * Returns the number of rows in the underlying table.
      */
-    private int getTableRowCount() {
-        return AbstractStarTable.checkedLongToInt( startable_.getRowCount() );
+    private long getTableRowCount() {
+        return startable_.getRowCount();
+    }
+
+    /**
+     * Ensures that the current page start lies within the view,
+     * following a change in the view's row count.
+     */
+    private void clampPageStart() {
+        long nrow = getViewRowCount();
+        if ( pageStart_ > 0 && pageStart_ >= nrow ) {
+            pageStart_ = Math.max( 0, nrow - 1 );
+            pageStart_ -= pageStart_ % pageSize_;
+        }
     }
 
     /**
@@ -348,10 +458,10 @@ public class ViewerTableModel extends AbstractTableModel {
             return table;
         }
         else {
-            int nrow = rowMap_.length;
+            int nrow = Tables.checkedLongToInt( rowMap_.getRowCount() );
             long[] rowMapCopy = new long[ nrow ];
             for ( int i = 0; i < nrow; i++ ) {
-                rowMapCopy[ i ] = (long) rowMap_[ i ];
+                rowMapCopy[ i ] = rowMap_.getBaseRow( i );
             }
             return new RowPermutedStarTable( table, rowMapCopy );
         }
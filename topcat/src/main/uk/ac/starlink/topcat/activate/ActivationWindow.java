@@ -1177,9 +1177,10 @@ public class ActivationWindow extends AuxWindow {
                                   final ActivationEntry entry,
                                   final Activator activator ) {
             ViewerTableModel viewModel = tcModel_.getViewModel();
+            int nprog = (int) Math.min( viewModel.getViewRowCount(),
+                                        Integer.MAX_VALUE );
             final BoundedRangeModel progModel =
-                new DefaultBoundedRangeModel( 0, 0, 0,
-                                              viewModel.getRowCount() );
+                new DefaultBoundedRangeModel( 0, 0, 0, nprog );
             SwingUtilities.invokeLater( new Runnable() {
                 public void run() {
                     progBar_.setModel( progModel );
@@ -1303,9 +1304,10 @@ public class ActivationWindow extends AuxWindow {
                 runSequence( final ExecutorService queue,
                              final Map<ActivationEntry,Activator> activators ) {
             ViewerTableModel viewModel = tcModel_.getViewModel();
+            int nprog = (int) Math.min( viewModel.getViewRowCount(),
+                                        Integer.MAX_VALUE );
             final BoundedRangeModel progModel =
-                new DefaultBoundedRangeModel( 0, 0, 0,
-                                              viewModel.getRowCount() );
+                new DefaultBoundedRangeModel( 0, 0, 0, nprog );
             SwingUtilities.invokeLater( new Runnable() {
                 public void run() {
                     progBar_.setModel( progModel );
@@ -14,6 +14,7 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -109,7 +110,7 @@ public class InterMatchSpec extends MatchSpec {
     /**
      * Calculates the new matched table.
      */
-    public void calculate( ProgressIndicator indicator )
+    public void calculate( ProgressIndicator indicator, RowRunner runner )
             throws IOException, InterruptedException {
         matchSubsets = null;
         result = null;
@@ -126,6 +127,7 @@ public class InterMatchSpec extends MatchSpec {
         MultiJoinType[] joinTypes = getJoinTypes();
         RowMatcher matcher = new RowMatcher( engine, tables );
         matcher.setIndicator( indicator );
+        matcher.setRowRunner( runner );
         LinkSet matches = matcher.findGroupMatches( joinTypes );
         if ( ! matches.sort() ) {
             logger.warning( "Can't sort matches - matched table rows may be "
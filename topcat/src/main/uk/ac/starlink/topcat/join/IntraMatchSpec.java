@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.logging.Logger;
 import javax.swing.Box;
 import javax.swing.JOptionPane;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.join.LinkSet;
 import uk.ac.starlink.table.join.MatchEngine;
@@ -59,7 +60,7 @@ public class IntraMatchSpec extends MatchSpec {
         tupleSelector_.getEffectiveTable();
     }
 
-    public void calculate( ProgressIndicator indicator )
+    public void calculate( ProgressIndicator indicator, RowRunner runner )
             throws IOException, InterruptedException {
         result_ = null;
 
@@ -71,6 +72,7 @@ public class IntraMatchSpec extends MatchSpec {
         RowMatcher matcher = 
             new RowMatcher( engine_, new StarTable[] { effTable } );
         matcher.setIndicator( indicator );
+        matcher.setRowRunner( runner );
         LinkSet matches = matcher.findInternalMatches( false );
         if ( ! matches.sort() ) {
             logger.warning( "Can't sort matches - matched table rows may be "
@@ -23,6 +23,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.join.ProgressIndicator;
@@ -54,10 +55,12 @@ public abstract class MatchSpec extends JPanel {
      *
      * @param   indicator  a progress indicator which the calculation
      *          should try to update
+     * @param   runner  controls parallel processing
      * @throws  IOException  if there's some trouble
      * @throws  InterruptedException  if the user interrupts the calculation
      */
-    public abstract void calculate( ProgressIndicator indicator ) 
+    public abstract void calculate( ProgressIndicator indicator,
+                                    RowRunner runner )
             throws IOException, InterruptedException;
 
     /**
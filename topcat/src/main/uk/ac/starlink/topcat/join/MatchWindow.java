@@ -26,6 +26,7 @@ import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.join.AnisotropicCartesianMatchEngine;
 import uk.ac.starlink.table.join.CombinedMatchEngine;
 import uk.ac.starlink.table.join.CuboidCartesianMatchEngine;
@@ -69,6 +70,7 @@ public class MatchWindow extends AuxWindow implements ItemListener {
     private final Action stopAct;
     private final JProgressBar progBar;
     private final ToggleButtonModel profileModel;
+    private final ToggleButtonModel parallelModel;
     private MatchProgressIndicator currentIndicator;
 
     /**
@@ -125,6 +127,13 @@ public class MatchWindow extends AuxWindow implements ItemListener {
                                    "Determine and show timing and memory "
                                  + "profiling information in calculation log" );
 
+        /* Set up an action to control multithreading during match. */
+        parallelModel =
+            new ToggleButtonModel( "Multithreaded", null,
+                                   "Use multiple processors where possible "
+                                 + "during the match calculation" );
+        parallelModel.setSelected( true );
+
         /* Place the components. */
         Box buttonBox = Box.createHorizontalBox();
         buttonBox.add( Box.createHorizontalGlue() );
@@ -162,6 +171,7 @@ public class MatchWindow extends AuxWindow implements ItemListener {
         tuningMenu.setMnemonic( KeyEvent.VK_T );
         tuningMenu.add( tuningModel.createMenuItem() );
         tuningMenu.add( profileModel.createMenuItem() );
+        tuningMenu.add( parallelModel.createMenuItem() );
         getJMenuBar().add( tuningMenu );
 
         /* Add standard help actions. */
@@ -321,7 +331,10 @@ public class MatchWindow extends AuxWindow implements ItemListener {
                 }
             } );
             try {
-                spec.calculate( currentIndicator );
+                spec.calculate( currentIndicator,
+                                parallelModel.isSelected()
+                                    ? RowRunner.DEFAULT
+                                    : RowRunner.SEQUENTIAL );
                 SwingUtilities.invokeLater( new Runnable() {
                     public void run() {
                         setBusy( false );
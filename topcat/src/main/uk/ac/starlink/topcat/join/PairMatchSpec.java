@@ -16,6 +16,7 @@ import javax.swing.JOptionPane;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -103,7 +104,7 @@ public class PairMatchSpec extends MatchSpec {
         }
     }
 
-    public void calculate( ProgressIndicator indicator )
+    public void calculate( ProgressIndicator indicator, RowRunner runner )
             throws IOException, InterruptedException {
 
         /* Clear results which we are about to calculate, so that if the
@@ -130,6 +131,7 @@ public class PairMatchSpec extends MatchSpec {
         /* Find the matching row pairs. */
         RowMatcher matcher = new RowMatcher( engine_, tables );
         matcher.setIndicator( indicator );
+        matcher.setRowRunner( runner );
         LinkSet pairs = matcher.findPairMatches( pairMode );
         pairCount_ = pairs.size();
         if ( ! pairs.sort() ) {
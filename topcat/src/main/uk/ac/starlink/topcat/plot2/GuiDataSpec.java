@@ -2,12 +2,15 @@ package uk.ac.starlink.topcat.plot2;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.BitSet;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.DomainMapper;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.topcat.RowSubset;
+import uk.ac.starlink.topcat.SyntheticRowSubset;
 import uk.ac.starlink.topcat.TopcatModel;
 import uk.ac.starlink.ttools.plot2.Slow;
 import uk.ac.starlink.ttools.plot2.data.AbstractDataSpec;
@@ -99,6 +102,12 @@ public class GuiDataSpec extends AbstractDataSpec {
             userRows[ ic ] = new Object[ nu ];
         }
 
+        /* Make sure that expression-based subsets are evaluated once
+         * for the whole table, rather than row by row. */
+        if ( subset_ instanceof SyntheticRowSubset ) {
+            getMask();
+        }
+
         /* Different instances of this class need to be usable concurrently,
          * according to the DataSpec contract.  I *think* these are. */
         return new UserDataReader() {
@@ -204,13 +213,11 @@ public class GuiDataSpec extends AbstractDataSpec {
 
         /* If not, count it now. */
         else {
-            long nrow = tcModel_.getDataModel().getRowCount();
-            long count = 0;
-            for ( long ir = 0; ir < nrow; ir++ ) {
-                if ( subset_.isIncluded( ir ) ) {
-                    count++;
-                }
-            }
+            BitSet mask = getMask();
+            int nrow = (int) tcModel_.getDataModel().getRowCount();
+            long count = mask.length() > nrow
+                       ? mask.get( 0, nrow ).cardinality()
+                       : mask.cardinality();
 
             /* Having got the result, save it for later. */
             tcModel_.getSubsetCounts().put( subset_, new Long( count ) );
@@ -218,6 +225,17 @@ public class GuiDataSpec extends AbstractDataSpec {
         }
     }
 
+    /**
+     * Returns the row inclusion mask for this data spec.
+     *
+     * @return  mask, not to be modified
+     */
+    @Slow
+    private BitSet getMask() {
+        long nrow = tcModel_.getDataModel().getRowCount();
+        return subset_.getMask( Tables.checkedLongToInt( nrow ) );
+    }
+
     /**
      * Retrieves a TopcatModel from a data spec used within topcat.
      * It does this by casting the supplied dataSpec to a GuiDataSpec.
@@ -7,6 +7,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -31,9 +32,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.BoundedRangeModel;
@@ -78,6 +82,7 @@ import uk.ac.starlink.ttools.plot2.data.StepDataStore;
 import uk.ac.starlink.ttools.plot2.data.TupleRunner;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.paper.Compositor;
+import uk.ac.starlink.ttools.plot2.paper.OverPaperType2D;
 import uk.ac.starlink.ttools.plot2.paper.PaperType;
 import uk.ac.starlink.ttools.plot2.paper.PaperTypeSelector;
 import uk.ac.starlink.ttools.plot2.task.LayerSpec;
@@ -158,6 +163,20 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.topcat.plot2" );
 
+    /**
+     * Executor for the parts of a plot job that can run concurrently,
+     * shared between all plot panels.  It is unbounded, since its jobs
+     * may themselves submit jobs to it and wait for the results.
+     */
+    private static final ExecutorService renderExec_ =
+        Executors.newCachedThreadPool( new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "Plot Render" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
     /**
      * Constructor.  Factories to gather various information required
      * for the plot are passed in.
@@ -973,6 +992,7 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                                          new HashMap<AuxScale,Span>(), false,
                                          (ShadeAxis) null, placer,
                                          (Icon) null, (Icon) null,
+                                         new HashMap<LayerImageId,Image>(),
                                          new ReportMap[ 0 ], null, null );
     }
 
@@ -1019,6 +1039,60 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                                   plotSpec );
     }
 
+    /**
+     * Waits for the results of jobs submitted for concurrent execution.
+     * If the calling thread is interrupted while waiting,
+     * all the jobs are cancelled, the thread's interrupted status
+     * is restored, and null is returned.
+     * If any job fails, the others are cancelled and
+     * the failure is rethrown.
+     *
+     * @param  futures  list of futures; null elements are permitted
+     * @return   list of results in the same order as the input,
+     *           with null elements corresponding to null futures,
+     *           or null if interrupted
+     */
+    private static <T> List<T> awaitResults( List<Future<T>> futures ) {
+        List<T> results = new ArrayList<T>( futures.size() );
+        try {
+            for ( Future<T> future : futures ) {
+                results.add( future == null ? null : future.get() );
+            }
+            return results;
+        }
+        catch ( InterruptedException e ) {
+            cancelAll( futures );
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch ( ExecutionException e ) {
+            cancelAll( futures );
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw new RuntimeException( cause );
+            }
+        }
+    }
+
+    /**
+     * Cancels all of a list of futures, interrupting them if running.
+     *
+     * @param  futures  list of futures; null elements are permitted
+     */
+    private static void cancelAll( List<? extends Future<?>> futures ) {
+        for ( Future<?> future : futures ) {
+            if ( future != null ) {
+                future.cancel( true );
+            }
+        }
+    }
+
     /**
      * Submits a Runnable to an ExecutorService, and returns the
      * corresponding Cancellable.
@@ -1122,6 +1196,7 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
             final PlotPlacement placer_;
             final Icon dataIcon_;
             final Icon plotIcon_;
+            final Map<LayerImageId,Image> layerImages_;
             final ReportMap[] reports_;
             final AxisController<?,A> axisController_;
             final ZoneId zid_;
@@ -1144,6 +1219,9 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
              * @param  placer  plot placement
              * @param  dataIcon   icon which will paint data part of plot
              * @param  plotIcon   icon which will paint the whole plot
+             * @param  layerImages  separately painted layer images
+             *                      from which the data icon was composited,
+             *                      available for re-use in later plots
              * @param  reports    reported info from plot layers
              * @param  axisController   axis controller to be updated on
              *                          zone plot completion
@@ -1154,7 +1232,8 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                       Map<AuxScale,Span> auxDataSpanMap,
                       Map<AuxScale,Span> auxClipSpanMap, boolean auxLock,
                       ShadeAxis shadeAxis, PlotPlacement placer,
-                      Icon dataIcon, Icon plotIcon, ReportMap[] reports,
+                      Icon dataIcon, Icon plotIcon,
+                      Map<LayerImageId,Image> layerImages, ReportMap[] reports,
                       AxisController<?,A> axisController, ZoneId zid ) {
                 layers_ = layers;
                 plans_ = plans;
@@ -1168,6 +1247,7 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                 placer_ = placer;
                 dataIcon_ = dataIcon;
                 plotIcon_ = plotIcon;
+                layerImages_ = layerImages;
                 reports_ = reports;
                 axisController_ = axisController;
                 zid_ = zid;
@@ -1492,8 +1572,11 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
              * supply results required this time round and thus avoid
              * some recalculations. */
             Set<Object> oldPlans = new HashSet<Object>();
+            Map<LayerImageId,Image> oldLayerImages =
+                new HashMap<LayerImageId,Image>();
             for ( Workings.ZoneWork<A> zone : oldWorkings_.zones_ ) {
                 oldPlans.addAll( Arrays.asList( zone.plans_ ) );
+                oldLayerImages.putAll( zone.layerImages_ );
             }
 
             /* Work out gang geometry if we can (probably not). */
@@ -1622,14 +1705,14 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                 gang = createGang( aspects, shadeAxes );
             }
 
-            /* Now we have enough information to create the actual surfaces,
-             * plan and plot the layers onto them, and save the result into
-             * per-zone ZoneWork objects. */
-            long planMillis = 0;
-            long paintMillis = 0;
-            List<Workings.ZoneWork<A>> zoneWorks =
-                new ArrayList<Workings.ZoneWork<A>>();
-            boolean changed = false;
+            /* Now we have enough information to create the actual surfaces
+             * and placements, and to find out which zones need their
+             * data parts drawing. */
+            PlotPlacement[] placers = new PlotPlacement[ nz ];
+            boolean[] sameDataIcons = new boolean[ nz ];
+            boolean[] samePlots = new boolean[ nz ];
+            List<Future<ZoneRender>> renderFutures =
+                new ArrayList<Future<ZoneRender>>();
             for ( int iz = 0; iz < nz; iz++ ) {
                 Zone<P,A> zone = zones_.get( iz );
                 Workings.ZoneWork<A> oldZoneWork =
@@ -1637,10 +1720,6 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                     ? oldWorkings_.zones_.get( iz )
                     : dummyZoneWork_;
 
-                /* Aux range locking is in principle handled on a per-zone
-                 * basis, but for now the GUI doesn't support that. */
-                boolean auxLock = auxLock_;
-
                 /* Calculate the plot surface. */
                 Rectangle dataBounds = gang.getZonePlotBounds( iz );
                 Surface surface =
@@ -1687,11 +1766,49 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                 boolean samePlot =
                     sameDataIcon && placer.equals( oldZoneWork.placer_ );
 
+                /* If the data part has changed, the plans have to be
+                 * calculated and the data icon drawn.  The zones are
+                 * independent of each other, so start that work now,
+                 * concurrently with that for any other zones. */
+                placers[ iz ] = placer;
+                sameDataIcons[ iz ] = sameDataIcon;
+                samePlots[ iz ] = samePlot;
+                renderFutures.add( sameDataIcon
+                                 ? null
+                                 : renderExec_
+                                  .submit( createZoneRenderer(
+                                               iz, zone, surface,
+                                               auxClipSpanMaps.get( iz ),
+                                               dataStore1, oldPlans,
+                                               oldLayerImages, rowStep ) ) );
+            }
+            List<ZoneRender> renders = awaitResults( renderFutures );
+            if ( renders == null || Thread.currentThread().isInterrupted() ) {
+                return null;
+            }
+
+            /* Save the results into per-zone ZoneWork objects. */
+            long planMillis = 0;
+            long paintMillis = 0;
+            List<Workings.ZoneWork<A>> zoneWorks =
+                new ArrayList<Workings.ZoneWork<A>>();
+            boolean changed = false;
+            for ( int iz = 0; iz < nz; iz++ ) {
+                Zone<P,A> zone = zones_.get( iz );
+                Workings.ZoneWork<A> oldZoneWork =
+                      iz < oldWorkings_.zones_.size()
+                    ? oldWorkings_.zones_.get( iz )
+                    : dummyZoneWork_;
+
+                /* Aux range locking is in principle handled on a per-zone
+                 * basis, but for now the GUI doesn't support that. */
+                boolean auxLock = auxLock_;
+
                 /* If the plot is identical to last time, store a null
                  * zone workings object an indication that no replot
                  * is required. */
                 final Workings.ZoneWork<A> zoneWork;
-                if ( samePlot ) {
+                if ( samePlots[ iz ] ) {
                     zoneWork = oldZoneWork;
                 }
 
@@ -1704,54 +1821,32 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                      * them forward from the oldWorkings for the result. */
                     final Icon dataIcon;
                     final Object[] plans;
+                    final Map<LayerImageId,Image> layerImages;
                     final ReportMap[] reports;
-                    if ( sameDataIcon ) {
+                    if ( sameDataIcons[ iz ] ) {
                         dataIcon = oldZoneWork.dataIcon_;
                         plans = oldZoneWork.plans_;
+                        layerImages = oldZoneWork.layerImages_;
                         reports = oldZoneWork.reports_;
                     }
 
-                    /* Otherwise calculate plans and perform drawing to a new
-                     * cached data icon (image buffer). */
+                    /* Otherwise use the newly drawn data icon. */
                     else {
-                        PlotLayer[] layers = zone.layers_;
-                        int nl = layers.length;
-                        Map<AuxScale,Span> auxSpanMap =
-                            auxClipSpanMaps.get( iz );
-                        long startPlan = System.currentTimeMillis();
-                        Drawing[] drawings = new Drawing[ nl ];
-                        for ( int il = 0; il < nl; il++ ) {
-                            drawings[ il ] =
-                                layers[ il ]
-                               .createDrawing( surface, auxSpanMap,
-                                               zone.paperType_ );
-                        }
-                        plans = calculateDrawingPlans( drawings, dataStore1,
-                                                       oldPlans );
-                        if ( Thread.currentThread().isInterrupted() ) {
-                            return null;
-                        }
-                        planMillis += System.currentTimeMillis() - startPlan;
-                        logger_.info( "Zone: "+ iz + " - "
-                                    + "Layers: " + nl + ", "
-                                    + "Paper: " + zone.paperType_ );
-                        reports = new ReportMap[ nl ];
-                        for ( int il = 0; il < nl; il++ ) {
-                            reports[ il ] =
-                                drawings[ il ].getReport( plans[ il ] );
-                        }
-                        long startPaint = System.currentTimeMillis();
-                        dataIcon = zone.paperType_
-                                  .createDataIcon( surface, drawings, plans,
-                                                   dataStore1, true );
-                        paintMillis += System.currentTimeMillis() - startPaint;
-                        if ( Thread.currentThread().isInterrupted() ) {
+                        ZoneRender render = renders.get( iz );
+                        if ( render == null ) {
                             return null;
                         }
+                        dataIcon = render.dataIcon_;
+                        plans = render.plans_;
+                        layerImages = render.layerImages_;
+                        reports = render.reports_;
+                        planMillis += render.planMillis_;
+                        paintMillis += render.paintMillis_;
                     }
 
                     /* Create the final plot icon, and store the inputs and
                      * outputs as a new Workings object for return. */
+                    PlotPlacement placer = placers[ iz ];
                     Icon plotIcon = placer.createPlotIcon( dataIcon );
                     zoneWork =
                         new Workings.ZoneWork<A>( zone.layers_, plans,
@@ -1762,7 +1857,8 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                                                   auxClipSpanMaps.get( iz ),
                                                   auxLock, shadeAxes[ iz ],
                                                   placer, dataIcon, plotIcon,
-                                                  reports, zone.axisController_,
+                                                  layerImages, reports,
+                                                  zone.axisController_,
                                                   zone.zid_ );
                 }
                 zoneWorks.add( zoneWork );
@@ -1795,6 +1891,157 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                            : null;
         }
 
+        /**
+         * Returns a job which calculates the plans for the layers of
+         * a zone and paints its data icon.
+         *
+         * <p>The plans are calculated in sequence.
+         * For opaque 2D bitmap paper, each layer is painted concurrently
+         * onto its own transparent image, re-using images from the
+         * previous plot where the layer and surface are unchanged,
+         * and the images are composited in order.
+         * Other paper types, for which layers interact
+         * (3D depth ordering, or transparency compositing),
+         * have all the layers painted in order onto a single paper.
+         *
+         * @param  iz   zone index
+         * @param  zone   zone information
+         * @param  surface   plot surface
+         * @param  auxSpanMap   aux scale ranges for the plot
+         * @param  dataStore   data storage object
+         * @param  oldPlans   previously calculated plans that may be
+         *                    re-usable for this zone
+         * @param  oldLayerImages  previously painted layer images that
+         *                         may be re-usable for this zone
+         * @param  rowStep   stride for row subsampling, 1 for all rows
+         * @return   job returning the zone's drawing results,
+         *           or null if interrupted
+         */
+        private Callable<ZoneRender>
+                createZoneRenderer( final int iz, final Zone<P,A> zone,
+                                    final Surface surface,
+                                    final Map<AuxScale,Span> auxSpanMap,
+                                    final DataStore dataStore,
+                                    final Set<Object> oldPlans,
+                                    final Map<LayerImageId,Image>
+                                          oldLayerImages,
+                                    final int rowStep ) {
+            return new Callable<ZoneRender>() {
+                public ZoneRender call() {
+                    PlotLayer[] layers = zone.layers_;
+                    int nl = layers.length;
+                    long startPlan = System.currentTimeMillis();
+                    Drawing[] drawings = new Drawing[ nl ];
+                    for ( int il = 0; il < nl; il++ ) {
+                        drawings[ il ] =
+                            layers[ il ]
+                           .createDrawing( surface, auxSpanMap,
+                                           zone.paperType_ );
+                    }
+                    Object[] plans =
+                        calculateDrawingPlans( drawings, dataStore, oldPlans );
+                    if ( Thread.currentThread().isInterrupted() ) {
+                        return null;
+                    }
+                    long planMillis = System.currentTimeMillis() - startPlan;
+                    logger_.info( "Zone: "+ iz + " - "
+                                + "Layers: " + nl + ", "
+                                + "Paper: " + zone.paperType_ );
+                    ReportMap[] reports = new ReportMap[ nl ];
+                    for ( int il = 0; il < nl; il++ ) {
+                        reports[ il ] =
+                            drawings[ il ].getReport( plans[ il ] );
+                    }
+                    long startPaint = System.currentTimeMillis();
+                    Map<LayerImageId,Image> layerImages =
+                        new HashMap<LayerImageId,Image>();
+                    final Icon dataIcon;
+                    if ( zone.paperType_ instanceof OverPaperType2D ) {
+                        OverPaperType2D ptype =
+                            (OverPaperType2D) zone.paperType_;
+                        LayerImageId[] ids = new LayerImageId[ nl ];
+                        for ( int il = 0; il < nl; il++ ) {
+                            ids[ il ] =
+                                new LayerImageId( surface, layers[ il ],
+                                                  auxSpanMap, rowStep );
+                        }
+                        Image[] images =
+                            paintLayerImages( ptype, surface, drawings, plans,
+                                              dataStore, ids, oldLayerImages );
+                        if ( images == null ) {
+                            return null;
+                        }
+                        for ( int il = 0; il < nl; il++ ) {
+                            layerImages.put( ids[ il ], images[ il ] );
+                        }
+                        dataIcon =
+                            ptype.createCompositeIcon( surface, images );
+                    }
+                    else {
+                        dataIcon = zone.paperType_
+                                  .createDataIcon( surface, drawings, plans,
+                                                   dataStore, true );
+                    }
+                    long paintMillis = System.currentTimeMillis() - startPaint;
+                    if ( Thread.currentThread().isInterrupted() ) {
+                        return null;
+                    }
+                    return new ZoneRender( plans, reports, dataIcon,
+                                           layerImages, planMillis,
+                                           paintMillis );
+                }
+            };
+        }
+
+        /**
+         * Paints the layers of a zone concurrently onto separate
+         * transparent images, re-using previously painted images
+         * where available.
+         *
+         * @param  ptype   opaque 2D paper type
+         * @param  surface   plot surface
+         * @param  drawings   per-layer drawings
+         * @param  plans    per-layer plans
+         * @param  dataStore   data storage object
+         * @param  ids    per-layer image identifiers
+         * @param  oldLayerImages   previously painted images
+         * @return  per-layer images, or null if interrupted
+         */
+        private static Image[]
+                paintLayerImages( final OverPaperType2D ptype,
+                                  final Surface surface, Drawing[] drawings,
+                                  Object[] plans, final DataStore dataStore,
+                                  LayerImageId[] ids,
+                                  Map<LayerImageId,Image> oldLayerImages ) {
+            int nl = drawings.length;
+            List<Future<Image>> futures = new ArrayList<Future<Image>>();
+            for ( int il = 0; il < nl; il++ ) {
+                final Drawing drawing = drawings[ il ];
+                final Object plan = plans[ il ];
+                futures.add( oldLayerImages.containsKey( ids[ il ] )
+                           ? null
+                           : renderExec_.submit( new Callable<Image>() {
+                                 public Image call() {
+                                     return ptype
+                                           .createLayerImage( surface,
+                                                              drawing, plan,
+                                                              dataStore );
+                                 }
+                             } ) );
+            }
+            List<Image> images = awaitResults( futures );
+            if ( images == null ) {
+                return null;
+            }
+            Image[] imgs = images.toArray( new Image[ 0 ] );
+            for ( int il = 0; il < nl; il++ ) {
+                if ( futures.get( il ) == null ) {
+                    imgs[ il ] = oldLayerImages.get( ids[ il ] );
+                }
+            }
+            return imgs;
+        }
+
         /**
          * Attempts to return the plot surfaces for each zone
          * which the result of this job will display.
@@ -1990,6 +2237,10 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
         /**
          * Calculates plot plans for a set of drawings, attempting to re-use
          * previously calculated plans where possible.
+         * The drawings are planned in sequence, so that each one can
+         * re-use plans calculated for the earlier ones; different layers
+         * often share a plan, and calculating it may require a pass
+         * through all the data.
          *
          * @param  drawings   drawings
          * @param  dataStore   data storage object
@@ -2014,6 +2265,41 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
             return plans;
         }
 
+        /**
+         * Aggregates the results of drawing the data part of one zone.
+         */
+        private static class ZoneRender {
+            final Object[] plans_;
+            final ReportMap[] reports_;
+            final Icon dataIcon_;
+            final Map<LayerImageId,Image> layerImages_;
+            final long planMillis_;
+            final long paintMillis_;
+
+            /**
+             * Constructor.
+             *
+             * @param  plans   per-layer plot plan objects
+             * @param  reports   reported info from plot layers
+             * @param  dataIcon  icon which will paint data part of plot
+             * @param  layerImages  separately painted layer images
+             *                      from which the data icon was composited,
+             *                      empty if it was not painted that way
+             * @param  planMillis  time in milliseconds taken for plans
+             * @param  paintMillis  time in milliseconds taken for painting
+             */
+            ZoneRender( Object[] plans, ReportMap[] reports, Icon dataIcon,
+                        Map<LayerImageId,Image> layerImages,
+                        long planMillis, long paintMillis ) {
+                plans_ = plans;
+                reports_ = reports;
+                dataIcon_ = dataIcon;
+                layerImages_ = layerImages;
+                planMillis_ = planMillis;
+                paintMillis_ = paintMillis;
+            }
+        }
+
         /**
          * Aggregates per-zone information for a PlotJob.
          */
@@ -2135,6 +2421,58 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
         }
     }
 
+    /**
+     * Identifier object for the content of a single layer painted
+     * onto its own image.
+     * Two layer images with the same LayerImageId will have the same pixels.
+     */
+    @Equality
+    private static class LayerImageId {
+        private final Surface surface_;
+        private final LayerId layerId_;
+        private final Map<AuxScale,Span> auxClipSpanMap_;
+        private final int rowStep_;
+
+        /**
+         * Constructor.
+         *
+         * @param  surface  plot surface
+         * @param  layer    plot layer
+         * @param  auxClipSpanMap   actual ranges used for aux scales
+         * @param  rowStep   stride for row subsampling
+         */
+        LayerImageId( Surface surface, PlotLayer layer,
+                      Map<AuxScale,Span> auxClipSpanMap, int rowStep ) {
+            surface_ = surface;
+            layerId_ = LayerId.createLayerId( layer );
+            auxClipSpanMap_ = auxClipSpanMap;
+            rowStep_ = rowStep;
+        }
+
+        public boolean equals( Object o ) {
+            if ( o instanceof LayerImageId ) {
+                LayerImageId other = (LayerImageId) o;
+                return this.surface_.equals( other.surface_ )
+                    && this.layerId_.equals( other.layerId_ )
+                    && this.auxClipSpanMap_.equals( other.auxClipSpanMap_ )
+                    && this.rowStep_ == other.rowStep_;
+            }
+            else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            int code = 5521;
+            code = 23 * code + surface_.hashCode();
+            code = 23 * code + layerId_.hashCode();
+            code = 23 * code + auxClipSpanMap_.hashCode();
+            code = 23 * code + rowStep_;
+            return code;
+        }
+    }
+
     /**
      * Stores a reference to a Future in such a way that it can be
      * cancelled if it still exists, but does not prevent it from being GCd.
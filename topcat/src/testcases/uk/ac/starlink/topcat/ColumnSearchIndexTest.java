@@ -0,0 +1,90 @@
+package uk.ac.starlink.topcat;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.regex.Pattern;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.util.TestCase;
+
+public class ColumnSearchIndexTest extends TestCase {
+
+    public ColumnSearchIndexTest( String name ) {
+        super( name );
+    }
+
+    public void testIndex() throws IOException {
+        int nrow = 30000;
+        Random rnd = new Random( 2401L );
+        String[] words = { "alpha", "alphabet", "beta", "Beta", "gamma",
+                           "gam", "", null, };
+        String[] strs = new String[ nrow ];
+        double[] dbls = new double[ nrow ];
+        int[] ints = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            String word = words[ rnd.nextInt( words.length ) ];
+            strs[ i ] = word == null ? null : word + rnd.nextInt( 20 );
+            if ( rnd.nextInt( 10 ) == 0 ) {
+                strs[ i ] = word;
+            }
+            dbls[ i ] = rnd.nextInt( 50 ) == 0 ? Double.NaN
+                                               : rnd.nextInt( 2000 ) * 0.25;
+            ints[ i ] = nrow - i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "s", strs ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", dbls ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ints ) );
+
+        ColumnSearchIndex sIndex =
+            ColumnSearchIndex.createIndex( table, 0, RowRunner.DEFAULT );
+        ColumnSearchIndex dIndex =
+            ColumnSearchIndex.createIndex( table, 1, RowRunner.DEFAULT );
+        assertTrue( sIndex.getValueCount() < 200 );
+        assertTrue( dIndex.getValueCount() <= 2001 );
+        ColumnSearchIndex iIndex =
+            ColumnSearchIndex.createIndex( table, 2, RowRunner.DEFAULT );
+        assertEquals( nrow, iIndex.getValueCount() );
+
+        checkFind( table, sIndex, 0, "alpha", true, "alpha" );
+        checkFind( table, sIndex, 0, "alpha.*", true, "alpha" );
+        checkFind( table, sIndex, 0, "gam1.", true, "gam1" );
+        checkFind( table, sIndex, 0, "Beta", false, null );
+        checkFind( table, sIndex, 0, "b?eta1", true, null );
+        checkFind( table, sIndex, 0, "zeta", true, "zeta" );
+        checkFind( table, sIndex, 0, "", true, null );
+        checkFind( table, dIndex, 1, "12\\.25", true, null );
+        checkFind( table, dIndex, 1, "NaN", true, null );
+        checkFind( table, dIndex, 1, "\\.5", false, null );
+        checkFind( table, iIndex, 2, "1.*7", true, "1" );
+        checkFind( table, iIndex, 2, "99", false, null );
+        assertEquals( 0, sIndex.findRows( Pattern.compile( "gam" ), true,
+                                          "gamma", RowRunner.DEFAULT )
+                               .cardinality() );
+    }
+
+    private void checkFind( ColumnStarTable table, ColumnSearchIndex index,
+                            int jcol, String regex, boolean isFull,
+                            String prefix )
+            throws IOException {
+        Pattern pattern = Pattern.compile( regex );
+        BitSet expected = new BitSet();
+        for ( int i = 0; i < table.getRowCount(); i++ ) {
+            Object cell = table.getCell( i, jcol );
+            if ( cell != null ) {
+                String txt = cell.toString();
+                if ( isFull ? pattern.matcher( txt ).matches()
+                            : pattern.matcher( txt ).find() ) {
+                    expected.set( i );
+                }
+            }
+        }
+        for ( RowRunner runner :
+              new RowRunner[] { RowRunner.SEQUENTIAL, RowRunner.DEFAULT } ) {
+            assertEquals( expected,
+                          index.findRows( pattern, isFull, prefix, runner ) );
+        }
+    }
+}
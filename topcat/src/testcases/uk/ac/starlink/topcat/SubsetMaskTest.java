@@ -0,0 +1,142 @@
+package uk.ac.starlink.topcat;
+
+import gnu.jel.CompilationException;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class SubsetMaskTest extends TestCase {
+
+    public SubsetMaskTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.topcat" ).setLevel( Level.WARNING );
+    }
+
+    public void testMasks() throws CompilationException {
+        int nrow = 25000;
+        int[] xs = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        TopcatModel tcModel =
+            TopcatModel.createRawTopcatModel( table, "test", null );
+
+        SyntheticRowSubset threes =
+            new SyntheticRowSubset( "threes", "x % 3 == 0",
+                                    tcModel.createJELRowReader() );
+        tcModel.addSubset( threes );
+        SyntheticRowSubset lowThrees =
+            new SyntheticRowSubset( "lowThrees", "threes && x < 1000",
+                                    tcModel.createJELRowReader() );
+        tcModel.addSubset( lowThrees );
+
+        BitSet mask = threes.getMask( nrow );
+        assertSame( mask, threes.getMask( nrow ) );
+        assertEquals( ( nrow + 2 ) / 3, mask.cardinality() );
+        for ( int i = 0; i < nrow; i++ ) {
+            assertEquals( i % 3 == 0, mask.get( i ) );
+            assertEquals( i % 3 == 0, threes.isIncluded( i ) );
+        }
+        assertEquals( 334, lowThrees.getMask( nrow ).cardinality() );
+
+        RowSubset notThrees = new InverseRowSubset( threes );
+        BitSet notMask = notThrees.getMask( nrow );
+        assertEquals( nrow - mask.cardinality(), notMask.cardinality() );
+        assertFalse( notMask.intersects( mask ) );
+
+        BitSet bits = new BitSet();
+        bits.set( 10, 20 );
+        RowSubset invBits = new BitsRowSubset( "inv", bits, true );
+        assertEquals( nrow - 10, invBits.getMask( nrow ).cardinality() );
+        assertEquals( nrow, RowSubset.ALL.getMask( nrow ).cardinality() );
+        assertEquals( 0, RowSubset.NONE.getMask( nrow ).cardinality() );
+
+        /* Editing a cell discards cached masks. */
+        tcModel.getViewModel().setValueAt( new Integer( 1 ), 0, 0 );
+        assertFalse( threes.isIncluded( 0 ) );
+        assertEquals( mask.cardinality() - 1,
+                      threes.getMask( nrow ).cardinality() );
+        assertEquals( 333, lowThrees.getMask( nrow ).cardinality() );
+
+        /* Resetting the expression discards the cached mask, and
+         * updating the subset list, as the subset window does,
+         * discards the masks of dependent subsets. */
+        OptionsListModel<RowSubset> subsets = tcModel.getSubsets();
+        int ithrees = subsets.indexOf( threes );
+        threes.setExpression( "x % 5 == 0", tcModel.createJELRowReader() );
+        assertEquals( nrow / 5 - 1, threes.getMask( nrow ).cardinality() );
+        subsets.set( ithrees, threes );
+        assertEquals( 199, lowThrees.getMask( nrow ).cardinality() );
+        threes.setExpression( "x % 10 == 0", tcModel.createJELRowReader() );
+        subsets.set( ithrees, threes );
+        assertEquals( 99, lowThrees.getMask( nrow ).cardinality() );
+
+        /* Applying a subset, which fires count updates, does not. */
+        BitSet lowMask = lowThrees.getMask( nrow );
+        tcModel.applySubset( threes );
+        tcModel.applySubset( RowSubset.ALL );
+        assertSame( lowMask, lowThrees.getMask( nrow ) );
+
+        /* A whole-table data change, as fired when a synthetic column
+         * is redefined, discards cached masks. */
+        tcModel.getViewModel().fireTableDataChanged();
+        assertNotSame( lowMask, lowThrees.getMask( nrow ) );
+
+        /* Replacing a referenced subset discards dependent masks. */
+        tcModel.addSubset( new SyntheticRowSubset( "threes", "x < 100",
+                                                   tcModel
+                                                  .createJELRowReader() ) );
+        assertEquals( 100, lowThrees.getMask( nrow ).cardinality() );
+    }
+
+    public void testViewMasks() throws CompilationException {
+        int nrow = 1000;
+        int[] xs = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        TopcatModel tcModel =
+            TopcatModel.createRawTopcatModel( table, "test", null );
+        SyntheticRowSubset firsts =
+            new SyntheticRowSubset( "firsts", "$index0 <= 10",
+                                    tcModel.createJELRowReader() );
+        tcModel.addSubset( firsts );
+        SyntheticRowSubset lowFirsts =
+            new SyntheticRowSubset( "lowFirsts", "firsts && x < 500",
+                                    tcModel.createJELRowReader() );
+        tcModel.addSubset( lowFirsts );
+        SyntheticRowSubset lows =
+            new SyntheticRowSubset( "lows", "x < 500",
+                                    tcModel.createJELRowReader() );
+        tcModel.addSubset( lows );
+        assertTrue( firsts.isViewDependent() );
+        assertTrue( lowFirsts.isViewDependent() );
+        assertFalse( lows.isViewDependent() );
+
+        BitSet mask = firsts.getMask( nrow );
+        assertEquals( 10, mask.cardinality() );
+        assertTrue( mask.get( 0 ) );
+        assertEquals( 10, lowFirsts.getMask( nrow ).cardinality() );
+        BitSet lowMask = lows.getMask( nrow );
+
+        /* Sorting changes the view-dependent subsets,
+         * but keeps the other cached masks. */
+        tcModel.sortBy( new SortOrder( tcModel.getColumnModel()
+                                              .getColumn( 0 ) ), false );
+        assertFalse( firsts.isIncluded( 0 ) );
+        assertTrue( firsts.isIncluded( nrow - 1 ) );
+        mask = firsts.getMask( nrow );
+        assertEquals( 10, mask.cardinality() );
+        assertFalse( mask.get( 0 ) );
+        assertTrue( mask.get( nrow - 1 ) );
+        assertEquals( 0, lowFirsts.getMask( nrow ).cardinality() );
+        assertSame( lowMask, lows.getMask( nrow ) );
+    }
+}
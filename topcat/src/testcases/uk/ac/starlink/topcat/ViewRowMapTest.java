@@ -0,0 +1,151 @@
+package uk.ac.starlink.topcat;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class ViewRowMapTest extends TestCase {
+
+    public ViewRowMapTest( String name ) {
+        super( name );
+    }
+
+    public void testMaps() {
+        Random rnd = new Random( 2301L );
+        for ( int nrow : new int[] { 0, 1, 63, 64, 65, 5000, 20001 } ) {
+            int[] order = new int[ nrow ];
+            for ( int i = 0; i < nrow; i++ ) {
+                order[ i ] = i;
+            }
+            for ( int i = nrow - 1; i > 0; i-- ) {
+                int j = rnd.nextInt( i + 1 );
+                int t = order[ i ];
+                order[ i ] = order[ j ];
+                order[ j ] = t;
+            }
+            BitSet bits = new BitSet();
+            for ( int i = 0; i < nrow; i++ ) {
+                if ( rnd.nextInt( 3 ) == 0 ) {
+                    bits.set( i );
+                }
+            }
+            RowSubset[] rsets = new RowSubset[] {
+                new BitsRowSubset( "b", bits ),
+                new BitsRowSubset( "i", bits, true ),
+                RowSubset.NONE,
+            };
+            assertNull( ViewRowMap.createRowMap( null, RowSubset.ALL, nrow ) );
+            checkMap( ViewRowMap.createRowMap( order, RowSubset.ALL, nrow ),
+                      order, RowSubset.ALL, nrow );
+            for ( RowSubset rset : rsets ) {
+                checkMap( ViewRowMap.createRowMap( null, rset, nrow ),
+                          null, rset, nrow );
+                checkMap( ViewRowMap.createRowMap( order, rset, nrow ),
+                          order, rset, nrow );
+            }
+        }
+    }
+
+    private void checkMap( ViewRowMap map, int[] order, RowSubset rset,
+                           int nrow ) {
+        int[] expected = new int[ nrow ];
+        int n = 0;
+        for ( int i = 0; i < nrow; i++ ) {
+            int k = order == null ? i : order[ i ];
+            if ( rset.isIncluded( k ) ) {
+                expected[ n++ ] = k;
+            }
+        }
+        assertEquals( n, map.getRowCount() );
+        int[] array = map.toIntArray();
+        assertEquals( n, array.length );
+        for ( int i = 0; i < n; i++ ) {
+            assertEquals( expected[ i ], array[ i ] );
+            assertEquals( expected[ i ], map.getBaseRow( i ) );
+            assertEquals( i, map.getViewRow( expected[ i ] ) );
+        }
+        for ( int k = 0; k < nrow; k++ ) {
+            long iv = map.getViewRow( k );
+            assertEquals( rset.isIncluded( k ), iv >= 0 );
+        }
+        assertEquals( -1, map.getViewRow( -1 ) );
+        assertEquals( -1, map.getViewRow( nrow ) );
+    }
+
+    public void testPaging() {
+        int nrow = 100;
+        int[] xs = new int[ nrow ];
+        int[] order = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = i;
+            order[ i ] = nrow - 1 - i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        ViewerTableModel vm =
+            new ViewerTableModel( new PlasticStarTable( table ), 30 );
+        assertEquals( 100, vm.getViewRowCount() );
+        assertEquals( 4, vm.getPageCount() );
+        assertEquals( 30, vm.getRowCount() );
+
+        vm.setPageStart( 95 );
+        assertEquals( 90, vm.getPageStart() );
+        assertEquals( 10, vm.getRowCount() );
+        assertEquals( 92L, vm.getBaseRow( 2 ) );
+        assertEquals( new Integer( 92 ), vm.getValueAt( 2, 0 ) );
+        assertEquals( 2, vm.getViewRow( 92 ) );
+        assertEquals( -1, vm.getViewRow( 12 ) );
+        assertEquals( 12, vm.getViewIndex( 12 ) );
+
+        BitSet evens = new BitSet();
+        for ( int i = 0; i < nrow; i += 2 ) {
+            evens.set( i );
+        }
+        vm.setSubset( new BitsRowSubset( "evens", evens ) );
+        assertEquals( 50, vm.getViewRowCount() );
+        assertEquals( 30, vm.getPageStart() );
+        assertEquals( 20, vm.getRowCount() );
+        assertEquals( 60L, vm.getBaseRow( 0 ) );
+        assertEquals( 0, vm.getViewRow( 60 ) );
+        assertEquals( -1, vm.getViewRow( 61 ) );
+        assertEquals( -1, vm.getViewIndex( 61 ) );
+
+        vm.setOrder( order );
+        vm.setPageStart( 0 );
+        assertEquals( 30, vm.getRowCount() );
+        assertEquals( 98L, vm.getBaseRow( 0 ) );
+        assertEquals( 49, vm.getViewIndex( 0 ) );
+        assertEquals( -1, vm.getViewRow( 0 ) );
+        vm.setPageStart( 49 );
+        assertEquals( 19, vm.getViewRow( 0 ) );
+    }
+
+    public void testHugeView() {
+        long nrow = 3000000000L;
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        ViewerTableModel vm =
+            new ViewerTableModel( new PlasticStarTable( table ) );
+        assertEquals( nrow, vm.getViewRowCount() );
+        assertEquals( 3, vm.getPageCount() );
+        int psize = vm.getPageSize();
+        assertEquals( psize, vm.getRowCount() );
+
+        vm.setPageStart( nrow - 1 );
+        long start = 2L * psize;
+        assertEquals( start, vm.getPageStart() );
+        assertEquals( nrow - start, vm.getRowCount() );
+        assertEquals( start + 5, vm.getBaseRow( 5 ) );
+        assertEquals( 5, vm.getViewRow( start + 5 ) );
+        assertEquals( -1, vm.getViewRow( 5 ) );
+        assertEquals( nrow - 1, vm.getViewIndex( nrow - 1 ) );
+        assertEquals( -1, vm.getViewIndex( nrow ) );
+        long n = 0;
+        for ( Iterator<Long> it = vm.getRowIndexIterator();
+              it.hasNext() && n < 10; n++ ) {
+            assertEquals( n, it.next().longValue() );
+        }
+    }
+}
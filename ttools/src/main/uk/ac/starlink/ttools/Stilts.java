@@ -108,6 +108,7 @@ public class Stilts {
         taskFactory_.register( "plothist", taskPkg + "TableHistogram" );
         taskFactory_.register( "regquery", taskPkg + "RegQuery" );
         taskFactory_.register( "server", taskPkg + "StiltsServer" );
+        taskFactory_.register( "skyindex", taskPkg + "SkyIndex" );
         taskFactory_.register( "sqlclient", taskPkg + "SqlClient" );
         taskFactory_.register( "sqlskymatch", taskPkg + "SqlCone" );
         taskFactory_.register( "sqlupdate", taskPkg + "SqlUpdate" );
@@ -119,6 +120,7 @@ public class Stilts {
         taskFactory_.register( "tcatn", taskPkg + "TableCatN" );
         taskFactory_.register( "tcopy", taskPkg + "TableCopy" );
         taskFactory_.register( "tcube", taskPkg + "TableCube" );
+        taskFactory_.register( "tgroup", taskPkg + "TableGroup" );
         taskFactory_.register( "tjoin", taskPkg + "TableJoinN" );
         taskFactory_.register( "tloop", taskPkg + "TableLoop" );
         taskFactory_.register( "tmatch1", taskPkg + "TableMatch1" );
@@ -129,6 +131,7 @@ public class Stilts {
         taskFactory_.register( "tpipe", taskPkg + "TablePipe" );
         taskFactory_.register( "tskymap", taskPkg + "SkyDensityMap"  );
         taskFactory_.register( "tskymatch2", taskPkg + "SkyMatch2" );
+        taskFactory_.register( "tskymatchindex", taskPkg + "SkyIndexMatch" );
         taskFactory_.register( "votcopy", taskPkg + "VotCopy" );
         taskFactory_.register( "votlint", taskPkg + "VotLint" );
 
@@ -0,0 +1,411 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.Arrays;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.ValueInfo;
+
+/**
+ * Defines a function which combines the values of a column
+ * over the rows in each of a number of groups.
+ *
+ * <p>State for all groups is held in a single {@link Accumulator}
+ * object using primitive arrays indexed by group, so that the storage
+ * per group is small and no objects are allocated per group.
+ *
+ * @since    18 Oct 2026
+ * @see      HashGrouper
+ */
+public abstract class Aggregator {
+
+    private final String name_;
+    private final String description_;
+    private final boolean isNumeric_;
+
+    /** Counts non-blank values. */
+    public static final Aggregator COUNT;
+
+    /** Sums numeric values. */
+    public static final Aggregator SUM;
+
+    /** Averages numeric values. */
+    public static final Aggregator MEAN;
+
+    /** Finds minimum numeric value. */
+    public static final Aggregator MIN;
+
+    /** Finds maximum numeric value. */
+    public static final Aggregator MAX;
+
+    /** Takes the first value, blank or otherwise. */
+    public static final Aggregator FIRST;
+
+    private static final Aggregator[] AGGREGATORS = new Aggregator[] {
+        COUNT = new CountAggregator( "count" ),
+        SUM = new SumAggregator( "sum", false ),
+        MEAN = new SumAggregator( "mean", true ),
+        MIN = new ExtremumAggregator( "min", -1 ),
+        MAX = new ExtremumAggregator( "max", +1 ),
+        FIRST = new FirstAggregator( "first" ),
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param  name  aggregator name
+     * @param  description  short description
+     * @param  isNumeric  true if this aggregator only works on numeric values
+     */
+    protected Aggregator( String name, String description,
+                          boolean isNumeric ) {
+        name_ = name;
+        description_ = description;
+        isNumeric_ = isNumeric;
+    }
+
+    /**
+     * Returns this aggregator's name.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Returns a short description of this aggregator.
+     *
+     * @return  description
+     */
+    public String getDescription() {
+        return description_;
+    }
+
+    /**
+     * Indicates whether this aggregator can be used on values of
+     * a given class.
+     *
+     * @param  clazz  input value content class
+     * @return  true iff this aggregator is applicable
+     */
+    public boolean isApplicable( Class<?> clazz ) {
+        return ! isNumeric_ || Number.class.isAssignableFrom( clazz );
+    }
+
+    /**
+     * Returns metadata for the output of this aggregator applied to
+     * a column with given metadata.
+     *
+     * @param  info  input column metadata
+     * @return  output column metadata
+     */
+    public abstract ColumnInfo getResultInfo( ValueInfo info );
+
+    /**
+     * Returns a new accumulator for use with this aggregator.
+     *
+     * @return  new accumulator
+     */
+    public abstract Accumulator createAccumulator();
+
+    @Override
+    public String toString() {
+        return name_;
+    }
+
+    /**
+     * Returns all the known aggregators.
+     *
+     * @return  aggregator list
+     */
+    public static Aggregator[] getAggregators() {
+        return AGGREGATORS.clone();
+    }
+
+    /**
+     * Returns the aggregator with a given name.
+     *
+     * @param  name  aggregator name, case-insensitive
+     * @return  aggregator, or null if no such aggregator exists
+     */
+    public static Aggregator getAggregator( String name ) {
+        for ( Aggregator agg : AGGREGATORS ) {
+            if ( agg.getName().equalsIgnoreCase( name ) ) {
+                return agg;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accumulates values for all the groups of an aggregation.
+     * Groups are identified by consecutive integers starting at zero;
+     * the first value submitted for a group must have an index
+     * no greater than the number of groups seen so far.
+     */
+    public interface Accumulator {
+
+        /**
+         * Submits a value for accumulation.
+         *
+         * @param  igroup  group index
+         * @param  value   value to accumulate
+         */
+        void accept( int igroup, Object value );
+
+        /**
+         * Returns the aggregated result for a given group.
+         *
+         * @param  igroup  group index
+         * @return  result value
+         */
+        Object getResult( int igroup );
+    }
+
+    /**
+     * Returns a column metadata object for an aggregation result.
+     *
+     * @param  info  input column metadata
+     * @param  agg   aggregator
+     * @param  clazz  content class
+     * @param  copyUnits  whether units and UCD are inherited
+     * @return  new metadata
+     */
+    private static ColumnInfo createResultInfo( ValueInfo info,
+                                                Aggregator agg,
+                                                Class<?> clazz,
+                                                boolean copyUnits ) {
+        String descrip = info.getDescription();
+        ColumnInfo cinfo =
+            new ColumnInfo( info.getName() + "_" + agg.getName(), clazz,
+                            agg.getDescription() + " of " + info.getName()
+                          + ( descrip != null && descrip.trim().length() > 0
+                                  ? " (" + descrip + ")"
+                                  : "" ) );
+        if ( copyUnits ) {
+            cinfo.setUnitString( info.getUnitString() );
+            cinfo.setUCD( info.getUCD() );
+        }
+        return cinfo;
+    }
+
+    /**
+     * Returns the size of an array that can hold a given group index.
+     *
+     * @param  igroup  group index
+     * @param  length  current array length
+     * @return  new array length
+     */
+    private static int grow( int igroup, int length ) {
+        return (int) Math.min( Integer.MAX_VALUE,
+                               Math.max( igroup + 1L,
+                                         Math.max( 16L, length * 2L ) ) );
+    }
+
+    /**
+     * Returns a value as a double.
+     *
+     * @param  value  value
+     * @return  double value, or NaN if not numeric
+     */
+    private static double toDouble( Object value ) {
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Indicates whether a value is a non-null integer-typed number.
+     *
+     * @param  value  value
+     * @return  true iff value is a Long, Integer, Short or Byte
+     */
+    private static boolean isIntegral( Object value ) {
+        return value instanceof Long
+            || value instanceof Integer
+            || value instanceof Short
+            || value instanceof Byte;
+    }
+
+    /**
+     * Aggregator that counts non-blank values.
+     */
+    private static class CountAggregator extends Aggregator {
+        CountAggregator( String name ) {
+            super( name, "Number of non-blank values", false );
+        }
+        public ColumnInfo getResultInfo( ValueInfo info ) {
+            return createResultInfo( info, this, Long.class, false );
+        }
+        public Accumulator createAccumulator() {
+            return new Accumulator() {
+                long[] counts_ = new long[ 0 ];
+                public void accept( int igroup, Object value ) {
+                    if ( igroup >= counts_.length ) {
+                        counts_ = Arrays.copyOf( counts_,
+                                                 grow( igroup,
+                                                       counts_.length ) );
+                    }
+                    if ( ! Tables.isBlank( value ) ) {
+                        counts_[ igroup ]++;
+                    }
+                }
+                public Object getResult( int igroup ) {
+                    return Long.valueOf( counts_[ igroup ] );
+                }
+            };
+        }
+    }
+
+    /**
+     * Aggregator that sums or averages numeric values.
+     * Integer values are summed using long arithmetic,
+     * so that the result is exact (before conversion to a double)
+     * unless the long range is exceeded.
+     */
+    private static class SumAggregator extends Aggregator {
+        private final boolean isMean_;
+
+        /**
+         * Constructor.
+         *
+         * @param  name  name
+         * @param  isMean  true for mean, false for sum
+         */
+        SumAggregator( String name, boolean isMean ) {
+            super( name, isMean ? "Mean" : "Sum", true );
+            isMean_ = isMean;
+        }
+        public ColumnInfo getResultInfo( ValueInfo info ) {
+            return createResultInfo( info, this, Double.class, true );
+        }
+        public Accumulator createAccumulator() {
+            return new Accumulator() {
+                double[] sums_ = new double[ 0 ];
+                long[] lsums_ = new long[ 0 ];
+                long[] counts_ = new long[ 0 ];
+                public void accept( int igroup, Object value ) {
+                    if ( igroup >= sums_.length ) {
+                        int leng = grow( igroup, sums_.length );
+                        sums_ = Arrays.copyOf( sums_, leng );
+                        lsums_ = Arrays.copyOf( lsums_, leng );
+                        counts_ = Arrays.copyOf( counts_, leng );
+                    }
+                    if ( isIntegral( value ) ) {
+                        long lval = ((Number) value).longValue();
+                        long lsum = lsums_[ igroup ];
+                        long lsum1 = lsum + lval;
+
+                        /* On overflow, transfer the integer sum so far
+                         * to the floating point sum. */
+                        if ( ( ( lsum ^ lsum1 ) & ( lval ^ lsum1 ) ) < 0 ) {
+                            sums_[ igroup ] += lsum;
+                            lsum1 = lval;
+                        }
+                        lsums_[ igroup ] = lsum1;
+                        counts_[ igroup ]++;
+                    }
+                    else {
+                        double dval = toDouble( value );
+                        if ( ! Double.isNaN( dval ) ) {
+                            sums_[ igroup ] += dval;
+                            counts_[ igroup ]++;
+                        }
+                    }
+                }
+                public Object getResult( int igroup ) {
+                    long n = counts_[ igroup ];
+                    double sum = sums_[ igroup ] + lsums_[ igroup ];
+                    if ( isMean_ ) {
+                        return n > 0 ? Double.valueOf( sum / n )
+                                     : null;
+                    }
+                    else {
+                        return Double.valueOf( sum );
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Aggregator that finds the minimum or maximum numeric value.
+     */
+    private static class ExtremumAggregator extends Aggregator {
+        private final int sense_;
+
+        /**
+         * Constructor.
+         *
+         * @param  name  name
+         * @param  sense  -1 for minimum, +1 for maximum
+         */
+        ExtremumAggregator( String name, int sense ) {
+            super( name, sense > 0 ? "Maximum" : "Minimum", true );
+            sense_ = sense;
+        }
+        public ColumnInfo getResultInfo( ValueInfo info ) {
+            return createResultInfo( info, this, Double.class, true );
+        }
+        public Accumulator createAccumulator() {
+            return new Accumulator() {
+                double[] values_ = new double[ 0 ];
+                public void accept( int igroup, Object value ) {
+                    if ( igroup >= values_.length ) {
+                        int leng0 = values_.length;
+                        values_ = Arrays.copyOf( values_,
+                                                 grow( igroup, leng0 ) );
+                        Arrays.fill( values_, leng0, values_.length,
+                                     Double.NaN );
+                    }
+                    double dval = toDouble( value );
+                    if ( ! Double.isNaN( dval ) ) {
+                        double v0 = values_[ igroup ];
+                        if ( Double.isNaN( v0 ) ||
+                             ( sense_ > 0 ? dval > v0 : dval < v0 ) ) {
+                            values_[ igroup ] = dval;
+                        }
+                    }
+                }
+                public Object getResult( int igroup ) {
+                    double dval = values_[ igroup ];
+                    return Double.isNaN( dval ) ? null
+                                                : Double.valueOf( dval );
+                }
+            };
+        }
+    }
+
+    /**
+     * Aggregator that takes the first value in each group.
+     */
+    private static class FirstAggregator extends Aggregator {
+        FirstAggregator( String name ) {
+            super( name, "First value", false );
+        }
+        public ColumnInfo getResultInfo( ValueInfo info ) {
+            ColumnInfo cinfo = new ColumnInfo( info );
+            cinfo.setName( info.getName() + "_" + getName() );
+            return cinfo;
+        }
+        public Accumulator createAccumulator() {
+            return new Accumulator() {
+                Object[] values_ = new Object[ 0 ];
+                int ngroup_;
+                public void accept( int igroup, Object value ) {
+                    if ( igroup >= ngroup_ ) {
+                        if ( igroup >= values_.length ) {
+                            values_ = Arrays.copyOf( values_,
+                                                     grow( igroup,
+                                                           values_.length ) );
+                        }
+                        values_[ igroup ] = value;
+                        ngroup_ = igroup + 1;
+                    }
+                }
+                public Object getResult( int igroup ) {
+                    return values_[ igroup ];
+                }
+            };
+        }
+    }
+}
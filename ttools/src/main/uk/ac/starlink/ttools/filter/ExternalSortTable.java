@@ -0,0 +1,516 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.table.storage.ByteStoreRowStore;
+import uk.ac.starlink.table.storage.ListRowStore;
+
+/**
+ * Wrapper table which presents the rows of its base table sorted
+ * on one or more JEL expressions, using an external merge sort.
+ * The base table is read sequentially, and fixed-size runs of rows
+ * are sorted in memory and written to scratch byte stores obtained from
+ * a {@link StoragePolicy}.  The runs are then merged to provide
+ * the sorted row sequence.  As long as the policy supplies disk-based
+ * byte stores, for instance {@link StoragePolicy#PREFER_DISK},
+ * heap usage is therefore bounded by the run size rather than
+ * the table size, and random access to the base table is not required.
+ *
+ * <p>The sort is stable, and uses the same collation rules as
+ * {@link uk.ac.starlink.table.TableSorter}.
+ * This table does not provide random access.
+ * Each call to {@link #getRowSequence} performs the sort afresh.
+ *
+ * @since    18 Oct 2026
+ */
+public class ExternalSortTable extends WrapperStarTable {
+
+    private final StarTable keyTable_;
+    private final int ncol_;
+    private final int[] keyCols_;
+    private final StoragePolicy policy_;
+    private final int runSize_;
+    private final Comparator<Object[]> rowComparator_;
+
+    /** Maximum number of runs merged in a single pass. */
+    public static final int MAX_MERGE = 128;
+
+    /** Default number of table cells held in memory for each run. */
+    public static final int DFLT_RUN_CELLS = 8 * 1024 * 1024;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.filter" );
+
+    /**
+     * Constructor.
+     *
+     * @param  baseTable  table supplying the rows to sort
+     * @param  keys   JEL expressions for sort keys;
+     *                first is most significant for ordering, second next, etc
+     * @param   up  true for sorting into ascending order, false for
+     *          descending order
+     * @param   nullsLast  true if blank values should be considered
+     *          last in the collation order, false if they should
+     *          be considered first
+     * @param   policy  storage policy supplying byte stores
+     *                  for sorted runs; should normally be disk-based
+     * @param   runSize  maximum number of rows held in memory
+     *                   at once for sorting; if &lt;=0 a default is used
+     * @throws  IOException  if the expressions cannot be compiled
+     */
+    public ExternalSortTable( StarTable baseTable, String[] keys, boolean up,
+                              boolean nullsLast, StoragePolicy policy,
+                              int runSize )
+            throws IOException {
+        super( baseTable );
+        ncol_ = baseTable.getColumnCount();
+        int nkey = keys.length;
+        keyCols_ = new int[ nkey ];
+        for ( int ik = 0; ik < nkey; ik++ ) {
+            keyCols_[ ik ] = ncol_ + ik;
+        }
+        keyTable_ =
+            new AddColumnsTable( baseTable,
+                                 new JELColumnSupplement( baseTable, keys,
+                                                          null ) );
+        policy_ = policy;
+        runSize_ = runSize > 0
+                 ? runSize
+                 : Math.max( 1000, DFLT_RUN_CELLS / ( ncol_ + nkey ) );
+        rowComparator_ = new RowComparator( keyCols_, up, nullsLast );
+    }
+
+    public boolean isRandom() {
+        return false;
+    }
+
+    public Object getCell( long irow, int icol ) {
+        throw new UnsupportedOperationException( "No random access" );
+    }
+
+    public Object[] getRow( long irow ) {
+        throw new UnsupportedOperationException( "No random access" );
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        List<RowStore> runs = new ArrayList<RowStore>();
+        boolean done = false;
+        try {
+
+            /* Read the input table, writing sorted runs to storage. */
+            List<Object[]> buffer = new ArrayList<Object[]>();
+            RowSequence rseq = keyTable_.getRowSequence();
+            try {
+                while ( rseq.next() ) {
+                    buffer.add( rseq.getRow() );
+                    if ( buffer.size() >= runSize_ ) {
+                        runs.add( writeRun( buffer ) );
+                        buffer.clear();
+                    }
+                }
+            }
+            finally {
+                rseq.close();
+            }
+
+            /* If everything fits in a single run, no scratch storage
+             * is required. */
+            if ( runs.isEmpty() ) {
+                Object[][] rows = buffer.toArray( new Object[ 0 ][] );
+                Arrays.sort( rows, rowComparator_ );
+                done = true;
+                return new ArraySequence( rows );
+            }
+            if ( buffer.size() > 0 ) {
+                runs.add( writeRun( buffer ) );
+                buffer.clear();
+            }
+
+            /* Reduce the number of runs, if necessary, so that they can
+             * be merged in a single pass.  Each pass merges groups of
+             * adjacent runs, retaining their order so that the sort
+             * is stable. */
+            while ( runs.size() > MAX_MERGE ) {
+                List<RowStore> nextRuns = new ArrayList<RowStore>();
+                boolean passDone = false;
+                try {
+                    for ( int ir = 0; ir < runs.size(); ir += MAX_MERGE ) {
+                        List<RowStore> group =
+                            new ArrayList<RowStore>(
+                                runs.subList( ir, Math.min( ir + MAX_MERGE,
+                                                            runs.size() ) ) );
+                        nextRuns.add( mergeRuns( group ) );
+                    }
+                    passDone = true;
+                }
+                finally {
+                    if ( ! passDone ) {
+                        for ( RowStore run : nextRuns ) {
+                            discardRun( run );
+                        }
+                    }
+                }
+                runs = nextRuns;
+            }
+            logger_.info( "Merging " + runs.size() + " sorted runs" );
+            MergeSequence mseq = new MergeSequence( runs );
+            done = true;
+            return mseq;
+        }
+
+        /* If anything went wrong, release any scratch storage. */
+        finally {
+            if ( ! done ) {
+                for ( RowStore run : runs ) {
+                    discardRun( run );
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts a list of rows and writes them to a new row store.
+     *
+     * @param  rows  unsorted rows; unaffected by this method
+     * @return  row store containing the sorted rows
+     */
+    private RowStore writeRun( List<Object[]> rows ) throws IOException {
+        Object[][] rowArray = rows.toArray( new Object[ 0 ][] );
+        Arrays.sort( rowArray, rowComparator_ );
+        RowStore store = createRunStore();
+        boolean done = false;
+        try {
+            for ( Object[] row : rowArray ) {
+                store.acceptRow( row );
+            }
+            store.endRows();
+            done = true;
+        }
+        finally {
+            if ( ! done ) {
+                discardRun( store );
+            }
+        }
+        logger_.config( "Wrote sorted run of " + rowArray.length + " rows" );
+        return store;
+    }
+
+    /**
+     * Merges a list of sorted runs into a single sorted run.
+     * The input runs are discarded.
+     *
+     * @param  runs  sorted runs in input order
+     * @return  merged run
+     */
+    private RowStore mergeRuns( List<RowStore> runs ) throws IOException {
+        RowStore merged = createRunStore();
+        boolean done = false;
+        try {
+            MergeSequence mseq = new MergeSequence( runs );
+            try {
+                while ( mseq.next() ) {
+                    merged.acceptRow( mseq.getKeyRow() );
+                }
+            }
+            finally {
+                mseq.close();
+            }
+            merged.endRows();
+            done = true;
+        }
+        finally {
+            if ( ! done ) {
+                discardRun( merged );
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns a new row store for holding a sorted run.
+     * Rows are serialized to a byte store from this table's storage
+     * policy, unless the columns are not suitable for serialization,
+     * in which case they are held in memory.
+     *
+     * @return  new row store ready to accept rows
+     */
+    private RowStore createRunStore() throws IOException {
+        ByteStoreRowStore store =
+            new ByteStoreRowStore( policy_.makeByteStore() );
+        try {
+            store.acceptMetadata( keyTable_ );
+            return store;
+        }
+        catch ( TableFormatException e ) {
+            store.getByteStore().close();
+            logger_.warning( "Scratch storage unsuitable for table: " + e
+                           + " - using memory instead" );
+            RowStore listStore = new ListRowStore();
+            listStore.acceptMetadata( keyTable_ );
+            return listStore;
+        }
+    }
+
+    /**
+     * Releases any resources associated with a row store
+     * that is no longer required.
+     * Works for both kinds of row store created by this table,
+     * and it is harmless to call it more than once for the same store.
+     *
+     * @param  store  row store
+     */
+    private static void discardRun( RowStore store ) {
+        if ( store instanceof ByteStoreRowStore ) {
+            ((ByteStoreRowStore) store).getByteStore().close();
+        }
+        else if ( store instanceof ListRowStore ) {
+            try {
+                ((RowListStarTable) store.getStarTable()).clearRows();
+            }
+
+            /* Rows not ended; the store will just be garbage collected. */
+            catch ( IllegalStateException e ) {
+            }
+        }
+    }
+
+    /**
+     * Compares rows of the key table on the values of the key columns.
+     * Blank values are ordered as by
+     * {@link uk.ac.starlink.table.TableSorter}.
+     */
+    private static class RowComparator implements Comparator<Object[]> {
+        private final int[] keyCols_;
+        private final int sense_;
+        private final int nullCmp_;
+
+        /**
+         * Constructor.
+         *
+         * @param  keyCols  indices of key columns
+         * @param   up  true for ascending order
+         * @param   nullsLast  true for blanks last in collation order
+         */
+        RowComparator( int[] keyCols, boolean up, boolean nullsLast ) {
+            keyCols_ = keyCols;
+            sense_ = up ? +1 : -1;
+            nullCmp_ = ( up ^ nullsLast ) ? -1 : +1;
+        }
+
+        @SuppressWarnings("unchecked")
+        public int compare( Object[] row1, Object[] row2 ) {
+            for ( int icol : keyCols_ ) {
+                Object v1 = row1[ icol ];
+                Object v2 = row2[ icol ];
+                boolean null1 = Tables.isBlank( v1 );
+                boolean null2 = Tables.isBlank( v2 );
+                int c;
+                if ( null1 && null2 ) {
+                    c = 0;
+                }
+                else if ( null1 ) {
+                    c = nullCmp_;
+                }
+                else if ( null2 ) {
+                    c = -nullCmp_;
+                }
+                else {
+                    c = sense_ * ((Comparable<Object>) v1).compareTo( v2 );
+                }
+                if ( c != 0 ) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Row sequence over the base columns of an array of key table rows.
+     */
+    private class ArraySequence implements RowSequence {
+        private final Object[][] rows_;
+        private int irow_;
+        private Object[] row_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rows  key table rows
+         */
+        ArraySequence( Object[][] rows ) {
+            rows_ = rows;
+            irow_ = -1;
+        }
+
+        public boolean next() {
+            if ( irow_ + 1 < rows_.length ) {
+                row_ = rows_[ ++irow_ ];
+                rows_[ irow_ ] = null;
+                return true;
+            }
+            else {
+                row_ = null;
+                return false;
+            }
+        }
+
+        public Object getCell( int icol ) {
+            return getKeyRow()[ icol ];
+        }
+
+        public Object[] getRow() {
+            return Arrays.copyOf( getKeyRow(), ncol_ );
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Returns the current key table row.
+         *
+         * @return  row including key columns
+         */
+        Object[] getKeyRow() {
+            if ( row_ == null ) {
+                throw new IllegalStateException( "No current row" );
+            }
+            return row_;
+        }
+    }
+
+    /**
+     * Row sequence which performs a k-way merge of sorted runs.
+     * The rows it supplies are those of the key table,
+     * but {@link #getRow} is truncated to the base table columns.
+     * Runs are discarded when the sequence is closed.
+     */
+    private class MergeSequence implements RowSequence {
+        private final List<RowStore> runs_;
+        private final PriorityQueue<RunHead> queue_;
+        private RunHead current_;
+        private Object[] row_;
+
+        /**
+         * Constructor.
+         *
+         * @param  runs  row stores containing sorted runs
+         */
+        MergeSequence( List<RowStore> runs ) throws IOException {
+            runs_ = runs;
+            queue_ = new PriorityQueue<RunHead>( Math.max( 1, runs.size() ) );
+            int irun = 0;
+            for ( RowStore run : runs ) {
+                RunHead head =
+                    new RunHead( run.getStarTable().getRowSequence(), irun++ );
+                if ( head.advance() ) {
+                    queue_.add( head );
+                }
+            }
+        }
+
+        public boolean next() throws IOException {
+            if ( current_ != null ) {
+                if ( current_.advance() ) {
+                    queue_.add( current_ );
+                }
+                current_ = null;
+            }
+            current_ = queue_.poll();
+            row_ = current_ == null ? null : current_.row_;
+            return current_ != null;
+        }
+
+        public Object getCell( int icol ) {
+            return getKeyRow()[ icol ];
+        }
+
+        public Object[] getRow() {
+            return Arrays.copyOf( getKeyRow(), ncol_ );
+        }
+
+        public void close() throws IOException {
+            if ( current_ != null ) {
+                current_.rseq_.close();
+                current_ = null;
+            }
+            for ( RunHead head : queue_ ) {
+                head.rseq_.close();
+            }
+            queue_.clear();
+            for ( RowStore run : runs_ ) {
+                discardRun( run );
+            }
+            runs_.clear();
+        }
+
+        /**
+         * Returns the current key table row.
+         *
+         * @return  row including key columns
+         */
+        Object[] getKeyRow() {
+            if ( row_ == null ) {
+                throw new IllegalStateException( "No current row" );
+            }
+            return row_;
+        }
+    }
+
+    /**
+     * Tracks the current position in one sorted run.
+     * Ties are resolved by run index, which keeps the merge stable.
+     */
+    private class RunHead implements Comparable<RunHead> {
+        final RowSequence rseq_;
+        final int irun_;
+        Object[] row_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rseq  row sequence over run
+         * @param  irun  index of run in input order
+         */
+        RunHead( RowSequence rseq, int irun ) {
+            rseq_ = rseq;
+            irun_ = irun;
+        }
+
+        /**
+         * Advances to the next row of the run.
+         * The run's sequence is closed if it is exhausted.
+         *
+         * @return  true iff there is a new current row
+         */
+        boolean advance() throws IOException {
+            if ( rseq_.next() ) {
+                row_ = rseq_.getRow();
+                return true;
+            }
+            else {
+                row_ = null;
+                rseq_.close();
+                return false;
+            }
+        }
+
+        public int compareTo( RunHead other ) {
+            int c = rowComparator_.compare( row_, other.row_ );
+            return c != 0 ? c : Integer.compare( irun_, other.irun_ );
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import uk.ac.starlink.table.Tables;
+
+/**
+ * Maps the key values of table rows to consecutive integer group indices.
+ * Blank key values (including NaN) all count as equal to each other.
+ *
+ * <p>Instances are obtained using the {@link #createIndex createIndex}
+ * factory method, which uses an open-addressing table of primitive
+ * values for a single numeric key column,
+ * and a general hash map otherwise.
+ *
+ * @since    18 Oct 2026
+ */
+abstract class GroupKeyIndex {
+
+    /**
+     * Returns the group index for the key of a given row.
+     *
+     * @param  row  table row
+     * @param  canAdd  whether a new group may be created if the key
+     *                 has not been seen before
+     * @return  group index, or -1 if the key is new and
+     *          <code>canAdd</code> is false
+     */
+    public abstract int getGroupIndex( Object[] row, boolean canAdd );
+
+    /**
+     * Returns a well-mixed hash code for the key of a given row.
+     * Rows with equal keys have equal hashes.
+     *
+     * @param  row  table row
+     * @return  hash code
+     */
+    public abstract long getKeyHash( Object[] row );
+
+    /**
+     * Returns the number of groups currently in this index.
+     *
+     * @return  group count
+     */
+    public abstract int getGroupCount();
+
+    /**
+     * Returns a key value for a group.
+     *
+     * @param  igroup  group index
+     * @param  ik   index into key columns
+     * @return  key value, or null for blank
+     */
+    public abstract Object getKeyValue( int igroup, int ik );
+
+    /**
+     * Returns an index suitable for given key columns.
+     *
+     * @param  keyCols  indices of key columns in rows
+     * @param  keyClasses  content classes of key columns
+     * @return  new index
+     */
+    public static GroupKeyIndex createIndex( int[] keyCols,
+                                             Class<?>[] keyClasses ) {
+        if ( keyCols.length == 1 ) {
+            Class<?> clazz = keyClasses[ 0 ];
+            if ( clazz == Byte.class || clazz == Short.class ||
+                 clazz == Integer.class || clazz == Long.class ||
+                 clazz == Float.class || clazz == Double.class ) {
+                return new LongKeyIndex( keyCols[ 0 ], clazz );
+            }
+        }
+        return new ObjectKeyIndex( keyCols );
+    }
+
+    /**
+     * Scrambles the bits of a long integer.
+     *
+     * @param  h  input value
+     * @return  mixed value
+     */
+    static long mix( long h ) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Index for a single numeric key column,
+     * which stores keys as long values in an open-addressing hash table.
+     * Floating point keys are stored as their bit patterns.
+     */
+    private static class LongKeyIndex extends GroupKeyIndex {
+
+        private final int icol_;
+        private final Class<?> clazz_;
+        private final boolean isFloating_;
+        private long[] slotKeys_;
+        private int[] slotGroups_;
+        private long[] groupKeys_;
+        private int mask_;
+        private int ngroup_;
+        private int nullGroup_;
+
+        private static final long NULL_HASH = 0x5bd1e9955bd1e995L;
+
+        /**
+         * Constructor.
+         *
+         * @param  icol  index of key column
+         * @param  clazz  content class of key column
+         */
+        LongKeyIndex( int icol, Class<?> clazz ) {
+            icol_ = icol;
+            clazz_ = clazz;
+            isFloating_ = clazz == Float.class || clazz == Double.class;
+            int nslot = 64;
+            slotKeys_ = new long[ nslot ];
+            slotGroups_ = new int[ nslot ];
+            groupKeys_ = new long[ nslot / 2 ];
+            mask_ = nslot - 1;
+            nullGroup_ = -1;
+        }
+
+        public int getGroupIndex( Object[] row, boolean canAdd ) {
+            Object value = row[ icol_ ];
+            if ( isBlank( value ) ) {
+                if ( nullGroup_ < 0 && canAdd ) {
+                    nullGroup_ = addGroup( 0L );
+                }
+                return nullGroup_;
+            }
+            long key = toLong( value );
+            int is = (int) mix( key ) & mask_;
+            while ( true ) {
+                int ig1 = slotGroups_[ is ];
+                if ( ig1 == 0 ) {
+                    if ( ! canAdd ) {
+                        return -1;
+                    }
+                    int ig = addGroup( key );
+                    slotKeys_[ is ] = key;
+                    slotGroups_[ is ] = ig + 1;
+                    if ( ngroup_ * 2 > slotKeys_.length ) {
+                        rehash();
+                    }
+                    return ig;
+                }
+                else if ( slotKeys_[ is ] == key ) {
+                    return ig1 - 1;
+                }
+                is = ( is + 1 ) & mask_;
+            }
+        }
+
+        public long getKeyHash( Object[] row ) {
+            Object value = row[ icol_ ];
+            return isBlank( value ) ? NULL_HASH
+                                    : mix( toLong( value ) ^ NULL_HASH );
+        }
+
+        public int getGroupCount() {
+            return ngroup_;
+        }
+
+        public Object getKeyValue( int igroup, int ik ) {
+            if ( igroup == nullGroup_ ) {
+                return null;
+            }
+            long key = groupKeys_[ igroup ];
+            if ( clazz_ == Double.class ) {
+                return Double.valueOf( Double.longBitsToDouble( key ) );
+            }
+            else if ( clazz_ == Float.class ) {
+                return Float.valueOf( (float)
+                                      Double.longBitsToDouble( key ) );
+            }
+            else if ( clazz_ == Byte.class ) {
+                return Byte.valueOf( (byte) key );
+            }
+            else if ( clazz_ == Short.class ) {
+                return Short.valueOf( (short) key );
+            }
+            else if ( clazz_ == Integer.class ) {
+                return Integer.valueOf( (int) key );
+            }
+            else {
+                return Long.valueOf( key );
+            }
+        }
+
+        /**
+         * Records a new group.
+         *
+         * @param  key  key value
+         * @return  new group index
+         */
+        private int addGroup( long key ) {
+            if ( ngroup_ == groupKeys_.length ) {
+                groupKeys_ = Arrays.copyOf( groupKeys_, ngroup_ * 2 );
+            }
+            groupKeys_[ ngroup_ ] = key;
+            return ngroup_++;
+        }
+
+        /**
+         * Doubles the size of the hash table.
+         */
+        private void rehash() {
+            long[] keys0 = slotKeys_;
+            int[] groups0 = slotGroups_;
+            int nslot = keys0.length * 2;
+            slotKeys_ = new long[ nslot ];
+            slotGroups_ = new int[ nslot ];
+            mask_ = nslot - 1;
+            for ( int is0 = 0; is0 < keys0.length; is0++ ) {
+                int ig1 = groups0[ is0 ];
+                if ( ig1 != 0 ) {
+                    long key = keys0[ is0 ];
+                    int is = (int) mix( key ) & mask_;
+                    while ( slotGroups_[ is ] != 0 ) {
+                        is = ( is + 1 ) & mask_;
+                    }
+                    slotKeys_[ is ] = key;
+                    slotGroups_[ is ] = ig1;
+                }
+            }
+        }
+
+        /**
+         * Indicates whether a key value is blank.
+         *
+         * @param  value  key value
+         * @return  true iff blank
+         */
+        private boolean isBlank( Object value ) {
+            return ! ( value instanceof Number )
+                || ( isFloating_ && Double.isNaN( ((Number) value)
+                                                 .doubleValue() ) );
+        }
+
+        /**
+         * Converts a non-blank key value to a long.
+         *
+         * @param  value  key value
+         * @return  long representation
+         */
+        private long toLong( Object value ) {
+            Number num = (Number) value;
+            if ( isFloating_ ) {
+
+                /* Adding zero turns -0 into +0. */
+                return Double.doubleToLongBits( num.doubleValue() + 0.0 );
+            }
+            else {
+                return num.longValue();
+            }
+        }
+    }
+
+    /**
+     * General-purpose index which stores keys as objects in a HashMap.
+     */
+    private static class ObjectKeyIndex extends GroupKeyIndex {
+
+        private final int[] keyCols_;
+        private final Map<RowKey,Integer> map_;
+        private final List<RowKey> keys_;
+
+        /**
+         * Constructor.
+         *
+         * @param  keyCols  indices of key columns
+         */
+        ObjectKeyIndex( int[] keyCols ) {
+            keyCols_ = keyCols;
+            map_ = new HashMap<RowKey,Integer>();
+            keys_ = new ArrayList<RowKey>();
+        }
+
+        public int getGroupIndex( Object[] row, boolean canAdd ) {
+            RowKey key = new RowKey( row, keyCols_ );
+            Integer ig = map_.get( key );
+            if ( ig != null ) {
+                return ig.intValue();
+            }
+            else if ( canAdd ) {
+                int ig1 = keys_.size();
+                map_.put( key, Integer.valueOf( ig1 ) );
+                keys_.add( key );
+                return ig1;
+            }
+            else {
+                return -1;
+            }
+        }
+
+        public long getKeyHash( Object[] row ) {
+            return mix( new RowKey( row, keyCols_ ).hashCode() );
+        }
+
+        public int getGroupCount() {
+            return keys_.size();
+        }
+
+        public Object getKeyValue( int igroup, int ik ) {
+            return keys_.get( igroup ).values_[ ik ];
+        }
+    }
+
+    /**
+     * Map key representing the key values of a row.
+     * Array values are compared by content.
+     */
+    private static class RowKey {
+        final Object[] values_;
+        final int hash_;
+
+        /**
+         * Constructor.
+         *
+         * @param  row  table row
+         * @param  keyCols  indices of key columns
+         */
+        RowKey( Object[] row, int[] keyCols ) {
+            int nk = keyCols.length;
+            values_ = new Object[ nk ];
+            for ( int ik = 0; ik < nk; ik++ ) {
+                Object value = row[ keyCols[ ik ] ];
+                values_[ ik ] = Tables.isBlank( value ) ? null : value;
+            }
+            hash_ = Arrays.deepHashCode( values_ );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash_;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            return o instanceof RowKey
+                && ((RowKey) o).hash_ == hash_
+                && Arrays.deepEquals( ((RowKey) o).values_, values_ );
+        }
+    }
+}
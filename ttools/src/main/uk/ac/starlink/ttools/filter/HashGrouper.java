@@ -0,0 +1,438 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.RandomStarTable;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.table.storage.ByteStoreRowStore;
+import uk.ac.starlink.table.storage.ListRowStore;
+
+/**
+ * Performs hash-based grouping and aggregation of table rows.
+ * Rows are grouped on the values of one or more key columns,
+ * and for each group the output table contains the key values,
+ * optionally a row count, and the result of applying
+ * a number of {@link Aggregator}s to given columns.
+ *
+ * <p>The input table is read sequentially, once, and groups are
+ * accumulated in memory using compact primitive storage.
+ * If the number of groups exceeds a given limit, rows belonging to
+ * groups not already in memory are spilled to temporary disk files,
+ * partitioned by key hash.
+ * Each partition is then grouped in the same way in turn,
+ * so that heap usage is bounded by the group limit rather than
+ * by the number of distinct keys.
+ *
+ * <p>Output rows appear in order of first appearance of each key,
+ * except that if spilling has taken place, the groups from
+ * spilled rows follow those that were held in memory.
+ *
+ * @since    18 Oct 2026
+ */
+public class HashGrouper {
+
+    private final int[] keyCols_;
+    private final ValueInfo countInfo_;
+    private final int[] aggCols_;
+    private final Aggregator[] aggs_;
+    private final StoragePolicy policy_;
+    private final int maxGroups_;
+
+    /** Default maximum number of groups held in memory. */
+    public static final int DFLT_MAX_GROUPS = 1000000;
+
+    /** Number of partitions into which spilled rows are divided. */
+    public static final int NPART = 16;
+
+    /** Spill depth beyond which the group limit is ignored. */
+    private static final int MAX_LEVEL = 12;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.filter" );
+
+    /**
+     * Constructor.
+     *
+     * @param  keyCols  indices of input columns to group on
+     * @param  countInfo  metadata for an output column giving the
+     *                    number of rows in each group; content class
+     *                    must be Long or Integer.  May be null for none
+     * @param  aggCols  indices of input columns to aggregate
+     * @param  aggs     aggregators corresponding to each element of
+     *                  <code>aggCols</code>
+     * @param  policy   storage policy for the output table,
+     *                  used only if spilling takes place
+     * @param  maxGroups  maximum number of groups held in memory at once
+     */
+    public HashGrouper( int[] keyCols, ValueInfo countInfo, int[] aggCols,
+                        Aggregator[] aggs, StoragePolicy policy,
+                        int maxGroups ) {
+        if ( aggCols.length != aggs.length ) {
+            throw new IllegalArgumentException( "Array length mismatch" );
+        }
+        if ( countInfo != null &&
+             countInfo.getContentClass() != Long.class &&
+             countInfo.getContentClass() != Integer.class ) {
+            throw new IllegalArgumentException( "Bad count class" );
+        }
+        keyCols_ = keyCols;
+        countInfo_ = countInfo;
+        aggCols_ = aggCols;
+        aggs_ = aggs;
+        policy_ = policy;
+        maxGroups_ = Math.max( 1, maxGroups );
+    }
+
+    /**
+     * Reads an input table and returns a table containing one row
+     * for each group.
+     * The output columns are the key columns, then the count column
+     * if any, then one column for each aggregation.
+     * The returned table provides random access.
+     *
+     * @param  table  input table
+     * @return  grouped table
+     */
+    public StarTable groupTable( StarTable table ) throws IOException {
+
+        /* Restrict the input to the columns that are required,
+         * since these are what get written if rows are spilled. */
+        BitSet colFlags = new BitSet();
+        for ( int ic : keyCols_ ) {
+            colFlags.set( ic );
+        }
+        for ( int ic : aggCols_ ) {
+            colFlags.set( ic );
+        }
+        int[] colMap = new int[ table.getColumnCount() ];
+        int[] pcols = new int[ colFlags.cardinality() ];
+        int jc = 0;
+        for ( int ic = colFlags.nextSetBit( 0 ); ic >= 0;
+              ic = colFlags.nextSetBit( ic + 1 ) ) {
+            colMap[ ic ] = jc;
+            pcols[ jc++ ] = ic;
+        }
+        StarTable ptable = new ColumnPermutedStarTable( table, pcols );
+        int[] keyCols = remap( keyCols_, colMap );
+        int[] aggCols = remap( aggCols_, colMap );
+
+        /* Perform an in-memory pass.  If it doesn't need to spill,
+         * that's it. */
+        Pass pass = new Pass( ptable, keyCols, aggCols, 0 );
+        if ( pass.parts_ == null ) {
+            return pass.resultTable_;
+        }
+
+        /* Otherwise, write the in-memory results to scratch storage
+         * and process each spilled partition in turn. */
+        RowStore out = policy_.makeConfiguredRowStore( pass.resultTable_ );
+        pass.writeResults( out );
+        processPartitions( pass.parts_, keyCols, aggCols, 1, out );
+        out.endRows();
+        return out.getStarTable();
+    }
+
+    /**
+     * Groups the rows from a number of spilled partitions,
+     * writing results to a given sink.
+     *
+     * @param  parts  spilled partitions; discarded after use
+     * @param  keyCols  key column indices in partition tables
+     * @param  aggCols  aggregation column indices in partition tables
+     * @param  level  spill depth
+     * @param  out   destination for grouped rows
+     */
+    private void processPartitions( RowStore[] parts, int[] keyCols,
+                                    int[] aggCols, int level, RowStore out )
+            throws IOException {
+        for ( int ip = 0; ip < parts.length; ip++ ) {
+            RowStore part = parts[ ip ];
+            parts[ ip ] = null;
+            StarTable ptable = part.getStarTable();
+            if ( ptable.getRowCount() != 0 ) {
+                Pass pass = new Pass( ptable, keyCols, aggCols, level );
+                pass.writeResults( out );
+                if ( pass.parts_ != null ) {
+                    processPartitions( pass.parts_, keyCols, aggCols,
+                                       level + 1, out );
+                }
+            }
+            discard( part );
+        }
+    }
+
+    /**
+     * Returns the partition index for a key hash at a given spill depth.
+     *
+     * @param  hash  key hash
+     * @param  level  spill depth
+     * @return  partition index in range 0..NPART-1
+     */
+    private static int getPartition( long hash, int level ) {
+        long h = GroupKeyIndex.mix( hash + level * 0x9e3779b97f4a7c15L );
+        return (int) ( ( h >>> 32 ) % NPART );
+    }
+
+    /**
+     * Maps an array of column indices.
+     *
+     * @param  icols  input indices
+     * @param  colMap  mapping from input to output indices
+     * @return  output indices
+     */
+    private static int[] remap( int[] icols, int[] colMap ) {
+        int[] jcols = new int[ icols.length ];
+        for ( int i = 0; i < icols.length; i++ ) {
+            jcols[ i ] = colMap[ icols[ i ] ];
+        }
+        return jcols;
+    }
+
+    /**
+     * Returns a new row store for holding spilled rows.
+     * Rows are serialized to a temporary disk file, unless the columns
+     * are not suitable for serialization, in which case they are
+     * held in memory.
+     *
+     * @param  meta  table supplying metadata for the rows
+     * @return  new row store ready to accept rows
+     */
+    private static RowStore createSpillStore( StarTable meta )
+            throws IOException {
+        ByteStoreRowStore store =
+            new ByteStoreRowStore( StoragePolicy.PREFER_DISK
+                                  .makeByteStore() );
+        try {
+            store.acceptMetadata( meta );
+            return store;
+        }
+        catch ( TableFormatException e ) {
+            store.getByteStore().close();
+            logger_.warning( "Scratch storage unsuitable for table: " + e
+                           + " - using memory instead" );
+            RowStore listStore = new ListRowStore();
+            listStore.acceptMetadata( meta );
+            return listStore;
+        }
+    }
+
+    /**
+     * Releases any resources associated with a spill store
+     * that is no longer required.
+     *
+     * @param  store  row store created by {@link #createSpillStore}
+     */
+    private static void discard( RowStore store ) {
+        if ( store instanceof ByteStoreRowStore ) {
+            ((ByteStoreRowStore) store).getByteStore().close();
+        }
+        else if ( store instanceof ListRowStore ) {
+            ((RowListStarTable) store.getStarTable()).clearRows();
+        }
+    }
+
+    /**
+     * Performs a single grouping pass over a table.
+     * On construction the table is read; the results are then available
+     * as a table, along with any partitions of spilled rows.
+     */
+    private class Pass {
+
+        final StarTable resultTable_;
+        final RowStore[] parts_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  input table
+         * @param  keyCols  key column indices
+         * @param  aggCols  aggregation column indices
+         * @param  level   spill depth
+         */
+        Pass( StarTable table, int[] keyCols, int[] aggCols, int level )
+                throws IOException {
+            int nk = keyCols.length;
+            int nagg = aggCols.length;
+            Class<?>[] keyClasses = new Class<?>[ nk ];
+            for ( int ik = 0; ik < nk; ik++ ) {
+                keyClasses[ ik ] =
+                    table.getColumnInfo( keyCols[ ik ] ).getContentClass();
+            }
+            GroupKeyIndex index =
+                GroupKeyIndex.createIndex( keyCols, keyClasses );
+            Aggregator.Accumulator[] accs =
+                new Aggregator.Accumulator[ nagg ];
+            for ( int ia = 0; ia < nagg; ia++ ) {
+                accs[ ia ] = aggs_[ ia ].createAccumulator();
+            }
+            long[] counts = new long[ 16 ];
+            boolean hasLimit = level < MAX_LEVEL;
+            RowStore[] parts = null;
+            long nspill = 0;
+            RowSequence rseq = table.getRowSequence();
+            try {
+                while ( rseq.next() ) {
+                    Object[] row = rseq.getRow();
+                    boolean canAdd = ! hasLimit
+                                  || index.getGroupCount() < maxGroups_;
+                    int ig = index.getGroupIndex( row, canAdd );
+                    if ( ig >= 0 ) {
+                        if ( ig >= counts.length ) {
+                            counts = Arrays.copyOf( counts,
+                                                    counts.length * 2 );
+                        }
+                        counts[ ig ]++;
+                        for ( int ia = 0; ia < nagg; ia++ ) {
+                            accs[ ia ].accept( ig, row[ aggCols[ ia ] ] );
+                        }
+                    }
+                    else {
+                        if ( parts == null ) {
+                            logger_.info( "Group limit " + maxGroups_
+                                        + " reached; spilling rows" );
+                            parts = new RowStore[ NPART ];
+                            for ( int ip = 0; ip < NPART; ip++ ) {
+                                parts[ ip ] = createSpillStore( table );
+                            }
+                        }
+                        int ip = getPartition( index.getKeyHash( row ),
+                                               level );
+                        parts[ ip ].acceptRow( row );
+                        nspill++;
+                    }
+                }
+            }
+            finally {
+                rseq.close();
+            }
+            if ( parts != null ) {
+                for ( RowStore part : parts ) {
+                    part.endRows();
+                }
+                logger_.config( "Spilled " + nspill + " rows at level "
+                              + level );
+            }
+            parts_ = parts;
+            resultTable_ = new GroupTable( table, keyCols, aggCols, index,
+                                           counts, accs );
+        }
+
+        /**
+         * Writes the rows of the result table to a given sink.
+         *
+         * @param  out  destination
+         */
+        void writeResults( RowStore out ) throws IOException {
+            RowSequence rseq = resultTable_.getRowSequence();
+            try {
+                while ( rseq.next() ) {
+                    out.acceptRow( rseq.getRow() );
+                }
+            }
+            finally {
+                rseq.close();
+            }
+        }
+    }
+
+    /**
+     * Table presenting the groups accumulated in memory.
+     */
+    private class GroupTable extends RandomStarTable {
+
+        private final GroupKeyIndex index_;
+        private final long[] counts_;
+        private final Aggregator.Accumulator[] accs_;
+        private final ColumnInfo[] colInfos_;
+        private final int nk_;
+        private final int icount_;
+        private final boolean isIntCount_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  input table
+         * @param  keyCols  key column indices
+         * @param  aggCols  aggregation column indices
+         * @param  index   key index populated with groups
+         * @param  counts  row counts per group
+         * @param  accs   populated accumulators
+         */
+        GroupTable( StarTable table, int[] keyCols, int[] aggCols,
+                    GroupKeyIndex index, long[] counts,
+                    Aggregator.Accumulator[] accs ) {
+            index_ = index;
+            counts_ = counts;
+            accs_ = accs;
+            nk_ = keyCols.length;
+            int nagg = aggCols.length;
+            icount_ = countInfo_ == null ? -1 : nk_;
+            isIntCount_ = countInfo_ != null
+                       && countInfo_.getContentClass() == Integer.class;
+            int ncol = nk_ + ( countInfo_ == null ? 0 : 1 ) + nagg;
+            colInfos_ = new ColumnInfo[ ncol ];
+            int ic = 0;
+            for ( int ik = 0; ik < nk_; ik++ ) {
+                colInfos_[ ic++ ] =
+                    new ColumnInfo( table.getColumnInfo( keyCols[ ik ] ) );
+            }
+            if ( countInfo_ != null ) {
+                colInfos_[ ic++ ] = new ColumnInfo( countInfo_ );
+            }
+            for ( int ia = 0; ia < nagg; ia++ ) {
+                colInfos_[ ic++ ] =
+                    aggs_[ ia ]
+                   .getResultInfo( table.getColumnInfo( aggCols[ ia ] ) );
+            }
+        }
+
+        public int getColumnCount() {
+            return colInfos_.length;
+        }
+
+        public ColumnInfo getColumnInfo( int icol ) {
+            return colInfos_[ icol ];
+        }
+
+        public long getRowCount() {
+            return index_.getGroupCount();
+        }
+
+        public Object getCell( long irow, int icol ) {
+            int ig = (int) irow;
+            if ( icol < nk_ ) {
+                return index_.getKeyValue( ig, icol );
+            }
+            else if ( icol == icount_ ) {
+                long count = counts_[ ig ];
+                return isIntCount_
+                     ? (Object) Integer.valueOf( (int) Math.min( count,
+                                                          Integer.MAX_VALUE ) )
+                     : (Object) Long.valueOf( count );
+            }
+            else {
+                int ia = icol - nk_ - ( icount_ >= 0 ? 1 : 0 );
+                return accs_[ ia ].getResult( ig );
+            }
+        }
+
+        public Object[] getRow( long irow ) {
+            int ncol = colInfos_.length;
+            Object[] row = new Object[ ncol ];
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                row[ ic ] = getCell( irow, ic );
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import uk.ac.starlink.parquet.ParquetStarTable;
+import uk.ac.starlink.ttools.jel.DummyJELRowReader;
+import uk.ac.starlink.ttools.jel.JELRowReader;
+import uk.ac.starlink.util.IntList;
+
+/**
+ * Uses Parquet row group statistics to discard row groups that
+ * cannot contain any rows satisfying a selection expression.
+ *
+ * <p>Only a restricted subset of expressions is understood:
+ * a conjunction (<code>&amp;&amp;</code>) of terms,
+ * each of which compares a column name with a numeric literal
+ * using one of the operators
+ * <code>&lt;</code>, <code>&lt;=</code>, <code>&gt;</code>,
+ * <code>&gt;=</code> or <code>==</code>.
+ * Terms that do not have this form are ignored, and expressions
+ * containing any parentheses, disjunctions, negations, conditionals
+ * or string literals are not used at all.
+ * Since this only ever removes row groups in which the expression
+ * is known to be false for every row, the full expression
+ * must still be evaluated on the rows that remain.
+ *
+ * @since    18 Oct 2026
+ */
+class ParquetSelector {
+
+    private static final String NAME = "([A-Za-z_$][A-Za-z0-9_$]*)";
+    private static final String OP = "(<=|>=|==|<|>)";
+    private static final String NUM =
+        "([-+]?(?:[0-9]+\\.?[0-9]*|\\.[0-9]+)(?:[eE][-+]?[0-9]+)?)";
+    private static final Pattern NAME_FIRST_REGEX =
+        Pattern.compile( "\\s*" + NAME + "\\s*" + OP + "\\s*" + NUM + "\\s*" );
+    private static final Pattern NUM_FIRST_REGEX =
+        Pattern.compile( "\\s*" + NUM + "\\s*" + OP + "\\s*" + NAME + "\\s*" );
+    private static final Pattern EXCLUDE_REGEX =
+        Pattern.compile( ".*[|()?:!\"'].*" );
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.filter" );
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private ParquetSelector() {
+    }
+
+    /**
+     * Returns a table containing only those row groups of a Parquet table
+     * which may contain rows satisfying a given JEL selection expression.
+     * If no row groups can be excluded, the input table is returned.
+     *
+     * @param  table  input table
+     * @param  expr   boolean JEL expression
+     * @return   table containing a subset of the input table's row groups
+     */
+    public static ParquetStarTable selectRowGroups( ParquetStarTable table,
+                                                    String expr ) {
+        List<Term> terms = getTerms( table, expr );
+        if ( terms.isEmpty() ) {
+            return table;
+        }
+        int nrg = table.getRowGroupCount();
+        IntList irgList = new IntList();
+        for ( int irg = 0; irg < nrg; irg++ ) {
+            if ( mayMatch( table, irg, terms ) ) {
+                irgList.add( irg );
+            }
+        }
+        int nkeep = irgList.size();
+        if ( nkeep == nrg ) {
+            return table;
+        }
+        logger_.info( "Parquet row group statistics for \"" + expr + "\""
+                    + " exclude " + ( nrg - nkeep ) + "/" + nrg
+                    + " row groups" );
+        return table.selectRowGroups( irgList.toIntArray() );
+    }
+
+    /**
+     * Indicates whether a given row group might contain rows matching
+     * all of a list of terms.
+     *
+     * @param  table  table
+     * @param  irg   row group index
+     * @param  terms  conjunction of terms
+     * @return  false if the row group definitely contains no matching rows
+     */
+    private static boolean mayMatch( ParquetStarTable table, int irg,
+                                     List<Term> terms ) {
+        for ( Term term : terms ) {
+            double[] range = table.getRowGroupRange( irg, term.icol_ );
+            if ( range != null && ! term.mayMatch( range[ 0 ], range[ 1 ] ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the usable comparison terms from an expression.
+     *
+     * @param  table  table supplying column names
+     * @param  expr   JEL expression
+     * @return  list of terms which must all be true for the expression
+     *          to be true; may be empty
+     */
+    private static List<Term> getTerms( ParquetStarTable table, String expr ) {
+        List<Term> terms = new ArrayList<Term>();
+        if ( EXCLUDE_REGEX.matcher( expr ).matches() ) {
+            return terms;
+        }
+        JELRowReader rdr = new DummyJELRowReader( table );
+        for ( String txt : expr.split( "&&", -1 ) ) {
+            Matcher nameFirst = NAME_FIRST_REGEX.matcher( txt );
+            Matcher numFirst = NUM_FIRST_REGEX.matcher( txt );
+            final String name;
+            final String op;
+            final String num;
+            if ( nameFirst.matches() ) {
+                name = nameFirst.group( 1 );
+                op = nameFirst.group( 2 );
+                num = nameFirst.group( 3 );
+            }
+            else if ( numFirst.matches() ) {
+                name = numFirst.group( 3 );
+                op = reverseOperator( numFirst.group( 2 ) );
+                num = numFirst.group( 1 );
+            }
+            else {
+                continue;
+            }
+            int icol = getColumnIndex( rdr, name );
+            if ( icol >= 0 ) {
+                terms.add( new Term( icol, op, Double.parseDouble( num ) ) );
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the operator that results from swapping the operands
+     * of a comparison.
+     *
+     * @param  op  comparison operator
+     * @return   reversed operator
+     */
+    private static String reverseOperator( String op ) {
+        if ( "<".equals( op ) ) {
+            return ">";
+        }
+        else if ( ">".equals( op ) ) {
+            return "<";
+        }
+        else if ( "<=".equals( op ) ) {
+            return ">=";
+        }
+        else if ( ">=".equals( op ) ) {
+            return "<=";
+        }
+        else {
+            return op;
+        }
+    }
+
+    /**
+     * Returns the index of the column to which a JEL identifier refers.
+     * Identifiers that JEL would resolve to something other than
+     * a column value, such as special symbols, are not reported.
+     *
+     * @param  rdr   row reader for the table
+     * @param  name   identifier
+     * @return  column index, or -1 if name does not refer to
+     *          the value of a column
+     */
+    private static int getColumnIndex( JELRowReader rdr, String name ) {
+        Object trans = rdr.translate( name );
+        if ( trans instanceof Integer ) {
+            int icol = ((Integer) trans).intValue();
+            if ( icol >= 0 && icol == rdr.getColumnIndex( name ) ) {
+                return icol;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Represents a comparison of a column value with a constant.
+     */
+    private static class Term {
+        final int icol_;
+        final String op_;
+        final double value_;
+
+        /**
+         * Constructor.
+         *
+         * @param  icol  column index
+         * @param  op   comparison operator, column value on the left
+         * @param  value  constant value on the right
+         */
+        Term( int icol, String op, double value ) {
+            icol_ = icol;
+            op_ = op;
+            value_ = value;
+        }
+
+        /**
+         * Indicates whether this term could be true for any value
+         * in a given range.
+         *
+         * @param  min  minimum column value
+         * @param  max  maximum column value
+         * @return  false if this term is false throughout the range
+         */
+        boolean mayMatch( double min, double max ) {
+            if ( "<".equals( op_ ) ) {
+                return min < value_;
+            }
+            else if ( "<=".equals( op_ ) ) {
+                return min <= value_;
+            }
+            else if ( ">".equals( op_ ) ) {
+                return max > value_;
+            }
+            else if ( ">=".equals( op_ ) ) {
+                return max >= value_;
+            }
+            else if ( "==".equals( op_ ) ) {
+                return min <= value_ && value_ <= max;
+            }
+            else {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.Iterator;
+import uk.ac.starlink.table.PrefetchStarTable;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * Processing step which reads rows ahead from the input table
+ * on a separate thread.
+ */
+public class PrefetchFilter extends BasicFilter implements ProcessingStep {
+
+    public PrefetchFilter() {
+        super( "prefetch", null );
+    }
+
+    protected String[] getDescriptionLines() {
+        return new String[] {
+            "<p>Reads rows from the table at this point in the pipeline",
+            "on a separate thread, a batch at a time,",
+            "ahead of when they are required.",
+            "This means that reading and decoding the input can proceed",
+            "at the same time as downstream steps are processing",
+            "earlier rows, which may improve throughput",
+            "on multi-core machines when the input is slow to read",
+            "and the downstream processing is expensive.",
+            "</p>",
+            "<p>Only sequential access is affected;",
+            "random access, if available, goes straight to the input.",
+            "</p>",
+        };
+    }
+
+    public ProcessingStep createStep( Iterator<String> argIt ) {
+        return this;
+    }
+
+    public StarTable wrap( StarTable baseTable ) {
+        return new PrefetchStarTable( baseTable );
+    }
+}
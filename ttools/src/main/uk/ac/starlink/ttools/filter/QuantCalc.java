@@ -1,12 +1,16 @@
 package uk.ac.starlink.ttools.filter;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.TreeMap;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.DoubleList;
@@ -14,6 +18,17 @@ import uk.ac.starlink.util.DoubleList;
 /**
  * Object for accumulating values in order to calculate quantiles.
  *
+ * <p>For parallel processing, values may be accumulated into
+ * several compatible instances and then merged using the
+ * {@link #add add} method.
+ * Since quantiles depend only on the set of values accumulated,
+ * the results are the same as for sequential accumulation.
+ *
+ * <p>Most implementations store all the accumulated values, so that
+ * quantiles are exact but memory usage grows with the number of rows.
+ * An approximate implementation with fixed memory usage
+ * is available from {@link #createSketchInstance createSketchInstance}.
+ *
  * @author   Mark Taylor
  * @since    2 May 2006
  */
@@ -45,6 +60,23 @@ public abstract class QuantCalc {
      */
     public abstract void acceptDatum( Object obj );
 
+    /**
+     * Merges the contents of the supplied calculator into this one.
+     * The effect is as if all the values accumulated into other
+     * had been accumulated into this one.
+     * The effect on the supplied other is undefined.
+     * This method must be called before {@link #ready}.
+     *
+     * <p>The supplied calculator is assumed to be <em>compatible</em>
+     * with this one, which means created by {@link #createInstance}
+     * with the same arguments.
+     * If not, some RuntimeException such as a ClassCastException
+     * may result.
+     *
+     * @param  other  compatible calculator instance
+     */
+    public abstract void add( QuantCalc other );
+
     /**
      * Call this method after all {@link #acceptDatum} calls have been made
      * and before any call to {@link #getQuantile}.
@@ -116,6 +148,36 @@ public abstract class QuantCalc {
         }
     }
 
+    /**
+     * Factory method to create an approximate quantile accumulator
+     * for a given value class.
+     * The returned calculator stores a compact, mergeable sketch of
+     * the data (after Karnin, Lang and Liberty 2016) rather than all
+     * the values, so its memory usage does not depend on the number
+     * of values accumulated.
+     * Quantiles it reports are actual data values,
+     * whose rank is usually within <code>rankError*N</code>
+     * of the requested rank, where N is the number of values.
+     * The minimum and maximum values are always reported exactly.
+     *
+     * @param  clazz  class of data objects which will be submitted;
+     *         must be assignable from Number.class.
+     * @param  rankError  required rank error as a fraction of the
+     *                    value count; must be in the range 0-1
+     * @return  new sketch calculator
+     */
+    public static QuantCalc createSketchInstance( Class<? extends Number>
+                                                  clazz, double rankError ) {
+        if ( ! ( rankError > 0 && rankError < 1 ) ) {
+            throw new IllegalArgumentException( "Rank error " + rankError
+                                              + " not in range 0-1" );
+        }
+        int k = Math.max( SketchQuantCalc.MIN_K,
+                          (int) Math.ceil( SketchQuantCalc.ERROR_FACTOR
+                                         / rankError ) );
+        return new SketchQuantCalc( clazz, k );
+    }
+
     /**
      * Calculates the median absolute deviation of the statistics
      * accumulated by a QuantCalc.
@@ -126,6 +188,9 @@ public abstract class QuantCalc {
     public static double calculateMedianAbsoluteDeviation( QuantCalc qcalc )
             throws IOException {
         double median = qcalc.getQuantile( 0.5 ).doubleValue();
+        if ( qcalc instanceof SketchQuantCalc ) {
+            return ((SketchQuantCalc) qcalc).getMedianDeviation( median );
+        }
         QuantCalc madCalc =
             QuantCalc.createInstance( Double.class, qcalc.getValueCount() );
         for ( Iterator<Number> it = qcalc.getValueIterator(); it.hasNext(); ) {
@@ -136,6 +201,38 @@ public abstract class QuantCalc {
         return madCalc.getQuantile( 0.5 ).doubleValue();
     }
 
+    /**
+     * Returns a numeric value as an instance of a given number class.
+     *
+     * @param  clazz  required number class
+     * @param  value  numeric value
+     * @return  number of class <code>clazz</code>,
+     *          or null if the class is not known
+     */
+    private static Number toNumber( Class<?> clazz, double value ) {
+        if ( clazz == Double.class ) {
+            return new Double( value );
+        }
+        else if ( clazz == Float.class ) {
+            return new Float( (float) value );
+        }
+        else if ( clazz == Byte.class ) {
+            return new Byte( (byte) value );
+        }
+        else if ( clazz == Short.class ) {
+            return new Short( (short) value );
+        }
+        else if ( clazz == Integer.class ) {
+            return new Integer( (int) value );
+        }
+        else if ( clazz == Long.class ) {
+            return new Long( (long) value );
+        }
+        else {
+            return null;
+        }
+    }
+
     /**
      * QuantCalc implementation which uses a DoubleList.
      */
@@ -164,6 +261,10 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            dlist_.addAll( ((DoubleListQuantCalc) other).dlist_ );
+        }
+
         public void ready() {
             darray_ = dlist_.toDoubleArray();
             Arrays.sort( darray_ );
@@ -180,27 +281,7 @@ public abstract class QuantCalc {
             int nd = darray_.length;
             double quantile =
                 darray_[ Math.min( (int) ( quant * nd ), nd - 1 ) ];
-            if ( clazz_ == Double.class ) {
-                return new Double( quantile );
-            }
-            else if ( clazz_ == Float.class ) {
-                return new Float( (float) quantile );
-            }
-            else if ( clazz_ == Byte.class ) {
-                return new Byte( (byte) quantile );
-            }
-            else if ( clazz_ == Short.class ) {
-                return new Short( (short) quantile );
-            }
-            else if ( clazz_ == Integer.class ) {
-                return new Integer( (int) quantile );
-            }
-            else if ( clazz_ == Long.class ) {
-                return new Long( (long) quantile );
-            }
-            else {
-                return null;
-            }
+            return toNumber( clazz_, quantile );
         }
 
         public Iterator<Number> getValueIterator() {
@@ -221,28 +302,67 @@ public abstract class QuantCalc {
 
     /**
      * QuantCalc implementation which uses a float[] array.
+     * The array is grown as required up to a fixed maximum size,
+     * so that instances accumulating only part of the data
+     * do not need to allocate storage for all of it.
      */
     static class FloatArrayQuantCalc extends QuantCalc {
 
-        final float[] array_;
         final Class<?> clazz_;
+        final int maxSize_;
+        float[] array_;
         int irow_;
 
+        /**
+         * Constructor.
+         *
+         * @param  clazz  content class
+         * @param  nrow   maximum number of values that will be accumulated
+         */
         public FloatArrayQuantCalc( Class<?> clazz, int nrow ) {
             super( clazz );
             clazz_ = clazz;
-            array_ = new float[ nrow ];
+            maxSize_ = nrow;
+            array_ = new float[ Math.min( nrow, 1024 ) ];
         }
 
         public void acceptDatum( Object obj ) {
-            if ( irow_ < array_.length && obj instanceof Number ) {
+            if ( obj instanceof Number ) {
                 float fval = ((Number) obj).floatValue();
                 if ( ! Float.isNaN( fval ) ) {
+                    if ( irow_ == array_.length ) {
+                        if ( irow_ >= maxSize_ ) {
+                            return;
+                        }
+                        ensureCapacity( irow_ + 1 );
+                    }
                     array_[ irow_++ ] = fval;
                 }
             }
         }
 
+        public void add( QuantCalc other ) {
+            FloatArrayQuantCalc o = (FloatArrayQuantCalc) other;
+            int n = Math.min( o.irow_, maxSize_ - irow_ );
+            ensureCapacity( irow_ + n );
+            System.arraycopy( o.array_, 0, array_, irow_, n );
+            irow_ += n;
+        }
+
+        /**
+         * Ensures that the storage array can hold at least a given
+         * number of values.
+         *
+         * @param  size  required capacity, not greater than maximum size
+         */
+        private void ensureCapacity( int size ) {
+            if ( size > array_.length ) {
+                long newSize = Math.max( size, array_.length * 2L );
+                array_ = Arrays.copyOf( array_,
+                                        (int) Math.min( newSize, maxSize_ ) );
+            }
+        }
+
         public void ready() {
             Arrays.sort( array_, 0, irow_ );
         }
@@ -315,6 +435,14 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            ByteSlotQuantCalc o = (ByteSlotQuantCalc) other;
+            count_ += o.count_;
+            for ( int is = 0; is < slots_.length; is++ ) {
+                slots_[ is ] += o.slots_[ is ];
+            }
+        }
+
         public void ready() {
         }
 
@@ -384,6 +512,14 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            ShortSlotQuantCalc o = (ShortSlotQuantCalc) other;
+            count_ += o.count_;
+            for ( int is = 0; is < slots_.length; is++ ) {
+                slots_[ is ] += o.slots_[ is ];
+            }
+        }
+
         public void ready() {
         }
 
@@ -462,6 +598,19 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            CountMapQuantCalc o = (CountMapQuantCalc) other;
+            count_ += o.count_;
+            for ( Map.Entry<Number,Integer> entry : o.countMap_.entrySet() ) {
+                Number num = entry.getKey();
+                Integer value = countMap_.get( num );
+                countMap_.put( num, value == null
+                                  ? entry.getValue()
+                                  : new Integer( value.intValue()
+                                               + entry.getValue().intValue() ) );
+            }
+        }
+
         public void ready() {
             countMap_ = new TreeMap<Number,Integer>( countMap_ );
         }
@@ -511,4 +660,314 @@ public abstract class QuantCalc {
             };
         }
     }
+
+    /**
+     * QuantCalc implementation which maintains an approximate,
+     * fixed-size sketch of the data.
+     *
+     * <p>Values are stored in a stack of levels, each item at level
+     * <em>h</em> representing 2<sup><em>h</em></sup> input values.
+     * When a level fills up, it is sorted and every other item,
+     * starting at a random offset, is promoted to the level above;
+     * if the level has an odd number of items one is retained,
+     * so the total weight is always exactly the number of values seen.
+     * Level capacities decrease geometrically from the top down,
+     * so that total storage is around 3k.
+     * Sketches are merged by concatenating levels and recompacting.
+     */
+    static class SketchQuantCalc extends QuantCalc {
+
+        /** Approximate ratio of k to the reciprocal rank error. */
+        static final double ERROR_FACTOR = 4.0;
+
+        /** Minimum value of k. */
+        static final int MIN_K = 8;
+
+        private static final int MIN_CAPACITY = 8;
+        private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+        private final Class<?> clazz_;
+        private final int k_;
+        private final List<DoubleList> levels_;
+        private final Random random_;
+        private long count_;
+        private double min_;
+        private double max_;
+        private double[] values_;
+        private long[] cumWeights_;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazz  content class
+         * @param  k   capacity of the top level
+         */
+        SketchQuantCalc( Class<? extends Number> clazz, int k ) {
+            super( clazz );
+            clazz_ = clazz;
+            k_ = k;
+            levels_ = new ArrayList<DoubleList>();
+            levels_.add( new DoubleList() );
+            random_ = new Random( 990177L );
+            min_ = Double.NaN;
+            max_ = Double.NaN;
+        }
+
+        public void acceptDatum( Object obj ) {
+            if ( obj instanceof Number ) {
+                double dval = ((Number) obj).doubleValue();
+                if ( ! Double.isNaN( dval ) ) {
+                    if ( count_ == 0 ) {
+                        min_ = dval;
+                        max_ = dval;
+                    }
+                    else {
+                        min_ = Math.min( min_, dval );
+                        max_ = Math.max( max_, dval );
+                    }
+                    count_++;
+                    DoubleList level0 = levels_.get( 0 );
+                    level0.add( dval );
+                    if ( level0.size() >= getCapacity( 0 ) ) {
+                        compress();
+                    }
+                }
+            }
+        }
+
+        public void add( QuantCalc other ) {
+            SketchQuantCalc o = (SketchQuantCalc) other;
+            if ( o.count_ == 0 ) {
+                return;
+            }
+            if ( count_ == 0 ) {
+                min_ = o.min_;
+                max_ = o.max_;
+            }
+            else {
+                min_ = Math.min( min_, o.min_ );
+                max_ = Math.max( max_, o.max_ );
+            }
+            count_ += o.count_;
+            while ( levels_.size() < o.levels_.size() ) {
+                levels_.add( new DoubleList() );
+            }
+            for ( int h = 0; h < o.levels_.size(); h++ ) {
+                levels_.get( h ).addAll( o.levels_.get( h ) );
+            }
+            compress();
+        }
+
+        public void ready() {
+            int nitem = 0;
+            for ( DoubleList level : levels_ ) {
+                nitem += level.size();
+            }
+
+            /* Gather items and their weights, and sort them by value. */
+            final double[] vals = new double[ nitem ];
+            long[] weights = new long[ nitem ];
+            Integer[] order = new Integer[ nitem ];
+            int ix = 0;
+            for ( int h = 0; h < levels_.size(); h++ ) {
+                DoubleList level = levels_.get( h );
+                for ( int i = 0; i < level.size(); i++ ) {
+                    vals[ ix ] = level.get( i );
+                    weights[ ix ] = 1L << h;
+                    order[ ix ] = Integer.valueOf( ix );
+                    ix++;
+                }
+            }
+            Arrays.sort( order, new Comparator<Integer>() {
+                public int compare( Integer i1, Integer i2 ) {
+                    return Double.compare( vals[ i1.intValue() ],
+                                           vals[ i2.intValue() ] );
+                }
+            } );
+            values_ = new double[ nitem ];
+            cumWeights_ = new long[ nitem ];
+            long cum = 0;
+            for ( int i = 0; i < nitem; i++ ) {
+                int j = order[ i ].intValue();
+                values_[ i ] = vals[ j ];
+                cum += weights[ j ];
+                cumWeights_[ i ] = cum;
+            }
+            assert cum == count_;
+        }
+
+        public long getValueCount() {
+            return count_;
+        }
+
+        public Number getQuantile( double quant ) {
+            if ( count_ == 0 ) {
+                return null;
+            }
+            long point = Math.min( (long) ( quant * count_ ), count_ - 1 );
+            final double quantile;
+            if ( point <= 0 ) {
+                quantile = min_;
+            }
+            else if ( point >= count_ - 1 ) {
+                quantile = max_;
+            }
+            else {
+                quantile = values_[ getItemIndex( point ) ];
+            }
+            return toNumber( clazz_, quantile );
+        }
+
+        public Iterator<Number> getValueIterator() {
+            return new Iterator<Number>() {
+                int ix_;
+                long iw_;
+                public boolean hasNext() {
+                    return iw_ < count_;
+                }
+                public Number next() {
+                    if ( hasNext() ) {
+                        while ( iw_ >= cumWeights_[ ix_ ] ) {
+                            ix_++;
+                        }
+                        iw_++;
+                        return new Double( values_[ ix_ ] );
+                    }
+                    else {
+                        throw new NoSuchElementException();
+                    }
+                }
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /**
+         * Returns the approximate median of the absolute deviations
+         * of the accumulated values from a given value.
+         * This works directly on the weighted sketch items,
+         * so no storage proportional to the value count is required.
+         * Must be called after {@link #ready}.
+         *
+         * @param  median  central value
+         * @return   median of abs(x_i - median)
+         */
+        double getMedianDeviation( double median ) {
+            int nitem = values_.length;
+            if ( nitem == 0 ) {
+                return Double.NaN;
+            }
+            long point = Math.min( (long) ( 0.5 * count_ ), count_ - 1 );
+
+            /* Items are sorted by value, so deviations decrease towards
+             * the median from below and increase away from it above.
+             * Merge the two runs outwards from the median. */
+            int ilo = Arrays.binarySearch( values_, median );
+            if ( ilo < 0 ) {
+                ilo = -ilo - 2;
+            }
+            else {
+                while ( ilo + 1 < nitem && values_[ ilo + 1 ] == median ) {
+                    ilo++;
+                }
+            }
+            int ihi = ilo + 1;
+            long cum = 0;
+            while ( true ) {
+                double dlo = ilo >= 0 ? median - values_[ ilo ]
+                                      : Double.POSITIVE_INFINITY;
+                double dhi = ihi < nitem ? values_[ ihi ] - median
+                                         : Double.POSITIVE_INFINITY;
+                final double dev;
+                final int ix;
+                if ( dlo <= dhi ) {
+                    dev = dlo;
+                    ix = ilo--;
+                }
+                else {
+                    dev = dhi;
+                    ix = ihi++;
+                }
+                cum += getWeight( ix );
+                if ( cum > point || ( ilo < 0 && ihi >= nitem ) ) {
+                    return dev;
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the first sorted item whose cumulative
+         * weight exceeds a given rank.
+         *
+         * @param  point  rank
+         * @return  item index
+         */
+        private int getItemIndex( long point ) {
+            int ix = Arrays.binarySearch( cumWeights_, point + 1 );
+            return ix >= 0 ? ix : -ix - 1;
+        }
+
+        /**
+         * Returns the weight of a sorted item.
+         *
+         * @param  ix  item index
+         * @return   number of values represented by item
+         */
+        private long getWeight( int ix ) {
+            return ix == 0 ? cumWeights_[ 0 ]
+                           : cumWeights_[ ix ] - cumWeights_[ ix - 1 ];
+        }
+
+        /**
+         * Returns the maximum number of items that may be held at
+         * a given level.
+         *
+         * @param  h  level index
+         * @return  level capacity
+         */
+        private int getCapacity( int h ) {
+            int depth = levels_.size() - 1 - h;
+            return Math.max( MIN_CAPACITY,
+                             (int) Math.ceil( k_ * Math.pow( CAPACITY_RATIO,
+                                                                depth ) ) );
+        }
+
+        /**
+         * Compacts any levels which are at or over capacity.
+         */
+        private void compress() {
+            for ( int h = 0; h < levels_.size(); h++ ) {
+                if ( levels_.get( h ).size() >= getCapacity( h ) ) {
+                    if ( h + 1 == levels_.size() ) {
+                        levels_.add( new DoubleList() );
+                    }
+                    compact( levels_.get( h ), levels_.get( h + 1 ) );
+                }
+            }
+        }
+
+        /**
+         * Promotes half the items in one level to the next level up.
+         *
+         * @param  level  level to compact
+         * @param  upper  level above
+         */
+        private void compact( DoubleList level, DoubleList upper ) {
+            double[] vals = level.toDoubleArray();
+            Arrays.sort( vals );
+            int nv = vals.length;
+            level.clear();
+            int i0 = 0;
+            if ( nv % 2 == 1 ) {
+                int ikeep = random_.nextBoolean() ? 0 : nv - 1;
+                level.add( vals[ ikeep ] );
+                i0 = ikeep == 0 ? 1 : 0;
+            }
+            int offset = random_.nextBoolean() ? 1 : 0;
+            for ( int i = i0 + offset; i < i0 + ( nv / 2 ) * 2; i += 2 ) {
+                upper.add( vals[ i ] );
+            }
+        }
+    }
 }
@@ -3,6 +3,7 @@ package uk.ac.starlink.ttools.filter;
 import gnu.jel.CompilationException;
 import java.io.IOException;
 import java.util.Iterator;
+import uk.ac.starlink.parquet.ParquetStarTable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.ttools.jel.JELUtils;
 
@@ -47,6 +48,13 @@ public class SelectFilter extends BasicFilter {
             expr_ = expr;
         }
         public StarTable wrap( StarTable base ) throws IOException {
+
+            /* For Parquet input, row groups that cannot contain any
+             * selected rows need not be read at all. */
+            if ( base instanceof ParquetStarTable ) {
+                base = ParquetSelector
+                      .selectRowGroups( (ParquetStarTable) base, expr_ );
+            }
             try {
                 return new JELSelectorTable( base, expr_ );
             }
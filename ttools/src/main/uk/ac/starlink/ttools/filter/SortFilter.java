@@ -1,21 +1,17 @@
 package uk.ac.starlink.ttools.filter;
 
-import gnu.jel.CompilationException;
-import gnu.jel.CompiledExpression;
-import gnu.jel.Library;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.function.LongSupplier;
 import uk.ac.starlink.table.RowPermutedStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableSorter;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.Tokenizer;
-import uk.ac.starlink.ttools.jel.JELUtils;
-import uk.ac.starlink.ttools.jel.RandomJELRowReader;
 
 /**
  * Processing filter which sorts on one or more JEL expressions.
@@ -27,7 +23,7 @@ public class SortFilter extends BasicFilter {
 
     public SortFilter() {
         super( "sort",
-               "[-down] [-nullsfirst] " 
+               "[-down] [-nullsfirst] [-external] " 
              + "<key-list>" );
     }
 
@@ -51,6 +47,18 @@ public class SortFilter extends BasicFilter {
             "flag is given then they are considered to come at the start",
             "instead.",
             "</p>",
+            "<p>By default the sort requires random access to the table,",
+            "which may mean caching all of its rows,",
+            "and memory proportional to the number of rows.",
+            "If the <code>-external</code> flag is given,",
+            "an external merge sort is used instead:",
+            "the table is read sequentially in chunks,",
+            "each chunk is sorted and written to a temporary disk file,",
+            "and the sorted chunks are merged as the output is read.",
+            "This uses a bounded amount of memory regardless of",
+            "table size, so is suitable for very large tables,",
+            "but it does not yield a random-access table.",
+            "</p>",
             explainSyntax( new String[] { "key-list", } ),
         };
     }
@@ -59,6 +67,7 @@ public class SortFilter extends BasicFilter {
             throws ArgException {
         boolean up = true;
         boolean nullsLast = true;
+        boolean external = false;
         String exprs = null;
         while ( argIt.hasNext() && exprs == null ) {
             String arg = argIt.next();
@@ -70,6 +79,10 @@ public class SortFilter extends BasicFilter {
                 argIt.remove();
                 nullsLast = false;
             }
+            else if ( arg.equals( "-external" ) ) {
+                argIt.remove();
+                external = true;
+            }
             else if ( exprs == null ) {
                 argIt.remove();
                 exprs = arg;
@@ -92,11 +105,14 @@ public class SortFilter extends BasicFilter {
         }
 
         /* Return the appropriate step implementation. */
-        return new SortStep( keys, up, nullsLast );
+        return external ? new ExternalSortStep( keys, up, nullsLast )
+                        : new SortStep( keys, up, nullsLast );
     }
 
     /**
      * Step implementation which sorts all rows using a random table.
+     * The sort key expressions are evaluated once per row into
+     * appended columns, which are then sorted using {@link TableSorter}.
      */
     private static class SortStep implements ProcessingStep {
         final String[] keys_;
@@ -116,137 +132,154 @@ public class SortFilter extends BasicFilter {
                 throw new UnsupportedOperationException( 
                     "Sorry, can't sort tables with >2^31 rows" );
             }
-            int nrow = (int) lnrow;
-            Number[] rowMap = new Number[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rowMap[ i ] = new Integer( i );
-            }
-            Comparator<Number> keyComparator;
-            try {
-                keyComparator = new RowComparator( baseTable, keys_, up_,
-                                                   nullsLast_ );
-            }
-            catch ( CompilationException e ) {
-                throw (IOException) new IOException( "Bad sort key(s)" )
-                                   .initCause( e );
-            }
-            try {
-                Arrays.sort( rowMap, keyComparator );
-            }
-            catch ( SortException e ) {
-                throw e.asIOException();
-            }
-            long[] rmap = new long[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rmap[ i ] = rowMap[ i ].longValue();
+            int nkey = keys_.length;
+            int ncol0 = baseTable.getColumnCount();
+            StarTable keyTable =
+                new KeyTable( baseTable,
+                              new JELColumnSupplement( baseTable, keys_,
+                                                       null ) );
+            int[] keyIndices = new int[ nkey ];
+            for ( int ik = 0; ik < nkey; ik++ ) {
+                keyIndices[ ik ] = ncol0 + ik;
             }
+            long[] rmap =
+                TableSorter.getSortedOrder( keyTable, keyIndices, up_,
+                                            nullsLast_, RowRunner.DEFAULT,
+                                            StoragePolicy.getDefaultPolicy() );
             return new RowPermutedStarTable( baseTable, rmap );
         }
     }
 
-    /** 
-     * Comparator which will compare two objects which are Numbers 
-     * representing row indices of a given table.
+    /**
+     * Table which appends sort key columns to a base table.
+     * Random access to the key columns goes through a single
+     * synchronized JEL evaluator, so this implementation provides
+     * a RowSplittable in which each split evaluates the keys with
+     * its own sequential JEL reader, allowing keys to be calculated
+     * by several threads at once.
      */
-    private static class RowComparator implements Comparator<Number> {
-
-        final CompiledExpression[] compExs_;
-        final int nexpr_;
-        final RandomJELRowReader rowReader_;
-        boolean up_;
-        boolean nullsLast_;
+    private static class KeyTable extends AddColumnsTable {
+        final StarTable base_;
+        final ColumnSupplement keySup_;
+        final int ncol0_;
 
         /**
          * Constructor.
          *
-         * @param  table  table whose rows are to be examined
-         * @param  keys   array of column identifiers; first is most
-         *                significant for ordering, second next, etc
-         * @param   up  true for sorting into ascending order, false for
-         *          descending order
-         * @param   nullsLast  true if blank values should be considered
-         *          last in the collation order, false if they should
-         *          be considered first
+         * @param  base   base table
+         * @param  keySup   supplement providing key columns
          */
-        public RowComparator( StarTable table, String[] keys, boolean up,
-                              boolean nullsLast )
-                throws CompilationException {
-            nexpr_ = keys.length;
-            up_ = up;
-            nullsLast_ = nullsLast;
-
-            /* Prepare compiled expressions for reading the data from 
-             * table rows. */
-            rowReader_ = new RandomJELRowReader( table );
-            Library lib = JELUtils.getLibrary( rowReader_ );
-            compExs_ = new CompiledExpression[ nexpr_ ];
-            for ( int i = 0; i < nexpr_; i++ ) {
-                compExs_[ i ] = JELUtils.compile( lib, table, keys[ i ] );
-            }
+        KeyTable( StarTable base, ColumnSupplement keySup ) {
+            super( base, keySup );
+            base_ = base;
+            keySup_ = keySup;
+            ncol0_ = base.getColumnCount();
         }
 
-        public int compare( Number o1, Number o2 ) {
-            long row1 = o1.longValue();
-            long row2 = o2.longValue();
-            int c = 0;
-            for ( int i = 0; i < nexpr_ && c == 0; i++ ) { 
-                CompiledExpression compEx = compExs_[ i ];
-                Object val1;
-                Object val2;
-                try {
-                    val1 = rowReader_.evaluateAtRow( compEx, row1 );
-                    val2 = rowReader_.evaluateAtRow( compEx, row2 );
-                }
-                catch ( Throwable e ) {
-                    throw new SortException( "Sort error", e );
-                }
-                try {
-                    c = compareValues( val1, val2 );
-                }
-                catch ( ClassCastException e ) {
-                    throw new SortException( 
-                        "Expression comparison error during sorting", e );
-                }
+        @Override
+        public RowSplittable getRowSplittable() throws IOException {
+            RowSplittable baseSplit = base_.getRowSplittable();
+            if ( baseSplit.rowIndex() != null ) {
+                return new KeySplittable( baseSplit );
+            }
+            else {
+                baseSplit.close();
+                return super.getRowSplittable();
             }
-            return up_ ? c : -c;
         }
 
         /**
-         * Compares the actual cell values.
+         * RowSplittable which adds key columns to the rows of a base
+         * splittable.
          */
-        @SuppressWarnings("unchecked")
-        private int compareValues( Object o1, Object o2 ) {
-            boolean null1 = Tables.isBlank( o1 );
-            boolean null2 = Tables.isBlank( o2 );
-            if ( null1 && null2 ) {
-                return 0;
+        private class KeySplittable implements RowSplittable {
+            final RowSplittable baseSplit_;
+            final LongSupplier baseIndex_;
+            SupplementSequence supSeq_;
+
+            /**
+             * Constructor.
+             *
+             * @param  baseSplit  base splittable, which must supply
+             *                    row indices
+             */
+            KeySplittable( RowSplittable baseSplit ) {
+                baseSplit_ = baseSplit;
+                baseIndex_ = baseSplit.rowIndex();
             }
-            else if ( null1 ) {
-                return nullsLast_ ? +1 : -1;
+
+            public KeySplittable split() {
+                RowSplittable baseSplit1 = baseSplit_.split();
+                return baseSplit1 == null ? null
+                                          : new KeySplittable( baseSplit1 );
             }
-            else if ( null2 ) {
-                return nullsLast_ ? -1 : +1;
+
+            public long splittableSize() {
+                return baseSplit_.splittableSize();
             }
-            else {
-                return ((Comparable<Object>) o1).compareTo( (Comparable) o2 );
+
+            public LongSupplier rowIndex() {
+                return baseIndex_;
+            }
+
+            public boolean next() throws IOException {
+                return baseSplit_.next();
+            }
+
+            public Object getCell( int icol ) throws IOException {
+                return icol < ncol0_
+                     ? baseSplit_.getCell( icol )
+                     : getSupplementSequence()
+                      .getCell( baseIndex_.getAsLong(), icol - ncol0_ );
+            }
+
+            public Object[] getRow() throws IOException {
+                Object[] row0 = baseSplit_.getRow();
+                Object[] row1 = getSupplementSequence()
+                               .getRow( baseIndex_.getAsLong() );
+                Object[] row = new Object[ row0.length + row1.length ];
+                System.arraycopy( row0, 0, row, 0, row0.length );
+                System.arraycopy( row1, 0, row, row0.length, row1.length );
+                return row;
+            }
+
+            public void close() throws IOException {
+                baseSplit_.close();
+            }
+
+            /**
+             * Returns the lazily created supplement sequence
+             * for this split.
+             *
+             * @return  supplement sequence
+             */
+            private SupplementSequence getSupplementSequence()
+                    throws IOException {
+                if ( supSeq_ == null ) {
+                    supSeq_ = keySup_.createSequence( baseSplit_ );
+                }
+                return supSeq_;
             }
         }
     }
 
     /**
-     * Helper class defining private exception type.
-     * Used to smuggle a checked exception out of a sort comparison.
+     * Step implementation which sorts rows using an external merge sort.
      */
-    private static class SortException extends RuntimeException {
-        SortException( String msg, Throwable e ) {
-            super( msg, e );
+    private static class ExternalSortStep implements ProcessingStep {
+        final String[] keys_;
+        final boolean up_;
+        final boolean nullsLast_;
+
+        ExternalSortStep( String[] keys, boolean up, boolean nullsLast ) {
+            keys_ = keys;
+            up_ = up;
+            nullsLast_ = nullsLast;
         }
-        IOException asIOException() {
-            Throwable error = getCause();
-            return error instanceof IOException
-                 ? (IOException) error
-                 : (IOException) new IOException( error.getMessage() )
-                                .initCause( error );
+
+        public StarTable wrap( StarTable baseTable ) throws IOException {
+            return new ExternalSortTable( baseTable, keys_, up_, nullsLast_,
+                                          StoragePolicy.PREFER_DISK, -1 );
         }
     }
 }
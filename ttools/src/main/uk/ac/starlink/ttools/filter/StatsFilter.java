@@ -5,11 +5,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.xml.sax.SAXException;
@@ -17,7 +16,9 @@ import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.RandomStarTable;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -135,7 +136,7 @@ public class StatsFilter extends BasicFilter {
      * Constructor.
      */
     public StatsFilter() {
-        super( "stats", "[<item> ...]" );
+        super( "stats", "[-qapprox <rank-error>] [<item> ...]" );
     }
 
     protected String[] getDescriptionLines() {
@@ -173,22 +174,52 @@ public class StatsFilter extends BasicFilter {
             "earlier in the pipeline.",
             "No interpolation is performed when calculating quantiles.",
             "</p>",
+            "<p>If the <code>-qapprox</code> flag is given,",
+            "quantiles and median absolute deviations are instead",
+            "estimated from a fixed-size sketch of each column's data,",
+            "so that they can be calculated for tables of any length",
+            "using a small, constant amount of memory.",
+            "The <code>&lt;rank-error&gt;</code> value gives the",
+            "permitted error in the rank of the reported value",
+            "as a fraction of the number of values;",
+            "for instance with <code>-qapprox 0.001</code>",
+            "a reported median of a million-row column will usually lie",
+            "between the 499000th and 501000th values in order.",
+            "Reported values are always actual data values,",
+            "and the minimum and maximum (Q.0 and Q.1) are exact.",
+            "</p>",
         };
     }
 
     public ProcessingStep createStep( Iterator<String> argIt )
             throws ArgException {
-        final ValueInfo[] colInfos;
-        if ( argIt.hasNext() ) {
-            Map<String,ValueInfo> infoMap = new HashMap<String,ValueInfo>();
-            for ( int i = 0; i < ALL_KNOWN_INFOS.length; i++ ) {
-                ValueInfo info = ALL_KNOWN_INFOS[ i ];
-                infoMap.put( info.getName().toLowerCase(), info );
-            }
-            List<ValueInfo> infoList = new ArrayList<ValueInfo>();
-            while ( argIt.hasNext() ) {
-                String name = argIt.next();
+        double qerr = Double.NaN;
+        Map<String,ValueInfo> infoMap = new HashMap<String,ValueInfo>();
+        for ( int i = 0; i < ALL_KNOWN_INFOS.length; i++ ) {
+            ValueInfo info = ALL_KNOWN_INFOS[ i ];
+            infoMap.put( info.getName().toLowerCase(), info );
+        }
+        List<ValueInfo> infoList = new ArrayList<ValueInfo>();
+        while ( argIt.hasNext() ) {
+            String name = argIt.next();
+            argIt.remove();
+            if ( name.equals( "-qapprox" ) && infoList.isEmpty() &&
+                 argIt.hasNext() ) {
+                String sErr = argIt.next();
                 argIt.remove();
+                try {
+                    qerr = Double.parseDouble( sErr );
+                }
+                catch ( NumberFormatException e ) {
+                    throw new ArgException( "-qapprox argument not numeric: "
+                                          + sErr );
+                }
+                if ( ! ( qerr > 0 && qerr < 1 ) ) {
+                    throw new ArgException( "-qapprox argument out of range: "
+                                          + sErr );
+                }
+            }
+            else {
                 String lname = name.toLowerCase();
                 if ( infoMap.containsKey( lname ) ) {
                     infoList.add( infoMap.get( lname ) );
@@ -222,15 +253,15 @@ public class StatsFilter extends BasicFilter {
                     throw new ArgException( msg.toString() );
                 }
             }
-            colInfos = infoList.toArray( new ValueInfo[ 0 ] );
-        }
-        else {
-            colInfos = DEFAULT_INFOS;
         }
+        final ValueInfo[] colInfos = infoList.isEmpty()
+                                   ? DEFAULT_INFOS
+                                   : infoList.toArray( new ValueInfo[ 0 ] );
+        final double quantError = qerr;
         return new ProcessingStep() {
             public StarTable wrap( StarTable base ) throws IOException {
                 MapGroup<ValueInfo,Object> group =
-                    statsMapGroup( base, colInfos );
+                    statsMapGroup( base, colInfos, quantError );
                 group.setKnownKeys( Arrays.asList( colInfos ) );
                 AbstractStarTable table = new ValueInfoMapGroupTable( group );
                 table.setParameters( base.getParameters() );
@@ -244,10 +275,14 @@ public class StatsFilter extends BasicFilter {
      * a given table.
      *
      * @param   table   input table
+     * @param   infos   statistical quantities required
+     * @param   quantError  rank error for approximate quantile calculation,
+     *                      or NaN for exact quantiles
      * @return  mapgroup containing column statistics
      */
     private static MapGroup<ValueInfo,Object> statsMapGroup( StarTable table,
-                                                             ValueInfo[] infos )
+                                                             ValueInfo[] infos,
+                                                             double quantError )
             throws IOException {
 
         /* Work out if we need to calculate cardinalities. */
@@ -271,148 +306,175 @@ public class StatsFilter extends BasicFilter {
 
         long nrow = table.getRowCount();
 
-        /* Prepare statistical accumulators for each column of the table. */
+        /* Check up front that quantile calculators can be constructed. */
         int ncol = table.getColumnCount();
-        UnivariateStats[] colStats = new UnivariateStats[ ncol ];
-        CardinalityChecker[] cardCheckers =
-            doCard ? new CardinalityChecker[ ncol ] : null;
-        QuantCalc[] quantCalcs = new QuantCalc[ ncol ];
+        Class<?>[] clazzes = new Class<?>[ ncol ];
         for ( int icol = 0; icol < ncol; icol++ ) {
-            Class<?> clazz = table.getColumnInfo( icol ).getContentClass();
-            colStats[ icol ] = UnivariateStats.createStats( clazz );
-            if ( doCard ) {
-                cardCheckers[ icol ] =
-                    new CardinalityChecker( MAX_CARDINALITY );
-            }
-            if ( doQuant && Number.class.isAssignableFrom( clazz ) ) {
-                @SuppressWarnings("unchecked")
-                Class<? extends Number> nclazz =
-                    (Class<? extends Number>) clazz;
-                quantCalcs[ icol ] = QuantCalc.createInstance( nclazz, nrow );
+            clazzes[ icol ] = table.getColumnInfo( icol ).getContentClass();
+            if ( doQuant && Number.class.isAssignableFrom( clazzes[ icol ] ) ) {
+                createQuantCalc( clazzes[ icol ], nrow, quantError );
             }
         }
 
-        /* Populate them with the the data read from the table. */
-        RowSequence rseq = table.getRowSequence();
-        long irow = 0L;
-        try {
-            while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    Object datum = row[ icol ];
-                    colStats[ icol ].acceptDatum( datum );
-                    if ( doCard ) {
-                        cardCheckers[ icol ].acceptDatum( datum );
-                    }
-                    if ( quantCalcs[ icol ] != null ) {
-                        quantCalcs[ icol ].acceptDatum( datum );
-                    }
-                }
-                irow++;
-            }
-
-            /* Get a MapGroup representing column metadata (the option is 
-             * provided to output this alongside the statistical results). */
-            MapGroup<ValueInfo,Object> group =
-                MetadataFilter.metadataMapGroup( table );
-
-            /* Augment the metadata with the relevant statistical results for
-             * each column. */
-            for ( int icol = 0; icol < ncol; icol++ ) {
+        /* Populate statistical accumulators for each column with the data
+         * read from the table.  This is done in parallel if the table
+         * can report row indices for its parts, since these are required
+         * to get the minimum and maximum positions right. */
+        StatsCollector collector =
+            new StatsCollector( clazzes, nrow, doCard, doQuant, quantError );
+        RowRunner runner = hasRowIndex( table ) ? RowRunner.DEFAULT
+                                                : RowRunner.SEQUENTIAL;
+        StatsAccumulator acc = runner.collect( collector, table );
+        UnivariateStats[] colStats = acc.colStats_;
+        CardinalityChecker[] cardCheckers = acc.cardCheckers_;
+        QuantCalc[] quantCalcs = acc.quantCalcs_;
+        long irow = acc.nrow_;
+
+        /* Get a MapGroup representing column metadata (the option is 
+         * provided to output this alongside the statistical results). */
+        MapGroup<ValueInfo,Object> group =
+            MetadataFilter.metadataMapGroup( table );
+
+        /* Augment the metadata with the relevant statistical results for
+         * each column. */
+        for ( int icol = 0; icol < ncol; icol++ ) {
 
-                /* Gather statistical results. */
-                UnivariateStats stats = colStats[ icol ];
-                long count = stats.getCount();
-                double dcount = (double) count;
-                double sum0 = dcount;
-                double sum1 = stats.getSum();
-                double sum2 = stats.getSum2();
-                double sum3 = stats.getSum3();
-                double sum4 = stats.getSum4();
-                double mean = sum1 / dcount;
-                double nvar = ( sum2 - sum1 * sum1 / dcount );
-                double popvar = nvar / dcount;
-                double sampvar = nvar / ( dcount - 1 );
-              
-                double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
-                            * ( + 1 * sum3
-                                - 3 * mean * sum2
-                                + 3 * mean * mean * sum1
-                                - 1 * mean * mean * mean * sum0 );
-                double kurtosis = ( dcount / ( nvar * nvar ) )
-                                * ( + 1 * sum4 
-                                    - 4 * mean * sum3 
-                                    + 6 * mean * mean * sum2
-                                    - 4 * mean * mean * mean * sum1
-                                    + 1 * mean * mean * mean * mean * sum0 )
-                                - 3.0;
-                Number min = stats.getMinimum();
-                Number max = stats.getMaximum();
-
-                /* Add statistical quantities to the column's
-                 * info->values map. */
-                Map<ValueInfo,Object> map = group.getMaps().get( icol );
-                map.put( NGOOD_INFO, new Long( count ) );
-                map.put( NBAD_INFO, new Long( irow - count ) );
-                map.put( SUM_INFO, new Double( sum1 ) );
-                if ( isFinite( mean ) ) {
-                    map.put( MEAN_INFO, new Float( (float) mean ) );
-                }
-                if ( isFinite( popvar ) ) {
-                    map.put( POPSD_INFO,
-                             new Float( (float) Math.sqrt( popvar ) ) );
-                    map.put( POPVAR_INFO, new Float( (float) popvar ) );
-                }
-                if ( isFinite( sampvar ) ) {
-                    map.put( SAMPSD_INFO,
-                             new Float( (float) Math.sqrt( sampvar ) ) );
-                    map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
-                }
-                if ( isFinite( skew ) ) {
-                    map.put( SKEW_INFO, new Float( (float) skew ) );
-                }
-                if ( isFinite( kurtosis ) ) {
-                    map.put( KURT_INFO, new Float( (float) kurtosis ) );
-                }
-                if ( min != null && isFinite( min.doubleValue() ) ) {
-                    map.put( MIN_INFO, min );
-                    map.put( MINPOS_INFO, new Long( stats.getMinPos() + 1 ) );
-                }
-                if ( max != null && isFinite( max.doubleValue() ) ) {
-                    map.put( MAX_INFO, max );
-                    map.put( MAXPOS_INFO, new Long( stats.getMaxPos() + 1 ) );
+            /* Gather statistical results. */
+            UnivariateStats stats = colStats[ icol ];
+            long count = stats.getCount();
+            double dcount = (double) count;
+            double sum0 = dcount;
+            double sum1 = stats.getSum();
+            double sum2 = stats.getSum2();
+            double sum3 = stats.getSum3();
+            double sum4 = stats.getSum4();
+            double mean = sum1 / dcount;
+            double nvar = ( sum2 - sum1 * sum1 / dcount );
+            double popvar = nvar / dcount;
+            double sampvar = nvar / ( dcount - 1 );
+          
+            double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
+                        * ( + 1 * sum3
+                            - 3 * mean * sum2
+                            + 3 * mean * mean * sum1
+                            - 1 * mean * mean * mean * sum0 );
+            double kurtosis = ( dcount / ( nvar * nvar ) )
+                            * ( + 1 * sum4 
+                                - 4 * mean * sum3 
+                                + 6 * mean * mean * sum2
+                                - 4 * mean * mean * mean * sum1
+                                + 1 * mean * mean * mean * mean * sum0 )
+                            - 3.0;
+            Number min = stats.getMinimum();
+            Number max = stats.getMaximum();
+
+            /* Add statistical quantities to the column's
+             * info->values map. */
+            Map<ValueInfo,Object> map = group.getMaps().get( icol );
+            map.put( NGOOD_INFO, new Long( count ) );
+            map.put( NBAD_INFO, new Long( irow - count ) );
+            map.put( SUM_INFO, new Double( sum1 ) );
+            if ( isFinite( mean ) ) {
+                map.put( MEAN_INFO, new Float( (float) mean ) );
+            }
+            if ( isFinite( popvar ) ) {
+                map.put( POPSD_INFO,
+                         new Float( (float) Math.sqrt( popvar ) ) );
+                map.put( POPVAR_INFO, new Float( (float) popvar ) );
+            }
+            if ( isFinite( sampvar ) ) {
+                map.put( SAMPSD_INFO,
+                         new Float( (float) Math.sqrt( sampvar ) ) );
+                map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
+            }
+            if ( isFinite( skew ) ) {
+                map.put( SKEW_INFO, new Float( (float) skew ) );
+            }
+            if ( isFinite( kurtosis ) ) {
+                map.put( KURT_INFO, new Float( (float) kurtosis ) );
+            }
+            if ( min != null && isFinite( min.doubleValue() ) ) {
+                map.put( MIN_INFO, min );
+                map.put( MINPOS_INFO, new Long( stats.getMinPos() + 1 ) );
+            }
+            if ( max != null && isFinite( max.doubleValue() ) ) {
+                map.put( MAX_INFO, max );
+                map.put( MAXPOS_INFO, new Long( stats.getMaxPos() + 1 ) );
+            }
+            if ( doCard ) {
+                int ncard = cardCheckers[ icol ].getCardinality();
+                if ( ncard > 0 ) {
+                    map.put( CARDINALITY_INFO, new Integer( ncard ) );
                 }
-                if ( doCard ) {
-                    int ncard = cardCheckers[ icol ].getCardinality();
-                    if ( ncard > 0 ) {
-                        map.put( CARDINALITY_INFO, new Integer( ncard ) );
-                    }
+            }
+            if ( quantCalcs[ icol ] != null ) {
+                quantCalcs[ icol ].ready();
+                for ( int iq = 0; iq < quantInfos.length; iq++ ) {
+                    QuantileInfo quantInfo = quantInfos[ iq ];
+                    Number quantile = quantCalcs[ icol ]
+                                     .getQuantile( quantInfo.getQuant() );
+                    map.put( quantInfo, quantile );
                 }
-                if ( quantCalcs[ icol ] != null ) {
-                    quantCalcs[ icol ].ready();
-                    for ( int iq = 0; iq < quantInfos.length; iq++ ) {
-                        QuantileInfo quantInfo = quantInfos[ iq ];
-                        Number quantile = quantCalcs[ icol ]
-                                         .getQuantile( quantInfo.getQuant() );
-                        map.put( quantInfo, quantile );
-                    }
-                    if ( doMad ) {
-                        Number mad =
-                            QuantCalc.calculateMedianAbsoluteDeviation(
-                                           quantCalcs[ icol ] );
-                        map.put( MAD_INFO, mad );
-                        map.put( SMAD_INFO, new Float( mad.floatValue() *
-                                                       QuantCalc.MAD_SCALE ) );
-                    }
+                if ( doMad ) {
+                    Number mad =
+                        QuantCalc.calculateMedianAbsoluteDeviation(
+                                       quantCalcs[ icol ] );
+                    map.put( MAD_INFO, new Float( mad.floatValue() ) );
+                    map.put( SMAD_INFO, new Float( mad.floatValue() *
+                                                   QuantCalc.MAD_SCALE ) );
                 }
             }
-            return group;
+        }
+        return group;
+    }
+
+    /**
+     * Indicates whether a table's row splittable can report row indices.
+     *
+     * @param  table  table
+     * @return  true iff row indices are available for parallel processing
+     */
+    private static boolean hasRowIndex( StarTable table ) throws IOException {
+        RowSplittable rseq = table.getRowSplittable();
+        try {
+            return rseq.rowIndex() != null;
         }
         finally {
             rseq.close();
         }
     }
 
+    /**
+     * Creates a quantile calculator for a numeric column.
+     *
+     * @param  clazz  column content class, assignable to Number
+     * @param  nrow   table row count, or -1 if not known
+     * @param  quantError  rank error for approximate quantiles,
+     *                     or NaN for exact
+     * @return  new quantile calculator
+     * @throws  IOException  if exact quantiles cannot be calculated
+     *                       for this row count
+     */
+    private static QuantCalc createQuantCalc( Class<?> clazz, long nrow,
+                                              double quantError )
+            throws IOException {
+        return Double.isNaN( quantError )
+             ? QuantCalc.createInstance( toNumberClass( clazz ), nrow )
+             : QuantCalc.createSketchInstance( toNumberClass( clazz ),
+                                               quantError );
+    }
+
+    /**
+     * Casts a numeric class to the appropriate generic type.
+     *
+     * @param  clazz  class assignable to Number
+     * @return   clazz
+     */
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Number> toNumberClass( Class<?> clazz ) {
+        return (Class<? extends Number>) clazz;
+    }
+
     /**
      * Tests whether a value is finite (not infinite or NaN).
      *
@@ -494,7 +556,8 @@ public class StatsFilter extends BasicFilter {
     private static class CardinalityChecker {
 
         final int maxCard_;
-        Set<Object> items_ = new HashSet<Object>();
+        Map<Object,Long> firstIndexes_ = new HashMap<Object,Long>();
+        long lastIndex_ = -1L;
 
         /**
          * Constructor.
@@ -511,15 +574,47 @@ public class StatsFilter extends BasicFilter {
          * Submits a value for counting.
          *
          * @param  obj  value
+         * @param  index  sequence number of value
          */
-        void acceptDatum( Object obj ) {
-            if ( ! Tables.isBlank( obj ) ) {
-                if ( items_ != null ) {
-                    if ( items_.size() < maxCard_ ) {
-                        items_.add( obj );
+        void acceptDatum( Object obj, long index ) {
+            if ( firstIndexes_ != null && ! Tables.isBlank( obj ) ) {
+                Long index0 = firstIndexes_.get( obj );
+                if ( index0 == null || index < index0.longValue() ) {
+                    firstIndexes_.put( obj, new Long( index ) );
+                }
+                lastIndex_ = Math.max( lastIndex_, index );
+                if ( firstIndexes_.size() > maxCard_ ) {
+                    firstIndexes_ = null;
+                }
+            }
+        }
+
+        /**
+         * Merges the values counted by another checker into this one.
+         * The result does not depend on the order in which checkers
+         * are merged.
+         *
+         * @param  other  checker with the same maximum cardinality
+         */
+        void add( CardinalityChecker other ) {
+            if ( firstIndexes_ != null ) {
+                if ( other.firstIndexes_ == null ) {
+                    firstIndexes_ = null;
+                }
+                else {
+                    for ( Map.Entry<Object,Long> entry :
+                          other.firstIndexes_.entrySet() ) {
+                        Object obj = entry.getKey();
+                        Long index1 = entry.getValue();
+                        Long index0 = firstIndexes_.get( obj );
+                        if ( index0 == null ||
+                             index1.longValue() < index0.longValue() ) {
+                            firstIndexes_.put( obj, index1 );
+                        }
                     }
-                    else {
-                        items_ = null;
+                    lastIndex_ = Math.max( lastIndex_, other.lastIndex_ );
+                    if ( firstIndexes_.size() > maxCard_ ) {
+                        firstIndexes_ = null;
                     }
                 }
             }
@@ -528,13 +623,170 @@ public class StatsFilter extends BasicFilter {
         /**
          * Returns the cardinality of the data items submitted.
          * If the cardinality is greater than <code>maxCard</code>,
-         * -1 will be returned.
+         * -1 will be returned.  Counting is also abandoned,
+         * giving -1, if any value is submitted after the
+         * <code>maxCard</code>'th distinct one.
          *
          * @return   cardinality, or -1
          */
         int getCardinality() {
-            return items_ == null ? -1
-                                  : items_.size();
+            if ( firstIndexes_ == null ) {
+                return -1;
+            }
+            int ncard = firstIndexes_.size();
+            if ( ncard == maxCard_ ) {
+
+                /* As for sequential counting, give up if there is any
+                 * value later in the sequence than the first appearance
+                 * of the last new value. */
+                long lastNew = -1L;
+                for ( Long index : firstIndexes_.values() ) {
+                    lastNew = Math.max( lastNew, index.longValue() );
+                }
+                if ( lastIndex_ > lastNew ) {
+                    return -1;
+                }
+            }
+            return ncard;
+        }
+    }
+
+    /**
+     * Accumulates statistics for all the columns of a table.
+     */
+    private static class StatsAccumulator {
+        final UnivariateStats[] colStats_;
+        final CardinalityChecker[] cardCheckers_;
+        final QuantCalc[] quantCalcs_;
+        long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazzes  column content classes
+         * @param  nrow    table row count, or -1 if not known
+         * @param  doCard  whether to count cardinalities
+         * @param  doQuant  whether to accumulate quantiles
+         * @param  quantError  rank error for approximate quantiles,
+         *                     or NaN for exact
+         */
+        StatsAccumulator( Class<?>[] clazzes, long nrow, boolean doCard,
+                          boolean doQuant, double quantError ) {
+            int ncol = clazzes.length;
+            colStats_ = new UnivariateStats[ ncol ];
+            cardCheckers_ = doCard ? new CardinalityChecker[ ncol ] : null;
+            quantCalcs_ = new QuantCalc[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Class<?> clazz = clazzes[ icol ];
+                colStats_[ icol ] = UnivariateStats.createStats( clazz );
+                if ( doCard ) {
+                    cardCheckers_[ icol ] =
+                        new CardinalityChecker( MAX_CARDINALITY );
+                }
+                if ( doQuant && Number.class.isAssignableFrom( clazz ) ) {
+                    try {
+                        quantCalcs_[ icol ] =
+                            createQuantCalc( clazz, nrow, quantError );
+                    }
+                    catch ( IOException e ) {
+
+                        /* Should have been checked already. */
+                        throw new IllegalStateException( e.getMessage(), e );
+                    }
+                }
+            }
+        }
+
+        /**
+         * Submits a row of data.
+         *
+         * @param  row  row data
+         * @param  irow  row index
+         */
+        void acceptRow( Object[] row, long irow ) {
+            int ncol = colStats_.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Object datum = row[ icol ];
+                colStats_[ icol ].acceptDatum( datum, irow );
+                if ( cardCheckers_ != null ) {
+                    cardCheckers_[ icol ].acceptDatum( datum, irow );
+                }
+                if ( quantCalcs_[ icol ] != null ) {
+                    quantCalcs_[ icol ].acceptDatum( datum );
+                }
+            }
+            nrow_++;
+        }
+
+        /**
+         * Merges the contents of another accumulator into this one.
+         *
+         * @param  other  compatible accumulator
+         */
+        void add( StatsAccumulator other ) {
+            int ncol = colStats_.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                colStats_[ icol ].add( other.colStats_[ icol ] );
+                if ( cardCheckers_ != null ) {
+                    cardCheckers_[ icol ].add( other.cardCheckers_[ icol ] );
+                }
+                if ( quantCalcs_[ icol ] != null ) {
+                    quantCalcs_[ icol ].add( other.quantCalcs_[ icol ] );
+                }
+            }
+            nrow_ += other.nrow_;
+        }
+    }
+
+    /**
+     * Collector for table statistics.
+     */
+    private static class StatsCollector
+            extends RowCollector<StatsAccumulator> {
+        private final Class<?>[] clazzes_;
+        private final long nrow_;
+        private final boolean doCard_;
+        private final boolean doQuant_;
+        private final double quantError_;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazzes  column content classes
+         * @param  nrow    table row count, or -1 if not known
+         * @param  doCard  whether to count cardinalities
+         * @param  doQuant  whether to accumulate quantiles
+         * @param  quantError  rank error for approximate quantiles,
+         *                     or NaN for exact
+         */
+        StatsCollector( Class<?>[] clazzes, long nrow, boolean doCard,
+                        boolean doQuant, double quantError ) {
+            clazzes_ = clazzes;
+            nrow_ = nrow;
+            doCard_ = doCard;
+            doQuant_ = doQuant;
+            quantError_ = quantError;
+        }
+
+        public StatsAccumulator createAccumulator() {
+            return new StatsAccumulator( clazzes_, nrow_, doCard_, doQuant_,
+                                         quantError_ );
+        }
+
+        public StatsAccumulator combine( StatsAccumulator acc1,
+                                         StatsAccumulator acc2 ) {
+            acc1.add( acc2 );
+            return acc1;
+        }
+
+        public void accumulateRows( RowSplittable rseq, StatsAccumulator acc )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            while ( rseq.next() ) {
+                long irow = rowIndex == null ? acc.nrow_
+                                             : rowIndex.getAsLong();
+                acc.acceptRow( rseq.getRow(), irow );
+            }
         }
     }
 }
@@ -51,6 +51,7 @@ public class StepFactory {
         filterFactory_.register( "healpixmeta", pkg + "HealpixMetadataFilter" );
         filterFactory_.register( "keepcols", pkg + "KeepColumnFilter" );
         filterFactory_.register( "meta", pkg + "MetadataFilter" );
+        filterFactory_.register( "prefetch", pkg + "PrefetchFilter" );
         filterFactory_.register( "progress", pkg + "ProgressFilter" );
         filterFactory_.register( "random", pkg + "RandomFilter" );
         filterFactory_.register( "randomview", pkg + "RandomViewFilter" );
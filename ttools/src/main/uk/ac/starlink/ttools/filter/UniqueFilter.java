@@ -1,12 +1,17 @@
 package uk.ac.starlink.ttools.filter;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperStarTable;
@@ -25,7 +30,7 @@ public class UniqueFilter extends BasicFilter {
                               "Number of duplicate rows" );
 
     public UniqueFilter() {
-        super( "uniq", "[-count] [<colid-list>]" );
+        super( "uniq", "[-count] [-global] [<colid-list>]" );
     }
 
     protected String[] getDescriptionLines() {
@@ -44,6 +49,17 @@ public class UniqueFilter extends BasicFilter {
             "input rows represented by each output row.  A unique row",
             "has a " + COUNT_INFO.getName() + " value of 1.",
             "</p>",
+            "<p>If the <code>-global</code> flag is given, then all",
+            "duplicate rows are eliminated, not just adjacent ones;",
+            "the first row with each distinct set of values is retained.",
+            "This uses a hash table of the distinct values seen,",
+            "so it does not require the table to be sorted first.",
+            "If there are very many distinct values, some rows are spilled",
+            "to temporary disk files, and the rows for those values",
+            "are output after the others.",
+            "The output table is not produced until the whole",
+            "input table has been read.",
+            "</p>",
             explainSyntax( new String[] { "colid-list", } ),
         };
     }
@@ -51,12 +67,17 @@ public class UniqueFilter extends BasicFilter {
     public ProcessingStep createStep( Iterator<String> argIt ) {
         String testIds = null;
         boolean count = false;
+        boolean global = false;
         while ( argIt.hasNext() && testIds == null ) {
             String arg = argIt.next();
             if ( arg.equals( "-count" ) ) {
                 argIt.remove();
                 count = true;
             }
+            else if ( arg.equals( "-global" ) ) {
+                argIt.remove();
+                global = true;
+            }
             else {
                 argIt.remove();
                 testIds = arg;
@@ -64,9 +85,86 @@ public class UniqueFilter extends BasicFilter {
         }
         final String tids = testIds;
         final boolean doCount = count;
+        final boolean isGlobal = global;
         return new ProcessingStep() {
             public StarTable wrap( StarTable base ) throws IOException {
-                return new UniqueTable( base, tids, doCount );
+                return isGlobal ? createGlobalUniqueTable( base, tids, doCount )
+                                : new UniqueTable( base, tids, doCount );
+            }
+        };
+    }
+
+    /**
+     * Returns a table containing only the first of each set of rows
+     * with duplicate values, using a hash table.
+     *
+     * @param  base  input table
+     * @param  testIds  list of column identifiers for columns which must
+     *                  be equal for rows to count as duplicates;
+     *                  null for all columns
+     * @param  doCount  whether to prepend a duplicate count column
+     * @return  table without duplicates
+     */
+    private static StarTable createGlobalUniqueTable( final StarTable base,
+                                                      String testIds,
+                                                      boolean doCount )
+            throws IOException {
+        int ncol = base.getColumnCount();
+        final int[] keyCols;
+        if ( testIds == null ) {
+            keyCols = new int[ ncol ];
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                keyCols[ ic ] = ic;
+            }
+        }
+        else {
+            keyCols = new ColumnIdentifier( base ).getColumnIndices( testIds );
+        }
+        int[] aggCols = new int[ ncol ];
+        Aggregator[] aggs = new Aggregator[ ncol ];
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            aggCols[ ic ] = ic;
+            aggs[ ic ] = Aggregator.FIRST;
+        }
+        HashGrouper grouper =
+            new HashGrouper( keyCols, doCount ? COUNT_INFO : null,
+                             aggCols, aggs, StoragePolicy.PREFER_DISK,
+                             HashGrouper.DFLT_MAX_GROUPS );
+        StarTable grouped = grouper.groupTable( base );
+
+        /* Select and rename the count and first-value columns. */
+        int nk = keyCols.length;
+        final int icount0 = doCount ? 1 : 0;
+        int[] outCols = new int[ icount0 + ncol ];
+        if ( doCount ) {
+            outCols[ 0 ] = nk;
+        }
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            outCols[ icount0 + ic ] = nk + icount0 + ic;
+        }
+        return new WrapperStarTable( new ColumnPermutedStarTable( grouped,
+                                                                  outCols ) ) {
+            @Override
+            public ColumnInfo getColumnInfo( int icol ) {
+                return icol < icount0
+                     ? new ColumnInfo( COUNT_INFO )
+                     : base.getColumnInfo( icol - icount0 );
+            }
+            @Override
+            public String getName() {
+                return base.getName();
+            }
+            @Override
+            public URL getURL() {
+                return base.getURL();
+            }
+            @Override
+            public List<DescribedValue> getParameters() {
+                return base.getParameters();
+            }
+            @Override
+            public DescribedValue getParameterByName( String name ) {
+                return base.getParameterByName( name );
             }
         };
     }
@@ -9,6 +9,14 @@ import uk.ac.starlink.table.Tables;
  * {@link #acceptDatum} and then call the various accessor methods to 
  * get accumulated values.
  *
+ * <p>For parallel processing, data from different parts of a sequence
+ * may be fed to separate instances, supplying the sequence index of
+ * each datum explicitly, and the instances then merged using
+ * the {@link #add add} method.
+ * The result is the same as for sequential accumulation,
+ * except that the sums may differ slightly
+ * because of the different order of floating point additions.
+ *
  * @author   Mark Taylor
  * @since    27 Apr 2006
  */
@@ -23,6 +31,34 @@ public abstract class UnivariateStats {
      */
     public abstract void acceptDatum( Object value );
 
+    /**
+     * Submits a single value with a given sequence number to the
+     * statistics accumulator.
+     * The sequence number is used to report the positions of
+     * extreme values.  Subsequent calls to {@link #acceptDatum(Object)}
+     * will assume sequence numbers following on from this one.
+     *
+     * @param   value   value object
+     * @param   index   sequence number of value
+     */
+    public abstract void acceptDatum( Object value, long index );
+
+    /**
+     * Merges the contents of the supplied stats object into this one.
+     * The effect is as if all the values accumulated into other
+     * had been accumulated into this one.
+     * The effect on the supplied other is undefined.
+     *
+     * <p>The supplied object is assumed to be <em>compatible</em>
+     * with this one, which means created by {@link #createStats}
+     * using the same class.
+     * If not, some RuntimeException such as a ClassCastException
+     * may result.
+     *
+     * @param  other  compatible stats instance
+     */
+    public abstract void add( UnivariateStats other );
+
     /**
      * Returns the number of good (non-null) values accumulated.
      *
@@ -119,6 +155,14 @@ public abstract class UnivariateStats {
             }
         }
 
+        public void acceptDatum( Object obj, long index ) {
+            acceptDatum( obj );
+        }
+
+        public void add( UnivariateStats other ) {
+            nGood_ += ((ObjectStats) other).nGood_;
+        }
+
         public long getCount() {
             return nGood_;
         }
@@ -172,6 +216,16 @@ public abstract class UnivariateStats {
             }
         }
 
+        public void acceptDatum( Object obj, long index ) {
+            acceptDatum( obj );
+        }
+
+        public void add( UnivariateStats other ) {
+            BooleanStats o = (BooleanStats) other;
+            nGood_ += o.nGood_;
+            nTrue_ += o.nTrue_;
+        }
+
         public long getCount() {
             return nGood_;
         }
@@ -227,6 +281,10 @@ public abstract class UnivariateStats {
         private long maxPos_ = -1L;
         
         public void acceptDatum( Object obj ) {
+            acceptDatum( obj, iDatum_ );
+        }
+
+        public void acceptDatum( Object obj, long index ) {
             if ( obj instanceof Number ) {
                 Number val = (Number) obj;
                 double dval = val.doubleValue();
@@ -243,16 +301,44 @@ public abstract class UnivariateStats {
                     if ( ! ( dval >= dmin_ ) ) {  // note NaN handling
                         dmin_ = dval;
                         min_ = val;
-                        minPos_ = iDatum_;
+                        minPos_ = index;
                     }
                     if ( ! ( dval <= dmax_ ) ) {  // note NaN handling
                         dmax_ = dval;
                         max_ = val;
-                        maxPos_ = iDatum_;
+                        maxPos_ = index;
                     }
                 }
             }
-            iDatum_++;
+            iDatum_ = index + 1;
+        }
+
+        public void add( UnivariateStats other ) {
+            NumberStats o = (NumberStats) other;
+            iDatum_ = Math.max( iDatum_, o.iDatum_ );
+            if ( o.nGood_ == 0 ) {
+                return;
+            }
+            nGood_ += o.nGood_;
+            sum1_ += o.sum1_;
+            sum2_ += o.sum2_;
+            sum3_ += o.sum3_;
+            sum4_ += o.sum4_;
+
+            /* Where extreme values are equal, retain the first one
+             * in sequence, as for sequential accumulation. */
+            if ( ! ( o.dmin_ >= dmin_ ) ||
+                 ( o.dmin_ == dmin_ && o.minPos_ < minPos_ ) ) {
+                dmin_ = o.dmin_;
+                min_ = o.min_;
+                minPos_ = o.minPos_;
+            }
+            if ( ! ( o.dmax_ <= dmax_ ) ||
+                 ( o.dmax_ == dmax_ && o.maxPos_ < maxPos_ ) ) {
+                dmax_ = o.dmax_;
+                max_ = o.max_;
+                maxPos_ = o.maxPos_;
+            }
         }
 
         public long getCount() {
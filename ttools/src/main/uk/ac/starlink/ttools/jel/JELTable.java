@@ -1,12 +1,14 @@
 package uk.ac.starlink.ttools.jel;
 
 import java.io.IOException;
+import java.util.function.LongSupplier;
 import gnu.jel.CompilationException;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Evaluator;
 import gnu.jel.Library;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperRowSequence;
@@ -25,8 +27,7 @@ public class JELTable extends WrapperStarTable {
     private final StarTable baseTable_;
     private final String[] exprs_;
     private final ColumnInfo[] colInfos_;
-    private final CompiledExpression[] randomCompexs_;
-    private final RandomJELRowReader randomReader_;
+    private final ThreadLocal<RandomEvaluator> randomEvaluators_;
     private final int ncol_;
 
     /**
@@ -58,15 +59,14 @@ public class JELTable extends WrapperStarTable {
         }
         ncol_ = exprs.length;
 
-        /* Compile the expressions ready for random evaluation. */
-        randomReader_ = new RandomJELRowReader( baseTable );
-        Library lib = JELUtils.getLibrary( randomReader_ );
-        randomCompexs_ = new CompiledExpression[ ncol_ ];
+        /* Check that the expressions compile. */
+        Library lib =
+            JELUtils.getLibrary( new RandomJELRowReader( baseTable ) );
         for ( int i = 0; i < ncol_; i++ ) {
             final String expr = exprs_[ i ];
             ColumnInfo colInfo = colInfos_[ i ];
             try {
-                randomCompexs_[ i ] = JELUtils.compile( lib, baseTable, expr );
+                JELUtils.compile( lib, baseTable, expr );
             }
 
             /* If there's trouble, rethrow the exception to give more
@@ -98,6 +98,15 @@ public class JELTable extends WrapperStarTable {
             }
             colInfos_[ i ].setContentClass( clazz );
         }
+
+        /* Random evaluation uses a separate row reader for each thread,
+         * so that concurrent random access is not serialized. */
+        randomEvaluators_ = new ThreadLocal<RandomEvaluator>() {
+            @Override
+            protected RandomEvaluator initialValue() {
+                return new RandomEvaluator();
+            }
+        };
     }
 
     public int getColumnCount() {
@@ -109,8 +118,10 @@ public class JELTable extends WrapperStarTable {
     }
 
     public Object getCell( long irow, int icol ) throws IOException {
+        RandomEvaluator evaluator = randomEvaluators_.get();
         try {
-            return randomReader_.evaluateAtRow( randomCompexs_[ icol ], irow );
+            return evaluator.reader_
+                  .evaluateAtRow( evaluator.compexs_[ icol ], irow );
         }
         catch ( IOException e ) {
             throw e;
@@ -184,6 +195,202 @@ public class JELTable extends WrapperStarTable {
         };
     }
 
+    /**
+     * Returns a RowSplittable in which each split evaluates the
+     * expressions with its own JEL row reader, so that rows can be
+     * evaluated by several threads at once.
+     * If the base table's splittable does not supply row indices,
+     * the default implementation is used.
+     */
+    @Override
+    public RowSplittable getRowSplittable() throws IOException {
+        RowSplittable baseSplit = baseTable_.getRowSplittable();
+        if ( baseSplit.rowIndex() != null ) {
+            return new JELSplittable( baseSplit );
+        }
+        else {
+            baseSplit.close();
+            return super.getRowSplittable();
+        }
+    }
+
+    /**
+     * Compiles this table's expressions for use with a given row reader.
+     *
+     * @param  rdr  row reader providing the evaluation context
+     * @return   per-column compiled expressions
+     */
+    private CompiledExpression[]
+            compileExpressions( StarTableJELRowReader rdr )
+            throws CompilationException {
+        Library lib = JELUtils.getLibrary( rdr );
+        CompiledExpression[] compexs = new CompiledExpression[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            compexs[ icol ] =
+                JELUtils.compile( lib, baseTable_, exprs_[ icol ] );
+        }
+        return compexs;
+    }
+
+    /**
+     * Evaluates a compiled expression with a given row reader,
+     * rethrowing checked exceptions as IOExceptions.
+     *
+     * @param  rdr  row reader positioned at the row of interest
+     * @param  compex  compiled expression
+     * @return  evaluated value
+     */
+    private static Object evaluate( StarTableJELRowReader rdr,
+                                    CompiledExpression compex )
+            throws IOException {
+        try {
+            return rdr.evaluate( compex );
+        }
+        catch ( IOException e ) {
+            throw e;
+        }
+        catch ( RuntimeException e ) {
+            throw e;
+        }
+        catch ( Error e ) {
+            throw e;
+        }
+        catch ( Throwable e ) {
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+    }
+
+    /**
+     * Aggregates a random-access row reader with the expressions
+     * compiled for it.  Instances are used by a single thread.
+     */
+    private class RandomEvaluator {
+        final RandomJELRowReader reader_;
+        final CompiledExpression[] compexs_;
+
+        /**
+         * Constructor.
+         */
+        RandomEvaluator() {
+            reader_ = new RandomJELRowReader( baseTable_ );
+            try {
+                compexs_ = compileExpressions( reader_ );
+            }
+            catch ( CompilationException e ) {
+                throw (AssertionError)
+                      new AssertionError( "Well it compiled OK last time" )
+                     .initCause( e );
+            }
+        }
+    }
+
+    /**
+     * JEL row reader which takes its values from a base RowSplittable.
+     */
+    private static class SplitJELRowReader extends StarTableJELRowReader {
+        final RowSplittable baseSplit_;
+        final LongSupplier baseIndex_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table providing JEL context
+         * @param  baseSplit  splittable from <code>table</code>,
+         *                    which must supply row indices
+         */
+        SplitJELRowReader( StarTable table, RowSplittable baseSplit ) {
+            super( table );
+            baseSplit_ = baseSplit;
+            baseIndex_ = baseSplit.rowIndex();
+        }
+
+        protected Object getCell( int icol ) throws IOException {
+            return baseSplit_.getCell( icol );
+        }
+
+        public long getCurrentRow() {
+            return baseIndex_.getAsLong();
+        }
+    }
+
+    /**
+     * RowSplittable which evaluates this table's expressions on the
+     * rows of a base splittable.
+     */
+    private class JELSplittable implements RowSplittable {
+        final RowSplittable baseSplit_;
+        SplitJELRowReader reader_;
+        CompiledExpression[] compexs_;
+
+        /**
+         * Constructor.
+         *
+         * @param  baseSplit  splittable from the base table,
+         *                    which must supply row indices
+         */
+        JELSplittable( RowSplittable baseSplit ) {
+            baseSplit_ = baseSplit;
+        }
+
+        public JELSplittable split() {
+            RowSplittable baseSplit1 = baseSplit_.split();
+            return baseSplit1 == null ? null
+                                      : new JELSplittable( baseSplit1 );
+        }
+
+        public long splittableSize() {
+            return baseSplit_.splittableSize();
+        }
+
+        public LongSupplier rowIndex() {
+            return baseSplit_.rowIndex();
+        }
+
+        public boolean next() throws IOException {
+            return baseSplit_.next();
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            prepare();
+            return evaluate( reader_, compexs_[ icol ] );
+        }
+
+        public Object[] getRow() throws IOException {
+            prepare();
+            Object[] row = new Object[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] = evaluate( reader_, compexs_[ icol ] );
+            }
+            return row;
+        }
+
+        public void close() throws IOException {
+            baseSplit_.close();
+        }
+
+        /**
+         * Lazily sets up the row reader and compiled expressions
+         * for this split.  This is not done at construction time,
+         * since splittables that are only used for further splitting
+         * do not need them.
+         */
+        private void prepare() throws IOException {
+            if ( reader_ == null ) {
+                SplitJELRowReader reader =
+                    new SplitJELRowReader( baseTable_, baseSplit_ );
+                try {
+                    compexs_ = compileExpressions( reader );
+                }
+                catch ( CompilationException e ) {
+                    throw (IOException)
+                          new IOException( "Bad expression" ).initCause( e );
+                }
+                reader_ = reader;
+            }
+        }
+    }
+
     /**
      * Convenience factory method.  It turns all the supplied <code>infos</code>
      * into ColumnInfos and rethrows any CompilationException as an
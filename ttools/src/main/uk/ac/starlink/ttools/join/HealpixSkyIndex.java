@@ -0,0 +1,475 @@
+package uk.ac.starlink.ttools.join;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.ttools.cone.PixtoolsHealpix;
+import uk.ac.starlink.ttools.func.CoordsRadians;
+
+/**
+ * Persistent on-disk index of sky positions for a table,
+ * sorted by HEALPix pixel, which can be used for repeated sky
+ * crossmatching against a fixed reference table without having
+ * to load or re-bin it each time.
+ *
+ * <p>The file consists of a fixed-length header, followed by a
+ * directory giving the starting entry index for each HEALPix pixel
+ * (NESTED scheme) at the index order, followed by the entries
+ * themselves, each of which records the row index and position
+ * of one row of the indexed table.
+ * All values are big-endian.
+ * Access to the directory and entries is done using memory-mapped
+ * buffers, so that only the parts of the index actually required
+ * for a given match are paged into memory.
+ *
+ * <p>Index construction requires two sequential passes through the
+ * indexed table, but memory usage does not depend on its size.
+ *
+ * <p>Instances of this class are safe for concurrent use.
+ */
+public class HealpixSkyIndex {
+
+    private final File file_;
+    private final int order_;
+    private final long nrow_;
+    private final long nentry_;
+    private final LongBuffer dirBuf_;
+    private final ByteBuffer[] entryBufs_;
+
+    /** Maximum HEALPix order supported for indices. */
+    public static final int MAX_ORDER = 12;
+
+    private static final byte[] MAGIC = new byte[] {
+        'H', 'P', 'X', 'S', 'K', 'Y', 'I', 'X', '0', '1',
+    };
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 24;
+    private static final int SEG_SHIFT = 25;
+    private static final long SEG_MASK = ( 1L << SEG_SHIFT ) - 1;
+    private static final PixtoolsHealpix hpi_ = PixtoolsHealpix.getInstance();
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.join" );
+
+    /**
+     * Constructor.
+     *
+     * @param  file  file containing index
+     * @param  order  HEALPix order
+     * @param  nrow   row count of indexed table
+     * @param  nentry  number of indexed positions
+     * @param  dirBuf  directory buffer
+     * @param  entryBufs  array of buffers containing entries
+     */
+    private HealpixSkyIndex( File file, int order, long nrow, long nentry,
+                             LongBuffer dirBuf, ByteBuffer[] entryBufs ) {
+        file_ = file;
+        order_ = order;
+        nrow_ = nrow;
+        nentry_ = nentry;
+        dirBuf_ = dirBuf;
+        entryBufs_ = entryBufs;
+    }
+
+    /**
+     * Returns the file containing this index.
+     *
+     * @return  index file
+     */
+    public File getFile() {
+        return file_;
+    }
+
+    /**
+     * Returns the HEALPix order at which this index is pixelised.
+     *
+     * @return  order
+     */
+    public int getOrder() {
+        return order_;
+    }
+
+    /**
+     * Returns the number of rows in the table that was indexed.
+     *
+     * @return  row count
+     */
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    /**
+     * Returns the number of entries in this index.
+     * This is the number of rows in the indexed table with
+     * non-blank positions.
+     *
+     * @return  entry count
+     */
+    public long getEntryCount() {
+        return nentry_;
+    }
+
+    /**
+     * Returns all the entries in this index within a given distance
+     * of a given sky position, in order of increasing separation.
+     *
+     * @param  raDeg   right ascension in degrees
+     * @param  decDeg  declination in degrees
+     * @param  radiusDeg  maximum separation in degrees
+     * @return  matches sorted by separation; empty array if none
+     */
+    public Match[] findMatches( double raDeg, double decDeg,
+                                double radiusDeg ) {
+        if ( Double.isNaN( raDeg ) || Double.isNaN( decDeg ) ||
+             ! ( radiusDeg >= 0 ) ) {
+            return new Match[ 0 ];
+        }
+        raDeg = normaliseRa( raDeg );
+
+        /* Make sure the pixel containing the position itself is included,
+         * since for very small radii the disc query may not report it. */
+        long[] pixels = hpi_.queryDisc( order_, raDeg, decDeg, radiusDeg );
+        long pix0 = hpi_.ang2pix( order_, raDeg, decDeg );
+        if ( Arrays.binarySearch( sorted( pixels ), pix0 ) < 0 ) {
+            pixels = Arrays.copyOf( pixels, pixels.length + 1 );
+            pixels[ pixels.length - 1 ] = pix0;
+        }
+        double ra = Math.toRadians( raDeg );
+        double dec = Math.toRadians( decDeg );
+        double radius = Math.toRadians( radiusDeg );
+        List<Match> matchList = new ArrayList<Match>( 1 );
+        for ( long pix : pixels ) {
+            long ie0 = dirBuf_.get( (int) pix );
+            long ie1 = dirBuf_.get( (int) pix + 1 );
+            for ( long ie = ie0; ie < ie1; ie++ ) {
+                ByteBuffer buf = entryBufs_[ (int) ( ie >>> SEG_SHIFT ) ];
+                int off = (int) ( ie & SEG_MASK ) * ENTRY_SIZE;
+                double ra1 = Math.toRadians( buf.getDouble( off + 8 ) );
+                double dec1 = Math.toRadians( buf.getDouble( off + 16 ) );
+                double sep =
+                    CoordsRadians.skyDistanceRadians( ra, dec, ra1, dec1 );
+                if ( sep <= radius ) {
+                    matchList.add( new Match( buf.getLong( off ),
+                                              Math.toDegrees( sep ) ) );
+                }
+            }
+        }
+        Match[] matches = matchList.toArray( new Match[ 0 ] );
+        Arrays.sort( matches );
+        return matches;
+    }
+
+    /**
+     * Opens an existing index file.
+     *
+     * @param  file  index file
+     * @return   index
+     * @throws  IOException  if the file is not a sky index or
+     *                       cannot be read
+     */
+    public static HealpixSkyIndex readIndex( File file ) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel chan = raf.getChannel();
+            ByteBuffer hdr = ByteBuffer.allocate( HEADER_SIZE );
+            while ( hdr.hasRemaining() ) {
+                if ( chan.read( hdr ) < 0 ) {
+                    throw new IOException( "Not a sky index file: " + file );
+                }
+            }
+            hdr.flip();
+            byte[] magic = new byte[ MAGIC.length ];
+            hdr.get( magic );
+            if ( ! Arrays.equals( magic, MAGIC ) ) {
+                throw new IOException( "Not a sky index file: " + file );
+            }
+            int order = hdr.getInt( 16 );
+            long nrow = hdr.getLong( 24 );
+            long nentry = hdr.getLong( 32 );
+            if ( order < 0 || order > MAX_ORDER || nentry < 0 ) {
+                throw new IOException( "Corrupted sky index file: " + file );
+            }
+            long npix = 12L << ( 2 * order );
+            long dirSize = ( npix + 1 ) * 8;
+            long expectSize = HEADER_SIZE + dirSize + nentry * ENTRY_SIZE;
+            if ( raf.length() != expectSize ) {
+                throw new IOException( "Sky index file " + file
+                                     + " has wrong length (" + raf.length()
+                                     + " != " + expectSize + ")" );
+            }
+            LongBuffer dirBuf =
+                chan.map( FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dirSize )
+                    .asLongBuffer();
+            ByteBuffer[] entryBufs =
+                mapEntries( chan, FileChannel.MapMode.READ_ONLY,
+                            HEADER_SIZE + dirSize, nentry );
+            return new HealpixSkyIndex( file, order, nrow, nentry, dirBuf,
+                                        entryBufs );
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes an index file for a table of sky positions.
+     * The table must have two numeric columns giving the right ascension
+     * and declination in degrees of each row.  Rows with blank
+     * positions are not indexed.  The table is read twice.
+     *
+     * @param  posTable  two-column table giving positions
+     * @param  order   HEALPix order for index, in range 0..MAX_ORDER
+     * @param  file   destination file; any existing file is overwritten
+     */
+    public static void writeIndex( StarTable posTable, int order, File file )
+            throws IOException {
+        if ( order < 0 || order > MAX_ORDER ) {
+            throw new IllegalArgumentException( "HEALPix order " + order
+                                              + " out of range 0.."
+                                              + MAX_ORDER );
+        }
+        long npix = 12L << ( 2 * order );
+        long dirSize = ( npix + 1 ) * 8;
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            FileChannel chan = raf.getChannel();
+            raf.setLength( 0 );
+            raf.setLength( HEADER_SIZE + dirSize );
+
+            /* First pass: count entries per pixel, using the directory
+             * region of the output file as the count array. */
+            LongBuffer dirBuf =
+                chan.map( FileChannel.MapMode.READ_WRITE, HEADER_SIZE,
+                          dirSize )
+                    .asLongBuffer();
+            long nrow = 0;
+            long nentry = 0;
+            RowSequence rseq = posTable.getRowSequence();
+            try {
+                for ( ; rseq.next(); nrow++ ) {
+                    long pix = getPixel( order, rseq.getRow() );
+                    if ( pix >= 0 ) {
+                        dirBuf.put( (int) pix, dirBuf.get( (int) pix ) + 1 );
+                        nentry++;
+                    }
+                }
+            }
+            finally {
+                rseq.close();
+            }
+            logger_.info( "Sky index: " + nentry + "/" + nrow
+                        + " positions in " + npix + " pixels" );
+
+            /* Turn counts into start offsets. */
+            long start = 0;
+            for ( int ip = 0; ip < npix; ip++ ) {
+                long count = dirBuf.get( ip );
+                dirBuf.put( ip, start );
+                start += count;
+            }
+            assert start == nentry;
+
+            /* Second pass: write entries to their positions, using the
+             * directory entries as per-pixel cursors.  Within each pixel,
+             * entries are in row order. */
+            raf.setLength( HEADER_SIZE + dirSize + nentry * ENTRY_SIZE );
+            ByteBuffer[] entryBufs =
+                mapEntries( chan, FileChannel.MapMode.READ_WRITE,
+                            HEADER_SIZE + dirSize, nentry );
+            rseq = posTable.getRowSequence();
+            long irow = 0;
+            try {
+                for ( ; rseq.next(); irow++ ) {
+                    Object[] row = rseq.getRow();
+                    long pix = getPixel( order, row );
+                    if ( pix >= 0 ) {
+                        long ie = dirBuf.get( (int) pix );
+                        if ( ie >= nentry || irow >= nrow ) {
+                            throw new IOException( "Table changed between "
+                                                 + "reads" );
+                        }
+                        dirBuf.put( (int) pix, ie + 1 );
+                        ByteBuffer buf =
+                            entryBufs[ (int) ( ie >>> SEG_SHIFT ) ];
+                        int off = (int) ( ie & SEG_MASK ) * ENTRY_SIZE;
+                        buf.putLong( off, irow );
+                        buf.putDouble( off + 8,
+                                       ((Number) row[ 0 ]).doubleValue() );
+                        buf.putDouble( off + 16,
+                                       ((Number) row[ 1 ]).doubleValue() );
+                    }
+                }
+            }
+            finally {
+                rseq.close();
+            }
+            if ( irow != nrow ) {
+                throw new IOException( "Table changed between reads" );
+            }
+
+            /* Each directory entry now holds the end of its pixel,
+             * which is the start of the next one; shift them along. */
+            for ( int ip = (int) npix; ip > 0; ip-- ) {
+                dirBuf.put( ip, dirBuf.get( ip - 1 ) );
+            }
+            dirBuf.put( 0, 0L );
+            assert dirBuf.get( (int) npix ) == nentry;
+
+            /* Write the header last, so that an incomplete file will
+             * not be recognised. */
+            ByteBuffer hdr = ByteBuffer.allocate( HEADER_SIZE );
+            hdr.put( MAGIC );
+            hdr.putInt( 16, order );
+            hdr.putLong( 24, nrow );
+            hdr.putLong( 32, nentry );
+            hdr.position( 0 );
+            chan.write( hdr, 0 );
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns a suitable HEALPix order for an index of a table
+     * with a given number of rows.
+     * This aims for a mean of a few entries per pixel,
+     * while keeping the directory a reasonable size.
+     *
+     * @param  nrow  number of rows, or -1 if not known
+     * @return  index order
+     */
+    public static int getDefaultOrder( long nrow ) {
+        if ( nrow < 0 ) {
+            return 10;
+        }
+        int order = 0;
+        while ( order < MAX_ORDER && ( 12L << ( 2 * order ) ) * 4 < nrow ) {
+            order++;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the pixel index for a row of a position table.
+     *
+     * @param  order  HEALPix order
+     * @param  row   row with RA, Dec in degrees as first two elements
+     * @return  pixel index, or -1 for a blank position
+     */
+    private static long getPixel( int order, Object[] row ) {
+        Object raObj = row[ 0 ];
+        Object decObj = row[ 1 ];
+        if ( raObj instanceof Number && decObj instanceof Number ) {
+            double ra = ((Number) raObj).doubleValue();
+            double dec = ((Number) decObj).doubleValue();
+            if ( ! Double.isNaN( ra ) && dec >= -90 && dec <= 90 ) {
+                return hpi_.ang2pix( order, normaliseRa( ra ), dec );
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a right ascension value in the range 0..360.
+     *
+     * @param  raDeg  right ascension in degrees
+     * @return  equivalent right ascension in the range 0 &lt;= ra &lt; 360
+     */
+    private static double normaliseRa( double raDeg ) {
+        if ( raDeg >= 0 && raDeg < 360 ) {
+            return raDeg;
+        }
+        double ra = raDeg % 360.0;
+        return ra < 0 ? ra + 360.0 : ra;
+    }
+
+    /**
+     * Maps the entries region of an index file as an array of buffers.
+     *
+     * @param  chan  file channel
+     * @param  mode  map mode
+     * @param  offset  file offset of first entry
+     * @param  nentry  number of entries
+     * @return  array of buffers, each containing up to 2^SEG_SHIFT entries
+     */
+    private static ByteBuffer[] mapEntries( FileChannel chan,
+                                            FileChannel.MapMode mode,
+                                            long offset, long nentry )
+            throws IOException {
+        int nseg = (int) ( ( nentry + SEG_MASK ) >>> SEG_SHIFT );
+        ByteBuffer[] bufs = new ByteBuffer[ nseg ];
+        for ( int is = 0; is < nseg; is++ ) {
+            long ie0 = ( (long) is ) << SEG_SHIFT;
+            long n = Math.min( 1L << SEG_SHIFT, nentry - ie0 );
+            MappedByteBuffer buf =
+                chan.map( mode, offset + ie0 * ENTRY_SIZE, n * ENTRY_SIZE );
+            bufs[ is ] = buf;
+        }
+        return bufs;
+    }
+
+    /**
+     * Returns a sorted copy of an array.
+     *
+     * @param  array  input array
+     * @return  sorted copy
+     */
+    private static long[] sorted( long[] array ) {
+        long[] copy = array.clone();
+        Arrays.sort( copy );
+        return copy;
+    }
+
+    /**
+     * Represents a match of a position against an entry in this index.
+     */
+    public static class Match implements Comparable<Match> {
+        private final long irow_;
+        private final double sep_;
+
+        /**
+         * Constructor.
+         *
+         * @param  irow  row index in indexed table
+         * @param  sep   separation in degrees
+         */
+        Match( long irow, double sep ) {
+            irow_ = irow;
+            sep_ = sep;
+        }
+
+        /**
+         * Returns the row index in the indexed table.
+         *
+         * @return  row index
+         */
+        public long getRowIndex() {
+            return irow_;
+        }
+
+        /**
+         * Returns the separation between the query position and the
+         * position of the indexed row.
+         *
+         * @return  separation in degrees
+         */
+        public double getSeparation() {
+            return sep_;
+        }
+
+        public int compareTo( Match other ) {
+            int c = Double.compare( this.sep_, other.sep_ );
+            return c != 0 ? c : Long.compare( this.irow_, other.irow_ );
+        }
+    }
+}
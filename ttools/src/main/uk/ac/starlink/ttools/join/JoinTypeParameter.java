@@ -14,11 +14,25 @@ import uk.ac.starlink.task.UsageException;
  */
 public class JoinTypeParameter extends ChoiceParameter<JoinType> {
 
+    /**
+     * Constructs a parameter offering all the pair join types.
+     *
+     * @param  name  parameter name
+     */
     public JoinTypeParameter( String name ) {
-        super( name, JoinType.getPairTypes() );
+        this( name, JoinType.getPairTypes() );
+    }
+
+    /**
+     * Constructs a parameter offering a given list of join types.
+     *
+     * @param  name  parameter name
+     * @param  joins  available options
+     */
+    public JoinTypeParameter( String name, JoinType[] joins ) {
+        super( name, joins );
 
         StringBuffer items = new StringBuffer();
-        JoinType[] joins = JoinType.getPairTypes();
         for ( int i = 0; i < joins.length; i++ ) {
             JoinType join = joins[ i ];
             items.append( "<li><code>" )
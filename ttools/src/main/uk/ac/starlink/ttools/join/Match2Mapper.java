@@ -2,6 +2,7 @@ package uk.ac.starlink.ttools.join;
 
 import gnu.jel.CompilationException;
 import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.join.JoinType;
 import uk.ac.starlink.table.join.MatchEngine;
@@ -32,6 +33,7 @@ public class Match2Mapper implements TableMapper {
     private final FindModeParameter modeParam_;
     private final JoinFixActionParameter fixcolParam_;
     private final ProgressIndicatorParameter progressParam_;
+    private final ParallelParameter parallelParam_;
 
     /**
      * Constructor.
@@ -46,6 +48,7 @@ public class Match2Mapper implements TableMapper {
         joinParam_ = new JoinTypeParameter( "join" );
         modeParam_ = new FindModeParameter( "find" );
         progressParam_ = new ProgressIndicatorParameter( "progress" );
+        parallelParam_ = new ParallelParameter( "parallel" );
     }
 
     public Parameter<?>[] getParameters() {
@@ -62,6 +65,7 @@ public class Match2Mapper implements TableMapper {
             fixcolParam_.createSuffixParameter( "2" ),
             matcherParam_.getScoreParameter(),
             progressParam_,
+            parallelParam_,
         };
     }
 
@@ -87,10 +91,11 @@ public class Match2Mapper implements TableMapper {
         ValueInfo scoreInfo = matcherParam_.getScoreInfo( env );
         ProgressIndicator progger =
             progressParam_.progressIndicatorValue( env );
+        RowRunner runner = parallelParam_.rowRunnerValue( env );
 
         /* Construct and return a mapping based on this lot. */
         return new Match2Mapping( matcher, tupleExprs[ 0 ], tupleExprs[ 1 ],
                                   join, pairMode, fixacts[ 0 ], fixacts[ 1 ],
-                                  scoreInfo, progger );
+                                  scoreInfo, progger, runner );
     }
 }
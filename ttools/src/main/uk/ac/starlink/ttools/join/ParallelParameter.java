@@ -0,0 +1,47 @@
+package uk.ac.starlink.ttools.join;
+
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.task.BooleanParameter;
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.TaskException;
+
+/**
+ * Parameter for determining whether matching is done using
+ * multiple threads.
+ */
+public class ParallelParameter extends BooleanParameter {
+
+    /**
+     * Constructor.
+     *
+     * @param   name  parameter name
+     */
+    public ParallelParameter( String name ) {
+        super( name );
+        setPrompt( "Use multiple threads for matching?" );
+        setBooleanDefault( true );
+        setDescription( new String[] {
+            "<p>Determines whether the match is performed using",
+            "multiple threads.",
+            "If true, the row-by-row comparison of one table against",
+            "the other(s) may be split between the available processors,",
+            "which can make large matches run considerably faster",
+            "on multi-core machines.",
+            "Small tables are always processed sequentially.",
+            "The match result does not depend on this setting;",
+            "you might want to set it false to limit resource usage",
+            "on a shared machine, or to assess performance.",
+            "</p>",
+        } );
+    }
+
+    /**
+     * Returns the row runner indicated by the value of this parameter.
+     *
+     * @param  env  execution environment
+     * @return  row runner, not null
+     */
+    public RowRunner rowRunnerValue( Environment env ) throws TaskException {
+        return booleanValue( env ) ? RowRunner.DEFAULT : RowRunner.SEQUENTIAL;
+    }
+}
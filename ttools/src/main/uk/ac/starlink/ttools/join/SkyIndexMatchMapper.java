@@ -0,0 +1,154 @@
+package uk.ac.starlink.ttools.join;
+
+import java.io.File;
+import java.io.IOException;
+import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.join.JoinType;
+import uk.ac.starlink.task.ChoiceParameter;
+import uk.ac.starlink.task.DoubleParameter;
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.ExecutionException;
+import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.ParameterValueException;
+import uk.ac.starlink.task.StringParameter;
+import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.task.InputTableSpec;
+import uk.ac.starlink.ttools.task.SkyCoordParameter;
+import uk.ac.starlink.ttools.task.TableMapper;
+import uk.ac.starlink.ttools.task.TableMapping;
+
+/**
+ * TableMapper which matches a streamed input table against a
+ * reference table using a persistent sky index (tskymatchindex).
+ *
+ * @see      HealpixSkyIndex
+ */
+public class SkyIndexMatchMapper implements TableMapper {
+
+    private final StringParameter raParam_;
+    private final StringParameter decParam_;
+    private final StringParameter indexParam_;
+    private final DoubleParameter errorParam_;
+    private final ChoiceParameter<String> findParam_;
+    private final JoinTypeParameter joinParam_;
+
+    private static final String FIND_BEST = "best";
+    private static final String FIND_ALL = "all";
+
+    /**
+     * Constructor.
+     */
+    public SkyIndexMatchMapper() {
+        raParam_ = SkyCoordParameter.createRaParameter( "ra1", null,
+                                                        "table 1" );
+        decParam_ = SkyCoordParameter.createDecParameter( "dec1", null,
+                                                          "table 1" );
+
+        indexParam_ = new StringParameter( "index" );
+        indexParam_.setUsage( "<filename>" );
+        indexParam_.setPrompt( "Sky index file for table 2" );
+        indexParam_.setDescription( new String[] {
+            "<p>Location of a sky index file for the second input table,",
+            "as written by the <ref id='skyindex'/> command.",
+            "The index must have been created from the same table",
+            "as the one given for <code>in2</code>;",
+            "a check is made that the row counts agree,",
+            "but nothing more.",
+            "</p>",
+        } );
+
+        errorParam_ = new DoubleParameter( "error" );
+        errorParam_.setUsage( "<value/arcsec>" );
+        errorParam_.setPrompt( "Maximum separation in arcsec" );
+        errorParam_.setDescription( new String[] {
+            "<p>The maximum separation permitted between two objects",
+            "for them to count as a match.  Units are arc seconds.",
+            "</p>",
+        } );
+
+        findParam_ = new ChoiceParameter<String>( "find", new String[] {
+            FIND_BEST, FIND_ALL,
+        } );
+        findParam_.setPrompt( "Which matches to include" );
+        findParam_.setDescription( new String[] {
+            "<p>Determines what happens when a row in the first table",
+            "is matched by more than one row in the second table.",
+            "The options are:",
+            "<ul>",
+            "<li><code>" + FIND_BEST + "</code>:",
+            "only the closest table 2 row is matched to each table 1 row",
+            "</li>",
+            "<li><code>" + FIND_ALL + "</code>:",
+            "every table 2 row within the match error is matched",
+            "to each table 1 row, in order of increasing separation",
+            "</li>",
+            "</ul>",
+            "Note that unlike the <code>best</code> option of",
+            "<ref id='tskymatch2'/>, a table 2 row may be matched",
+            "by more than one table 1 row.",
+            "</p>",
+        } );
+        findParam_.setDefaultOption( FIND_BEST );
+
+        joinParam_ = new JoinTypeParameter( "join", new JoinType[] {
+            JoinType._1AND2, JoinType._ALL1, JoinType._1NOT2,
+        } );
+    }
+
+    public Parameter<?>[] getParameters() {
+        return new Parameter<?>[] {
+            raParam_,
+            decParam_,
+            indexParam_,
+            errorParam_,
+            findParam_,
+            joinParam_,
+        };
+    }
+
+    public TableMapping createMapping( Environment env, int nin )
+            throws TaskException {
+        final String raExpr = raParam_.stringValue( env );
+        final String decExpr = decParam_.stringValue( env );
+        final File indexFile = new File( indexParam_.stringValue( env ) );
+        final double errorDeg = errorParam_.doubleValue( env ) / 3600.0;
+        if ( ! ( errorDeg >= 0 ) ) {
+            throw new ParameterValueException( errorParam_,
+                                               "Negative value illegal" );
+        }
+        final boolean bestOnly =
+            FIND_BEST.equals( findParam_.objectValue( env ) );
+        final JoinType join = joinParam_.joinTypeValue( env );
+        final JoinFixAction fixact1 =
+            JoinFixAction.makeRenameDuplicatesAction( "_1", false, true );
+        final JoinFixAction fixact2 =
+            JoinFixAction.makeRenameDuplicatesAction( "_2", false, true );
+        return new TableMapping() {
+            public StarTable mapTables( InputTableSpec[] inSpecs )
+                    throws IOException, TaskException {
+                StarTable inTable = inSpecs[ 0 ].getWrappedTable();
+                String ra = raExpr;
+                String dec = decExpr;
+                if ( ra == null || ra.trim().length() == 0 ) {
+                    ra = SkyCoordParameter.guessRaDegreesExpression( inTable );
+                }
+                if ( dec == null || dec.trim().length() == 0 ) {
+                    dec = SkyCoordParameter
+                         .guessDecDegreesExpression( inTable );
+                }
+                if ( ra == null || dec == null ) {
+                    throw new ExecutionException( "Failed to identify likely "
+                                                + "RA/DEC columns" );
+                }
+                HealpixSkyIndex index = HealpixSkyIndex.readIndex( indexFile );
+                StarTable refTable =
+                    Tables.randomTable( inSpecs[ 1 ].getWrappedTable() );
+                return new SkyIndexMatchTable( inTable, ra, dec, index,
+                                               refTable, errorDeg, bestOnly,
+                                               join, fixact1, fixact2 );
+            }
+        };
+    }
+}
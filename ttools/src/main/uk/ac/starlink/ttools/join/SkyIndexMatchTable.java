@@ -0,0 +1,274 @@
+package uk.ac.starlink.ttools.join;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.JoinStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.join.JoinType;
+import uk.ac.starlink.ttools.filter.AddColumnsTable;
+import uk.ac.starlink.ttools.filter.JELColumnSupplement;
+
+/**
+ * Table giving the result of matching the rows of an input table
+ * against a reference table for which a persistent sky index exists.
+ *
+ * <p>The input table is only read sequentially, once, and no per-row
+ * state is accumulated, so that arbitrarily large or streamed input
+ * tables can be matched in constant memory.
+ * The reference table must provide random access.
+ * The output rows appear in input row order; where several reference
+ * rows match a given input row, they appear in order of increasing
+ * separation.
+ */
+public class SkyIndexMatchTable extends AbstractStarTable {
+
+    private final StarTable inTable_;
+    private final StarTable posTable_;
+    private final StarTable refTable_;
+    private final HealpixSkyIndex index_;
+    private final double errorDeg_;
+    private final boolean bestOnly_;
+    private final JoinType join_;
+    private final int nin_;
+    private final int nref_;
+    private final ColumnInfo[] colInfos_;
+
+    /** Metadata for the separation column. */
+    public static final ColumnInfo SEPARATION_INFO =
+        createSeparationInfo();
+
+    /**
+     * Constructor.
+     *
+     * @param  inTable  input table, only read sequentially
+     * @param  raExpr   JEL expression for right ascension in degrees
+     *                  in input table
+     * @param  decExpr  JEL expression for declination in degrees
+     *                  in input table
+     * @param  index    sky index for reference table
+     * @param  refTable  random-access reference table;
+     *                   its row count must match that of the index
+     * @param  errorDeg  maximum match separation in degrees
+     * @param  bestOnly  if true, only the closest reference row is
+     *                   matched to each input row;
+     *                   if false, all matches within the error are output
+     * @param  join   output row selection; must be one of
+     *                {@link JoinType#_1AND2}, {@link JoinType#_ALL1}
+     *                or {@link JoinType#_1NOT2}
+     * @param  fixact1  deduplication fix action for input table columns
+     * @param  fixact2  deduplication fix action for reference table columns
+     * @throws  IOException  if the position expressions cannot be compiled
+     */
+    public SkyIndexMatchTable( StarTable inTable, String raExpr,
+                               String decExpr, HealpixSkyIndex index,
+                               StarTable refTable, double errorDeg,
+                               boolean bestOnly, JoinType join,
+                               JoinFixAction fixact1, JoinFixAction fixact2 )
+            throws IOException {
+        if ( ! refTable.isRandom() ) {
+            throw new IllegalArgumentException( "Reference table not random" );
+        }
+        if ( refTable.getRowCount() != index.getRowCount() ) {
+            throw new IOException( "Reference table row count "
+                                 + refTable.getRowCount()
+                                 + " does not match index row count "
+                                 + index.getRowCount() );
+        }
+        if ( join != JoinType._1AND2 && join != JoinType._ALL1 &&
+             join != JoinType._1NOT2 ) {
+            throw new IllegalArgumentException( "Unsupported join type "
+                                              + join );
+        }
+        inTable_ = inTable;
+        refTable_ = refTable;
+        index_ = index;
+        errorDeg_ = errorDeg;
+        bestOnly_ = bestOnly;
+        join_ = join;
+        ColumnInfo[] posInfos = new ColumnInfo[] {
+            new ColumnInfo( "RA", Double.class, null ),
+            new ColumnInfo( "DEC", Double.class, null ),
+        };
+        posTable_ =
+            new AddColumnsTable( inTable,
+                                 new JELColumnSupplement( inTable,
+                                                          new String[] {
+                                                              raExpr, decExpr,
+                                                          }, posInfos ) );
+        nin_ = inTable.getColumnCount();
+        nref_ = refTable.getColumnCount();
+
+        /* Work out output column metadata. */
+        if ( join == JoinType._1NOT2 ) {
+            colInfos_ = new ColumnInfo[ nin_ ];
+            for ( int ic = 0; ic < nin_; ic++ ) {
+                colInfos_[ ic ] = new ColumnInfo( inTable.getColumnInfo( ic ) );
+            }
+        }
+        else {
+            StarTable joined =
+                new JoinStarTable( new StarTable[] { inTable, refTable },
+                                   new JoinFixAction[] { fixact1, fixact2 } );
+            colInfos_ = new ColumnInfo[ nin_ + nref_ + 1 ];
+            for ( int ic = 0; ic < nin_ + nref_; ic++ ) {
+                colInfos_[ ic ] = joined.getColumnInfo( ic );
+            }
+            colInfos_[ nin_ + nref_ ] = new ColumnInfo( SEPARATION_INFO );
+        }
+        setName( inTable.getName() );
+        setURL( inTable.getURL() );
+        setParameters( inTable.getParameters() );
+    }
+
+    public int getColumnCount() {
+        return colInfos_.length;
+    }
+
+    public ColumnInfo getColumnInfo( int icol ) {
+        return colInfos_[ icol ];
+    }
+
+    /**
+     * Returns -1, since the number of matches is not known in advance.
+     */
+    public long getRowCount() {
+        return -1;
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        return new MatchRowSequence( posTable_.getRowSequence() );
+    }
+
+    /**
+     * Returns the metadata for the separation column.
+     *
+     * @return  separation column metadata
+     */
+    private static ColumnInfo createSeparationInfo() {
+        ColumnInfo info =
+            new ColumnInfo( "Separation", Double.class,
+                            "Distance between matched objects" );
+        info.setUnitString( "arcsec" );
+        info.setUCD( "pos.angDistance" );
+        return info;
+    }
+
+    /**
+     * Row sequence which reads input rows and queues the output rows
+     * resulting from matching each one.
+     */
+    private class MatchRowSequence implements RowSequence {
+
+        private final RowSequence posSeq_;
+        private final Deque<Object[]> queue_;
+        private Object[] row_;
+
+        /**
+         * Constructor.
+         *
+         * @param  posSeq  sequence over the input table with RA and Dec
+         *                 columns appended
+         */
+        MatchRowSequence( RowSequence posSeq ) {
+            posSeq_ = posSeq;
+            queue_ = new ArrayDeque<Object[]>();
+        }
+
+        public boolean next() throws IOException {
+            while ( queue_.isEmpty() ) {
+                if ( ! posSeq_.next() ) {
+                    row_ = null;
+                    return false;
+                }
+                matchRow( posSeq_.getRow() );
+            }
+            row_ = queue_.removeFirst();
+            return true;
+        }
+
+        public Object getCell( int icol ) {
+            return getRow()[ icol ];
+        }
+
+        public Object[] getRow() {
+            if ( row_ == null ) {
+                throw new NoSuchElementException();
+            }
+            return row_;
+        }
+
+        public void close() throws IOException {
+            posSeq_.close();
+        }
+
+        /**
+         * Matches a single input row against the index, and adds
+         * any resulting output rows to the queue.
+         *
+         * @param  posRow  input row with RA and Dec values appended
+         */
+        private void matchRow( Object[] posRow ) throws IOException {
+            double ra = toDouble( posRow[ nin_ ] );
+            double dec = toDouble( posRow[ nin_ + 1 ] );
+            HealpixSkyIndex.Match[] matches =
+                index_.findMatches( ra, dec, errorDeg_ );
+            int nm = bestOnly_ ? Math.min( 1, matches.length )
+                               : matches.length;
+            if ( join_ == JoinType._1NOT2 ) {
+                if ( nm == 0 ) {
+                    Object[] row = new Object[ nin_ ];
+                    System.arraycopy( posRow, 0, row, 0, nin_ );
+                    queue_.addLast( row );
+                }
+            }
+            else {
+                for ( int im = 0; im < nm; im++ ) {
+                    HealpixSkyIndex.Match match = matches[ im ];
+                    Object[] refRow = refTable_.getRow( match.getRowIndex() );
+                    Double sep =
+                        Double.valueOf( match.getSeparation() * 3600.0 );
+                    queue_.addLast( createRow( posRow, refRow, sep ) );
+                }
+                if ( nm == 0 && join_ == JoinType._ALL1 ) {
+                    queue_.addLast( createRow( posRow, null, null ) );
+                }
+            }
+        }
+
+        /**
+         * Assembles an output row.
+         *
+         * @param  posRow  input row with position values appended
+         * @param  refRow  reference table row, or null for blank
+         * @param  sep     separation in arcsec, or null
+         * @return  output row
+         */
+        private Object[] createRow( Object[] posRow, Object[] refRow,
+                                    Double sep ) {
+            Object[] row = new Object[ nin_ + nref_ + 1 ];
+            System.arraycopy( posRow, 0, row, 0, nin_ );
+            if ( refRow != null ) {
+                System.arraycopy( refRow, 0, row, nin_, nref_ );
+            }
+            row[ nin_ + nref_ ] = sep;
+            return row;
+        }
+    }
+
+    /**
+     * Converts a cell value to a double.
+     *
+     * @param  value  cell value
+     * @return  numeric value, or NaN if not numeric
+     */
+    private static double toDouble( Object value ) {
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+}
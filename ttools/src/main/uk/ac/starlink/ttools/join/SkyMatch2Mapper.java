@@ -2,6 +2,7 @@ package uk.ac.starlink.ttools.join;
 
 import java.io.PrintStream;
 import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.join.FixedSkyMatchEngine;
 import uk.ac.starlink.table.join.HealpixSkyPixellator;
 import uk.ac.starlink.table.join.JoinType;
@@ -35,6 +36,7 @@ public class SkyMatch2Mapper implements TableMapper {
     private final JoinTypeParameter joinParam_;
     private final FindModeParameter modeParam_;
     private final IntegerParameter healpixkParam_;
+    private final ParallelParameter parallelParam_;
 
     /**
      * Constructor.
@@ -89,6 +91,7 @@ public class SkyMatch2Mapper implements TableMapper {
 
         joinParam_ = new JoinTypeParameter( "join" );
         modeParam_ = new FindModeParameter( "find" );
+        parallelParam_ = new ParallelParameter( "parallel" );
     }
 
     public Parameter<?>[] getParameters() {
@@ -101,6 +104,7 @@ public class SkyMatch2Mapper implements TableMapper {
             healpixkParam_,
             joinParam_,
             modeParam_,
+            parallelParam_,
         }; 
     }
 
@@ -126,6 +130,7 @@ public class SkyMatch2Mapper implements TableMapper {
         pixer.setHealpixK( k );
         JoinType join = joinParam_.joinTypeValue( env );
         PairMode pairMode = modeParam_.objectValue( env );
+        RowRunner runner = parallelParam_.rowRunnerValue( env );
 
         JoinFixAction fixact1 =
             JoinFixAction.makeRenameDuplicatesAction( "_1", false, true );
@@ -137,6 +142,7 @@ public class SkyMatch2Mapper implements TableMapper {
                 ? (ProgressIndicator) new NullProgressIndicator()
                 : (ProgressIndicator) new TextProgressIndicator( err, false );
         return new SkyMatch2Mapping( matcher, ra1, dec1, ra2, dec2, join,
-                                     pairMode, fixact1, fixact2, progger );
+                                     pairMode, fixact1, fixact2, progger,
+                                     runner );
     }
 }
@@ -16,6 +16,7 @@ import uk.ac.starlink.table.Tables;
 public abstract class ColStats {
 
     private final String name_;
+    private Number median_;
 
     /**
      * Constructs a new stats object.
@@ -92,6 +93,26 @@ public abstract class ColStats {
         return ngood < 0 ? null : formatLong( getGoodCountValue() );
     }
 
+    /**
+     * Returns formatted median value of accepted data.
+     * This is only available if it has been set using
+     * {@link #setMedianValue}.
+     *
+     * @return  median
+     */
+    public String getMedian() {
+        return formatObject( median_ );
+    }
+
+    /**
+     * Sets the median value, which is not calculated by this object.
+     *
+     * @param  median  median value, or null
+     */
+    void setMedianValue( Number median ) {
+        median_ = median;
+    }
+
     private static String formatDouble( double val ) {
         return Double.isNaN( val ) ? null : Float.toString( (float) val );
     }
@@ -119,6 +140,30 @@ public abstract class ColStats {
      */
     protected abstract void acceptDatum( Object value );
 
+    /**
+     * Data are submitted to this statistics accumulator with an explicit
+     * sequence number using this method.
+     * The sequence number is used to determine which of several equal
+     * extreme values is reported, so that accumulating parts of a
+     * sequence separately and merging them with {@link #add}
+     * gives the same result as sequential accumulation.
+     *
+     * @param   value   data value to be accumulated into totals
+     * @param   index   sequence number of value
+     */
+    protected abstract void acceptDatum( Object value, long index );
+
+    /**
+     * Merges the contents of the supplied stats object into this one.
+     * The effect is as if all the values accumulated into other
+     * had been accumulated into this one.
+     * The supplied object must have been created by
+     * {@link #makeColStats} for the same column.
+     *
+     * @param  other  compatible stats object
+     */
+    protected abstract void add( ColStats other );
+
     /**
      * Returns the mean of the accumulated data.
      *
@@ -187,6 +232,12 @@ public abstract class ColStats {
                 ngood_++;
             }
         }
+        protected void acceptDatum( Object obj, long index ) {
+            acceptDatum( obj );
+        }
+        protected void add( ColStats other ) {
+            ngood_ += ((BasicColStats) other).ngood_;
+        }
         protected double getMeanValue() {
             return Double.NaN;
         }
@@ -221,6 +272,11 @@ public abstract class ColStats {
                 }
             }
         }
+        protected void add( ColStats other ) {
+            BooleanColStats o = (BooleanColStats) other;
+            ngood_ += o.ngood_;
+            ntrue_ += o.ntrue_;
+        }
         protected double getMeanValue() {
             return (double) ntrue_ / (double) ngood_;
         }
@@ -240,12 +296,19 @@ public abstract class ColStats {
         private double dmax_ = -Double.MAX_VALUE;
         private Object min_;
         private Object max_;
+        private long minPos_ = -1;
+        private long maxPos_ = -1;
+        private long iDatum_;
 
         public NumberColStats( ColumnInfo colInfo ) {
             super( colInfo );
         }
 
         protected void acceptDatum( Object obj ) {
+            acceptDatum( obj, iDatum_ );
+        }
+
+        protected void acceptDatum( Object obj, long index ) {
             if ( obj instanceof Number ) {
                 double dval = ((Number) obj).doubleValue();
                 if ( ! Double.isNaN( dval ) ) {
@@ -255,13 +318,38 @@ public abstract class ColStats {
                     if ( dval < dmin_ ) {
                         dmin_ = dval;
                         min_ = obj;
+                        minPos_ = index;
                     }
                     if ( dval > dmax_ ) {
                         dmax_ = dval;
                         max_ = obj;
+                        maxPos_ = index;
                     }
                 }
             }
+            iDatum_ = index + 1;
+        }
+
+        protected void add( ColStats other ) {
+            NumberColStats o = (NumberColStats) other;
+            iDatum_ = Math.max( iDatum_, o.iDatum_ );
+            ngood_ += o.ngood_;
+            sum_ += o.sum_;
+            sum2_ += o.sum2_;
+            if ( o.min_ != null &&
+                 ( o.dmin_ < dmin_ || min_ == null ||
+                   ( o.dmin_ == dmin_ && o.minPos_ < minPos_ ) ) ) {
+                dmin_ = o.dmin_;
+                min_ = o.min_;
+                minPos_ = o.minPos_;
+            }
+            if ( o.max_ != null &&
+                 ( o.dmax_ > dmax_ || max_ == null ||
+                   ( o.dmax_ == dmax_ && o.maxPos_ < maxPos_ ) ) ) {
+                dmax_ = o.dmax_;
+                max_ = o.max_;
+                maxPos_ = o.maxPos_;
+            }
         }
 
         protected double getMeanValue() {
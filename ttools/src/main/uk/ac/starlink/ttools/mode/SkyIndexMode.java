@@ -0,0 +1,149 @@
+package uk.ac.starlink.ttools.mode;
+
+import java.io.File;
+import java.io.IOException;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.ExecutionException;
+import uk.ac.starlink.task.IntegerParameter;
+import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.StringParameter;
+import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.DocUtils;
+import uk.ac.starlink.ttools.TableConsumer;
+import uk.ac.starlink.ttools.jel.JELTable;
+import uk.ac.starlink.ttools.join.HealpixSkyIndex;
+import uk.ac.starlink.ttools.task.SkyCoordParameter;
+
+/**
+ * Writes a persistent HEALPix sky position index for a table.
+ *
+ * @see      uk.ac.starlink.ttools.join.HealpixSkyIndex
+ */
+public class SkyIndexMode implements ProcessingMode {
+
+    private final StringParameter raParam_;
+    private final StringParameter decParam_;
+    private final IntegerParameter orderParam_;
+    private final StringParameter outParam_;
+
+    /**
+     * Constructor.
+     */
+    public SkyIndexMode() {
+        String system = null;
+        String inDescrip = "the input table";
+        raParam_ =
+            SkyCoordParameter.createRaParameter( "ra", system, inDescrip );
+        decParam_ =
+            SkyCoordParameter.createDecParameter( "dec", system, inDescrip );
+
+        orderParam_ = new IntegerParameter( "order" );
+        orderParam_.setPrompt( "HEALPix order for index" );
+        orderParam_.setMinimum( 0 );
+        orderParam_.setMaximum( HealpixSkyIndex.MAX_ORDER );
+        orderParam_.setNullPermitted( true );
+        orderParam_.setDescription( new String[] {
+            "<p>HEALPix order at which the index is pixelised.",
+            "Any value gives correct match results,",
+            "but the value affects the index size and match performance.",
+            "The angular resolution corresponding to order <em>k</em>",
+            "is approximately 3520*2^<em>-k</em> arcmin;",
+            "the index directory takes 96*4^<em>k</em> bytes.",
+            "If left blank, a value is chosen based on the table size",
+            "if it is known.",
+            "The maximum value is " + HealpixSkyIndex.MAX_ORDER + ".",
+            "</p>",
+        } );
+
+        outParam_ = new StringParameter( "out" );
+        outParam_.setUsage( "<filename>" );
+        outParam_.setPrompt( "Location of output index file" );
+        outParam_.setDescription( new String[] {
+            "<p>Name of the file to which the index will be written.",
+            "Memory-mapped access is used for writing and reading the index,",
+            "so it must be a file on a local filesystem.",
+            "</p>",
+        } );
+    }
+
+    public Parameter<?>[] getAssociatedParameters() {
+        return new Parameter<?>[] {
+            raParam_,
+            decParam_,
+            orderParam_,
+            outParam_,
+        };
+    }
+
+    public String getDescription() {
+        return DocUtils.join( new String[] {
+            "<p>Writes an index file containing the sky positions",
+            "of the rows of the input table sorted by HEALPix pixel.",
+            "This can be used by the <ref id='tskymatchindex'/> command",
+            "to crossmatch other tables against the input table",
+            "without having to read it all and bin it in memory each time.",
+            "</p>",
+        } );
+    }
+
+    public TableConsumer createConsumer( Environment env )
+            throws TaskException {
+        final String raExpr = raParam_.stringValue( env );
+        final String decExpr = decParam_.stringValue( env );
+        final Integer order = orderParam_.objectValue( env );
+        final File file = new File( outParam_.stringValue( env ) );
+        return new TableConsumer() {
+            public void consume( StarTable table ) throws IOException {
+                StarTable posTable = createPositionTable( table, raExpr,
+                                                          decExpr );
+                int k = order == null
+                      ? HealpixSkyIndex.getDefaultOrder( table.getRowCount() )
+                      : order.intValue();
+                HealpixSkyIndex.writeIndex( posTable, k, file );
+            }
+        };
+    }
+
+    /**
+     * Returns a two-column table giving RA and Dec in degrees for
+     * each row of an input table.
+     *
+     * @param  table  input table
+     * @param  raExpr  JEL expression for RA in degrees,
+     *                 or null to guess
+     * @param  decExpr  JEL expression for Declination in degrees,
+     *                  or null to guess
+     * @return  table with position columns
+     * @throws  IOException  if the position columns cannot be determined
+     */
+    private static StarTable createPositionTable( StarTable table,
+                                                  String raExpr,
+                                                  String decExpr )
+            throws IOException {
+        if ( raExpr == null || raExpr.trim().length() == 0 ) {
+            raExpr = SkyCoordParameter.guessRaDegreesExpression( table );
+        }
+        if ( decExpr == null || decExpr.trim().length() == 0 ) {
+            decExpr = SkyCoordParameter.guessDecDegreesExpression( table );
+        }
+        if ( raExpr == null || decExpr == null ) {
+            throw new IOException( "Failed to identify likely "
+                                 + "RA/DEC columns" );
+        }
+        ValueInfo[] infos = new ValueInfo[] {
+            new DefaultValueInfo( "RA", Double.class, "Right ascension" ),
+            new DefaultValueInfo( "DEC", Double.class, "Declination" ),
+        };
+        try {
+            return JELTable.createJELTable( table, infos,
+                                            new String[] { raExpr, decExpr } );
+        }
+        catch ( ExecutionException e ) {
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+    }
+}
@@ -3,19 +3,25 @@ package uk.ac.starlink.ttools.mode;
 import java.beans.IntrospectionException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.function.LongSupplier;
 import uk.ac.starlink.table.BeanStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.formats.TextTableWriter;
+import uk.ac.starlink.task.DoubleParameter;
 import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.TableConsumer;
 import uk.ac.starlink.ttools.filter.KeepColumnFilter;
+import uk.ac.starlink.ttools.filter.QuantCalc;
 import uk.ac.starlink.ttools.filter.StatsFilter;
 
 /**
@@ -26,11 +32,42 @@ import uk.ac.starlink.ttools.filter.StatsFilter;
  */
 public class StatsMode implements ProcessingMode {
 
+    private final DoubleParameter qapproxParam_;
+
     private static final ValueInfo ROWCOUNT_INFO = 
         new DefaultValueInfo( "Total Rows", Long.class );
 
+    /**
+     * Constructor.
+     */
+    public StatsMode() {
+        qapproxParam_ = new DoubleParameter( "qapprox" );
+        qapproxParam_.setUsage( "<rank-error>" );
+        qapproxParam_.setPrompt( "Rank error for approximate median" );
+        qapproxParam_.setMinimum( 0, false );
+        qapproxParam_.setMaximum( 1, false );
+        qapproxParam_.setNullPermitted( true );
+        qapproxParam_.setDescription( new String[] {
+            "<p>If set, an approximate median is displayed",
+            "for each numeric column as well as the other statistics.",
+            "The median is estimated from a fixed-size sketch of",
+            "the column data, so it can be calculated in a small,",
+            "constant amount of memory however long the table is.",
+            "The value gives the permitted error in the rank",
+            "of the reported median as a fraction of the number of values;",
+            "for instance with a value of 0.001, the median reported",
+            "for a million-row column will usually lie between the",
+            "499000th and 501000th values in order.",
+            "</p>",
+            "<p>If left blank, no median is calculated.",
+            "</p>",
+        } );
+    }
+
     public Parameter<?>[] getAssociatedParameters() {
-        return new Parameter<?>[ 0 ];
+        return new Parameter<?>[] {
+            qapproxParam_,
+        };
     }
 
     public String getDescription() {
@@ -43,6 +80,8 @@ public class StatsMode implements ProcessingMode {
             "<li>population standard deviation</li>",
             "<li>minimum</li>",
             "<li>maximum</li>",
+            "<li>approximate median (if <code>" + qapproxParam_.getName()
+                                                 + "</code> is set)</li>",
             "<li>number of non-null entries</li>",
             "</ul>",
             "</p>",
@@ -52,7 +91,11 @@ public class StatsMode implements ProcessingMode {
         } );
     }
 
-    public TableConsumer createConsumer( Environment env ) {
+    public TableConsumer createConsumer( Environment env )
+            throws TaskException {
+        Double qapprox = qapproxParam_.objectValue( env );
+        final double quantError = qapprox == null ? Double.NaN
+                                                  : qapprox.doubleValue();
         final PrintStream out = env.getOutputStream();
         return new TableConsumer() {
             public void consume( StarTable table ) throws IOException {
@@ -62,8 +105,8 @@ public class StatsMode implements ProcessingMode {
                  * around for manipulation and output of tables, it turns out
                  * to be convenient to use them rather than to write a 
                  * statistics outputter from scratch. */
-                new TextTableWriter().writeStarTable( makeStatsTable( table ),
-                                                      out );
+                new TextTableWriter()
+                   .writeStarTable( makeStatsTable( table, quantError ), out );
             }
         };
     }
@@ -73,35 +116,35 @@ public class StatsMode implements ProcessingMode {
      * of another table.
      *
      * @param   table  table whose stats are to be calculated
+     * @param   quantError  rank error for approximate median calculation,
+     *                      or NaN for no median
      * @return   table containing statistics of <tt>table</tt>
      */
-    private static StarTable makeStatsTable( StarTable table )
+    private static StarTable makeStatsTable( StarTable table,
+                                             double quantError )
             throws IOException {
 
-        /* Get an array of objects each of which can accumulate the
-         * statistics for one column of the base table. */
-        int ncol = table.getColumnCount();
-        ColStats[] stats = new ColStats[ ncol ];
-        for ( int icol = 0; icol < ncol; icol++ ) {
-            stats[ icol ] =
-                ColStats.makeColStats( table.getColumnInfo( icol ) );
-        }
-
-        /* Accumulate the statistics. */
-        RowSequence rseq = table.getRowSequence();
-        long nrow = 0;
-        try {
-            while ( rseq.next() ) {
-                nrow++;
-                Object[] row = rseq.getRow();
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    stats[ icol ].acceptDatum( row[ icol ] );
+        /* Accumulate the statistics, in parallel if possible.
+         * Row indices are required for parallel accumulation,
+         * so that the reported extrema are the same as for
+         * sequential accumulation. */
+        RowSplittable rseq = table.getRowSplittable();
+        RowRunner runner = rseq.rowIndex() != null ? RowRunner.DEFAULT
+                                                   : RowRunner.SEQUENTIAL;
+        StatsAccumulator acc =
+            runner.collect( new StatsCollector( table, quantError ), rseq );
+        ColStats[] stats = acc.stats_;
+        long nrow = acc.nrow_;
+        boolean hasMedian = ! Double.isNaN( quantError );
+        if ( hasMedian ) {
+            for ( int icol = 0; icol < stats.length; icol++ ) {
+                QuantCalc qcalc = acc.quantCalcs_[ icol ];
+                if ( qcalc != null ) {
+                    qcalc.ready();
+                    stats[ icol ].setMedianValue( qcalc.getQuantile( 0.5 ) );
                 }
             }
         }
-        finally {
-            rseq.close();
-        }
 
         /* Turn the array of ColStats objects into a StarTable. */
         StarTable statsTable;
@@ -124,6 +167,7 @@ public class StatsMode implements ProcessingMode {
             "stdDev " +
             "min " +
             "max " +
+            ( hasMedian ? "median " : "" ) +
             "good " +
             "";
         statsTable = KeepColumnFilter.keepColumnTable( statsTable, columns );
@@ -134,4 +178,94 @@ public class StatsMode implements ProcessingMode {
         return statsTable;
     }
 
+    /**
+     * Accumulates statistics for all the columns of a table.
+     */
+    private static class StatsAccumulator {
+        final ColStats[] stats_;
+        final QuantCalc[] quantCalcs_;
+        long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table whose columns will be accumulated
+         * @param  quantError  rank error for approximate median calculation,
+         *                     or NaN for no median
+         */
+        StatsAccumulator( StarTable table, double quantError ) {
+            int ncol = table.getColumnCount();
+            stats_ = new ColStats[ ncol ];
+            quantCalcs_ = new QuantCalc[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                ColumnInfo info = table.getColumnInfo( icol );
+                stats_[ icol ] = ColStats.makeColStats( info );
+                Class<?> clazz = info.getContentClass();
+                if ( ! Double.isNaN( quantError ) &&
+                     Number.class.isAssignableFrom( clazz ) ) {
+                    quantCalcs_[ icol ] =
+                        QuantCalc.createSketchInstance(
+                            clazz.asSubclass( Number.class ), quantError );
+                }
+            }
+        }
+    }
+
+    /**
+     * Collector for column statistics.
+     */
+    private static class StatsCollector
+            extends RowCollector<StatsAccumulator> {
+        private final StarTable table_;
+        private final double quantError_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table whose rows will be collected
+         * @param  quantError  rank error for approximate median calculation,
+         *                     or NaN for no median
+         */
+        StatsCollector( StarTable table, double quantError ) {
+            table_ = table;
+            quantError_ = quantError;
+        }
+
+        public StatsAccumulator createAccumulator() {
+            return new StatsAccumulator( table_, quantError_ );
+        }
+
+        public StatsAccumulator combine( StatsAccumulator acc1,
+                                         StatsAccumulator acc2 ) {
+            for ( int icol = 0; icol < acc1.stats_.length; icol++ ) {
+                acc1.stats_[ icol ].add( acc2.stats_[ icol ] );
+                if ( acc1.quantCalcs_[ icol ] != null ) {
+                    acc1.quantCalcs_[ icol ].add( acc2.quantCalcs_[ icol ] );
+                }
+            }
+            acc1.nrow_ += acc2.nrow_;
+            return acc1;
+        }
+
+        public void accumulateRows( RowSplittable rseq, StatsAccumulator acc )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            ColStats[] stats = acc.stats_;
+            QuantCalc[] quantCalcs = acc.quantCalcs_;
+            int ncol = stats.length;
+            while ( rseq.next() ) {
+                long irow = rowIndex == null ? acc.nrow_
+                                             : rowIndex.getAsLong();
+                Object[] row = rseq.getRow();
+                for ( int icol = 0; icol < ncol; icol++ ) {
+                    stats[ icol ].acceptDatum( row[ icol ], irow );
+                    if ( quantCalcs[ icol ] != null ) {
+                        quantCalcs[ icol ].acceptDatum( row[ icol ] );
+                    }
+                }
+                acc.nrow_++;
+            }
+        }
+    }
+
 }
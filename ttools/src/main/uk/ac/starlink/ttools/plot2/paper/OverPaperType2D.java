@@ -1,9 +1,19 @@
 package uk.ac.starlink.ttools.plot2.paper;
 
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.util.BitSet;
+import javax.swing.Icon;
+import uk.ac.starlink.ttools.plot2.Drawing;
 import uk.ac.starlink.ttools.plot2.Pixer;
+import uk.ac.starlink.ttools.plot2.Slow;
+import uk.ac.starlink.ttools.plot2.Surface;
+import uk.ac.starlink.ttools.plot2.data.DataStore;
 
 /**
  * Bitmapped 2D PaperType which just plots graphics over the top of any
@@ -22,7 +32,70 @@ public class OverPaperType2D extends RgbPaperType2D {
     }
 
     protected RgbPaper2D createPaper2D( Rectangle bounds ) {
-        return new OverPaper( this, bounds );
+        return new OverPaper( this, bounds, false );
+    }
+
+    /**
+     * Paints a single drawing onto a new transparent image covering
+     * the plot bounds, with no background.
+     *
+     * <p>Since this paper type just plots each layer over the top of
+     * the previous ones, compositing the images of a sequence of drawings
+     * in order onto the plot background, as done by
+     * {@link #createCompositeIcon createCompositeIcon},
+     * gives the same result as {@link #createDataIcon createDataIcon}.
+     * Layers can therefore be painted independently of each other,
+     * and the images of unchanged layers can be re-used.
+     *
+     * @param  surface  plot surface
+     * @param  drawing  drawing to paint
+     * @param  plan   plan object corresponding to drawing
+     * @param  dataStore  data storage object
+     * @return  new ARGB image the size of the plot bounds
+     */
+    @Slow
+    public BufferedImage createLayerImage( Surface surface, Drawing drawing,
+                                           Object plan, DataStore dataStore ) {
+        OverPaper paper = new OverPaper( this, surface.getPlotBounds(), true );
+        drawing.paintData( plan, paper, dataStore );
+        paper.flush();
+        return paper.getRgbImage().getImage();
+    }
+
+    /**
+     * Returns a data icon formed by compositing layer images in order
+     * over the plot background.
+     *
+     * @param  surface  plot surface
+     * @param  layerImages  images created by
+     *                      {@link #createLayerImage createLayerImage},
+     *                      in plotting order
+     * @return  plotBounds-sized icon
+     */
+    public Icon createCompositeIcon( Surface surface, Image[] layerImages ) {
+        final Rectangle bounds = surface.getPlotBounds();
+        final BufferedImage image =
+            RgbImage.createRgbImage( bounds.width, bounds.height, false )
+                    .getImage();
+        Graphics2D g = image.createGraphics();
+        g.translate( -bounds.x, -bounds.y );
+        surface.paintBackground( g );
+        g.translate( bounds.x, bounds.y );
+        for ( Image layerImage : layerImages ) {
+            g.drawImage( layerImage, 0, 0, null );
+        }
+        g.dispose();
+        return new Icon() {
+            public int getIconWidth() {
+                return bounds.x + bounds.width;
+            }
+            public int getIconHeight() {
+                return bounds.y + bounds.height;
+            }
+            public void paintIcon( Component c, Graphics g, int x, int y ) {
+                g.drawImage( image, x, y, null );
+            }
+        };
     }
 
     /**
@@ -34,15 +107,20 @@ public class OverPaperType2D extends RgbPaperType2D {
         private int lastRgb_;
         private final int[] rgbs_;
         private final BitSet mask_;
+        private final boolean hasAlpha_;
 
         /**
          * Constructor.
          *
          * @param  paperType  paper type instance creating this paper
          * @param  bounds  plot bounds
+         * @param  hasAlpha  true for a transparent ARGB paper,
+         *                   false for an opaque RGB one
          */
-        public OverPaper( PaperType paperType, Rectangle bounds ) {
-            super( paperType, bounds );
+        public OverPaper( PaperType paperType, Rectangle bounds,
+                          boolean hasAlpha ) {
+            super( paperType, bounds, hasAlpha );
+            hasAlpha_ = hasAlpha;
             rgbs_ = getRgbImage().getBuffer();
             mask_ = new BitSet( rgbs_.length );
         }
@@ -52,7 +130,7 @@ public class OverPaperType2D extends RgbPaperType2D {
         }
 
         public Paper createSheet() {
-            return new OverPaper( getPaperType(), getBounds() );
+            return new OverPaper( getPaperType(), getBounds(), hasAlpha_ );
         }
 
         public void mergeSheet( Paper other ) {
@@ -117,18 +117,31 @@ public abstract class RgbPaperType implements PaperType {
         private final Graphics graphics_;
 
         /**
-         * Constructor.
+         * Constructs an opaque paper.
          *
          * @param  paperType  paper type instance creating this paper
          * @param  bounds  plot bounds
          */
         public RgbPaper( PaperType paperType, Rectangle bounds ) {
+            this( paperType, bounds, false );
+        }
+
+        /**
+         * Constructs a paper that may have an alpha channel.
+         * A paper with alpha starts off fully transparent.
+         *
+         * @param  paperType  paper type instance creating this paper
+         * @param  bounds  plot bounds
+         * @param  hasAlpha  true for ARGB, false for RGB
+         */
+        protected RgbPaper( PaperType paperType, Rectangle bounds,
+                            boolean hasAlpha ) {
             paperType_ = paperType;
             bounds_ = new Rectangle( bounds );
             xpix_ = bounds.width;
             ypix_ = bounds.height;
-            rgbImage_ =
-                RgbImage.createRgbImage( bounds.width, bounds.height, false );
+            rgbImage_ = RgbImage.createRgbImage( bounds.width, bounds.height,
+                                                 hasAlpha );
             graphics_ = rgbImage_.getImage().createGraphics();
             graphics_.setColor( Color.BLACK );
             graphics_.translate( -bounds.x, -bounds.y );
@@ -60,13 +60,25 @@ public abstract class RgbPaperType2D extends RgbPaperType
         private final Rectangle clip_;
 
         /**
-         * Constructor.
+         * Constructs an opaque paper.
          *
          * @param  paperType  paper type instance creating this paper
          * @param  bounds  plot bounds
          */
         public RgbPaper2D( PaperType paperType, Rectangle bounds ) {
-            super( paperType, bounds );
+            this( paperType, bounds, false );
+        }
+
+        /**
+         * Constructs a paper that may have an alpha channel.
+         *
+         * @param  paperType  paper type instance creating this paper
+         * @param  bounds  plot bounds
+         * @param  hasAlpha  true for ARGB, false for RGB
+         */
+        protected RgbPaper2D( PaperType paperType, Rectangle bounds,
+                              boolean hasAlpha ) {
+            super( paperType, bounds, hasAlpha );
             x0_ = bounds.x;
             y0_ = bounds.y;
             clip_ = new Rectangle( bounds );
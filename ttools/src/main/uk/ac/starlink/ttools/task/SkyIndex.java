@@ -0,0 +1,24 @@
+package uk.ac.starlink.ttools.task;
+
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.mode.SkyIndexMode;
+
+/**
+ * Writes a persistent HEALPix sky position index for a table.
+ */
+public class SkyIndex extends SingleMapperTask {
+
+    /**
+     * Constructor.
+     */
+    public SkyIndex() {
+        super( "Writes a sky position index file for a table",
+               new SkyIndexMode(), false, true );
+    }
+
+    public TableProducer createProducer( Environment env )
+            throws TaskException {
+        return super.createInputProducer( env );
+    }
+}
@@ -0,0 +1,14 @@
+package uk.ac.starlink.ttools.task;
+
+import uk.ac.starlink.ttools.join.SkyIndexMatchMapper;
+
+/**
+ * Task implementation for streaming sky matching against an indexed table.
+ */
+public class SkyIndexMatch extends MapperTask {
+    public SkyIndexMatch() {
+        super( "Crossmatches a table against a sky-indexed table",
+               new ChoiceMode(), false, new SkyIndexMatchMapper(),
+               new FixedTablesInput( 2, false ) );
+    }
+}
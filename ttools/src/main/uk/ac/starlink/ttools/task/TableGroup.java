@@ -0,0 +1,219 @@
+package uk.ac.starlink.ttools.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.IntegerParameter;
+import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.ParameterValueException;
+import uk.ac.starlink.task.StringParameter;
+import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.filter.Aggregator;
+import uk.ac.starlink.ttools.filter.HashGrouper;
+import uk.ac.starlink.ttools.jel.ColumnIdentifier;
+
+/**
+ * Groups the rows of a table on the values of key columns and
+ * calculates aggregate quantities for each group.
+ *
+ * @since    18 Oct 2026
+ */
+public class TableGroup extends SingleMapperTask {
+
+    private final StringParameter keysParam_;
+    private final StringParameter aggcolsParam_;
+    private final WordsParameter aggsParam_;
+    private final IntegerParameter maxgroupsParam_;
+
+    /** Metadata for group row count column. */
+    public static final ValueInfo COUNT_INFO =
+        new DefaultValueInfo( "Count", Long.class,
+                              "Number of rows in group" );
+
+    /**
+     * Constructor.
+     */
+    public TableGroup() {
+        super( "Calculates aggregate quantities for groups of rows",
+               new ChoiceMode(), true, true );
+        List<Parameter<?>> paramList = new ArrayList<Parameter<?>>();
+
+        keysParam_ = new StringParameter( "keys" );
+        keysParam_.setUsage( "<colid-list>" );
+        keysParam_.setPrompt( "Columns to group on" );
+        keysParam_.setDescription( new String[] {
+            "<p>List of columns from the input table whose values",
+            "define the groups.",
+            "Rows with equal values in all these columns belong to",
+            "the same group; blank values count as equal to each other.",
+            "See <ref id='colid-list'/> for list syntax.",
+            "</p>",
+        } );
+        paramList.add( keysParam_ );
+
+        aggcolsParam_ = new StringParameter( "aggcols" );
+        aggcolsParam_.setUsage( "<colid-list>" );
+        aggcolsParam_.setNullPermitted( true );
+        aggcolsParam_.setPrompt( "Columns to aggregate" );
+        aggcolsParam_.setDescription( new String[] {
+            "<p>List of columns from the input table whose values",
+            "are to be aggregated over each group.",
+            "See <ref id='colid-list'/> for list syntax.",
+            "If left blank, all the columns not used as keys",
+            "are aggregated.",
+            "</p>",
+        } );
+        paramList.add( aggcolsParam_ );
+
+        aggsParam_ = new WordsParameter( "aggs" );
+        aggsParam_.setWordUsage( "<agg>" );
+        aggsParam_.setPrompt( "Aggregation functions" );
+        aggsParam_.setStringDefault( "mean" );
+        StringBuffer aggList = new StringBuffer();
+        for ( Aggregator agg : Aggregator.getAggregators() ) {
+            aggList.append( "<li><code>" )
+                   .append( agg.getName() )
+                   .append( "</code>: " )
+                   .append( agg.getDescription() )
+                   .append( "</li>\n" );
+        }
+        aggsParam_.setDescription( new String[] {
+            "<p>Space-separated list of the aggregation functions",
+            "to apply to each of the columns given by",
+            "<code>" + aggcolsParam_.getName() + "</code>.",
+            "Each function applied to each column gives an output column",
+            "named <code>&lt;column&gt;_&lt;agg&gt;</code>.",
+            "The options are:",
+            "<ul>",
+            aggList.toString(),
+            "</ul>",
+            "Functions other than <code>" + Aggregator.COUNT.getName()
+                                  + "</code> and <code>"
+                                  + Aggregator.FIRST.getName() + "</code>",
+            "apply only to numeric columns,",
+            "and are silently skipped for other columns.",
+            "Blank values are ignored except by",
+            "<code>" + Aggregator.FIRST.getName() + "</code>.",
+            "</p>",
+        } );
+        paramList.add( aggsParam_ );
+
+        maxgroupsParam_ = new IntegerParameter( "maxgroups" );
+        maxgroupsParam_.setPrompt( "Maximum number of groups in memory" );
+        maxgroupsParam_.setMinimum( 1 );
+        maxgroupsParam_.setIntDefault( HashGrouper.DFLT_MAX_GROUPS );
+        maxgroupsParam_.setDescription( new String[] {
+            "<p>The maximum number of groups that will be accumulated",
+            "in memory at once.",
+            "If the input table contains more distinct key values than this,",
+            "rows belonging to groups beyond the limit are written to",
+            "temporary disk files,",
+            "and processed in subsequent passes.",
+            "This limits the memory required, at the cost of some",
+            "extra I/O for tables with very many groups.",
+            "</p>",
+        } );
+        paramList.add( maxgroupsParam_ );
+
+        getParameterList().addAll( 0, paramList );
+    }
+
+    public TableProducer createProducer( Environment env )
+            throws TaskException {
+        final String keysList = keysParam_.stringValue( env );
+        final String aggcolsList = aggcolsParam_.stringValue( env );
+        String[] aggNames = aggsParam_.wordsValue( env );
+        final Aggregator[] aggs = new Aggregator[ aggNames.length ];
+        for ( int ia = 0; ia < aggNames.length; ia++ ) {
+            aggs[ ia ] = Aggregator.getAggregator( aggNames[ ia ] );
+            if ( aggs[ ia ] == null ) {
+                throw new ParameterValueException(
+                    aggsParam_,
+                    "Unknown aggregator \"" + aggNames[ ia ] + "\"; options: "
+                  + Arrays.asList( Aggregator.getAggregators() ) );
+            }
+        }
+        final int maxGroups = maxgroupsParam_.intValue( env );
+        final StoragePolicy policy =
+            LineTableEnvironment.getStoragePolicy( env );
+        final TableProducer inProd = createInputProducer( env );
+        return new TableProducer() {
+            public StarTable getTable() throws IOException, TaskException {
+                StarTable inTable = inProd.getTable();
+                return groupTable( inTable, keysList, aggcolsList, aggs,
+                                   policy, maxGroups );
+            }
+        };
+    }
+
+    /**
+     * Performs the grouping.
+     *
+     * @param  inTable  input table
+     * @param  keysList  colid-list for key columns
+     * @param  aggcolsList  colid-list for aggregation columns,
+     *                      or null for all non-key columns
+     * @param  aggs   aggregators to apply to each aggregation column
+     * @param  policy  storage policy for the output table if spilling
+     * @param  maxGroups  maximum number of groups held in memory
+     * @return  grouped table
+     */
+    private static StarTable groupTable( StarTable inTable, String keysList,
+                                         String aggcolsList,
+                                         Aggregator[] aggs,
+                                         StoragePolicy policy, int maxGroups )
+            throws IOException {
+        ColumnIdentifier colIdent = new ColumnIdentifier( inTable );
+        int[] keyCols = colIdent.getColumnIndices( keysList );
+        int[] aggcols;
+        if ( aggcolsList == null || aggcolsList.trim().length() == 0 ) {
+            BitSet keyFlags = new BitSet();
+            for ( int ic : keyCols ) {
+                keyFlags.set( ic );
+            }
+            int ncol = inTable.getColumnCount();
+            aggcols = new int[ ncol - keyFlags.cardinality() ];
+            int ja = 0;
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                if ( ! keyFlags.get( ic ) ) {
+                    aggcols[ ja++ ] = ic;
+                }
+            }
+        }
+        else {
+            aggcols = colIdent.getColumnIndices( aggcolsList );
+        }
+
+        /* Assemble the applicable (column, aggregator) pairs. */
+        List<Integer> icList = new ArrayList<Integer>();
+        List<Aggregator> aggList = new ArrayList<Aggregator>();
+        for ( int ic : aggcols ) {
+            Class<?> clazz = inTable.getColumnInfo( ic ).getContentClass();
+            for ( Aggregator agg : aggs ) {
+                if ( agg.isApplicable( clazz ) ) {
+                    icList.add( Integer.valueOf( ic ) );
+                    aggList.add( agg );
+                }
+            }
+        }
+        int nagg = icList.size();
+        int[] icAggs = new int[ nagg ];
+        for ( int ia = 0; ia < nagg; ia++ ) {
+            icAggs[ ia ] = icList.get( ia ).intValue();
+        }
+        HashGrouper grouper =
+            new HashGrouper( keyCols, COUNT_INFO, icAggs,
+                             aggList.toArray( new Aggregator[ 0 ] ),
+                             policy, maxGroups );
+        StarTable outTable = grouper.groupTable( inTable );
+        outTable.setName( inTable.getName() );
+        return outTable;
+    }
+}
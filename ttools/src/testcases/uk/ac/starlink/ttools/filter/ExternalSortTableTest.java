@@ -0,0 +1,75 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableSorter;
+import uk.ac.starlink.util.TestCase;
+
+public class ExternalSortTableTest extends TestCase {
+
+    public ExternalSortTableTest( String name ) {
+        super( name );
+    }
+
+    public void testExternalSort() throws IOException {
+        int nrow = 2000;
+        Random rnd = new Random( 44L );
+        int[] ids = new int[ nrow ];
+        Integer[] ivals = new Integer[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ids[ i ] = i;
+            ivals[ i ] = rnd.nextInt( 10 ) == 0
+                       ? null
+                       : Integer.valueOf( rnd.nextInt( 50 ) );
+            svals[ i ] = Integer.toString( rnd.nextInt( 20 ) );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "id", ids ) );
+        table.addColumn( ArrayColumn.makeColumn( "ival", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "sval", svals ) );
+
+        StoragePolicy[] policies = new StoragePolicy[] {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.PREFER_DISK,
+        };
+        for ( StoragePolicy policy : policies ) {
+            for ( boolean up : new boolean[] { true, false } ) {
+                for ( boolean nullsLast : new boolean[] { true, false } ) {
+                    long[] expected =
+                        TableSorter.getSortedOrder( table, new int[] { 1, 2 },
+                                                    up, nullsLast );
+
+                    /* Run sizes chosen to test single-run, single-pass merge
+                     * and multi-pass merge. */
+                    for ( int runSize : new int[] { -1, 100, 7 } ) {
+                        StarTable sorted =
+                            new ExternalSortTable( table,
+                                                   new String[] { "ival",
+                                                                  "sval" },
+                                                   up, nullsLast, policy,
+                                                   runSize );
+                        assertFalse( sorted.isRandom() );
+                        assertEquals( 3, sorted.getColumnCount() );
+                        RowSequence rseq = sorted.getRowSequence();
+                        for ( int i = 0; i < nrow; i++ ) {
+                            assertTrue( rseq.next() );
+                            Object[] row = rseq.getRow();
+                            assertEquals( 3, row.length );
+                            assertEquals( (int) expected[ i ],
+                                          ((Integer) row[ 0 ]).intValue() );
+                            assertEquals( row[ 2 ], rseq.getCell( 2 ) );
+                        }
+                        assertFalse( rseq.next() );
+                        rseq.close();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import uk.ac.starlink.parquet.ParquetStarTable;
+import uk.ac.starlink.parquet.ParquetTableWriter;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+
+public class ParquetSelectorTest extends TestCase {
+
+    public ParquetSelectorTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.ttools.filter" )
+              .setLevel( Level.WARNING );
+    }
+
+    public void testSelect() throws Exception {
+        RowListStarTable t0 = new RowListStarTable( new ColumnInfo[] {
+            new ColumnInfo( "ix", Integer.class, null ),
+            new ColumnInfo( "half", Double.class, null ),
+        } );
+        int nrow = 2000;
+        for ( int i = 0; i < nrow; i++ ) {
+            t0.addRow( new Object[] { Integer.valueOf( i ),
+                                      Double.valueOf( 0.5 * i ) } );
+        }
+        File file = File.createTempFile( "sel", ".parquet" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        new ParquetTableWriter( 2000 ).writeStarTable( t0, out );
+        out.close();
+        ParquetStarTable pt = new ParquetStarTable( file );
+        int nrg = pt.getRowGroupCount();
+        assertTrue( nrg > 4 );
+
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "ix >= 0" ) );
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "ix < 10 || "
+                                                           + "ix > 1990" ));
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "!(ix > 9)" ) );
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "half*2 < 10" ) );
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "index < 10" ) );
+        assertSame( pt, ParquetSelector.selectRowGroups( pt, "$0 < 10" ) );
+
+        assertEquals( 1, ParquetSelector
+                        .selectRowGroups( pt, "IX < 10" )
+                        .getRowGroupCount() );
+        assertEquals( 1, ParquetSelector
+                        .selectRowGroups( pt, "10 > ix && true" )
+                        .getRowGroupCount() );
+        assertEquals( 1, ParquetSelector
+                        .selectRowGroups( pt, "half == 999.5" )
+                        .getRowGroupCount() );
+        assertEquals( 0, ParquetSelector
+                        .selectRowGroups( pt, "ix>500 && half<=2" )
+                        .getRowGroupCount() );
+        ParquetStarTable pt2 =
+            ParquetSelector.selectRowGroups( pt, "ix > 1000" );
+        assertTrue( pt2.getRowGroupCount() < nrg );
+        assertTrue( pt2.getRowCount() > 999 );
+
+        /* The select filter must still give the full answer. */
+        List<String> args = new ArrayList<String>();
+        args.add( "ix>1000 && ix<1100" );
+        StarTable sel = new SelectFilter()
+                       .createStep( args.iterator() )
+                       .wrap( pt );
+        sel = Tables.randomTable( sel );
+        assertEquals( 99L, sel.getRowCount() );
+        assertEquals( Integer.valueOf( 1001 ), sel.getCell( 0, 0 ) );
+    }
+}
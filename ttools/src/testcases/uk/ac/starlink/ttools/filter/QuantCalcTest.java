@@ -2,9 +2,11 @@ package uk.ac.starlink.ttools.filter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import junit.framework.TestCase;
 
 public class QuantCalcTest extends TestCase {
@@ -85,6 +87,56 @@ public class QuantCalcTest extends TestCase {
         assertEquals( Integer.class, c5.getQuantile( 0.5 ).getClass() );
     }
 
+    public void testAdd() throws IOException {
+        int max = 60;
+        int[] values = shuffle( triangle( max ) );
+        for ( int itype = 0; itype < 5; itype++ ) {
+            QuantCalc all = createCalc( itype, values.length );
+            QuantCalc[] parts = new QuantCalc[ 3 ];
+            for ( int ip = 0; ip < parts.length; ip++ ) {
+                parts[ ip ] = createCalc( itype, values.length );
+            }
+            for ( int i = 0; i < values.length; i++ ) {
+                Number num = toNumber( itype, values[ i ] );
+                all.acceptDatum( num );
+                parts[ i * parts.length / values.length ].acceptDatum( num );
+            }
+            QuantCalc merged = parts[ 0 ];
+            merged.add( parts[ 2 ] );
+            merged.add( parts[ 1 ] );
+            all.ready();
+            merged.ready();
+            assertEquals( all.getValueCount(), merged.getValueCount() );
+            for ( double q = 0; q <= 1.0; q += 0.0625 ) {
+                assertEquals( all.getQuantile( q ), merged.getQuantile( q ) );
+            }
+            assertEquals( QuantCalc.calculateMedianAbsoluteDeviation( all ),
+                          QuantCalc.calculateMedianAbsoluteDeviation( merged ));
+        }
+    }
+
+    private static QuantCalc createCalc( int itype, int nrow ) {
+        switch ( itype ) {
+            case 0: return new QuantCalc.DoubleListQuantCalc( Double.class );
+            case 1: return new QuantCalc.FloatArrayQuantCalc( Long.class, nrow );
+            case 2: return new QuantCalc.ByteSlotQuantCalc();
+            case 3: return new QuantCalc.ShortSlotQuantCalc();
+            case 4: return new QuantCalc.CountMapQuantCalc( Integer.class );
+            default: throw new IllegalArgumentException();
+        }
+    }
+
+    private static Number toNumber( int itype, int ival ) {
+        switch ( itype ) {
+            case 0: return new Double( ival );
+            case 1: return new Long( ival );
+            case 2: return new Byte( (byte) ival );
+            case 3: return new Short( (short) ival );
+            case 4: return new Integer( ival );
+            default: throw new IllegalArgumentException();
+        }
+    }
+
     public void testMad() throws IOException {
         int[] values = new int[] { 40, 5, 10, 20, 1, 40, -19, -10, 1, };
         QuantCalc qc = QuantCalc.createInstance( Integer.class, values.length );
@@ -95,6 +147,80 @@ public class QuantCalcTest extends TestCase {
         assertEquals( 15.0, QuantCalc.calculateMedianAbsoluteDeviation( qc ) );
     }
 
+    public void testSketch() throws IOException {
+
+        /* Small enough to be exact. */
+        int[] values = new int[] { 40, 5, 10, 20, 1, 40, -19, -10, 1, };
+        QuantCalc qc = QuantCalc.createSketchInstance( Integer.class, 0.01 );
+        QuantCalc exact =
+            QuantCalc.createInstance( Integer.class, values.length );
+        for ( int i = 0; i < values.length; i++ ) {
+            qc.acceptDatum( new Integer( values[ i ] ) );
+            exact.acceptDatum( new Integer( values[ i ] ) );
+        }
+        qc.acceptDatum( null );
+        qc.ready();
+        exact.ready();
+        assertEquals( values.length, qc.getValueCount() );
+        for ( double q = 0; q <= 1.0; q += 0.0625 ) {
+            assertEquals( exact.getQuantile( q ), qc.getQuantile( q ) );
+        }
+        assertEquals( 15.0, QuantCalc.calculateMedianAbsoluteDeviation( qc ) );
+
+        /* Large enough to require compaction, accumulated in parts. */
+        double err = 0.01;
+        int n = 300000;
+        Random rnd = new Random( 20261018L );
+        double[] dvals = new double[ n ];
+        QuantCalc[] parts = new QuantCalc[ 4 ];
+        for ( int ip = 0; ip < parts.length; ip++ ) {
+            parts[ ip ] = QuantCalc.createSketchInstance( Double.class, err );
+        }
+        for ( int i = 0; i < n; i++ ) {
+            dvals[ i ] = rnd.nextGaussian();
+            parts[ i % parts.length ].acceptDatum( new Double( dvals[ i ] ) );
+        }
+        QuantCalc sketch = parts[ 0 ];
+        for ( int ip = 1; ip < parts.length; ip++ ) {
+            sketch.add( parts[ ip ] );
+        }
+        sketch.ready();
+        Arrays.sort( dvals );
+        assertEquals( n, sketch.getValueCount() );
+        assertEquals( dvals[ 0 ], sketch.getQuantile( 0.0 ).doubleValue() );
+        assertEquals( dvals[ n - 1 ],
+                      sketch.getQuantile( 1.0 ).doubleValue() );
+        assertEquals( Double.class, sketch.getQuantile( 0.5 ).getClass() );
+        for ( double q = 0.01; q < 1.0; q += 0.01 ) {
+            double v = sketch.getQuantile( q ).doubleValue();
+            int rank = Arrays.binarySearch( dvals, v );
+            assertTrue( rank >= 0 );
+            assertEquals( q * n, rank, err * n );
+        }
+        int nit = 0;
+        double last = Double.NEGATIVE_INFINITY;
+        for ( Iterator<Number> it = sketch.getValueIterator();
+              it.hasNext(); ) {
+            double v = it.next().doubleValue();
+            assertTrue( v >= last );
+            last = v;
+            nit++;
+        }
+        assertEquals( n, nit );
+
+        /* Gaussian MAD is 0.6745 sigma. */
+        assertEquals( 1.0 / QuantCalc.MAD_SCALE,
+                      QuantCalc.calculateMedianAbsoluteDeviation( sketch ),
+                      0.02 );
+
+        try {
+            QuantCalc.createSketchInstance( Double.class, 0.0 );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+    }
+
     private static int[] triangle( int max ) {
         int[] values = new int[ max * max ];
         int ix = 0;
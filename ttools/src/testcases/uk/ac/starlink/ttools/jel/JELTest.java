@@ -3,18 +3,30 @@ package uk.ac.starlink.ttools.jel;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Library;
 import gnu.jel.CompilationException;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.ConstantColumn;
 import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.formats.CsvStarTable;
 import uk.ac.starlink.ttools.TableTestCase;
 import uk.ac.starlink.ttools.QuickTable;
 import uk.ac.starlink.util.ByteArrayDataSource;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
 
 public class JELTest extends TableTestCase {
 
@@ -94,6 +106,88 @@ public class JELTest extends TableTestCase {
         }
     }
 
+    public void testConcurrentEvaluation() throws Exception {
+        final int nrow = 2000;
+        long sum = (long) nrow * ( nrow + 1 ) / 2;
+
+        /* Split access. */
+        GatedColumn splitCol = new GatedColumn();
+        final StarTable splitTable = createJELTable( splitCol, nrow );
+        ForkJoinPool fjPool = new ForkJoinPool( 4 );
+        try {
+            RowRunner runner =
+                new RowRunner( SplitProcessor.<RowSplittable>
+                               createBasicParallelProcessor(
+                                   new SplitPolicy( fjPool, 50, (short) 0 ) ) );
+            RowCollector<long[]> collector = new RowCollector<long[]>() {
+                public long[] createAccumulator() {
+                    return new long[ 1 ];
+                }
+                public long[] combine( long[] acc1, long[] acc2 ) {
+                    acc1[ 0 ] += acc2[ 0 ];
+                    return acc1;
+                }
+                public void accumulateRows( RowSplittable rseq, long[] acc )
+                        throws IOException {
+                    while ( rseq.next() ) {
+                        acc[ 0 ] += ((Number) rseq.getCell( 0 )).longValue();
+                    }
+                }
+            };
+            assertEquals( sum, runner.collect( collector, splitTable )[ 0 ] );
+        }
+        finally {
+            fjPool.shutdown();
+        }
+        assertTrue( splitCol.isConcurrent() );
+
+        /* Random access. */
+        GatedColumn randomCol = new GatedColumn();
+        final StarTable randomTable = createJELTable( randomCol, nrow );
+        final long[] sums = new long[ 2 ];
+        final Throwable[] errors = new Throwable[ 2 ];
+        Thread[] threads = new Thread[ 2 ];
+        for ( int it = 0; it < 2; it++ ) {
+            final int it0 = it;
+            threads[ it ] = new Thread( "JELTest-" + it ) {
+                public void run() {
+                    try {
+                        for ( long ir = it0; ir < nrow; ir += 2 ) {
+                            sums[ it0 ] += ((Number) randomTable
+                                                    .getCell( ir, 0 ))
+                                          .longValue();
+                        }
+                    }
+                    catch ( Throwable e ) {
+                        errors[ it0 ] = e;
+                    }
+                }
+            };
+            threads[ it ].start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+        assertNull( errors[ 0 ] );
+        assertNull( errors[ 1 ] );
+        assertEquals( sum, sums[ 0 ] + sums[ 1 ] );
+        assertTrue( randomCol.isConcurrent() );
+    }
+
+    /**
+     * Returns a single-column JELTable which evaluates "x+1" on
+     * a base table with a given x column, whose values are the row indices.
+     */
+    private static StarTable createJELTable( ColumnData xCol, int nrow )
+            throws CompilationException {
+        ColumnStarTable base = ColumnStarTable.makeTableWithRows( nrow );
+        base.addColumn( xCol );
+        return new JELTable( base, new ColumnInfo[] {
+                                 new ColumnInfo( "y", Long.class, null ),
+                             },
+                             new String[] { "(long) x + 1" } );
+    }
+
     public void testJELFunction() throws CompilationException {
         assertEquals( 30, new JELFunction( "x", "x+29" ).evaluate( 1 ) );
         assertEquals( 16, new JELFunction( "exponent", "pow(2,exponent)" )
@@ -152,4 +246,45 @@ public class JELTest extends TableTestCase {
                                        : Integer.MIN_VALUE;
         }
     }
+
+    /**
+     * Column whose values are the row indices, and which records whether
+     * it has been read by more than one thread at once.
+     * The first read waits for a while to give another thread
+     * the chance to join it.
+     */
+    private static class GatedColumn extends ColumnData {
+        final CountDownLatch latch_;
+        final AtomicInteger nActive_;
+        final AtomicBoolean isConcurrent_;
+
+        GatedColumn() {
+            super( new ColumnInfo( "x", Long.class, null ) );
+            latch_ = new CountDownLatch( 2 );
+            nActive_ = new AtomicInteger();
+            isConcurrent_ = new AtomicBoolean();
+        }
+
+        public Object readValue( long irow ) throws IOException {
+            if ( nActive_.incrementAndGet() > 1 ) {
+                isConcurrent_.set( true );
+            }
+            latch_.countDown();
+            try {
+                latch_.await( 5, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e ) {
+                throw (IOException) new IOException( "Interrupted" )
+                                   .initCause( e );
+            }
+            finally {
+                nActive_.decrementAndGet();
+            }
+            return Long.valueOf( irow );
+        }
+
+        boolean isConcurrent() {
+            return isConcurrent_.get();
+        }
+    }
 }
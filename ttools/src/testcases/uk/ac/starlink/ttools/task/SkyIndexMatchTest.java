@@ -0,0 +1,184 @@
+package uk.ac.starlink.ttools.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.ttools.TableTestCase;
+import uk.ac.starlink.ttools.func.CoordsDegrees;
+import uk.ac.starlink.ttools.join.HealpixSkyIndex;
+
+public class SkyIndexMatchTest extends TableTestCase {
+
+    private final StarTable t1_;
+    private final StarTable t2_;
+    static {
+        Logger.getLogger( "uk.ac.starlink.ttools" ).setLevel( Level.WARNING );
+        Logger.getLogger( "uk.ac.starlink.table.join" )
+              .setLevel( Level.WARNING );
+    }
+
+    public SkyIndexMatchTest( String name ) {
+        super( name );
+        StarTable t0 = SkyMatchTest.createTestTable();
+        t1_ = new ColumnPermutedStarTable( t0, new int[] { 0, 1, 2, 5 } );
+        t2_ = new ColumnPermutedStarTable( t0, new int[] { 0, 3, 4, 5 } );
+    }
+
+    public void testIndex() throws Exception {
+        File file = File.createTempFile( "skyidx", ".idx" );
+        file.deleteOnExit();
+        try {
+            for ( int order : new int[] { 0, 5, 9 } ) {
+                writeIndex( t2_, order, file );
+                HealpixSkyIndex index = HealpixSkyIndex.readIndex( file );
+                assertEquals( order, index.getOrder() );
+                assertEquals( t2_.getRowCount(), index.getRowCount() );
+                assertEquals( t2_.getRowCount(), index.getEntryCount() );
+                Random rnd = new Random( 23001L + order );
+                for ( int i = 0; i < 200; i++ ) {
+                    double ra = 9 + rnd.nextDouble() * 100 - 1;
+                    double dec = -45 + rnd.nextDouble() * 17;
+                    double radius = rnd.nextDouble() * 0.3;
+                    checkIndexQuery( index, t2_, ra, dec, radius );
+                }
+                checkIndexQuery( index, t2_, 369, -45, 0.1 );
+                checkIndexQuery( index, t2_, -351, -45, 0.1 );
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testMatch() throws Exception {
+        File file = File.createTempFile( "skyidx", ".idx" );
+        file.deleteOnExit();
+        try {
+            writeIndex( t2_, -1, file );
+            for ( double error : new double[] { 20, 5, 1 } ) {
+                StarTable skyResult =
+                    Tables.randomTable( skymatch2( error, "1and2" ) );
+                StarTable idxResult =
+                    Tables.randomTable( indexMatch( error, "1and2", file ) );
+                assertEquals( skyResult.getRowCount(),
+                              idxResult.getRowCount() );
+                assertArrayEquals( getColNames( skyResult ),
+                                   getColNames( idxResult ) );
+                int sepCol = getColIndex( skyResult, "Separation" );
+                for ( int ic = 0; ic < skyResult.getColumnCount(); ic++ ) {
+                    if ( ic == sepCol ) {
+                        assertArrayEquals(
+                            unbox( getColData( skyResult, ic ) ),
+                            unbox( getColData( idxResult, ic ) ),
+                            1e-6 );
+                    }
+                    else {
+                        assertArrayEquals( getColData( skyResult, ic ),
+                                           getColData( idxResult, ic ) );
+                    }
+                }
+
+                long nmatch = skyResult.getRowCount();
+                assertEquals( t1_.getRowCount(),
+                              countRows( indexMatch( error, "all1", file ) ) );
+                assertEquals( t1_.getRowCount() - nmatch,
+                              countRows( indexMatch( error, "1not2", file ) ) );
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private void checkIndexQuery( HealpixSkyIndex index, StarTable table,
+                                  double ra, double dec, double radius )
+            throws IOException {
+        int nexpect = 0;
+        RowSequence rseq = table.getRowSequence();
+        while ( rseq.next() ) {
+            double ra2 = ((Number) rseq.getCell( 1 )).doubleValue();
+            double dec2 = ((Number) rseq.getCell( 2 )).doubleValue();
+            if ( CoordsDegrees.skyDistanceDegrees( ra, dec, ra2, dec2 )
+                 <= radius ) {
+                nexpect++;
+            }
+        }
+        rseq.close();
+        HealpixSkyIndex.Match[] matches =
+            index.findMatches( ra, dec, radius );
+        assertEquals( nexpect, matches.length );
+        for ( int i = 0; i < matches.length; i++ ) {
+            HealpixSkyIndex.Match match = matches[ i ];
+            Object[] row = table.getRow( match.getRowIndex() );
+            double ra2 = ((Number) row[ 1 ]).doubleValue();
+            double dec2 = ((Number) row[ 2 ]).doubleValue();
+            assertEquals( CoordsDegrees.skyDistanceDegrees( ra, dec,
+                                                            ra2, dec2 ),
+                          match.getSeparation(), 1e-10 );
+            if ( i > 0 ) {
+                assertTrue( match.getSeparation()
+                         >= matches[ i - 1 ].getSeparation() );
+            }
+        }
+    }
+
+    private void writeIndex( StarTable table, int order, File file )
+            throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "in", table )
+            .setValue( "ra", "ra2" )
+            .setValue( "dec", "dec2" )
+            .setValue( "out", file.toString() );
+        if ( order >= 0 ) {
+            env.setValue( "order", Integer.toString( order ) );
+        }
+        new SkyIndex().createExecutable( env ).execute();
+    }
+
+    private StarTable skymatch2( double error, String join ) throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "in1", t1_ )
+            .setValue( "in2", t2_ )
+            .setValue( "ra1", "ra1" )
+            .setValue( "dec1", "dec1" )
+            .setValue( "ra2", "ra2" )
+            .setValue( "dec2", "dec2" )
+            .setValue( "find", "best1" )
+            .setValue( "join", join )
+            .setValue( "error", Double.toString( error ) );
+        new SkyMatch2().createExecutable( env ).execute();
+        return env.getOutputTable( "omode" );
+    }
+
+    private StarTable indexMatch( double error, String join, File file )
+            throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "in1", t1_ )
+            .setValue( "in2", t2_ )
+            .setValue( "ra1", "ra1" )
+            .setValue( "dec1", "dec1" )
+            .setValue( "index", file.toString() )
+            .setValue( "join", join )
+            .setValue( "error", Double.toString( error ) );
+        new SkyIndexMatch().createExecutable( env ).execute();
+        StarTable result = env.getOutputTable( "omode" );
+        assertEquals( -1, result.getRowCount() );
+        return result;
+    }
+
+    private static long countRows( StarTable table ) throws IOException {
+        long n = 0;
+        RowSequence rseq = table.getRowSequence();
+        while ( rseq.next() ) {
+            n++;
+        }
+        rseq.close();
+        return n;
+    }
+}
@@ -0,0 +1,162 @@
+package uk.ac.starlink.ttools.task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnData;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.ttools.QuickTable;
+import uk.ac.starlink.ttools.TableTestCase;
+
+public class TableGroupTest extends TableTestCase {
+
+    private final StarTable inTable_;
+    private static final int NROW = 2000;
+
+    static {
+        Logger.getLogger( "uk.ac.starlink.table.storage" )
+              .setLevel( Level.WARNING );
+    }
+
+    public TableGroupTest( String name ) {
+        super( name );
+        Random rnd = new Random( 77001L );
+        int[] ikeys = new int[ NROW ];
+        String[] skeys = new String[ NROW ];
+        double[] xs = new double[ NROW ];
+        for ( int i = 0; i < NROW; i++ ) {
+            ikeys[ i ] = rnd.nextInt( 50 );
+            skeys[ i ] = rnd.nextInt( 10 ) == 0 ? null
+                                                : "s" + rnd.nextInt( 7 );
+            xs[ i ] = rnd.nextInt( 20 ) == 0 ? Double.NaN
+                                             : rnd.nextGaussian();
+        }
+        inTable_ = new QuickTable( NROW, new ColumnData[] {
+            col( "ik", ikeys ),
+            col( "sk", skeys ),
+            col( "x", xs ),
+        } );
+    }
+
+    public void testGroup() throws Exception {
+        StarTable out = Tables.randomTable( group( "ik", "x",
+                                                   "count sum mean min max",
+                                                   -1 ) );
+        assertArrayEquals(
+            new String[] { "ik", "Count", "x_count", "x_sum", "x_mean",
+                           "x_min", "x_max" },
+            getColNames( out ) );
+        Map<Object,double[]> expected = new HashMap<Object,double[]>();
+        for ( int ir = 0; ir < NROW; ir++ ) {
+            Object[] row = inTable_.getRow( ir );
+            double[] stats = expected.get( row[ 0 ] );
+            if ( stats == null ) {
+                stats = new double[] { 0, 0, 0, Double.POSITIVE_INFINITY,
+                                       Double.NEGATIVE_INFINITY };
+                expected.put( row[ 0 ], stats );
+            }
+            stats[ 0 ]++;
+            double x = ((Number) row[ 2 ]).doubleValue();
+            if ( ! Double.isNaN( x ) ) {
+                stats[ 1 ]++;
+                stats[ 2 ] += x;
+                stats[ 3 ] = Math.min( stats[ 3 ], x );
+                stats[ 4 ] = Math.max( stats[ 4 ], x );
+            }
+        }
+        assertEquals( expected.size(), (int) out.getRowCount() );
+        for ( int ig = 0; ig < out.getRowCount(); ig++ ) {
+            Object[] row = out.getRow( ig );
+            double[] stats = expected.get( row[ 0 ] );
+            assertEquals( (long) stats[ 0 ], ((Long) row[ 1 ]).longValue() );
+            assertEquals( (long) stats[ 1 ], ((Long) row[ 2 ]).longValue() );
+            assertEquals( stats[ 2 ], ((Double) row[ 3 ]).doubleValue(),
+                          1e-10 );
+            assertEquals( stats[ 2 ] / stats[ 1 ],
+                          ((Double) row[ 4 ]).doubleValue(), 1e-10 );
+            assertEquals( stats[ 3 ], ((Double) row[ 5 ]).doubleValue() );
+            assertEquals( stats[ 4 ], ((Double) row[ 6 ]).doubleValue() );
+        }
+
+        /* First appearance order is preserved. */
+        assertEquals( inTable_.getCell( 0, 0 ), out.getCell( 0, 0 ) );
+
+        /* Non-numeric columns are skipped for numeric aggregators. */
+        assertArrayEquals(
+            new String[] { "ik", "Count", "sk_count", "sk_first" },
+            getColNames( group( "ik", "sk", "count mean first", -1 ) ) );
+    }
+
+    public void testSpill() throws Exception {
+        for ( String keys : new String[] { "ik", "sk", "ik sk" } ) {
+            StarTable t0 = Tables.randomTable( group( keys, null,
+                                                      "sum max", -1 ) );
+            Map<String,String> rows0 = toRowMap( t0, keys );
+            for ( int maxGroups : new int[] { 1, 3, 17 } ) {
+                StarTable t1 = Tables.randomTable( group( keys, null,
+                                                          "sum max",
+                                                          maxGroups ) );
+                assertArrayEquals( getColNames( t0 ), getColNames( t1 ) );
+                assertEquals( rows0, toRowMap( t1, keys ) );
+            }
+        }
+    }
+
+    public void testLongSum() throws Exception {
+        long big = 1L << 53;
+        StarTable table = new QuickTable( 6, new ColumnData[] {
+            col( "k", new int[] { 1, 1, 1, 1, 2, 2 } ),
+            col( "n", new long[] { big, 1, 1, -big,
+                                   Long.MAX_VALUE, Long.MAX_VALUE } ),
+        } );
+        StarTable out = Tables.randomTable( group( table, "k", "n",
+                                                   "sum mean", -1 ) );
+        assertEquals( 2.0, out.getCell( 0, 2 ) );
+        assertEquals( 0.5, out.getCell( 0, 3 ) );
+        assertEquals( 2.0 * Long.MAX_VALUE, out.getCell( 1, 2 ) );
+    }
+
+    private StarTable group( String keys, String aggcols, String aggs,
+                             int maxGroups )
+            throws Exception {
+        return group( inTable_, keys, aggcols, aggs, maxGroups );
+    }
+
+    private StarTable group( StarTable inTable, String keys, String aggcols,
+                             String aggs, int maxGroups )
+            throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "in", inTable )
+            .setValue( "keys", keys )
+            .setValue( "aggs", aggs );
+        if ( aggcols != null ) {
+            env.setValue( "aggcols", aggcols );
+        }
+        if ( maxGroups > 0 ) {
+            env.setValue( "maxgroups", Integer.toString( maxGroups ) );
+        }
+        new TableGroup().createExecutable( env ).execute();
+        StarTable result = env.getOutputTable( "omode" );
+        Tables.checkTable( result );
+        return result;
+    }
+
+    private static Map<String,String> toRowMap( StarTable table, String keys )
+            throws Exception {
+        int nk = keys.split( " " ).length;
+        Map<String,String> map = new HashMap<String,String>();
+        for ( int ir = 0; ir < table.getRowCount(); ir++ ) {
+            Object[] row = table.getRow( ir );
+            StringBuffer kbuf = new StringBuffer();
+            StringBuffer vbuf = new StringBuffer();
+            for ( int ic = 0; ic < row.length; ic++ ) {
+                ( ic < nk ? kbuf : vbuf ).append( row[ ic ] ).append( ';' );
+            }
+            assertNull( map.put( kbuf.toString(), vbuf.toString() ) );
+        }
+        return map;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.util.BufferedDataInputStream;
@@ -14,12 +15,17 @@ import uk.ac.starlink.fits.FitsConstants;
 import uk.ac.starlink.fits.FitsTableWriter;
 import uk.ac.starlink.fits.HeaderCards;
 import uk.ac.starlink.fits.HealpixFitsTableWriter;
+import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.SequentialRowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.TableTestCase;
 import uk.ac.starlink.ttools.QuickTable;
@@ -646,6 +652,12 @@ public class TablePipeTest extends TableTestCase {
            // etc.
     }
 
+    public void testPrefetch() throws Exception {
+        assertSameData( inTable_, apply( "prefetch" ) );
+        assertSameData( inTable_, apply( "seqview; prefetch" ) );
+        assertSameData( inTable_, apply( "prefetch; every 1; prefetch" ) );
+    }
+
     public void testRandom() throws Exception {
         try {
             apply( "seqview; randomview; every 1" );
@@ -735,6 +747,35 @@ public class TablePipeTest extends TableTestCase {
         assertSameData( inTable_, apply( "sort $0" ) );
         assertSameData( inTable_, apply( "sort $1" ) );
         assertSameData( inTable_, apply( "sort '$0 $1'" ) );
+
+        String[] sortArgs = {
+            "b", "-down b", "-nullsfirst b", "-nullsfirst -down b",
+            "'($0+1)/2 d'", "d.charAt(2)",
+        };
+        for ( String args : sortArgs ) {
+            assertSameData( apply( "sort " + args ),
+                            apply( "sort -external " + args ) );
+        }
+    }
+
+    public void testSortLarge() throws Exception {
+        int nrow = 100000;
+        Random rnd = new Random( 9900L );
+        int[] xs = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd.nextInt( 1000 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        String keys = "'x*2 -$0'";
+        StarTable sorted = process( table, "sort -down " + keys );
+        assertSameData( sorted, process( table, "sort -external -down "
+                                              + keys ) );
+        Object[] sxs = getColData( sorted, 0 );
+        for ( int i = 1; i < nrow; i++ ) {
+            assertTrue( ((Integer) sxs[ i - 1 ]).intValue()
+                     >= ((Integer) sxs[ i ]).intValue() );
+        }
     }
 
     public void testSortHead() throws Exception {
@@ -827,6 +868,78 @@ public class TablePipeTest extends TableTestCase {
             getColNames( apply( "stats" ) ) );
     }
 
+    public void testStatsParallel() throws Exception {
+        int nrow = 250000;
+        Random rnd = new Random( 44556677L );
+        int[] ivals = new int[ nrow ];
+        double[] dvals = new double[ nrow ];
+        short[] svals = new short[ nrow ];
+        boolean[] bvals = new boolean[ nrow ];
+        int[] c1vals = new int[ nrow ];
+        int[] c2vals = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = rnd.nextInt( 80 );
+            dvals[ i ] = rnd.nextInt( 10 ) == 0 ? Double.NaN
+                                                : rnd.nextGaussian();
+            svals[ i ] = (short) rnd.nextInt( 1000 );
+            bvals[ i ] = rnd.nextBoolean();
+            c1vals[ i ] = i % 99;
+            c2vals[ i ] = i % 99;
+        }
+        c1vals[ nrow - 1 ] = 99;
+        c2vals[ nrow / 2 ] = 99;
+        StarTable randomTable = new QuickTable( nrow, new ColumnData[] {
+            col( "i", ivals ),
+            col( "d", dvals ),
+            col( "s", svals ),
+            col( "b", bvals ),
+            col( "c1", c1vals ),
+            col( "c2", c2vals ),
+        } );
+        assertTrue( randomTable.isRandom() );
+        StarTable seqTable = new WrapperStarTable( randomTable ) {
+            @Override
+            public boolean isRandom() {
+                return false;
+            }
+            @Override
+            public RowSplittable getRowSplittable() throws IOException {
+                return new SequentialRowSplittable( this );
+            }
+        };
+        String exactItems = "name ngood nbad minimum maximum minpos maxpos "
+                          + "cardinality median q.1 q.9 medabsdev";
+        assertSameData( process( seqTable, "stats " + exactItems ),
+                        process( randomTable, "stats " + exactItems ) );
+        Object[] cards =
+            getColData( process( randomTable, "stats cardinality" ), 0 );
+        assertEquals( new Integer( 80 ), cards[ 0 ] );
+        assertEquals( new Integer( 100 ), cards[ 4 ] );
+        assertNull( cards[ 5 ] );
+        String sumItems = "mean stdev sum";
+        StarTable seqSums = process( seqTable, "stats " + sumItems );
+        StarTable parSums = process( randomTable, "stats " + sumItems );
+        for ( int ic = 0; ic < 3; ic++ ) {
+            assertArrayEquals( unbox( getColData( seqSums, ic ) ),
+                               unbox( getColData( parSums, ic ) ), 1e-5 );
+        }
+
+        String quantItems = "median q.1 q.9 medabsdev";
+        StarTable exactQuants = process( seqTable, "stats " + quantItems );
+        StarTable approxQuants =
+            process( randomTable, "stats -qapprox 0.005 " + quantItems );
+        for ( int ic = 0; ic < 4; ic++ ) {
+            Object[] exact = getColData( exactQuants, ic );
+            Object[] approx = getColData( approxQuants, ic );
+            for ( int ir = 0; ir < 3; ir++ ) {
+                assertEquals( ((Number) exact[ ir ]).doubleValue(),
+                              ((Number) approx[ ir ]).doubleValue(),
+                              ir == 2 ? 10 : 1.01 );
+            }
+            assertNull( approx[ 3 ] );
+        }
+    }
+
     public void testTail() throws Exception {
         assertSameData( inTable_, apply( "tail 4" ) );
         assertSameData( inTable_, apply( "tail 10000000" ) );
@@ -851,6 +964,22 @@ public class TablePipeTest extends TableTestCase {
         assertArrayEquals(
             new String[] { "DupCount", "a", "b", "c", "d" },
             getColNames( apply( "uniq -count" ) ) );
+
+        assertEquals( 4L, Tables.randomTable( apply( "uniq -global" ) )
+                         .getRowCount() );
+        assertArrayEquals(
+            new int[] { 1, 3 },
+            unbox( getColData( apply( "uniq -global c" ), 0 ) ) );
+        assertArrayEquals(
+            new int[] { 2, 2 },
+            unbox( getColData( apply( "uniq -count -global c" ), 0 ) ) );
+        assertArrayEquals(
+            new int[] { 2, 1, 1 },
+            unbox( getColData( apply( "addcol k $0%2==1?1:$0 ;"
+                                    + "uniq -count -global k" ), 0 ) ) );
+        assertArrayEquals(
+            new String[] { "DupCount", "a", "b", "c", "d" },
+            getColNames( apply( "uniq -count -global" ) ) );
     }
 
 }
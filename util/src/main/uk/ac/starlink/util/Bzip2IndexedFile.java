@@ -0,0 +1,366 @@
+package uk.ac.starlink.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.apache.tools.bzip2.CBZip2InputStream;
+
+/**
+ * IndexedCompressedFile implementation for bzip2 files.
+ * Each bzip2 compressed block forms one chunk.
+ *
+ * <p>Blocks are located by searching the compressed bit stream for the
+ * 48-bit block header magic number, and are not aligned to byte
+ * boundaries.  To decode a block in isolation, its bits are copied
+ * into a synthetic single-block bzip2 stream which is then read using
+ * a normal bzip2 decoder.
+ * Multi-stream files (for instance as written by parallel bzip2
+ * compressors) are supported.
+ */
+class Bzip2IndexedFile extends IndexedCompressedFile {
+
+    private final long[] bitStarts_;
+    private final long[] bitEnds_;
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+    private static final long MASK48 = 0xffffffffffffL;
+    private static final int[] CRC_TABLE = createCrcTable();
+
+    /**
+     * Constructor.
+     *
+     * @param  file  compressed file
+     * @param  rawLength  length of the compressed file when indexed
+     * @param  lastModified  modification time of the compressed file
+     *                       when indexed
+     * @param  starts   chunk start offsets followed by total length
+     * @param  bitStarts  bit offset into the compressed file of the
+     *                    start of each block (its magic number)
+     * @param  bitEnds   bit offset into the compressed file of the
+     *                   end of each block
+     */
+    private Bzip2IndexedFile( File file, long rawLength, long lastModified,
+                              long[] starts, long[] bitStarts,
+                              long[] bitEnds ) {
+        super( file, Compression.BZIP2, rawLength, lastModified, starts );
+        bitStarts_ = bitStarts;
+        bitEnds_ = bitEnds;
+    }
+
+    byte[] decodeChunk( int ichunk ) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( getFile(), "r" );
+        try {
+            return decodeBlock( raf, bitStarts_[ ichunk ],
+                                bitEnds_[ ichunk ] );
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    void writePoints( DataOutput out ) throws IOException {
+        int n = bitStarts_.length;
+        for ( int i = 0; i < n; i++ ) {
+            out.writeLong( bitStarts_[ i ] );
+            out.writeLong( bitEnds_[ i ] );
+        }
+    }
+
+    /**
+     * Reads block information written by {@link #writePoints}
+     * and returns a new instance.
+     *
+     * @param  file  compressed file
+     * @param  rawLength  length of the compressed file when indexed
+     * @param  lastModified  modification time of the compressed file
+     *                       when indexed
+     * @param  starts   chunk start offsets followed by total length
+     * @param  in   source of block information
+     * @return  new instance
+     */
+    static Bzip2IndexedFile readPoints( File file, long rawLength,
+                                        long lastModified, long[] starts,
+                                        DataInput in )
+            throws IOException {
+        int n = starts.length - 1;
+        long[] bitStarts = new long[ n ];
+        long[] bitEnds = new long[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            bitStarts[ i ] = in.readLong();
+            bitEnds[ i ] = in.readLong();
+        }
+        return new Bzip2IndexedFile( file, rawLength, lastModified, starts,
+                                     bitStarts, bitEnds );
+    }
+
+    /**
+     * Builds an index by scanning and decompressing a bzip2 file.
+     *
+     * @param  file  bzip2-compressed file
+     * @return  new instance
+     */
+    static Bzip2IndexedFile createIndex( File file ) throws IOException {
+        long rawLength = file.length();
+        long lastModified = file.lastModified();
+
+        /* Locate candidate block and end-of-stream markers.
+         * End of stream markers are recorded as negative values. */
+        LongList marks = new LongList();
+        InputStream in =
+            new BufferedInputStream( new FileInputStream( file ) );
+        try {
+            byte[] magic = new byte[ 3 ];
+            for ( int i = 0; i < 3; i++ ) {
+                magic[ i ] = (byte) in.read();
+            }
+            if ( magic[ 0 ] != 'B' || magic[ 1 ] != 'Z' ||
+                 magic[ 2 ] != 'h' ) {
+                throw new IOException( "Not in bzip2 format" );
+            }
+            long reg = 0;
+            long ibit = 24;
+            for ( int b; ( b = in.read() ) >= 0; ) {
+                reg = ( reg << 8 ) | b;
+                ibit += 8;
+                for ( int k = 7; k >= 0; k-- ) {
+                    long word = ( reg >>> k ) & MASK48;
+                    if ( word == BLOCK_MAGIC ) {
+                        marks.add( ibit - k - 48 );
+                    }
+                    else if ( word == EOS_MAGIC ) {
+                        marks.add( -( ibit - k - 48 ) - 1 );
+                    }
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        /* Decode each block to find its length.  A block ends at the
+         * next marker, unless it fails to decode, in which case the
+         * marker is assumed to be a chance occurrence in the compressed
+         * data and the block is extended to the following one. */
+        long[] markArray = marks.toLongArray();
+        int nmark = markArray.length;
+        LongList starts = new LongList();
+        LongList bitStarts = new LongList();
+        LongList bitEnds = new LongList();
+        long total = 0;
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            int im = 0;
+            while ( im < nmark ) {
+                if ( markArray[ im ] < 0 ) {
+                    im++;
+                    continue;
+                }
+                long start = markArray[ im ];
+                byte[] data = null;
+                IOException error = null;
+                int jm = im;
+                while ( data == null && ++jm < nmark ) {
+                    long end = markArray[ jm ] >= 0 ? markArray[ jm ]
+                                                    : -markArray[ jm ] - 1;
+                    try {
+                        data = decodeBlock( raf, start, end );
+                        starts.add( total );
+                        bitStarts.add( start );
+                        bitEnds.add( end );
+                        total += data.length;
+                    }
+                    catch ( IOException e ) {
+                        error = e;
+                    }
+                }
+                if ( data == null ) {
+                    throw (IOException)
+                          new IOException( "Failed to decode bzip2 block at"
+                                         + " bit " + start )
+                         .initCause( error );
+                }
+                im = jm;
+            }
+        }
+        finally {
+            raf.close();
+        }
+        starts.add( total );
+        return new Bzip2IndexedFile( file, rawLength, lastModified,
+                                     starts.toLongArray(),
+                                     bitStarts.toLongArray(),
+                                     bitEnds.toLongArray() );
+    }
+
+    /**
+     * Decodes a single compressed block.
+     *
+     * @param  raf  compressed file
+     * @param  bitStart  bit offset of block magic number
+     * @param  bitEnd   bit offset of the end of the block
+     * @return  uncompressed block content
+     */
+    private static byte[] decodeBlock( RandomAccessFile raf, long bitStart,
+                                       long bitEnd )
+            throws IOException {
+        long nbit = bitEnd - bitStart;
+        if ( nbit < 80 || nbit > Integer.MAX_VALUE ) {
+            throw new IOException( "Bad bzip2 block length" );
+        }
+
+        /* Read the raw bytes covering the block. */
+        long off0 = bitStart >>> 3;
+        int shift = (int) ( bitStart & 7 );
+        byte[] raw = new byte[ (int) ( ( shift + nbit + 7 ) / 8 ) + 1 ];
+        long navail = raf.length() - off0;
+        if ( navail < raw.length - 1 ) {
+            throw new IOException( "Bzip2 block overruns file" );
+        }
+        raf.seek( off0 );
+        raf.readFully( raw, 0, (int) Math.min( raw.length, navail ) );
+
+        /* Assemble a byte-aligned stream containing just this block
+         * followed by an end-of-stream marker whose combined CRC
+         * matches the block CRC.  The leading "BZ" is omitted since
+         * the decoder expects it to have been consumed already. */
+        int nbyte = (int) ( ( nbit + 7 ) / 8 );
+        BitWriter out = new BitWriter( 2 + nbyte + 11 );
+        out.writeBits( 'h', 8 );
+        out.writeBits( '9', 8 );
+        for ( int i = 0; i < nbyte - 1; i++ ) {
+            out.writeBits( getByte( raw, i, shift ), 8 );
+        }
+        int nlast = (int) ( nbit - 8L * ( nbyte - 1 ) );
+        out.writeBits( getByte( raw, nbyte - 1, shift ) >>> ( 8 - nlast ),
+                       nlast );
+        long blockCrc = ( getByte( raw, 6, shift ) << 24 )
+                      | ( getByte( raw, 7, shift ) << 16 )
+                      | ( getByte( raw, 8, shift ) << 8 )
+                      | ( getByte( raw, 9, shift ) );
+        out.writeBits( EOS_MAGIC >>> 24, 24 );
+        out.writeBits( EOS_MAGIC, 24 );
+        out.writeBits( blockCrc, 32 );
+
+        /* Decode it. */
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try {
+            InputStream bzin =
+                new CBZip2InputStream(
+                    new ByteArrayInputStream( out.toByteArray() ) );
+            byte[] buf = new byte[ 64 * 1024 ];
+            for ( int n; ( n = bzin.read( buf ) ) >= 0; ) {
+                bout.write( buf, 0, n );
+            }
+        }
+        catch ( RuntimeException e ) {
+            throw (IOException) new IOException( "Bad bzip2 block" )
+                               .initCause( e );
+        }
+        byte[] data = bout.toByteArray();
+        if ( crc( data ) != (int) blockCrc ) {
+            throw new IOException( "Bzip2 block CRC mismatch" );
+        }
+        return data;
+    }
+
+    /**
+     * Returns a byte from a bit-shifted buffer.
+     *
+     * @param  raw  buffer
+     * @param  i   index of output byte
+     * @param  shift  number of bits (0-7) by which content is offset
+     *                from the start of the buffer
+     * @return  byte value 0-255
+     */
+    private static int getByte( byte[] raw, int i, int shift ) {
+        int word = ( ( raw[ i ] & 0xff ) << 8 ) | ( raw[ i + 1 ] & 0xff );
+        return ( word >>> ( 8 - shift ) ) & 0xff;
+    }
+
+    /**
+     * Calculates the bzip2 CRC of a byte array.
+     *
+     * @param  data  data
+     * @return  CRC
+     */
+    private static int crc( byte[] data ) {
+        int crc = 0xffffffff;
+        for ( byte b : data ) {
+            crc = ( crc << 8 ) ^ CRC_TABLE[ ( ( crc >>> 24 ) ^ b ) & 0xff ];
+        }
+        return ~crc;
+    }
+
+    /**
+     * Returns the lookup table for the bzip2 (big-endian CRC-32) CRC.
+     *
+     * @return  256-element table
+     */
+    private static int[] createCrcTable() {
+        int[] table = new int[ 256 ];
+        for ( int i = 0; i < 256; i++ ) {
+            int c = i << 24;
+            for ( int k = 0; k < 8; k++ ) {
+                c = ( c & 0x80000000 ) != 0 ? ( c << 1 ) ^ 0x04c11db7
+                                            : c << 1;
+            }
+            table[ i ] = c;
+        }
+        return table;
+    }
+
+    /**
+     * Accumulates a most-significant-bit-first bit stream.
+     */
+    private static class BitWriter {
+        private final byte[] buf_;
+        private int nbyte_;
+        private long acc_;
+        private int nbit_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  maximum output size in bytes
+         */
+        BitWriter( int size ) {
+            buf_ = new byte[ size ];
+        }
+
+        /**
+         * Writes the low-order bits of a value.
+         *
+         * @param  v  value
+         * @param  n  number of bits, no more than 32
+         */
+        void writeBits( long v, int n ) {
+            acc_ = ( acc_ << n ) | ( v & ( ( 1L << n ) - 1 ) );
+            nbit_ += n;
+            while ( nbit_ >= 8 ) {
+                nbit_ -= 8;
+                buf_[ nbyte_++ ] = (byte) ( acc_ >>> nbit_ );
+            }
+        }
+
+        /**
+         * Returns the bytes written, padding the final byte with zero bits.
+         *
+         * @return  byte array
+         */
+        byte[] toByteArray() {
+            if ( nbit_ > 0 ) {
+                writeBits( 0, 8 - nbit_ );
+            }
+            return Arrays.copyOf( buf_, nbyte_ );
+        }
+    }
+}
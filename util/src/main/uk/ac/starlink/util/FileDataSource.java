@@ -69,6 +69,30 @@ public class FileDataSource extends DataSource {
         return new FileInputStream( file );
     }
 
+    /**
+     * Returns an InputStream containing the whole of this DataSource.
+     * If the file is compressed and an index of its compressed content
+     * is already available (see {@link IndexedCompressedFile}),
+     * the returned stream is based on that, so that skipping over
+     * uncompressed content is cheap.
+     *
+     * @return  an input stream that reads from the beginning of the
+     *          underlying data source, decompressing it if appropriate
+     */
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        Compression compress = getCompression();
+        if ( IndexedCompressedFile.isIndexable( compress ) &&
+             getIntro().length >= getIntroLimit() ) {
+            IndexedCompressedFile izf =
+                IndexedCompressedFile.getExistingInstance( file, compress );
+            if ( izf != null ) {
+                return izf.getInputStream( 0 );
+            }
+        }
+        return super.getInputStream();
+    }
+
     /**
      * Returns the length of this file.
      *
@@ -0,0 +1,313 @@
+package uk.ac.starlink.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * IndexedCompressedFile implementation for gzip files.
+ * Restart points are deflate block boundaries, each stored with the
+ * bit offset into the compressed file and the preceding 32kbytes
+ * of uncompressed output.
+ * Multi-member gzip files (concatenated gzip streams) are supported.
+ */
+class GzipIndexedFile extends IndexedCompressedFile {
+
+    private final long[] bitOffs_;
+    private final byte[][] windows_;
+
+    /** Default approximate number of uncompressed bytes per chunk. */
+    public static final int DFLT_SPAN = 1024 * 1024;
+
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    /**
+     * Constructor.
+     *
+     * @param  file  compressed file
+     * @param  rawLength  length of the compressed file when indexed
+     * @param  lastModified  modification time of the compressed file
+     *                       when indexed
+     * @param  starts   chunk start offsets followed by total length
+     * @param  bitOffs  bit offset into the compressed file of each chunk
+     * @param  windows  history window preceding each chunk
+     */
+    private GzipIndexedFile( File file, long rawLength, long lastModified,
+                             long[] starts, long[] bitOffs,
+                             byte[][] windows ) {
+        super( file, Compression.GZIP, rawLength, lastModified, starts );
+        bitOffs_ = bitOffs;
+        windows_ = windows;
+    }
+
+    byte[] decodeChunk( int ichunk ) throws IOException {
+        long bitOff = bitOffs_[ ichunk ];
+        int leng = (int) ( getChunkStart( ichunk + 1 )
+                         - getChunkStart( ichunk ) );
+        ArraySink sink = new ArraySink( leng );
+        InputStream in =
+            new BufferedInputStream( new FileInputStream( getFile() ) );
+        try {
+            IOUtils.skip( in, bitOff >>> 3 );
+            InflateDecoder dec =
+                new InflateDecoder( in, (int) ( bitOff & 7 ),
+                                    windows_[ ichunk ], sink );
+            while ( sink.count_ < leng ) {
+                if ( dec.inflateBlock() && sink.count_ < leng ) {
+                    dec.alignToByte();
+                    for ( int i = 0; i < 8; i++ ) {
+                        readByte( dec );
+                    }
+                    if ( ! readHeader( dec ) ) {
+                        throw new EOFException( "Unexpected end of gzip"
+                                              + " data" );
+                    }
+                    dec.resetWindow();
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+        if ( sink.count_ != leng ) {
+            throw new IOException( "Gzip chunk length mismatch" );
+        }
+        return sink.buf_;
+    }
+
+    void writePoints( DataOutput out ) throws IOException {
+        int n = bitOffs_.length;
+        for ( int i = 0; i < n; i++ ) {
+            out.writeLong( bitOffs_[ i ] );
+            out.writeInt( windows_[ i ].length );
+            out.write( windows_[ i ] );
+        }
+    }
+
+    /**
+     * Reads restart point information written by {@link #writePoints}
+     * and returns a new instance.
+     *
+     * @param  file  compressed file
+     * @param  rawLength  length of the compressed file when indexed
+     * @param  lastModified  modification time of the compressed file
+     *                       when indexed
+     * @param  starts   chunk start offsets followed by total length
+     * @param  in   source of restart point information
+     * @return  new instance
+     */
+    static GzipIndexedFile readPoints( File file, long rawLength,
+                                       long lastModified, long[] starts,
+                                       DataInput in )
+            throws IOException {
+        int n = starts.length - 1;
+        long[] bitOffs = new long[ n ];
+        byte[][] windows = new byte[ n ][];
+        for ( int i = 0; i < n; i++ ) {
+            bitOffs[ i ] = in.readLong();
+            int nw = in.readInt();
+            if ( nw < 0 || nw > InflateDecoder.WINDOW_SIZE ) {
+                throw new IOException( "Bad window size " + nw );
+            }
+            windows[ i ] = new byte[ nw ];
+            in.readFully( windows[ i ] );
+        }
+        return new GzipIndexedFile( file, rawLength, lastModified, starts,
+                                    bitOffs, windows );
+    }
+
+    /**
+     * Builds an index by decompressing a gzip file.
+     *
+     * @param  file  gzip-compressed file
+     * @param  span  approximate number of uncompressed bytes per chunk
+     * @return  new instance
+     */
+    static GzipIndexedFile createIndex( File file, int span )
+            throws IOException {
+        long rawLength = file.length();
+        long lastModified = file.lastModified();
+        final CRC32 crc = new CRC32();
+        InflateDecoder.Sink sink = new InflateDecoder.Sink() {
+            public void write( byte[] buf, int off, int len ) {
+                crc.update( buf, off, len );
+            }
+        };
+        LongList starts = new LongList();
+        LongList bitOffs = new LongList();
+        List<byte[]> windows = new ArrayList<byte[]>();
+        InputStream in =
+            new BufferedInputStream( new FileInputStream( file ) );
+        try {
+            InflateDecoder dec = new InflateDecoder( in, 0, null, sink );
+            if ( ! readHeader( dec ) ) {
+                throw new ZipException( "Not in gzip format" );
+            }
+            long memberStart = 0;
+            while ( true ) {
+
+                /* At a block boundary; record a restart point if it's
+                 * far enough from the last one.  If there has been no
+                 * output since then, the new point supersedes it. */
+                long nout = dec.getOutputCount();
+                int np = starts.size();
+                if ( np == 0 || nout - starts.get( np - 1 ) >= span ) {
+                    starts.add( nout );
+                    bitOffs.add( dec.getBitCount() );
+                    windows.add( dec.getWindow() );
+                }
+                else if ( nout == starts.get( np - 1 ) ) {
+                    bitOffs.set( np - 1, dec.getBitCount() );
+                    windows.set( np - 1, dec.getWindow() );
+                }
+
+                /* Decode the next block, and handle the member trailer
+                 * and any following member if it's the last. */
+                if ( dec.inflateBlock() ) {
+                    dec.alignToByte();
+                    long crcval = readInt32( dec );
+                    long isize = readInt32( dec );
+                    long nmember = dec.getOutputCount() - memberStart;
+                    if ( crcval != crc.getValue() ||
+                         isize != ( nmember & 0xffffffffL ) ) {
+                        throw new ZipException( "Corrupt gzip trailer" );
+                    }
+                    crc.reset();
+                    memberStart = dec.getOutputCount();
+                    if ( ! readHeader( dec ) ) {
+                        break;
+                    }
+                    dec.resetWindow();
+                }
+            }
+
+            /* Discard any trailing points with no output. */
+            long total = dec.getOutputCount();
+            int np = starts.size();
+            while ( np > 0 && starts.get( np - 1 ) >= total ) {
+                np--;
+            }
+            long[] startArray = new long[ np + 1 ];
+            long[] bitOffArray = new long[ np ];
+            byte[][] windowArray = new byte[ np ][];
+            for ( int i = 0; i < np; i++ ) {
+                startArray[ i ] = starts.get( i );
+                bitOffArray[ i ] = bitOffs.get( i );
+                windowArray[ i ] = windows.get( i );
+            }
+            startArray[ np ] = total;
+            return new GzipIndexedFile( file, rawLength, lastModified,
+                                        startArray, bitOffArray,
+                                        windowArray );
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a gzip member header.
+     *
+     * @param  dec  decoder positioned at a byte boundary
+     * @return  true if a header was read, false if there is no
+     *          following gzip member
+     */
+    private static boolean readHeader( InflateDecoder dec )
+            throws IOException {
+        int id1 = dec.readAlignedByte();
+        int id2 = dec.readAlignedByte();
+        if ( id1 != 0x1f || id2 != 0x8b ) {
+            return false;
+        }
+        if ( readByte( dec ) != 8 ) {
+            throw new ZipException( "Unsupported gzip compression method" );
+        }
+        int flags = readByte( dec );
+        for ( int i = 0; i < 6; i++ ) {
+            readByte( dec );
+        }
+        if ( ( flags & FEXTRA ) != 0 ) {
+            int xlen = readByte( dec ) | ( readByte( dec ) << 8 );
+            for ( int i = 0; i < xlen; i++ ) {
+                readByte( dec );
+            }
+        }
+        if ( ( flags & FNAME ) != 0 ) {
+            while ( readByte( dec ) != 0 ) {
+            }
+        }
+        if ( ( flags & FCOMMENT ) != 0 ) {
+            while ( readByte( dec ) != 0 ) {
+            }
+        }
+        if ( ( flags & FHCRC ) != 0 ) {
+            readByte( dec );
+            readByte( dec );
+        }
+        return true;
+    }
+
+    /**
+     * Reads a little-endian unsigned 32-bit integer.
+     *
+     * @param  dec  decoder positioned at a byte boundary
+     * @return  value
+     */
+    private static long readInt32( InflateDecoder dec ) throws IOException {
+        long v = 0;
+        for ( int i = 0; i < 4; i++ ) {
+            v |= ( (long) readByte( dec ) ) << ( 8 * i );
+        }
+        return v;
+    }
+
+    /**
+     * Reads a byte, failing at end of stream.
+     *
+     * @param  dec  decoder positioned at a byte boundary
+     * @return  byte value 0-255
+     */
+    private static int readByte( InflateDecoder dec ) throws IOException {
+        int b = dec.readAlignedByte();
+        if ( b < 0 ) {
+            throw new EOFException( "Unexpected end of gzip data" );
+        }
+        return b;
+    }
+
+    /**
+     * Sink that accumulates output in a fixed-length array.
+     * Any excess output is counted but discarded.
+     */
+    private static class ArraySink implements InflateDecoder.Sink {
+        final byte[] buf_;
+        int count_;
+
+        /**
+         * Constructor.
+         *
+         * @param  leng  expected output length
+         */
+        ArraySink( int leng ) {
+            buf_ = new byte[ leng ];
+        }
+
+        public void write( byte[] buf, int off, int len ) {
+            int n = Math.max( 0, Math.min( len, buf_.length - count_ ) );
+            System.arraycopy( buf, off, buf_, count_, n );
+            count_ += len;
+        }
+    }
+}
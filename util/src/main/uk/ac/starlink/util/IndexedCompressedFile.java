@@ -0,0 +1,588 @@
+package uk.ac.starlink.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Provides random access to the uncompressed content of a
+ * gzip- or bzip2-compressed file.
+ *
+ * <p>An instance holds an index of restart points in the compressed
+ * file, which divides the uncompressed content into a sequence of
+ * chunks that can each be decoded independently.
+ * Building the index requires one pass through the whole file,
+ * but subsequently any part of the content can be obtained by
+ * decompressing only the chunk or chunks that contain it.
+ * For gzip, restart points are placed at deflate block boundaries
+ * about once per megabyte of output, each with its 32kbyte history window,
+ * following the approach of zlib's <code>zran.c</code>.
+ * For bzip2, each compressed block is a chunk.
+ *
+ * <p>Indexes are cached in memory for the life of the JVM
+ * (subject to memory pressure), and may optionally be saved to
+ * a file alongside the compressed file (with the suffix
+ * {@value #INDEX_SUFFIX}) so that later sessions can use them
+ * without rescanning.  Saved indexes are always used if present and
+ * consistent with the compressed file; whether they are written is
+ * controlled by the {@value #SAVE_INDEX_PROPERTY} system property.
+ *
+ * <p>Instances of this class are safe for use from multiple threads,
+ * and different chunks may be decoded concurrently.
+ */
+public abstract class IndexedCompressedFile {
+
+    private final File file_;
+    private final Compression compress_;
+    private final long rawLength_;
+    private final long lastModified_;
+    private final long[] starts_;
+    private final ChunkCache cache_;
+
+    /** Filename suffix for saved index files. */
+    public static final String INDEX_SUFFIX = ".zidx";
+
+    /**
+     * Name of system property which controls whether newly created
+     * indexes are saved to disk.  Set it to "true" to save them.
+     */
+    public static final String SAVE_INDEX_PROPERTY = "compress.index.save";
+
+    /** Maximum number of bytes of decoded chunks cached per file. */
+    public static final long DFLT_CACHE_BYTES = 32 * 1024 * 1024;
+
+    private static final int INDEX_MAGIC = 0x5a494458;
+    private static final int INDEX_VERSION = 1;
+    private static final Map<File,Reference<IndexedCompressedFile>>
+        instanceMap_ = new HashMap<File,Reference<IndexedCompressedFile>>();
+    private static Boolean saveIndex_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.util" );
+
+    /**
+     * Constructor.
+     *
+     * @param  file  compressed file
+     * @param  compress  compression type
+     * @param  rawLength  length of the compressed file when indexed
+     * @param  lastModified  modification time of the compressed file
+     *                       when indexed
+     * @param  starts   array of (nchunk+1) elements giving the offset
+     *                  into the uncompressed content of each chunk,
+     *                  followed by the total uncompressed length
+     */
+    IndexedCompressedFile( File file, Compression compress, long rawLength,
+                           long lastModified, long[] starts ) {
+        file_ = file;
+        compress_ = compress;
+        rawLength_ = rawLength;
+        lastModified_ = lastModified;
+        starts_ = starts;
+        cache_ = new ChunkCache( DFLT_CACHE_BYTES );
+    }
+
+    /**
+     * Returns the compressed file.
+     *
+     * @return  file
+     */
+    public File getFile() {
+        return file_;
+    }
+
+    /**
+     * Returns the compression type of the file.
+     *
+     * @return  compression
+     */
+    public Compression getCompression() {
+        return compress_;
+    }
+
+    /**
+     * Returns the length of the uncompressed content.
+     *
+     * @return  uncompressed byte count
+     */
+    public long getLength() {
+        return starts_[ starts_.length - 1 ];
+    }
+
+    /**
+     * Returns the number of independently decodable chunks.
+     *
+     * @return  chunk count
+     */
+    public int getChunkCount() {
+        return starts_.length - 1;
+    }
+
+    /**
+     * Returns the offset into the uncompressed content at which a
+     * given chunk starts.
+     *
+     * @param  ichunk  chunk index
+     * @return  uncompressed offset
+     */
+    public long getChunkStart( int ichunk ) {
+        return starts_[ ichunk ];
+    }
+
+    /**
+     * Returns the index of the chunk containing a given offset into the
+     * uncompressed content.
+     *
+     * @param  offset  uncompressed offset, in the range 0..length-1
+     * @return  chunk index
+     */
+    public int getChunkIndex( long offset ) {
+        int ix = Arrays.binarySearch( starts_, 0, starts_.length - 1, offset );
+        return ix >= 0 ? ix : -2 - ix;
+    }
+
+    /**
+     * Returns the uncompressed content of a given chunk.
+     * Recently used chunks are cached.
+     * The returned array must not be modified.
+     *
+     * @param  ichunk  chunk index
+     * @return  uncompressed bytes
+     */
+    public byte[] getChunk( int ichunk ) throws IOException {
+        byte[] data = cache_.get( ichunk );
+        if ( data == null ) {
+            data = decodeChunk( ichunk );
+            long leng = starts_[ ichunk + 1 ] - starts_[ ichunk ];
+            if ( data.length != leng ) {
+                throw new IOException( "Chunk length mismatch for " + file_
+                                     + " (" + data.length + " != " + leng
+                                     + ") - stale index?" );
+            }
+            cache_.put( ichunk, data );
+        }
+        return data;
+    }
+
+    /**
+     * Returns an input stream giving the uncompressed content of the file
+     * starting at a given offset.
+     * The <code>skip</code> method of the returned stream is cheap.
+     *
+     * @param  offset  offset into uncompressed content
+     * @return  new input stream
+     */
+    public InputStream getInputStream( long offset ) {
+        return new ChunkInputStream( offset );
+    }
+
+    /**
+     * Indicates whether this index still describes the file on disk.
+     *
+     * @return  true iff the file's length and modification time
+     *          are unchanged since indexing
+     */
+    public boolean isUpToDate() {
+        return file_.length() == rawLength_
+            && file_.lastModified() == lastModified_;
+    }
+
+    /**
+     * Decodes the content of a given chunk from the compressed file.
+     *
+     * @param  ichunk  chunk index
+     * @return  uncompressed bytes
+     */
+    abstract byte[] decodeChunk( int ichunk ) throws IOException;
+
+    /**
+     * Writes the implementation-specific restart point information
+     * for this index.
+     *
+     * @param  out  destination
+     */
+    abstract void writePoints( DataOutput out ) throws IOException;
+
+    /**
+     * Writes this index to a file.
+     *
+     * @param  idxFile  destination file
+     */
+    public void writeIndex( File idxFile ) throws IOException {
+        File tmpFile = new File( idxFile.getPath() + ".tmp" );
+        DataOutputStream out =
+            new DataOutputStream(
+                new BufferedOutputStream(
+                    new DeflaterOutputStream(
+                        new FileOutputStream( tmpFile ) ) ) );
+        boolean done = false;
+        try {
+            out.writeInt( INDEX_MAGIC );
+            out.writeInt( INDEX_VERSION );
+            out.writeUTF( compress_.toString() );
+            out.writeLong( rawLength_ );
+            out.writeLong( lastModified_ );
+            out.writeInt( starts_.length );
+            for ( long start : starts_ ) {
+                out.writeLong( start );
+            }
+            writePoints( out );
+            out.close();
+            done = tmpFile.renameTo( idxFile );
+            if ( ! done ) {
+                throw new IOException( "Failed to rename " + tmpFile
+                                     + " to " + idxFile );
+            }
+        }
+        finally {
+            if ( ! done ) {
+                out.close();
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Indicates whether indexed random access is available for a given
+     * compression type.
+     *
+     * @param  compress  compression type
+     * @return  true for gzip and bzip2
+     */
+    public static boolean isIndexable( Compression compress ) {
+        return compress == Compression.GZIP
+            || compress == Compression.BZIP2;
+    }
+
+    /**
+     * Returns the location at which an index for a given compressed file
+     * is saved.
+     *
+     * @param  file  compressed file
+     * @return   index file
+     */
+    public static File getIndexFile( File file ) {
+        return new File( file.getPath() + INDEX_SUFFIX );
+    }
+
+    /**
+     * Returns an index for a given compressed file, building it if
+     * required.  Building the index involves decompressing the whole file.
+     *
+     * @param  file  compressed file
+     * @param  compress  compression type of file; must be indexable
+     * @return  index
+     * @throws  IOException  if the file can't be indexed
+     */
+    public static IndexedCompressedFile getInstance( File file,
+                                                     Compression compress )
+            throws IOException {
+        IndexedCompressedFile izf = getExistingInstance( file, compress );
+        if ( izf != null ) {
+            return izf;
+        }
+        logger_.info( "Indexing " + compress + "-compressed file " + file );
+        if ( compress == Compression.GZIP ) {
+            izf = GzipIndexedFile
+                 .createIndex( file, GzipIndexedFile.DFLT_SPAN );
+        }
+        else if ( compress == Compression.BZIP2 ) {
+            izf = Bzip2IndexedFile.createIndex( file );
+        }
+        else {
+            throw new IllegalArgumentException( "Can't index " + compress );
+        }
+        logger_.info( "Indexed " + file + ": " + izf.getLength()
+                    + " bytes in " + izf.getChunkCount() + " chunks" );
+        synchronized ( instanceMap_ ) {
+            instanceMap_.put( getKey( file ),
+                new SoftReference<IndexedCompressedFile>( izf ) );
+        }
+        if ( getSaveIndex() ) {
+            File idxFile = getIndexFile( file );
+            try {
+                izf.writeIndex( idxFile );
+                logger_.info( "Saved compression index " + idxFile );
+            }
+            catch ( IOException e ) {
+                logger_.warning( "Failed to save compression index "
+                               + idxFile + ": " + e );
+            }
+        }
+        return izf;
+    }
+
+    /**
+     * Returns an index for a given compressed file if one is available
+     * without having to build it.  That is the case if it has already
+     * been built in this JVM, or if a saved index file is present.
+     *
+     * @param  file  compressed file
+     * @param  compress  compression type of file
+     * @return  index, or null if none is available
+     */
+    public static IndexedCompressedFile
+            getExistingInstance( File file, Compression compress ) {
+        if ( ! isIndexable( compress ) ) {
+            return null;
+        }
+        File key = getKey( file );
+        synchronized ( instanceMap_ ) {
+            Reference<IndexedCompressedFile> ref = instanceMap_.get( key );
+            IndexedCompressedFile izf = ref == null ? null : ref.get();
+            if ( izf != null && izf.compress_ == compress &&
+                 izf.isUpToDate() ) {
+                return izf;
+            }
+            instanceMap_.remove( key );
+        }
+        File idxFile = getIndexFile( file );
+        if ( idxFile.isFile() ) {
+            try {
+                IndexedCompressedFile izf =
+                    readIndex( idxFile, file, compress );
+                if ( izf != null ) {
+                    logger_.info( "Using saved compression index "
+                                + idxFile );
+                    synchronized ( instanceMap_ ) {
+                        instanceMap_.put( key,
+                            new SoftReference<IndexedCompressedFile>( izf ) );
+                    }
+                    return izf;
+                }
+                else {
+                    logger_.info( "Ignoring out of date compression index "
+                                + idxFile );
+                }
+            }
+            catch ( IOException e ) {
+                logger_.warning( "Failed to read compression index "
+                               + idxFile + ": " + e );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indicates whether newly built indexes will be saved to disk.
+     * The default is determined by the {@link #SAVE_INDEX_PROPERTY}
+     * system property.
+     *
+     * @return  true iff indexes are saved
+     */
+    public static boolean getSaveIndex() {
+        if ( saveIndex_ == null ) {
+            try {
+                saveIndex_ =
+                    Boolean.valueOf( System
+                                    .getProperty( SAVE_INDEX_PROPERTY ) );
+            }
+            catch ( Throwable e ) {
+                saveIndex_ = Boolean.FALSE;
+            }
+        }
+        return saveIndex_.booleanValue();
+    }
+
+    /**
+     * Sets whether newly built indexes will be saved to disk.
+     *
+     * @param  save  true to save indexes
+     */
+    public static void setSaveIndex( boolean save ) {
+        saveIndex_ = Boolean.valueOf( save );
+    }
+
+    /**
+     * Reads a saved index file.
+     *
+     * @param  idxFile  index file
+     * @param  file    compressed file
+     * @param  compress  compression type
+     * @return  index, or null if the saved index does not match the
+     *          current state of the compressed file
+     */
+    private static IndexedCompressedFile readIndex( File idxFile, File file,
+                                                    Compression compress )
+            throws IOException {
+        DataInputStream in =
+            new DataInputStream(
+                new BufferedInputStream(
+                    new InflaterInputStream(
+                        new FileInputStream( idxFile ) ) ) );
+        try {
+            if ( in.readInt() != INDEX_MAGIC ||
+                 in.readInt() != INDEX_VERSION ) {
+                throw new IOException( "Not a compression index file" );
+            }
+            String cname = in.readUTF();
+            long rawLength = in.readLong();
+            long lastModified = in.readLong();
+            if ( ! cname.equals( compress.toString() ) ||
+                 rawLength != file.length() ||
+                 lastModified != file.lastModified() ) {
+                return null;
+            }
+            int nstart = in.readInt();
+            long[] starts = new long[ nstart ];
+            for ( int i = 0; i < nstart; i++ ) {
+                starts[ i ] = in.readLong();
+            }
+            if ( compress == Compression.GZIP ) {
+                return GzipIndexedFile
+                      .readPoints( file, rawLength, lastModified, starts, in );
+            }
+            else {
+                return Bzip2IndexedFile
+                      .readPoints( file, rawLength, lastModified, starts, in );
+            }
+        }
+        catch ( EOFException e ) {
+            throw (IOException)
+                  new IOException( "Truncated compression index" )
+                 .initCause( e );
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the key used for caching instances.
+     *
+     * @param  file  compressed file
+     * @return  key
+     */
+    private static File getKey( File file ) {
+        return file.getAbsoluteFile();
+    }
+
+    /**
+     * Thread-safe least recently used cache of decoded chunks
+     * with a limit on the total size.
+     */
+    private static class ChunkCache {
+        private final long maxBytes_;
+        private final LinkedHashMap<Integer,byte[]> map_;
+        private long nbyte_;
+
+        /**
+         * Constructor.
+         *
+         * @param  maxBytes  maximum number of bytes stored
+         */
+        ChunkCache( long maxBytes ) {
+            maxBytes_ = maxBytes;
+            map_ = new LinkedHashMap<Integer,byte[]>( 16, 0.75f, true );
+        }
+
+        synchronized byte[] get( int key ) {
+            return map_.get( Integer.valueOf( key ) );
+        }
+
+        synchronized void put( int key, byte[] data ) {
+            byte[] old = map_.put( Integer.valueOf( key ), data );
+            nbyte_ += data.length - ( old == null ? 0 : old.length );
+            for ( Iterator<Map.Entry<Integer,byte[]>> it =
+                      map_.entrySet().iterator();
+                  nbyte_ > maxBytes_ && map_.size() > 1 && it.hasNext(); ) {
+                nbyte_ -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * InputStream that reads uncompressed content chunk by chunk.
+     */
+    private class ChunkInputStream extends InputStream {
+        private long pos_;
+        private byte[] chunk_;
+        private long chunkStart_;
+
+        /**
+         * Constructor.
+         *
+         * @param  pos  initial offset
+         */
+        ChunkInputStream( long pos ) {
+            pos_ = pos;
+        }
+
+        public int read() throws IOException {
+            byte[] buf = prepare();
+            if ( buf == null ) {
+                return -1;
+            }
+            return buf[ (int) ( pos_++ - chunkStart_ ) ] & 0xff;
+        }
+
+        public int read( byte[] b, int off, int len ) throws IOException {
+            if ( len == 0 ) {
+                return 0;
+            }
+            byte[] buf = prepare();
+            if ( buf == null ) {
+                return -1;
+            }
+            int ioff = (int) ( pos_ - chunkStart_ );
+            int n = Math.min( len, buf.length - ioff );
+            System.arraycopy( buf, ioff, b, off, n );
+            pos_ += n;
+            return n;
+        }
+
+        public long skip( long n ) {
+            long n1 = Math.max( 0, Math.min( n, getLength() - pos_ ) );
+            pos_ += n1;
+            return n1;
+        }
+
+        public int available() {
+            return chunk_ != null && pos_ >= chunkStart_
+                                  && pos_ < chunkStart_ + chunk_.length
+                 ? (int) ( chunkStart_ + chunk_.length - pos_ )
+                 : 0;
+        }
+
+        public void close() {
+            chunk_ = null;
+        }
+
+        /**
+         * Ensures that the current chunk contains the current position.
+         *
+         * @return  current chunk, or null at end of stream
+         */
+        private byte[] prepare() throws IOException {
+            if ( pos_ >= getLength() ) {
+                return null;
+            }
+            if ( chunk_ == null || pos_ < chunkStart_ ||
+                 pos_ >= chunkStart_ + chunk_.length ) {
+                int ichunk = getChunkIndex( pos_ );
+                chunk_ = getChunk( ichunk );
+                chunkStart_ = getChunkStart( ichunk );
+            }
+            return chunk_;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package uk.ac.starlink.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Pure java decoder for raw DEFLATE data (RFC 1951) which works one
+ * compressed block at a time.
+ *
+ * <p>Unlike {@link java.util.zip.Inflater}, this class reports the
+ * bit offset in the input at which each block starts, exposes the
+ * 32kbyte history window, and can begin decoding at an arbitrary bit
+ * offset given a previously recorded window.
+ * That is what is required to construct and use an index of
+ * restart points into a deflate stream, as done by zlib's
+ * <code>zran.c</code> example.
+ *
+ * <p>Decoded bytes are passed to a {@link Sink} as they are produced.
+ */
+class InflateDecoder {
+
+    private final InputStream in_;
+    private final Sink sink_;
+    private final byte[] buf_;
+    private long bitbuf_;
+    private int bitcnt_;
+    private long bitpos_;
+    private long readBits_;
+    private int npos_;
+    private int nflushed_;
+    private long nout_;
+
+    /** Size of the history window. */
+    public static final int WINDOW_SIZE = 32 * 1024;
+
+    private static final int BUFSIZE = WINDOW_SIZE + 128 * 1024;
+    private static final int MAXMATCH = 258;
+    private static final int[] LBASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+        35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258,
+    };
+    private static final int[] LEXT = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+        3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0,
+    };
+    private static final int[] DBASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+        257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145,
+        8193, 12289, 16385, 24577,
+    };
+    private static final int[] DEXT = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+        7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13,
+    };
+    private static final int[] CLORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15,
+    };
+    private static final Huffman FIXED_LIT;
+    private static final Huffman FIXED_DIST;
+    static {
+        int[] llens = new int[ 288 ];
+        for ( int i = 0; i < 288; i++ ) {
+            llens[ i ] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+        int[] dlens = new int[ 30 ];
+        Arrays.fill( dlens, 5 );
+        try {
+            FIXED_LIT = new Huffman( llens, 288 );
+            FIXED_DIST = new Huffman( dlens, 30 );
+        }
+        catch ( ZipException e ) {
+            throw new AssertionError( e );
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param  in  input stream supplying compressed bytes;
+     *             should be buffered
+     * @param  skipBits  number of bits (0-7) of the first byte
+     *                   to ignore before decoding starts
+     * @param  window   history window preceding the start position,
+     *                  or null if decoding starts at the beginning
+     *                  of a deflate stream
+     * @param  sink   destination for decoded bytes
+     */
+    public InflateDecoder( InputStream in, int skipBits, byte[] window,
+                           Sink sink ) throws IOException {
+        in_ = in;
+        sink_ = sink;
+        buf_ = new byte[ BUFSIZE ];
+        if ( window != null ) {
+            int nw = Math.min( window.length, WINDOW_SIZE );
+            System.arraycopy( window, window.length - nw, buf_, 0, nw );
+            npos_ = nw;
+            nflushed_ = nw;
+        }
+        if ( skipBits > 0 ) {
+            need( skipBits );
+            drop( skipBits );
+            readBits_ -= skipBits;
+        }
+        bitpos_ = 0;
+    }
+
+    /**
+     * Returns the number of bits consumed since the start position,
+     * not including any initial skipped bits.
+     *
+     * @return  bit count
+     */
+    public long getBitCount() {
+        return bitpos_;
+    }
+
+    /**
+     * Returns the number of bytes decoded so far.
+     *
+     * @return  output byte count
+     */
+    public long getOutputCount() {
+        return nout_;
+    }
+
+    /**
+     * Returns a copy of the most recent output, up to the size of the
+     * history window.  This is suitable for passing to the constructor
+     * of a decoder which starts at the current position.
+     *
+     * @return  window content
+     */
+    public byte[] getWindow() {
+        int nw = Math.min( npos_, WINDOW_SIZE );
+        byte[] window = new byte[ nw ];
+        System.arraycopy( buf_, npos_ - nw, window, 0, nw );
+        return window;
+    }
+
+    /**
+     * Decodes a single deflate block and passes its output to the sink.
+     * On exit the input is positioned at the start of the next block,
+     * or just after the final block.
+     *
+     * @return   true iff the block just decoded was flagged as the
+     *           final block of the deflate stream
+     */
+    public boolean inflateBlock() throws IOException {
+        int hdr = bits( 3 );
+        boolean isFinal = ( hdr & 1 ) != 0;
+        switch ( hdr >> 1 ) {
+            case 0:
+                stored();
+                break;
+            case 1:
+                codes( FIXED_LIT, FIXED_DIST );
+                break;
+            case 2:
+                dynamic();
+                break;
+            default:
+                throw new ZipException( "Invalid deflate block type" );
+        }
+        flush();
+        if ( bitpos_ > readBits_ ) {
+            throw new EOFException( "Unexpected end of deflate stream" );
+        }
+        return isFinal;
+    }
+
+    /**
+     * Discards any bits remaining before the next byte boundary.
+     */
+    public void alignToByte() {
+        drop( bitcnt_ & 7 );
+    }
+
+    /**
+     * Reads a byte-aligned byte from the input, following a call to
+     * {@link #alignToByte}.
+     *
+     * @return  byte value 0-255, or -1 at end of stream
+     */
+    public int readAlignedByte() throws IOException {
+        if ( bitcnt_ >= 8 ) {
+            int b = (int) ( bitbuf_ & 0xff );
+            drop( 8 );
+            return b;
+        }
+        else {
+            assert bitcnt_ == 0;
+            int b = in_.read();
+            if ( b >= 0 ) {
+                bitpos_ += 8;
+                readBits_ += 8;
+            }
+            return b;
+        }
+    }
+
+    /**
+     * Resets the history window, as required at the start of a new
+     * deflate stream.
+     */
+    public void resetWindow() {
+        flush();
+        npos_ = 0;
+        nflushed_ = 0;
+    }
+
+    /**
+     * Decodes a stored block.
+     */
+    private void stored() throws IOException {
+        alignToByte();
+        int len = bits( 16 );
+        int nlen = bits( 16 );
+        if ( ( len ^ 0xffff ) != nlen ) {
+            throw new ZipException( "Bad stored block length" );
+        }
+        while ( len > 0 ) {
+            ensureSpace( 1 );
+            int n = Math.min( len, buf_.length - npos_ );
+            for ( int i = 0; i < n; i++ ) {
+                int b = readAlignedByte();
+                if ( b < 0 ) {
+                    throw new EOFException( "Unexpected end of deflate"
+                                          + " stream" );
+                }
+                buf_[ npos_++ ] = (byte) b;
+            }
+            len -= n;
+        }
+    }
+
+    /**
+     * Decodes a block with dynamic Huffman codes.
+     */
+    private void dynamic() throws IOException {
+        int nlen = bits( 5 ) + 257;
+        int ndist = bits( 5 ) + 1;
+        int ncode = bits( 4 ) + 4;
+        if ( nlen > 286 || ndist > 30 ) {
+            throw new ZipException( "Bad deflate code counts" );
+        }
+        int[] clens = new int[ 19 ];
+        for ( int i = 0; i < ncode; i++ ) {
+            clens[ CLORDER[ i ] ] = bits( 3 );
+        }
+        Huffman clcode = new Huffman( clens, 19 );
+        int[] lens = new int[ nlen + ndist ];
+        for ( int i = 0; i < nlen + ndist; ) {
+            int sym = decode( clcode );
+            if ( sym < 16 ) {
+                lens[ i++ ] = sym;
+            }
+            else {
+                int len = 0;
+                int rep;
+                if ( sym == 16 ) {
+                    if ( i == 0 ) {
+                        throw new ZipException( "Repeat with no first"
+                                              + " length" );
+                    }
+                    len = lens[ i - 1 ];
+                    rep = 3 + bits( 2 );
+                }
+                else if ( sym == 17 ) {
+                    rep = 3 + bits( 3 );
+                }
+                else {
+                    rep = 11 + bits( 7 );
+                }
+                if ( i + rep > nlen + ndist ) {
+                    throw new ZipException( "Too many code lengths" );
+                }
+                while ( rep-- > 0 ) {
+                    lens[ i++ ] = len;
+                }
+            }
+        }
+        if ( lens[ 256 ] == 0 ) {
+            throw new ZipException( "No end-of-block code" );
+        }
+        int[] dlens = new int[ ndist ];
+        System.arraycopy( lens, nlen, dlens, 0, ndist );
+        codes( new Huffman( lens, nlen ), new Huffman( dlens, ndist ) );
+    }
+
+    /**
+     * Decodes the compressed data of a Huffman-coded block.
+     *
+     * @param  lcode  literal/length code
+     * @param  dcode  distance code
+     */
+    private void codes( Huffman lcode, Huffman dcode ) throws IOException {
+        byte[] buf = buf_;
+        while ( true ) {
+            int sym = decode( lcode );
+            if ( sym < 256 ) {
+                if ( npos_ >= buf.length ) {
+                    ensureSpace( 1 );
+                }
+                buf[ npos_++ ] = (byte) sym;
+            }
+            else if ( sym == 256 ) {
+                return;
+            }
+            else {
+                sym -= 257;
+                if ( sym >= 29 ) {
+                    throw new ZipException( "Bad deflate length code" );
+                }
+                int len = LBASE[ sym ] + bits( LEXT[ sym ] );
+                int dsym = decode( dcode );
+                if ( dsym >= 30 ) {
+                    throw new ZipException( "Bad deflate distance code" );
+                }
+                int dist = DBASE[ dsym ] + bits( DEXT[ dsym ] );
+                ensureSpace( MAXMATCH );
+                int from = npos_ - dist;
+                if ( from < 0 ) {
+                    throw new ZipException( "Deflate distance too far back" );
+                }
+                if ( dist >= len ) {
+                    System.arraycopy( buf, from, buf, npos_, len );
+                    npos_ += len;
+                }
+                else {
+                    for ( int i = 0; i < len; i++ ) {
+                        buf[ npos_++ ] = buf[ from++ ];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ensures that there is room in the output buffer for a given number
+     * of bytes, flushing output and sliding the window down if required.
+     *
+     * @param  n  number of bytes required
+     */
+    private void ensureSpace( int n ) {
+        if ( npos_ + n > buf_.length ) {
+            flush();
+            int keep = Math.min( npos_, WINDOW_SIZE );
+            System.arraycopy( buf_, npos_ - keep, buf_, 0, keep );
+            npos_ = keep;
+            nflushed_ = keep;
+        }
+    }
+
+    /**
+     * Passes any output not yet delivered to the sink.
+     */
+    private void flush() {
+        int n = npos_ - nflushed_;
+        if ( n > 0 ) {
+            sink_.write( buf_, nflushed_, n );
+            nout_ += n;
+            nflushed_ = npos_;
+        }
+    }
+
+    /**
+     * Decodes one symbol using a given Huffman code.
+     *
+     * @param  code  code
+     * @return  symbol
+     */
+    private int decode( Huffman code ) throws IOException {
+        need( code.nbit_ );
+        int entry = code.table_[ (int) ( bitbuf_ & code.mask_ ) ];
+        int len = entry & 0xf;
+        if ( len == 0 ) {
+            throw new ZipException( "Invalid Huffman code" );
+        }
+        drop( len );
+        return entry >>> 4;
+    }
+
+    /**
+     * Reads an unsigned value of a given number of bits.
+     *
+     * @param  n  bit count, 0-16
+     * @return  value
+     */
+    private int bits( int n ) throws IOException {
+        if ( n == 0 ) {
+            return 0;
+        }
+        need( n );
+        int v = (int) ( bitbuf_ & ( ( 1L << n ) - 1 ) );
+        drop( n );
+        return v;
+    }
+
+    /**
+     * Ensures that the bit buffer holds at least a given number of bits.
+     * If the input is exhausted, zero bits are supplied; it is an error
+     * to consume them, which is checked at the end of each block.
+     *
+     * @param  n  number of bits required
+     */
+    private void need( int n ) throws IOException {
+        while ( bitcnt_ < n ) {
+            int b = in_.read();
+            if ( b < 0 ) {
+                b = 0;
+            }
+            else {
+                readBits_ += 8;
+            }
+            bitbuf_ |= ( (long) b ) << bitcnt_;
+            bitcnt_ += 8;
+        }
+    }
+
+    /**
+     * Discards bits from the bit buffer.
+     *
+     * @param  n  number of bits
+     */
+    private void drop( int n ) {
+        bitbuf_ >>>= n;
+        bitcnt_ -= n;
+        bitpos_ += n;
+    }
+
+    /**
+     * Receives decoded output.
+     */
+    public interface Sink {
+
+        /**
+         * Accepts a run of decoded bytes.
+         * The supplied array may be modified after this call returns.
+         *
+         * @param  buf  buffer
+         * @param  off  offset of first byte
+         * @param  len  number of bytes
+         */
+        void write( byte[] buf, int off, int len );
+    }
+
+    /**
+     * Canonical Huffman code represented as a single-level lookup table
+     * indexed by the next (bit-reversed) input bits.
+     */
+    private static class Huffman {
+        final int[] table_;
+        final int nbit_;
+        final int mask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  lens  code length for each symbol
+         * @param  nsym  number of symbols
+         */
+        Huffman( int[] lens, int nsym ) throws ZipException {
+            int maxlen = 0;
+            int[] counts = new int[ 16 ];
+            for ( int i = 0; i < nsym; i++ ) {
+                maxlen = Math.max( maxlen, lens[ i ] );
+                counts[ lens[ i ] ]++;
+            }
+            nbit_ = Math.max( maxlen, 1 );
+            mask_ = ( 1 << nbit_ ) - 1;
+            table_ = new int[ 1 << nbit_ ];
+            counts[ 0 ] = 0;
+            int[] next = new int[ 16 ];
+            int code = 0;
+            for ( int len = 1; len <= 15; len++ ) {
+                code = ( code + counts[ len - 1 ] ) << 1;
+                next[ len ] = code;
+            }
+            for ( int sym = 0; sym < nsym; sym++ ) {
+                int len = lens[ sym ];
+                if ( len > 0 ) {
+                    int c = next[ len ]++;
+                    if ( c >= ( 1 << len ) ) {
+                        throw new ZipException( "Over-subscribed Huffman"
+                                              + " code" );
+                    }
+                    int rev = Integer.reverse( c ) >>> ( 32 - len );
+                    int entry = ( sym << 4 ) | len;
+                    for ( int j = rev; j < table_.length; j += 1 << len ) {
+                        table_[ j ] = entry;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package uk.ac.starlink.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
+public class IndexedCompressedFileTest extends TestCase {
+
+    public IndexedCompressedFileTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.util" ).setLevel( Level.WARNING );
+    }
+
+    public void testGzip() throws IOException {
+        byte[] data1 = createData( 1200000, 1L );
+        byte[] data2 = createData( 300000, 2L );
+        byte[] data3 = createData( 100000, 3L );
+        File file = File.createTempFile( "idx", ".gz" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        writeGzip( out, data1, Deflater.DEFAULT_COMPRESSION );
+        writeGzip( out, data2, Deflater.NO_COMPRESSION );
+        writeGzip( out, new byte[ 0 ], Deflater.DEFAULT_COMPRESSION );
+        writeGzip( out, data3, Deflater.BEST_SPEED );
+        out.close();
+        byte[] data = concat( data1, data2, data3 );
+
+        IndexedCompressedFile izf =
+            GzipIndexedFile.createIndex( file, 64 * 1024 );
+        assertTrue( izf.getChunkCount() > 10 );
+        checkContent( data, izf );
+        assertArrayEquals( data,
+                           readAll( new FileDataSource( file )
+                                   .getInputStream() ) );
+        checkSaved( izf, data );
+    }
+
+    public void testBzip2() throws IOException {
+        byte[] data1 = createData( 500000, 4L );
+        byte[] data2 = createData( 150000, 5L );
+        File file = File.createTempFile( "idx", ".bz2" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        writeBzip2( out, data1 );
+        writeBzip2( out, data2 );
+        out.close();
+        byte[] data = concat( data1, data2 );
+
+        IndexedCompressedFile izf = Bzip2IndexedFile.createIndex( file );
+        assertTrue( izf.getChunkCount() >= 5 );
+        checkContent( data, izf );
+        checkSaved( izf, data );
+    }
+
+    public void testNotCompressed() throws IOException {
+        File file = File.createTempFile( "idx", ".txt" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        out.write( createData( 1000, 6L ) );
+        out.close();
+        for ( Compression compress :
+              new Compression[] { Compression.GZIP, Compression.BZIP2 } ) {
+            try {
+                IndexedCompressedFile.getInstance( file, compress );
+                fail();
+            }
+            catch ( IOException e ) {
+            }
+        }
+        assertNull( IndexedCompressedFile
+                   .getExistingInstance( file, Compression.NONE ) );
+    }
+
+    private void checkContent( byte[] data, IndexedCompressedFile izf )
+            throws IOException {
+        assertEquals( data.length, izf.getLength() );
+        assertEquals( 0, izf.getChunkStart( 0 ) );
+        assertArrayEquals( data, readAll( izf.getInputStream( 0 ) ) );
+
+        /* Read chunks in reverse order so that each is decoded
+         * independently of its predecessor. */
+        for ( int ic = izf.getChunkCount() - 1; ic >= 0; ic-- ) {
+            byte[] chunk = izf.getChunk( ic );
+            int start = (int) izf.getChunkStart( ic );
+            assertTrue( chunk.length > 0 );
+            assertEquals( ic, izf.getChunkIndex( start ) );
+            assertEquals( ic, izf.getChunkIndex( start + chunk.length - 1 ) );
+            assertArrayEquals( Arrays.copyOfRange( data, start,
+                                                   start + chunk.length ),
+                               chunk );
+        }
+
+        /* Random access via skip. */
+        Random rnd = new Random( 99L );
+        for ( int i = 0; i < 20; i++ ) {
+            int off = rnd.nextInt( data.length );
+            int leng = Math.min( data.length - off, rnd.nextInt( 200000 ) );
+            InputStream in = izf.getInputStream( 0 );
+            assertEquals( off, in.skip( off ) );
+            byte[] buf = new byte[ leng ];
+            new DataInputStream( in ).readFully( buf );
+            assertArrayEquals( Arrays.copyOfRange( data, off, off + leng ),
+                               buf );
+            in.close();
+        }
+        InputStream in = izf.getInputStream( data.length - 1 );
+        assertEquals( data[ data.length - 1 ] & 0xff, in.read() );
+        assertEquals( -1, in.read() );
+    }
+
+    private void checkSaved( IndexedCompressedFile izf, byte[] data )
+            throws IOException {
+        File file = izf.getFile();
+        File idxFile = IndexedCompressedFile.getIndexFile( file );
+        idxFile.deleteOnExit();
+        izf.writeIndex( idxFile );
+        IndexedCompressedFile izf2 =
+            IndexedCompressedFile
+           .getExistingInstance( file, izf.getCompression() );
+        assertNotNull( izf2 );
+        assertEquals( izf.getChunkCount(), izf2.getChunkCount() );
+        checkContent( data, izf2 );
+        assertNull( IndexedCompressedFile
+                   .getExistingInstance( file, Compression.NONE ) );
+        idxFile.delete();
+    }
+
+    private static byte[] createData( int n, long seed ) {
+        Random rnd = new Random( seed );
+        byte[] data = new byte[ n ];
+        for ( int i = 0; i < n; ) {
+            if ( rnd.nextBoolean() ) {
+                String line = "row " + i + "\t" + rnd.nextInt( 1000 ) + "\n";
+                for ( int j = 0; j < line.length() && i < n; j++ ) {
+                    data[ i++ ] = (byte) line.charAt( j );
+                }
+            }
+            else {
+                int nr = Math.min( n - i, rnd.nextInt( 64 ) );
+                for ( int j = 0; j < nr; j++ ) {
+                    data[ i++ ] = (byte) rnd.nextInt();
+                }
+            }
+        }
+        return data;
+    }
+
+    private static void writeGzip( OutputStream out, byte[] data,
+                                   final int level )
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        GZIPOutputStream zout = new GZIPOutputStream( bout ) {
+            {
+                def.setLevel( level );
+            }
+        };
+        zout.write( data );
+        zout.close();
+        out.write( bout.toByteArray() );
+    }
+
+    private static void writeBzip2( OutputStream out, byte[] data )
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write( 'B' );
+        bout.write( 'Z' );
+        OutputStream zout = new CBZip2OutputStream( bout, 1 );
+        zout.write( data );
+        zout.close();
+        out.write( bout.toByteArray() );
+    }
+
+    private static byte[] concat( byte[]... arrays ) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        for ( byte[] array : arrays ) {
+            bout.write( array, 0, array.length );
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] readAll( InputStream in ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buf = new byte[ 10000 ];
+        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+            bout.write( buf, 0, n );
+        }
+        in.close();
+        return bout.toByteArray();
+    }
+}
@@ -1,11 +1,9 @@
 package uk.ac.starlink.votable;
 
-import java.io.DataInput;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.util.Base64InputStream;
@@ -14,17 +12,35 @@ import uk.ac.starlink.util.Base64InputStream;
  * RowSequence implementation which reads streamed data in VOTable BINARY
  * format.
  *
+ * <p>Input is read through a large buffer.  If every field has a
+ * fixed-length serialization, rows are read a block at a time and
+ * decoded column by column from the buffer; scalar numeric columns
+ * are decoded in bulk into primitive arrays before being packaged
+ * as row objects.  Otherwise rows are decoded one cell at a time.
+ *
  * @author   Mark Taylor
  * @since    31 Jul 2006
  */
 class BinaryRowSequence implements RowSequence {
 
-    private final PushbackInputStream pIn_;
-    private final DataInput dataIn_;
+    private final BufferedDataInput dataIn_;
+    private final Decoder[] decoders_;
+    private final boolean isBinary2_;
     private final int ncol_;
     private final RowReader rowReader_;
+    private final int[] colOffsets_;
+    private final int rowSize_;
+    private final int blockRows_;
+    private Object[][] block_;
+    private int iBlockRow_;
     private Object[] row_;
 
+    /** Buffer size used for reading input. */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /** Maximum number of rows decoded as a block. */
+    private static final int MAX_BLOCK_ROWS = 4096;
+
     /**
      * Constructs a new row sequence from a set of decoders and a
      * possibly encoded input stream.
@@ -38,6 +54,8 @@ class BinaryRowSequence implements RowSequence {
     public BinaryRowSequence( final Decoder[] decoders, InputStream in,
                               String encoding, boolean isBinary2 )
             throws IOException {
+        decoders_ = decoders;
+        isBinary2_ = isBinary2;
         ncol_ = decoders.length;
         if ( "gzip".equals( encoding ) ) {
             in = new GZIPInputStream( in );
@@ -45,8 +63,24 @@ class BinaryRowSequence implements RowSequence {
         else if ( "base64".equals( encoding ) ) {
             in = new Base64InputStream( in );
         }
-        pIn_ = new PushbackInputStream( in );
-        dataIn_ = new DataInputStream( pIn_ );
+        dataIn_ = new BufferedDataInput( in, BUFFER_SIZE );
+
+        /* Work out whether the rows are fixed length, and if so
+         * where each cell sits within a row. */
+        colOffsets_ = new int[ ncol_ ];
+        int off = isBinary2 ? ( ncol_ + 7 ) / 8 : 0;
+        for ( int icol = 0; icol < ncol_ && off >= 0; icol++ ) {
+            int size = decoders[ icol ].getFixedStreamSize();
+            colOffsets_[ icol ] = off;
+            off = size >= 0 ? off + size : -1;
+        }
+        rowSize_ = off;
+        blockRows_ = rowSize_ > 0
+                   ? Math.max( 1, Math.min( MAX_BLOCK_ROWS,
+                                            BUFFER_SIZE / rowSize_ ) )
+                   : 0;
+
+        /* Prepare cell-by-cell reader for use when rows are not. */
         rowReader_ = isBinary2
             ? new RowReader() {
                   final boolean[] nullFlags = new boolean[ ncol_ ];
@@ -77,18 +111,26 @@ class BinaryRowSequence implements RowSequence {
     }
 
     public boolean next() throws IOException {
-        final int b;
-        try {
-            b = pIn_.read();
-        }
-        catch ( EOFException e ) {
-            return false;
-        }
-        if ( b < 0 ) {
-            return false;
+        if ( blockRows_ > 0 ) {
+            if ( block_ == null || ++iBlockRow_ >= block_.length ) {
+                block_ = readBlock();
+                iBlockRow_ = 0;
+                if ( block_ == null ) {
+                    return false;
+                }
+            }
+            row_ = block_[ iBlockRow_ ];
+            return true;
         }
         else {
-            pIn_.unread( b );
+            try {
+                if ( dataIn_.isEnd() ) {
+                    return false;
+                }
+            }
+            catch ( EOFException e ) {
+                return false;
+            }
             Object[] row = new Object[ ncol_ ];
             rowReader_.readRow( row );
             row_ = row;
@@ -115,7 +157,63 @@ class BinaryRowSequence implements RowSequence {
     }
 
     public void close() throws IOException {
-        pIn_.close();
+        dataIn_.close();
+    }
+
+    /**
+     * Reads and decodes the next block of fixed-length rows.
+     * Only applicable if all the decoders have fixed stream sizes.
+     *
+     * @return  array of rows, or null at end of stream
+     */
+    private Object[][] readBlock() throws IOException {
+        int nbyte;
+        try {
+            nbyte = dataIn_.fill( blockRows_ * rowSize_ );
+        }
+        catch ( EOFException e ) {
+            return null;
+        }
+        int nrow = nbyte / rowSize_;
+        if ( nrow == 0 ) {
+            if ( nbyte > 0 ) {
+                throw new EOFException( "Incomplete row at end of stream" );
+            }
+            return null;
+        }
+        ByteBuffer buf = dataIn_.getBuffer();
+        int pos0 = dataIn_.getPosition();
+        Object[][] rows = new Object[ nrow ][ ncol_ ];
+        Object[] cells = new Object[ nrow ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            Decoder decoder = decoders_[ icol ];
+            int off0 = pos0 + colOffsets_[ icol ];
+            int flagOff = pos0 + icol / 8;
+            int flagMask = 0x80 >> ( icol % 8 );
+
+            /* Decode the column in bulk if possible,
+             * otherwise cell by cell. */
+            boolean isBulk = decoder.decodeBlock( buf, off0, rowSize_, cells );
+            for ( int irow = 0; irow < nrow; irow++ ) {
+                boolean isNull = isBinary2_
+                              && ( buf.get( flagOff + irow * rowSize_ )
+                                   & flagMask ) != 0;
+                final Object cell;
+                if ( isNull ) {
+                    cell = null;
+                }
+                else if ( isBulk ) {
+                    cell = cells[ irow ];
+                }
+                else {
+                    dataIn_.setPosition( off0 + irow * rowSize_ );
+                    cell = decoder.decodeStream( dataIn_ );
+                }
+                rows[ irow ][ icol ] = cell;
+            }
+        }
+        dataIn_.setPosition( pos0 + nrow * rowSize_ );
+        return rows;
     }
 
     /**
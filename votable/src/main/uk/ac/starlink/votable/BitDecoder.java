@@ -49,6 +49,11 @@ class BitDecoder extends NumericDecoder {
         skipBytes( strm, ( num + 7 ) / 8 );
     }
 
+    @Override
+    int getFixedStreamSize() {
+        return isVariable ? -1 : ( sliceSize + 7 ) / 8;
+    }
+
     void setNullValue( String txt ) {
         // no action
     }
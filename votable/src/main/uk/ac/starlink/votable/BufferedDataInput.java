@@ -0,0 +1,249 @@
+package uk.ac.starlink.votable;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * DataInput implementation that reads big-endian data from an input
+ * stream via a large internal buffer.
+ * As well as the usual DataInput methods, it provides access to
+ * the buffer itself, so that blocks of fixed-length records can be
+ * decoded in place without per-item stream calls.
+ *
+ * <p>Unlike {@link java.io.DataInputStream} this class is not
+ * synchronized, and it does not read ahead beyond what is requested
+ * except to fill its buffer.
+ */
+class BufferedDataInput implements DataInput {
+
+    private final InputStream in_;
+    private byte[] buf_;
+    private ByteBuffer bbuf_;
+    private int pos_;
+    private int end_;
+    private boolean eof_;
+
+    /**
+     * Constructor.
+     *
+     * @param  in  underlying input stream
+     * @param  bufsize  initial buffer size in bytes
+     */
+    public BufferedDataInput( InputStream in, int bufsize ) {
+        in_ = in;
+        buf_ = new byte[ Math.max( bufsize, 16 ) ];
+        bbuf_ = ByteBuffer.wrap( buf_ );
+    }
+
+    /**
+     * Attempts to ensure that at least a given number of bytes are
+     * available in the buffer starting at the current position.
+     * Fewer may be available if the end of the stream is reached.
+     * The buffer is grown if necessary, so its contents and the
+     * current position may be relocated by this call.
+     *
+     * @param  count  required number of bytes
+     * @return   number of bytes available in the buffer starting
+     *           at the current position
+     */
+    public int fill( int count ) throws IOException {
+        int avail = end_ - pos_;
+        if ( avail >= count || eof_ ) {
+            return avail;
+        }
+        if ( count > buf_.length ) {
+            byte[] buf = new byte[ Math.max( count, 2 * buf_.length ) ];
+            System.arraycopy( buf_, pos_, buf, 0, avail );
+            buf_ = buf;
+            bbuf_ = ByteBuffer.wrap( buf_ );
+        }
+        else if ( pos_ > 0 ) {
+            System.arraycopy( buf_, pos_, buf_, 0, avail );
+        }
+        pos_ = 0;
+        end_ = avail;
+        while ( end_ < count ) {
+            int n = in_.read( buf_, end_, buf_.length - end_ );
+            if ( n < 0 ) {
+                eof_ = true;
+                break;
+            }
+            end_ += n;
+        }
+        return end_ - pos_;
+    }
+
+    /**
+     * Returns the buffer holding the data.
+     * Bytes between {@link #getPosition} and the value returned by
+     * a preceding call to {@link #fill} beyond it are valid.
+     * The returned object may be replaced by a subsequent call to
+     * <code>fill</code>.
+     *
+     * @return  big-endian buffer, for use with absolute get methods
+     */
+    public ByteBuffer getBuffer() {
+        return bbuf_;
+    }
+
+    /**
+     * Returns the current read position within the buffer.
+     *
+     * @return  buffer offset of next byte to read
+     */
+    public int getPosition() {
+        return pos_;
+    }
+
+    /**
+     * Sets the current read position within the buffer.
+     * It must not exceed the end of the valid data.
+     *
+     * @param  pos  buffer offset of next byte to read
+     */
+    public void setPosition( int pos ) {
+        if ( pos < 0 || pos > end_ ) {
+            throw new IllegalArgumentException( "Position out of range" );
+        }
+        pos_ = pos;
+    }
+
+    /**
+     * Indicates whether the end of the stream has been reached.
+     *
+     * @return  true iff no more bytes can be read
+     */
+    public boolean isEnd() throws IOException {
+        return fill( 1 ) == 0;
+    }
+
+    /**
+     * Closes the underlying stream.
+     */
+    public void close() throws IOException {
+        in_.close();
+    }
+
+    public void readFully( byte[] b ) throws IOException {
+        readFully( b, 0, b.length );
+    }
+
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        while ( len > 0 ) {
+            int avail = fill( Math.min( len, buf_.length ) );
+            if ( avail == 0 ) {
+                throw new EOFException();
+            }
+            int n = Math.min( len, avail );
+            System.arraycopy( buf_, pos_, b, off, n );
+            pos_ += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public int skipBytes( int n ) throws IOException {
+        int nskip = 0;
+        while ( nskip < n ) {
+            int avail = fill( Math.min( n - nskip, buf_.length ) );
+            if ( avail == 0 ) {
+                break;
+            }
+            int k = Math.min( n - nskip, avail );
+            pos_ += k;
+            nskip += k;
+        }
+        return nskip;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public byte readByte() throws IOException {
+        require( 1 );
+        return buf_[ pos_++ ];
+    }
+
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+
+    public short readShort() throws IOException {
+        require( 2 );
+        short v = bbuf_.getShort( pos_ );
+        pos_ += 2;
+        return v;
+    }
+
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    public int readInt() throws IOException {
+        require( 4 );
+        int v = bbuf_.getInt( pos_ );
+        pos_ += 4;
+        return v;
+    }
+
+    public long readLong() throws IOException {
+        require( 8 );
+        long v = bbuf_.getLong( pos_ );
+        pos_ += 8;
+        return v;
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat( readInt() );
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble( readLong() );
+    }
+
+    public String readLine() throws IOException {
+        if ( isEnd() ) {
+            return null;
+        }
+        StringBuffer sbuf = new StringBuffer();
+        while ( ! isEnd() ) {
+            char c = (char) readUnsignedByte();
+            if ( c == '\n' ) {
+                break;
+            }
+            else if ( c == '\r' ) {
+                if ( ! isEnd() && buf_[ pos_ ] == '\n' ) {
+                    pos_++;
+                }
+                break;
+            }
+            sbuf.append( c );
+        }
+        return sbuf.toString();
+    }
+
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF( this );
+    }
+
+    /**
+     * Ensures that a given number of bytes are available in the buffer,
+     * or throws an EOFException.
+     *
+     * @param  count  required number of bytes
+     */
+    private void require( int count ) throws IOException {
+        if ( end_ - pos_ < count && fill( count ) < count ) {
+            throw new EOFException();
+        }
+    }
+}
@@ -152,6 +152,10 @@ abstract class CharDecoders {
             skipBytes( strm, cread.getCharSize() );
         }
 
+        int getFixedStreamSize() {
+            return cread.getCharSize();
+        }
+
         public boolean isNull( Object array, int index ) {
             return false;
         }
@@ -207,6 +211,10 @@ abstract class CharDecoders {
             skipBytes( strm, num * cread.getCharSize() );
         }
 
+        int getFixedStreamSize() {
+            return isVariable ? -1 : sliceSize * cread.getCharSize();
+        }
+
         String makeString( CharSequence txt ) {
             int leng = 0;
             int sleng = txt.length();
@@ -286,6 +294,10 @@ abstract class CharDecoders {
             int num = getNumItems( strm );
             skipBytes( strm, cread.getCharSize() * num );
         }
+
+        int getFixedStreamSize() {
+            return isVariable ? -1 : fixedSize * cread.getCharSize();
+        }
         
         public String[] makeStrings( CharSequence txt ) {
             int ntok = txt.length();
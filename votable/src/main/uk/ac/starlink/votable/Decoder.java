@@ -3,6 +3,7 @@ package uk.ac.starlink.votable;
 import java.io.DataInput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -182,6 +183,41 @@ abstract class Decoder {
         return -1;
     }
 
+    /**
+     * Returns the number of bytes occupied by each cell of this decoder
+     * in the BINARY/BINARY2 serialization, if it is fixed.
+     * The Decoder implementation returns -1, but decoders with
+     * fixed-length stream representations override this.
+     *
+     * @return  fixed number of bytes per cell, or -1 if variable or unknown
+     */
+    int getFixedStreamSize() {
+        return -1;
+    }
+
+    /**
+     * Decodes, if possible, a block of cells held in a buffer
+     * in BINARY/BINARY2 serialization.  Each cell must have the
+     * fixed size given by {@link #getFixedStreamSize}, and successive
+     * cells are a fixed number of bytes apart.
+     * The Decoder implementation does nothing and returns false,
+     * but decoders that can work more efficiently on a block of
+     * values than via repeated calls to {@link #decodeStream}
+     * may override it.
+     *
+     * @param  buf  big-endian buffer containing cell data
+     * @param  offset  offset into buffer of the first cell
+     * @param  stride  number of bytes from the start of one cell
+     *                 to the start of the next
+     * @param  cells   array to be filled with the decoded values,
+     *                 its length giving the number of cells
+     * @return   true iff the cells array has been filled
+     */
+    boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                         Object[] cells ) {
+        return false;
+    }
+
     /**
      * Skips over a given number of bytes in a stream without reading them.
      *
@@ -8,6 +8,7 @@ import uk.ac.starlink.fits.StandardFitsTableSerializer;
 import uk.ac.starlink.fits.WideFits;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableWriter;
+import uk.ac.starlink.util.SplitPolicy;
 
 /**
  * TableWriter which writes table data into the first extension of a FITS file,
@@ -32,12 +33,18 @@ import uk.ac.starlink.table.StarTableWriter;
  * the VOTMETA card in particular marking that this HDU contains VOTable
  * metadata.
  *
+ * <p>Table data may be written in parallel, by setting a write policy
+ * or using the handler option <code>fits(parallel=true)</code>.
+ * In that case nullable integer columns always get a <code>TNULLn</code>
+ * blank value, even if they contain no nulls.
+ *
  * @author   Mark Taylor (Starlink)
  * @since    26 Aug 2004
  */
 public class FitsPlusTableWriter extends VOTableFitsTableWriter {
 
     private final WideFits wide_;
+    private SplitPolicy writePolicy_;
 
     /**
      * Default constructor.
@@ -90,9 +97,50 @@ public class FitsPlusTableWriter extends VOTableFitsTableWriter {
         }
     }
 
+    /**
+     * Sets the policy for parallel writing of table data.
+     * If null, the default, data is written sequentially.
+     *
+     * @param  writePolicy  parallel write policy, or null
+     */
+    public void setWritePolicy( SplitPolicy writePolicy ) {
+        writePolicy_ = writePolicy;
+    }
+
+    /**
+     * Returns the policy for parallel writing of table data.
+     *
+     * @return  parallel write policy, or null for sequential writing
+     */
+    public SplitPolicy getWritePolicy() {
+        return writePolicy_;
+    }
+
+    /**
+     * Determines whether table data is written in parallel
+     * using the default policy.
+     * In parallel mode, nullable integer columns always get a
+     * <code>TNULLn</code> header.
+     *
+     * @param  isParallel  true for parallel writing, false for sequential
+     */
+    public void setParallel( boolean isParallel ) {
+        setWritePolicy( isParallel ? SplitPolicy.DFLT_POLICY : null );
+    }
+
+    /**
+     * Indicates whether table data is written in parallel.
+     *
+     * @return  true iff a write policy is in effect
+     */
+    public boolean isParallel() {
+        return writePolicy_ != null;
+    }
+
     protected FitsTableSerializer createSerializer( StarTable table ) 
             throws IOException {
-        return new StandardFitsTableSerializer( table, false, wide_ );
+        return new StandardFitsTableSerializer( table, false, wide_,
+                                                writePolicy_ );
     }
 
     /**
@@ -2,6 +2,7 @@ package uk.ac.starlink.votable;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.StringTokenizer;
 
 abstract class NumericDecoder extends Decoder {
@@ -119,6 +120,10 @@ abstract class NumericDecoder extends Decoder {
         skipBytes( strm, num * size1_ );
     }
 
+    int getFixedStreamSize() {
+        return isVariable ? -1 : sliceSize * size1_;
+    }
+
     /**
      * Decodes a string as a single scalar.  This method is used by the
      * scalar decoders, and would be handled using multiple inheritance
@@ -303,6 +308,19 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            short[] vals = new short[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = buf.getShort( offset + i * stride );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Short( vals[ i ] );
+            }
+            return true;
+        }
     }
 
     static class UnsignedByteDecoder extends ShortDecoder {
@@ -330,6 +348,19 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            short[] vals = new short[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = (short) ( buf.get( offset + i * stride ) & 0xff );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Short( vals[ i ] );
+            }
+            return true;
+        }
     }
 
     static class IntDecoder extends NumericDecoder {
@@ -374,6 +405,19 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            int[] vals = new int[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = buf.getInt( offset + i * stride );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Integer( vals[ i ] );
+            }
+            return true;
+        }
     }
 
     static class LongDecoder extends NumericDecoder {
@@ -418,6 +462,19 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            long[] vals = new long[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = buf.getLong( offset + i * stride );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Long( vals[ i ] );
+            }
+            return true;
+        }
     }
 
     static class FloatDecoder extends NumericDecoder {
@@ -459,6 +516,19 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            float[] vals = new float[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = buf.getFloat( offset + i * stride );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Float( vals[ i ] );
+            }
+            return true;
+        }
     }
 
     static class DoubleDecoder extends NumericDecoder {
@@ -500,5 +570,18 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        boolean decodeBlock( ByteBuffer buf, int offset, int stride,
+                             Object[] cells ) {
+            int n = cells.length;
+            double[] vals = new double[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                vals[ i ] = buf.getDouble( offset + i * stride );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                cells[ i ] = isNull( vals, i ) ? null
+                                               : new Double( vals[ i ] );
+            }
+            return true;
+        }
     }
 }
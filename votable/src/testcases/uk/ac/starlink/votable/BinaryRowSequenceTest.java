@@ -0,0 +1,142 @@
+package uk.ac.starlink.votable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.RowSequence;
+
+public class BinaryRowSequenceTest extends TestCase {
+
+    public BinaryRowSequenceTest( String name ) {
+        super( name );
+    }
+
+    public void testFixed() throws IOException {
+        Decoder[] decoders = new Decoder[] {
+            Decoder.makeDecoder( "int", new long[ 0 ], "-99" ),
+            Decoder.makeDecoder( "double", new long[ 0 ], null ),
+            Decoder.makeDecoder( "short", new long[ 0 ], "3" ),
+            Decoder.makeDecoder( "unsignedByte", new long[ 0 ], "255" ),
+            Decoder.makeDecoder( "long", new long[ 0 ], null ),
+            Decoder.makeDecoder( "float", new long[ 0 ], null ),
+            Decoder.makeDecoder( "char", new long[] { 6 }, null ),
+            Decoder.makeDecoder( "unicodeChar", new long[ 0 ], null ),
+            Decoder.makeDecoder( "boolean", new long[ 0 ], null ),
+            Decoder.makeDecoder( "bit", new long[] { 11 }, null ),
+            Decoder.makeDecoder( "int", new long[] { 2, 3 }, null ),
+            Decoder.makeDecoder( "char", new long[] { 3, 2 }, null ),
+        };
+        int rowSize = 0;
+        for ( Decoder dec : decoders ) {
+            assertTrue( dec.getFixedStreamSize() > 0 );
+            rowSize += dec.getFixedStreamSize();
+        }
+        assertEquals( 4 + 8 + 2 + 1 + 8 + 4 + 6 + 2 + 1 + 2 + 24 + 6,
+                      rowSize );
+        Random rnd = new Random( 2301L );
+        for ( int nrow : new int[] { 0, 1, 5000, 10007 } ) {
+            for ( boolean isBinary2 : new boolean[] { false, true } ) {
+                int nbyte = nrow * ( rowSize + ( isBinary2 ? 2 : 0 ) );
+                byte[] data = new byte[ nbyte ];
+                rnd.nextBytes( data );
+                checkDecode( decoders, data, isBinary2 );
+            }
+        }
+    }
+
+    public void testVariable() throws IOException {
+        Decoder[] decoders = new Decoder[] {
+            Decoder.makeDecoder( "int", new long[ 0 ], "-1" ),
+            Decoder.makeDecoder( "char", new long[] { -1 }, null ),
+            Decoder.makeDecoder( "double", new long[] { -1 }, null ),
+        };
+        assertEquals( -1, decoders[ 1 ].getFixedStreamSize() );
+        for ( boolean isBinary2 : new boolean[] { false, true } ) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream( bout );
+            for ( int irow = 0; irow < 3000; irow++ ) {
+                if ( isBinary2 ) {
+                    out.writeByte( irow % 7 == 0 ? 0x40 : 0 );
+                }
+                out.writeInt( irow % 5 == 0 ? -1 : irow );
+                String txt = "row " + irow;
+                out.writeInt( txt.length() );
+                out.writeBytes( txt );
+                int nd = irow % 4;
+                out.writeInt( nd );
+                for ( int id = 0; id < nd; id++ ) {
+                    out.writeDouble( irow + 0.25 * id );
+                }
+            }
+            out.close();
+            checkDecode( decoders, bout.toByteArray(), isBinary2 );
+        }
+    }
+
+    public void testTruncated() throws IOException {
+        Decoder[] decoders = new Decoder[] {
+            Decoder.makeDecoder( "double", new long[ 0 ], null ),
+        };
+        RowSequence rseq =
+            new BinaryRowSequence( decoders,
+                                   new ByteArrayInputStream( new byte[ 12 ] ),
+                                   null, false );
+        assertTrue( rseq.next() );
+        assertEquals( new Double( 0.0 ), rseq.getCell( 0 ) );
+        try {
+            rseq.next();
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+        rseq.close();
+    }
+
+    /**
+     * Checks that rows read by a BinaryRowSequence match those read
+     * cell by cell from a DataInputStream.
+     */
+    private void checkDecode( Decoder[] decoders, byte[] data,
+                              boolean isBinary2 )
+            throws IOException {
+        int ncol = decoders.length;
+        DataInput refIn =
+            new DataInputStream( new ByteArrayInputStream( data ) );
+        RowSequence rseq =
+            new BinaryRowSequence( decoders, new ByteArrayInputStream( data ),
+                                   null, isBinary2 );
+        boolean[] flags = new boolean[ ncol ];
+        int irow = 0;
+        while ( rseq.next() ) {
+            if ( isBinary2 ) {
+                FlagIO.readFlags( refIn, flags );
+            }
+            Object[] row = rseq.getRow();
+            assertEquals( ncol, row.length );
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Object ref = decoders[ icol ].decodeStream( refIn );
+                if ( flags[ icol ] ) {
+                    ref = null;
+                }
+                assertTrue( "row " + irow + ", col " + icol,
+                            Arrays.deepEquals( new Object[] { ref },
+                                               new Object[] { row[ icol ] } ));
+                assertSame( row[ icol ], rseq.getCell( icol ) );
+            }
+            irow++;
+        }
+        try {
+            refIn.readByte();
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+        rseq.close();
+    }
+}